@@ -0,0 +1,199 @@
+package io.activej.cube;
+
+import io.activej.codegen.DefiningClassLoader;
+import io.activej.csp.process.frame.FrameFormats;
+import io.activej.cube.aggregation.AggregationChunkStorage;
+import io.activej.cube.aggregation.ChunkIdGenerator;
+import io.activej.cube.aggregation.IAggregationChunkStorage;
+import io.activej.cube.aggregation.annotation.Key;
+import io.activej.cube.aggregation.annotation.Measures;
+import io.activej.cube.exception.QueryException;
+import io.activej.cube.ot.CubeDiff;
+import io.activej.datastream.supplier.StreamSuppliers;
+import io.activej.etl.LogDiff;
+import io.activej.etl.LogState;
+import io.activej.eventloop.Eventloop;
+import io.activej.fs.FileSystem;
+import io.activej.ot.StateManager;
+import io.activej.ot.StateManager.StateChangesSupplier;
+import io.activej.promise.Promise;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import static io.activej.cube.CubeStructure.AggregationConfig.id;
+import static io.activej.cube.aggregation.fieldtype.FieldTypes.ofInt;
+import static io.activej.cube.aggregation.fieldtype.FieldTypes.ofLong;
+import static io.activej.cube.aggregation.measure.Measures.sum;
+import static io.activej.cube.aggregation.predicate.AggregationPredicates.gt;
+import static io.activej.cube.aggregation.util.Utils.materializeProtoDiff;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Compares a query, which filters records and groups them by a prefix of aggregation keys,
+ * executed with a fused generated operator and with a chain of a filter and a reducer.
+ */
+@State(Scope.Benchmark)
+public class CubeQueryBenchmark {
+	private static final int CHUNKS = 10;
+	private static final int CHUNK_RECORDS = 200_000;
+
+	public record Event(@Key int advertiser, @Key int campaign, @Key int banner, @Measures("impressions") long impressions) {
+	}
+
+	@Param({"true", "false"})
+	boolean fused;
+
+	private Eventloop eventloop;
+	private ExecutorService executor;
+	private Path storageDir;
+	private CubeReporting cubeReporting;
+	private CubeQuery query;
+
+	@Setup
+	public void setup() throws IOException {
+		eventloop = Eventloop.builder()
+			.withCurrentThread()
+			.build();
+		executor = newSingleThreadExecutor();
+		storageDir = Files.createTempDirectory("cube-benchmark");
+
+		FileSystem fs = FileSystem.create(eventloop, executor, storageDir);
+		await(fs.start());
+		IAggregationChunkStorage chunkStorage = AggregationChunkStorage.create(eventloop,
+			new LocalChunkIdGenerator(), FrameFormats.lz4(), fs);
+
+		CubeStructure cubeStructure = CubeStructure.builder()
+			.withDimension("advertiser", ofInt())
+			.withDimension("campaign", ofInt())
+			.withDimension("banner", ofInt())
+			.withMeasure("impressions", sum(ofLong()))
+			.withAggregation(id("detailed")
+				.withDimensions("advertiser", "campaign", "banner")
+				.withMeasures("impressions"))
+			.build();
+		CubeExecutor cubeExecutor = CubeExecutor.builder(eventloop, cubeStructure, executor, DefiningClassLoader.create(), chunkStorage)
+			.withFusedQueries(fused)
+			.build();
+		StateManager<LogDiff<CubeDiff>, LogState<CubeDiff, CubeState>> stateManager = new InMemoryStateManager(cubeStructure);
+
+		int n = 0;
+		for (int chunk = 0; chunk < CHUNKS; chunk++) {
+			List<Event> events = new ArrayList<>();
+			for (int i = 0; i < CHUNK_RECORDS; i++, n++) {
+				events.add(new Event(n % 10, n % 1000, n, n % 100));
+			}
+			await(StreamSuppliers.ofIterable(events)
+				.streamTo(cubeExecutor.consume(Event.class))
+				.then(cubeDiff -> chunkStorage.finish(cubeDiff.addedProtoChunks().collect(toSet()))
+					.map(chunkIds -> materializeProtoDiff(cubeDiff, chunkIds)))
+				.then(cubeDiff -> stateManager.push(List.of(LogDiff.forCurrentPosition(cubeDiff)))));
+		}
+
+		cubeReporting = CubeReporting.create(stateManager, cubeStructure, cubeExecutor);
+		query = CubeQuery.builder()
+			.withAttributes("advertiser")
+			.withMeasures("impressions")
+			.withWhere(gt("campaign", 100))
+			.withReportType(ReportType.DATA)
+			.build();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		executor.shutdown();
+		try (Stream<Path> paths = Files.walk(storageDir)) {
+			for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+				Files.delete(path);
+			}
+		}
+	}
+
+	@Benchmark
+	public void query(Blackhole blackhole) throws QueryException {
+		blackhole.consume(await(cubeReporting.query(query)));
+	}
+
+	private <T> T await(Promise<T> promise) {
+		eventloop.run();
+		try {
+			return promise.getResult();
+		} catch (IllegalStateException e) {
+			throw new AssertionError(promise.getException());
+		}
+	}
+
+	private static final class LocalChunkIdGenerator implements ChunkIdGenerator {
+		private long id;
+
+		@Override
+		public Promise<String> createProtoChunkId() {
+			return Promise.of(UUID.randomUUID().toString());
+		}
+
+		@Override
+		public Promise<Map<String, Long>> convertToActualChunkIds(Set<String> protoChunkIds) {
+			return Promise.of(protoChunkIds.stream().collect(toMap(Function.identity(), $ -> ++id)));
+		}
+	}
+
+	private static final class InMemoryStateManager implements StateManager<LogDiff<CubeDiff>, LogState<CubeDiff, CubeState>> {
+		private final LogState<CubeDiff, CubeState> state;
+
+		private InMemoryStateManager(CubeStructure cubeStructure) {
+			this.state = LogState.create(CubeState.create(cubeStructure));
+		}
+
+		@Override
+		public Promise<Void> catchUp() {
+			return Promise.complete();
+		}
+
+		@Override
+		public Promise<Void> push(List<LogDiff<CubeDiff>> diffs) {
+			diffs.forEach(state::apply);
+			return Promise.complete();
+		}
+
+		@Override
+		public StateChangesSupplier<LogDiff<CubeDiff>> subscribeToStateChanges(Predicate<LogDiff<CubeDiff>> predicate) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public <R> R query(Function<LogState<CubeDiff, CubeState>, R> queryFn) {
+			return queryFn.apply(state);
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder()
+			.include(CubeQueryBenchmark.class.getSimpleName())
+			.forks(2)
+			.warmupIterations(3)
+			.warmupTime(TimeValue.seconds(1L))
+			.measurementIterations(5)
+			.measurementTime(TimeValue.seconds(2L))
+			.mode(Mode.AverageTime)
+			.timeUnit(TimeUnit.MILLISECONDS)
+			.build();
+
+		new Runner(opt).run();
+	}
+}
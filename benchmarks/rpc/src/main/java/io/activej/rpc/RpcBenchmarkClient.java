@@ -4,6 +4,7 @@ import io.activej.async.callback.Callback;
 import io.activej.common.MemSize;
 import io.activej.config.Config;
 import io.activej.config.ConfigModule;
+import io.activej.datastream.csp.ChannelSerializer.FlushReason;
 import io.activej.eventloop.Eventloop;
 import io.activej.inject.annotation.Inject;
 import io.activej.inject.annotation.Named;
@@ -15,11 +16,16 @@ import io.activej.promise.SettablePromise;
 import io.activej.reactor.nio.NioReactor;
 import io.activej.rpc.client.IRpcClient;
 import io.activej.rpc.client.RpcClient;
+import io.activej.rpc.protocol.RpcFlushStats;
 import io.activej.service.ServiceGraphModule;
 import org.jetbrains.annotations.Nullable;
 
 import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
 
+import static io.activej.config.converter.ConfigConverters.ofDuration;
 import static io.activej.config.converter.ConfigConverters.ofInteger;
 import static io.activej.config.converter.ConfigConverters.ofMemSize;
 import static io.activej.inject.module.Modules.combine;
@@ -60,6 +66,12 @@ public class RpcBenchmarkClient extends Launcher {
 				config.get(ofFrameFormat(), "rpc.frameFormat", null))
 			.withMessageTypes(Integer.class)
 			.withStrategy(server(new InetSocketAddress(config.get(ofInteger(), "rpc.server.port"))))
+			.initialize(builder -> {
+				MemSize flushThreshold = config.get(ofMemSize(), "rpc.flushThreshold", null);
+				if (flushThreshold != null) {
+					builder.withAdaptiveFlush(flushThreshold, config.get(ofDuration(), "rpc.maxFlushDelay", Duration.ofMillis(1)));
+				}
+			})
 			.build();
 	}
 
@@ -137,6 +149,18 @@ public class RpcBenchmarkClient extends Launcher {
 		long requestsPerSecond = (long) (totalRequests / avgTime * 1000);
 		System.out.printf("Time: %dms; Average time: %sms; Best time: %dms; Worst time: %dms; Requests per second: %d%n",
 			time, avgTime, bestTime, worstTime, requestsPerSecond);
+		if (rpcClient instanceof RpcClient client) {
+			System.out.println(reactor.submit(() -> Promise.of(flushStatsSummary(client.getFlushStats()))).get());
+		}
+	}
+
+	private String flushStatsSummary(RpcFlushStats flushStats) {
+		Map<FlushReason, Long> flushReasons = new EnumMap<>(FlushReason.class);
+		flushStats.getFlushReasons().forEach((reason, stats) -> flushReasons.put(reason, stats.getTotalCount()));
+		flushStats.refresh(reactor.currentTimeMillis());
+		return String.format("Flushes: %d; Average batch: %.1f messages, %.0f bytes; Flush reasons: %s",
+			flushStats.getBatchMessages().getCount(), flushStats.getBatchMessages().getAverage(),
+			flushStats.getBatchBytes().getAverage(), flushReasons);
 	}
 
 	private long round() throws Exception {
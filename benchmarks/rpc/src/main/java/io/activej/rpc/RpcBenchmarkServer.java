@@ -14,6 +14,9 @@ import io.activej.reactor.nio.NioReactor;
 import io.activej.rpc.server.RpcServer;
 import io.activej.service.ServiceGraphModule;
 
+import java.time.Duration;
+
+import static io.activej.config.converter.ConfigConverters.ofDuration;
 import static io.activej.config.converter.ConfigConverters.ofInteger;
 import static io.activej.config.converter.ConfigConverters.ofMemSize;
 import static io.activej.inject.module.Modules.combine;
@@ -38,6 +41,12 @@ public class RpcBenchmarkServer extends Launcher {
 			.withListenPort(config.get(ofInteger(), "rpc.server.port"))
 			.withMessageTypes(Integer.class)
 			.withHandler(Integer.class, req -> Promise.of(req * 2))
+			.initialize(builder -> {
+				MemSize flushThreshold = config.get(ofMemSize(), "rpc.flushThreshold", null);
+				if (flushThreshold != null) {
+					builder.withAdaptiveFlush(flushThreshold, config.get(ofDuration(), "rpc.maxFlushDelay", Duration.ofMillis(1)));
+				}
+			})
 			.build();
 
 	}
@@ -0,0 +1,226 @@
+package io.activej.rpc;
+
+import io.activej.async.callback.Callback;
+import io.activej.common.initializer.Initializer;
+import io.activej.config.Config;
+import io.activej.config.ConfigModule;
+import io.activej.eventloop.Eventloop;
+import io.activej.inject.Key;
+import io.activej.inject.annotation.*;
+import io.activej.inject.module.Module;
+import io.activej.launcher.Launcher;
+import io.activej.promise.Promise;
+import io.activej.promise.Promises;
+import io.activej.promise.SettablePromise;
+import io.activej.reactor.nio.NioReactor;
+import io.activej.rpc.client.RpcClient;
+import io.activej.rpc.client.sender.strategy.RpcStrategy;
+import io.activej.rpc.client.sender.strategy.impl.PowerOfTwoChoices;
+import io.activej.rpc.server.RpcServer;
+import io.activej.service.ServiceGraphModule;
+import io.activej.service.ServiceGraphModuleSettings;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+
+import static io.activej.config.converter.ConfigConverters.*;
+import static io.activej.inject.module.Modules.combine;
+import static io.activej.rpc.client.sender.strategy.RpcStrategies.*;
+import static java.lang.Math.min;
+
+/**
+ * Compares load balancing strategies of an RPC client, when one of the servers is slowed down.
+ * <p>
+ * The strategy is set by the {@code benchmark.strategy} config property,
+ * either {@code roundRobin} or {@code powerOfTwoChoices}.
+ */
+@SuppressWarnings("WeakerAccess")
+public class RpcLoadBalancingBenchmark extends Launcher {
+	private static final int TOTAL_REQUESTS = 200_000;
+	private static final int WARMUP_ROUNDS = 2;
+	private static final int BENCHMARK_ROUNDS = 5;
+	private static final int SERVICE_PORT = 25565;
+	private static final int ACTIVE_REQUESTS = 1000;
+	private static final int SLOW_SERVER_DELAY = 5;
+
+	@Inject
+	RpcClient rpcClient;
+
+	@Inject
+	@Named("client")
+	NioReactor reactor;
+
+	@Inject
+	Config config;
+
+	@Provides
+	@Named("client")
+	NioReactor reactorClient() {
+		return Eventloop.create();
+	}
+
+	@Provides
+	@Named("server")
+	NioReactor reactorServer() {
+		return Eventloop.create();
+	}
+
+	@Provides
+	RpcClient rpcClient(@Named("client") NioReactor reactor, Config config) {
+		int port = config.get(ofInteger(), "rpc.server.port");
+		List<RpcStrategy> servers = List.of(
+			server(new InetSocketAddress(port)),
+			server(new InetSocketAddress(port + 1)),
+			server(new InetSocketAddress(port + 2)));
+		String strategy = config.get("benchmark.strategy", "powerOfTwoChoices");
+		return RpcClient.builder(reactor)
+			.withMessageTypes(Integer.class)
+			.withStrategy(switch (strategy) {
+				case "roundRobin" -> roundRobin(servers);
+				case "powerOfTwoChoices" -> powerOfTwoChoices(servers);
+				default -> throw new IllegalArgumentException("Unknown strategy: " + strategy);
+			})
+			.build();
+	}
+
+	@Provides
+	@Eager
+	@Named("fast1")
+	RpcServer fastServer1(@Named("server") NioReactor reactor, Config config) {
+		return createServer(reactor, config.get(ofInteger(), "rpc.server.port"), 0);
+	}
+
+	@Provides
+	@Eager
+	@Named("fast2")
+	RpcServer fastServer2(@Named("server") NioReactor reactor, Config config) {
+		return createServer(reactor, config.get(ofInteger(), "rpc.server.port") + 1, 0);
+	}
+
+	@Provides
+	@Eager
+	@Named("slow")
+	RpcServer slowServer(@Named("server") NioReactor reactor, Config config) {
+		return createServer(reactor, config.get(ofInteger(), "rpc.server.port") + 2,
+			config.get(ofInteger(), "benchmark.slowServerDelay", SLOW_SERVER_DELAY));
+	}
+
+	private static RpcServer createServer(NioReactor reactor, int port, int delayMillis) {
+		return RpcServer.builder(reactor)
+			.withListenPort(port)
+			.withMessageTypes(Integer.class)
+			.withHandler(Integer.class, delayMillis == 0 ?
+				req -> Promise.of(req * 2) :
+				req -> Promises.delay(delayMillis, req * 2))
+			.build();
+	}
+
+	@ProvidesIntoSet
+	Initializer<ServiceGraphModuleSettings> configureServiceGraph() {
+		// add logical dependency so that service graph starts client only after it started the servers
+		return settings -> settings
+			.withDependency(Key.of(RpcClient.class), Key.of(RpcServer.class, "fast1"))
+			.withDependency(Key.of(RpcClient.class), Key.of(RpcServer.class, "fast2"))
+			.withDependency(Key.of(RpcClient.class), Key.of(RpcServer.class, "slow"));
+	}
+
+	@Provides
+	Config config() {
+		return Config.create()
+			.with("rpc.server.port", "" + SERVICE_PORT)
+			.overrideWith(Config.ofSystemProperties("config"));
+	}
+
+	@Override
+	protected Module getModule() {
+		return combine(
+			ServiceGraphModule.create(),
+			ConfigModule.builder()
+				.withEffectiveConfigLogger()
+				.build());
+	}
+
+	private int warmupRounds;
+	private int benchmarkRounds;
+	private int totalRequests;
+	private int activeRequests;
+
+	@Override
+	protected void onStart() {
+		warmupRounds = config.get(ofInteger(), "benchmark.warmupRounds", WARMUP_ROUNDS);
+		benchmarkRounds = config.get(ofInteger(), "benchmark.benchmarkRounds", BENCHMARK_ROUNDS);
+		totalRequests = config.get(ofInteger(), "benchmark.totalRequests", TOTAL_REQUESTS);
+		activeRequests = config.get(ofInteger(), "benchmark.activeRequests", ACTIVE_REQUESTS);
+	}
+
+	int sent;
+	int completed;
+	long totalLatencyNanos;
+
+	@Override
+	protected void run() throws Exception {
+		System.out.println("Warming up ...");
+		for (int i = 0; i < warmupRounds; i++) {
+			round();
+		}
+
+		System.out.println("Start benchmarking RPC load balancing");
+		long time = 0;
+		for (int i = 0; i < benchmarkRounds; i++) {
+			long roundTime = round();
+			time += roundTime;
+			System.out.printf("Round: %d; Round time: %dms; RPS : %d; Average latency: %.3fms%n",
+				i + 1, roundTime, totalRequests * 1000L / roundTime, totalLatencyNanos / 1e6 / totalRequests);
+		}
+		System.out.printf("Average time: %sms; Requests per second: %d%n",
+			(double) time / benchmarkRounds, totalRequests * 1000L * benchmarkRounds / time);
+
+		Map<String, PowerOfTwoChoices.Load> loads = reactor.submit(() -> Promise.of(rpcClient.getStrategyLoads())).get();
+		loads.forEach((servers, load) -> System.out.printf("%s: requests %d, response time %.3fms%n",
+			servers, load.getRequests(), load.getResponseTime()));
+	}
+
+	private long round() throws Exception {
+		return reactor.submit(this::roundCall).get();
+	}
+
+	private Promise<Long> roundCall() {
+		SettablePromise<Long> promise = new SettablePromise<>();
+
+		long start = System.currentTimeMillis();
+
+		sent = 0;
+		completed = 0;
+		totalLatencyNanos = 0;
+
+		for (int i = 0; i < min(activeRequests, totalRequests); i++) {
+			send(promise, start);
+		}
+
+		return promise;
+	}
+
+	private void send(SettablePromise<Long> promise, long start) {
+		long sentNanos = System.nanoTime();
+		rpcClient.sendRequest(sent++, new Callback<Integer>() {
+			@Override
+			public void accept(Integer result, @Nullable Exception e) {
+				totalLatencyNanos += System.nanoTime() - sentNanos;
+				if (++completed == totalRequests) {
+					promise.set(System.currentTimeMillis() - start);
+					return;
+				}
+				if (sent < totalRequests) {
+					send(promise, start);
+				}
+			}
+		});
+	}
+
+	public static void main(String[] args) throws Exception {
+		RpcLoadBalancingBenchmark benchmark = new RpcLoadBalancingBenchmark();
+		benchmark.launch(args);
+	}
+}
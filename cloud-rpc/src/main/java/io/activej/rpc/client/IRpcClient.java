@@ -18,6 +18,8 @@ package io.activej.rpc.client;
 
 import io.activej.async.callback.Callback;
 import io.activej.common.annotation.ComponentInterface;
+import io.activej.datastream.supplier.StreamSupplier;
+import io.activej.datastream.supplier.StreamSuppliers;
 import io.activej.promise.Promise;
 import io.activej.promise.SettablePromise;
 
@@ -41,4 +43,12 @@ public interface IRpcClient {
 	default <I, O> void sendRequest(I request, Callback<O> cb) {
 		sendRequest(request, Integer.MAX_VALUE, cb);
 	}
+
+	/**
+	 * Sends a streaming request, which is handled by an {@link io.activej.rpc.server.RpcStreamHandler}
+	 * on a server, and returns a stream of response items
+	 */
+	default <I, O> StreamSupplier<O> sendStreamRequest(I request) {
+		return StreamSuppliers.closingWithError(new UnsupportedOperationException("Streaming requests are not supported"));
+	}
 }
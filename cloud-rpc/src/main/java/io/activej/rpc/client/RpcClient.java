@@ -25,6 +25,8 @@ import io.activej.common.MemSize;
 import io.activej.common.builder.AbstractBuilder;
 import io.activej.csp.process.frame.FrameFormat;
 import io.activej.datastream.csp.ChannelSerializer;
+import io.activej.datastream.supplier.StreamSupplier;
+import io.activej.datastream.supplier.StreamSuppliers;
 import io.activej.jmx.api.attribute.JmxAttribute;
 import io.activej.jmx.api.attribute.JmxOperation;
 import io.activej.jmx.api.attribute.JmxReducers.JmxReducerSum;
@@ -44,7 +46,10 @@ import io.activej.rpc.client.jmx.RpcRequestStats;
 import io.activej.rpc.client.sender.RpcSender;
 import io.activej.rpc.client.sender.strategy.RpcStrategies;
 import io.activej.rpc.client.sender.strategy.RpcStrategy;
+import io.activej.rpc.client.sender.strategy.impl.Hedging;
+import io.activej.rpc.client.sender.strategy.impl.PowerOfTwoChoices;
 import io.activej.rpc.protocol.RpcException;
+import io.activej.rpc.protocol.RpcFlushStats;
 import io.activej.rpc.protocol.RpcMessage;
 import io.activej.rpc.protocol.RpcStream;
 import io.activej.rpc.server.RpcServer;
@@ -60,6 +65,7 @@ import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.Executor;
 
+import static io.activej.common.Checks.checkArgument;
 import static io.activej.common.Checks.checkState;
 import static io.activej.common.Utils.nonNullElseGet;
 import static io.activej.net.socket.tcp.SslTcpSocket.wrapClientSocket;
@@ -91,6 +97,7 @@ public final class RpcClient extends AbstractNioReactive
 
 	public static final Duration DEFAULT_CONNECT_TIMEOUT = ApplicationSettings.getDuration(RpcClient.class, "connectTimeout", Duration.ZERO);
 	public static final Duration DEFAULT_RECONNECT_INTERVAL = ApplicationSettings.getDuration(RpcClient.class, "reconnectInterval", Duration.ZERO);
+	public static final int DEFAULT_STREAM_WINDOW = ApplicationSettings.getInt(RpcClient.class, "streamWindow", 256);
 	public static final MemSize DEFAULT_PACKET_SIZE = ApplicationSettings.getMemSize(RpcClient.class, "packetSize", ChannelSerializer.DEFAULT_INITIAL_BUFFER_SIZE);
 
 	private static final RpcException SET_STRATEGY_EXCEPTION = new RpcException("Could not change strategy");
@@ -117,9 +124,12 @@ public final class RpcClient extends AbstractNioReactive
 	private MemSize defaultPacketSize = DEFAULT_PACKET_SIZE;
 	private @Nullable FrameFormat frameFormat;
 	private Duration autoFlushInterval = Duration.ZERO;
+	private @Nullable MemSize flushThreshold;
+	private @Nullable Duration maxFlushDelay;
 	private Duration keepAliveInterval = Duration.ZERO;
 
 	private long connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT.toMillis();
+	private int streamWindow = DEFAULT_STREAM_WINDOW;
 	private long reconnectIntervalMillis = DEFAULT_RECONNECT_INTERVAL.toMillis();
 
 	private BinarySerializer<RpcMessage> requestSerializer;
@@ -140,6 +150,7 @@ public final class RpcClient extends AbstractNioReactive
 	private final Map<Class<?>, RpcRequestStats> requestStatsPerClass = new HashMap<>();
 	private final Map<InetSocketAddress, RpcConnectStats> connectsStatsPerAddress = new HashMap<>();
 	private final ExceptionStats lastProtocolError = ExceptionStats.create();
+	private final RpcFlushStats flushStats = RpcFlushStats.create(SMOOTHING_WINDOW);
 
 	private final JmxInspector statsSocket = new JmxInspector();
 
@@ -297,6 +308,24 @@ public final class RpcClient extends AbstractNioReactive
 			return this;
 		}
 
+		/**
+		 * Enables adaptive flush of messages to the network, which overrides an automatic flush interval.
+		 * <p>
+		 * Messages are flushed at the end of the current eventloop tick if a connection is not busy writing.
+		 * Otherwise, messages are batched until a previous write completes, the maximum flush delay passes
+		 * or the size of a batch reaches the flush threshold.
+		 *
+		 * @param flushThreshold size of a batch of messages that is flushed immediately
+		 * @param maxFlushDelay  maximum delay of a batch of messages while a connection is busy writing
+		 * @return the builder for RPC client with adaptive message flush
+		 */
+		public Builder withAdaptiveFlush(MemSize flushThreshold, Duration maxFlushDelay) {
+			checkNotBuilt(this);
+			RpcClient.this.flushThreshold = flushThreshold;
+			RpcClient.this.maxFlushDelay = maxFlushDelay;
+			return this;
+		}
+
 		/**
 		 * Sets an interval for sending keep-alive messages to the RPC server.
 		 * An interval of {@link Duration#ZERO} means no keep-alive message will be sent.
@@ -310,6 +339,20 @@ public final class RpcClient extends AbstractNioReactive
 			return this;
 		}
 
+		/**
+		 * Sets a number of stream items a server may send ahead of a consumer of a streaming request.
+		 * A client grants more credits to a server once a half of the window is consumed.
+		 *
+		 * @param streamWindow a maximum number of stream items in flight
+		 * @return the builder for RPC client with specified stream window
+		 */
+		public Builder withStreamWindow(int streamWindow) {
+			checkNotBuilt(this);
+			checkArgument(streamWindow > 0, "Stream window must be positive");
+			RpcClient.this.streamWindow = streamWindow;
+			return this;
+		}
+
 		/**
 		 * Sets a duration for which a client will wait on connection to the RPC server before failing with connection
 		 * timeout error.
@@ -461,8 +504,8 @@ public final class RpcClient extends AbstractNioReactive
 					tcpSocket :
 					wrapClientSocket(reactor, tcpSocket, sslContext, sslExecutor);
 				RpcStream stream = new RpcStream(socket, responseSerializer, requestSerializer, defaultPacketSize,
-					autoFlushInterval, frameFormat, false); // , statsSerializer, statsDeserializer, statsCompressor, statsDecompressor);
-				RpcClientConnection connection = new RpcClientConnection(reactor, this, address, stream, keepAliveInterval.toMillis());
+					autoFlushInterval, flushThreshold, maxFlushDelay, frameFormat, false, flushStats); // , statsSerializer, statsDeserializer, statsCompressor, statsDecompressor);
+				RpcClientConnection connection = new RpcClientConnection(reactor, this, address, stream, keepAliveInterval.toMillis(), streamWindow);
 				stream.setListener(connection);
 
 				// jmx
@@ -605,6 +648,12 @@ public final class RpcClient extends AbstractNioReactive
 		requestSender.sendRequest(request, cb);
 	}
 
+	@Override
+	public <I, O> StreamSupplier<O> sendStreamRequest(I request) {
+		if (CHECKS) checkInReactorThread(this);
+		return requestSender.sendStreamRequest(request);
+	}
+
 	public IRpcClient adaptToAnotherReactor(Reactor anotherReactor) {
 		if (anotherReactor == this.reactor) {
 			return this;
@@ -654,6 +703,11 @@ public final class RpcClient extends AbstractNioReactive
 		public <I, O> void sendRequest(I request, int timeout, Callback<O> cb) {
 			cb.accept(null, NO_SENDER_AVAILABLE_EXCEPTION);
 		}
+
+		@Override
+		public <I, O> StreamSupplier<O> sendStreamRequest(I request) {
+			return StreamSuppliers.closingWithError(NO_SENDER_AVAILABLE_EXCEPTION);
+		}
 	}
 
 	public static final class NoServersRpcStrategy implements RpcStrategy {
@@ -732,6 +786,27 @@ public final class RpcClient extends AbstractNioReactive
 		return connections;
 	}
 
+	@JmxAttribute(description = "load stats of sub-strategies, if a top-level strategy is power-of-two-choices")
+	public Map<String, PowerOfTwoChoices.Load> getStrategyLoads() {
+		if (!(strategy instanceof PowerOfTwoChoices powerOfTwoChoices)) return Map.of();
+
+		Map<String, PowerOfTwoChoices.Load> result = new LinkedHashMap<>();
+		for (Map.Entry<RpcStrategy, PowerOfTwoChoices.Load> entry : powerOfTwoChoices.getLoads().entrySet()) {
+			result.put(entry.getKey().getAddresses().toString(), entry.getValue());
+		}
+		return result;
+	}
+
+	@JmxAttribute(description = "hedged requests stats, if a top-level strategy is hedging")
+	public Hedging.@Nullable Stats getHedgingStats() {
+		return strategy instanceof Hedging hedging ? hedging.getStats() : null;
+	}
+
+	@JmxAttribute(description = "stats of message batches flushed to the network")
+	public RpcFlushStats getFlushStats() {
+		return flushStats;
+	}
+
 	@JmxAttribute(reducer = JmxReducerSum.class)
 	public int getActiveConnections() {
 		return connections.size();
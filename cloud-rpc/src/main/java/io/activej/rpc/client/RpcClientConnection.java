@@ -22,7 +22,10 @@ import io.activej.async.exception.AsyncTimeoutException;
 import io.activej.common.Checks;
 import io.activej.common.recycle.Recyclers;
 import io.activej.common.time.Stopwatch;
+import io.activej.datastream.supplier.AbstractStreamSupplier;
 import io.activej.datastream.supplier.StreamDataAcceptor;
+import io.activej.datastream.supplier.StreamSupplier;
+import io.activej.datastream.supplier.StreamSuppliers;
 import io.activej.jmx.api.JmxRefreshable;
 import io.activej.jmx.api.attribute.JmxAttribute;
 import io.activej.jmx.api.attribute.JmxReducers.JmxReducerSum;
@@ -61,6 +64,8 @@ public final class RpcClientConnection extends AbstractReactive implements RpcSt
 	private final RpcStream stream;
 	private final InetSocketAddress address;
 	private final Map<Integer, Callback<?>> activeRequests = new HashMap<>();
+	private final Map<Integer, ClientStream<?>> activeStreams = new HashMap<>();
+	private final int streamWindow;
 
 	private ArrayList<RpcMessage> initialBuffer = new ArrayList<>();
 
@@ -78,13 +83,15 @@ public final class RpcClientConnection extends AbstractReactive implements RpcSt
 	private boolean pongReceived;
 
 	RpcClientConnection(
-		Reactor reactor, RpcClient rpcClient, InetSocketAddress address, RpcStream stream, long keepAliveMillis
+		Reactor reactor, RpcClient rpcClient, InetSocketAddress address, RpcStream stream, long keepAliveMillis,
+		int streamWindow
 	) {
 		super(reactor);
 		this.rpcClient = rpcClient;
 		this.stream = stream;
 		this.address = address;
 		this.keepAliveMillis = keepAliveMillis;
+		this.streamWindow = streamWindow;
 
 		// JMX
 		this.monitoring = false;
@@ -183,6 +190,26 @@ public final class RpcClientConnection extends AbstractReactive implements RpcSt
 		}
 	}
 
+	@Override
+	public <I, O> StreamSupplier<O> sendStreamRequest(I request) {
+		if (CHECKS) checkInReactorThread(this);
+		// jmx
+		totalRequests.recordEvent();
+		connectionRequests.recordEvent();
+
+		if (overloaded && !(request instanceof RpcMandatoryData)) {
+			rpcClient.getGeneralRequestsStats().getRejectedRequests().recordEvent();
+			connectionStats.getRejectedRequests().recordEvent();
+			return StreamSuppliers.closingWithError(RPC_OVERLOAD_EXCEPTION);
+		}
+
+		index++;
+		ClientStream<O> clientStream = new ClientStream<>(index);
+		activeStreams.put(index, clientStream);
+		downstreamDataAcceptor.accept(new RpcMessage(index, request));
+		return clientStream;
+	}
+
 	private <I, O> Callback<O> doJmxMonitoring(I request, int timeout, Callback<O> cb) {
 		RpcRequestStats requestStatsPerClass = rpcClient.ensureRequestStatsPerClass(request.getClass());
 		requestStatsPerClass.getTotalRequests().recordEvent();
@@ -201,6 +228,13 @@ public final class RpcClientConnection extends AbstractReactive implements RpcSt
 	@Override
 	public void accept(RpcMessage message) {
 		if (CHECKS) checkInReactorThread(this);
+		if (!activeStreams.isEmpty()) {
+			ClientStream<?> clientStream = activeStreams.get(message.getIndex());
+			if (clientStream != null) {
+				clientStream.onMessage(message.getMessage());
+				return;
+			}
+		}
 		if (message.getMessage().getClass() == RpcRemoteException.class) {
 			processErrorMessage(message);
 		} else if (message.getMessage().getClass() == RpcControlMessage.class) {
@@ -211,7 +245,7 @@ public final class RpcClientConnection extends AbstractReactive implements RpcSt
 			if (cb == null) return;
 
 			cb.accept(message.getMessage(), null);
-			if (serverClosing && activeRequests.isEmpty()) {
+			if (serverClosing && activeRequests.isEmpty() && activeStreams.isEmpty()) {
 				shutdown();
 			}
 		}
@@ -235,7 +269,7 @@ public final class RpcClientConnection extends AbstractReactive implements RpcSt
 		if (controlMessage == RpcControlMessage.CLOSE) {
 			rpcClient.onClosedConnection(address);
 			serverClosing = true;
-			if (activeRequests.isEmpty()) {
+			if (activeRequests.isEmpty() && activeStreams.isEmpty()) {
 				shutdown();
 			}
 		} else if (controlMessage == RpcControlMessage.PONG) {
@@ -325,6 +359,9 @@ public final class RpcClientConnection extends AbstractReactive implements RpcSt
 				}
 			}
 		}
+		for (ClientStream<?> clientStream : new ArrayList<>(activeStreams.values())) {
+			clientStream.closeEx(new AsyncCloseException("Connection closed"));
+		}
 	}
 
 	public boolean isClosed() {
@@ -360,11 +397,83 @@ public final class RpcClientConnection extends AbstractReactive implements RpcSt
 		return activeRequests.size();
 	}
 
+	@JmxAttribute(reducer = JmxReducerSum.class)
+	public int getActiveStreams() {
+		return activeStreams.size();
+	}
+
 	@Override
 	public void refresh(long timestamp) {
 		connectionStats.refresh(timestamp);
 	}
 
+	/**
+	 * A supplier of response items of a streaming request.
+	 * <p>
+	 * A server sends no more items than it has been granted credits for. Credits are granted
+	 * up to a stream window, once a half of the window is consumed, and only while a consumer is ready,
+	 * so that a slow consumer suspends a server-side stream.
+	 */
+	private final class ClientStream<O> extends AbstractStreamSupplier<O> {
+		private final int index;
+		private int outstandingCredits;
+
+		ClientStream(int index) {
+			this.index = index;
+		}
+
+		@SuppressWarnings("unchecked")
+		void onMessage(Object message) {
+			if (message == RpcControlMessage.END_OF_STREAM) {
+				activeStreams.remove(index);
+				sendEndOfStream();
+				onStreamFinished();
+			} else if (message instanceof RpcRemoteException remoteException) {
+				activeStreams.remove(index);
+				// jmx
+				connectionStats.getFailedRequests().recordEvent();
+				rpcClient.getGeneralRequestsStats().getFailedRequests().recordEvent();
+				connectionStats.getServerExceptions().recordException(remoteException, null);
+				rpcClient.getGeneralRequestsStats().getServerExceptions().recordException(remoteException, null);
+
+				closeEx(remoteException);
+				onStreamFinished();
+			} else {
+				outstandingCredits--;
+				send((O) message);
+				if (isReady()) {
+					grantCredits();
+				}
+			}
+		}
+
+		private void grantCredits() {
+			if (outstandingCredits > streamWindow / 2) return;
+			int credits = streamWindow - outstandingCredits;
+			outstandingCredits += credits;
+			downstreamDataAcceptor.accept(new RpcMessage(index, new RpcStreamCredits(credits)));
+		}
+
+		private void onStreamFinished() {
+			if (serverClosing && activeRequests.isEmpty() && activeStreams.isEmpty()) {
+				shutdown();
+			}
+		}
+
+		@Override
+		protected void onResumed() {
+			grantCredits();
+		}
+
+		@Override
+		protected void onCleanup() {
+			if (activeStreams.remove(index, this) && !closed) {
+				downstreamDataAcceptor.accept(new RpcMessage(index, RpcControlMessage.CANCEL));
+				onStreamFinished();
+			}
+		}
+	}
+
 	public final class JmxConnectionMonitoringResultCallback<T> implements Callback<T> {
 		private final Stopwatch stopwatch;
 		private final Callback<T> callback;
@@ -17,6 +17,9 @@
 package io.activej.rpc.client.sender;
 
 import io.activej.async.callback.Callback;
+import io.activej.datastream.supplier.StreamSupplier;
+import io.activej.datastream.supplier.StreamSuppliers;
+import io.activej.rpc.protocol.RpcException;
 
 public interface RpcSender {
 	<I, O> void sendRequest(I request, int timeout, Callback<O> cb);
@@ -24,4 +27,13 @@ public interface RpcSender {
 	default <I, O> void sendRequest(I request, Callback<O> cb) {
 		sendRequest(request, Integer.MAX_VALUE, cb);
 	}
+
+	/**
+	 * Sends a streaming request and returns a stream of response items.
+	 * <p>
+	 * Only senders which route a request to a single connection support streaming requests.
+	 */
+	default <I, O> StreamSupplier<O> sendStreamRequest(I request) {
+		return StreamSuppliers.closingWithError(new RpcException("Streaming requests are not supported by " + getClass().getSimpleName()));
+	}
 }
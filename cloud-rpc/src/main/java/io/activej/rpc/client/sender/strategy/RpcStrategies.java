@@ -50,6 +50,22 @@ public class RpcStrategies {
 		return RoundRobin.create(strategies);
 	}
 
+	public static RpcStrategy hedging(RpcStrategy... strategies) {
+		return hedging(List.of(strategies));
+	}
+
+	public static RpcStrategy hedging(List<? extends RpcStrategy> strategies) {
+		return Hedging.create(strategies);
+	}
+
+	public static RpcStrategy powerOfTwoChoices(RpcStrategy... strategies) {
+		return powerOfTwoChoices(List.of(strategies));
+	}
+
+	public static RpcStrategy powerOfTwoChoices(List<? extends RpcStrategy> strategies) {
+		return PowerOfTwoChoices.create(strategies);
+	}
+
 	public static <T> RpcStrategy sharding(ToIntFunction<T> shardingFunction, RpcStrategy... strategies) {
 		return sharding(shardingFunction, List.of(strategies));
 	}
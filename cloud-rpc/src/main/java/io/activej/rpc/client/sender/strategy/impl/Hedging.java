@@ -0,0 +1,317 @@
+/*
+ * Copyright (C) 2024 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.rpc.client.sender.strategy.impl;
+
+import io.activej.async.callback.Callback;
+import io.activej.common.ApplicationSettings;
+import io.activej.common.annotation.ExposedInternals;
+import io.activej.common.builder.AbstractBuilder;
+import io.activej.common.recycle.Recyclers;
+import io.activej.common.time.CurrentTimeProvider;
+import io.activej.jmx.api.attribute.JmxAttribute;
+import io.activej.reactor.Reactor;
+import io.activej.reactor.schedule.ScheduledRunnable;
+import io.activej.rpc.client.RpcClientConnectionPool;
+import io.activej.rpc.client.sender.RpcSender;
+import io.activej.rpc.client.sender.Utils;
+import io.activej.rpc.client.sender.strategy.RpcStrategy;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static io.activej.common.Checks.checkArgument;
+
+/**
+ * A strategy for idempotent requests, which reduces tail latency by hedging.
+ * <p>
+ * A request is sent to one of sub-strategies (in a round-robin manner). If there is no response
+ * within a hedge delay, the same request is sent to the next sub-strategy, and the first successful
+ * response is passed to a callback, while the other one is ignored.
+ * <p>
+ * A hedge delay is a given percentile of recent response times, unless a fixed delay is set.
+ * The number of hedges is limited by a budget, which is a fraction of all requests.
+ */
+@ExposedInternals
+public final class Hedging implements RpcStrategy {
+	public static final double DEFAULT_HEDGE_PERCENTILE = ApplicationSettings.getDouble(Hedging.class, "hedgePercentile", 0.95);
+	public static final double DEFAULT_MAX_HEDGE_RATIO = ApplicationSettings.getDouble(Hedging.class, "maxHedgeRatio", 0.05);
+	public static final Duration DEFAULT_INITIAL_HEDGE_DELAY = ApplicationSettings.getDuration(Hedging.class, "initialHedgeDelay", Duration.ofMillis(10));
+
+	public final List<? extends RpcStrategy> list;
+	public final Stats stats;
+
+	public double hedgePercentile;
+	public @Nullable Duration hedgeDelay;
+	public Duration initialHedgeDelay;
+	public double maxHedgeRatio;
+	public @Nullable CurrentTimeProvider now;
+
+	public Hedging(List<? extends RpcStrategy> list, double hedgePercentile, @Nullable Duration hedgeDelay, Duration initialHedgeDelay, double maxHedgeRatio) {
+		this.list = list;
+		this.hedgePercentile = hedgePercentile;
+		this.hedgeDelay = hedgeDelay;
+		this.initialHedgeDelay = initialHedgeDelay;
+		this.maxHedgeRatio = maxHedgeRatio;
+		this.stats = new Stats();
+	}
+
+	public static Hedging create(List<? extends RpcStrategy> strategies) {
+		return builder(strategies).build();
+	}
+
+	public static Builder builder(RpcStrategy... strategies) {
+		return builder(List.of(strategies));
+	}
+
+	public static Builder builder(List<? extends RpcStrategy> strategies) {
+		return new Hedging(strategies, DEFAULT_HEDGE_PERCENTILE, null, DEFAULT_INITIAL_HEDGE_DELAY, DEFAULT_MAX_HEDGE_RATIO).new Builder();
+	}
+
+	public final class Builder extends AbstractBuilder<Builder, Hedging> {
+		private Builder() {}
+
+		/**
+		 * Sets a percentile of recent response times, after which a hedge is sent
+		 */
+		public Builder withHedgePercentile(double hedgePercentile) {
+			checkNotBuilt(this);
+			checkArgument(hedgePercentile > 0 && hedgePercentile < 1, "Hedge percentile must be between 0 and 1");
+			Hedging.this.hedgePercentile = hedgePercentile;
+			return this;
+		}
+
+		/**
+		 * Sets a fixed delay, after which a hedge is sent, instead of a percentile of response times
+		 */
+		public Builder withHedgeDelay(Duration hedgeDelay) {
+			checkNotBuilt(this);
+			Hedging.this.hedgeDelay = hedgeDelay;
+			return this;
+		}
+
+		/**
+		 * Sets a hedge delay, which is used until enough response times are collected
+		 */
+		public Builder withInitialHedgeDelay(Duration initialHedgeDelay) {
+			checkNotBuilt(this);
+			Hedging.this.initialHedgeDelay = initialHedgeDelay;
+			return this;
+		}
+
+		/**
+		 * Sets a time provider, by which response times are measured.
+		 * By default, response times are measured by a reactor of a sender
+		 */
+		public Builder withCurrentTimeProvider(CurrentTimeProvider now) {
+			checkNotBuilt(this);
+			Hedging.this.now = now;
+			return this;
+		}
+
+		/**
+		 * Sets a maximum number of hedges as a fraction of all requests
+		 */
+		public Builder withMaxHedgeRatio(double maxHedgeRatio) {
+			checkNotBuilt(this);
+			checkArgument(maxHedgeRatio >= 0, "Hedge ratio cannot be negative");
+			Hedging.this.maxHedgeRatio = maxHedgeRatio;
+			return this;
+		}
+
+		@Override
+		protected Hedging doBuild() {
+			stats.hedgeDelayMillis = toMillis(hedgeDelay != null ? hedgeDelay : initialHedgeDelay);
+			return Hedging.this;
+		}
+	}
+
+	public Stats getStats() {
+		return stats;
+	}
+
+	@Override
+	public Set<InetSocketAddress> getAddresses() {
+		return Utils.getAddresses(list);
+	}
+
+	@Override
+	public @Nullable RpcSender createSender(RpcClientConnectionPool pool) {
+		List<RpcSender> senders = Utils.listOfSenders(list, pool);
+		if (senders.isEmpty())
+			return null;
+		if (senders.size() == 1)
+			return senders.get(0);
+		return new Sender(Reactor.getCurrentReactor(), senders, this);
+	}
+
+	private static long toMillis(Duration duration) {
+		return Math.max(duration.toMillis(), 1);
+	}
+
+	/**
+	 * Hedging stats and a state, which is shared between senders of a strategy
+	 */
+	public static final class Stats {
+		private static final int SAMPLES = 1024;
+		private static final int RECALCULATION_INTERVAL = 128;
+		private static final double MAX_BUDGET = 10.0;
+
+		private final long[] samples = new long[SAMPLES];
+		private int samplesCount;
+		private long hedgeDelayMillis;
+		private double budget;
+
+		private long requests;
+		private long hedges;
+		private long hedgesWon;
+		private long hedgesRejected;
+
+		private void recordResponseTime(Hedging hedging, long millis) {
+			samples[samplesCount++ % SAMPLES] = millis;
+			if (hedging.hedgeDelay == null && samplesCount % RECALCULATION_INTERVAL == 0) {
+				long[] sorted = Arrays.copyOf(samples, Math.min(samplesCount, SAMPLES));
+				Arrays.sort(sorted);
+				long percentileMillis = sorted[(int) (hedging.hedgePercentile * (sorted.length - 1))];
+				hedgeDelayMillis = Math.max(percentileMillis, 1);
+			}
+		}
+
+		private void onRequest(double maxHedgeRatio) {
+			requests++;
+			budget = Math.min(budget + maxHedgeRatio, MAX_BUDGET);
+		}
+
+		private boolean tryHedge() {
+			if (budget < 1.0) {
+				hedgesRejected++;
+				return false;
+			}
+			budget -= 1.0;
+			hedges++;
+			return true;
+		}
+
+		@JmxAttribute
+		public long getRequests() {
+			return requests;
+		}
+
+		@JmxAttribute(description = "number of requests, which were sent to a second server")
+		public long getHedges() {
+			return hedges;
+		}
+
+		@JmxAttribute(description = "number of hedges, which responded earlier than an original request")
+		public long getHedgesWon() {
+			return hedgesWon;
+		}
+
+		@JmxAttribute(description = "number of hedges, which were not sent because of exhausted budget")
+		public long getHedgesRejected() {
+			return hedgesRejected;
+		}
+
+		@JmxAttribute
+		public long getHedgeDelayMillis() {
+			return hedgeDelayMillis;
+		}
+	}
+
+	public static final class Sender implements RpcSender {
+		private final Reactor reactor;
+		private final CurrentTimeProvider now;
+		private final RpcSender[] subSenders;
+		private final Hedging hedging;
+		private final Stats stats;
+		private int nextSender;
+
+		Sender(Reactor reactor, List<RpcSender> senders, Hedging hedging) {
+			assert senders.size() > 1;
+			this.reactor = reactor;
+			this.now = hedging.now != null ? hedging.now : reactor;
+			this.subSenders = senders.toArray(new RpcSender[0]);
+			this.hedging = hedging;
+			this.stats = hedging.stats;
+		}
+
+		@Override
+		public <I, O> void sendRequest(I request, int timeout, Callback<O> cb) {
+			int index = nextSender;
+			nextSender = (nextSender + 1) % subSenders.length;
+			stats.onRequest(hedging.maxHedgeRatio);
+
+			HedgedRequest<O> hedgedRequest = new HedgedRequest<>(cb);
+			long delayMillis = stats.hedgeDelayMillis;
+			if (delayMillis < timeout) {
+				hedgedRequest.hedgeTask = reactor.delayBackground(delayMillis, () -> {
+					hedgedRequest.hedgeTask = null;
+					if (hedgedRequest.done || !stats.tryHedge()) return;
+					hedgedRequest.pending++;
+					RpcSender hedgeSender = subSenders[(index + 1) % subSenders.length];
+					hedgeSender.sendRequest(request, timeout == Integer.MAX_VALUE ? timeout : (int) (timeout - delayMillis),
+						hedgedRequest.callback(true));
+				});
+			}
+			subSenders[index].sendRequest(request, timeout, hedgedRequest.callback(false));
+		}
+
+		private final class HedgedRequest<O> {
+			private final Callback<O> cb;
+			private @Nullable ScheduledRunnable hedgeTask;
+			private int pending = 1;
+			private boolean done;
+
+			HedgedRequest(Callback<O> cb) {
+				this.cb = cb;
+			}
+
+			Callback<O> callback(boolean hedge) {
+				long sentMillis = now.currentTimeMillis();
+				return (result, e) -> {
+					if (e == null) {
+						stats.recordResponseTime(hedging, Math.max(now.currentTimeMillis() - sentMillis, 0));
+					}
+					pending--;
+					if (done) {
+						Recyclers.recycle(result);
+						return;
+					}
+					if (e == null) {
+						complete();
+						if (hedge) stats.hedgesWon++;
+						cb.accept(result, null);
+					} else if (pending == 0) {
+						complete();
+						cb.accept(null, e);
+					}
+				};
+			}
+
+			private void complete() {
+				done = true;
+				if (hedgeTask != null) {
+					hedgeTask.cancel();
+					hedgeTask = null;
+				}
+			}
+		}
+	}
+}
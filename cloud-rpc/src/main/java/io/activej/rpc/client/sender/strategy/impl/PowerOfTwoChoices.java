@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2024 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.rpc.client.sender.strategy.impl;
+
+import io.activej.async.callback.Callback;
+import io.activej.common.ApplicationSettings;
+import io.activej.common.annotation.ExposedInternals;
+import io.activej.common.builder.AbstractBuilder;
+import io.activej.jmx.api.attribute.JmxAttribute;
+import io.activej.rpc.client.RpcClientConnectionPool;
+import io.activej.rpc.client.sender.RpcSender;
+import io.activej.rpc.client.sender.Utils;
+import io.activej.rpc.client.sender.strategy.RpcStrategy;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.*;
+
+import static io.activej.common.Checks.checkArgument;
+
+/**
+ * A strategy which balances requests between sub-strategies according to their load.
+ * <p>
+ * For each request two distinct sub-strategies are picked at random, and the request is sent to the one
+ * with the lower load score. A score is a product of a number of requests in flight and of an exponentially
+ * weighted moving average of response times, which reacts to a slow response immediately and decays with time.
+ * This way, a server which slows down (for example, because of a GC pause) quickly stops receiving
+ * its full share of requests.
+ * <p>
+ * A failed request is accounted as a response which took at least an error penalty time,
+ * so that a server which fails fast is not mistaken for a fast one.
+ */
+@ExposedInternals
+public final class PowerOfTwoChoices implements RpcStrategy {
+	public static final Duration DEFAULT_DECAY_TIME = ApplicationSettings.getDuration(PowerOfTwoChoices.class, "decayTime", Duration.ofSeconds(10));
+	public static final Duration DEFAULT_ERROR_PENALTY = ApplicationSettings.getDuration(PowerOfTwoChoices.class, "errorPenalty", Duration.ofSeconds(1));
+
+	public final List<? extends RpcStrategy> list;
+	public final Map<RpcStrategy, Load> loads;
+
+	public Duration decayTime;
+	public Duration errorPenalty;
+	public Random random;
+
+	public PowerOfTwoChoices(List<? extends RpcStrategy> list, Duration decayTime, Duration errorPenalty, Random random) {
+		this.list = list;
+		this.decayTime = decayTime;
+		this.errorPenalty = errorPenalty;
+		this.random = random;
+		this.loads = new LinkedHashMap<>();
+		for (RpcStrategy strategy : list) {
+			loads.put(strategy, new Load());
+		}
+	}
+
+	public static PowerOfTwoChoices create(List<? extends RpcStrategy> strategies) {
+		return builder(strategies).build();
+	}
+
+	public static Builder builder(RpcStrategy... strategies) {
+		return builder(List.of(strategies));
+	}
+
+	public static Builder builder(List<? extends RpcStrategy> strategies) {
+		return new PowerOfTwoChoices(strategies, DEFAULT_DECAY_TIME, DEFAULT_ERROR_PENALTY, new Random()).new Builder();
+	}
+
+	public final class Builder extends AbstractBuilder<Builder, PowerOfTwoChoices> {
+		private Builder() {}
+
+		public Builder withDecayTime(Duration decayTime) {
+			checkNotBuilt(this);
+			checkArgument(decayTime.toNanos() > 0, "Decay time must be positive");
+			PowerOfTwoChoices.this.decayTime = decayTime;
+			return this;
+		}
+
+		public Builder withErrorPenalty(Duration errorPenalty) {
+			checkNotBuilt(this);
+			checkArgument(!errorPenalty.isNegative(), "Error penalty cannot be negative");
+			PowerOfTwoChoices.this.errorPenalty = errorPenalty;
+			return this;
+		}
+
+		public Builder withRandom(Random random) {
+			checkNotBuilt(this);
+			PowerOfTwoChoices.this.random = random;
+			return this;
+		}
+
+		@Override
+		protected PowerOfTwoChoices doBuild() {
+			return PowerOfTwoChoices.this;
+		}
+	}
+
+	/**
+	 * Returns load stats of sub-strategies, which are kept between re-creations of senders
+	 */
+	public Map<RpcStrategy, Load> getLoads() {
+		return loads;
+	}
+
+	@Override
+	public Set<InetSocketAddress> getAddresses() {
+		return Utils.getAddresses(list);
+	}
+
+	@Override
+	public @Nullable RpcSender createSender(RpcClientConnectionPool pool) {
+		List<RpcSender> senders = new ArrayList<>();
+		List<Load> senderLoads = new ArrayList<>();
+		for (RpcStrategy strategy : list) {
+			RpcSender sender = strategy.createSender(pool);
+			if (sender == null) continue;
+			senders.add(sender);
+			senderLoads.add(loads.get(strategy));
+		}
+		if (senders.isEmpty())
+			return null;
+		if (senders.size() == 1)
+			return senders.get(0);
+
+		long randomLong = random.nextLong();
+		long seed = randomLong != 0L ? randomLong : 2347230858016798896L;
+
+		return new Sender(senders, senderLoads, decayTime.toNanos(), errorPenalty.toNanos(), seed);
+	}
+
+	public static final class Load {
+		private static final double UNKNOWN_RESPONSE_TIME_PENALTY = (double) (Long.MAX_VALUE >> 16);
+
+		private int activeRequests;
+		private long requests;
+		private long errors;
+		private double responseTimeNanos;
+		private long lastResponseNanos;
+
+		void onRequest() {
+			activeRequests++;
+			requests++;
+		}
+
+		void onResponse(long sentNanos, long nowNanos, long decayNanos) {
+			activeRequests--;
+			updateResponseTime(nowNanos - sentNanos, nowNanos, decayNanos);
+		}
+
+		void onError(long sentNanos, long nowNanos, long decayNanos, long penaltyNanos) {
+			activeRequests--;
+			errors++;
+			updateResponseTime(Math.max(nowNanos - sentNanos, penaltyNanos), nowNanos, decayNanos);
+		}
+
+		private void updateResponseTime(long responseTime, long nowNanos, long decayNanos) {
+			if (responseTime > responseTimeNanos) {
+				responseTimeNanos = responseTime;
+			} else {
+				double weight = Math.exp(-(double) (nowNanos - lastResponseNanos) / decayNanos);
+				responseTimeNanos = responseTimeNanos * weight + responseTime * (1.0 - weight);
+			}
+			lastResponseNanos = nowNanos;
+		}
+
+		double score() {
+			if (responseTimeNanos == 0 && activeRequests != 0) {
+				// no responses yet, a server is assumed to be slow until proven otherwise
+				return UNKNOWN_RESPONSE_TIME_PENALTY + activeRequests;
+			}
+			return (responseTimeNanos + 1.0) * (activeRequests + 1);
+		}
+
+		@JmxAttribute
+		public int getActiveRequests() {
+			return activeRequests;
+		}
+
+		@JmxAttribute
+		public long getRequests() {
+			return requests;
+		}
+
+		@JmxAttribute
+		public long getErrors() {
+			return errors;
+		}
+
+		@JmxAttribute(description = "peak-sensitive exponentially weighted moving average of response time (in milliseconds)")
+		public double getResponseTime() {
+			return responseTimeNanos / 1_000_000.0;
+		}
+
+		@JmxAttribute(description = "load score, the lower score is, the more likely a sub-strategy is chosen")
+		public double getScore() {
+			return score();
+		}
+	}
+
+	public static final class Sender implements RpcSender {
+		private final RpcSender[] senders;
+		private final Load[] loads;
+		private final long decayNanos;
+		private final long errorPenaltyNanos;
+
+		private long lastRandomLong;
+
+		Sender(List<RpcSender> senders, List<Load> loads, long decayNanos, long errorPenaltyNanos, long seed) {
+			assert senders.size() > 1;
+			this.senders = senders.toArray(new RpcSender[0]);
+			this.loads = loads.toArray(new Load[0]);
+			this.decayNanos = decayNanos;
+			this.errorPenaltyNanos = errorPenaltyNanos;
+			this.lastRandomLong = seed;
+		}
+
+		@Override
+		public <I, O> void sendRequest(I request, int timeout, Callback<O> cb) {
+			lastRandomLong ^= (lastRandomLong << 21);
+			lastRandomLong ^= (lastRandomLong >>> 35);
+			lastRandomLong ^= (lastRandomLong << 4);
+			int first = (int) ((lastRandomLong & Long.MAX_VALUE) % senders.length);
+			int second = (int) ((lastRandomLong >>> 32) % (senders.length - 1));
+			if (second >= first) second++;
+
+			int index = loads[second].score() < loads[first].score() ? second : first;
+			Load load = loads[index];
+			load.onRequest();
+			long sentNanos = System.nanoTime();
+			senders[index].sendRequest(request, timeout, (O result, @Nullable Exception e) -> {
+				if (e == null) {
+					load.onResponse(sentNanos, System.nanoTime(), decayNanos);
+				} else {
+					load.onError(sentNanos, System.nanoTime(), decayNanos, errorPenaltyNanos);
+				}
+				cb.accept(result, e);
+			});
+		}
+	}
+}
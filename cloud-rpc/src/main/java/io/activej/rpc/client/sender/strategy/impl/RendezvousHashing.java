@@ -20,6 +20,8 @@ import io.activej.async.callback.Callback;
 import io.activej.common.HashUtils;
 import io.activej.common.annotation.ExposedInternals;
 import io.activej.common.builder.AbstractBuilder;
+import io.activej.datastream.supplier.StreamSupplier;
+import io.activej.datastream.supplier.StreamSuppliers;
 import io.activej.rpc.client.RpcClientConnectionPool;
 import io.activej.rpc.client.sender.RpcSender;
 import io.activej.rpc.client.sender.strategy.RpcStrategy;
@@ -215,6 +217,15 @@ public final class RendezvousHashing implements RpcStrategy {
 				cb.accept(null, new RpcException("No sender for request: " + request));
 			}
 		}
+
+		@Override
+		public <I, O> StreamSupplier<O> sendStreamRequest(I request) {
+			int hash = hashFunction.applyAsInt(request);
+			RpcSender sender = hashBuckets[hash & (hashBuckets.length - 1)];
+			return sender != null ?
+				sender.sendStreamRequest(request) :
+				StreamSuppliers.closingWithError(new RpcException("No sender for request: " + request));
+		}
 	}
 
 }
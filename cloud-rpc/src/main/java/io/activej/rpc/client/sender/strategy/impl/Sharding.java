@@ -19,6 +19,8 @@ package io.activej.rpc.client.sender.strategy.impl;
 import io.activej.async.callback.Callback;
 import io.activej.common.annotation.ExposedInternals;
 import io.activej.common.builder.AbstractBuilder;
+import io.activej.datastream.supplier.StreamSupplier;
+import io.activej.datastream.supplier.StreamSuppliers;
 import io.activej.rpc.client.RpcClientConnectionPool;
 import io.activej.rpc.client.sender.RpcSender;
 import io.activej.rpc.client.sender.Utils;
@@ -123,5 +125,14 @@ public final class Sharding implements RpcStrategy {
 			}
 		}
 
+		@Override
+		public <I, O> StreamSupplier<O> sendStreamRequest(I request) {
+			int shardIndex = shardingFunction.applyAsInt(request);
+			RpcSender sender = subSenders[shardIndex];
+			return sender != null ?
+				sender.sendStreamRequest(request) :
+				StreamSuppliers.closingWithError(NO_SENDER_AVAILABLE_EXCEPTION);
+		}
+
 	}
 }
@@ -19,5 +19,7 @@ package io.activej.rpc.protocol;
 public enum RpcControlMessage {
 	CLOSE,
 	PING,
-	PONG
+	PONG,
+	END_OF_STREAM,
+	CANCEL
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2024 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.rpc.protocol;
+
+import io.activej.datastream.csp.ChannelSerializer.FlushListener;
+import io.activej.datastream.csp.ChannelSerializer.FlushReason;
+import io.activej.jmx.api.JmxRefreshable;
+import io.activej.jmx.api.attribute.JmxAttribute;
+import io.activej.jmx.stats.EventStats;
+import io.activej.jmx.stats.ValueStats;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+import static io.activej.jmx.stats.JmxHistogram.POWERS_OF_TWO;
+
+/**
+ * Stats of batches of RPC messages flushed to the network,
+ * shared by all connections of an RPC client or server
+ */
+public final class RpcFlushStats implements FlushListener, JmxRefreshable {
+	private final ValueStats batchBytes;
+	private final ValueStats batchMessages;
+	private final Map<FlushReason, EventStats> flushReasons = new EnumMap<>(FlushReason.class);
+
+	private RpcFlushStats(Duration smoothingWindow) {
+		batchBytes = ValueStats.builder(smoothingWindow)
+			.withHistogram(POWERS_OF_TWO)
+			.withUnit("bytes")
+			.withRate()
+			.build();
+		batchMessages = ValueStats.builder(smoothingWindow)
+			.withHistogram(POWERS_OF_TWO)
+			.withUnit("messages")
+			.build();
+		for (FlushReason reason : FlushReason.values()) {
+			flushReasons.put(reason, EventStats.create(smoothingWindow));
+		}
+	}
+
+	public static RpcFlushStats create(Duration smoothingWindow) {
+		return new RpcFlushStats(smoothingWindow);
+	}
+
+	@Override
+	public void onFlush(FlushReason reason, int bytes, int items) {
+		batchBytes.recordValue(bytes);
+		batchMessages.recordValue(items);
+		flushReasons.get(reason).recordEvent();
+	}
+
+	@Override
+	public void refresh(long timestamp) {
+		batchBytes.refresh(timestamp);
+		batchMessages.refresh(timestamp);
+		for (EventStats stats : flushReasons.values()) {
+			stats.refresh(timestamp);
+		}
+	}
+
+	@JmxAttribute(description = "size of a batch of messages flushed to the network", extraSubAttributes = "histogram")
+	public ValueStats getBatchBytes() {
+		return batchBytes;
+	}
+
+	@JmxAttribute(description = "number of messages in a batch flushed to the network", extraSubAttributes = "histogram")
+	public ValueStats getBatchMessages() {
+		return batchMessages;
+	}
+
+	@JmxAttribute(description = "number of flushes distributed by a reason of flush")
+	public Map<FlushReason, EventStats> getFlushReasons() {
+		return flushReasons;
+	}
+}
@@ -43,7 +43,7 @@ public final class RpcMessage {
 
 	@Serialize(order = 2)
 	@SerializeClass(
-		subclassesIdx = -1, subclasses = {RpcControlMessage.class, RpcRemoteException.class},
+		subclassesIdx = -2, subclasses = {RpcStreamCredits.class, RpcControlMessage.class, RpcRemoteException.class},
 		subclassesId = SUBCLASSES_ID
 	)
 	@SerializeNullable
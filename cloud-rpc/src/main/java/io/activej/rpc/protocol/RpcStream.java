@@ -26,6 +26,7 @@ import io.activej.csp.supplier.ChannelSuppliers;
 import io.activej.datastream.consumer.AbstractStreamConsumer;
 import io.activej.datastream.csp.ChannelDeserializer;
 import io.activej.datastream.csp.ChannelSerializer;
+import io.activej.datastream.csp.ChannelSerializer.FlushListener;
 import io.activej.datastream.supplier.AbstractStreamSupplier;
 import io.activej.datastream.supplier.StreamDataAcceptor;
 import io.activej.net.socket.tcp.ITcpSocket;
@@ -78,16 +79,23 @@ public final class RpcStream {
 	public RpcStream(
 		ITcpSocket socket,
 		BinarySerializer<RpcMessage> inputSerializer, BinarySerializer<RpcMessage> outputSerializer,
-		MemSize initialBufferSize, Duration autoFlushInterval, @Nullable FrameFormat frameFormat, boolean server
+		MemSize initialBufferSize, Duration autoFlushInterval, @Nullable MemSize flushThreshold, @Nullable Duration maxFlushDelay,
+		@Nullable FrameFormat frameFormat, boolean server, @Nullable FlushListener flushListener
 	) {
 		this.server = server;
 		this.socket = socket;
 
-		ChannelSerializer<RpcMessage> serializer = ChannelSerializer.builder(outputSerializer)
+		ChannelSerializer<RpcMessage>.Builder serializerBuilder = ChannelSerializer.builder(outputSerializer)
 			.withInitialBufferSize(initialBufferSize)
 			.withAutoFlushInterval(autoFlushInterval)
-			.withSerializationErrorHandler((message, e) -> listener.onSerializationError(message, e))
-			.build();
+			.withSerializationErrorHandler((message, e) -> listener.onSerializationError(message, e));
+		if (flushThreshold != null && maxFlushDelay != null) {
+			serializerBuilder.withAdaptiveFlush(flushThreshold, maxFlushDelay);
+		}
+		if (flushListener != null) {
+			serializerBuilder.withFlushListener(flushListener);
+		}
+		ChannelSerializer<RpcMessage> serializer = serializerBuilder.build();
 		ChannelDeserializer<RpcMessage> deserializer = ChannelDeserializer.create(inputSerializer);
 
 		if (frameFormat != null) {
@@ -0,0 +1,395 @@
+/*
+ * Copyright (C) 2024 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.rpc.server;
+
+import io.activej.common.ApplicationSettings;
+import io.activej.common.builder.AbstractBuilder;
+import io.activej.jmx.api.JmxRefreshable;
+import io.activej.jmx.api.attribute.JmxAttribute;
+import io.activej.jmx.stats.EventStats;
+import io.activej.jmx.stats.ValueStats;
+import io.activej.reactor.Reactor;
+import io.activej.reactor.schedule.ScheduledRunnable;
+import io.activej.rpc.protocol.RpcOverloadException;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Consumer;
+
+import static io.activej.common.Checks.checkArgument;
+import static io.activej.jmx.stats.JmxHistogram.POWERS_OF_TWO;
+
+/**
+ * Server-side admission control of RPC requests.
+ * <p>
+ * A request is admitted to its handler only if neither a concurrency limit of its request type
+ * nor a total concurrency limit is exceeded. Otherwise, the request waits in a bounded queue,
+ * ordered by priorities of request types, or is rejected with an {@link RpcOverloadException}
+ * if the queue is full, or when it has been waiting for too long.
+ * Expired requests are rejected by a timer of a reactor of an RPC server,
+ * even if no request is submitted or completed meanwhile.
+ * <p>
+ * A total concurrency limit may be adaptive. It is then adjusted by a gradient
+ * of a long-term and a short-term average of request handling time:
+ * the limit grows while the handling time is stable and shrinks when it increases.
+ * <p>
+ * An instance of admission control must not be shared between RPC servers.
+ */
+public final class RpcAdmissionControl implements JmxRefreshable {
+	public static final int DEFAULT_MAX_QUEUE_SIZE = ApplicationSettings.getInt(RpcAdmissionControl.class, "maxQueueSize", 0);
+	public static final Duration DEFAULT_MAX_QUEUE_TIME = ApplicationSettings.getDuration(RpcAdmissionControl.class, "maxQueueTime", Duration.ofSeconds(1));
+
+	private static final double SHORT_TERM_SMOOTHING = 0.1;
+	private static final double LONG_TERM_SMOOTHING = 0.01;
+	private static final double LIMIT_SMOOTHING = 0.2;
+	private static final double LATENCY_TOLERANCE = 1.5;
+	private static final double MIN_GRADIENT = 0.5;
+
+	private final Map<Class<?>, TypeLimit> typeLimits = new HashMap<>();
+	private final Map<Class<?>, Integer> priorities = new HashMap<>();
+	private final TreeSet<Pending> queue = new TreeSet<>(Comparator
+		.comparingInt((Pending pending) -> -pending.priority)
+		.thenComparingLong(pending -> pending.sequence));
+	private final TreeSet<Pending> queueByAge = new TreeSet<>(Comparator.comparingLong(Pending::sequence));
+
+	private int maxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
+	private long maxQueueTimeNanos = DEFAULT_MAX_QUEUE_TIME.toNanos();
+
+	private boolean adaptive;
+	private double limit = Integer.MAX_VALUE;
+	private int minLimit;
+	private int maxLimit;
+	private double shortTermNanos;
+	private double longTermNanos;
+
+	private int inFlight;
+	private long sequence;
+	private boolean draining;
+	private boolean drainAgain;
+
+	private @Nullable Reactor reactor;
+	private @Nullable ScheduledRunnable expiryTimer;
+
+	// region JMX
+	private final ValueStats queueTime = ValueStats.builder(RpcServer.SMOOTHING_WINDOW)
+		.withHistogram(POWERS_OF_TWO)
+		.withUnit("milliseconds")
+		.build();
+	private final EventStats admittedRequests = EventStats.create(RpcServer.SMOOTHING_WINDOW);
+	private final EventStats queuedRequests = EventStats.create(RpcServer.SMOOTHING_WINDOW);
+	private final EventStats shedRequests = EventStats.create(RpcServer.SMOOTHING_WINDOW);
+	// endregion
+
+	private RpcAdmissionControl() {
+	}
+
+	public static Builder builder() {
+		return new RpcAdmissionControl().new Builder();
+	}
+
+	public final class Builder extends AbstractBuilder<Builder, RpcAdmissionControl> {
+		private Builder() {}
+
+		/**
+		 * Sets a maximum number of concurrently handled requests of a given type
+		 */
+		public Builder withConcurrencyLimit(Class<?> requestClass, int concurrencyLimit) {
+			checkNotBuilt(this);
+			checkArgument(concurrencyLimit > 0, "Concurrency limit must be positive");
+			typeLimits.put(requestClass, new TypeLimit(concurrencyLimit));
+			return this;
+		}
+
+		/**
+		 * Sets a priority of requests of a given type. Requests with higher priority
+		 * leave the queue first and may push requests with lower priority out of a full queue.
+		 * <p>
+		 * Defaults to 0
+		 */
+		public Builder withPriority(Class<?> requestClass, int priority) {
+			checkNotBuilt(this);
+			priorities.put(requestClass, priority);
+			return this;
+		}
+
+		/**
+		 * Sets a maximum number of requests waiting for admission.
+		 * <p>
+		 * Defaults to 0, which means that requests over the limits are rejected immediately
+		 */
+		public Builder withMaxQueueSize(int maxQueueSize) {
+			checkNotBuilt(this);
+			checkArgument(maxQueueSize >= 0, "Maximum queue size cannot be negative");
+			RpcAdmissionControl.this.maxQueueSize = maxQueueSize;
+			return this;
+		}
+
+		/**
+		 * Sets a maximum time a request may wait for admission before it is rejected
+		 */
+		public Builder withMaxQueueTime(Duration maxQueueTime) {
+			checkNotBuilt(this);
+			RpcAdmissionControl.this.maxQueueTimeNanos = maxQueueTime.toNanos();
+			return this;
+		}
+
+		/**
+		 * Sets a fixed total concurrency limit for requests of all types
+		 */
+		public Builder withConcurrencyLimit(int concurrencyLimit) {
+			checkNotBuilt(this);
+			checkArgument(concurrencyLimit > 0, "Concurrency limit must be positive");
+			RpcAdmissionControl.this.adaptive = false;
+			RpcAdmissionControl.this.limit = concurrencyLimit;
+			return this;
+		}
+
+		/**
+		 * Enables an adaptive total concurrency limit for requests of all types,
+		 * which is adjusted by changes of request handling time within given bounds
+		 */
+		public Builder withAdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+			checkNotBuilt(this);
+			checkArgument(minLimit > 0 && minLimit <= initialLimit && initialLimit <= maxLimit,
+				"Initial limit must be within positive min and max limits");
+			RpcAdmissionControl.this.adaptive = true;
+			RpcAdmissionControl.this.limit = initialLimit;
+			RpcAdmissionControl.this.minLimit = minLimit;
+			RpcAdmissionControl.this.maxLimit = maxLimit;
+			return this;
+		}
+
+		@Override
+		protected RpcAdmissionControl doBuild() {
+			return RpcAdmissionControl.this;
+		}
+	}
+
+	/**
+	 * Binds this admission control to a reactor of an RPC server, which is used to reject expired requests
+	 */
+	void bind(Reactor reactor) {
+		checkArgument(this.reactor == null || this.reactor == reactor, "Admission control cannot be shared between RPC servers");
+		this.reactor = reactor;
+	}
+
+	/**
+	 * Admits a request or puts it into the queue, possibly shedding either this
+	 * request or a queued request with lower priority
+	 *
+	 * @param owner    a connection that has received the request
+	 * @param request  a request
+	 * @param task     a task that handles the request once it is admitted
+	 * @param onShed   a callback that is called if the request is rejected
+	 */
+	void submit(RpcServerConnection owner, Object request, Runnable task, Consumer<RpcOverloadException> onShed) {
+		if (queue.isEmpty() && tryAcquire(request)) {
+			queueTime.recordValue(0);
+			task.run();
+			return;
+		}
+		Pending pending = new Pending(owner, request, task, onShed, priorities.getOrDefault(request.getClass(), 0), sequence++, System.nanoTime());
+		if (queue.size() >= maxQueueSize) {
+			Pending lowest = queue.isEmpty() ? null : queue.last();
+			if (lowest == null || lowest.priority >= pending.priority) {
+				shed(pending, "RPC server is overloaded");
+				return;
+			}
+			queue.pollLast();
+			queueByAge.remove(lowest);
+			shed(lowest, "RPC request has been pushed out of a queue by a request with higher priority");
+		}
+		queue.add(pending);
+		queueByAge.add(pending);
+		queuedRequests.recordEvent();
+		drain();
+	}
+
+	/**
+	 * Releases a concurrency permit of a request that has been handled
+	 * and admits queued requests, if possible
+	 *
+	 * @param request         a handled request
+	 * @param handlingNanos   time of handling a request in nanoseconds
+	 */
+	void complete(Object request, long handlingNanos) {
+		inFlight--;
+		TypeLimit typeLimit = typeLimits.get(request.getClass());
+		if (typeLimit != null) {
+			typeLimit.inFlight--;
+		}
+		if (adaptive) {
+			updateLimit(handlingNanos);
+		}
+		drain();
+	}
+
+	/**
+	 * Removes all queued requests of a closed connection
+	 */
+	void cancel(RpcServerConnection owner) {
+		if (queue.removeIf(pending -> pending.owner == owner)) {
+			queueByAge.removeIf(pending -> pending.owner == owner);
+			drain();
+		}
+	}
+
+	private boolean tryAcquire(Object request) {
+		if (inFlight >= (int) limit) return false;
+		TypeLimit typeLimit = typeLimits.get(request.getClass());
+		if (typeLimit != null) {
+			if (typeLimit.inFlight >= typeLimit.limit) return false;
+			typeLimit.inFlight++;
+		}
+		inFlight++;
+		admittedRequests.recordEvent();
+		return true;
+	}
+
+	private void drain() {
+		if (draining) {
+			drainAgain = true;
+			return;
+		}
+		draining = true;
+		do {
+			drainAgain = false;
+			List<Runnable> actions = new ArrayList<>();
+			long now = System.nanoTime();
+			// expired requests are shed regardless of available permits
+			while (!queueByAge.isEmpty() && now - queueByAge.first().enqueuedNanos > maxQueueTimeNanos) {
+				Pending pending = queueByAge.pollFirst();
+				queue.remove(pending);
+				actions.add(() -> shed(pending, "RPC request has been waiting in a queue for too long"));
+			}
+			for (Iterator<Pending> iterator = queue.iterator(); iterator.hasNext() && inFlight < (int) limit; ) {
+				Pending pending = iterator.next();
+				if (!tryAcquire(pending.request)) continue;
+				iterator.remove();
+				queueByAge.remove(pending);
+				queueTime.recordValue((now - pending.enqueuedNanos) / 1_000_000);
+				actions.add(pending.task);
+			}
+			actions.forEach(Runnable::run);
+		} while (drainAgain);
+		draining = false;
+		scheduleExpiry();
+	}
+
+	private void scheduleExpiry() {
+		if (queueByAge.isEmpty()) {
+			if (expiryTimer != null) {
+				expiryTimer.cancel();
+				expiryTimer = null;
+			}
+			return;
+		}
+		// an existing timer is never later than an expiry of the oldest request, it reschedules itself when fired
+		if (reactor == null || expiryTimer != null) return;
+		long expiresInNanos = queueByAge.first().enqueuedNanos + maxQueueTimeNanos - System.nanoTime();
+		long delayMillis = Math.max(0, expiresInNanos / 1_000_000) + 1;
+		expiryTimer = reactor.delayBackground(delayMillis, () -> {
+			expiryTimer = null;
+			drain();
+		});
+	}
+
+	private void shed(Pending pending, String message) {
+		shedRequests.recordEvent();
+		pending.onShed.accept(new RpcOverloadException(message));
+	}
+
+	private void updateLimit(long handlingNanos) {
+		if (longTermNanos == 0) {
+			shortTermNanos = longTermNanos = handlingNanos;
+		} else {
+			shortTermNanos += (handlingNanos - shortTermNanos) * SHORT_TERM_SMOOTHING;
+			longTermNanos += (handlingNanos - longTermNanos) * LONG_TERM_SMOOTHING;
+		}
+		// recover faster after a long period of higher latency
+		if (longTermNanos > 2 * shortTermNanos) {
+			longTermNanos *= 0.95;
+		}
+		double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, LATENCY_TOLERANCE * longTermNanos / Math.max(shortTermNanos, 1)));
+		double newLimit = limit * gradient + Math.sqrt(limit);
+		newLimit = limit * (1 - LIMIT_SMOOTHING) + newLimit * LIMIT_SMOOTHING;
+		// do not grow the limit if it is not being utilized
+		if (newLimit > limit && inFlight < limit / 2 && queue.isEmpty()) return;
+		limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+	}
+
+	private static final class TypeLimit {
+		final int limit;
+		int inFlight;
+
+		TypeLimit(int limit) {
+			this.limit = limit;
+		}
+	}
+
+	private record Pending(
+		RpcServerConnection owner, Object request, Runnable task, Consumer<RpcOverloadException> onShed,
+		int priority, long sequence, long enqueuedNanos
+	) {
+	}
+
+	// region JMX
+	@Override
+	public void refresh(long timestamp) {
+		queueTime.refresh(timestamp);
+		admittedRequests.refresh(timestamp);
+		queuedRequests.refresh(timestamp);
+		shedRequests.refresh(timestamp);
+	}
+
+	@JmxAttribute(description = "current total concurrency limit")
+	public int getConcurrencyLimit() {
+		return (int) limit;
+	}
+
+	@JmxAttribute(description = "number of requests being handled")
+	public int getInFlight() {
+		return inFlight;
+	}
+
+	@JmxAttribute(description = "number of requests waiting for admission")
+	public int getQueueSize() {
+		return queue.size();
+	}
+
+	@JmxAttribute(description = "time a request waits for admission (in milliseconds)", extraSubAttributes = "histogram")
+	public ValueStats getQueueTime() {
+		return queueTime;
+	}
+
+	@JmxAttribute(extraSubAttributes = "totalCount")
+	public EventStats getAdmittedRequests() {
+		return admittedRequests;
+	}
+
+	@JmxAttribute(extraSubAttributes = "totalCount")
+	public EventStats getQueuedRequests() {
+		return queuedRequests;
+	}
+
+	@JmxAttribute(extraSubAttributes = "totalCount", description = "requests rejected with overload exception")
+	public EventStats getShedRequests() {
+		return shedRequests;
+	}
+	// endregion
+}
@@ -33,7 +33,9 @@ import io.activej.promise.SettableCallback;
 import io.activej.reactor.nio.NioReactor;
 import io.activej.rpc.client.RpcClient;
 import io.activej.rpc.protocol.RpcControlMessage;
+import io.activej.rpc.protocol.RpcFlushStats;
 import io.activej.rpc.protocol.RpcMessage;
+import io.activej.rpc.protocol.RpcOverloadException;
 import io.activej.rpc.protocol.RpcStream;
 import io.activej.serializer.BinarySerializer;
 import io.activej.serializer.SerializerFactory;
@@ -80,8 +82,12 @@ public final class RpcServer extends AbstractReactiveServer {
 	private MemSize initialBufferSize = DEFAULT_INITIAL_BUFFER_SIZE;
 	private @Nullable FrameFormat frameFormat;
 	private Duration autoFlushInterval = Duration.ZERO;
+	private @Nullable MemSize flushThreshold;
+	private @Nullable Duration maxFlushDelay;
 
 	private final Map<Class<?>, RpcRequestHandler<?, ?>> handlers = new LinkedHashMap<>();
+	private final Map<Class<?>, RpcStreamHandler<?, ?>> streamHandlers = new LinkedHashMap<>();
+	private @Nullable RpcAdmissionControl admissionControl;
 
 	private final List<RpcServerConnection> connections = new ArrayList<>();
 
@@ -101,6 +107,7 @@ public final class RpcServer extends AbstractReactiveServer {
 		.build();
 	private final ExceptionStats lastRequestHandlingException = ExceptionStats.create();
 	private final ExceptionStats lastProtocolError = ExceptionStats.create();
+	private final RpcFlushStats flushStats = RpcFlushStats.create(SMOOTHING_WINDOW);
 	private boolean monitoring;
 	// endregion
 
@@ -241,6 +248,24 @@ public final class RpcServer extends AbstractReactiveServer {
 			return this;
 		}
 
+		/**
+		 * Enables adaptive flush of messages to the network, which overrides an automatic flush interval.
+		 * <p>
+		 * Messages are flushed at the end of the current eventloop tick if a connection is not busy writing.
+		 * Otherwise, messages are batched until a previous write completes, the maximum flush delay passes
+		 * or the size of a batch reaches the flush threshold.
+		 *
+		 * @param flushThreshold size of a batch of messages that is flushed immediately
+		 * @param maxFlushDelay  maximum delay of a batch of messages while a connection is busy writing
+		 * @return the builder for RPC server with adaptive message flush
+		 */
+		public Builder withAdaptiveFlush(MemSize flushThreshold, Duration maxFlushDelay) {
+			checkNotBuilt(this);
+			RpcServer.this.flushThreshold = flushThreshold;
+			RpcServer.this.maxFlushDelay = maxFlushDelay;
+			return this;
+		}
+
 		/**
 		 * Adds a handler for a specified request-response pair.
 		 *
@@ -253,14 +278,51 @@ public final class RpcServer extends AbstractReactiveServer {
 		 */
 		public <I, O> Builder withHandler(Class<I> requestClass, RpcRequestHandler<I, O> handler) {
 			checkNotBuilt(this);
-			checkArgument(!handlers.containsKey(requestClass), "Handler for %s has already been added", requestClass);
+			checkArgument(!handlers.containsKey(requestClass) && !streamHandlers.containsKey(requestClass),
+				"Handler for %s has already been added", requestClass);
 			handlers.put(requestClass, handler);
 			return this;
 		}
 
+		/**
+		 * Adds a handler for a specified request, which responds with a stream of items.
+		 * <p>
+		 * Both a request class and a class of stream items should be
+		 * among {@link #withMessageTypes(List) message types}.
+		 *
+		 * @param requestClass a class of one of request types
+		 * @param handler      a handler that does a request processing and
+		 *                     creates a stream of response items
+		 * @param <I>          class of request
+		 * @param <O>          class of stream items
+		 * @return the builder for RPC server with specified stream handler of one of request types
+		 */
+		public <I, O> Builder withStreamHandler(Class<I> requestClass, RpcStreamHandler<I, O> handler) {
+			checkNotBuilt(this);
+			checkArgument(!handlers.containsKey(requestClass) && !streamHandlers.containsKey(requestClass),
+				"Handler for %s has already been added", requestClass);
+			streamHandlers.put(requestClass, handler);
+			return this;
+		}
+
+		/**
+		 * Sets an admission control, which limits concurrency of request handling
+		 * and rejects requests with {@link RpcOverloadException} when the server is overloaded.
+		 * Stream requests and control messages are not subject to admission control.
+		 *
+		 * @param admissionControl an admission control of RPC requests
+		 * @return the builder for RPC server with specified admission control
+		 */
+		public Builder withAdmissionControl(RpcAdmissionControl admissionControl) {
+			checkNotBuilt(this);
+			admissionControl.bind(reactor);
+			RpcServer.this.admissionControl = admissionControl;
+			return this;
+		}
+
 		@Override
 		protected RpcServer doBuild() {
-			checkState(handlers.size() > 1, "No RPC handlers added");
+			checkState(handlers.size() > 1 || !streamHandlers.isEmpty(), "No RPC handlers added");
 			checkState(requestSerializer != null && responseSerializer != null);
 			return super.doBuild();
 		}
@@ -269,8 +331,8 @@ public final class RpcServer extends AbstractReactiveServer {
 	@Override
 	protected void serve(ITcpSocket socket, InetAddress remoteAddress) {
 		RpcStream stream = new RpcStream(socket, requestSerializer, responseSerializer, initialBufferSize,
-			autoFlushInterval, frameFormat, true); // , statsSerializer, statsDeserializer, statsCompressor, statsDecompressor);
-		RpcServerConnection connection = new RpcServerConnection(reactor, this, remoteAddress, handlers, stream);
+			autoFlushInterval, flushThreshold, maxFlushDelay, frameFormat, true, flushStats); // , statsSerializer, statsDeserializer, statsCompressor, statsDecompressor);
+		RpcServerConnection connection = new RpcServerConnection(reactor, this, remoteAddress, handlers, streamHandlers, admissionControl, stream);
 		stream.setListener(connection);
 		add(connection);
 
@@ -393,6 +455,16 @@ public final class RpcServer extends AbstractReactiveServer {
 		return requestHandlingTime;
 	}
 
+	@JmxAttribute(description = "admission control stats, if admission control is set")
+	public @Nullable RpcAdmissionControl getAdmissionControl() {
+		return admissionControl;
+	}
+
+	@JmxAttribute(description = "stats of message batches flushed to the network")
+	public RpcFlushStats getFlushStats() {
+		return flushStats;
+	}
+
 	@JmxAttribute(description =
 		"exception that occurred because of business logic error " +
 		"(in RpcRequestHandler implementation)")
@@ -16,8 +16,12 @@
 
 package io.activej.rpc.server;
 
+import io.activej.async.exception.AsyncCloseException;
 import io.activej.common.exception.MalformedDataException;
+import io.activej.datastream.consumer.AbstractStreamConsumer;
 import io.activej.datastream.supplier.StreamDataAcceptor;
+import io.activej.datastream.supplier.StreamSupplier;
+import io.activej.datastream.supplier.StreamSuppliers;
 import io.activej.jmx.api.JmxRefreshable;
 import io.activej.jmx.api.attribute.JmxAttribute;
 import io.activej.jmx.stats.EventStats;
@@ -30,11 +34,14 @@ import io.activej.rpc.protocol.RpcControlMessage;
 import io.activej.rpc.protocol.RpcMessage;
 import io.activej.rpc.protocol.RpcRemoteException;
 import io.activej.rpc.protocol.RpcStream;
+import io.activej.rpc.protocol.RpcStreamCredits;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Map;
 
 public final class RpcServerConnection extends AbstractReactive implements RpcStream.Listener, JmxRefreshable {
@@ -45,8 +52,12 @@ public final class RpcServerConnection extends AbstractReactive implements RpcSt
 	private final RpcServer rpcServer;
 	private final RpcStream stream;
 	private final Map<Class<?>, RpcRequestHandler<?, ?>> handlers;
+	private final Map<Class<?>, RpcStreamHandler<?, ?>> streamHandlers;
+	private final Map<Integer, ServerStream> activeStreams = new HashMap<>();
+	private final @Nullable RpcAdmissionControl admissionControl;
 
 	private int activeRequests = 1;
+	private boolean writable;
 
 	// jmx
 	private final InetAddress remoteAddress;
@@ -60,12 +71,15 @@ public final class RpcServerConnection extends AbstractReactive implements RpcSt
 
 	RpcServerConnection(
 		Reactor reactor, RpcServer rpcServer, InetAddress remoteAddress,
-		Map<Class<?>, RpcRequestHandler<?, ?>> handlers, RpcStream stream
+		Map<Class<?>, RpcRequestHandler<?, ?>> handlers, Map<Class<?>, RpcStreamHandler<?, ?>> streamHandlers,
+		@Nullable RpcAdmissionControl admissionControl, RpcStream stream
 	) {
 		super(reactor);
 		this.rpcServer = rpcServer;
 		this.stream = stream;
 		this.handlers = handlers;
+		this.streamHandlers = streamHandlers;
+		this.admissionControl = admissionControl;
 
 		// jmx
 		this.remoteAddress = remoteAddress;
@@ -82,12 +96,48 @@ public final class RpcServerConnection extends AbstractReactive implements RpcSt
 
 	@Override
 	public void accept(RpcMessage message) {
+		int index = message.getIndex();
+		Object messageData = message.getMessage();
+
+		if (messageData instanceof RpcStreamCredits credits) {
+			ServerStream serverStream = activeStreams.get(index);
+			if (serverStream != null) {
+				serverStream.addCredits(credits.getCredits());
+			}
+			return;
+		}
+		if (messageData == RpcControlMessage.CANCEL) {
+			ServerStream serverStream = activeStreams.get(index);
+			if (serverStream != null) {
+				serverStream.cancel();
+			}
+			return;
+		}
+
 		activeRequests++;
 
-		int index = message.getIndex();
+		if (messageData != null && streamHandlers.containsKey(messageData.getClass())) {
+			startStream(index, messageData);
+			return;
+		}
+
+		if (admissionControl != null && messageData != null && !(messageData instanceof RpcControlMessage)) {
+			admissionControl.submit(this, messageData,
+				() -> handleRequest(index, messageData),
+				e -> {
+					downstreamDataAcceptor.accept(new RpcMessage(index, new RpcRemoteException(e)));
+					completeRequest();
+				});
+			return;
+		}
+
+		handleRequest(index, messageData);
+	}
+
+	private void handleRequest(int index, Object messageData) {
 		long startTime = monitoring ? System.currentTimeMillis() : 0;
+		long startNanos = admissionControl != null ? System.nanoTime() : 0;
 
-		Object messageData = message.getMessage();
 		serve(messageData)
 			.subscribe((result, e) -> {
 				if (startTime != 0) {
@@ -106,22 +156,39 @@ public final class RpcServerConnection extends AbstractReactive implements RpcSt
 					RpcMessage errorMessage = new RpcMessage(index, data);
 					sendError(errorMessage, messageData, e);
 				}
-				if (--activeRequests == 0) {
-					doClose();
-					stream.sendEndOfStream();
+				if (admissionControl != null && !(messageData instanceof RpcControlMessage)) {
+					admissionControl.complete(messageData, System.nanoTime() - startNanos);
 				}
+				completeRequest();
 			});
 	}
 
-	@Override
-	public void onReceiverEndOfStream() {
-		activeRequests--;
-		if (activeRequests == 0) {
+	@SuppressWarnings("unchecked")
+	private void startStream(int index, Object request) {
+		RpcStreamHandler<Object, Object> streamHandler = (RpcStreamHandler<Object, Object>) streamHandlers.get(request.getClass());
+		ServerStream serverStream = new ServerStream(index, request);
+		activeStreams.put(index, serverStream);
+		StreamSupplier<Object> supplier;
+		try {
+			supplier = streamHandler.run(request);
+		} catch (Exception e) {
+			supplier = StreamSuppliers.closingWithError(e);
+		}
+		supplier.streamTo(serverStream);
+	}
+
+	private void completeRequest() {
+		if (--activeRequests == 0) {
 			doClose();
 			stream.sendEndOfStream();
 		}
 	}
 
+	@Override
+	public void onReceiverEndOfStream() {
+		completeRequest();
+	}
+
 	@Override
 	public void onReceiverError(Exception e) {
 		logger.error("Receiver error {}", remoteAddress, e);
@@ -149,12 +216,20 @@ public final class RpcServerConnection extends AbstractReactive implements RpcSt
 	@Override
 	public void onSenderReady(StreamDataAcceptor<RpcMessage> acceptor) {
 		this.downstreamDataAcceptor = acceptor;
+		writable = true;
 		stream.receiverResume();
+		for (ServerStream serverStream : new ArrayList<>(activeStreams.values())) {
+			serverStream.update();
+		}
 	}
 
 	@Override
 	public void onSenderSuspended() {
+		writable = false;
 		stream.receiverSuspend();
+		for (ServerStream serverStream : activeStreams.values()) {
+			serverStream.update();
+		}
 	}
 
 	private void sendError(RpcMessage errorMessage, Object messageData, @Nullable Exception e) {
@@ -168,6 +243,12 @@ public final class RpcServerConnection extends AbstractReactive implements RpcSt
 	private void doClose() {
 		rpcServer.remove(this);
 		downstreamDataAcceptor = $ -> {};
+		if (admissionControl != null) {
+			admissionControl.cancel(this);
+		}
+		for (ServerStream serverStream : new ArrayList<>(activeStreams.values())) {
+			serverStream.cancel();
+		}
 	}
 
 	public void shutdown() {
@@ -205,6 +286,11 @@ public final class RpcServerConnection extends AbstractReactive implements RpcSt
 		return lastRequestHandlingException;
 	}
 
+	@JmxAttribute
+	public int getActiveStreams() {
+		return activeStreams.size();
+	}
+
 	@JmxAttribute
 	public String getRemoteAddress() {
 		return remoteAddress.toString();
@@ -217,6 +303,74 @@ public final class RpcServerConnection extends AbstractReactive implements RpcSt
 		requestHandlingTime.refresh(timestamp);
 	}
 
+	/**
+	 * A consumer of a stream of response items, which sends items to a client
+	 * as long as the client grants credits for them
+	 */
+	private final class ServerStream extends AbstractStreamConsumer<Object> {
+		private final int index;
+		private final Object request;
+		private final StreamDataAcceptor<Object> acceptor = this::send;
+		private int credits;
+		private boolean cancelled;
+
+		ServerStream(int index, Object request) {
+			this.index = index;
+			this.request = request;
+		}
+
+		void addCredits(int credits) {
+			this.credits += credits;
+			update();
+		}
+
+		void update() {
+			if (credits > 0 && writable) {
+				resume(acceptor);
+			} else {
+				suspend();
+			}
+		}
+
+		void cancel() {
+			cancelled = true;
+			closeEx(new AsyncCloseException("Stream has been cancelled"));
+		}
+
+		private void send(Object item) {
+			downstreamDataAcceptor.accept(new RpcMessage(index, item));
+			if (--credits == 0) {
+				suspend();
+			}
+		}
+
+		@Override
+		protected void onStarted() {
+			update();
+		}
+
+		@Override
+		protected void onEndOfStream() {
+			downstreamDataAcceptor.accept(new RpcMessage(index, RpcControlMessage.END_OF_STREAM));
+			successfulRequests.recordEvent();
+			rpcServer.getSuccessfulRequests().recordEvent();
+			acknowledge();
+		}
+
+		@Override
+		protected void onError(Exception e) {
+			if (cancelled) return;
+			logger.warn("Exception while processing stream request ID {}", index, e);
+			sendError(new RpcMessage(index, new RpcRemoteException(e)), request, e);
+		}
+
+		@Override
+		protected void onCleanup() {
+			activeStreams.remove(index);
+			completeRequest();
+		}
+	}
+
 	@Override
 	public String toString() {
 		return
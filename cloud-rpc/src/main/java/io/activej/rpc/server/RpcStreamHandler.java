@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2024 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.rpc.server;
+
+import io.activej.datastream.supplier.StreamSupplier;
+
+/**
+ * A handler of a streaming request, which responds with a stream of items.
+ * <p>
+ * Items are sent to a client as long as it grants credits for them,
+ * so a supplier is suspended whenever a client falls behind.
+ *
+ * @param <I> class of request
+ * @param <O> class of stream items
+ */
+@FunctionalInterface
+public interface RpcStreamHandler<I, O> {
+	StreamSupplier<O> run(I request);
+}
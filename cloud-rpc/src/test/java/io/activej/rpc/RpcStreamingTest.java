@@ -0,0 +1,168 @@
+package io.activej.rpc;
+
+import io.activej.datastream.consumer.AbstractStreamConsumer;
+import io.activej.datastream.supplier.StreamSupplier;
+import io.activej.datastream.supplier.StreamSuppliers;
+import io.activej.promise.Promise;
+import io.activej.promise.Promises;
+import io.activej.reactor.Reactor;
+import io.activej.reactor.nio.NioReactor;
+import io.activej.rpc.client.RpcClient;
+import io.activej.rpc.protocol.RpcRemoteException;
+import io.activej.rpc.server.RpcServer;
+import io.activej.test.rules.ByteBufRule;
+import io.activej.test.rules.ClassBuilderConstantsRule;
+import io.activej.test.rules.EventloopRule;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static io.activej.promise.TestUtils.await;
+import static io.activej.promise.TestUtils.awaitException;
+import static io.activej.rpc.client.sender.strategy.RpcStrategies.server;
+import static io.activej.test.TestUtils.getFreePort;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.*;
+
+public final class RpcStreamingTest {
+	@ClassRule
+	public static final ByteBufRule byteBufRule = new ByteBufRule();
+
+	@ClassRule
+	public static final EventloopRule eventloopRule = new EventloopRule();
+
+	@Rule
+	public final ClassBuilderConstantsRule classBuilderConstantsRule = new ClassBuilderConstantsRule();
+
+	private static final int STREAM_WINDOW = 16;
+
+	private final AtomicInteger generated = new AtomicInteger();
+	private final AtomicInteger cancelled = new AtomicInteger();
+
+	private RpcClient client;
+	private RpcServer server;
+
+	@Before
+	public void setUp() throws Exception {
+		int port = getFreePort();
+		NioReactor reactor = Reactor.getCurrentReactor();
+
+		server = RpcServer.builder(reactor)
+			.withMessageTypes(Integer.class, String.class)
+			.withStreamHandler(Integer.class, count -> {
+				StreamSupplier<Integer> supplier = StreamSuppliers.ofIterator(IntStream.range(0, count)
+					.peek($ -> generated.incrementAndGet())
+					.iterator());
+				supplier.getAcknowledgement().whenException(cancelled::incrementAndGet);
+				return supplier;
+			})
+			.withStreamHandler(String.class, request -> StreamSuppliers.concat(
+				StreamSuppliers.ofValues(request),
+				StreamSuppliers.closingWithError(new IllegalArgumentException(request))))
+			.withListenPort(port)
+			.build();
+
+		client = RpcClient.builder(reactor)
+			.withMessageTypes(Integer.class, String.class)
+			.withStrategy(server(new InetSocketAddress(port)))
+			.withStreamWindow(STREAM_WINDOW)
+			.build();
+
+		server.listen();
+	}
+
+	@Test
+	public void testStream() {
+		List<Integer> result = await(client.start()
+			.then(() -> client.<Integer, Integer>sendStreamRequest(10_000).toList())
+			.then(list -> stop().map($ -> list)));
+
+		assertEquals(IntStream.range(0, 10_000).boxed().toList(), result);
+	}
+
+	@Test
+	public void testStreamError() {
+		Exception e = awaitException(client.start()
+			.then(() -> client.<String, String>sendStreamRequest("error").toList())
+			.then(($, e1) -> stop().then($2 -> Promise.ofException(e1))));
+
+		assertThat(e, instanceOf(RpcRemoteException.class));
+		assertTrue(e.getMessage().contains("error"));
+	}
+
+	@Test
+	public void testFlowControl() {
+		SuspendingConsumer consumer = new SuspendingConsumer(20);
+		List<Integer> generatedWhileSuspended = new ArrayList<>();
+		await(client.start()
+			.then(() -> {
+				client.<Integer, Integer>sendStreamRequest(1000).streamTo(consumer);
+				return Promises.delay(100);
+			})
+			.then(() -> {
+				assertEquals(20, consumer.items.size());
+				generatedWhileSuspended.add(generated.get());
+				consumer.resume(consumer.items::add);
+				return consumer.getAcknowledgement();
+			})
+			.then(this::stop));
+
+		assertTrue(generatedWhileSuspended.get(0) <= 20 + STREAM_WINDOW);
+		assertEquals(1000, consumer.items.size());
+		assertEquals(1000, generated.get());
+	}
+
+	@Test
+	public void testCancel() {
+		SuspendingConsumer consumer = new SuspendingConsumer(5);
+		await(client.start()
+			.then(() -> {
+				client.<Integer, Integer>sendStreamRequest(1000).streamTo(consumer);
+				return Promises.delay(100);
+			})
+			.then(() -> {
+				consumer.closeEx(new Exception("Enough"));
+				return Promises.delay(100);
+			})
+			.then(this::stop));
+
+		assertEquals(1, cancelled.get());
+		assertTrue(generated.get() < 1000);
+	}
+
+	private Promise<?> stop() {
+		return client.stop().then(server::close);
+	}
+
+	private static final class SuspendingConsumer extends AbstractStreamConsumer<Integer> {
+		private final List<Integer> items = new ArrayList<>();
+		private final int limit;
+
+		SuspendingConsumer(int limit) {
+			this.limit = limit;
+		}
+
+		@Override
+		protected void onStarted() {
+			resume(item -> {
+				items.add(item);
+				if (items.size() == limit) {
+					suspend();
+				}
+			});
+		}
+
+		@Override
+		protected void onEndOfStream() {
+			acknowledge();
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package io.activej.rpc.client.sender;
+
+import io.activej.async.callback.Callback;
+import io.activej.eventloop.Eventloop;
+import io.activej.rpc.client.sender.helper.RpcClientConnectionPoolStub;
+import io.activej.rpc.client.sender.strategy.impl.Hedging;
+import io.activej.test.rules.EventloopRule;
+import io.activej.test.time.TestCurrentTimeProvider;
+import io.activej.test.time.TestCurrentTimeProvider.SettableCurrentTimeProvider;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.activej.reactor.Reactor.getCurrentReactor;
+import static io.activej.rpc.client.sender.strategy.RpcStrategies.servers;
+import static io.activej.test.TestUtils.getFreePort;
+import static org.junit.Assert.*;
+
+@SuppressWarnings("ConstantConditions")
+public class RpcStrategyHedgingTest {
+	@ClassRule
+	public static final EventloopRule eventloopRule = new EventloopRule();
+
+	private static final String HOST = "localhost";
+
+	private InetSocketAddress address1;
+	private InetSocketAddress address2;
+
+	@Before
+	public void setUp() {
+		address1 = new InetSocketAddress(HOST, getFreePort());
+		address2 = new InetSocketAddress(HOST, getFreePort());
+	}
+
+	@Test
+	public void itShouldHedgeSlowRequests() {
+		RpcClientConnectionPoolStub pool = new RpcClientConnectionPoolStub();
+		DelayedSender slowConnection = new DelayedSender(100);
+		DelayedSender fastConnection = new DelayedSender(1);
+		pool.put(address1, slowConnection);
+		pool.put(address2, fastConnection);
+		Hedging strategy = Hedging.builder(servers(address1, address2))
+			.withHedgeDelay(Duration.ofMillis(10))
+			.withMaxHedgeRatio(1.0)
+			.build();
+		RpcSender sender = strategy.createSender(pool);
+
+		List<Object> results = new ArrayList<>();
+		runInReactor(() -> {
+			sender.sendRequest("a", 1000, (result, e) -> results.add(result));
+			sender.sendRequest("b", 1000, (result, e) -> results.add(result));
+		});
+
+		assertEquals(List.of("b", "a"), results);
+		assertEquals(1, slowConnection.requests);
+		assertEquals(2, fastConnection.requests);
+		assertEquals(2, strategy.getStats().getRequests());
+		assertEquals(1, strategy.getStats().getHedges());
+		assertEquals(1, strategy.getStats().getHedgesWon());
+	}
+
+	@Test
+	public void itShouldRespectHedgeBudget() {
+		RpcClientConnectionPoolStub pool = new RpcClientConnectionPoolStub();
+		DelayedSender connection1 = new DelayedSender(50);
+		DelayedSender connection2 = new DelayedSender(50);
+		pool.put(address1, connection1);
+		pool.put(address2, connection2);
+		Hedging strategy = Hedging.builder(servers(address1, address2))
+			.withHedgeDelay(Duration.ofMillis(5))
+			.withMaxHedgeRatio(0.25)
+			.build();
+		RpcSender sender = strategy.createSender(pool);
+
+		int requests = 100;
+		int[] responses = {0};
+		runInReactor(() -> {
+			for (int i = 0; i < requests; i++) {
+				sender.sendRequest(i, 1000, (result, e) -> {
+					assertNull(e);
+					responses[0]++;
+				});
+			}
+		});
+
+		assertEquals(requests, responses[0]);
+		Hedging.Stats stats = strategy.getStats();
+		assertEquals(10, stats.getHedges());
+		assertEquals(90, stats.getHedgesRejected());
+		assertEquals(requests + 10, connection1.requests + connection2.requests);
+	}
+
+	@Test
+	public void itShouldUsePercentileOfResponseTimes() {
+		RpcClientConnectionPoolStub pool = new RpcClientConnectionPoolStub();
+		pool.put(address1, new DelayedSender(0));
+		pool.put(address2, new DelayedSender(0));
+		SettableCurrentTimeProvider now = TestCurrentTimeProvider.settable(TestCurrentTimeProvider.ofConstant(0));
+		Hedging strategy = Hedging.builder(servers(address1, address2))
+			.withInitialHedgeDelay(Duration.ofSeconds(1))
+			.withCurrentTimeProvider(now)
+			.build();
+		RpcSender sender = strategy.createSender(pool);
+		assertEquals(1000, strategy.getStats().getHedgeDelayMillis());
+
+		for (int i = 0; i < 128; i++) {
+			sender.sendRequest(i, 1000, Callbacks.ignore());
+		}
+		now.setTimeProvider(TestCurrentTimeProvider.ofConstant(7));
+		((Eventloop) getCurrentReactor()).run();
+
+		assertEquals(7, strategy.getStats().getHedgeDelayMillis());
+		assertEquals(0, strategy.getStats().getHedges());
+	}
+
+	/**
+	 * Sends requests from within a running reactor, so that delays are scheduled relative to an up-to-date time
+	 */
+	private static void runInReactor(Runnable runnable) {
+		Eventloop eventloop = (Eventloop) getCurrentReactor();
+		eventloop.post(runnable);
+		eventloop.run();
+	}
+
+	private static final class DelayedSender implements RpcSender {
+		private final long delayMillis;
+		int requests;
+
+		DelayedSender(long delayMillis) {
+			this.delayMillis = delayMillis;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public <I, O> void sendRequest(I request, int timeout, Callback<O> cb) {
+			requests++;
+			getCurrentReactor().delay(delayMillis, () -> cb.accept((O) request, null));
+		}
+	}
+}
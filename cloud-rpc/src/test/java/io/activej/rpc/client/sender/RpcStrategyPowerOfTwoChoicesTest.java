@@ -0,0 +1,152 @@
+package io.activej.rpc.client.sender;
+
+import io.activej.async.callback.Callback;
+import io.activej.rpc.client.sender.helper.RpcClientConnectionPoolStub;
+import io.activej.rpc.client.sender.helper.RpcMessageDataStub;
+import io.activej.rpc.client.sender.helper.RpcSenderStub;
+import io.activej.rpc.client.sender.strategy.RpcStrategy;
+import io.activej.rpc.client.sender.strategy.impl.PowerOfTwoChoices;
+import org.jetbrains.annotations.Nullable;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static io.activej.rpc.client.sender.Callbacks.ignore;
+import static io.activej.rpc.client.sender.strategy.RpcStrategies.*;
+import static io.activej.test.TestUtils.getFreePort;
+import static org.junit.Assert.*;
+
+@SuppressWarnings("ConstantConditions")
+public class RpcStrategyPowerOfTwoChoicesTest {
+
+	private static final String HOST = "localhost";
+
+	private InetSocketAddress address1;
+	private InetSocketAddress address2;
+	private InetSocketAddress address3;
+
+	@Before
+	public void setUp() {
+		address1 = new InetSocketAddress(HOST, getFreePort());
+		address2 = new InetSocketAddress(HOST, getFreePort());
+		address3 = new InetSocketAddress(HOST, getFreePort());
+	}
+
+	@Test
+	public void itShouldBalanceRequestsInFlight() {
+		RpcClientConnectionPoolStub pool = new RpcClientConnectionPoolStub();
+		RpcSenderStub connection1 = new RpcSenderStub();
+		RpcSenderStub connection2 = new RpcSenderStub();
+		pool.put(address1, connection1);
+		pool.put(address2, connection2);
+		RpcSender sender = powerOfTwoChoices(servers(address1, address2)).createSender(pool);
+
+		for (int i = 0; i < 100; i++) {
+			sender.sendRequest(new RpcMessageDataStub(), 50, ignore());
+		}
+
+		assertEquals(50, connection1.getRequests());
+		assertEquals(50, connection2.getRequests());
+	}
+
+	@Test
+	public void itShouldAvoidSlowServer() {
+		RpcClientConnectionPoolStub pool = new RpcClientConnectionPoolStub();
+		RespondingSender fastConnection1 = new RespondingSender(true);
+		RespondingSender fastConnection2 = new RespondingSender(true);
+		RespondingSender slowConnection = new RespondingSender(false);
+		pool.put(address1, fastConnection1);
+		pool.put(address2, fastConnection2);
+		pool.put(address3, slowConnection);
+		PowerOfTwoChoices strategy = PowerOfTwoChoices.builder(servers(address1, address2, address3))
+			.withRandom(new Random(0))
+			.build();
+		RpcSender sender = strategy.createSender(pool);
+
+		int requests = 1000;
+		for (int i = 0; i < requests; i++) {
+			sender.sendRequest(new RpcMessageDataStub(), 50, ignore());
+		}
+
+		assertEquals(requests, fastConnection1.requests + fastConnection2.requests + slowConnection.requests);
+		assertTrue(slowConnection.requests < 50);
+		assertEquals(slowConnection.requests, strategy.getLoads().get(strategy.list.get(2)).getActiveRequests());
+		assertEquals(0, strategy.getLoads().get(strategy.list.get(0)).getActiveRequests());
+
+		slowConnection.respond();
+		assertEquals(0, strategy.getLoads().get(strategy.list.get(2)).getActiveRequests());
+		assertEquals(slowConnection.requests, strategy.getLoads().get(strategy.list.get(2)).getRequests());
+	}
+
+	@Test
+	public void itShouldAvoidFailingServer() {
+		RpcClientConnectionPoolStub pool = new RpcClientConnectionPoolStub();
+		RespondingSender connection1 = new RespondingSender(true);
+		RespondingSender connection2 = new RespondingSender(true);
+		RespondingSender failingConnection = new RespondingSender(true);
+		failingConnection.error = new Exception("Test");
+		pool.put(address1, connection1);
+		pool.put(address2, connection2);
+		pool.put(address3, failingConnection);
+		PowerOfTwoChoices strategy = PowerOfTwoChoices.builder(servers(address1, address2, address3))
+			.withRandom(new Random(0))
+			.build();
+		RpcSender sender = strategy.createSender(pool);
+
+		int requests = 1000;
+		for (int i = 0; i < requests; i++) {
+			sender.sendRequest(new RpcMessageDataStub(), 50, ignore());
+		}
+
+		assertEquals(requests, connection1.requests + connection2.requests + failingConnection.requests);
+		assertTrue(failingConnection.requests < 50);
+		PowerOfTwoChoices.Load failingLoad = strategy.getLoads().get(strategy.list.get(2));
+		assertEquals(failingConnection.requests, failingLoad.getErrors());
+		assertEquals(0, failingLoad.getActiveRequests());
+		assertEquals(0, strategy.getLoads().get(strategy.list.get(0)).getErrors());
+	}
+
+	@Test
+	public void itShouldSkipInactiveSubStrategies() {
+		RpcClientConnectionPoolStub pool = new RpcClientConnectionPoolStub();
+		RpcSenderStub connection2 = new RpcSenderStub();
+		pool.put(address2, connection2);
+		RpcStrategy strategy = powerOfTwoChoices(servers(address1, address2, address3));
+
+		RpcSender sender = strategy.createSender(pool);
+		assertSame(connection2, sender);
+
+		assertNull(powerOfTwoChoices(servers(address1, address3)).createSender(pool));
+	}
+
+	private static final class RespondingSender implements RpcSender {
+		private final boolean respondImmediately;
+		private final List<Callback<Object>> callbacks = new ArrayList<>();
+		@Nullable Exception error;
+		int requests;
+
+		RespondingSender(boolean respondImmediately) {
+			this.respondImmediately = respondImmediately;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public <I, O> void sendRequest(I request, int timeout, Callback<O> cb) {
+			requests++;
+			if (respondImmediately) {
+				cb.accept(null, error);
+			} else {
+				callbacks.add((Callback<Object>) cb);
+			}
+		}
+
+		void respond() {
+			callbacks.forEach(cb -> cb.accept(null, null));
+			callbacks.clear();
+		}
+	}
+}
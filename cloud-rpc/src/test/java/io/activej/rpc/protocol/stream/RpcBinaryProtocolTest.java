@@ -8,12 +8,14 @@ import io.activej.csp.process.frame.FrameFormat;
 import io.activej.csp.process.frame.FrameFormats;
 import io.activej.datastream.csp.ChannelDeserializer;
 import io.activej.datastream.csp.ChannelSerializer;
+import io.activej.datastream.csp.ChannelSerializer.FlushReason;
 import io.activej.datastream.supplier.StreamSupplier;
 import io.activej.datastream.supplier.StreamSuppliers;
 import io.activej.promise.Promise;
 import io.activej.promise.Promises;
 import io.activej.reactor.Reactor;
 import io.activej.rpc.client.RpcClient;
+import io.activej.rpc.protocol.RpcFlushStats;
 import io.activej.rpc.protocol.RpcMessage;
 import io.activej.rpc.server.RpcServer;
 import io.activej.serializer.BinarySerializer;
@@ -27,6 +29,7 @@ import org.junit.Rule;
 import org.junit.Test;
 
 import java.net.InetSocketAddress;
+import java.time.Duration;
 import java.util.List;
 import java.util.stream.IntStream;
 
@@ -84,6 +87,43 @@ public final class RpcBinaryProtocolTest {
 		assertTrue(list.stream().allMatch(response -> response.equals("Hello, " + testMessage + "!")));
 	}
 
+	@Test
+	public void testAdaptiveFlush() throws Exception {
+		RpcClient client = RpcClient.builder(Reactor.getCurrentReactor())
+			.withMessageTypes(Integer.class)
+			.withStrategy(server(new InetSocketAddress("localhost", listenPort)))
+			.withAdaptiveFlush(MemSize.bytes(64), Duration.ofMillis(1))
+			.build();
+
+		RpcServer server = RpcServer.builder(Reactor.getCurrentReactor())
+			.withMessageTypes(Integer.class)
+			.withHandler(Integer.class, request -> Promise.of(request * 2))
+			.withListenPort(listenPort)
+			.withAdaptiveFlush(MemSize.bytes(64), Duration.ofMillis(1))
+			.build();
+		server.listen();
+
+		int countRequests = 1000;
+
+		List<Integer> list = await(client.start()
+			.then(() ->
+				Promises.toList(IntStream.range(0, countRequests)
+					.mapToObj(i -> client.<Integer, Integer>sendRequest(i, 1000))))
+			.whenComplete(() -> {
+				client.stop();
+				server.close();
+			}));
+
+		assertEquals(IntStream.range(0, countRequests).map(i -> i * 2).boxed().toList(), list);
+
+		RpcFlushStats flushStats = client.getFlushStats();
+		assertTrue(flushStats.getFlushReasons().get(FlushReason.THRESHOLD).getTotalCount() > 0);
+		flushStats.refresh(System.currentTimeMillis());
+		assertEquals(countRequests, flushStats.getBatchMessages().getAverage() * flushStats.getBatchMessages().getCount(), 1e-6);
+		assertTrue(flushStats.getBatchBytes().getAbsoluteMax() < 2 * 64);
+		assertTrue(server.getFlushStats().getBatchMessages().getCount() > 0);
+	}
+
 	@Test
 	public void testCompression() {
 		BinarySerializer<RpcMessage> binarySerializer = SerializerFactory.builder()
@@ -0,0 +1,227 @@
+package io.activej.rpc.server;
+
+import io.activej.promise.Promise;
+import io.activej.promise.Promises;
+import io.activej.promise.SettablePromise;
+import io.activej.reactor.Reactor;
+import io.activej.reactor.nio.NioReactor;
+import io.activej.rpc.client.RpcClient;
+import io.activej.rpc.protocol.RpcOverloadException;
+import io.activej.rpc.protocol.RpcRemoteException;
+import io.activej.test.rules.ByteBufRule;
+import io.activej.test.rules.ClassBuilderConstantsRule;
+import io.activej.test.rules.EventloopRule;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.activej.promise.TestUtils.await;
+import static io.activej.rpc.client.sender.strategy.RpcStrategies.server;
+import static io.activej.test.TestUtils.getFreePort;
+import static org.junit.Assert.*;
+
+public final class RpcAdmissionControlTest {
+	@ClassRule
+	public static final ByteBufRule byteBufRule = new ByteBufRule();
+
+	@ClassRule
+	public static final EventloopRule eventloopRule = new EventloopRule();
+
+	@Rule
+	public final ClassBuilderConstantsRule classBuilderConstantsRule = new ClassBuilderConstantsRule();
+
+	@Test
+	public void testConcurrencyLimitPerRequestType() throws Exception {
+		int port = getFreePort();
+		NioReactor reactor = Reactor.getCurrentReactor();
+		List<SettablePromise<String>> pending = new ArrayList<>();
+
+		RpcAdmissionControl admissionControl = RpcAdmissionControl.builder()
+			.withConcurrencyLimit(String.class, 2)
+			.build();
+		RpcServer server = RpcServer.builder(reactor)
+			.withMessageTypes(String.class, Integer.class)
+			.withHandler(String.class, request -> {
+				SettablePromise<String> promise = new SettablePromise<>();
+				pending.add(promise);
+				return promise;
+			})
+			.withHandler(Integer.class, request -> Promise.of(request + 1))
+			.withAdmissionControl(admissionControl)
+			.withListenPort(port)
+			.build();
+		server.listen();
+
+		RpcClient client = RpcClient.builder(reactor)
+			.withMessageTypes(String.class, Integer.class)
+			.withStrategy(server(new InetSocketAddress(port)))
+			.build();
+
+		List<Promise<String>> heavy = new ArrayList<>();
+		int light = await(client.start()
+			.then(() -> {
+				for (int i = 0; i < 3; i++) {
+					heavy.add(client.sendRequest("heavy" + i));
+				}
+				return client.<Integer, Integer>sendRequest(1);
+			})
+			.then(result -> {
+				assertEquals(2, pending.size());
+				assertEquals(2, admissionControl.getInFlight());
+				pending.forEach(promise -> promise.set("done"));
+				return Promises.toList(heavy.get(0), heavy.get(1))
+					.then(() -> heavy.get(2).then(($, e) -> Promise.of(e)))
+					.map(e -> {
+						assertTrue(e instanceof RpcRemoteException);
+						assertEquals(RpcOverloadException.class.getName(), ((RpcRemoteException) e).getCauseClassName());
+						return result;
+					});
+			})
+			.whenComplete(() -> {
+				client.stop();
+				server.close();
+			}));
+
+		assertEquals(2, light);
+		assertEquals(0, admissionControl.getInFlight());
+		assertEquals(1, admissionControl.getShedRequests().getTotalCount());
+	}
+
+	@Test
+	public void testPriorityQueue() {
+		List<String> handled = new ArrayList<>();
+		List<String> shed = new ArrayList<>();
+		RpcAdmissionControl admissionControl = RpcAdmissionControl.builder()
+			.withConcurrencyLimit(1)
+			.withMaxQueueSize(2)
+			.withPriority(Integer.class, 1)
+			.build();
+
+		admissionControl.submit(null, "first", () -> handled.add("first"), e -> shed.add("first"));
+		admissionControl.submit(null, "low1", () -> handled.add("low1"), e -> shed.add("low1"));
+		admissionControl.submit(null, "low2", () -> handled.add("low2"), e -> shed.add("low2"));
+		admissionControl.submit(null, 42, () -> handled.add("high"), e -> shed.add("high"));
+		admissionControl.submit(null, "low3", () -> handled.add("low3"), e -> shed.add("low3"));
+
+		assertEquals(List.of("first"), handled);
+		assertEquals(List.of("low2", "low3"), shed);
+		assertEquals(2, admissionControl.getQueueSize());
+
+		admissionControl.complete("first", 1_000_000);
+		assertEquals(List.of("first", "high"), handled);
+		admissionControl.complete(42, 1_000_000);
+		assertEquals(List.of("first", "high", "low1"), handled);
+		assertEquals(0, admissionControl.getQueueSize());
+		assertEquals(1, admissionControl.getInFlight());
+	}
+
+	@Test
+	public void testMaxQueueTime() throws InterruptedException {
+		List<String> shed = new ArrayList<>();
+		RpcAdmissionControl admissionControl = RpcAdmissionControl.builder()
+			.withConcurrencyLimit(1)
+			.withMaxQueueSize(10)
+			.withMaxQueueTime(Duration.ofMillis(10))
+			.build();
+
+		admissionControl.submit(null, "first", () -> {}, e -> shed.add("first"));
+		admissionControl.submit(null, "second", () -> {}, e -> shed.add("second"));
+		Thread.sleep(20);
+		admissionControl.complete("first", 1_000_000);
+
+		assertEquals(List.of("second"), shed);
+		assertEquals(0, admissionControl.getInFlight());
+	}
+
+	@Test
+	public void testQueuedRequestsExpireWhileHandlersHang() throws Exception {
+		int port = getFreePort();
+		NioReactor reactor = Reactor.getCurrentReactor();
+		List<SettablePromise<String>> hanging = new ArrayList<>();
+
+		RpcAdmissionControl admissionControl = RpcAdmissionControl.builder()
+			.withConcurrencyLimit(1)
+			.withMaxQueueSize(10)
+			.withMaxQueueTime(Duration.ofMillis(50))
+			.build();
+		RpcServer server = RpcServer.builder(reactor)
+			.withMessageTypes(String.class)
+			.withHandler(String.class, request -> {
+				SettablePromise<String> promise = new SettablePromise<>();
+				hanging.add(promise);
+				return promise;
+			})
+			.withAdmissionControl(admissionControl)
+			.withListenPort(port)
+			.build();
+		server.listen();
+
+		RpcClient client = RpcClient.builder(reactor)
+			.withMessageTypes(String.class)
+			.withStrategy(server(new InetSocketAddress(port)))
+			.build();
+
+		long start = System.nanoTime();
+		List<Exception> errors = await(client.start()
+			.then(() -> {
+				client.<String, String>sendRequest("first");
+				List<Promise<Exception>> queued = new ArrayList<>();
+				for (int i = 0; i < 3; i++) {
+					queued.add(client.<String, String>sendRequest("queued" + i).then(($, e) -> Promise.of(e)));
+				}
+				return Promises.toList(queued);
+			})
+			.whenComplete(() -> {
+				// queued requests have been rejected while the first one still hangs
+				assertEquals(1, hanging.size());
+				assertEquals(0, admissionControl.getQueueSize());
+				hanging.forEach(promise -> promise.set("done"));
+				client.stop();
+				server.close();
+			}));
+
+		assertTrue(System.nanoTime() - start >= Duration.ofMillis(50).toNanos());
+		assertEquals(3, errors.size());
+		for (Exception e : errors) {
+			assertTrue(e instanceof RpcRemoteException);
+			assertEquals(RpcOverloadException.class.getName(), ((RpcRemoteException) e).getCauseClassName());
+		}
+		assertEquals(3, admissionControl.getShedRequests().getTotalCount());
+	}
+
+	@Test
+	public void testAdaptiveConcurrencyLimit() {
+		RpcAdmissionControl admissionControl = RpcAdmissionControl.builder()
+			.withAdaptiveConcurrencyLimit(10, 2, 100)
+			.withMaxQueueSize(1000)
+			.build();
+
+		simulateLoad(admissionControl, 1_000_000, 2000);
+		int grownLimit = admissionControl.getConcurrencyLimit();
+		assertTrue(grownLimit > 10);
+
+		simulateLoad(admissionControl, 10_000_000, 50);
+		int shrunkLimit = admissionControl.getConcurrencyLimit();
+		assertTrue(shrunkLimit < grownLimit);
+		assertTrue(shrunkLimit >= 2);
+	}
+
+	private static void simulateLoad(RpcAdmissionControl admissionControl, long handlingNanos, int requests) {
+		List<Integer> inFlight = new ArrayList<>();
+		for (int i = 0; i < requests; i++) {
+			Integer request = i;
+			admissionControl.submit(null, request, () -> inFlight.add(request), e -> {});
+			if (admissionControl.getQueueSize() > 0) {
+				admissionControl.complete(inFlight.remove(0), handlingNanos);
+			}
+		}
+		while (!inFlight.isEmpty()) {
+			admissionControl.complete(inFlight.remove(0), handlingNanos);
+		}
+	}
+}
@@ -27,6 +27,7 @@ import io.activej.datastream.consumer.AbstractStreamConsumer;
 import io.activej.datastream.consumer.StreamConsumer;
 import io.activej.datastream.supplier.StreamDataAcceptor;
 import io.activej.promise.Promise;
+import io.activej.reactor.schedule.ScheduledRunnable;
 import io.activej.serializer.BinarySerializer;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
@@ -68,6 +69,9 @@ public final class ChannelSerializer<T> extends AbstractStreamConsumer<T>
 	private byte @Nullable [] explicitEndOfStream;
 
 	private @Nullable Duration autoFlushInterval;
+	private @Nullable MemSize flushThreshold;
+	private @Nullable Duration maxFlushDelay;
+	private @Nullable FlushListener flushListener;
 	private BiConsumer<T, Exception> serializationErrorHandler = ($, e) -> closeEx(e);
 
 	private Input input;
@@ -76,6 +80,48 @@ public final class ChannelSerializer<T> extends AbstractStreamConsumer<T>
 	private final ArrayDeque<ByteBuf> bufs = new ArrayDeque<>();
 	private boolean sending;
 
+	/**
+	 * A reason of a buffer being flushed to the output
+	 */
+	public enum FlushReason {
+		/**
+		 * An auto flush interval has passed
+		 */
+		INTERVAL,
+		/**
+		 * A reactor tick has ended while the output was idle
+		 */
+		IDLE,
+		/**
+		 * A previous write to the output has completed
+		 */
+		WRITE_COMPLETE,
+		/**
+		 * An amount of buffered data has reached a flush threshold
+		 */
+		THRESHOLD,
+		/**
+		 * A maximum flush delay has passed
+		 */
+		MAX_DELAY,
+		/**
+		 * A buffer does not have enough space for the next item
+		 */
+		BUFFER_FULL,
+		/**
+		 * An end of stream has been received
+		 */
+		END_OF_STREAM
+	}
+
+	/**
+	 * A listener that is notified each time a non-empty buffer is flushed to the output
+	 */
+	@FunctionalInterface
+	public interface FlushListener {
+		void onFlush(FlushReason reason, int bytes, int items);
+	}
+
 	private ChannelSerializer(BinarySerializer<T> serializer) {
 		this.serializer = serializer;
 	}
@@ -119,6 +165,33 @@ public final class ChannelSerializer<T> extends AbstractStreamConsumer<T>
 			return this;
 		}
 
+		/**
+		 * Enables adaptive flushing, which overrides an auto flush interval.
+		 * <p>
+		 * Serialized data is flushed at the end of the current reactor tick if the output is idle.
+		 * While a previous write is still in progress, data is accumulated and flushed
+		 * as soon as the write completes, but no later than after a given maximum delay.
+		 * Data is also flushed as soon as the amount of buffered bytes reaches a given threshold.
+		 */
+		public Builder withAdaptiveFlush(MemSize flushThreshold, Duration maxFlushDelay) {
+			checkNotBuilt(this);
+			checkArgument(flushThreshold.toLong() > 0, "Flush threshold must be positive");
+			checkArgument(!maxFlushDelay.isNegative(), "Maximum flush delay must not be negative");
+			ChannelSerializer.this.flushThreshold = flushThreshold;
+			ChannelSerializer.this.maxFlushDelay = maxFlushDelay;
+			return this;
+		}
+
+		/**
+		 * Sets a listener that is notified of each flushed buffer,
+		 * its size, number of items in it and the reason of the flush
+		 */
+		public Builder withFlushListener(FlushListener flushListener) {
+			checkNotBuilt(this);
+			ChannelSerializer.this.flushListener = flushListener;
+			return this;
+		}
+
 		/**
 		 * Enables skipping of serialization errors.
 		 * <p>
@@ -185,7 +258,7 @@ public final class ChannelSerializer<T> extends AbstractStreamConsumer<T>
 
 	@Override
 	protected void onEndOfStream() {
-		input.flush();
+		input.flush(FlushReason.END_OF_STREAM);
 		send();
 	}
 
@@ -199,6 +272,7 @@ public final class ChannelSerializer<T> extends AbstractStreamConsumer<T>
 		bufs.forEach(ByteBuf::recycle);
 		bufs.clear();
 		input.buf = nullify(input.buf, ByteBuf::recycle);
+		input.delayedFlush = nullify(input.delayedFlush, ScheduledRunnable::cancel);
 	}
 
 	private void send() {
@@ -231,6 +305,8 @@ public final class ChannelSerializer<T> extends AbstractStreamConsumer<T>
 				.then(output::acceptEndOfStream)
 				.whenResult(this::acknowledge)
 				.whenException(this::closeEx);
+		} else if (input.delayedFlush != null) {
+			input.flush(FlushReason.WRITE_COMPLETE);
 		} else {
 			resume(input);
 		}
@@ -240,6 +316,7 @@ public final class ChannelSerializer<T> extends AbstractStreamConsumer<T>
 		private final BinarySerializer<T> serializer;
 
 		private ByteBuf buf = null;
+		private int items;
 		private int estimatedDataSize;
 		private int estimatedHeaderSize;
 		private int requiredRemainingSize;
@@ -247,13 +324,18 @@ public final class ChannelSerializer<T> extends AbstractStreamConsumer<T>
 		private final int initialBufferSize;
 
 		private final int autoFlushIntervalMillis;
+		private final int flushThreshold;
+		private final long maxFlushDelayMillis;
 		private boolean flushPosted;
+		private @Nullable ScheduledRunnable delayedFlush;
 		private final BiConsumer<T, Exception> serializationErrorHandler;
 
 		public Input(BinarySerializer<T> serializer, int initialBufferSize, BiConsumer<T, Exception> serializationErrorHandler) {
 			this.serializer = serializer;
 			this.initialBufferSize = initialBufferSize;
 			this.autoFlushIntervalMillis = autoFlushInterval == null ? Integer.MAX_VALUE : (int) autoFlushInterval.toMillis();
+			this.flushThreshold = ChannelSerializer.this.flushThreshold == null ? Integer.MAX_VALUE : ChannelSerializer.this.flushThreshold.toInt();
+			this.maxFlushDelayMillis = maxFlushDelay == null ? -1 : maxFlushDelay.toMillis();
 			this.serializationErrorHandler = serializationErrorHandler;
 		}
 
@@ -285,6 +367,10 @@ public final class ChannelSerializer<T> extends AbstractStreamConsumer<T>
 				reestimate(positionBegin, positionData, dataSize);
 			}
 			writeSize(buf.array(), positionBegin, dataSize);
+			items++;
+			if (buf.readRemaining() >= flushThreshold) {
+				flush(FlushReason.THRESHOLD);
+			}
 		}
 
 		private void writeSize(byte[] buf, int pos, int size) {
@@ -314,7 +400,7 @@ public final class ChannelSerializer<T> extends AbstractStreamConsumer<T>
 		}
 
 		private void ensureBuffer() {
-			flush();
+			flush(FlushReason.BUFFER_FULL);
 			buf = ByteBufPool.allocate(max(initialBufferSize, requiredRemainingSize));
 			if (!flushPosted) {
 				postFlush();
@@ -323,7 +409,7 @@ public final class ChannelSerializer<T> extends AbstractStreamConsumer<T>
 
 		private void enlargeBuffer() {
 			int writeRemaining = buf.writeRemaining();
-			flush();
+			flush(FlushReason.BUFFER_FULL);
 			buf = ByteBufPool.allocate(max(initialBufferSize, writeRemaining + (writeRemaining >>> 1) + 1));
 		}
 
@@ -360,22 +446,44 @@ public final class ChannelSerializer<T> extends AbstractStreamConsumer<T>
 
 		private void postFlush() {
 			flushPosted = true;
-			if (autoFlushIntervalMillis <= 0) {
+			if (maxFlushDelayMillis >= 0) {
+				reactor.postLast(() -> {
+					flushPosted = false;
+					flushIfIdle();
+				});
+			} else if (autoFlushIntervalMillis <= 0) {
 				reactor.postLast(() -> {
 					flushPosted = false;
-					flush();
+					flush(FlushReason.INTERVAL);
 				});
 			} else if (autoFlushIntervalMillis < Integer.MAX_VALUE) {
 				reactor.delayBackground(autoFlushIntervalMillis, () -> {
 					flushPosted = false;
-					flush();
+					flush(FlushReason.INTERVAL);
 				});
 			}
 		}
 
-		private void flush() {
+		private void flushIfIdle() {
+			if (buf == null || !buf.canRead()) return;
+			if (!sending && bufs.isEmpty()) {
+				flush(FlushReason.IDLE);
+			} else if (delayedFlush == null) {
+				delayedFlush = reactor.delayBackground(maxFlushDelayMillis, () -> {
+					delayedFlush = null;
+					flush(FlushReason.MAX_DELAY);
+				});
+			}
+		}
+
+		private void flush(FlushReason reason) {
+			delayedFlush = nullify(delayedFlush, ScheduledRunnable::cancel);
 			if (buf == null) return;
 			if (buf.canRead()) {
+				if (flushListener != null) {
+					flushListener.onFlush(reason, buf.readRemaining(), items);
+				}
+				items = 0;
 				if (!bufs.isEmpty()) {
 					suspend();
 				}
@@ -2,6 +2,7 @@ package io.activej.datastream.csp;
 
 import io.activej.common.MemSize;
 import io.activej.datastream.consumer.ToListStreamConsumer;
+import io.activej.datastream.csp.ChannelSerializer.FlushReason;
 import io.activej.datastream.supplier.StreamSuppliers;
 import io.activej.serializer.BinarySerializers;
 import io.activej.test.rules.ByteBufRule;
@@ -9,12 +10,17 @@ import io.activej.test.rules.EventloopRule;
 import org.junit.ClassRule;
 import org.junit.Test;
 
+import java.time.Duration;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
 
 import static io.activej.promise.TestUtils.await;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public final class ChannelSerializerDeserializerTest {
 	@ClassRule
@@ -64,4 +70,29 @@ public final class ChannelSerializerDeserializerTest {
 			assertArrayEquals(byteArrays.get(i), deserialized.get(i));
 		}
 	}
+
+	@Test
+	public void adaptiveFlush() {
+		List<Integer> ints = IntStream.range(0, 1000).boxed().toList();
+		Map<FlushReason, Integer> flushes = new EnumMap<>(FlushReason.class);
+		int[] flushedItems = {0};
+
+		ToListStreamConsumer<Integer> consumer = ToListStreamConsumer.create();
+
+		await(StreamSuppliers.ofIterable(ints)
+			.transformWith(ChannelSerializer.builder(BinarySerializers.INT_SERIALIZER)
+				.withAdaptiveFlush(MemSize.bytes(100), Duration.ofMillis(10))
+				.withFlushListener((reason, bytes, items) -> {
+					assertTrue(bytes <= 100);
+					flushes.merge(reason, 1, Integer::sum);
+					flushedItems[0] += items;
+				})
+				.build())
+			.transformWith(ChannelDeserializer.create(BinarySerializers.INT_SERIALIZER))
+			.streamTo(consumer));
+
+		assertEquals(ints, consumer.getList());
+		assertEquals(1000, flushedItems[0]);
+		assertEquals(Map.of(FlushReason.THRESHOLD, 50), flushes);
+	}
 }
@@ -0,0 +1,102 @@
+package io.activej.crdt;
+
+import io.activej.crdt.function.CrdtFunction;
+import io.activej.crdt.storage.local.MapCrdtStorage;
+import io.activej.crdt.storage.local.OffHeapCrdtStorage;
+import io.activej.crdt.util.CrdtDataBinarySerializer;
+import io.activej.datastream.consumer.StreamConsumers;
+import io.activej.eventloop.Eventloop;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static io.activej.crdt.function.CrdtFunction.ignoringTimestamp;
+import static io.activej.serializer.BinarySerializers.LONG_SERIALIZER;
+
+/**
+ * Compares heap-based {@link MapCrdtStorage} with {@link OffHeapCrdtStorage}
+ * on single puts, single gets and full downloads of a storage with a lot of keys
+ */
+@State(Scope.Benchmark)
+public class CrdtStorageBenchmark {
+	private static final CrdtFunction<Long> CRDT_FUNCTION = ignoringTimestamp(Long::sum);
+	private static final CrdtDataBinarySerializer<Long, Long> SERIALIZER = new CrdtDataBinarySerializer<>(LONG_SERIALIZER, LONG_SERIALIZER);
+
+	@Param({"map", "offHeap"})
+	public String storageType;
+
+	@Param({"10000000"})
+	public int keys;
+
+	private Eventloop eventloop;
+	private MapCrdtStorage<Long, Long> mapStorage;
+	private OffHeapCrdtStorage<Long, Long> offHeapStorage;
+
+	@Setup
+	public void setup() {
+		eventloop = Eventloop.builder()
+			.withCurrentThread()
+			.build();
+		if (storageType.equals("map")) {
+			mapStorage = MapCrdtStorage.create(eventloop, CRDT_FUNCTION);
+			for (long i = 0; i < keys; i++) {
+				mapStorage.put(new CrdtData<>(i, i, i));
+			}
+		} else {
+			offHeapStorage = OffHeapCrdtStorage.create(eventloop, SERIALIZER, CRDT_FUNCTION);
+			for (long i = 0; i < keys; i++) {
+				offHeapStorage.put(new CrdtData<>(i, i, i));
+			}
+		}
+	}
+
+	@Benchmark
+	public void put() {
+		long key = ThreadLocalRandom.current().nextLong(keys);
+		CrdtData<Long, Long> data = new CrdtData<>(key, key, 1L);
+		if (mapStorage != null) {
+			mapStorage.put(data);
+		} else {
+			offHeapStorage.put(data);
+		}
+	}
+
+	@Benchmark
+	public void get(Blackhole blackhole) {
+		long key = ThreadLocalRandom.current().nextLong(keys);
+		blackhole.consume(mapStorage != null ? mapStorage.get(key) : offHeapStorage.get(key));
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public void download(Blackhole blackhole) {
+		(mapStorage != null ? mapStorage.download(keys / 2) : offHeapStorage.download(keys / 2))
+			.then(supplier -> supplier.streamTo(StreamConsumers.ofConsumer(blackhole::consume)))
+			.whenException(e -> {throw new AssertionError(e);});
+		eventloop.run();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder()
+			.include(CrdtStorageBenchmark.class.getSimpleName())
+			.forks(1)
+			.jvmArgs("-Xmx16g", "-XX:MaxDirectMemorySize=16g")
+			.warmupIterations(3)
+			.warmupTime(TimeValue.seconds(1L))
+			.measurementIterations(5)
+			.measurementTime(TimeValue.seconds(2L))
+			.mode(Mode.AverageTime)
+			.timeUnit(TimeUnit.NANOSECONDS)
+			.build();
+
+		new Runner(opt).run();
+	}
+}
@@ -0,0 +1,162 @@
+package io.activej.crdt;
+
+import io.activej.common.MemSize;
+import io.activej.crdt.function.CrdtFunction;
+import io.activej.crdt.storage.ICrdtStorage;
+import io.activej.crdt.storage.local.FileSystemCrdtStorage;
+import io.activej.crdt.storage.lsm.LsmCrdtStorage;
+import io.activej.crdt.util.CrdtDataBinarySerializer;
+import io.activej.datastream.consumer.StreamConsumers;
+import io.activej.datastream.processor.transformer.StreamTransformers;
+import io.activej.datastream.supplier.StreamSuppliers;
+import io.activej.eventloop.Eventloop;
+import io.activej.fs.FileSystem;
+import io.activej.promise.Promise;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static io.activej.crdt.function.CrdtFunction.ignoringTimestamp;
+import static io.activej.serializer.BinarySerializers.LONG_SERIALIZER;
+
+/**
+ * Compares {@link LsmCrdtStorage} with {@link FileSystemCrdtStorage}
+ * on batched uploads, point lookups and full downloads of a persistent storage
+ */
+@State(Scope.Benchmark)
+public class LsmCrdtStorageBenchmark {
+	private static final CrdtFunction<Long> CRDT_FUNCTION = ignoringTimestamp(Long::sum);
+	private static final CrdtDataBinarySerializer<Long, Long> SERIALIZER = new CrdtDataBinarySerializer<>(LONG_SERIALIZER, LONG_SERIALIZER);
+
+	@Param({"lsm", "fileSystem"})
+	public String storageType;
+
+	@Param({"1000000"})
+	public int keys;
+
+	@Param({"10000"})
+	public int batchSize;
+
+	private Eventloop eventloop;
+	private ExecutorService executor;
+	private Path dir;
+	private ICrdtStorage<Long, Long> storage;
+
+	@Setup
+	public void setup() throws IOException {
+		eventloop = Eventloop.builder()
+			.withCurrentThread()
+			.build();
+		executor = Executors.newFixedThreadPool(2);
+		dir = Files.createTempDirectory("crdt-benchmark");
+
+		if (storageType.equals("lsm")) {
+			LsmCrdtStorage<Long, Long> lsmStorage = LsmCrdtStorage.builder(eventloop, executor, dir, SERIALIZER, CRDT_FUNCTION)
+				.withMemtableSize(MemSize.megabytes(4))
+				.build();
+			run(lsmStorage.start());
+			storage = lsmStorage;
+		} else {
+			FileSystem fileSystem = FileSystem.create(eventloop, executor, dir);
+			run(fileSystem.start());
+			FileSystemCrdtStorage<Long, Long> fileSystemStorage = FileSystemCrdtStorage.create(eventloop, fileSystem, SERIALIZER, CRDT_FUNCTION);
+			run(fileSystemStorage.start());
+			storage = fileSystemStorage;
+		}
+
+		for (long from = 0; from < keys; from += batchSize) {
+			upload(from);
+		}
+		if (storage instanceof LsmCrdtStorage<Long, Long> lsmStorage) {
+			run(lsmStorage.flush().then(lsmStorage::compact));
+		} else {
+			run(((FileSystemCrdtStorage<Long, Long>) storage).consolidate());
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		if (storage instanceof LsmCrdtStorage<Long, Long> lsmStorage) {
+			run(lsmStorage.stop());
+		}
+		executor.shutdownNow();
+		try (Stream<Path> files = Files.walk(dir)) {
+			for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+				Files.delete(file);
+			}
+		}
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public void upload() {
+		upload(ThreadLocalRandom.current().nextLong(keys));
+	}
+
+	/**
+	 * {@link FileSystemCrdtStorage} has no point lookups, so a key is searched for in a full download
+	 */
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public void get(Blackhole blackhole) {
+		long key = ThreadLocalRandom.current().nextLong(keys);
+		if (storage instanceof LsmCrdtStorage<Long, Long> lsmStorage) {
+			blackhole.consume(run(lsmStorage.get(key)));
+		} else {
+			blackhole.consume(run(storage.download()
+				.then(supplier -> supplier
+					.transformWith(StreamTransformers.filter(data -> data.getKey() == key))
+					.toList())));
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public void download(Blackhole blackhole) {
+		run(storage.download()
+			.then(supplier -> supplier.streamTo(StreamConsumers.ofConsumer(blackhole::consume))));
+	}
+
+	private void upload(long from) {
+		run(StreamSuppliers.ofStream(LongStream.range(from, from + batchSize)
+				.mapToObj(i -> new CrdtData<>(i % keys, i, 1L)))
+			.streamTo(storage.upload()));
+	}
+
+	private <T> T run(Promise<T> promise) {
+		eventloop.run();
+		if (!promise.isComplete()) throw new AssertionError("Promise has not completed");
+		if (promise.isException()) throw new AssertionError(promise.getException());
+		return promise.getResult();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder()
+			.include(LsmCrdtStorageBenchmark.class.getSimpleName())
+			.forks(1)
+			.warmupIterations(3)
+			.warmupTime(TimeValue.seconds(1L))
+			.measurementIterations(5)
+			.measurementTime(TimeValue.seconds(2L))
+			.mode(Mode.AverageTime)
+			.build();
+
+		new Runner(opt).run();
+	}
+}
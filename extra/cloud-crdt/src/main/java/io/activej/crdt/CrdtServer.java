@@ -21,26 +21,38 @@ import io.activej.crdt.messaging.CrdtResponse;
 import io.activej.crdt.messaging.Version;
 import io.activej.crdt.storage.ICrdtStorage;
 import io.activej.crdt.util.CrdtDataBinarySerializer;
+import io.activej.crdt.util.CrdtDataHasher;
+import io.activej.crdt.util.MerkleTree;
+import io.activej.common.exception.MalformedDataException;
+import io.activej.common.exception.TruncatedDataException;
 import io.activej.csp.binary.codec.ByteBufsCodec;
 import io.activej.csp.binary.codec.ByteBufsCodecs;
 import io.activej.csp.net.IMessaging;
 import io.activej.csp.net.Messaging;
 import io.activej.datastream.consumer.StreamConsumers;
+import io.activej.datastream.processor.transformer.StreamTransformers;
 import io.activej.datastream.stats.BasicStreamStats;
 import io.activej.datastream.stats.DetailedStreamStats;
 import io.activej.datastream.stats.StreamStats;
+import io.activej.datastream.supplier.StreamSuppliers;
 import io.activej.jmx.api.attribute.JmxAttribute;
 import io.activej.jmx.api.attribute.JmxOperation;
 import io.activej.net.AbstractReactiveServer;
 import io.activej.net.socket.tcp.ITcpSocket;
 import io.activej.promise.Promise;
+import io.activej.promise.Promises;
 import io.activej.promise.jmx.PromiseStats;
 import io.activej.reactor.nio.NioReactor;
 import io.activej.serializer.BinarySerializer;
+import io.activej.serializer.BinarySerializers;
+import org.jetbrains.annotations.Nullable;
 
 import java.net.InetAddress;
 import java.time.Duration;
+import java.util.BitSet;
+import java.util.List;
 import java.util.function.Function;
+import java.util.function.Predicate;
 
 import static io.activej.async.util.LogUtils.Level.TRACE;
 import static io.activej.async.util.LogUtils.thisMethod;
@@ -49,7 +61,7 @@ import static io.activej.crdt.util.Utils.*;
 
 @SuppressWarnings("rawtypes")
 public final class CrdtServer<K extends Comparable<K>, S> extends AbstractReactiveServer {
-	public static final Version VERSION = new Version(1, 0);
+	public static final Version VERSION = new Version(1, 3);
 
 	private static final ByteBufsCodec<CrdtRequest, CrdtResponse> SERIALIZER = ByteBufsCodecs.ofStreamCodecs(
 		CRDT_REQUEST_CODEC,
@@ -62,6 +74,8 @@ public final class CrdtServer<K extends Comparable<K>, S> extends AbstractReacti
 	private final ICrdtStorage<K, S> storage;
 	private final CrdtDataBinarySerializer<K, S> serializer;
 	private final BinarySerializer<CrdtTombstone<K>> tombstoneSerializer;
+	private final BinarySerializer<@Nullable S> nullableStateSerializer;
+	private CrdtDataHasher<K, S> hasher;
 
 	// region JMX
 	private boolean detailedStats;
@@ -85,6 +99,10 @@ public final class CrdtServer<K extends Comparable<K>, S> extends AbstractReacti
 	private final PromiseStats takeBeginPromise = PromiseStats.create(Duration.ofMinutes(5));
 	private final PromiseStats takeFinishedPromise = PromiseStats.create(Duration.ofMinutes(5));
 	private final PromiseStats pingPromise = PromiseStats.create(Duration.ofMinutes(5));
+	private final PromiseStats putPromise = PromiseStats.create(Duration.ofMinutes(5));
+	private final PromiseStats getPromise = PromiseStats.create(Duration.ofMinutes(5));
+	private final PromiseStats merkleTreePromise = PromiseStats.create(Duration.ofMinutes(5));
+	private final PromiseStats downloadBucketsPromise = PromiseStats.create(Duration.ofMinutes(5));
 	// endregion
 
 	private CrdtServer(NioReactor reactor, ICrdtStorage<K, S> storage, CrdtDataBinarySerializer<K, S> serializer) {
@@ -93,6 +111,8 @@ public final class CrdtServer<K extends Comparable<K>, S> extends AbstractReacti
 		this.serializer = serializer;
 
 		tombstoneSerializer = serializer.getTombstoneSerializer();
+		nullableStateSerializer = BinarySerializers.ofNullable(serializer.getStateSerializer());
+		hasher = CrdtDataHasher.create(serializer);
 	}
 
 	public static <K extends Comparable<K>, S> CrdtServer<K, S>.Builder builder(
@@ -116,6 +136,15 @@ public final class CrdtServer<K extends Comparable<K>, S> extends AbstractReacti
 			CrdtServer.this.handshakeHandler = handshakeHandler;
 			return this;
 		}
+
+		/**
+		 * Sets a hasher of Merkle trees, which should be configured the same way as the one used by repair
+		 */
+		public Builder withDataHasher(CrdtDataHasher<K, S> hasher) {
+			checkNotBuilt(this);
+			CrdtServer.this.hasher = hasher;
+			return this;
+		}
 	}
 
 	@Override
@@ -129,8 +158,22 @@ public final class CrdtServer<K extends Comparable<K>, S> extends AbstractReacti
 				}
 				return handleHandshake(messaging, handshake);
 			})
-			.then(messaging::receive)
-			.then(msg -> dispatch(messaging, msg))
+			.then(() -> Promises.repeat(() -> messaging.receive()
+				.then((msg, e) -> {
+					if (e instanceof TruncatedDataException) {
+						// client has closed a persistent connection
+						messaging.close();
+						return Promise.of(false);
+					}
+					if (e != null) return Promise.ofException(e);
+					if (msg instanceof CrdtRequest.Put put) {
+						return handlePut(messaging, put).map($ -> true);
+					}
+					if (msg instanceof CrdtRequest.Get get) {
+						return handleGet(messaging, get).map($ -> true);
+					}
+					return dispatch(messaging, msg).map($ -> false);
+				})))
 			.whenException(e -> {
 				logger.warn("got an error while handling message {}", this, e);
 				messaging.send(new CrdtResponse.ServerError(e.getClass().getSimpleName() + ": " + e.getMessage()))
@@ -155,6 +198,15 @@ public final class CrdtServer<K extends Comparable<K>, S> extends AbstractReacti
 		if (msg instanceof CrdtRequest.Take take) {
 			return handleTake(messaging, take);
 		}
+		if (msg instanceof CrdtRequest.GetMerkleTree getMerkleTree) {
+			return handleGetMerkleTree(messaging, getMerkleTree);
+		}
+		if (msg instanceof CrdtRequest.DownloadBuckets downloadBuckets) {
+			return handleDownloadBuckets(messaging, downloadBuckets);
+		}
+		if (msg instanceof CrdtRequest.DownloadTombstoneBuckets downloadTombstoneBuckets) {
+			return handleDownloadTombstoneBuckets(messaging, downloadTombstoneBuckets);
+		}
 		if (msg instanceof CrdtRequest.Handshake) {
 			return Promise.ofException(new CrdtException("Handshake was already performed"));
 		}
@@ -236,6 +288,82 @@ public final class CrdtServer<K extends Comparable<K>, S> extends AbstractReacti
 			.whenComplete(toLogger(logger, TRACE, thisMethod(), messaging, download, this));
 	}
 
+	private Promise<Void> handlePut(Messaging<CrdtRequest, CrdtResponse> messaging, CrdtRequest.Put put) throws MalformedDataException {
+		List<CrdtData<K, S>> items = decodeBatch(serializer, put.items());
+		return StreamSuppliers.ofIterable(items)
+			.streamTo(StreamConsumers.ofPromise(storage.upload()
+				.map(consumer -> consumer.transformWith(detailedStats ? uploadStatsDetailed : uploadStats))))
+			.then(() -> messaging.send(new CrdtResponse.PutAck()))
+			.whenComplete(putPromise.recordStats())
+			.whenComplete(toLogger(logger, TRACE, thisMethod(), messaging, put, this));
+	}
+
+	private Promise<Void> handleGet(Messaging<CrdtRequest, CrdtResponse> messaging, CrdtRequest.Get get) throws MalformedDataException {
+		List<K> keys = decodeBatch(serializer.getKeySerializer(), get.keys());
+		return storage.getAll(keys)
+			.then(states -> messaging.send(new CrdtResponse.GetResult(encodeBatch(nullableStateSerializer, states))))
+			.whenComplete(getPromise.recordStats())
+			.whenComplete(toLogger(logger, TRACE, thisMethod(), messaging, get, this));
+	}
+
+	private Promise<Void> handleGetMerkleTree(Messaging<CrdtRequest, CrdtResponse> messaging, CrdtRequest.GetMerkleTree getMerkleTree) {
+		int depth = getMerkleTree.depth();
+		if (!isValidDepth(depth)) {
+			return Promise.ofException(new CrdtException("Illegal Merkle tree depth: " + depth));
+		}
+		BitSet ranges = BitSet.valueOf(getMerkleTree.ranges());
+		return storage.download()
+			.then(supplier -> storage.downloadTombstones()
+				.whenException(supplier::closeEx)
+				.then(tombstoneSupplier -> hasher.computeTree(supplier, tombstoneSupplier, ranges, depth)))
+			.then(tree -> messaging.send(new CrdtResponse.MerkleTreeLeaves(depth, tree.getLeaves(depth, ranges))))
+			.then(messaging::sendEndOfStream)
+			.whenResult(messaging::close)
+			.whenComplete(merkleTreePromise.recordStats())
+			.whenComplete(toLogger(logger, TRACE, thisMethod(), messaging, getMerkleTree, this));
+	}
+
+	private Promise<Void> handleDownloadBuckets(Messaging<CrdtRequest, CrdtResponse> messaging, CrdtRequest.DownloadBuckets downloadBuckets) {
+		int depth = downloadBuckets.depth();
+		if (!isValidDepth(depth)) {
+			return Promise.ofException(new CrdtException("Illegal Merkle tree depth: " + depth));
+		}
+		Predicate<K> inBuckets = hasher.inBuckets(depth, BitSet.valueOf(downloadBuckets.buckets()));
+		return storage.download()
+			.map(supplier -> supplier
+				.transformWith(StreamTransformers.filter(data -> inBuckets.test(data.getKey())))
+				.transformWith(detailedStats ? downloadStatsDetailed : downloadStats))
+			.whenResult(() -> messaging.send(new CrdtResponse.DownloadStarted()))
+			.then(supplier -> supplier
+				.transformWith(createSerializer(serializer))
+				.streamTo(messaging.sendBinaryStream()))
+			.whenComplete(downloadBucketsPromise.recordStats())
+			.whenComplete(toLogger(logger, TRACE, thisMethod(), messaging, downloadBuckets, this));
+	}
+
+	private Promise<Void> handleDownloadTombstoneBuckets(
+		Messaging<CrdtRequest, CrdtResponse> messaging, CrdtRequest.DownloadTombstoneBuckets downloadTombstoneBuckets
+	) {
+		int depth = downloadTombstoneBuckets.depth();
+		if (!isValidDepth(depth)) {
+			return Promise.ofException(new CrdtException("Illegal Merkle tree depth: " + depth));
+		}
+		Predicate<K> inBuckets = hasher.inBuckets(depth, BitSet.valueOf(downloadTombstoneBuckets.buckets()));
+		return storage.downloadTombstones()
+			.map(supplier -> supplier
+				.transformWith(StreamTransformers.filter(tombstone -> inBuckets.test(tombstone.getKey()))))
+			.whenResult(() -> messaging.send(new CrdtResponse.DownloadStarted()))
+			.then(supplier -> supplier
+				.transformWith(createSerializer(tombstoneSerializer))
+				.streamTo(messaging.sendBinaryStream()))
+			.whenComplete(downloadBucketsPromise.recordStats())
+			.whenComplete(toLogger(logger, TRACE, thisMethod(), messaging, downloadTombstoneBuckets, this));
+	}
+
+	private static boolean isValidDepth(int depth) {
+		return depth >= 0 && CrdtDataHasher.RANGE_BITS + depth <= MerkleTree.MAX_DEPTH;
+	}
+
 	// region JMX
 	@JmxAttribute
 	public boolean isDetailedStats() {
@@ -341,5 +469,25 @@ public final class CrdtServer<K extends Comparable<K>, S> extends AbstractReacti
 	public PromiseStats getPingPromise() {
 		return pingPromise;
 	}
+
+	@JmxAttribute
+	public PromiseStats getPutPromise() {
+		return putPromise;
+	}
+
+	@JmxAttribute
+	public PromiseStats getGetPromise() {
+		return getPromise;
+	}
+
+	@JmxAttribute
+	public PromiseStats getMerkleTreePromise() {
+		return merkleTreePromise;
+	}
+
+	@JmxAttribute
+	public PromiseStats getDownloadBucketsPromise() {
+		return downloadBucketsPromise;
+	}
 	// endregion
 }
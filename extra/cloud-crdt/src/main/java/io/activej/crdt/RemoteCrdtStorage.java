@@ -16,6 +16,8 @@
 
 package io.activej.crdt;
 
+import io.activej.async.function.AsyncSupplier;
+import io.activej.async.function.AsyncSuppliers;
 import io.activej.async.service.ReactiveService;
 import io.activej.bytebuf.ByteBuf;
 import io.activej.common.ApplicationSettings;
@@ -27,6 +29,8 @@ import io.activej.crdt.messaging.CrdtRequest;
 import io.activej.crdt.messaging.CrdtResponse;
 import io.activej.crdt.storage.ICrdtStorage;
 import io.activej.crdt.util.CrdtDataBinarySerializer;
+import io.activej.crdt.util.CrdtDataHasher;
+import io.activej.crdt.util.MerkleTree;
 import io.activej.crdt.util.Utils;
 import io.activej.csp.binary.codec.ByteBufsCodec;
 import io.activej.csp.binary.codec.ByteBufsCodecs;
@@ -41,17 +45,26 @@ import io.activej.datastream.supplier.StreamSupplier;
 import io.activej.jmx.api.attribute.JmxAttribute;
 import io.activej.jmx.api.attribute.JmxOperation;
 import io.activej.jmx.stats.EventStats;
+import io.activej.jmx.stats.ValueStats;
 import io.activej.net.socket.tcp.TcpSocket;
 import io.activej.promise.Promise;
+import io.activej.promise.SettablePromise;
 import io.activej.reactor.AbstractNioReactive;
 import io.activej.reactor.jmx.ReactiveJmxBeanWithStats;
 import io.activej.reactor.net.SocketSettings;
 import io.activej.reactor.nio.NioReactor;
 import io.activej.serializer.BinarySerializer;
+import io.activej.serializer.BinarySerializers;
+import org.jetbrains.annotations.Nullable;
 
 import java.net.InetSocketAddress;
 import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 
+import static io.activej.common.Checks.checkArgument;
 import static io.activej.crdt.util.Utils.*;
 import static io.activej.reactor.Reactive.checkInReactorThread;
 
@@ -63,6 +76,8 @@ public final class RemoteCrdtStorage<K extends Comparable<K>, S> extends Abstrac
 
 	public static final Duration DEFAULT_CONNECT_TIMEOUT = ApplicationSettings.getDuration(RemoteCrdtStorage.class, "connectTimeout", Duration.ZERO);
 	public static final Duration DEFAULT_SMOOTHING_WINDOW = ApplicationSettings.getDuration(RemoteCrdtStorage.class, "smoothingWindow", Duration.ofMinutes(1));
+	public static final int DEFAULT_MAX_POOLED_CONNECTIONS = ApplicationSettings.getInt(RemoteCrdtStorage.class, "maxPooledConnections", 1);
+	public static final int DEFAULT_MAX_BATCH_SIZE = ApplicationSettings.getInt(RemoteCrdtStorage.class, "maxBatchSize", 1024);
 
 	private static final ByteBufsCodec<CrdtResponse, CrdtRequest> SERIALIZER = ByteBufsCodecs.ofStreamCodecs(
 		Utils.CRDT_RESPONSE_CODEC,
@@ -72,9 +87,20 @@ public final class RemoteCrdtStorage<K extends Comparable<K>, S> extends Abstrac
 	private final InetSocketAddress address;
 	private final CrdtDataBinarySerializer<K, S> serializer;
 	private final BinarySerializer<CrdtTombstone<K>> tombstoneSerializer;
+	private final BinarySerializer<@Nullable S> nullableStateSerializer;
 
 	private long connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT.toMillis();
 	private SocketSettings socketSettings = SocketSettings.defaultInstance();
+	private int maxPooledConnections = DEFAULT_MAX_POOLED_CONNECTIONS;
+	private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+	private final List<Connection> pool = new ArrayList<>();
+	private final AsyncSupplier<Connection> newConnection = AsyncSuppliers.reuse(this::doConnect);
+
+	private List<CrdtData<K, S>> putBatch = new ArrayList<>();
+	private @Nullable SettablePromise<Void> putBatchPromise;
+	private List<K> getBatch = new ArrayList<>();
+	private @Nullable SettablePromise<List<@Nullable S>> getBatchPromise;
 
 	// region JMX
 	private boolean detailedStats;
@@ -92,6 +118,13 @@ public final class RemoteCrdtStorage<K extends Comparable<K>, S> extends Abstrac
 	private final EventStats downloadedItems = EventStats.create(DEFAULT_SMOOTHING_WINDOW);
 	private final EventStats takenItems = EventStats.create(DEFAULT_SMOOTHING_WINDOW);
 	private final EventStats removedItems = EventStats.create(DEFAULT_SMOOTHING_WINDOW);
+
+	private final EventStats pooledConnectionsCreated = EventStats.create(DEFAULT_SMOOTHING_WINDOW);
+	private final EventStats pooledConnectionsClosed = EventStats.create(DEFAULT_SMOOTHING_WINDOW);
+	private final EventStats pooledRequestsRetried = EventStats.create(DEFAULT_SMOOTHING_WINDOW);
+	private final ValueStats pipelinedRequests = ValueStats.create(DEFAULT_SMOOTHING_WINDOW);
+	private final ValueStats putBatchSize = ValueStats.create(DEFAULT_SMOOTHING_WINDOW);
+	private final ValueStats getBatchSize = ValueStats.create(DEFAULT_SMOOTHING_WINDOW);
 	// endregion
 
 	private RemoteCrdtStorage(NioReactor reactor, InetSocketAddress address, CrdtDataBinarySerializer<K, S> serializer) {
@@ -100,6 +133,7 @@ public final class RemoteCrdtStorage<K extends Comparable<K>, S> extends Abstrac
 		this.serializer = serializer;
 
 		tombstoneSerializer = serializer.getTombstoneSerializer();
+		nullableStateSerializer = BinarySerializers.ofNullable(serializer.getStateSerializer());
 	}
 
 	public static <K extends Comparable<K>, S> RemoteCrdtStorage<K, S> create(
@@ -144,6 +178,29 @@ public final class RemoteCrdtStorage<K extends Comparable<K>, S> extends Abstrac
 			return this;
 		}
 
+		/**
+		 * Sets a maximum number of persistent connections, which are used for single-key puts and gets.
+		 * A new connection is opened only if all the pooled connections have requests in flight.
+		 * A request that fails over an idle pooled connection (e.g. closed by the server) is retried once
+		 * over a new connection, which is safe as puts are merged and gets do not modify the storage
+		 */
+		public Builder withMaxPooledConnections(int maxPooledConnections) {
+			checkNotBuilt(this);
+			checkArgument(maxPooledConnections > 0, "Maximum number of pooled connections should be positive");
+			RemoteCrdtStorage.this.maxPooledConnections = maxPooledConnections;
+			return this;
+		}
+
+		/**
+		 * Sets a maximum number of single-key puts or gets that are sent as a single request
+		 */
+		public Builder withMaxBatchSize(int maxBatchSize) {
+			checkNotBuilt(this);
+			checkArgument(maxBatchSize > 0, "Maximum batch size should be positive");
+			RemoteCrdtStorage.this.maxBatchSize = maxBatchSize;
+			return this;
+		}
+
 		@Override
 		protected RemoteCrdtStorage<K, S> doBuild() {
 			return RemoteCrdtStorage.this;
@@ -199,6 +256,83 @@ public final class RemoteCrdtStorage<K extends Comparable<K>, S> extends Abstrac
 				.whenException(messaging::closeEx));
 	}
 
+	/**
+	 * Requests a Merkle tree of the remote storage contents within given key ranges,
+	 * which is computed by the server without transferring the data itself
+	 *
+	 * @see CrdtDataHasher#computeTree
+	 */
+	public Promise<MerkleTree> merkleTree(int depth, BitSet ranges) {
+		if (CHECKS) checkInReactorThread(this);
+		return connect()
+			.then(RemoteCrdtStorage::performHandshake)
+			.then(messaging -> messaging.send(new CrdtRequest.GetMerkleTree(depth, ranges.toLongArray()))
+				.mapException(e -> new CrdtException("Failed to send 'GetMerkleTree' request", e))
+				.then(() -> messaging.receive()
+					.mapException(e -> new CrdtException("Failed to receive response", e)))
+				.map(castFn(CrdtResponse.MerkleTreeLeaves.class))
+				.map(response -> MerkleTree.ofSubtrees(CrdtDataHasher.RANGE_BITS + depth, depth, ranges, response.leaves()))
+				.whenResult(messaging::close)
+				.whenException(messaging::closeEx));
+	}
+
+	/**
+	 * Downloads only the data whose keys fall into the given buckets of a Merkle tree of given depth
+	 *
+	 * @see MerkleTree#diff(MerkleTree)
+	 */
+	public Promise<StreamSupplier<CrdtData<K, S>>> download(int depth, BitSet buckets) {
+		if (CHECKS) checkInReactorThread(this);
+		return connect()
+			.then(RemoteCrdtStorage::performHandshake)
+			.then(messaging -> messaging.send(new CrdtRequest.DownloadBuckets(depth, buckets.toLongArray()))
+				.mapException(e -> new CrdtException("Failed to send 'DownloadBuckets' request", e))
+				.then(() -> messaging.receive()
+					.mapException(e -> new CrdtException("Failed to receive response", e)))
+				.whenResult(validateFn(CrdtResponse.DownloadStarted.class))
+				.map($ ->
+					messaging.receiveBinaryStream()
+						.transformWith(createDeserializer(serializer))
+						.transformWith(detailedStats ? downloadStatsDetailed : downloadStats)
+						.transformWith(onItem(downloadedItems::recordEvent))
+						.withEndOfStream(eos -> eos
+							.then(messaging::sendEndOfStream)
+							.mapException(e -> new CrdtException("Download failed", e))
+							.whenResult(messaging::close)
+							.whenException(messaging::closeEx)))
+				.whenException(messaging::closeEx));
+	}
+
+	/**
+	 * Downloads only the tombstones whose keys fall into the given buckets of a Merkle tree of given depth
+	 */
+	public Promise<StreamSupplier<CrdtTombstone<K>>> downloadTombstones(int depth, BitSet buckets) {
+		if (CHECKS) checkInReactorThread(this);
+		return connect()
+			.then(RemoteCrdtStorage::performHandshake)
+			.then(messaging -> messaging.send(new CrdtRequest.DownloadTombstoneBuckets(depth, buckets.toLongArray()))
+				.mapException(e -> new CrdtException("Failed to send 'DownloadTombstoneBuckets' request", e))
+				.then(() -> messaging.receive()
+					.mapException(e -> new CrdtException("Failed to receive response", e)))
+				.whenResult(validateFn(CrdtResponse.DownloadStarted.class))
+				.map($ ->
+					messaging.receiveBinaryStream()
+						.transformWith(createDeserializer(tombstoneSerializer))
+						.withEndOfStream(eos -> eos
+							.then(messaging::sendEndOfStream)
+							.mapException(e -> new CrdtException("Tombstones download failed", e))
+							.whenResult(messaging::close)
+							.whenException(messaging::closeEx)))
+				.whenException(messaging::closeEx));
+	}
+
+	@Override
+	public Promise<StreamSupplier<CrdtTombstone<K>>> downloadTombstones() {
+		BitSet all = new BitSet(CrdtDataHasher.RANGES);
+		all.set(0, CrdtDataHasher.RANGES);
+		return downloadTombstones(0, all);
+	}
+
 	@Override
 	public Promise<StreamSupplier<CrdtData<K, S>>> take() {
 		if (CHECKS) checkInReactorThread(this);
@@ -264,6 +398,71 @@ public final class RemoteCrdtStorage<K extends Comparable<K>, S> extends Abstrac
 				.whenException(messaging::closeEx));
 	}
 
+	/**
+	 * Puts a single item over a persistent connection.
+	 * Items put within the same reactor tick are sent as a single request
+	 */
+	public Promise<Void> put(CrdtData<K, S> data) {
+		if (CHECKS) checkInReactorThread(this);
+		if (putBatchPromise == null) {
+			putBatchPromise = new SettablePromise<>();
+			reactor.postLast(this::flushPuts);
+		}
+		SettablePromise<Void> promise = putBatchPromise;
+		putBatch.add(data);
+		if (putBatch.size() >= maxBatchSize) {
+			flushPuts();
+		}
+		return promise;
+	}
+
+	/**
+	 * Puts given items over a persistent connection as a single request
+	 */
+	public Promise<Void> putAll(List<CrdtData<K, S>> items) {
+		if (CHECKS) checkInReactorThread(this);
+		return request(new CrdtRequest.Put(encodeBatch(serializer, items)))
+			.whenResult(validateFn(CrdtResponse.PutAck.class))
+			.whenResult(() -> uploadedItems.recordEvents(items.size()))
+			.toVoid()
+			.mapException(e -> new CrdtException("Put failed", e));
+	}
+
+	/**
+	 * Gets a state of a single key over a persistent connection.
+	 * Keys requested within the same reactor tick are sent as a single request
+	 */
+	public Promise<@Nullable S> get(K key) {
+		if (CHECKS) checkInReactorThread(this);
+		if (getBatchPromise == null) {
+			getBatchPromise = new SettablePromise<>();
+			reactor.postLast(this::flushGets);
+		}
+		int index = getBatch.size();
+		Promise<@Nullable S> promise = getBatchPromise.map(states -> states.get(index));
+		getBatch.add(key);
+		if (getBatch.size() >= maxBatchSize) {
+			flushGets();
+		}
+		return promise;
+	}
+
+	@Override
+	public Promise<List<@Nullable S>> getAll(List<K> keys) {
+		if (CHECKS) checkInReactorThread(this);
+		return request(new CrdtRequest.Get(encodeBatch(serializer.getKeySerializer(), keys)))
+			.map(castFn(CrdtResponse.GetResult.class))
+			.map(result -> {
+				List<@Nullable S> states = decodeBatch(nullableStateSerializer, result.states());
+				if (states.size() != keys.size()) {
+					throw new CrdtException("Received " + states.size() + " states for " + keys.size() + " keys");
+				}
+				return states;
+			})
+			.whenResult(states -> downloadedItems.recordEvents(states.size()))
+			.mapException(e -> new CrdtException("Get failed", e));
+	}
+
 	@Override
 	public Promise<?> start() {
 		checkInReactorThread(this);
@@ -273,9 +472,136 @@ public final class RemoteCrdtStorage<K extends Comparable<K>, S> extends Abstrac
 	@Override
 	public Promise<?> stop() {
 		checkInReactorThread(this);
+		for (Connection connection : new ArrayList<>(pool)) {
+			connection.close();
+		}
 		return Promise.complete();
 	}
 
+	private void flushPuts() {
+		SettablePromise<Void> promise = putBatchPromise;
+		if (promise == null) return;
+		List<CrdtData<K, S>> batch = putBatch;
+		putBatch = new ArrayList<>();
+		putBatchPromise = null;
+		putBatchSize.recordValue(batch.size());
+		putAll(batch).subscribe(promise::trySet);
+	}
+
+	private void flushGets() {
+		SettablePromise<List<@Nullable S>> promise = getBatchPromise;
+		if (promise == null) return;
+		List<K> batch = getBatch;
+		getBatch = new ArrayList<>();
+		getBatchPromise = null;
+		getBatchSize.recordValue(batch.size());
+		getAll(batch).subscribe(promise::trySet);
+	}
+
+	private Promise<CrdtResponse> request(CrdtRequest request) {
+		Connection connection = null;
+		for (Connection pooled : pool) {
+			if (connection == null || pooled.pending.size() < connection.pending.size()) {
+				connection = pooled;
+			}
+		}
+		if (connection != null && !connection.pending.isEmpty() && pool.size() >= maxPooledConnections) {
+			return connection.request(request);
+		}
+		if (connection != null && connection.pending.isEmpty()) {
+			// an idle connection may have been closed by the server, this is only noticed on the next request
+			return connection.request(request)
+				.then((response, e) -> {
+					if (e == null) return Promise.of(response);
+					pooledRequestsRetried.recordEvent();
+					return newConnection.get()
+						.then(newConnection -> newConnection.request(request));
+				});
+		}
+		Connection leastLoaded = connection;
+		return newConnection.get()
+			.then((newConnection, e) -> {
+				if (e == null) return newConnection.request(request);
+				if (leastLoaded != null && !leastLoaded.closed) return leastLoaded.request(request);
+				return Promise.ofException(e);
+			});
+	}
+
+	private Promise<Connection> doConnect() {
+		return connect()
+			.then(RemoteCrdtStorage::performHandshake)
+			.map(messaging -> {
+				Connection connection = new Connection(messaging);
+				pool.add(connection);
+				pooledConnectionsCreated.recordEvent();
+				return connection;
+			});
+	}
+
+	/**
+	 * A persistent connection, which sends requests without waiting for previous responses.
+	 * Server handles requests of a single connection sequentially, so responses arrive in the same order
+	 */
+	private final class Connection {
+		private final Messaging<CrdtResponse, CrdtRequest> messaging;
+		private final ArrayDeque<SettablePromise<CrdtResponse>> pending = new ArrayDeque<>();
+		private boolean receiving;
+		private boolean closed;
+
+		Connection(Messaging<CrdtResponse, CrdtRequest> messaging) {
+			this.messaging = messaging;
+		}
+
+		Promise<CrdtResponse> request(CrdtRequest request) {
+			SettablePromise<CrdtResponse> promise = new SettablePromise<>();
+			pending.add(promise);
+			pipelinedRequests.recordValue(pending.size());
+			messaging.send(request)
+				.whenException(this::closeEx);
+			if (!receiving) {
+				receive();
+			}
+			return promise;
+		}
+
+		private void receive() {
+			receiving = true;
+			messaging.receive()
+				.subscribe((response, e) -> {
+					receiving = false;
+					if (e != null) {
+						closeEx(e);
+						return;
+					}
+					SettablePromise<CrdtResponse> promise = pending.poll();
+					if (promise == null) {
+						closeEx(new CrdtException("Unexpected response " + response));
+						return;
+					}
+					promise.set(response);
+					if (!pending.isEmpty() && !closed) {
+						receive();
+					}
+				});
+		}
+
+		void close() {
+			closeEx(new CrdtException("Connection is closed"));
+		}
+
+		void closeEx(Exception e) {
+			if (closed) return;
+			closed = true;
+			pool.remove(this);
+			pooledConnectionsClosed.recordEvent();
+			messaging.closeEx(e);
+			for (SettablePromise<CrdtResponse> promise : pending) {
+				promise.trySetException(e);
+			}
+			pending.clear();
+		}
+	}
+
 	private static <T extends CrdtResponse> FunctionEx<CrdtResponse, T> castFn(Class<T> expectedCls) {
 		return response -> {
 			if (response instanceof CrdtResponse.ServerError serverError) {
@@ -384,5 +710,40 @@ public final class RemoteCrdtStorage<K extends Comparable<K>, S> extends Abstrac
 	public EventStats getRemovedItems() {
 		return removedItems;
 	}
+
+	@JmxAttribute
+	public int getPooledConnections() {
+		return pool.size();
+	}
+
+	@JmxAttribute
+	public EventStats getPooledConnectionsCreated() {
+		return pooledConnectionsCreated;
+	}
+
+	@JmxAttribute
+	public EventStats getPooledConnectionsClosed() {
+		return pooledConnectionsClosed;
+	}
+
+	@JmxAttribute
+	public EventStats getPooledRequestsRetried() {
+		return pooledRequestsRetried;
+	}
+
+	@JmxAttribute
+	public ValueStats getPipelinedRequests() {
+		return pipelinedRequests;
+	}
+
+	@JmxAttribute
+	public ValueStats getPutBatchSize() {
+		return putBatchSize;
+	}
+
+	@JmxAttribute
+	public ValueStats getGetBatchSize() {
+		return getBatchSize;
+	}
 	// endregion
 }
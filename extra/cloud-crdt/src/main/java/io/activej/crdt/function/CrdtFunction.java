@@ -16,6 +16,7 @@
 
 package io.activej.crdt.function;
 
+import io.activej.crdt.primitives.CrdtDeltaMergable;
 import io.activej.crdt.primitives.CrdtType;
 import org.jetbrains.annotations.Nullable;
 
@@ -55,6 +56,19 @@ public interface CrdtFunction<S> {
 	 */
 	@Nullable S extract(S state, long timestamp);
 
+	/**
+	 * Extract partial CRDT state from given state, which contains only the
+	 * changes that are missing in a known state of another replica.
+	 * <p>
+	 * If known state already includes given state, this method may return <code>null</code>.
+	 * <p>
+	 * Combining the result with 'known' should give the same value as combining 'state' with 'known'.
+	 * By default, the whole state is returned.
+	 */
+	default @Nullable S delta(S state, S known) {
+		return state;
+	}
+
 	static <S extends CrdtType<S>> CrdtFunction<S> ofCrdtType() {
 		return new CrdtFunction<>() {
 			@Override
@@ -66,6 +80,34 @@ public interface CrdtFunction<S> {
 			public @Nullable S extract(S state, long timestamp) {
 				return state.extract(timestamp);
 			}
+
+			@SuppressWarnings({"unchecked", "rawtypes"})
+			@Override
+			public @Nullable S delta(S state, S known) {
+				if (state instanceof CrdtDeltaMergable deltaMergable) {
+					return (S) deltaMergable.delta((CrdtDeltaMergable) known);
+				}
+				return state;
+			}
+		};
+	}
+
+	static <S extends CrdtDeltaMergable<S>> CrdtFunction<S> ofDeltaMergable() {
+		return new CrdtFunction<>() {
+			@Override
+			public S merge(S first, long firstTimestamp, S second, long secondTimestamp) {
+				return first.merge(second);
+			}
+
+			@Override
+			public S extract(S state, long timestamp) {
+				return state;
+			}
+
+			@Override
+			public @Nullable S delta(S state, S known) {
+				return state.delta(known);
+			}
 		};
 	}
 
@@ -2,8 +2,13 @@ package io.activej.crdt.messaging;
 
 public sealed interface CrdtRequest permits
 	CrdtRequest.Download,
+	CrdtRequest.DownloadBuckets,
+	CrdtRequest.DownloadTombstoneBuckets,
+	CrdtRequest.Get,
+	CrdtRequest.GetMerkleTree,
 	CrdtRequest.Handshake,
 	CrdtRequest.Ping,
+	CrdtRequest.Put,
 	CrdtRequest.Remove,
 	CrdtRequest.Take,
 	CrdtRequest.TakeAck,
@@ -29,4 +34,19 @@ public sealed interface CrdtRequest permits
 
 	record Handshake(Version version) implements CrdtRequest {
 	}
+
+	record GetMerkleTree(int depth, long[] ranges) implements CrdtRequest {
+	}
+
+	record DownloadBuckets(int depth, long[] buckets) implements CrdtRequest {
+	}
+
+	record DownloadTombstoneBuckets(int depth, long[] buckets) implements CrdtRequest {
+	}
+
+	record Put(byte[] items) implements CrdtRequest {
+	}
+
+	record Get(byte[] keys) implements CrdtRequest {
+	}
 }
@@ -4,8 +4,11 @@ import org.jetbrains.annotations.Nullable;
 
 public sealed interface CrdtResponse permits
 	CrdtResponse.DownloadStarted,
+	CrdtResponse.GetResult,
 	CrdtResponse.Handshake,
+	CrdtResponse.MerkleTreeLeaves,
 	CrdtResponse.Pong,
+	CrdtResponse.PutAck,
 	CrdtResponse.RemoveAck,
 	CrdtResponse.ServerError,
 	CrdtResponse.TakeStarted,
@@ -26,6 +29,15 @@ public sealed interface CrdtResponse permits
 	record TakeStarted() implements CrdtResponse {
 	}
 
+	record PutAck() implements CrdtResponse {
+	}
+
+	record GetResult(byte[] states) implements CrdtResponse {
+	}
+
+	record MerkleTreeLeaves(int depth, long[] leaves) implements CrdtResponse {
+	}
+
 	record ServerError(String message) implements CrdtResponse {
 	}
 
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.crdt.primitives;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A CRDT state which can produce deltas, i.e. partial states that carry only
+ * the changes that the other replica is missing.
+ * <p>
+ * Merging a delta into a known state must give the same result as merging the whole state.
+ */
+public interface CrdtDeltaMergable<S extends CrdtDeltaMergable<S>> extends CrdtMergable<S> {
+
+	/**
+	 * Returns a part of this state which is not yet included in a given known state,
+	 * or {@code null} if known state already includes this state
+	 */
+	@Nullable S delta(S known);
+}
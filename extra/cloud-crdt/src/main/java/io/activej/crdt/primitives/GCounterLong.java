@@ -20,13 +20,14 @@ import io.activej.common.Checks;
 import io.activej.serializer.BinaryInput;
 import io.activej.serializer.BinaryOutput;
 import io.activej.serializer.BinarySerializer;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.Arrays;
 
 import static io.activej.common.Checks.checkArgument;
 import static java.lang.Math.max;
 
-public final class GCounterLong implements CrdtMergable<GCounterLong> {
+public final class GCounterLong implements CrdtDeltaMergable<GCounterLong> {
 	private static final boolean CHECKS = Checks.isEnabled(GCounterLong.class);
 
 	public static final BinarySerializer<GCounterLong> SERIALIZER = new Serializer();
@@ -45,6 +46,16 @@ public final class GCounterLong implements CrdtMergable<GCounterLong> {
 		state[id]++;
 	}
 
+	/**
+	 * Increments the counter and returns a delta which carries only this increment
+	 */
+	public GCounterLong incrementDelta(int id) {
+		increment(id);
+		long[] delta = new long[state.length];
+		delta[id] = state[id];
+		return new GCounterLong(delta);
+	}
+
 	public long value() {
 		long v = 0;
 		for (long c : state) {
@@ -63,6 +74,19 @@ public final class GCounterLong implements CrdtMergable<GCounterLong> {
 		return new GCounterLong(newState);
 	}
 
+	@Override
+	public @Nullable GCounterLong delta(GCounterLong known) {
+		if (CHECKS) checkArgument(state.length == known.state.length);
+		long[] delta = null;
+		for (int i = 0; i < state.length; i++) {
+			if (state[i] > known.state[i]) {
+				if (delta == null) delta = new long[state.length];
+				delta[i] = state[i];
+			}
+		}
+		return delta == null ? null : new GCounterLong(delta);
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) return true;
@@ -24,7 +24,7 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 
-public final class GMap<K, V extends CrdtMergable<V>> implements Map<K, V>, CrdtMergable<GMap<K, V>> {
+public final class GMap<K, V extends CrdtMergable<V>> implements Map<K, V>, CrdtDeltaMergable<GMap<K, V>> {
 
 	private final Map<K, V> map;
 
@@ -43,6 +43,49 @@ public final class GMap<K, V extends CrdtMergable<V>> implements Map<K, V>, Crdt
 		return new GMap<>(newMap);
 	}
 
+	/**
+	 * Returns entries which are missing in a known map or are not included in their known values.
+	 * Values which are {@link CrdtDeltaMergable} are reduced to their own deltas
+	 */
+	@Override
+	public @Nullable GMap<K, V> delta(GMap<K, V> known) {
+		Map<K, V> newMap = new HashMap<>();
+		for (Entry<K, V> entry : map.entrySet()) {
+			V value = entry.getValue();
+			V knownValue = known.map.get(entry.getKey());
+			if (knownValue == null) {
+				newMap.put(entry.getKey(), value);
+				continue;
+			}
+			V delta = valueDelta(value, knownValue);
+			if (delta != null) {
+				newMap.put(entry.getKey(), delta);
+			}
+		}
+		if (newMap.isEmpty()) {
+			return null;
+		}
+		return new GMap<>(newMap);
+	}
+
+	/**
+	 * Puts a value and returns a delta which carries only this update
+	 */
+	public GMap<K, V> putDelta(K key, V value) {
+		put(key, value);
+		Map<K, V> newMap = new HashMap<>(1);
+		newMap.put(key, value);
+		return new GMap<>(newMap);
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static <V extends CrdtMergable<V>> @Nullable V valueDelta(V value, V knownValue) {
+		if (value instanceof CrdtDeltaMergable deltaMergable) {
+			return (V) deltaMergable.delta((CrdtDeltaMergable) knownValue);
+		}
+		return knownValue.merge(value).equals(knownValue) ? null : value;
+	}
+
 	@Override
 	public int size() {
 		return map.size();
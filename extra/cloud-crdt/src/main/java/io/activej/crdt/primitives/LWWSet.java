@@ -31,7 +31,7 @@ import static java.lang.Math.max;
 import static java.util.stream.Collectors.toMap;
 
 @SuppressWarnings("NullableProblems")
-public final class LWWSet<E> implements Set<E>, CrdtType<LWWSet<E>> {
+public final class LWWSet<E> implements Set<E>, CrdtType<LWWSet<E>>, CrdtDeltaMergable<LWWSet<E>> {
 	private final Map<E, Timestamps> set;
 
 	CurrentTimeProvider now = CurrentTimeProvider.ofSystem();
@@ -71,6 +71,46 @@ public final class LWWSet<E> implements Set<E>, CrdtType<LWWSet<E>> {
 		return new LWWSet<>(newSet);
 	}
 
+	@Override
+	public @Nullable LWWSet<E> delta(LWWSet<E> known) {
+		Map<E, Timestamps> newSet = new HashMap<>();
+		for (Entry<E, Timestamps> entry : set.entrySet()) {
+			Timestamps timestamps = entry.getValue();
+			Timestamps knownTimestamps = known.set.get(entry.getKey());
+			if (knownTimestamps == null ||
+				timestamps.added > knownTimestamps.added || timestamps.removed > knownTimestamps.removed) {
+				newSet.put(entry.getKey(), new Timestamps(timestamps.added, timestamps.removed));
+			}
+		}
+		if (newSet.isEmpty()) {
+			return null;
+		}
+		return new LWWSet<>(newSet);
+	}
+
+	/**
+	 * Adds an element and returns a delta which carries only this addition
+	 */
+	public LWWSet<E> addDelta(E t) {
+		add(t);
+		return singleton(t);
+	}
+
+	/**
+	 * Removes an element and returns a delta which carries only this removal
+	 */
+	public LWWSet<E> removeDelta(E t) {
+		remove(t);
+		return singleton(t);
+	}
+
+	private LWWSet<E> singleton(E t) {
+		Timestamps timestamps = set.get(t);
+		Map<E, Timestamps> newSet = new HashMap<>(1);
+		newSet.put(t, new Timestamps(timestamps.added, timestamps.removed));
+		return new LWWSet<>(newSet);
+	}
+
 	@Override
 	public Stream<E> stream() {
 		return set.entrySet().stream().filter(e -> e.getValue().exists()).map(Entry::getKey);
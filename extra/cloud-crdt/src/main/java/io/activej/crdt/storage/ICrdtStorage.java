@@ -20,8 +20,17 @@ import io.activej.common.annotation.ComponentInterface;
 import io.activej.crdt.CrdtData;
 import io.activej.crdt.CrdtTombstone;
 import io.activej.datastream.consumer.StreamConsumer;
+import io.activej.datastream.processor.transformer.StreamTransformers;
 import io.activej.datastream.supplier.StreamSupplier;
+import io.activej.datastream.supplier.StreamSuppliers;
 import io.activej.promise.Promise;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Interface for various CRDT client implementations.
@@ -57,6 +66,30 @@ public interface ICrdtStorage<K extends Comparable<K>, S> {
 		return download(0);
 	}
 
+	/**
+	 * Returns a promise of states of given keys, in the same order as keys.
+	 * Missing keys have {@code null} states.
+	 * <p>
+	 * Default implementation scans the whole storage, so storages that support
+	 * point lookups should override it.
+	 *
+	 * @return a promise of a list of states
+	 */
+	default Promise<List<@Nullable S>> getAll(List<K> keys) {
+		Set<K> keySet = new HashSet<>(keys);
+		return download()
+			.then(supplier -> supplier
+				.transformWith(StreamTransformers.filter(data -> keySet.contains(data.getKey())))
+				.toList())
+			.map(found -> {
+				Map<K, S> states = new HashMap<>();
+				for (CrdtData<K, S> data : found) {
+					states.put(data.getKey(), data.getState());
+				}
+				return keys.stream().map(states::get).toList();
+			});
+	}
+
 	/**
 	 * Returns a promise of a "destroying" stream supplier of all key-state pairs in the CRDT storage.
 	 * Pairs are sorted by key. After stream supplier is finished, all the returned key-state pairs
@@ -74,6 +107,18 @@ public interface ICrdtStorage<K extends Comparable<K>, S> {
 	 */
 	Promise<StreamConsumer<CrdtTombstone<K>>> remove();
 
+	/**
+	 * Returns a promise of a stream supplier of tombstones that the storage keeps.
+	 * Tombstones are sorted by key. It is used to repair tombstones between replicas.
+	 * <p>
+	 * Default implementation returns no tombstones, so storages that keep tombstones should override it.
+	 *
+	 * @return a promise of a stream supplier of tombstones
+	 */
+	default Promise<StreamSupplier<CrdtTombstone<K>>> downloadTombstones() {
+		return Promise.of(StreamSuppliers.empty());
+	}
+
 	/**
 	 * Marker that this client is functional (server is up, there are enough nodes in cluster etc.)
 	 *
@@ -31,14 +31,21 @@ import io.activej.crdt.RemoteCrdtStorage;
 import io.activej.crdt.function.CrdtFunction;
 import io.activej.crdt.storage.ICrdtStorage;
 import io.activej.crdt.storage.cluster.IDiscoveryService.PartitionScheme;
+import io.activej.crdt.util.CrdtDataHasher;
+import io.activej.crdt.util.MerkleTree;
+import io.activej.datastream.consumer.StreamConsumers;
 import io.activej.datastream.consumer.StreamConsumer;
 import io.activej.datastream.processor.StreamSplitter;
 import io.activej.datastream.processor.reducer.BinaryAccumulatorReducer;
+import io.activej.datastream.processor.reducer.Reducer;
 import io.activej.datastream.processor.reducer.StreamReducer;
+import io.activej.datastream.processor.transformer.StreamTransformers;
 import io.activej.datastream.stats.BasicStreamStats;
 import io.activej.datastream.stats.DetailedStreamStats;
 import io.activej.datastream.stats.StreamStats;
+import io.activej.datastream.supplier.StreamDataAcceptor;
 import io.activej.datastream.supplier.StreamSupplier;
+import io.activej.datastream.supplier.StreamSuppliers;
 import io.activej.jmx.api.attribute.JmxAttribute;
 import io.activej.jmx.api.attribute.JmxOperation;
 import io.activej.jmx.stats.EventStats;
@@ -47,11 +54,13 @@ import io.activej.promise.Promises;
 import io.activej.reactor.AbstractReactive;
 import io.activej.reactor.Reactor;
 import io.activej.reactor.jmx.ReactiveJmxBeanWithStats;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.VisibleForTesting;
 
 import java.time.Duration;
 import java.util.*;
 import java.util.function.Function;
+import java.util.function.Predicate;
 
 import static io.activej.crdt.util.Utils.onItem;
 import static io.activej.reactor.Reactive.checkInReactorThread;
@@ -93,6 +102,10 @@ public final class ClusterCrdtStorage<K extends Comparable<K>, S, P> extends Abs
 	private final EventStats takenItems = EventStats.create(DEFAULT_SMOOTHING_WINDOW);
 	private final EventStats removedItems = EventStats.create(DEFAULT_SMOOTHING_WINDOW);
 	private final EventStats repartitionedItems = EventStats.create(DEFAULT_SMOOTHING_WINDOW);
+	private final EventStats repairedItems = EventStats.create(DEFAULT_SMOOTHING_WINDOW);
+	private final EventStats repairTransferredBytes = EventStats.builder(DEFAULT_SMOOTHING_WINDOW)
+		.withRateUnit("bytes")
+		.build();
 	// endregion
 
 	private ClusterCrdtStorage(Reactor reactor, IDiscoveryService<P> discoveryService, CrdtFunction<S> crdtFunction) {
@@ -255,6 +268,38 @@ public final class ClusterCrdtStorage<K extends Comparable<K>, S, P> extends Abs
 			});
 	}
 
+	/**
+	 * Puts a single item to the partitions it is sharded to, ignoring partitions that fail.
+	 * Remote partitions batch such puts and send them over persistent connections
+	 *
+	 * @see RemoteCrdtStorage#put(CrdtData)
+	 */
+	public Promise<Void> put(CrdtData<K, S> data) {
+		if (CHECKS) checkInReactorThread(this);
+		List<P> partitions = new ArrayList<>(currentPartitionScheme.getPartitions());
+		Sharder<K> sharder = currentPartitionScheme.createSharder(partitions);
+		if (sharder == null) {
+			return Promise.ofException(new CrdtException("Incomplete cluster"));
+		}
+		int[] selected = sharder.shard(data.getKey());
+		List<Promise<Try<Void>>> results = new ArrayList<>(selected.length);
+		for (int idx : selected) {
+			ICrdtStorage<K, S> storage = crdtStorages.get(partitions.get(idx));
+			Promise<Void> result = storage instanceof RemoteCrdtStorage<K, S> remote ?
+				remote.put(data) :
+				StreamSuppliers.ofValue(data).streamTo(StreamConsumers.ofPromise(storage.upload()));
+			results.add(result.toTry());
+		}
+		return Promises.toList(results)
+			.whenResult(tries -> {
+				if (tries.stream().noneMatch(Try::isSuccess)) {
+					throw new CrdtException("Could not put data to any partition");
+				}
+				uploadedItems.recordEvent();
+			})
+			.toVoid();
+	}
+
 	public Promise<Void> repartition(P sourcePartitionId) {
 		if (CHECKS) checkInReactorThread(this);
 		PartitionScheme<P> partitionScheme = this.currentPartitionScheme;
@@ -323,6 +368,255 @@ public final class ClusterCrdtStorage<K extends Comparable<K>, S, P> extends Abs
 			});
 	}
 
+	/**
+	 * Brings a local partition and every other alive partition in sync without streaming whole key ranges.
+	 * <p>
+	 * Only the key ranges which are sharded to both partitions are compared: a Merkle tree with a subtree
+	 * per shared range is computed for each storage (see {@link CrdtDataHasher#computeTree}),
+	 * and only the data and tombstones from the differing buckets are downloaded. Both downloads are merged
+	 * as sorted streams, so that neither of them is kept in memory. Local data is uploaded to a peer
+	 * as deltas against the peer's states (see {@link CrdtFunction#delta}), and only for the keys the peer
+	 * is responsible for; likewise, only the keys the local partition is responsible for are merged into
+	 * the local storage. Tombstones are repaired the same way, if storages keep them
+	 * (see {@link ICrdtStorage#downloadTombstones()}).
+	 * <p>
+	 * Ranges are known only for a {@link RendezvousHashSharder}, whole storages are compared otherwise.
+	 * A key hash function of a hasher should be the same as the one of a partition scheme.
+	 */
+	public Promise<RepairResult> repair(P localPartitionId, CrdtDataHasher<K, S> hasher, int depth) {
+		if (CHECKS) checkInReactorThread(this);
+		CrdtDataHasher.checkDepth(depth);
+		PartitionScheme<P> partitionScheme = this.currentPartitionScheme;
+		ICrdtStorage<K, S> local = crdtStorages.get(localPartitionId);
+		RepairResult.Accumulator accumulator = new RepairResult.Accumulator();
+
+		return execute(partitionScheme, ICrdtStorage::ping)
+			.then(map -> {
+				List<P> alive = new ArrayList<>(map.keySet());
+				if (!alive.contains(localPartitionId)) {
+					return Promise.ofException(new CrdtException("Local partition is not alive"));
+				}
+				Sharder<K> sharder = partitionScheme.createSharder(alive);
+				if (sharder == null) {
+					return Promise.ofException(new CrdtException("Incomplete cluster"));
+				}
+				int localIndex = alive.indexOf(localPartitionId);
+				return Promises.sequence(alive.stream()
+					.filter(partitionId -> !partitionId.equals(localPartitionId))
+					.map(partitionId -> () -> repair(local, localIndex,
+						crdtStorages.get(partitionId), alive.indexOf(partitionId),
+						sharder, hasher, depth, accumulator)));
+			})
+			.map($ -> accumulator.toResult());
+	}
+
+	private Promise<Void> repair(
+		ICrdtStorage<K, S> local, int localIndex, ICrdtStorage<K, S> peer, int peerIndex,
+		Sharder<K> sharder, CrdtDataHasher<K, S> hasher, int depth, RepairResult.Accumulator accumulator
+	) {
+		BitSet ranges = sharedRanges(sharder, localIndex, peerIndex);
+		if (ranges.isEmpty()) return Promise.complete();
+
+		accumulator.peers++;
+		return Promises.toList(merkleTree(local, hasher, ranges, depth), merkleTree(peer, hasher, ranges, depth))
+			.then(trees -> {
+				long treeBytes = (long) Long.BYTES * ranges.cardinality() << depth;
+				accumulator.bytes += treeBytes;
+				repairTransferredBytes.recordEvents((int) treeBytes);
+				BitSet buckets = trees.get(0).diff(trees.get(1));
+				if (buckets.isEmpty()) return Promise.complete();
+				accumulator.buckets += buckets.cardinality();
+
+				return Promises.all(
+					repairData(local, localIndex, peer, peerIndex, sharder, hasher, depth, buckets, accumulator),
+					repairTombstones(local, localIndex, peer, peerIndex, sharder, hasher, depth, buckets, accumulator));
+			});
+	}
+
+	private Promise<Void> repairData(
+		ICrdtStorage<K, S> local, int localIndex, ICrdtStorage<K, S> peer, int peerIndex,
+		Sharder<K> sharder, CrdtDataHasher<K, S> hasher, int depth, BitSet buckets, RepairResult.Accumulator accumulator
+	) {
+		StreamReducer<K, RepairPair<CrdtData<K, S>>, RepairPair<CrdtData<K, S>>> reducer = StreamReducer.create();
+		StreamSplitter<RepairPair<CrdtData<K, S>>, CrdtData<K, S>> splitter = StreamSplitter.create((pair, acceptors) -> {
+			CrdtData<K, S> localData = pair.local;
+			CrdtData<K, S> peerData = pair.peer;
+			if (peerData != null) {
+				recordTransfer(accumulator, hasher.sizeOf(peerData));
+				CrdtData<K, S> delta = delta(peerData, localData, sharder, localIndex);
+				if (delta != null) acceptors[0].accept(delta);
+			}
+			if (localData != null) {
+				CrdtData<K, S> delta = delta(localData, peerData, sharder, peerIndex);
+				if (delta != null) {
+					recordTransfer(accumulator, hasher.sizeOf(delta));
+					acceptors[1].accept(delta);
+				}
+			}
+		});
+		Promise<Void> toLocal = splitter.newOutput().streamTo(StreamConsumers.ofPromise(local.upload()));
+		Promise<Void> toPeer = splitter.newOutput().streamTo(StreamConsumers.ofPromise(peer.upload()));
+		Predicate<K> inBuckets = hasher.inBuckets(depth, buckets);
+		return Promises.all(
+			StreamSuppliers.ofPromise(download(local, hasher, depth, buckets))
+				.transformWith(StreamTransformers.filter(data -> inBuckets.test(data.getKey())))
+				.streamTo(reducer.newInput(CrdtData::getKey, new RepairSide<>(true))),
+			StreamSuppliers.ofPromise(download(peer, hasher, depth, buckets))
+				.transformWith(StreamTransformers.filter(data -> inBuckets.test(data.getKey())))
+				.streamTo(reducer.newInput(CrdtData::getKey, new RepairSide<>(false))),
+			reducer.getOutput().streamTo(splitter.getInput()),
+			toLocal,
+			toPeer);
+	}
+
+	private Promise<Void> repairTombstones(
+		ICrdtStorage<K, S> local, int localIndex, ICrdtStorage<K, S> peer, int peerIndex,
+		Sharder<K> sharder, CrdtDataHasher<K, S> hasher, int depth, BitSet buckets, RepairResult.Accumulator accumulator
+	) {
+		StreamReducer<K, RepairPair<CrdtTombstone<K>>, RepairPair<CrdtTombstone<K>>> reducer = StreamReducer.create();
+		StreamSplitter<RepairPair<CrdtTombstone<K>>, CrdtTombstone<K>> splitter = StreamSplitter.create((pair, acceptors) -> {
+			CrdtTombstone<K> localTombstone = pair.local;
+			CrdtTombstone<K> peerTombstone = pair.peer;
+			if (peerTombstone != null) {
+				recordTransfer(accumulator, hasher.sizeOf(peerTombstone));
+				if (isNewer(peerTombstone, localTombstone) && isShardedTo(sharder, peerTombstone.getKey(), localIndex)) {
+					acceptors[0].accept(peerTombstone);
+				}
+			}
+			if (localTombstone != null && isNewer(localTombstone, peerTombstone) && isShardedTo(sharder, localTombstone.getKey(), peerIndex)) {
+				recordTransfer(accumulator, hasher.sizeOf(localTombstone));
+				acceptors[1].accept(localTombstone);
+			}
+		});
+		Promise<Void> toLocal = splitter.newOutput().streamTo(StreamConsumers.ofPromise(local.remove()));
+		Promise<Void> toPeer = splitter.newOutput().streamTo(StreamConsumers.ofPromise(peer.remove()));
+		Predicate<K> inBuckets = hasher.inBuckets(depth, buckets);
+		return Promises.all(
+			StreamSuppliers.ofPromise(downloadTombstones(local, depth, buckets))
+				.transformWith(StreamTransformers.filter(tombstone -> inBuckets.test(tombstone.getKey())))
+				.streamTo(reducer.newInput(CrdtTombstone::getKey, new RepairSide<>(true))),
+			StreamSuppliers.ofPromise(downloadTombstones(peer, depth, buckets))
+				.transformWith(StreamTransformers.filter(tombstone -> inBuckets.test(tombstone.getKey())))
+				.streamTo(reducer.newInput(CrdtTombstone::getKey, new RepairSide<>(false))),
+			reducer.getOutput().streamTo(splitter.getInput()),
+			toLocal,
+			toPeer);
+	}
+
+	private void recordTransfer(RepairResult.Accumulator accumulator, int bytes) {
+		accumulator.items++;
+		accumulator.bytes += bytes;
+		repairTransferredBytes.recordEvents(bytes);
+		repairedItems.recordEvent();
+	}
+
+	private @Nullable CrdtData<K, S> delta(CrdtData<K, S> source, @Nullable CrdtData<K, S> known, Sharder<K> sharder, int targetIndex) {
+		if (!isShardedTo(sharder, source.getKey(), targetIndex)) return null;
+		if (known == null) return source;
+		S delta = crdtFunction.delta(source.getState(), known.getState());
+		return delta != null ? new CrdtData<>(source.getKey(), source.getTimestamp(), delta) : null;
+	}
+
+	private static <K extends Comparable<K>> boolean isNewer(CrdtTombstone<K> tombstone, @Nullable CrdtTombstone<K> known) {
+		return known == null || tombstone.getTimestamp() > known.getTimestamp();
+	}
+
+	private static <K> boolean isShardedTo(Sharder<K> sharder, K key, int index) {
+		for (int idx : sharder.shard(key)) {
+			if (idx == index) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns key ranges which are sharded to both partitions, or all the ranges if a sharder does not tell them
+	 */
+	private static BitSet sharedRanges(Sharder<?> sharder, int firstIndex, int secondIndex) {
+		BitSet ranges = new BitSet(CrdtDataHasher.RANGES);
+		if (!(sharder instanceof RendezvousHashSharder<?> rendezvousSharder)) {
+			ranges.set(0, CrdtDataHasher.RANGES);
+			return ranges;
+		}
+		for (int range = 0; range < CrdtDataHasher.RANGES; range++) {
+			int[] shards = rendezvousSharder.buckets[range];
+			boolean first = false;
+			boolean second = false;
+			for (int idx : shards) {
+				first |= idx == firstIndex;
+				second |= idx == secondIndex;
+			}
+			if (first && second) ranges.set(range);
+		}
+		return ranges;
+	}
+
+	private Promise<MerkleTree> merkleTree(ICrdtStorage<K, S> storage, CrdtDataHasher<K, S> hasher, BitSet ranges, int depth) {
+		if (storage instanceof RemoteCrdtStorage<K, S> remote) {
+			return remote.merkleTree(depth, ranges);
+		}
+		return storage.download()
+			.then(supplier -> storage.downloadTombstones()
+				.whenException(supplier::closeEx)
+				.then(tombstoneSupplier -> hasher.computeTree(supplier, tombstoneSupplier, ranges, depth)));
+	}
+
+	private Promise<StreamSupplier<CrdtData<K, S>>> download(ICrdtStorage<K, S> storage, CrdtDataHasher<K, S> hasher, int depth, BitSet buckets) {
+		if (storage instanceof RemoteCrdtStorage<K, S> remote) {
+			return remote.download(depth, buckets);
+		}
+		return storage.download();
+	}
+
+	private Promise<StreamSupplier<CrdtTombstone<K>>> downloadTombstones(ICrdtStorage<K, S> storage, int depth, BitSet buckets) {
+		if (storage instanceof RemoteCrdtStorage<K, S> remote) {
+			return remote.downloadTombstones(depth, buckets);
+		}
+		return storage.downloadTombstones();
+	}
+
+	/**
+	 * States of a single key in a local and a peer storage
+	 */
+	private static final class RepairPair<T> {
+		@Nullable T local;
+		@Nullable T peer;
+	}
+
+	private record RepairSide<K, T>(boolean local) implements Reducer<K, T, RepairPair<T>, RepairPair<T>> {
+		@Override
+		public RepairPair<T> onFirstItem(StreamDataAcceptor<RepairPair<T>> stream, K key, T firstValue) {
+			return onNextItem(stream, key, firstValue, new RepairPair<>());
+		}
+
+		@Override
+		public RepairPair<T> onNextItem(StreamDataAcceptor<RepairPair<T>> stream, K key, T nextValue, RepairPair<T> accumulator) {
+			if (local) {
+				accumulator.local = nextValue;
+			} else {
+				accumulator.peer = nextValue;
+			}
+			return accumulator;
+		}
+
+		@Override
+		public void onComplete(StreamDataAcceptor<RepairPair<T>> stream, K key, RepairPair<T> accumulator) {
+			stream.accept(accumulator);
+		}
+	}
+
+	public record RepairResult(int peers, int differingBuckets, long transferredItems, long transferredBytes) {
+		private static final class Accumulator {
+			int peers;
+			int buckets;
+			long items;
+			long bytes;
+
+			RepairResult toResult() {
+				return new RepairResult(peers, buckets, items, bytes);
+			}
+		}
+	}
+
 	@Override
 	public Promise<Void> ping() {
 		if (CHECKS) checkInReactorThread(this);
@@ -526,5 +820,15 @@ public final class ClusterCrdtStorage<K extends Comparable<K>, S, P> extends Abs
 	public EventStats getRepartitionedItems() {
 		return repartitionedItems;
 	}
+
+	@JmxAttribute
+	public EventStats getRepairedItems() {
+		return repairedItems;
+	}
+
+	@JmxAttribute
+	public EventStats getRepairTransferredBytes() {
+		return repairTransferredBytes;
+	}
 	// endregion
 }
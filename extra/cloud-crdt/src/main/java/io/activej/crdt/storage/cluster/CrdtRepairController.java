@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.crdt.storage.cluster;
+
+import io.activej.async.function.AsyncSupplier;
+import io.activej.async.function.AsyncSuppliers;
+import io.activej.common.ApplicationSettings;
+import io.activej.common.builder.AbstractBuilder;
+import io.activej.crdt.storage.cluster.ClusterCrdtStorage.RepairResult;
+import io.activej.crdt.util.CrdtDataHasher;
+import io.activej.jmx.api.attribute.JmxAttribute;
+import io.activej.jmx.stats.ValueStats;
+import io.activej.promise.Promise;
+import io.activej.promise.jmx.PromiseStats;
+import io.activej.reactor.AbstractReactive;
+import io.activej.reactor.Reactor;
+import io.activej.reactor.jmx.ReactiveJmxBeanWithStats;
+
+import java.time.Duration;
+
+import static io.activej.reactor.Reactive.checkInReactorThread;
+
+/**
+ * Periodically invoked anti-entropy process, which repairs a local partition
+ * and its peers by exchanging Merkle trees and transferring only differing data
+ *
+ * @see ClusterCrdtStorage#repair
+ */
+public final class CrdtRepairController<K extends Comparable<K>, S, P> extends AbstractReactive
+	implements ReactiveJmxBeanWithStats {
+
+	public static final int DEFAULT_MERKLE_TREE_DEPTH = ApplicationSettings.getInt(CrdtRepairController.class, "merkleTreeDepth", 4);
+
+	private final P localPartitionId;
+	private final ClusterCrdtStorage<K, S, P> cluster;
+	private final CrdtDataHasher<K, S> hasher;
+
+	private int merkleTreeDepth = DEFAULT_MERKLE_TREE_DEPTH;
+
+	private final AsyncSupplier<RepairResult> repair = AsyncSuppliers.reuse(this::doRepair);
+
+	private final PromiseStats repairPromise = PromiseStats.create(Duration.ofMinutes(5));
+	private final ValueStats transferredBytes = ValueStats.builder(Duration.ofMinutes(5))
+		.withUnit("bytes")
+		.build();
+	private final ValueStats transferredItems = ValueStats.create(Duration.ofMinutes(5));
+	private final ValueStats differingBuckets = ValueStats.create(Duration.ofMinutes(5));
+
+	private CrdtRepairController(Reactor reactor, ClusterCrdtStorage<K, S, P> cluster, CrdtDataHasher<K, S> hasher, P localPartitionId) {
+		super(reactor);
+		this.cluster = cluster;
+		this.hasher = hasher;
+		this.localPartitionId = localPartitionId;
+	}
+
+	public static <K extends Comparable<K>, S, P> CrdtRepairController<K, S, P> create(
+		Reactor reactor, ClusterCrdtStorage<K, S, P> cluster, CrdtDataHasher<K, S> hasher, P localPartitionId
+	) {
+		return builder(reactor, cluster, hasher, localPartitionId).build();
+	}
+
+	public static <K extends Comparable<K>, S, P> CrdtRepairController<K, S, P>.Builder builder(
+		Reactor reactor, ClusterCrdtStorage<K, S, P> cluster, CrdtDataHasher<K, S> hasher, P localPartitionId
+	) {
+		return new CrdtRepairController<>(reactor, cluster, hasher, localPartitionId).new Builder();
+	}
+
+	public final class Builder extends AbstractBuilder<Builder, CrdtRepairController<K, S, P>> {
+		private Builder() {}
+
+		/**
+		 * Sets a depth of exchanged Merkle subtrees. A deeper subtree narrows down differing data more precisely,
+		 * at the cost of {@code 8 * 2^depth} bytes per key range shared with a peer
+		 */
+		public Builder withMerkleTreeDepth(int merkleTreeDepth) {
+			checkNotBuilt(this);
+			CrdtDataHasher.checkDepth(merkleTreeDepth);
+			CrdtRepairController.this.merkleTreeDepth = merkleTreeDepth;
+			return this;
+		}
+
+		@Override
+		protected CrdtRepairController<K, S, P> doBuild() {
+			return CrdtRepairController.this;
+		}
+	}
+
+	public Promise<RepairResult> repair() {
+		checkInReactorThread(this);
+		return repair.get();
+	}
+
+	private Promise<RepairResult> doRepair() {
+		return cluster.repair(localPartitionId, hasher, merkleTreeDepth)
+			.whenResult(result -> {
+				transferredBytes.recordValue(result.transferredBytes());
+				transferredItems.recordValue(result.transferredItems());
+				differingBuckets.recordValue(result.differingBuckets());
+			})
+			.whenComplete(repairPromise.recordStats());
+	}
+
+	@JmxAttribute
+	public int getMerkleTreeDepth() {
+		return merkleTreeDepth;
+	}
+
+	@JmxAttribute
+	public PromiseStats getRepairPromise() {
+		return repairPromise;
+	}
+
+	@JmxAttribute
+	public ValueStats getTransferredBytes() {
+		return transferredBytes;
+	}
+
+	@JmxAttribute
+	public ValueStats getTransferredItems() {
+		return transferredItems;
+	}
+
+	@JmxAttribute
+	public ValueStats getDifferingBuckets() {
+		return differingBuckets;
+	}
+}
@@ -45,7 +45,9 @@ import io.activej.reactor.jmx.ReactiveJmxBeanWithStats;
 import org.jetbrains.annotations.Nullable;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.TreeMap;
@@ -160,6 +162,17 @@ public final class MapCrdtStorage<K extends Comparable<K>, S> extends AbstractRe
 				.mapException(e -> new CrdtException("Error while downloading CRDT data", e))));
 	}
 
+	@Override
+	public Promise<StreamSupplier<CrdtTombstone<K>>> downloadTombstones() {
+		if (CHECKS) checkInReactorThread(this);
+		NavigableMap<K, CrdtTombstone<K>> result = new TreeMap<>(tombstones);
+		if (takenTombstones != null) {
+			takenTombstones.forEach((key, tombstone) -> result.merge(key, tombstone,
+				(a, b) -> new CrdtTombstone<>(key, Math.max(a.getTimestamp(), b.getTimestamp()))));
+		}
+		return Promise.of(StreamSuppliers.ofIterable(result.values()));
+	}
+
 	@Override
 	public Promise<StreamSupplier<CrdtData<K, S>>> take() {
 		if (CHECKS) checkInReactorThread(this);
@@ -304,6 +317,16 @@ public final class MapCrdtStorage<K extends Comparable<K>, S> extends AbstractRe
 		return data != null ? data.getState() : null;
 	}
 
+	@Override
+	public Promise<List<@Nullable S>> getAll(List<K> keys) {
+		if (CHECKS) checkInReactorThread(this);
+		List<@Nullable S> states = new ArrayList<>(keys.size());
+		for (K key : keys) {
+			states.add(get(key));
+		}
+		return Promise.of(states);
+	}
+
 	public boolean remove(K key) {
 		if (CHECKS) checkInReactorThread(this);
 		return remove(new CrdtTombstone<>(key, now.currentTimeMillis()));
@@ -0,0 +1,666 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.crdt.storage.local;
+
+import io.activej.async.service.ReactiveService;
+import io.activej.common.ApplicationSettings;
+import io.activej.common.Checks;
+import io.activej.common.MemSize;
+import io.activej.common.builder.AbstractBuilder;
+import io.activej.common.time.CurrentTimeProvider;
+import io.activej.crdt.CrdtData;
+import io.activej.crdt.CrdtException;
+import io.activej.crdt.CrdtTombstone;
+import io.activej.crdt.function.CrdtFilter;
+import io.activej.crdt.function.CrdtFunction;
+import io.activej.crdt.primitives.CrdtType;
+import io.activej.crdt.storage.ICrdtStorage;
+import io.activej.crdt.util.CrdtDataBinarySerializer;
+import io.activej.datastream.consumer.StreamConsumer;
+import io.activej.datastream.consumer.ToListStreamConsumer;
+import io.activej.datastream.stats.BasicStreamStats;
+import io.activej.datastream.stats.DetailedStreamStats;
+import io.activej.datastream.stats.StreamStats;
+import io.activej.datastream.supplier.StreamSupplier;
+import io.activej.datastream.supplier.StreamSuppliers;
+import io.activej.jmx.api.attribute.JmxAttribute;
+import io.activej.jmx.api.attribute.JmxOperation;
+import io.activej.jmx.stats.EventStats;
+import io.activej.promise.Promise;
+import io.activej.reactor.AbstractReactive;
+import io.activej.reactor.Reactor;
+import io.activej.reactor.jmx.ReactiveJmxBeanWithStats;
+import io.activej.serializer.BinarySerializer;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+import static io.activej.crdt.storage.local.OffHeapSkipList.*;
+import static io.activej.crdt.util.Utils.onItem;
+import static io.activej.reactor.Reactive.checkInReactorThread;
+
+/**
+ * An in-memory CRDT storage with the same semantics as {@link MapCrdtStorage},
+ * which keeps serialized keys and states in direct memory, indexed by an off-heap skip list.
+ * <p>
+ * It is meant for storages with tens of millions of keys, where a heap-based
+ * {@link MapCrdtStorage} would spend most of its time in garbage collection.
+ * <p>
+ * {@link #take()} does not copy any data, the current index is detached and replaced with an empty one.
+ * {@link #download(long)} works on a snapshot of the data, so concurrent writes are not visible to it.
+ * A snapshot is released once a download stream completes or fails. A download stream that is not
+ * started within a download start timeout is closed, so that it does not retain the snapshot forever.
+ * Memory of a detached index is released once the data is successfully taken.
+ */
+@SuppressWarnings("rawtypes")
+public final class OffHeapCrdtStorage<K extends Comparable<K>, S> extends AbstractReactive
+	implements ICrdtStorage<K, S>, ReactiveService, ReactiveJmxBeanWithStats {
+
+	private static final boolean CHECKS = Checks.isEnabled(OffHeapCrdtStorage.class);
+
+	public static final Duration DEFAULT_SMOOTHING_WINDOW = ApplicationSettings.getDuration(OffHeapCrdtStorage.class, "smoothingWindow", Duration.ofMinutes(1));
+	public static final MemSize DEFAULT_SEGMENT_SIZE = ApplicationSettings.getMemSize(OffHeapCrdtStorage.class, "segmentSize", MemSize.megabytes(64));
+	public static final Duration DEFAULT_DOWNLOAD_START_TIMEOUT = ApplicationSettings.getDuration(OffHeapCrdtStorage.class, "downloadStartTimeout", Duration.ofMinutes(1));
+
+	private final CrdtFunction<S> function;
+	private final BinarySerializer<K> keySerializer;
+	private final BinarySerializer<S> stateSerializer;
+
+	private OffHeapSkipList<K> index;
+	private @Nullable OffHeapSkipList<K> taken;
+
+	private byte[] stateBuffer = new byte[256];
+
+	private CrdtFilter<S> filter = $ -> true;
+
+	private CurrentTimeProvider now = CurrentTimeProvider.ofSystem();
+
+	private MemSize segmentSize = DEFAULT_SEGMENT_SIZE;
+	private @Nullable SerializedKeyComparator keyComparator;
+	private Duration downloadStartTimeout = DEFAULT_DOWNLOAD_START_TIMEOUT;
+
+	// region JMX
+	private boolean detailedStats;
+
+	private final BasicStreamStats<CrdtData<K, S>> uploadStats = StreamStats.basic();
+	private final DetailedStreamStats<CrdtData<K, S>> uploadStatsDetailed = StreamStats.detailed();
+	private final BasicStreamStats<CrdtData<K, S>> downloadStats = StreamStats.basic();
+	private final DetailedStreamStats<CrdtData<K, S>> downloadStatsDetailed = StreamStats.detailed();
+	private final BasicStreamStats<CrdtData<K, S>> takeStats = StreamStats.basic();
+	private final DetailedStreamStats<CrdtData<K, S>> takeStatsDetailed = StreamStats.detailed();
+	private final BasicStreamStats<CrdtTombstone<K>> removeStats = StreamStats.basic();
+	private final DetailedStreamStats<CrdtTombstone<K>> removeStatsDetailed = StreamStats.detailed();
+
+	private final EventStats uploadedItems = EventStats.create(DEFAULT_SMOOTHING_WINDOW);
+	private final EventStats downloadedItems = EventStats.create(DEFAULT_SMOOTHING_WINDOW);
+	private final EventStats takenItems = EventStats.create(DEFAULT_SMOOTHING_WINDOW);
+	private final EventStats removedItems = EventStats.create(DEFAULT_SMOOTHING_WINDOW);
+
+	private final EventStats singlePuts = EventStats.create(DEFAULT_SMOOTHING_WINDOW);
+	private final EventStats singleGets = EventStats.create(DEFAULT_SMOOTHING_WINDOW);
+	private final EventStats singleRemoves = EventStats.create(DEFAULT_SMOOTHING_WINDOW);
+	// endregion
+
+	private OffHeapCrdtStorage(Reactor reactor, CrdtDataBinarySerializer<K, S> serializer, CrdtFunction<S> function) {
+		super(reactor);
+		this.function = function;
+		this.keySerializer = serializer.getKeySerializer();
+		this.stateSerializer = serializer.getStateSerializer();
+	}
+
+	public static <K extends Comparable<K>, S> OffHeapCrdtStorage<K, S> create(
+		Reactor reactor, CrdtDataBinarySerializer<K, S> serializer, CrdtFunction<S> function
+	) {
+		return builder(reactor, serializer, function).build();
+	}
+
+	public static <K extends Comparable<K>, S extends CrdtType<S>> OffHeapCrdtStorage<K, S> create(
+		Reactor reactor, CrdtDataBinarySerializer<K, S> serializer
+	) {
+		return builder(reactor, serializer).build();
+	}
+
+	public static <K extends Comparable<K>, S> OffHeapCrdtStorage<K, S>.Builder builder(
+		Reactor reactor, CrdtDataBinarySerializer<K, S> serializer, CrdtFunction<S> function
+	) {
+		return new OffHeapCrdtStorage<>(reactor, serializer, function).new Builder();
+	}
+
+	public static <K extends Comparable<K>, S extends CrdtType<S>> OffHeapCrdtStorage<K, S>.Builder builder(
+		Reactor reactor, CrdtDataBinarySerializer<K, S> serializer
+	) {
+		return new OffHeapCrdtStorage<>(reactor, serializer, CrdtFunction.<S>ofCrdtType()).new Builder();
+	}
+
+	public final class Builder extends AbstractBuilder<Builder, OffHeapCrdtStorage<K, S>> {
+		private Builder() {}
+
+		public Builder withFilter(CrdtFilter<S> filter) {
+			checkNotBuilt(this);
+			OffHeapCrdtStorage.this.filter = filter;
+			return this;
+		}
+
+		public Builder withCurrentTimeProvider(CurrentTimeProvider now) {
+			checkNotBuilt(this);
+			OffHeapCrdtStorage.this.now = now;
+			return this;
+		}
+
+		/**
+		 * Sets a size of direct memory segments that keys and states are allocated in
+		 */
+		public Builder withSegmentSize(MemSize segmentSize) {
+			checkNotBuilt(this);
+			OffHeapCrdtStorage.this.segmentSize = segmentSize;
+			return this;
+		}
+
+		/**
+		 * Sets a comparator of serialized keys, so that keys are not deserialized on each lookup.
+		 * An order of the comparator must be consistent with a natural order of keys
+		 */
+		public Builder withKeyComparator(SerializedKeyComparator keyComparator) {
+			checkNotBuilt(this);
+			OffHeapCrdtStorage.this.keyComparator = keyComparator;
+			return this;
+		}
+
+		/**
+		 * Sets a time within which a download stream should be started,
+		 * otherwise the stream is closed and its snapshot is released
+		 */
+		public Builder withDownloadStartTimeout(Duration downloadStartTimeout) {
+			checkNotBuilt(this);
+			OffHeapCrdtStorage.this.downloadStartTimeout = downloadStartTimeout;
+			return this;
+		}
+
+		@Override
+		protected OffHeapCrdtStorage<K, S> doBuild() {
+			index = createIndex();
+			return OffHeapCrdtStorage.this;
+		}
+	}
+
+	@Override
+	public Promise<StreamConsumer<CrdtData<K, S>>> upload() {
+		if (CHECKS) checkInReactorThread(this);
+		ToListStreamConsumer<CrdtData<K, S>> consumer = ToListStreamConsumer.create();
+		return Promise.of(consumer.withAcknowledgement(ack -> ack
+				.whenResult(() -> consumer.getList().forEach(this::doPut))
+				.mapException(e -> new CrdtException("Error while uploading CRDT data", e)))
+			.transformWith(detailedStats ? uploadStatsDetailed : uploadStats)
+			.transformWith(onItem(uploadedItems::recordEvent)));
+	}
+
+	@Override
+	public Promise<StreamSupplier<CrdtData<K, S>>> download(long timestamp) {
+		if (CHECKS) checkInReactorThread(this);
+		OffHeapSkipList<K> index = this.index;
+		OffHeapSkipList<K> taken = this.taken;
+		SnapshotIterator iterator = new SnapshotIterator(index, index.snapshot(), taken, taken != null ? taken.snapshot() : 0, timestamp, true);
+		StreamSupplier<CrdtData<K, S>> supplier = StreamSuppliers.ofIterator(iterator)
+			.transformWith(detailedStats ? downloadStatsDetailed : downloadStats)
+			.transformWith(onItem(downloadedItems::recordEvent))
+			.withEndOfStream(eos -> eos
+				.whenComplete(iterator::releaseSnapshots)
+				.mapException(e -> new CrdtException("Error while downloading CRDT data", e)));
+		reactor.delayBackground(downloadStartTimeout, () -> {
+			if (!iterator.started) {
+				supplier.closeEx(new CrdtException("Download has not been started in " + downloadStartTimeout));
+			}
+		});
+		return Promise.of(supplier);
+	}
+
+	/**
+	 * Tombstones are collected eagerly, as they are expected to be a small fraction of the data
+	 */
+	@Override
+	public Promise<StreamSupplier<CrdtTombstone<K>>> downloadTombstones() {
+		if (CHECKS) checkInReactorThread(this);
+		NavigableMap<K, CrdtTombstone<K>> result = new TreeMap<>();
+		collectTombstones(index, result);
+		if (taken != null) collectTombstones(taken, result);
+		return Promise.of(StreamSuppliers.ofIterable(result.values()));
+	}
+
+	private static <K extends Comparable<K>> void collectTombstones(OffHeapSkipList<K> from, NavigableMap<K, CrdtTombstone<K>> to) {
+		for (long node = from.first(); node != 0; node = from.next(node)) {
+			long value = from.value(node);
+			if (from.kind(value) != TOMBSTONE) continue;
+			K key = from.readKey(node);
+			long timestamp = from.timestamp(value);
+			to.merge(key, new CrdtTombstone<>(key, timestamp),
+				(a, b) -> new CrdtTombstone<>(key, Math.max(a.getTimestamp(), b.getTimestamp())));
+		}
+	}
+
+	@Override
+	public Promise<StreamSupplier<CrdtData<K, S>>> take() {
+		if (CHECKS) checkInReactorThread(this);
+		if (taken != null) {
+			return Promise.ofException(new CrdtException("Data is already being taken"));
+		}
+		OffHeapSkipList<K> taken = this.taken = index;
+		index = createIndex();
+
+		StreamSupplier<CrdtData<K, S>> supplier = StreamSuppliers.ofIterator(
+				new SnapshotIterator(taken, Long.MAX_VALUE, null, 0, 0, false))
+			.transformWith(detailedStats ? takeStatsDetailed : takeStats)
+			.transformWith(onItem(takenItems::recordEvent));
+		supplier.getAcknowledgement()
+			.whenResult(() -> this.taken = null)
+			.mapException(e -> {
+				if (this.taken != null) {
+					this.taken = null;
+					restore(taken);
+				}
+				return new CrdtException("Error while downloading CRDT data", e);
+			});
+		return Promise.of(supplier);
+	}
+
+	@Override
+	public Promise<StreamConsumer<CrdtTombstone<K>>> remove() {
+		if (CHECKS) checkInReactorThread(this);
+		ToListStreamConsumer<CrdtTombstone<K>> consumer = ToListStreamConsumer.create();
+		return Promise.of(consumer.withAcknowledgement(ack -> ack
+				.whenResult(() -> consumer.getList().forEach(this::doRemove))
+				.mapException(e -> new CrdtException("Error while removing CRDT data", e)))
+			.transformWith(detailedStats ? removeStatsDetailed : removeStats)
+			.transformWith(onItem(removedItems::recordEvent)));
+	}
+
+	@Override
+	public Promise<Void> ping() {
+		if (CHECKS) checkInReactorThread(this);
+		return Promise.complete();
+	}
+
+	@Override
+	public Promise<?> start() {
+		checkInReactorThread(this);
+		return Promise.complete();
+	}
+
+	@Override
+	public Promise<?> stop() {
+		checkInReactorThread(this);
+		return Promise.complete();
+	}
+
+	private OffHeapSkipList<K> createIndex() {
+		return new OffHeapSkipList<>(keySerializer, keyComparator, segmentSize.toInt());
+	}
+
+	private void restore(OffHeapSkipList<K> from) {
+		for (long node = from.first(); node != 0; node = from.next(node)) {
+			long value = from.value(node);
+			byte kind = from.kind(value);
+			if (kind == DATA) {
+				doPut(new CrdtData<>(from.readKey(node), from.timestamp(value), from.readState(value, stateSerializer)));
+			} else if (kind == TOMBSTONE) {
+				doRemove(new CrdtTombstone<>(from.readKey(node), from.timestamp(value)));
+			}
+		}
+	}
+
+	private void doPut(CrdtData<K, S> data) {
+		K key = data.getKey();
+		long node = index.findOrInsert(key);
+		long value = index.value(node);
+
+		byte kind = index.kind(value);
+		if (kind == TOMBSTONE && index.timestamp(value) >= data.getTimestamp()) return;
+
+		if (kind == DATA) {
+			long timestamp = index.timestamp(value);
+			S merged = function.merge(index.readState(value, stateSerializer), timestamp, data.getState(), data.getTimestamp());
+			if (filter.test(merged)) {
+				writeState(node, Math.max(timestamp, data.getTimestamp()), merged);
+			} else {
+				index.setValue(node, 0, ABSENT, stateBuffer, 0);
+			}
+		} else {
+			writeState(node, data.getTimestamp(), data.getState());
+		}
+	}
+
+	private boolean doRemove(CrdtTombstone<K> tombstone) {
+		long node = index.findOrInsert(tombstone.getKey());
+		long value = index.value(node);
+
+		long timestamp = tombstone.getTimestamp();
+		byte kind = index.kind(value);
+		if (kind == DATA && index.timestamp(value) > timestamp) return false;
+		if (kind == TOMBSTONE) {
+			timestamp = Math.max(timestamp, index.timestamp(value));
+		}
+
+		index.setValue(node, timestamp, TOMBSTONE, stateBuffer, 0);
+		return true;
+	}
+
+	private void writeState(long node, long timestamp, S state) {
+		int length;
+		while (true) {
+			try {
+				length = stateSerializer.encode(stateBuffer, 0, state);
+				break;
+			} catch (ArrayIndexOutOfBoundsException e) {
+				stateBuffer = new byte[stateBuffer.length * 2];
+			}
+		}
+		index.setValue(node, timestamp, DATA, stateBuffer, length);
+	}
+
+	public void put(K key, S state) {
+		if (CHECKS) checkInReactorThread(this);
+		put(new CrdtData<>(key, now.currentTimeMillis(), state));
+	}
+
+	public void put(CrdtData<K, S> data) {
+		if (CHECKS) checkInReactorThread(this);
+		singlePuts.recordEvent();
+		doPut(data);
+	}
+
+	public @Nullable S get(K key) {
+		if (CHECKS) checkInReactorThread(this);
+		singleGets.recordEvent();
+		long node = index.find(key);
+		if (node == 0) return null;
+		long value = index.value(node);
+		return index.kind(value) == DATA ? index.readState(value, stateSerializer) : null;
+	}
+
+	@Override
+	public Promise<List<@Nullable S>> getAll(List<K> keys) {
+		if (CHECKS) checkInReactorThread(this);
+		List<@Nullable S> states = new ArrayList<>(keys.size());
+		for (K key : keys) {
+			states.add(get(key));
+		}
+		return Promise.of(states);
+	}
+
+	public boolean remove(K key) {
+		if (CHECKS) checkInReactorThread(this);
+		return remove(new CrdtTombstone<>(key, now.currentTimeMillis()));
+	}
+
+	public boolean remove(CrdtTombstone<K> tombstone) {
+		if (CHECKS) checkInReactorThread(this);
+		singleRemoves.recordEvent();
+		return doRemove(tombstone);
+	}
+
+	public Iterator<CrdtData<K, S>> iterator(long timestamp) {
+		SnapshotIterator iterator = new SnapshotIterator(index, Long.MAX_VALUE, taken, Long.MAX_VALUE, timestamp, false);
+
+		// had to hook the remove, so it would be reflected in the storage
+		return new Iterator<>() {
+			private CrdtData<K, S> current;
+
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public CrdtData<K, S> next() {
+				return current = iterator.next();
+			}
+
+			@Override
+			public void remove() {
+				if (current != null) {
+					OffHeapCrdtStorage.this.remove(current.getKey());
+				}
+			}
+		};
+	}
+
+	public Iterator<CrdtData<K, S>> iterator() {
+		return iterator(0);
+	}
+
+	/**
+	 * Iterates over data of an index as of given snapshot, merging it with
+	 * the data of a detached (being taken) index, if there is one.
+	 * Acquired snapshots are released as soon as the iteration is over
+	 */
+	private final class SnapshotIterator implements Iterator<CrdtData<K, S>> {
+		private final OffHeapSkipList<K> index;
+		private final long snapshot;
+		private final @Nullable OffHeapSkipList<K> taken;
+		private final long takenSnapshot;
+		private final long timestamp;
+
+		private long node;
+		private long takenNode;
+		private @Nullable K key;
+		private @Nullable K takenKey;
+
+		private @Nullable CrdtData<K, S> next;
+
+		private boolean started;
+		private boolean holdsSnapshots;
+
+		SnapshotIterator(OffHeapSkipList<K> index, long snapshot, @Nullable OffHeapSkipList<K> taken, long takenSnapshot, long timestamp,
+			boolean holdsSnapshots) {
+			this.index = index;
+			this.snapshot = snapshot;
+			this.taken = taken;
+			this.takenSnapshot = takenSnapshot;
+			this.timestamp = timestamp;
+			this.holdsSnapshots = holdsSnapshots;
+			this.node = index.first();
+			this.key = node != 0 ? index.readKey(node) : null;
+			if (taken != null) {
+				this.takenNode = taken.first();
+				this.takenKey = takenNode != 0 ? taken.readKey(takenNode) : null;
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			started = true;
+			while (next == null && (key != null || takenKey != null)) {
+				next = advance();
+			}
+			if (next == null) releaseSnapshots();
+			return next != null;
+		}
+
+		void releaseSnapshots() {
+			if (!holdsSnapshots) return;
+			holdsSnapshots = false;
+			index.releaseSnapshot();
+			if (taken != null) taken.releaseSnapshot();
+		}
+
+		@Override
+		public CrdtData<K, S> next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			CrdtData<K, S> result = next;
+			next = null;
+			return result;
+		}
+
+		private @Nullable CrdtData<K, S> advance() {
+			int compare = key == null ? 1 : takenKey == null ? -1 : key.compareTo(takenKey);
+			K currentKey = compare <= 0 ? key : takenKey;
+
+			long value = 0;
+			if (compare <= 0) {
+				value = index.value(node, snapshot);
+				node = index.next(node);
+				key = node != 0 ? index.readKey(node) : null;
+			}
+			long takenValue = 0;
+			if (compare >= 0) {
+				assert taken != null;
+				takenValue = taken.value(takenNode, takenSnapshot);
+				takenNode = taken.next(takenNode);
+				takenKey = takenNode != 0 ? taken.readKey(takenNode) : null;
+			}
+
+			byte kind = index.kind(value);
+			byte takenKind = taken == null ? ABSENT : taken.kind(takenValue);
+
+			if (kind == DATA && takenKind == TOMBSTONE && taken.timestamp(takenValue) >= index.timestamp(value)) {
+				kind = ABSENT;
+			}
+			if (takenKind == DATA && kind == TOMBSTONE && index.timestamp(value) >= taken.timestamp(takenValue)) {
+				takenKind = ABSENT;
+			}
+
+			CrdtData<K, S> data;
+			if (takenKind == DATA && (kind != DATA || taken.timestamp(takenValue) >= index.timestamp(value))) {
+				data = new CrdtData<>(currentKey, taken.timestamp(takenValue), taken.readState(takenValue, stateSerializer));
+			} else if (kind == DATA) {
+				data = new CrdtData<>(currentKey, index.timestamp(value), index.readState(value, stateSerializer));
+			} else {
+				return null;
+			}
+			return data.getTimestamp() >= timestamp ? data : null;
+		}
+	}
+
+	// region JMX
+	@JmxOperation
+	public void startDetailedMonitoring() {
+		detailedStats = true;
+	}
+
+	@JmxOperation
+	public void stopDetailedMonitoring() {
+		detailedStats = false;
+	}
+
+	@JmxAttribute
+	public boolean isDetailedStats() {
+		return detailedStats;
+	}
+
+	@JmxAttribute
+	public BasicStreamStats getUploadStats() {
+		return uploadStats;
+	}
+
+	@JmxAttribute
+	public DetailedStreamStats getUploadStatsDetailed() {
+		return uploadStatsDetailed;
+	}
+
+	@JmxAttribute
+	public BasicStreamStats getDownloadStats() {
+		return downloadStats;
+	}
+
+	@JmxAttribute
+	public DetailedStreamStats getDownloadStatsDetailed() {
+		return downloadStatsDetailed;
+	}
+
+	@JmxAttribute
+	public BasicStreamStats getTakeStats() {
+		return takeStats;
+	}
+
+	@JmxAttribute
+	public DetailedStreamStats getTakeStatsDetailed() {
+		return takeStatsDetailed;
+	}
+
+	@JmxAttribute
+	public BasicStreamStats getRemoveStats() {
+		return removeStats;
+	}
+
+	@JmxAttribute
+	public DetailedStreamStats getRemoveStatsDetailed() {
+		return removeStatsDetailed;
+	}
+
+	@JmxAttribute
+	public EventStats getSinglePuts() {
+		return singlePuts;
+	}
+
+	@JmxAttribute
+	public EventStats getSingleGets() {
+		return singleGets;
+	}
+
+	@JmxAttribute
+	public EventStats getSingleRemoves() {
+		return singleRemoves;
+	}
+
+	@JmxAttribute
+	public EventStats getUploadedItems() {
+		return uploadedItems;
+	}
+
+	@JmxAttribute
+	public EventStats getDownloadedItems() {
+		return downloadedItems;
+	}
+
+	@JmxAttribute
+	public EventStats getTakenItems() {
+		return takenItems;
+	}
+
+	@JmxAttribute
+	public EventStats getRemovedItems() {
+		return removedItems;
+	}
+
+	@JmxAttribute
+	public int getKeysCount() {
+		return index.size();
+	}
+
+	@JmxAttribute
+	public long getAllocatedBytes() {
+		OffHeapSkipList<K> taken = this.taken;
+		return index.getAllocatedBytes() + (taken != null ? taken.getAllocatedBytes() : 0);
+	}
+
+	@JmxAttribute
+	public long getFreeBytes() {
+		OffHeapSkipList<K> taken = this.taken;
+		return index.getFreeBytes() + (taken != null ? taken.getFreeBytes() : 0);
+	}
+
+	@JmxAttribute
+	public int getActiveSnapshots() {
+		return index.getActiveSnapshots();
+	}
+	// endregion
+}
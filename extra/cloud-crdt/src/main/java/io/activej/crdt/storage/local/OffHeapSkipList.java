@@ -0,0 +1,411 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.crdt.storage.local;
+
+import io.activej.serializer.BinarySerializer;
+import io.activej.serializer.CorruptedDataException;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A sorted index of serialized keys and values which are stored in direct memory segments.
+ * <p>
+ * Keys are never removed from the index, values are versioned: each write gets a new version,
+ * and while there are active snapshots, a new value record keeps a link to a previous one,
+ * so that a snapshot sees values as they were at the moment the snapshot was taken.
+ * When there are no active snapshots, values are overwritten in place whenever they fit.
+ * <p>
+ * Value records are allocated with a capacity rounded up to a power of two. Records that are no longer
+ * visible to any snapshot are put to a free list of their capacity and are reused by subsequent writes.
+ * Records retained for snapshots are freed once the last snapshot is released.
+ * Memory of nodes is never reclaimed, the whole index is dropped at once instead.
+ * <p>
+ * If a {@link SerializedKeyComparator} is given, keys are compared in their serialized form,
+ * otherwise each visited key is deserialized and compared by its natural order.
+ * <p>
+ * Addresses are {@code long}s, where high 32 bits denote a segment number (starting from 1)
+ * and low 32 bits denote an offset within a segment, so that {@code 0} is a null address.
+ */
+final class OffHeapSkipList<K extends Comparable<K>> {
+	static final byte ABSENT = 0;
+	static final byte DATA = 1;
+	static final byte TOMBSTONE = 2;
+
+	private static final int MAX_LEVEL = 16;
+
+	// node: [level: int][next: long * level][value: long][keyLength: int][key: byte * keyLength]
+	private static final int NODE_NEXT = 4;
+
+	// value: [version: long][previous: long][timestamp: long][kind: byte][capacity: int][length: int][state: byte * capacity]
+	private static final int VALUE_VERSION = 0;
+	private static final int VALUE_PREVIOUS = 8;
+	private static final int VALUE_TIMESTAMP = 16;
+	private static final int VALUE_KIND = 24;
+	private static final int VALUE_CAPACITY = 25;
+	private static final int VALUE_LENGTH = 29;
+	private static final int VALUE_STATE = 33;
+
+	private final BinarySerializer<K> keySerializer;
+	private final @Nullable SerializedKeyComparator keyComparator;
+	private final int segmentSize;
+
+	private final List<ByteBuffer> segments = new ArrayList<>();
+	private ByteBuffer segment;
+	private int segmentPosition;
+
+	private final long[] head = new long[MAX_LEVEL];
+	private final long[] predecessors = new long[MAX_LEVEL];
+	private int level = 1;
+	private int randomSeed = 0x2545F491;
+
+	private byte[] keyBuffer = new byte[256];
+	private byte[] readBuffer = new byte[256];
+
+	private long version;
+	private int activeSnapshots;
+
+	// free lists of value records, indexed by a binary logarithm of their capacity
+	private final long[] freeLists = new long[32];
+
+	private int size;
+	private long allocatedBytes;
+	private long freeBytes;
+	private long retainedBytes;
+
+	OffHeapSkipList(BinarySerializer<K> keySerializer, @Nullable SerializedKeyComparator keyComparator, int segmentSize) {
+		this.keySerializer = keySerializer;
+		this.keyComparator = keyComparator;
+		this.segmentSize = segmentSize;
+	}
+
+	// region nodes
+	long first() {
+		return head[0];
+	}
+
+	long next(long node) {
+		return next(node, 0);
+	}
+
+	long find(K key) {
+		int keyLength = keyComparator != null ? encodeKey(key) : 0;
+		long node = findPredecessors(key, keyLength);
+		return node != 0 && compare(node, key, keyLength) == 0 ? node : 0;
+	}
+
+	long findOrInsert(K key) {
+		int keyLength = keyComparator != null ? encodeKey(key) : 0;
+		long node = findPredecessors(key, keyLength);
+		if (node != 0 && compare(node, key, keyLength) == 0) return node;
+
+		if (keyComparator == null) keyLength = encodeKey(key);
+		int nodeLevel = randomLevel();
+		if (nodeLevel > level) {
+			for (int i = level; i < nodeLevel; i++) {
+				predecessors[i] = 0;
+			}
+			level = nodeLevel;
+		}
+
+		node = allocate(NODE_NEXT + nodeLevel * 8 + 8 + 4 + keyLength);
+		ByteBuffer buf = segment(node);
+		int offset = offset(node);
+		buf.putInt(offset, nodeLevel);
+		int keyOffset = offset + NODE_NEXT + nodeLevel * 8;
+		buf.putLong(keyOffset, 0);
+		buf.putInt(keyOffset + 8, keyLength);
+		buf.put(keyOffset + 12, keyBuffer, 0, keyLength);
+
+		for (int i = 0; i < nodeLevel; i++) {
+			long predecessor = predecessors[i];
+			buf.putLong(offset + NODE_NEXT + i * 8, next(predecessor, i));
+			setNext(predecessor, i, node);
+		}
+		size++;
+		return node;
+	}
+
+	K readKey(long node) {
+		ByteBuffer buf = segment(node);
+		int offset = offset(node);
+		int keyOffset = offset + NODE_NEXT + buf.getInt(offset) * 8 + 8;
+		int keyLength = buf.getInt(keyOffset);
+		byte[] bytes = readBuffer(keyLength);
+		buf.get(keyOffset + 4, bytes, 0, keyLength);
+		try {
+			return keySerializer.decode(bytes, 0);
+		} catch (CorruptedDataException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private long findPredecessors(K key, int keyLength) {
+		long x = 0;
+		for (int i = level - 1; i >= 0; i--) {
+			long next;
+			while ((next = next(x, i)) != 0 && compare(next, key, keyLength) < 0) {
+				x = next;
+			}
+			predecessors[i] = x;
+		}
+		return next(x, 0);
+	}
+
+	/**
+	 * Compares a key of a node with a given key, which is expected
+	 * to be already encoded into a key buffer if there is a key comparator
+	 */
+	private int compare(long node, K key, int keyLength) {
+		if (keyComparator == null) return readKey(node).compareTo(key);
+		ByteBuffer buf = segment(node);
+		int offset = offset(node);
+		int keyOffset = offset + NODE_NEXT + buf.getInt(offset) * 8 + 8;
+		return keyComparator.compare(buf, keyOffset + 4, buf.getInt(keyOffset), keyBuffer, 0, keyLength);
+	}
+
+	private long next(long node, int level) {
+		if (node == 0) return head[level];
+		return segment(node).getLong(offset(node) + NODE_NEXT + level * 8);
+	}
+
+	private void setNext(long node, int level, long next) {
+		if (node == 0) {
+			head[level] = next;
+		} else {
+			segment(node).putLong(offset(node) + NODE_NEXT + level * 8, next);
+		}
+	}
+
+	private int randomLevel() {
+		int x = randomSeed;
+		x ^= x << 13;
+		x ^= x >>> 17;
+		x ^= x << 5;
+		randomSeed = x;
+
+		int nodeLevel = 1;
+		while ((x & 3) == 0 && nodeLevel < MAX_LEVEL) {
+			nodeLevel++;
+			x >>>= 2;
+		}
+		return nodeLevel;
+	}
+
+	private int encodeKey(K key) {
+		while (true) {
+			try {
+				return keySerializer.encode(keyBuffer, 0, key);
+			} catch (ArrayIndexOutOfBoundsException e) {
+				keyBuffer = new byte[keyBuffer.length * 2];
+			}
+		}
+	}
+	// endregion
+
+	// region values
+	long value(long node) {
+		ByteBuffer buf = segment(node);
+		int offset = offset(node);
+		return buf.getLong(offset + NODE_NEXT + buf.getInt(offset) * 8);
+	}
+
+	long value(long node, long snapshot) {
+		long value = value(node);
+		while (value != 0 && segment(value).getLong(offset(value) + VALUE_VERSION) > snapshot) {
+			value = segment(value).getLong(offset(value) + VALUE_PREVIOUS);
+		}
+		return value;
+	}
+
+	byte kind(long value) {
+		return value == 0 ? ABSENT : segment(value).get(offset(value) + VALUE_KIND);
+	}
+
+	long timestamp(long value) {
+		return segment(value).getLong(offset(value) + VALUE_TIMESTAMP);
+	}
+
+	<S> S readState(long value, BinarySerializer<S> stateSerializer) {
+		ByteBuffer buf = segment(value);
+		int offset = offset(value);
+		int length = buf.getInt(offset + VALUE_LENGTH);
+		byte[] bytes = readBuffer(length);
+		buf.get(offset + VALUE_STATE, bytes, 0, length);
+		try {
+			return stateSerializer.decode(bytes, 0);
+		} catch (CorruptedDataException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	void setValue(long node, long timestamp, byte kind, byte[] state, int length) {
+		ByteBuffer nodeBuf = segment(node);
+		int valuePointer = offset(node) + NODE_NEXT + nodeBuf.getInt(offset(node)) * 8;
+		long previous = nodeBuf.getLong(valuePointer);
+		long newVersion = ++version;
+
+		if (activeSnapshots == 0) {
+			if (previous != 0) {
+				ByteBuffer buf = segment(previous);
+				int offset = offset(previous);
+				freeChain(buf.getLong(offset + VALUE_PREVIOUS));
+				if (buf.getInt(offset + VALUE_CAPACITY) >= length) {
+					writeValue(buf, offset, newVersion, 0, timestamp, kind, length, state);
+					return;
+				}
+				free(previous);
+				previous = 0;
+			}
+		} else if (previous != 0) {
+			retainedBytes += recordSize(previous);
+		}
+
+		long value = allocateValue(length);
+		writeValue(segment(value), offset(value), newVersion, previous, timestamp, kind, length, state);
+		nodeBuf.putLong(valuePointer, value);
+	}
+
+	private static void writeValue(ByteBuffer buf, int offset, long version, long previous, long timestamp, byte kind, int length, byte[] state) {
+		buf.putLong(offset + VALUE_VERSION, version);
+		buf.putLong(offset + VALUE_PREVIOUS, previous);
+		buf.putLong(offset + VALUE_TIMESTAMP, timestamp);
+		buf.put(offset + VALUE_KIND, kind);
+		buf.putInt(offset + VALUE_LENGTH, length);
+		buf.put(offset + VALUE_STATE, state, 0, length);
+	}
+	// endregion
+
+	// region snapshots
+	long snapshot() {
+		activeSnapshots++;
+		return version;
+	}
+
+	void releaseSnapshot() {
+		assert activeSnapshots > 0;
+		if (--activeSnapshots == 0 && retainedBytes != 0) {
+			freeRetained();
+		}
+	}
+
+	int getActiveSnapshots() {
+		return activeSnapshots;
+	}
+
+	/**
+	 * Frees all the previous values, which are not visible to anyone once there are no active snapshots
+	 */
+	private void freeRetained() {
+		for (long node = first(); node != 0; node = next(node)) {
+			long value = value(node);
+			if (value == 0) continue;
+			ByteBuffer buf = segment(value);
+			int offset = offset(value);
+			long previous = buf.getLong(offset + VALUE_PREVIOUS);
+			if (previous != 0) {
+				buf.putLong(offset + VALUE_PREVIOUS, 0);
+				freeChain(previous);
+			}
+		}
+		assert retainedBytes == 0;
+	}
+	// endregion
+
+	// region memory
+	private long allocateValue(int length) {
+		int sizeClass = sizeClass(length);
+		long value = freeLists[sizeClass];
+		if (value != 0) {
+			freeLists[sizeClass] = segment(value).getLong(offset(value) + VALUE_PREVIOUS);
+			freeBytes -= recordSize(value);
+			return value;
+		}
+		int capacity = 1 << sizeClass;
+		value = allocate(VALUE_STATE + capacity);
+		segment(value).putInt(offset(value) + VALUE_CAPACITY, capacity);
+		return value;
+	}
+
+	private void free(long value) {
+		ByteBuffer buf = segment(value);
+		int offset = offset(value);
+		int sizeClass = Integer.numberOfTrailingZeros(buf.getInt(offset + VALUE_CAPACITY));
+		buf.putLong(offset + VALUE_PREVIOUS, freeLists[sizeClass]);
+		freeLists[sizeClass] = value;
+		freeBytes += recordSize(value);
+	}
+
+	private void freeChain(long value) {
+		while (value != 0) {
+			long previous = segment(value).getLong(offset(value) + VALUE_PREVIOUS);
+			retainedBytes -= recordSize(value);
+			free(value);
+			value = previous;
+		}
+	}
+
+	private int recordSize(long value) {
+		return VALUE_STATE + segment(value).getInt(offset(value) + VALUE_CAPACITY);
+	}
+
+	private static int sizeClass(int length) {
+		return length <= 8 ? 3 : 32 - Integer.numberOfLeadingZeros(length - 1);
+	}
+
+	private long allocate(int length) {
+		if (segment == null || segment.capacity() - segmentPosition < length) {
+			segment = ByteBuffer.allocateDirect(Math.max(segmentSize, length));
+			segments.add(segment);
+			segmentPosition = 0;
+			allocatedBytes += segment.capacity();
+		}
+		long address = (long) segments.size() << 32 | segmentPosition;
+		segmentPosition += length;
+		return address;
+	}
+
+	private ByteBuffer segment(long address) {
+		return segments.get((int) (address >>> 32) - 1);
+	}
+
+	private static int offset(long address) {
+		return (int) address;
+	}
+
+	private byte[] readBuffer(int length) {
+		if (readBuffer.length < length) {
+			readBuffer = new byte[Math.max(length, readBuffer.length * 2)];
+		}
+		return readBuffer;
+	}
+	// endregion
+
+	int size() {
+		return size;
+	}
+
+	long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	long getFreeBytes() {
+		return freeBytes;
+	}
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2024 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.crdt.storage.local;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Compares serialized keys without deserializing them.
+ * <p>
+ * An order imposed by a comparator must be consistent with a natural order of keys,
+ * otherwise data would be downloaded out of order.
+ */
+@FunctionalInterface
+public interface SerializedKeyComparator {
+	/**
+	 * Compares a key stored in a buffer with a serialized key stored in a byte array
+	 *
+	 * @return a negative integer, zero, or a positive integer as a stored key
+	 * is less than, equal to, or greater than a given key
+	 */
+	int compare(ByteBuffer buf, int offset, int length, byte[] key, int keyOffset, int keyLength);
+
+	/**
+	 * Compares keys as unsigned byte sequences.
+	 * It is suitable for keys whose serialized form preserves order,
+	 * like fixed-size big-endian unsigned numbers or byte arrays without a length prefix
+	 */
+	static SerializedKeyComparator lexicographic() {
+		return (buf, offset, length, key, keyOffset, keyLength) -> {
+			int n = Math.min(length, keyLength);
+			for (int i = 0; i < n; i++) {
+				int compare = Integer.compare(buf.get(offset + i) & 0xFF, key[keyOffset + i] & 0xFF);
+				if (compare != 0) return compare;
+			}
+			return Integer.compare(length, keyLength);
+		};
+	}
+}
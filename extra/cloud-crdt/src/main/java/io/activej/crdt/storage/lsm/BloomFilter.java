@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.crdt.storage.lsm;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A bloom filter over 64-bit hashes of serialized keys (see {@link #hash(byte[], int)}),
+ * which uses double hashing to derive {@code numHashes} bit positions
+ */
+final class BloomFilter {
+	private final long[] bits;
+	private final int numHashes;
+
+	private BloomFilter(long[] bits, int numHashes) {
+		this.bits = bits;
+		this.numHashes = numHashes;
+	}
+
+	static BloomFilter create(int expectedKeys, int bitsPerKey) {
+		long numBits = Math.max(64L, (long) expectedKeys * bitsPerKey);
+		int numHashes = Math.max(1, Math.min(30, (int) Math.round(bitsPerKey * Math.log(2))));
+		return new BloomFilter(new long[(int) ((numBits + 63) / 64)], numHashes);
+	}
+
+	void add(long hash) {
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		long numBits = (long) bits.length * 64;
+		for (int i = 0; i < numHashes; i++) {
+			long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % numBits;
+			bits[(int) (bit >>> 6)] |= 1L << bit;
+		}
+	}
+
+	boolean mightContain(long hash) {
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		long numBits = (long) bits.length * 64;
+		for (int i = 0; i < numHashes; i++) {
+			long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % numBits;
+			if ((bits[(int) (bit >>> 6)] & 1L << bit) == 0) return false;
+		}
+		return true;
+	}
+
+	int serializedSize() {
+		return 8 + bits.length * 8;
+	}
+
+	void writeTo(ByteBuffer buf) {
+		buf.putInt(numHashes);
+		buf.putInt(bits.length);
+		for (long word : bits) {
+			buf.putLong(word);
+		}
+	}
+
+	static BloomFilter readFrom(ByteBuffer buf) {
+		int numHashes = buf.getInt();
+		long[] bits = new long[buf.getInt()];
+		for (int i = 0; i < bits.length; i++) {
+			bits[i] = buf.getLong();
+		}
+		return new BloomFilter(bits, numHashes);
+	}
+
+	// 64-bit FNV-1a followed by a murmur3 finalizer
+	static long hash(byte[] key, int length) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < length; i++) {
+			h ^= key[i];
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
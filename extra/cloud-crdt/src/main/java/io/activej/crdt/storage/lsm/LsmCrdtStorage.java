@@ -0,0 +1,1096 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.crdt.storage.lsm;
+
+import io.activej.async.function.AsyncRunnable;
+import io.activej.async.function.AsyncRunnables;
+import io.activej.async.service.ReactiveService;
+import io.activej.common.ApplicationSettings;
+import io.activej.common.Checks;
+import io.activej.common.MemSize;
+import io.activej.common.builder.AbstractBuilder;
+import io.activej.common.time.CurrentTimeProvider;
+import io.activej.crdt.CrdtData;
+import io.activej.crdt.CrdtException;
+import io.activej.crdt.CrdtTombstone;
+import io.activej.crdt.function.CrdtFilter;
+import io.activej.crdt.function.CrdtFunction;
+import io.activej.crdt.primitives.CrdtType;
+import io.activej.crdt.storage.ICrdtStorage;
+import io.activej.crdt.util.CrdtDataBinarySerializer;
+import io.activej.csp.supplier.ChannelSuppliers;
+import io.activej.datastream.consumer.StreamConsumer;
+import io.activej.datastream.consumer.ToListStreamConsumer;
+import io.activej.datastream.stats.BasicStreamStats;
+import io.activej.datastream.stats.DetailedStreamStats;
+import io.activej.datastream.stats.StreamStats;
+import io.activej.datastream.supplier.StreamSupplier;
+import io.activej.datastream.supplier.StreamSuppliers;
+import io.activej.jmx.api.attribute.JmxAttribute;
+import io.activej.jmx.api.attribute.JmxOperation;
+import io.activej.jmx.stats.EventStats;
+import io.activej.promise.Promise;
+import io.activej.promise.Promises;
+import io.activej.promise.SettablePromise;
+import io.activej.promise.jmx.PromiseStats;
+import io.activej.reactor.AbstractReactive;
+import io.activej.reactor.Reactor;
+import io.activej.reactor.jmx.ReactiveJmxBeanWithStats;
+import io.activej.serializer.BinarySerializer;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static io.activej.crdt.util.Utils.onItem;
+import static io.activej.reactor.Reactive.checkInReactorThread;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.*;
+import static java.util.Comparator.comparing;
+
+/**
+ * A persistent CRDT storage, based on a log-structured merge tree.
+ * <p>
+ * Uploaded data and tombstones are merged into an in-memory memtable and appended to a memtable log.
+ * Once a memtable grows over a configured size, it is flushed into a level 0 {@link SSTable}.
+ * Tables of level 0 may overlap, while tables of each next level are non-overlapping
+ * and a level is allowed to be {@code levelSizeMultiplier} times bigger than a previous one.
+ * Compaction merges tables of an overgrown level into the next level on a compaction executor.
+ * <p>
+ * Each table carries a block index and a bloom filter, so that a point lookup with {@link #get(Comparable)}
+ * reads at most one block of each table which may contain a key.
+ * <p>
+ * The list of tables of each level is stored in a manifest file, which is atomically replaced on every change.
+ * <p>
+ * Tombstones are kept even at the bottom level, the same way {@link io.activej.crdt.storage.local.MapCrdtStorage}
+ * keeps them, so that late data with an older timestamp is never resurrected. If a tombstone grace period is set,
+ * bottom level compaction drops tombstones which are older than the grace period, and any data older than
+ * a dropped tombstone which arrives afterwards is accepted as new.
+ */
+@SuppressWarnings("rawtypes")
+public final class LsmCrdtStorage<K extends Comparable<K>, S> extends AbstractReactive
+	implements ICrdtStorage<K, S>, ReactiveService, ReactiveJmxBeanWithStats {
+
+	private static final Logger logger = LoggerFactory.getLogger(LsmCrdtStorage.class);
+	private static final boolean CHECKS = Checks.isEnabled(LsmCrdtStorage.class);
+
+	public static final Duration DEFAULT_SMOOTHING_WINDOW = ApplicationSettings.getDuration(LsmCrdtStorage.class, "smoothingWindow", Duration.ofMinutes(1));
+	public static final MemSize DEFAULT_MEMTABLE_SIZE = ApplicationSettings.getMemSize(LsmCrdtStorage.class, "memtableSize", MemSize.megabytes(8));
+	public static final MemSize DEFAULT_BLOCK_SIZE = ApplicationSettings.getMemSize(LsmCrdtStorage.class, "blockSize", MemSize.kilobytes(4));
+	public static final MemSize DEFAULT_TARGET_TABLE_SIZE = ApplicationSettings.getMemSize(LsmCrdtStorage.class, "targetTableSize", MemSize.megabytes(16));
+	public static final MemSize DEFAULT_BASE_LEVEL_SIZE = ApplicationSettings.getMemSize(LsmCrdtStorage.class, "baseLevelSize", MemSize.megabytes(64));
+	public static final int DEFAULT_LEVEL_SIZE_MULTIPLIER = ApplicationSettings.getInt(LsmCrdtStorage.class, "levelSizeMultiplier", 10);
+	public static final int DEFAULT_LEVEL_0_COMPACTION_TRIGGER = ApplicationSettings.getInt(LsmCrdtStorage.class, "level0CompactionTrigger", 4);
+	public static final int DEFAULT_BLOOM_FILTER_BITS_PER_KEY = ApplicationSettings.getInt(LsmCrdtStorage.class, "bloomFilterBitsPerKey", 10);
+	public static final int MAX_LEVELS = 7;
+
+	public static final String MANIFEST = "MANIFEST";
+
+	private static final int DOWNLOAD_BATCH_SIZE = 1024;
+
+	private final Executor executor;
+	private final Path path;
+	private final CrdtFunction<S> function;
+	private final BinarySerializer<K> keySerializer;
+	private final BinarySerializer<LsmEntry<K, S>> entrySerializer;
+
+	private Executor compactionExecutor;
+	private CrdtFilter<S> filter = $ -> true;
+	private CurrentTimeProvider now = CurrentTimeProvider.ofSystem();
+
+	private MemSize memtableSize = DEFAULT_MEMTABLE_SIZE;
+	private MemSize blockSize = DEFAULT_BLOCK_SIZE;
+	private MemSize targetTableSize = DEFAULT_TARGET_TABLE_SIZE;
+	private MemSize baseLevelSize = DEFAULT_BASE_LEVEL_SIZE;
+	private int levelSizeMultiplier = DEFAULT_LEVEL_SIZE_MULTIPLIER;
+	private int level0CompactionTrigger = DEFAULT_LEVEL_0_COMPACTION_TRIGGER;
+	private int bloomFilterBitsPerKey = DEFAULT_BLOOM_FILTER_BITS_PER_KEY;
+	private boolean syncLog;
+	private @Nullable Duration tombstoneGracePeriod;
+
+	private final AtomicLong idGenerator = new AtomicLong(1);
+
+	private Memtable memtable;
+	private final List<Memtable> immutableMemtables = new ArrayList<>();
+
+	private final List<List<SSTable<K, S>>> levels = new ArrayList<>();
+	private final K[] compactionPointers;
+	private @Nullable List<SSTable<K, S>> taken;
+
+	private final AsyncRunnable flush = AsyncRunnables.coalesce(() -> flushing = doFlush());
+	private final AsyncRunnable compact = AsyncRunnables.reuse(() -> compacting = doCompact());
+	private Promise<Void> flushing = Promise.complete();
+	private Promise<Void> compacting = Promise.complete();
+	private boolean stopping;
+	private final AsyncRunnable writeManifest = AsyncRunnables.coalesce(this::doWriteManifest);
+
+	private byte[] keyBuffer = new byte[256];
+
+	// region JMX
+	private boolean detailedStats;
+
+	private final BasicStreamStats<CrdtData<K, S>> uploadStats = StreamStats.basic();
+	private final DetailedStreamStats<CrdtData<K, S>> uploadStatsDetailed = StreamStats.detailed();
+	private final BasicStreamStats<CrdtData<K, S>> downloadStats = StreamStats.basic();
+	private final DetailedStreamStats<CrdtData<K, S>> downloadStatsDetailed = StreamStats.detailed();
+	private final BasicStreamStats<CrdtData<K, S>> takeStats = StreamStats.basic();
+	private final DetailedStreamStats<CrdtData<K, S>> takeStatsDetailed = StreamStats.detailed();
+	private final BasicStreamStats<CrdtTombstone<K>> removeStats = StreamStats.basic();
+	private final DetailedStreamStats<CrdtTombstone<K>> removeStatsDetailed = StreamStats.detailed();
+
+	private final EventStats uploadedItems = EventStats.create(DEFAULT_SMOOTHING_WINDOW);
+	private final EventStats downloadedItems = EventStats.create(DEFAULT_SMOOTHING_WINDOW);
+	private final EventStats takenItems = EventStats.create(DEFAULT_SMOOTHING_WINDOW);
+	private final EventStats removedItems = EventStats.create(DEFAULT_SMOOTHING_WINDOW);
+
+	private final PromiseStats getStats = PromiseStats.create(DEFAULT_SMOOTHING_WINDOW);
+	private final PromiseStats flushStats = PromiseStats.create(DEFAULT_SMOOTHING_WINDOW);
+	private final PromiseStats compactionStats = PromiseStats.create(DEFAULT_SMOOTHING_WINDOW);
+	private final EventStats tablesSkippedByBloomFilter = EventStats.create(DEFAULT_SMOOTHING_WINDOW);
+	private final EventStats tablesRead = EventStats.create(DEFAULT_SMOOTHING_WINDOW);
+	// endregion
+
+	@SuppressWarnings("unchecked")
+	private LsmCrdtStorage(Reactor reactor, Executor executor, Path path, CrdtDataBinarySerializer<K, S> serializer, CrdtFunction<S> function) {
+		super(reactor);
+		this.executor = executor;
+		this.compactionExecutor = executor;
+		this.path = path;
+		this.function = function;
+		this.keySerializer = serializer.getKeySerializer();
+		this.entrySerializer = LsmEntry.createSerializer(serializer.getKeySerializer(), serializer.getStateSerializer());
+		this.compactionPointers = (K[]) new Comparable[MAX_LEVELS];
+		for (int i = 0; i < MAX_LEVELS; i++) {
+			levels.add(new ArrayList<>());
+		}
+	}
+
+	public static <K extends Comparable<K>, S> LsmCrdtStorage<K, S> create(
+		Reactor reactor, Executor executor, Path path, CrdtDataBinarySerializer<K, S> serializer, CrdtFunction<S> function
+	) {
+		return builder(reactor, executor, path, serializer, function).build();
+	}
+
+	public static <K extends Comparable<K>, S extends CrdtType<S>> LsmCrdtStorage<K, S> create(
+		Reactor reactor, Executor executor, Path path, CrdtDataBinarySerializer<K, S> serializer
+	) {
+		return builder(reactor, executor, path, serializer).build();
+	}
+
+	public static <K extends Comparable<K>, S> LsmCrdtStorage<K, S>.Builder builder(
+		Reactor reactor, Executor executor, Path path, CrdtDataBinarySerializer<K, S> serializer, CrdtFunction<S> function
+	) {
+		return new LsmCrdtStorage<>(reactor, executor, path, serializer, function).new Builder();
+	}
+
+	public static <K extends Comparable<K>, S extends CrdtType<S>> LsmCrdtStorage<K, S>.Builder builder(
+		Reactor reactor, Executor executor, Path path, CrdtDataBinarySerializer<K, S> serializer
+	) {
+		return new LsmCrdtStorage<>(reactor, executor, path, serializer, CrdtFunction.<S>ofCrdtType()).new Builder();
+	}
+
+	public final class Builder extends AbstractBuilder<Builder, LsmCrdtStorage<K, S>> {
+		private Builder() {}
+
+		public Builder withFilter(CrdtFilter<S> filter) {
+			checkNotBuilt(this);
+			LsmCrdtStorage.this.filter = filter;
+			return this;
+		}
+
+		public Builder withCurrentTimeProvider(CurrentTimeProvider now) {
+			checkNotBuilt(this);
+			LsmCrdtStorage.this.now = now;
+			return this;
+		}
+
+		/**
+		 * Sets an executor which merges tables in background, by default an I/O executor is used
+		 */
+		public Builder withCompactionExecutor(Executor compactionExecutor) {
+			checkNotBuilt(this);
+			LsmCrdtStorage.this.compactionExecutor = compactionExecutor;
+			return this;
+		}
+
+		/**
+		 * Sets a size of serialized data, after which a memtable is flushed to level 0
+		 */
+		public Builder withMemtableSize(MemSize memtableSize) {
+			checkNotBuilt(this);
+			LsmCrdtStorage.this.memtableSize = memtableSize;
+			return this;
+		}
+
+		public Builder withBlockSize(MemSize blockSize) {
+			checkNotBuilt(this);
+			LsmCrdtStorage.this.blockSize = blockSize;
+			return this;
+		}
+
+		public Builder withTargetTableSize(MemSize targetTableSize) {
+			checkNotBuilt(this);
+			LsmCrdtStorage.this.targetTableSize = targetTableSize;
+			return this;
+		}
+
+		/**
+		 * Sets a maximum size of level 1, each next level is {@code levelSizeMultiplier} times bigger
+		 */
+		public Builder withBaseLevelSize(MemSize baseLevelSize) {
+			checkNotBuilt(this);
+			LsmCrdtStorage.this.baseLevelSize = baseLevelSize;
+			return this;
+		}
+
+		public Builder withLevelSizeMultiplier(int levelSizeMultiplier) {
+			checkNotBuilt(this);
+			LsmCrdtStorage.this.levelSizeMultiplier = levelSizeMultiplier;
+			return this;
+		}
+
+		/**
+		 * Sets a number of level 0 tables, after which they are compacted into level 1
+		 */
+		public Builder withLevel0CompactionTrigger(int level0CompactionTrigger) {
+			checkNotBuilt(this);
+			LsmCrdtStorage.this.level0CompactionTrigger = level0CompactionTrigger;
+			return this;
+		}
+
+		public Builder withBloomFilterBitsPerKey(int bloomFilterBitsPerKey) {
+			checkNotBuilt(this);
+			LsmCrdtStorage.this.bloomFilterBitsPerKey = bloomFilterBitsPerKey;
+			return this;
+		}
+
+		/**
+		 * Whether each append to a memtable log should be followed by fsync
+		 */
+		public Builder withSyncLog(boolean syncLog) {
+			checkNotBuilt(this);
+			LsmCrdtStorage.this.syncLog = syncLog;
+			return this;
+		}
+
+		/**
+		 * Sets a period after which tombstones are dropped by bottom level compaction.
+		 * By default, tombstones are never dropped
+		 */
+		public Builder withTombstoneGracePeriod(Duration tombstoneGracePeriod) {
+			checkNotBuilt(this);
+			LsmCrdtStorage.this.tombstoneGracePeriod = tombstoneGracePeriod;
+			return this;
+		}
+
+		@Override
+		protected LsmCrdtStorage<K, S> doBuild() {
+			return LsmCrdtStorage.this;
+		}
+	}
+
+	@Override
+	public Promise<StreamConsumer<CrdtData<K, S>>> upload() {
+		if (CHECKS) checkInReactorThread(this);
+		ToListStreamConsumer<CrdtData<K, S>> consumer = ToListStreamConsumer.create();
+		return Promise.of(consumer.withAcknowledgement(ack -> ack
+				.then(() -> write(consumer.getList().stream()
+					.map(data -> LsmEntry.ofData(data.getKey(), data.getState(), data.getTimestamp()))
+					.toList()))
+				.mapException(e -> new CrdtException("Error while uploading CRDT data", e)))
+			.transformWith(detailedStats ? uploadStatsDetailed : uploadStats)
+			.transformWith(onItem(uploadedItems::recordEvent)));
+	}
+
+	@Override
+	public Promise<StreamSupplier<CrdtData<K, S>>> download(long timestamp) {
+		if (CHECKS) checkInReactorThread(this);
+		List<SSTable<K, S>> tables = new ArrayList<>();
+		levels.forEach(tables::addAll);
+		if (taken != null) tables.addAll(taken);
+		return Promise.of(doDownload(tables, true, entry -> toData(entry, timestamp))
+			.transformWith(detailedStats ? downloadStatsDetailed : downloadStats)
+			.transformWith(onItem(downloadedItems::recordEvent))
+			.withEndOfStream(eos -> eos
+				.mapException(e -> new CrdtException("Error while downloading CRDT data", e))));
+	}
+
+	@Override
+	public Promise<StreamSupplier<CrdtTombstone<K>>> downloadTombstones() {
+		if (CHECKS) checkInReactorThread(this);
+		List<SSTable<K, S>> tables = new ArrayList<>();
+		levels.forEach(tables::addAll);
+		if (taken != null) tables.addAll(taken);
+		return Promise.of(doDownload(tables, true,
+			entry -> entry.tombstone() != 0 ? new CrdtTombstone<>(entry.key(), entry.tombstone()) : null));
+	}
+
+	@Override
+	public Promise<StreamSupplier<CrdtData<K, S>>> take() {
+		if (CHECKS) checkInReactorThread(this);
+		if (taken != null) {
+			return Promise.ofException(new CrdtException("Data is already being taken"));
+		}
+		taken = List.of();
+		return flush.run()
+			.map($ -> {
+				List<SSTable<K, S>> takenTables = new ArrayList<>();
+				for (List<SSTable<K, S>> level : levels) {
+					takenTables.addAll(level);
+					level.clear();
+				}
+				taken = takenTables;
+
+				StreamSupplier<CrdtData<K, S>> supplier = doDownload(takenTables, false, entry -> toData(entry, 0))
+					.transformWith(detailedStats ? takeStatsDetailed : takeStats)
+					.transformWith(onItem(takenItems::recordEvent));
+				supplier.getAcknowledgement()
+					.whenResult(() -> {
+						taken = null;
+						writeManifest.run()
+							.whenResult(() -> takenTables.forEach(this::markObsolete));
+					})
+					.whenException(e -> {
+						taken = null;
+						levels.get(0).addAll(takenTables);
+						writeManifest.run();
+						compact();
+					});
+				return supplier;
+			})
+			.whenException(e -> taken = null)
+			.mapException(e -> new CrdtException("Failed to take CRDT data", e));
+	}
+
+	@Override
+	public Promise<StreamConsumer<CrdtTombstone<K>>> remove() {
+		if (CHECKS) checkInReactorThread(this);
+		ToListStreamConsumer<CrdtTombstone<K>> consumer = ToListStreamConsumer.create();
+		return Promise.of(consumer.withAcknowledgement(ack -> ack
+				.then(() -> write(consumer.getList().stream()
+					.map(tombstone -> LsmEntry.<K, S>ofTombstone(tombstone.getKey(), tombstone.getTimestamp()))
+					.toList()))
+				.mapException(e -> new CrdtException("Error while removing CRDT data", e)))
+			.transformWith(detailedStats ? removeStatsDetailed : removeStats)
+			.transformWith(onItem(removedItems::recordEvent)));
+	}
+
+	@Override
+	public Promise<Void> ping() {
+		if (CHECKS) checkInReactorThread(this);
+		return Promise.complete();
+	}
+
+	@Override
+	public Promise<?> start() {
+		checkInReactorThread(this);
+		return Promise.ofBlocking(executor, this::recover)
+			.whenResult(recovered -> {
+				idGenerator.set(recovered.maxId() + 1);
+				for (int i = 0; i < MAX_LEVELS; i++) {
+					levels.get(i).addAll(recovered.levels().get(i));
+				}
+				List<MemtableLog> logs = new ArrayList<>(recovered.logs());
+				logs.add(createLog());
+				memtable = new Memtable(recovered.memtable(), recovered.memtableBytes(), logs);
+				logger.info("Started LSM storage in {}: {}", path, getLevels());
+			})
+			.then(() -> memtable.bytes >= memtableSize.toLong() ? flush.run() : Promise.complete())
+			.whenResult(this::compact)
+			.mapException(e -> new CrdtException("Failed to start LSM storage in " + path, e));
+	}
+
+	/**
+	 * Waits for an ongoing flush and compaction to complete, no further compactions are started
+	 */
+	@Override
+	public Promise<?> stop() {
+		checkInReactorThread(this);
+		stopping = true;
+		return awaitBackgroundTasks()
+			.then(() -> {
+				List<MemtableLog> logs = new ArrayList<>(memtable.logs);
+				immutableMemtables.forEach(immutable -> logs.addAll(immutable.logs));
+				List<SSTable<K, S>> tables = new ArrayList<>();
+				levels.forEach(tables::addAll);
+				if (taken != null) tables.addAll(taken);
+				return Promise.ofBlocking(executor, () -> {
+					for (MemtableLog log : logs) {
+						log.close();
+					}
+					tables.forEach(SSTable::close);
+				});
+			});
+	}
+
+	private Promise<Void> awaitBackgroundTasks() {
+		Promise<Void> flushing = this.flushing;
+		Promise<Void> compacting = this.compacting;
+		return Promises.all(flushing.toTry(), compacting.toTry())
+			.then(() -> flushing == this.flushing && compacting == this.compacting ?
+				Promise.complete() :
+				awaitBackgroundTasks());
+	}
+
+	// region single-key operations
+	public Promise<Void> put(K key, S state) {
+		if (CHECKS) checkInReactorThread(this);
+		return put(new CrdtData<>(key, now.currentTimeMillis(), state));
+	}
+
+	public Promise<Void> put(CrdtData<K, S> data) {
+		if (CHECKS) checkInReactorThread(this);
+		return write(List.of(LsmEntry.ofData(data.getKey(), data.getState(), data.getTimestamp())));
+	}
+
+	public Promise<Void> remove(K key) {
+		if (CHECKS) checkInReactorThread(this);
+		return remove(new CrdtTombstone<>(key, now.currentTimeMillis()));
+	}
+
+	public Promise<Void> remove(CrdtTombstone<K> tombstone) {
+		if (CHECKS) checkInReactorThread(this);
+		return write(List.of(LsmEntry.ofTombstone(tombstone.getKey(), tombstone.getTimestamp())));
+	}
+
+	/**
+	 * Looks up a state of a single key.
+	 * Only the tables which may contain the key according to their key ranges and bloom filters are read
+	 */
+	public Promise<@Nullable S> get(K key) {
+		if (CHECKS) checkInReactorThread(this);
+		LsmEntry<K, S> inMemory = memtable.map.get(key);
+		for (Memtable immutable : immutableMemtables) {
+			inMemory = mergeNullable(inMemory, immutable.map.get(key));
+		}
+
+		long keyHash = BloomFilter.hash(keyBuffer, encodeKey(key));
+		List<SSTable<K, S>> candidates = new ArrayList<>();
+		for (List<SSTable<K, S>> level : levels) {
+			for (SSTable<K, S> table : level) {
+				if (table.mightContain(key, keyHash)) {
+					table.acquire();
+					candidates.add(table);
+				} else {
+					tablesSkippedByBloomFilter.recordEvent();
+				}
+			}
+		}
+		if (candidates.isEmpty()) {
+			return Promise.of(toState(inMemory));
+		}
+
+		LsmEntry<K, S> finalInMemory = inMemory;
+		return Promise.ofBlocking(executor, () -> {
+				LsmEntry<K, S> entry = finalInMemory;
+				for (SSTable<K, S> table : candidates) {
+					entry = mergeNullable(entry, table.get(key, entrySerializer));
+				}
+				return entry;
+			})
+			.whenComplete(() -> {
+				tablesRead.recordEvents(candidates.size());
+				candidates.forEach(this::release);
+			})
+			.map(this::toState)
+			.whenComplete(getStats.recordStats())
+			.mapException(e -> new CrdtException("Failed to get CRDT data", e));
+	}
+
+	@Override
+	public Promise<List<@Nullable S>> getAll(List<K> keys) {
+		if (CHECKS) checkInReactorThread(this);
+		return Promises.toList(keys.stream().map(this::get));
+	}
+	// endregion
+
+	public Promise<Void> flush() {
+		checkInReactorThread(this);
+		return flush.run()
+			.mapException(e -> new CrdtException("Failed to flush memtable", e));
+	}
+
+	/**
+	 * Compacts the levels until none of them exceeds its limit
+	 */
+	public Promise<Void> compact() {
+		checkInReactorThread(this);
+		return compact.run()
+			.mapException(e -> new CrdtException("Failed to compact LSM storage", e));
+	}
+
+	private Promise<Void> write(List<LsmEntry<K, S>> entries) {
+		if (entries.isEmpty()) return Promise.complete();
+
+		byte[] record = MemtableLog.encode(entrySerializer, entries);
+		Memtable memtable = this.memtable;
+		for (LsmEntry<K, S> entry : entries) {
+			memtable.map.merge(entry.key(), entry, (a, b) -> LsmEntry.merge(function, a, b));
+		}
+		memtable.bytes += record.length;
+
+		MemtableLog log = memtable.logs.get(memtable.logs.size() - 1);
+		memtable.pendingAppends++;
+		return Promise.ofBlocking(executor, () -> log.append(record))
+			.whenComplete(memtable::onAppendComplete)
+			.then(() -> memtable == this.memtable && memtable.bytes >= memtableSize.toLong() ?
+				flush.run() :
+				Promise.complete());
+	}
+
+	// region flush
+	private Promise<Void> doFlush() {
+		Memtable frozen = memtable;
+		if (frozen.map.isEmpty()) return Promise.complete();
+
+		memtable = new Memtable(new TreeMap<>(), 0, new ArrayList<>(List.of(createLog())));
+		immutableMemtables.add(0, frozen);
+
+		SSTableWriter<K, S> writer = createWriter();
+		return Promise.ofBlocking(executor, () -> writer.write(frozen.map.values().iterator()))
+			.whenException(e -> {
+				immutableMemtables.remove(frozen);
+				frozen.map.forEach((key, entry) -> memtable.map.merge(key, entry, (a, b) -> LsmEntry.merge(function, a, b)));
+				memtable.bytes += frozen.bytes;
+				memtable.logs.addAll(0, frozen.logs);
+			})
+			.then(tables -> {
+				immutableMemtables.remove(frozen);
+				levels.get(0).addAll(0, tables);
+				return writeManifest.run()
+					.then(frozen::awaitAppends)
+					.then(() -> Promise.ofBlocking(executor, () -> {
+						for (MemtableLog log : frozen.logs) {
+							log.close();
+							Files.deleteIfExists(log.getPath());
+						}
+					}));
+			})
+			.whenResult(this::compact)
+			.whenComplete(flushStats.recordStats());
+	}
+
+	private MemtableLog createLog() {
+		long id = idGenerator.getAndIncrement();
+		return new MemtableLog(id, MemtableLog.resolve(path, id), syncLog);
+	}
+	// endregion
+
+	// region compaction
+	private Promise<Void> doCompact() {
+		if (stopping) return Promise.complete();
+		Compaction compaction = pickCompaction();
+		if (compaction == null) return Promise.complete();
+
+		compaction.inputs.forEach(SSTable::acquire);
+		SSTableWriter<K, S> writer = createWriter();
+		long tombstonesBefore = compaction.bottom && tombstoneGracePeriod != null ?
+			now.currentTimeMillis() - tombstoneGracePeriod.toMillis() :
+			0;
+		logger.trace("Compacting {} into level {}", compaction.inputs, compaction.outputLevel);
+
+		return Promise.ofBlocking(compactionExecutor, () -> {
+				List<SSTable<K, S>.TableIterator> iterators = compaction.inputs.stream()
+					.map(table -> table.iterator(entrySerializer))
+					.toList();
+				try {
+					Iterator<LsmEntry<K, S>> merged = MergingIterator.create(function, iterators);
+					return writer.write(tombstonesBefore > 0 ? MergingIterator.droppingTombstones(merged, tombstonesBefore) : merged);
+				} catch (UncheckedIOException e) {
+					throw e.getCause();
+				} finally {
+					iterators.forEach(SSTable.TableIterator::close);
+				}
+			})
+			.whenComplete(() -> compaction.inputs.forEach(this::release))
+			.then(outputs -> {
+				if (!applyCompaction(compaction, outputs)) {
+					logger.info("Tables of compaction {} have been taken, discarding its output", compaction.inputs);
+					outputs.forEach(this::markObsolete);
+					return Promise.complete();
+				}
+				return writeManifest.run()
+					.whenResult(() -> compaction.inputs.forEach(this::markObsolete));
+			})
+			.whenComplete(compactionStats.recordStats())
+			.then(this::doCompact);
+	}
+
+	private @Nullable Compaction pickCompaction() {
+		if (taken != null && !taken.isEmpty()) return null;
+
+		List<SSTable<K, S>> level0 = levels.get(0);
+		if (level0.size() >= level0CompactionTrigger) {
+			return createCompaction(0, new ArrayList<>(level0));
+		}
+
+		long maxLevelSize = baseLevelSize.toLong();
+		for (int i = 1; i < MAX_LEVELS - 1; i++, maxLevelSize *= levelSizeMultiplier) {
+			List<SSTable<K, S>> level = levels.get(i);
+			if (level.stream().mapToLong(SSTable::getFileSize).sum() <= maxLevelSize) continue;
+
+			K pointer = compactionPointers[i];
+			SSTable<K, S> table = level.stream()
+				.filter(t -> pointer == null || t.getMinKey().compareTo(pointer) > 0)
+				.findFirst()
+				.orElse(level.get(0));
+			compactionPointers[i] = table.getMaxKey();
+			return createCompaction(i, new ArrayList<>(List.of(table)));
+		}
+		return null;
+	}
+
+	private Compaction createCompaction(int level, List<SSTable<K, S>> inputs) {
+		K min = inputs.stream().map(SSTable::getMinKey).min(Comparator.naturalOrder()).orElseThrow();
+		K max = inputs.stream().map(SSTable::getMaxKey).max(Comparator.naturalOrder()).orElseThrow();
+		int outputLevel = level + 1;
+		for (SSTable<K, S> table : levels.get(outputLevel)) {
+			if (table.overlaps(min, max)) {
+				inputs.add(table);
+			}
+		}
+		boolean bottom = true;
+		for (int i = outputLevel + 1; i < MAX_LEVELS; i++) {
+			for (SSTable<K, S> table : levels.get(i)) {
+				if (table.overlaps(min, max)) {
+					bottom = false;
+					break;
+				}
+			}
+		}
+		return new Compaction(level, outputLevel, inputs, bottom);
+	}
+
+	private boolean applyCompaction(Compaction compaction, List<SSTable<K, S>> outputs) {
+		for (SSTable<K, S> input : compaction.inputs) {
+			if (!levels.get(compaction.level).contains(input) && !levels.get(compaction.outputLevel).contains(input)) {
+				return false;
+			}
+		}
+		levels.get(compaction.level).removeAll(compaction.inputs);
+		List<SSTable<K, S>> outputLevel = levels.get(compaction.outputLevel);
+		outputLevel.removeAll(compaction.inputs);
+		outputLevel.addAll(outputs);
+		outputLevel.sort(comparing(SSTable::getMinKey));
+		return true;
+	}
+	// endregion
+
+	// region download
+	private <T> StreamSupplier<T> doDownload(List<SSTable<K, S>> tables, boolean includeMemtables, Function<LsmEntry<K, S>, @Nullable T> mapper) {
+		List<Collection<LsmEntry<K, S>>> inMemory = new ArrayList<>();
+		if (includeMemtables) {
+			inMemory.add(new ArrayList<>(memtable.map.values()));
+			immutableMemtables.forEach(immutable -> inMemory.add(immutable.map.values()));
+		}
+		tables.forEach(SSTable::acquire);
+		DownloadCursor<T> cursor = new DownloadCursor<>(inMemory, tables, mapper);
+
+		return StreamSuppliers.ofChannelSupplier(ChannelSuppliers.remap(
+				ChannelSuppliers.ofAsyncSupplier(() -> Promise.ofBlocking(executor, cursor::nextBatch)),
+				batch -> batch != null ? batch.iterator() : Collections.emptyIterator()))
+			.withEndOfStream(eos -> eos
+				.whenComplete(() -> Promise.ofBlocking(executor, cursor::close)
+					.whenComplete(() -> tables.forEach(this::release))));
+	}
+
+	private @Nullable CrdtData<K, S> toData(LsmEntry<K, S> entry, long timestamp) {
+		if (entry.state() == null || entry.timestamp() < timestamp || !filter.test(entry.state())) return null;
+		return new CrdtData<>(entry.key(), entry.timestamp(), entry.state());
+	}
+
+	private final class DownloadCursor<T> {
+		private final List<Collection<LsmEntry<K, S>>> inMemory;
+		private final List<SSTable<K, S>> tables;
+		private final Function<LsmEntry<K, S>, @Nullable T> mapper;
+
+		private final List<SSTable<K, S>.TableIterator> iterators = new ArrayList<>();
+		private @Nullable Iterator<LsmEntry<K, S>> merged;
+
+		DownloadCursor(List<Collection<LsmEntry<K, S>>> inMemory, List<SSTable<K, S>> tables, Function<LsmEntry<K, S>, @Nullable T> mapper) {
+			this.inMemory = inMemory;
+			this.tables = tables;
+			this.mapper = mapper;
+		}
+
+		@Nullable List<T> nextBatch() throws IOException {
+			try {
+				if (merged == null) {
+					List<Iterator<LsmEntry<K, S>>> sources = new ArrayList<>();
+					inMemory.forEach(entries -> sources.add(entries.iterator()));
+					for (SSTable<K, S> table : tables) {
+						SSTable<K, S>.TableIterator iterator = table.iterator(entrySerializer);
+						iterators.add(iterator);
+						sources.add(iterator);
+					}
+					merged = MergingIterator.create(function, sources);
+				}
+				List<T> batch = new ArrayList<>(DOWNLOAD_BATCH_SIZE);
+				while (batch.size() < DOWNLOAD_BATCH_SIZE && merged.hasNext()) {
+					T item = mapper.apply(merged.next());
+					if (item != null) {
+						batch.add(item);
+					}
+				}
+				return batch.isEmpty() ? null : batch;
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+		}
+
+		void close() {
+			iterators.forEach(SSTable.TableIterator::close);
+		}
+	}
+	// endregion
+
+	// region manifest and recovery
+	private Promise<Void> doWriteManifest() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < MAX_LEVELS; i++) {
+			for (SSTable<K, S> table : levels.get(i)) {
+				sb.append(i).append(' ').append(table.getId()).append('\n');
+			}
+		}
+		if (taken != null) {
+			for (SSTable<K, S> table : taken) {
+				sb.append(0).append(' ').append(table.getId()).append('\n');
+			}
+		}
+		byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+		return Promise.ofBlocking(executor, () -> {
+			Path manifest = path.resolve(MANIFEST);
+			Path tempManifest = path.resolve(MANIFEST + SSTableWriter.TEMP_EXTENSION);
+			try (FileChannel channel = FileChannel.open(tempManifest, CREATE, WRITE, TRUNCATE_EXISTING)) {
+				channel.write(ByteBuffer.wrap(bytes));
+				channel.force(true);
+			}
+			try {
+				Files.move(tempManifest, manifest, ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException ignored) {
+				Files.move(tempManifest, manifest);
+			}
+		});
+	}
+
+	private Recovered<K, S> recover() throws IOException {
+		Files.createDirectories(path);
+
+		Map<Long, Integer> manifest = new HashMap<>();
+		Path manifestFile = path.resolve(MANIFEST);
+		if (Files.exists(manifestFile)) {
+			for (String line : Files.readAllLines(manifestFile, StandardCharsets.UTF_8)) {
+				if (line.isBlank()) continue;
+				String[] parts = line.split(" ");
+				manifest.put(Long.parseLong(parts[1]), Integer.parseInt(parts[0]));
+			}
+		}
+
+		long maxId = 0;
+		List<Long> logIds = new ArrayList<>();
+		List<List<SSTable<K, S>>> levels = new ArrayList<>();
+		for (int i = 0; i < MAX_LEVELS; i++) {
+			levels.add(new ArrayList<>());
+		}
+		try (Stream<Path> files = Files.list(path)) {
+			for (Path file : files.toList()) {
+				String fileName = file.getFileName().toString();
+				if (fileName.endsWith(SSTableWriter.TEMP_EXTENSION)) {
+					Files.delete(file);
+					continue;
+				}
+				long id;
+				if (fileName.endsWith(SSTable.EXTENSION)) {
+					id = parseId(fileName, SSTable.EXTENSION);
+					Integer level = manifest.get(id);
+					if (level == null) {
+						logger.info("Deleting table {} which is not in manifest", file);
+						Files.delete(file);
+					} else {
+						levels.get(level).add(SSTable.open(id, file, keySerializer));
+					}
+				} else if (fileName.endsWith(MemtableLog.EXTENSION)) {
+					id = parseId(fileName, MemtableLog.EXTENSION);
+					logIds.add(id);
+				} else {
+					continue;
+				}
+				maxId = Math.max(maxId, id);
+			}
+		}
+		for (int i = 1; i < MAX_LEVELS; i++) {
+			levels.get(i).sort(comparing(SSTable::getMinKey));
+		}
+		levels.get(0).sort(comparing(SSTable<K, S>::getId).reversed());
+
+		Collections.sort(logIds);
+		TreeMap<K, LsmEntry<K, S>> memtable = new TreeMap<>();
+		List<MemtableLog> logs = new ArrayList<>();
+		long bytes = 0;
+		for (Long logId : logIds) {
+			Path logPath = MemtableLog.resolve(path, logId);
+			MemtableLog.replay(logPath, entrySerializer, entry -> memtable.merge(entry.key(), entry, (a, b) -> LsmEntry.merge(function, a, b)));
+			bytes += Files.size(logPath);
+			logs.add(new MemtableLog(logId, logPath, syncLog));
+		}
+
+		return new Recovered<>(levels, memtable, bytes, logs, maxId);
+	}
+
+	private static long parseId(String fileName, String extension) throws IOException {
+		try {
+			return Long.parseLong(fileName.substring(0, fileName.length() - extension.length()));
+		} catch (NumberFormatException e) {
+			throw new IOException("Unexpected file " + fileName, e);
+		}
+	}
+
+	private record Recovered<K extends Comparable<K>, S>(
+		List<List<SSTable<K, S>>> levels, TreeMap<K, LsmEntry<K, S>> memtable, long memtableBytes,
+		List<MemtableLog> logs, long maxId
+	) {}
+	// endregion
+
+	private SSTableWriter<K, S> createWriter() {
+		return new SSTableWriter<>(path, idGenerator::getAndIncrement, keySerializer, entrySerializer,
+			blockSize.toInt(), targetTableSize.toLong(), bloomFilterBitsPerKey);
+	}
+
+	private void release(SSTable<K, S> table) {
+		if (table.release()) {
+			deleteTable(table);
+		}
+	}
+
+	private void markObsolete(SSTable<K, S> table) {
+		if (table.markObsolete()) {
+			deleteTable(table);
+		}
+	}
+
+	private void deleteTable(SSTable<K, S> table) {
+		Promise.ofBlocking(executor, () -> {
+				table.close();
+				Files.deleteIfExists(table.getPath());
+			})
+			.whenException(e -> logger.warn("Failed to delete table {}", table.getPath(), e));
+	}
+
+	private @Nullable LsmEntry<K, S> mergeNullable(@Nullable LsmEntry<K, S> first, @Nullable LsmEntry<K, S> second) {
+		if (first == null) return second;
+		if (second == null) return first;
+		return LsmEntry.merge(function, first, second);
+	}
+
+	private @Nullable S toState(@Nullable LsmEntry<K, S> entry) {
+		if (entry == null || entry.state() == null || entry.timestamp() <= entry.tombstone()) return null;
+		return filter.test(entry.state()) ? entry.state() : null;
+	}
+
+	private int encodeKey(K key) {
+		while (true) {
+			try {
+				return keySerializer.encode(keyBuffer, 0, key);
+			} catch (ArrayIndexOutOfBoundsException e) {
+				keyBuffer = new byte[keyBuffer.length * 2];
+			}
+		}
+	}
+
+	private final class Memtable {
+		final TreeMap<K, LsmEntry<K, S>> map;
+		final List<MemtableLog> logs;
+		long bytes;
+
+		int pendingAppends;
+		@Nullable SettablePromise<Void> appendsCompleted;
+
+		Memtable(TreeMap<K, LsmEntry<K, S>> map, long bytes, List<MemtableLog> logs) {
+			this.map = map;
+			this.bytes = bytes;
+			this.logs = logs;
+		}
+
+		void onAppendComplete() {
+			if (--pendingAppends == 0 && appendsCompleted != null) {
+				appendsCompleted.set(null);
+				appendsCompleted = null;
+			}
+		}
+
+		/**
+		 * Waits for in-flight appends, so that the logs are not recreated once deleted
+		 */
+		Promise<Void> awaitAppends() {
+			if (pendingAppends == 0) return Promise.complete();
+			if (appendsCompleted == null) appendsCompleted = new SettablePromise<>();
+			return appendsCompleted;
+		}
+	}
+
+	private final class Compaction {
+		final int level;
+		final int outputLevel;
+		final List<SSTable<K, S>> inputs;
+		final boolean bottom;
+
+		Compaction(int level, int outputLevel, List<SSTable<K, S>> inputs, boolean bottom) {
+			this.level = level;
+			this.outputLevel = outputLevel;
+			this.inputs = inputs;
+			this.bottom = bottom;
+		}
+	}
+
+	@VisibleForTesting
+	List<List<SSTable<K, S>>> getLevelTables() {
+		return levels;
+	}
+
+	// region JMX
+	@JmxOperation
+	public void startDetailedMonitoring() {
+		detailedStats = true;
+	}
+
+	@JmxOperation
+	public void stopDetailedMonitoring() {
+		detailedStats = false;
+	}
+
+	@JmxAttribute
+	public boolean isDetailedStats() {
+		return detailedStats;
+	}
+
+	@JmxAttribute
+	public BasicStreamStats getUploadStats() {
+		return uploadStats;
+	}
+
+	@JmxAttribute
+	public DetailedStreamStats getUploadStatsDetailed() {
+		return uploadStatsDetailed;
+	}
+
+	@JmxAttribute
+	public BasicStreamStats getDownloadStats() {
+		return downloadStats;
+	}
+
+	@JmxAttribute
+	public DetailedStreamStats getDownloadStatsDetailed() {
+		return downloadStatsDetailed;
+	}
+
+	@JmxAttribute
+	public BasicStreamStats getTakeStats() {
+		return takeStats;
+	}
+
+	@JmxAttribute
+	public DetailedStreamStats getTakeStatsDetailed() {
+		return takeStatsDetailed;
+	}
+
+	@JmxAttribute
+	public BasicStreamStats getRemoveStats() {
+		return removeStats;
+	}
+
+	@JmxAttribute
+	public DetailedStreamStats getRemoveStatsDetailed() {
+		return removeStatsDetailed;
+	}
+
+	@JmxAttribute
+	public EventStats getUploadedItems() {
+		return uploadedItems;
+	}
+
+	@JmxAttribute
+	public EventStats getDownloadedItems() {
+		return downloadedItems;
+	}
+
+	@JmxAttribute
+	public EventStats getTakenItems() {
+		return takenItems;
+	}
+
+	@JmxAttribute
+	public EventStats getRemovedItems() {
+		return removedItems;
+	}
+
+	@JmxAttribute
+	public PromiseStats getGetStats() {
+		return getStats;
+	}
+
+	@JmxAttribute
+	public PromiseStats getFlushStats() {
+		return flushStats;
+	}
+
+	@JmxAttribute
+	public PromiseStats getCompactionStats() {
+		return compactionStats;
+	}
+
+	@JmxAttribute
+	public EventStats getTablesSkippedByBloomFilter() {
+		return tablesSkippedByBloomFilter;
+	}
+
+	@JmxAttribute
+	public EventStats getTablesRead() {
+		return tablesRead;
+	}
+
+	@JmxAttribute
+	public long getMemtableSize() {
+		return memtable.bytes;
+	}
+
+	@JmxAttribute
+	public String getLevels() {
+		StringJoiner joiner = new StringJoiner(", ");
+		for (int i = 0; i < MAX_LEVELS; i++) {
+			List<SSTable<K, S>> level = levels.get(i);
+			if (level.isEmpty()) continue;
+			joiner.add("L" + i + ": " + level.size() + " tables, " + level.stream().mapToLong(SSTable::getFileSize).sum() + " bytes");
+		}
+		return joiner.toString();
+	}
+	// endregion
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.crdt.storage.lsm;
+
+import io.activej.crdt.function.CrdtFunction;
+import io.activej.serializer.*;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A state of a single key within a memtable or an SSTable.
+ * <p>
+ * Unlike {@link io.activej.crdt.CrdtData} it carries both the (possibly absent) state
+ * and the timestamp of the latest tombstone, so that a tombstone which is older than the state
+ * still hides older states of the same key which reside in lower levels.
+ */
+record LsmEntry<K extends Comparable<K>, S>(K key, @Nullable S state, long timestamp, long tombstone) {
+
+	static <K extends Comparable<K>, S> LsmEntry<K, S> ofData(K key, S state, long timestamp) {
+		return new LsmEntry<>(key, state, timestamp, 0);
+	}
+
+	static <K extends Comparable<K>, S> LsmEntry<K, S> ofTombstone(K key, long timestamp) {
+		return new LsmEntry<>(key, null, 0, timestamp);
+	}
+
+	/**
+	 * Merges two entries of the same key.
+	 * Merging is commutative, so the order of entries does not matter.
+	 */
+	static <K extends Comparable<K>, S> LsmEntry<K, S> merge(CrdtFunction<S> function, LsmEntry<K, S> first, LsmEntry<K, S> second) {
+		long tombstone = Math.max(first.tombstone, second.tombstone);
+		boolean firstAlive = first.state != null && first.timestamp > tombstone;
+		boolean secondAlive = second.state != null && second.timestamp > tombstone;
+
+		if (firstAlive && secondAlive) {
+			S merged = function.merge(first.state, first.timestamp, second.state, second.timestamp);
+			return new LsmEntry<>(first.key, merged, Math.max(first.timestamp, second.timestamp), tombstone);
+		}
+		if (firstAlive) return new LsmEntry<>(first.key, first.state, first.timestamp, tombstone);
+		if (secondAlive) return new LsmEntry<>(first.key, second.state, second.timestamp, tombstone);
+		return new LsmEntry<>(first.key, null, 0, tombstone);
+	}
+
+	/**
+	 * Returns an entry without a tombstone if the tombstone is older than a given timestamp,
+	 * or {@code null} if nothing is left. It is used when there are no lower levels
+	 * that the tombstone could hide anything in and the tombstone's grace period is over
+	 */
+	@Nullable LsmEntry<K, S> dropTombstone(long before) {
+		if (tombstone == 0 || tombstone >= before) return this;
+		return state != null ? new LsmEntry<>(key, state, timestamp, 0) : null;
+	}
+
+	static <K extends Comparable<K>, S> BinarySerializer<LsmEntry<K, S>> createSerializer(
+		BinarySerializer<K> keySerializer, BinarySerializer<S> stateSerializer
+	) {
+		BinarySerializer<@Nullable S> nullableStateSerializer = BinarySerializers.ofNullable(stateSerializer);
+		return new BinarySerializer<>() {
+			@Override
+			public void encode(BinaryOutput out, LsmEntry<K, S> item) {
+				keySerializer.encode(out, item.key);
+				nullableStateSerializer.encode(out, item.state);
+				out.writeVarLong(item.timestamp);
+				out.writeVarLong(item.tombstone);
+			}
+
+			@Override
+			public LsmEntry<K, S> decode(BinaryInput in) throws CorruptedDataException {
+				return new LsmEntry<>(
+					keySerializer.decode(in),
+					nullableStateSerializer.decode(in),
+					in.readVarLong(),
+					in.readVarLong()
+				);
+			}
+		};
+	}
+}
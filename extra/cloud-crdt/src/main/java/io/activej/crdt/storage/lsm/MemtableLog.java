@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.crdt.storage.lsm;
+
+import io.activej.serializer.BinaryInput;
+import io.activej.serializer.BinarySerializer;
+import io.activej.serializer.CorruptedDataException;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * An append-only log which backs a memtable.
+ * <p>
+ * Each appended batch is a single record {@code [length: int][crc32: int][entries]},
+ * so that a batch which was torn by a crash is detected and skipped on replay.
+ */
+final class MemtableLog {
+	private static final Logger logger = LoggerFactory.getLogger(MemtableLog.class);
+
+	static final String EXTENSION = ".log";
+
+	private static final int HEADER_SIZE = 8;
+
+	private final long id;
+	private final Path path;
+	private final boolean sync;
+
+	private @Nullable FileChannel channel;
+
+	MemtableLog(long id, Path path, boolean sync) {
+		this.id = id;
+		this.path = path;
+		this.sync = sync;
+	}
+
+	static Path resolve(Path dir, long id) {
+		return dir.resolve(id + EXTENSION);
+	}
+
+	long getId() {
+		return id;
+	}
+
+	Path getPath() {
+		return path;
+	}
+
+	/**
+	 * Serializes a batch of entries as a single record
+	 */
+	static <T> byte[] encode(BinarySerializer<T> serializer, List<T> batch) {
+		byte[] buffer = new byte[HEADER_SIZE + batch.size() * 16 + 256];
+		while (true) {
+			try {
+				int position = HEADER_SIZE;
+				for (T item : batch) {
+					position = serializer.encode(buffer, position, item);
+				}
+				ByteBuffer.wrap(buffer, 0, HEADER_SIZE)
+					.putInt(position - HEADER_SIZE)
+					.putInt(crc(buffer, HEADER_SIZE, position - HEADER_SIZE));
+				return position == buffer.length ? buffer : Arrays.copyOf(buffer, position);
+			} catch (ArrayIndexOutOfBoundsException e) {
+				buffer = new byte[buffer.length * 2];
+			}
+		}
+	}
+
+	/**
+	 * Appends an encoded record, blocking
+	 */
+	synchronized void append(byte[] record) throws IOException {
+		if (channel == null) {
+			channel = FileChannel.open(path, CREATE, WRITE, APPEND);
+		}
+		ByteBuffer buf = ByteBuffer.wrap(record);
+		while (buf.hasRemaining()) {
+			channel.write(buf);
+		}
+		if (sync) {
+			channel.force(false);
+		}
+	}
+
+	synchronized void close() throws IOException {
+		if (channel != null) {
+			channel.close();
+			channel = null;
+		}
+	}
+
+	/**
+	 * Reads all intact records of a log, blocking
+	 */
+	static <T> void replay(Path path, BinarySerializer<T> serializer, Consumer<T> consumer) throws IOException {
+		byte[] bytes = Files.readAllBytes(path);
+		ByteBuffer buf = ByteBuffer.wrap(bytes);
+		while (buf.remaining() >= HEADER_SIZE) {
+			int position = buf.position();
+			int length = buf.getInt();
+			int crc = buf.getInt();
+			if (length < 0 || length > buf.remaining() || crc(bytes, position + HEADER_SIZE, length) != crc) {
+				logger.warn("Log {} is truncated at position {}, skipping the rest of it", path, position);
+				return;
+			}
+			BinaryInput in = new BinaryInput(bytes, position + HEADER_SIZE);
+			try {
+				while (in.pos() < position + HEADER_SIZE + length) {
+					consumer.accept(serializer.decode(in));
+				}
+			} catch (CorruptedDataException e) {
+				throw new IOException("Log " + path + " is corrupted", e);
+			}
+			buf.position(position + HEADER_SIZE + length);
+		}
+	}
+
+	private static int crc(byte[] bytes, int offset, int length) {
+		CRC32 crc32 = new CRC32();
+		crc32.update(bytes, offset, length);
+		return (int) crc32.getValue();
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.crdt.storage.lsm;
+
+import io.activej.crdt.function.CrdtFunction;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Merges several iterators of entries sorted by key into a single sorted iterator,
+ * entries of the same key are merged with {@link LsmEntry#merge}
+ */
+final class MergingIterator<K extends Comparable<K>, S> implements Iterator<LsmEntry<K, S>> {
+	private final CrdtFunction<S> function;
+	private final PriorityQueue<Source<K, S>> queue = new PriorityQueue<>();
+
+	private MergingIterator(CrdtFunction<S> function) {
+		this.function = function;
+	}
+
+	static <K extends Comparable<K>, S> MergingIterator<K, S> create(CrdtFunction<S> function, List<? extends Iterator<LsmEntry<K, S>>> iterators) {
+		MergingIterator<K, S> mergingIterator = new MergingIterator<>(function);
+		for (Iterator<LsmEntry<K, S>> iterator : iterators) {
+			if (iterator.hasNext()) {
+				mergingIterator.queue.add(new Source<>(iterator, iterator.next()));
+			}
+		}
+		return mergingIterator;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return !queue.isEmpty();
+	}
+
+	@Override
+	public LsmEntry<K, S> next() {
+		Source<K, S> source = queue.poll();
+		if (source == null) throw new NoSuchElementException();
+
+		LsmEntry<K, S> result = source.current;
+		advance(source);
+
+		Source<K, S> same;
+		while ((same = queue.peek()) != null && same.current.key().compareTo(result.key()) == 0) {
+			queue.poll();
+			result = LsmEntry.merge(function, result, same.current);
+			advance(same);
+		}
+		return result;
+	}
+
+	private void advance(Source<K, S> source) {
+		if (source.iterator.hasNext()) {
+			source.current = source.iterator.next();
+			queue.add(source);
+		}
+	}
+
+	private static final class Source<K extends Comparable<K>, S> implements Comparable<Source<K, S>> {
+		final Iterator<LsmEntry<K, S>> iterator;
+		LsmEntry<K, S> current;
+
+		Source(Iterator<LsmEntry<K, S>> iterator, LsmEntry<K, S> current) {
+			this.iterator = iterator;
+			this.current = current;
+		}
+
+		@Override
+		public int compareTo(Source<K, S> o) {
+			return current.key().compareTo(o.current.key());
+		}
+	}
+
+	/**
+	 * Drops tombstones older than a given timestamp and skips entries which are left empty
+	 */
+	static <K extends Comparable<K>, S> Iterator<LsmEntry<K, S>> droppingTombstones(Iterator<LsmEntry<K, S>> iterator, long before) {
+		return new Iterator<>() {
+			private @Nullable LsmEntry<K, S> next;
+
+			@Override
+			public boolean hasNext() {
+				while (next == null && iterator.hasNext()) {
+					next = iterator.next().dropTombstone(before);
+				}
+				return next != null;
+			}
+
+			@Override
+			public LsmEntry<K, S> next() {
+				if (!hasNext()) throw new NoSuchElementException();
+				LsmEntry<K, S> result = next;
+				next = null;
+				return result;
+			}
+		};
+	}
+}
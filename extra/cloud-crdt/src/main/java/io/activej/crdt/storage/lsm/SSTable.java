@@ -0,0 +1,334 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.crdt.storage.lsm;
+
+import io.activej.serializer.BinaryInput;
+import io.activej.serializer.BinarySerializer;
+import io.activej.serializer.CorruptedDataException;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * An immutable sorted file of {@link LsmEntry}s.
+ * <p>
+ * File layout:
+ * <pre>
+ * [block]*    - serialized entries
+ * [index]     - block count, then offset, length, entry count and first key of each block, then the last key
+ * [bloom]     - bloom filter of all the keys of the table
+ * [footer]    - index offset, index length, bloom offset, bloom length, entry count, magic
+ * </pre>
+ * Index and bloom filter are kept in memory once a table is opened.
+ * A file channel is kept open while a table is in use, positional reads of it may be done from any thread.
+ * <p>
+ * Reference counting ({@link #acquire()}, {@link #release()}) is done in a reactor thread,
+ * so that a table file is deleted only after all the reads of it are complete.
+ */
+final class SSTable<K extends Comparable<K>, S> {
+	static final String EXTENSION = ".sst";
+	static final int FOOTER_SIZE = 36;
+	static final int MAGIC = 0x4C534D31;
+
+	private final long id;
+	private final Path path;
+	private final long fileSize;
+	private final long entries;
+
+	private final K[] firstKeys;
+	private final K lastKey;
+	private final long[] blockOffsets;
+	private final int[] blockLengths;
+	private final int[] blockEntries;
+	private final BloomFilter bloomFilter;
+
+	private volatile FileChannel channel;
+	private volatile boolean closed;
+
+	private int references = 1;
+	private boolean obsolete;
+
+	private SSTable(long id, Path path, FileChannel channel, long fileSize, long entries, K[] firstKeys, K lastKey,
+		long[] blockOffsets, int[] blockLengths, int[] blockEntries, BloomFilter bloomFilter) {
+		this.id = id;
+		this.channel = channel;
+		this.path = path;
+		this.fileSize = fileSize;
+		this.entries = entries;
+		this.firstKeys = firstKeys;
+		this.lastKey = lastKey;
+		this.blockOffsets = blockOffsets;
+		this.blockLengths = blockLengths;
+		this.blockEntries = blockEntries;
+		this.bloomFilter = bloomFilter;
+	}
+
+	static Path resolve(Path dir, long id) {
+		return dir.resolve(id + EXTENSION);
+	}
+
+	@SuppressWarnings("unchecked")
+	static <K extends Comparable<K>, S> SSTable<K, S> open(long id, Path path, BinarySerializer<K> keySerializer) throws IOException {
+		FileChannel channel = FileChannel.open(path, READ);
+		try {
+			long fileSize = channel.size();
+			if (fileSize < FOOTER_SIZE) throw new IOException("Table " + path + " is too short");
+
+			ByteBuffer footer = read(channel, fileSize - FOOTER_SIZE, FOOTER_SIZE);
+			long indexOffset = footer.getLong();
+			int indexLength = footer.getInt();
+			long bloomOffset = footer.getLong();
+			int bloomLength = footer.getInt();
+			long entries = footer.getLong();
+			if (footer.getInt() != MAGIC) throw new IOException("Table " + path + " is corrupted");
+
+			ByteBuffer index = read(channel, indexOffset, indexLength);
+			int blocks = index.getInt();
+			K[] firstKeys = (K[]) new Comparable[blocks];
+			long[] blockOffsets = new long[blocks];
+			int[] blockLengths = new int[blocks];
+			int[] blockEntries = new int[blocks];
+			for (int i = 0; i < blocks; i++) {
+				blockOffsets[i] = index.getLong();
+				blockLengths[i] = index.getInt();
+				blockEntries[i] = index.getInt();
+				firstKeys[i] = readKey(index, keySerializer);
+			}
+			K lastKey = readKey(index, keySerializer);
+
+			BloomFilter bloomFilter = BloomFilter.readFrom(read(channel, bloomOffset, bloomLength));
+
+			return new SSTable<>(id, path, channel, fileSize, entries, firstKeys, lastKey, blockOffsets, blockLengths, blockEntries, bloomFilter);
+		} catch (CorruptedDataException e) {
+			channel.close();
+			throw new IOException("Table " + path + " is corrupted", e);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	long getId() {
+		return id;
+	}
+
+	Path getPath() {
+		return path;
+	}
+
+	long getFileSize() {
+		return fileSize;
+	}
+
+	long getEntries() {
+		return entries;
+	}
+
+	K getMinKey() {
+		return firstKeys[0];
+	}
+
+	K getMaxKey() {
+		return lastKey;
+	}
+
+	boolean overlaps(K min, K max) {
+		return getMinKey().compareTo(max) <= 0 && lastKey.compareTo(min) >= 0;
+	}
+
+	/**
+	 * Checks key range and bloom filter, may be called from any thread
+	 */
+	boolean mightContain(K key, long keyHash) {
+		return getMinKey().compareTo(key) <= 0 && lastKey.compareTo(key) >= 0 && bloomFilter.mightContain(keyHash);
+	}
+
+	/**
+	 * Finds an entry of a given key, blocking
+	 */
+	@Nullable LsmEntry<K, S> get(K key, BinarySerializer<LsmEntry<K, S>> serializer) throws IOException {
+		int block = findBlock(key);
+		if (block < 0) return null;
+		try {
+			BinaryInput in = new BinaryInput(read(channel(), blockOffsets[block], blockLengths[block]).array());
+			for (int i = 0; i < blockEntries[block]; i++) {
+				LsmEntry<K, S> entry = serializer.decode(in);
+				int compare = entry.key().compareTo(key);
+				if (compare == 0) return entry;
+				if (compare > 0) break;
+			}
+			return null;
+		} catch (CorruptedDataException e) {
+			throw new IOException("Table " + path + " is corrupted", e);
+		}
+	}
+
+	/**
+	 * Returns a blocking iterator over all entries of this table, block by block.
+	 * I/O errors are rethrown as {@link UncheckedIOException}s
+	 */
+	TableIterator iterator(BinarySerializer<LsmEntry<K, S>> serializer) {
+		return new TableIterator(serializer);
+	}
+
+	private int findBlock(K key) {
+		int lo = 0;
+		int hi = firstKeys.length - 1;
+		int result = -1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (firstKeys[mid].compareTo(key) <= 0) {
+				result = mid;
+				lo = mid + 1;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns an open channel of a table file. A channel is reopened
+	 * if it has been closed by an interrupt of some reading thread
+	 */
+	private FileChannel channel() throws IOException {
+		FileChannel channel = this.channel;
+		if (channel.isOpen()) return channel;
+		synchronized (this) {
+			if (closed) throw new ClosedChannelException();
+			if (!this.channel.isOpen()) {
+				this.channel = FileChannel.open(path, READ);
+			}
+			return this.channel;
+		}
+	}
+
+	/**
+	 * Closes a channel of this table, once the table is no longer used
+	 */
+	synchronized void close() {
+		closed = true;
+		try {
+			channel.close();
+		} catch (IOException ignored) {
+		}
+	}
+
+	// region references
+	void acquire() {
+		assert references > 0;
+		references++;
+	}
+
+	/**
+	 * Returns {@code true} if this table is obsolete and is no longer used, so its file should be deleted
+	 */
+	boolean release() {
+		assert references > 0;
+		return --references == 0 && obsolete;
+	}
+
+	/**
+	 * Marks this table as no longer a part of storage.
+	 * Returns {@code true} if no one uses the table anymore, so its file should be deleted
+	 */
+	boolean markObsolete() {
+		assert !obsolete;
+		obsolete = true;
+		return release();
+	}
+	// endregion
+
+	private static <K> K readKey(ByteBuffer buf, BinarySerializer<K> keySerializer) throws CorruptedDataException {
+		int length = buf.getInt();
+		int position = buf.position();
+		K key = keySerializer.decode(buf.array(), buf.arrayOffset() + position);
+		buf.position(position + length);
+		return key;
+	}
+
+	private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(length);
+		while (buf.hasRemaining()) {
+			if (channel.read(buf, position + buf.position()) < 0) {
+				throw new IOException("Unexpected end of file");
+			}
+		}
+		return buf.flip();
+	}
+
+	final class TableIterator implements Iterator<LsmEntry<K, S>>, AutoCloseable {
+		private final BinarySerializer<LsmEntry<K, S>> serializer;
+
+		private @Nullable BinaryInput block;
+		private int blockIndex = -1;
+		private int remaining;
+
+		private TableIterator(BinarySerializer<LsmEntry<K, S>> serializer) {
+			this.serializer = serializer;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return remaining != 0 || blockIndex < blockOffsets.length - 1;
+		}
+
+		@Override
+		public LsmEntry<K, S> next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			try {
+				if (remaining == 0) {
+					blockIndex++;
+					block = new BinaryInput(read(channel(), blockOffsets[blockIndex], blockLengths[blockIndex]).array());
+					remaining = blockEntries[blockIndex];
+				}
+				remaining--;
+				assert block != null;
+				LsmEntry<K, S> entry = serializer.decode(block);
+				if (!hasNext()) close();
+				return entry;
+			} catch (IOException e) {
+				close();
+				throw new UncheckedIOException(e);
+			} catch (CorruptedDataException e) {
+				close();
+				throw new UncheckedIOException(new IOException("Table " + path + " is corrupted", e));
+			}
+		}
+
+		@Override
+		public void close() {
+			block = null;
+			blockIndex = blockOffsets.length - 1;
+			remaining = 0;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "SSTable{id=" + id + ", entries=" + entries + ", size=" + fileSize + '}';
+	}
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.crdt.storage.lsm;
+
+import io.activej.serializer.BinarySerializer;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Writes sorted {@link LsmEntry}s into one or more {@link SSTable}s, blocking.
+ * <p>
+ * A new table is started once the current one exceeds target table size,
+ * each table is first written to a temporary file, which is then atomically renamed.
+ */
+final class SSTableWriter<K extends Comparable<K>, S> {
+	static final String TEMP_EXTENSION = ".tmp";
+
+	private final Path dir;
+	private final LongSupplier idGenerator;
+	private final BinarySerializer<K> keySerializer;
+	private final BinarySerializer<LsmEntry<K, S>> serializer;
+	private final int blockSize;
+	private final long targetTableSize;
+	private final int bloomBitsPerKey;
+
+	private byte[] buffer = new byte[1024];
+	private byte[] keyBuffer = new byte[256];
+
+	SSTableWriter(Path dir, LongSupplier idGenerator, BinarySerializer<K> keySerializer, BinarySerializer<LsmEntry<K, S>> serializer,
+		int blockSize, long targetTableSize, int bloomBitsPerKey) {
+		this.dir = dir;
+		this.idGenerator = idGenerator;
+		this.keySerializer = keySerializer;
+		this.serializer = serializer;
+		this.blockSize = blockSize;
+		this.targetTableSize = targetTableSize;
+		this.bloomBitsPerKey = bloomBitsPerKey;
+	}
+
+	List<SSTable<K, S>> write(Iterator<LsmEntry<K, S>> entries) throws IOException {
+		List<SSTable<K, S>> tables = new ArrayList<>();
+		try {
+			while (entries.hasNext()) {
+				tables.add(writeTable(entries));
+			}
+		} catch (IOException | UncheckedIOException e) {
+			for (SSTable<K, S> table : tables) {
+				Files.deleteIfExists(table.getPath());
+			}
+			throw e instanceof UncheckedIOException unchecked ? unchecked.getCause() : (IOException) e;
+		}
+		return tables;
+	}
+
+	private SSTable<K, S> writeTable(Iterator<LsmEntry<K, S>> entries) throws IOException {
+		long id = idGenerator.getAsLong();
+		Path path = SSTable.resolve(dir, id);
+		Path tempPath = path.resolveSibling(path.getFileName() + TEMP_EXTENSION);
+
+		try (FileChannel channel = FileChannel.open(tempPath, CREATE_NEW, WRITE)) {
+			TableBuilder builder = new TableBuilder(channel);
+			while (entries.hasNext() && builder.position < targetTableSize) {
+				builder.add(entries.next());
+			}
+			builder.finish();
+			channel.force(true);
+		} catch (IOException | UncheckedIOException e) {
+			Files.deleteIfExists(tempPath);
+			throw e;
+		}
+
+		try {
+			Files.move(tempPath, path, ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException ignored) {
+			Files.move(tempPath, path);
+		}
+		return SSTable.open(id, path, keySerializer);
+	}
+
+	private final class TableBuilder {
+		private final FileChannel channel;
+
+		private final List<byte[]> firstKeys = new ArrayList<>();
+		private long[] blockOffsets = new long[16];
+		private int[] blockLengths = new int[16];
+		private int[] blockEntries = new int[16];
+		private long[] keyHashes = new long[1024];
+
+		private long position;
+		private long entries;
+
+		private int blockPosition;
+		private int blockEntryCount;
+		private byte @Nullable [] lastKey;
+
+		TableBuilder(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		void add(LsmEntry<K, S> entry) throws IOException {
+			int keyLength = encodeKey(entry.key());
+			byte[] key = Arrays.copyOf(keyBuffer, keyLength);
+			if (blockEntryCount == 0) {
+				firstKeys.add(key);
+			}
+			lastKey = key;
+
+			if (entries == keyHashes.length) {
+				keyHashes = Arrays.copyOf(keyHashes, keyHashes.length * 2);
+			}
+			keyHashes[(int) entries++] = BloomFilter.hash(keyBuffer, keyLength);
+
+			while (true) {
+				try {
+					blockPosition = serializer.encode(buffer, blockPosition, entry);
+					break;
+				} catch (ArrayIndexOutOfBoundsException e) {
+					buffer = Arrays.copyOf(buffer, buffer.length * 2);
+				}
+			}
+			blockEntryCount++;
+
+			if (blockPosition >= blockSize) {
+				flushBlock();
+			}
+		}
+
+		void finish() throws IOException {
+			if (blockEntryCount != 0) {
+				flushBlock();
+			}
+			assert lastKey != null;
+
+			int blocks = firstKeys.size();
+			int indexLength = 4 + 4 + lastKey.length;
+			for (byte[] firstKey : firstKeys) {
+				indexLength += 8 + 4 + 4 + 4 + firstKey.length;
+			}
+			ByteBuffer index = ByteBuffer.allocate(indexLength);
+			index.putInt(blocks);
+			for (int i = 0; i < blocks; i++) {
+				index.putLong(blockOffsets[i]);
+				index.putInt(blockLengths[i]);
+				index.putInt(blockEntries[i]);
+				index.putInt(firstKeys.get(i).length);
+				index.put(firstKeys.get(i));
+			}
+			index.putInt(lastKey.length);
+			index.put(lastKey);
+			long indexOffset = position;
+			writeFully(index.flip());
+
+			BloomFilter bloomFilter = BloomFilter.create((int) entries, bloomBitsPerKey);
+			for (int i = 0; i < entries; i++) {
+				bloomFilter.add(keyHashes[i]);
+			}
+			ByteBuffer bloom = ByteBuffer.allocate(bloomFilter.serializedSize());
+			bloomFilter.writeTo(bloom);
+			long bloomOffset = position;
+			writeFully(bloom.flip());
+
+			ByteBuffer footer = ByteBuffer.allocate(SSTable.FOOTER_SIZE);
+			footer.putLong(indexOffset);
+			footer.putInt(indexLength);
+			footer.putLong(bloomOffset);
+			footer.putInt(bloom.limit());
+			footer.putLong(entries);
+			footer.putInt(SSTable.MAGIC);
+			writeFully(footer.flip());
+		}
+
+		private void flushBlock() throws IOException {
+			int block = firstKeys.size() - 1;
+			if (block == blockOffsets.length) {
+				blockOffsets = Arrays.copyOf(blockOffsets, block * 2);
+				blockLengths = Arrays.copyOf(blockLengths, block * 2);
+				blockEntries = Arrays.copyOf(blockEntries, block * 2);
+			}
+			blockOffsets[block] = position;
+			blockLengths[block] = blockPosition;
+			blockEntries[block] = blockEntryCount;
+			writeFully(ByteBuffer.wrap(buffer, 0, blockPosition));
+			blockPosition = 0;
+			blockEntryCount = 0;
+		}
+
+		private void writeFully(ByteBuffer buf) throws IOException {
+			while (buf.hasRemaining()) {
+				position += channel.write(buf);
+			}
+		}
+	}
+
+	private int encodeKey(K key) {
+		while (true) {
+			try {
+				return keySerializer.encode(keyBuffer, 0, key);
+			} catch (ArrayIndexOutOfBoundsException e) {
+				keyBuffer = new byte[keyBuffer.length * 2];
+			}
+		}
+	}
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.crdt.util;
+
+import io.activej.common.builder.AbstractBuilder;
+import io.activej.crdt.CrdtData;
+import io.activej.crdt.CrdtTombstone;
+import io.activej.crdt.storage.cluster.RendezvousHashSharder;
+import io.activej.datastream.consumer.StreamConsumers;
+import io.activej.datastream.supplier.StreamSupplier;
+import io.activej.promise.Promise;
+import io.activej.serializer.BinarySerializer;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+import static io.activej.common.Checks.checkArgument;
+
+/**
+ * Hashes serialized keys, states and tombstones of a CRDT storage, so that hashes match on different nodes.
+ * <p>
+ * Keys are split into ranges the same way {@link RendezvousHashSharder} shards them,
+ * so a key hash function should be the same as the one of a partition scheme.
+ * A Merkle tree of a storage consists of one subtree of a given depth per each range,
+ * and only the ranges which two partitions share are compared.
+ * <p>
+ * Timestamps of states are not hashed, as equal states may have different timestamps on different replicas.
+ * By default, a state is hashed in its serialized form. States whose serialized form depends on insertion order
+ * (e.g. ones backed by hash maps) should be given a state hash function which hashes their canonical form,
+ * see {@link #unorderedHash(Function, BinarySerializer)}, otherwise they produce false differences.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public final class CrdtDataHasher<K extends Comparable<K>, S> {
+	public static final int RANGES = RendezvousHashSharder.NUMBER_OF_BUCKETS;
+	public static final int RANGE_BITS = Integer.numberOfTrailingZeros(RANGES);
+
+	private static final long KEY_SEED = 0xcbf29ce484222325L;
+	private static final long STATE_SEED = 0x84222325cbf29ce4L;
+	private static final long TOMBSTONE_SEED = 0x2325cbf29ce48422L;
+
+	private final CrdtDataBinarySerializer<K, S> serializer;
+
+	private ToIntFunction<K> keyHashFn = Object::hashCode;
+	private @Nullable ToLongFunction<S> stateHashFn;
+
+	private byte[] buffer = new byte[256];
+	private int lastSize;
+
+	private CrdtDataHasher(CrdtDataBinarySerializer<K, S> serializer) {
+		this.serializer = serializer;
+	}
+
+	public static <K extends Comparable<K>, S> CrdtDataHasher<K, S> create(CrdtDataBinarySerializer<K, S> serializer) {
+		return builder(serializer).build();
+	}
+
+	public static <K extends Comparable<K>, S> CrdtDataHasher<K, S>.Builder builder(CrdtDataBinarySerializer<K, S> serializer) {
+		return new CrdtDataHasher<>(serializer).new Builder();
+	}
+
+	public final class Builder extends AbstractBuilder<Builder, CrdtDataHasher<K, S>> {
+		private Builder() {}
+
+		/**
+		 * Sets a key hash function which splits keys into ranges, it should be the same
+		 * as a key hash function of a partition scheme. By default, {@link Object#hashCode()} is used
+		 */
+		public Builder withKeyHashFunction(ToIntFunction<K> keyHashFn) {
+			checkNotBuilt(this);
+			CrdtDataHasher.this.keyHashFn = keyHashFn;
+			return this;
+		}
+
+		/**
+		 * Sets a function which hashes a canonical form of a state.
+		 * States that are equal should have equal hashes on any node
+		 */
+		public Builder withStateHashFunction(ToLongFunction<S> stateHashFn) {
+			checkNotBuilt(this);
+			CrdtDataHasher.this.stateHashFn = stateHashFn;
+			return this;
+		}
+
+		@Override
+		protected CrdtDataHasher<K, S> doBuild() {
+			return CrdtDataHasher.this;
+		}
+	}
+
+	/**
+	 * Returns a hash function of states which consist of elements in no particular order,
+	 * like sets or maps backed by hash tables. Each element is hashed in its serialized form
+	 * and the hashes are summed up, so that the result does not depend on iteration order
+	 */
+	public static <S, E> ToLongFunction<S> unorderedHash(Function<S, ? extends Collection<E>> elementsFn, BinarySerializer<E> elementSerializer) {
+		byte[][] buffer = {new byte[256]};
+		return state -> {
+			Collection<E> elements = elementsFn.apply(state);
+			long sum = elements.size();
+			for (E element : elements) {
+				int length;
+				while (true) {
+					try {
+						length = elementSerializer.encode(buffer[0], 0, element);
+						break;
+					} catch (ArrayIndexOutOfBoundsException e) {
+						buffer[0] = new byte[buffer[0].length * 2];
+					}
+				}
+				sum += MerkleTree.mix(hash(buffer[0], length, STATE_SEED));
+			}
+			return sum;
+		};
+	}
+
+	public long hashKey(K key) {
+		return MerkleTree.mix(hash(buffer, encode(serializer.getKeySerializer(), key), KEY_SEED));
+	}
+
+	public long hashEntry(K key, S state) {
+		long keyHash = hash(buffer, encode(serializer.getKeySerializer(), key), STATE_SEED);
+		long stateHash = stateHashFn != null ?
+			stateHashFn.applyAsLong(state) :
+			hash(buffer, encode(serializer.getStateSerializer(), state), STATE_SEED);
+		return MerkleTree.mix(keyHash * 31 + stateHash);
+	}
+
+	public long hashTombstone(K key, long timestamp) {
+		long keyHash = hash(buffer, encode(serializer.getKeySerializer(), key), TOMBSTONE_SEED);
+		return MerkleTree.mix(keyHash * 31 + timestamp);
+	}
+
+	/**
+	 * Returns a size of serialized data item, which is used to estimate transferred bytes
+	 */
+	public int sizeOf(CrdtData<K, S> data) {
+		encode(serializer, data);
+		return lastSize;
+	}
+
+	public int sizeOf(CrdtTombstone<K> tombstone) {
+		encode(serializer.getTombstoneSerializer(), tombstone);
+		return lastSize;
+	}
+
+	/**
+	 * Returns a range of a key, which matches a sharding bucket of {@link RendezvousHashSharder}
+	 */
+	public int rangeOf(K key) {
+		return keyHashFn.applyAsInt(key) & (RANGES - 1);
+	}
+
+	/**
+	 * Returns a bucket of a key within a tree with subtrees of given depth per range
+	 */
+	public int bucketOf(K key, int depth) {
+		return rangeOf(key) << depth | MerkleTree.bucketOf(hashKey(key), depth);
+	}
+
+	/**
+	 * Computes a tree of data and tombstones of given ranges, with a subtree of given depth per each range.
+	 * Both suppliers are consumed one after another
+	 */
+	public Promise<MerkleTree> computeTree(
+		StreamSupplier<CrdtData<K, S>> supplier, StreamSupplier<CrdtTombstone<K>> tombstoneSupplier, BitSet ranges, int depth
+	) {
+		checkDepth(depth);
+		MerkleTree tree = MerkleTree.create(RANGE_BITS + depth);
+		return supplier.streamTo(StreamConsumers.ofConsumer(data -> {
+				if (ranges.get(rangeOf(data.getKey()))) {
+					tree.addToBucket(bucketOf(data.getKey(), depth), hashEntry(data.getKey(), data.getState()));
+				}
+			}))
+			.then(() -> tombstoneSupplier.streamTo(StreamConsumers.ofConsumer(tombstone -> {
+				if (ranges.get(rangeOf(tombstone.getKey()))) {
+					tree.addToBucket(bucketOf(tombstone.getKey(), depth), hashTombstone(tombstone.getKey(), tombstone.getTimestamp()));
+				}
+			})))
+			.map($ -> tree);
+	}
+
+	public Predicate<K> inBuckets(int depth, BitSet buckets) {
+		return key -> buckets.get(bucketOf(key, depth));
+	}
+
+	public static void checkDepth(int depth) {
+		checkArgument(depth >= 0 && RANGE_BITS + depth <= MerkleTree.MAX_DEPTH,
+			"Depth should be in range [0, " + (MerkleTree.MAX_DEPTH - RANGE_BITS) + "]");
+	}
+
+	private <T> int encode(BinarySerializer<T> serializer, T item) {
+		while (true) {
+			try {
+				return lastSize = serializer.encode(buffer, 0, item);
+			} catch (ArrayIndexOutOfBoundsException e) {
+				buffer = new byte[buffer.length * 2];
+			}
+		}
+	}
+
+	private static long hash(byte[] bytes, int length, long seed) {
+		long h = seed;
+		for (int i = 0; i < length; i++) {
+			h ^= bytes[i];
+			h *= 0x100000001b3L;
+		}
+		return h;
+	}
+}
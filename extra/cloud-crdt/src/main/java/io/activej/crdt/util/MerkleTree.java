@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.crdt.util;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+
+import static io.activej.common.Checks.checkArgument;
+
+/**
+ * A summary of CRDT storage contents, which allows finding differing key ranges of two storages
+ * without transferring the data itself.
+ * <p>
+ * Keys are split into {@code 2^depth} buckets by the highest bits of a key hash.
+ * Each leaf holds an order-independent sum of entry hashes of its bucket,
+ * so a tree can be built in a single pass over unordered data.
+ * Inner nodes hash their children, so equal subtrees are skipped by {@link #diff(MerkleTree)} as a whole.
+ * <p>
+ * A tree may also be split into {@code 2^k} top-level subtrees (e.g. one per key range),
+ * in which case only the leaves of selected subtrees may be transferred,
+ * see {@link #getLeaves(int, BitSet)} and {@link #ofSubtrees(int, int, BitSet, long[])}.
+ */
+public final class MerkleTree {
+	public static final int MAX_DEPTH = 20;
+
+	private final int depth;
+	private final long[] leaves;
+
+	private long[] nodes;
+
+	private MerkleTree(int depth, long[] leaves) {
+		this.depth = depth;
+		this.leaves = leaves;
+	}
+
+	public static MerkleTree create(int depth) {
+		checkArgument(depth >= 0 && depth <= MAX_DEPTH, "Depth should be in range [0, " + MAX_DEPTH + "]");
+		return new MerkleTree(depth, new long[1 << depth]);
+	}
+
+	public static MerkleTree of(int depth, long[] leaves) {
+		checkArgument(depth >= 0 && depth <= MAX_DEPTH, "Depth should be in range [0, " + MAX_DEPTH + "]");
+		checkArgument(leaves.length == 1 << depth, "Number of leaves does not match depth");
+		return new MerkleTree(depth, leaves);
+	}
+
+	/**
+	 * Creates a tree from the concatenated leaves of given top-level subtrees of given depth,
+	 * leaves of the other subtrees are empty
+	 */
+	public static MerkleTree ofSubtrees(int depth, int subtreeDepth, BitSet subtrees, long[] leaves) {
+		checkArgument(depth >= 0 && depth <= MAX_DEPTH, "Depth should be in range [0, " + MAX_DEPTH + "]");
+		checkArgument(subtreeDepth >= 0 && subtreeDepth <= depth, "Subtree depth should be in range [0, " + depth + "]");
+		int subtreeSize = 1 << subtreeDepth;
+		checkArgument(leaves.length == subtrees.cardinality() * subtreeSize, "Number of leaves does not match subtrees");
+		long[] allLeaves = new long[1 << depth];
+		int position = 0;
+		for (int subtree = subtrees.nextSetBit(0); subtree >= 0; subtree = subtrees.nextSetBit(subtree + 1)) {
+			checkArgument(subtree < 1 << (depth - subtreeDepth), "Subtree index is out of range");
+			System.arraycopy(leaves, position, allLeaves, subtree * subtreeSize, subtreeSize);
+			position += subtreeSize;
+		}
+		return new MerkleTree(depth, allLeaves);
+	}
+
+	public static int bucketOf(long keyHash, int depth) {
+		return depth == 0 ? 0 : (int) (keyHash >>> (Long.SIZE - depth));
+	}
+
+	public void add(long keyHash, long entryHash) {
+		leaves[bucketOf(keyHash, depth)] += entryHash;
+		nodes = null;
+	}
+
+	public void addToBucket(int bucket, long entryHash) {
+		leaves[bucket] += entryHash;
+		nodes = null;
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	public long[] getLeaves() {
+		return leaves;
+	}
+
+	/**
+	 * Returns the concatenated leaves of given top-level subtrees of given depth
+	 */
+	public long[] getLeaves(int subtreeDepth, BitSet subtrees) {
+		int subtreeSize = 1 << subtreeDepth;
+		long[] result = new long[subtrees.cardinality() * subtreeSize];
+		int position = 0;
+		for (int subtree = subtrees.nextSetBit(0); subtree >= 0; subtree = subtrees.nextSetBit(subtree + 1)) {
+			System.arraycopy(leaves, subtree * subtreeSize, result, position, subtreeSize);
+			position += subtreeSize;
+		}
+		return result;
+	}
+
+	public long getRootHash() {
+		return getNodes()[1];
+	}
+
+	/**
+	 * Returns buckets whose contents differ in this and other tree
+	 */
+	public BitSet diff(MerkleTree other) {
+		checkArgument(depth == other.depth, "Trees of different depth cannot be compared");
+		long[] nodes = getNodes();
+		long[] otherNodes = other.getNodes();
+
+		BitSet result = new BitSet(leaves.length);
+		Deque<Integer> stack = new ArrayDeque<>();
+		stack.push(1);
+		while (!stack.isEmpty()) {
+			int node = stack.pop();
+			if (nodes[node] == otherNodes[node]) continue;
+			if (node >= leaves.length) {
+				result.set(node - leaves.length);
+			} else {
+				stack.push(2 * node + 1);
+				stack.push(2 * node);
+			}
+		}
+		return result;
+	}
+
+	private long[] getNodes() {
+		if (nodes != null) return nodes;
+		int n = leaves.length;
+		long[] nodes = new long[2 * n];
+		for (int i = 0; i < n; i++) {
+			nodes[n + i] = mix(leaves[i]);
+		}
+		for (int i = n - 1; i >= 1; i--) {
+			nodes[i] = mix(nodes[2 * i] * 31 + nodes[2 * i + 1]);
+		}
+		return this.nodes = nodes;
+	}
+
+	static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		MerkleTree that = (MerkleTree) o;
+		return depth == that.depth && Arrays.equals(leaves, that.leaves);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * depth + Arrays.hashCode(leaves);
+	}
+
+	@Override
+	public String toString() {
+		return "MerkleTree{depth=" + depth + ", root=" + Long.toHexString(getRootHash()) + '}';
+	}
+}
@@ -25,13 +25,19 @@ import io.activej.datastream.processor.transformer.AbstractStreamTransformer;
 import io.activej.datastream.processor.transformer.StreamTransformer;
 import io.activej.datastream.supplier.StreamDataAcceptor;
 import io.activej.promise.Promise;
+import io.activej.common.exception.MalformedDataException;
+import io.activej.serializer.BinaryInput;
+import io.activej.serializer.BinaryOutput;
 import io.activej.serializer.BinarySerializer;
+import io.activej.serializer.CorruptedDataException;
 import io.activej.serializer.stream.StreamCodec;
 import io.activej.serializer.stream.StreamCodecs;
 import io.activej.serializer.stream.StreamCodecs.SubtypeStreamCodec;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.Executor;
@@ -95,6 +101,20 @@ public final class Utils {
 			.withSubtype(CrdtRequest.Take.class, StreamCodecs.singleton(new CrdtRequest.Take()))
 			.withSubtype(CrdtRequest.TakeAck.class, StreamCodecs.singleton(new CrdtRequest.TakeAck()))
 			.withSubtype(CrdtRequest.Upload.class, StreamCodecs.singleton(new CrdtRequest.Upload()))
+			.withSubtype(CrdtRequest.Remove.class, StreamCodecs.singleton(new CrdtRequest.Remove()))
+			.withSubtype(CrdtRequest.GetMerkleTree.class, StreamCodec.create(CrdtRequest.GetMerkleTree::new,
+				CrdtRequest.GetMerkleTree::depth, StreamCodecs.ofVarInt(),
+				CrdtRequest.GetMerkleTree::ranges, StreamCodecs.ofLongArray()))
+			.withSubtype(CrdtRequest.DownloadBuckets.class, StreamCodec.create(CrdtRequest.DownloadBuckets::new,
+				CrdtRequest.DownloadBuckets::depth, StreamCodecs.ofVarInt(),
+				CrdtRequest.DownloadBuckets::buckets, StreamCodecs.ofLongArray()))
+			.withSubtype(CrdtRequest.DownloadTombstoneBuckets.class, StreamCodec.create(CrdtRequest.DownloadTombstoneBuckets::new,
+				CrdtRequest.DownloadTombstoneBuckets::depth, StreamCodecs.ofVarInt(),
+				CrdtRequest.DownloadTombstoneBuckets::buckets, StreamCodecs.ofLongArray()))
+			.withSubtype(CrdtRequest.Put.class, StreamCodec.create(CrdtRequest.Put::new,
+				CrdtRequest.Put::items, StreamCodecs.ofByteArray()))
+			.withSubtype(CrdtRequest.Get.class, StreamCodec.create(CrdtRequest.Get::new,
+				CrdtRequest.Get::keys, StreamCodecs.ofByteArray()))
 			.build();
 	}
 
@@ -112,9 +132,51 @@ public final class Utils {
 				CrdtResponse.ServerError::message, StreamCodecs.ofString()))
 			.withSubtype(CrdtResponse.TakeStarted.class, StreamCodecs.singleton(new CrdtResponse.TakeStarted()))
 			.withSubtype(CrdtResponse.UploadAck.class, StreamCodecs.singleton(new CrdtResponse.UploadAck()))
+			.withSubtype(CrdtResponse.MerkleTreeLeaves.class, StreamCodec.create(CrdtResponse.MerkleTreeLeaves::new,
+				CrdtResponse.MerkleTreeLeaves::depth, StreamCodecs.ofVarInt(),
+				CrdtResponse.MerkleTreeLeaves::leaves, StreamCodecs.ofLongArray()))
+			.withSubtype(CrdtResponse.PutAck.class, StreamCodecs.singleton(new CrdtResponse.PutAck()))
+			.withSubtype(CrdtResponse.GetResult.class, StreamCodec.create(CrdtResponse.GetResult::new,
+				CrdtResponse.GetResult::states, StreamCodecs.ofByteArray()))
 			.build();
 	}
 
+	/**
+	 * Serializes a batch of items into a single array, so that it could be sent as a single message
+	 */
+	public static <T> byte[] encodeBatch(BinarySerializer<T> serializer, List<T> items) {
+		byte[] array = new byte[64 + items.size() * 16];
+		while (true) {
+			try {
+				BinaryOutput out = new BinaryOutput(array);
+				out.writeVarInt(items.size());
+				for (T item : items) {
+					serializer.encode(out, item);
+				}
+				return Arrays.copyOf(array, out.pos());
+			} catch (ArrayIndexOutOfBoundsException e) {
+				array = new byte[array.length * 2];
+			}
+		}
+	}
+
+	public static <T> List<T> decodeBatch(BinarySerializer<T> serializer, byte[] array) throws MalformedDataException {
+		try {
+			BinaryInput in = new BinaryInput(array);
+			int size = in.readVarInt();
+			List<T> items = new ArrayList<>(size);
+			for (int i = 0; i < size; i++) {
+				items.add(serializer.decode(in));
+			}
+			if (in.pos() != array.length) {
+				throw new MalformedDataException("Unexpected trailing bytes in a batch");
+			}
+			return items;
+		} catch (CorruptedDataException | IndexOutOfBoundsException e) {
+			throw new MalformedDataException("Malformed batch", e);
+		}
+	}
+
 	public static <T> ChannelDeserializer<T> createDeserializer(BinarySerializer<T> serializer) {
 		return ChannelDeserializer.builder(serializer)
 			.withExplicitEndOfStream()
@@ -22,6 +22,7 @@ import io.activej.async.service.ReactiveService;
 import io.activej.bytebuf.ByteBuf;
 import io.activej.common.ApplicationSettings;
 import io.activej.common.Checks;
+import io.activej.common.MemSize;
 import io.activej.common.builder.AbstractBuilder;
 import io.activej.common.time.CurrentTimeProvider;
 import io.activej.crdt.CrdtData;
@@ -55,9 +56,12 @@ import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
 import java.util.stream.Stream;
 
@@ -67,10 +71,25 @@ import static io.activej.common.Checks.checkArgument;
 import static io.activej.crdt.util.Utils.deleteWalFiles;
 import static io.activej.crdt.util.Utils.getWalFiles;
 import static io.activej.crdt.wal.FileWriteAheadLog.FlushMode.*;
+import static io.activej.jmx.stats.JmxHistogram.POWERS_OF_TWO;
 import static io.activej.reactor.Reactive.checkInReactorThread;
 import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
 import static java.util.stream.Collectors.toList;
 
+/**
+ * A write ahead log which stores CRDT data in local files.
+ * <p>
+ * By default, data is written to LZ4-framed files, and a put completes once data is handed to the OS.
+ * When group commit is enabled, data is written to preallocated segments ({@link WalSegment})
+ * with a checksum per record. Puts that arrive within a group commit window are written
+ * and forced to a storage device at once, and their promises complete together.
+ * <p>
+ * When data is uploaded to a storage, an open segment is reused across flushes until it fills:
+ * a flush uploads only the records written since the previous flush and leaves the segment in place.
+ * Once a storage acknowledges an upload, an uploaded position is persisted in a segment header,
+ * so that after a crash only records that were not uploaded are uploaded again.
+ * A crash between an acknowledgement and persisting a position makes the last range be uploaded twice.
+ */
 public final class FileWriteAheadLog<K extends Comparable<K>, S> extends AbstractReactive
 	implements IWriteAheadLog<K, S>, ReactiveService, ReactiveJmxBeanWithStats {
 
@@ -82,6 +101,7 @@ public final class FileWriteAheadLog<K extends Comparable<K>, S> extends Abstrac
 	public static final FrameFormat FRAME_FORMAT = FrameFormats.lz4();
 
 	private static final Duration SMOOTHING_WINDOW = ApplicationSettings.getDuration(FileWriteAheadLog.class, "smoothingWindow", Duration.ofMinutes(5));
+	public static final MemSize DEFAULT_SEGMENT_SIZE = ApplicationSettings.getMemSize(FileWriteAheadLog.class, "segmentSize", MemSize.megabytes(64));
 
 	private final Executor executor;
 	private final Path path;
@@ -92,18 +112,27 @@ public final class FileWriteAheadLog<K extends Comparable<K>, S> extends Abstrac
 
 	private final AsyncRunnable flush = AsyncRunnables.coalesce(this::doFlush);
 
-	private WalConsumer consumer;
+	private WalWriter<K, S> consumer;
 	private boolean stopping;
 	private boolean flushRequired;
 	private boolean scanLostFiles = true;
 
 	private CurrentTimeProvider now = CurrentTimeProvider.ofSystem();
 
+	private @Nullable Duration groupCommitWindow;
+	private MemSize segmentSize = DEFAULT_SEGMENT_SIZE;
+
 	// region JMX
 	private final PromiseStats putPromise = PromiseStats.create(SMOOTHING_WINDOW);
 	private final PromiseStats flushPromise = PromiseStats.create(SMOOTHING_WINDOW);
 	private final EventStats totalPuts = EventStats.create(SMOOTHING_WINDOW);
 	private final EventStats totalFlushes = EventStats.create(SMOOTHING_WINDOW);
+	private final EventStats totalSyncs = EventStats.create(SMOOTHING_WINDOW);
+	private final ValueStats putLatency = ValueStats.builder(SMOOTHING_WINDOW)
+		.withHistogram(POWERS_OF_TWO)
+		.withUnit("milliseconds")
+		.build();
+	private final ValueStats groupCommitSize = ValueStats.create(SMOOTHING_WINDOW);
 	private final ValueStats totalFlushedSize = ValueStats.builder(SMOOTHING_WINDOW)
 		.withUnit("bytes")
 		.build();
@@ -158,6 +187,31 @@ public final class FileWriteAheadLog<K extends Comparable<K>, S> extends Abstrac
 			return this;
 		}
 
+		/**
+		 * Enables durable mode, in which data is written to preallocated segments
+		 * and is forced to a storage device once per group of puts.
+		 *
+		 * @param window time to wait for more puts before forcing a group,
+		 *               with zero window a group consists of puts made during a single reactor tick
+		 */
+		public Builder withGroupCommit(Duration window) {
+			checkNotBuilt(this);
+			checkArgument(!window.isNegative(), "Group commit window cannot be negative");
+			FileWriteAheadLog.this.groupCommitWindow = window;
+			return this;
+		}
+
+		/**
+		 * Sets a size of preallocated segments, used with group commit.
+		 * A segment is switched for a new one when a group does not fit into it
+		 */
+		public Builder withSegmentSize(MemSize segmentSize) {
+			checkNotBuilt(this);
+			checkArgument(segmentSize.toLong() > WalSegment.HEADER_SIZE, "Segment size is too small");
+			FileWriteAheadLog.this.segmentSize = segmentSize;
+			return this;
+		}
+
 		@Override
 		protected FileWriteAheadLog<K, S> doBuild() {
 			return FileWriteAheadLog.this;
@@ -175,7 +229,9 @@ public final class FileWriteAheadLog<K extends Comparable<K>, S> extends Abstrac
 		totalPuts.recordEvent();
 
 		flushRequired = true;
+		long putStarted = reactor.currentTimeMillis();
 		return consumer.accept(new CrdtData<>(key, now.currentTimeMillis(), value))
+			.whenResult(() -> putLatency.recordValue(reactor.currentTimeMillis() - putStarted))
 			.whenComplete(putPromise.recordStats());
 	}
 
@@ -191,7 +247,7 @@ public final class FileWriteAheadLog<K extends Comparable<K>, S> extends Abstrac
 	public Promise<?> start() {
 		checkInReactorThread(this);
 		return scanLostFiles()
-			.then(this::flushFiles)
+			.then(() -> flushFiles(null))
 			.whenResult(() -> this.consumer = createConsumer());
 	}
 
@@ -201,11 +257,19 @@ public final class FileWriteAheadLog<K extends Comparable<K>, S> extends Abstrac
 		stopping = true;
 		if (flushRequired) return flush();
 
-		return deleteWalFiles(executor, Set.of(consumer.walFile));
+		return consumer.checkpoint(true)
+			.then(checkpoint -> deleteWalFiles(executor, checkpoint.closedFiles()));
 	}
 
-	private @Nullable WalConsumer createConsumer() {
-		return stopping ? null : new WalConsumer(path.resolve(UUID.randomUUID() + EXT_CURRENT));
+	private @Nullable WalWriter<K, S> createConsumer() {
+		if (stopping) return null;
+		return groupCommitWindow == null ?
+			new WalConsumer(newWalFile()) :
+			new SegmentWalConsumer(groupCommitWindow, segmentSize.toLong());
+	}
+
+	private Path newWalFile() {
+		return path.resolve(UUID.randomUUID() + EXT_CURRENT);
 	}
 
 	private Promise<Void> doFlush() {
@@ -218,27 +282,44 @@ public final class FileWriteAheadLog<K extends Comparable<K>, S> extends Abstrac
 
 		logger.trace("Begin flushing write ahead log");
 
-		WalConsumer finishedConsumer = consumer;
-		consumer = createConsumer();
-
-		if (detailedMonitoring) {
-			try {
-				totalFlushedSize.recordValue(Files.size(finishedConsumer.walFile));
-			} catch (IOException e) {
-				logger.warn("Could not get the size of flushed file {}", finishedConsumer.walFile);
-			}
+		WalWriter<K, S> flushedConsumer = consumer;
+		// files must be closed for external flushes, while an upload can read an open segment
+		boolean reuse = flushedConsumer instanceof FileWriteAheadLog.SegmentWalConsumer && flushMode == UPLOAD_TO_STORAGE && !stopping;
+		if (!reuse) {
+			consumer = createConsumer();
 		}
 
-		return finishedConsumer.finish()
-			.then(() -> Promise.ofBlocking(executor, () -> rename(finishedConsumer.walFile))
-				.whenException(e -> scanLostFiles = true))
-			.then(this::scanLostFiles)
-			.then(this::flushFiles)
+		return flushedConsumer.checkpoint(!reuse)
+			.whenResult(checkpoint -> {
+				if (!detailedMonitoring) return;
+				for (Path walFile : checkpoint.closedFiles()) {
+					try {
+						totalFlushedSize.recordValue(Files.size(walFile));
+					} catch (IOException e) {
+						logger.warn("Could not get the size of flushed file {}", walFile);
+					}
+				}
+				WalSegment.Range openRange = checkpoint.openRange();
+				if (openRange != null) {
+					totalFlushedSize.recordValue(openRange.to() - openRange.from());
+				}
+			})
+			.then(checkpoint -> Promise.ofBlocking(executor, () -> {
+					for (Path walFile : checkpoint.closedFiles()) {
+						rename(walFile);
+					}
+				})
+				.whenException(e -> scanLostFiles = true)
+				.then(this::scanLostFiles)
+				.then(() -> flushFiles(checkpoint.openRange()))
+				.then(() -> checkpoint.openRange() != null ?
+					((SegmentWalConsumer) flushedConsumer).uploaded(checkpoint.openRange()) :
+					Promise.complete()))
 			.whenException(e -> flushRequired = true)
 			.whenComplete(toLogger(logger, TRACE, TRACE, "doFlush", this));
 	}
 
-	private Promise<Void> flushFiles() {
+	private Promise<Void> flushFiles(@Nullable WalSegment.Range openRange) {
 		if (flushMode == ROTATE_FILE) {
 			return Promise.complete();
 		} else if (flushMode == ROTATE_FILE_AWAIT) {
@@ -246,7 +327,9 @@ public final class FileWriteAheadLog<K extends Comparable<K>, S> extends Abstrac
 		} else {
 			assert flushMode == UPLOAD_TO_STORAGE && uploader != null;
 
-			return uploader.uploadToStorage();
+			return openRange == null ?
+				uploader.uploadToStorage() :
+				uploader.uploadToStorage(openRange);
 		}
 	}
 
@@ -265,7 +348,7 @@ public final class FileWriteAheadLog<K extends Comparable<K>, S> extends Abstrac
 
 	private void rename(Path from) throws IOException {
 		assert from.toString().endsWith(EXT_CURRENT);
-		assert consumer == null || !from.equals(consumer.getWalFile());
+		assert consumer == null || !consumer.getWalFiles().contains(from);
 
 		String filename = from.getFileName().toString();
 		Path to = from.resolveSibling(filename.replace(EXT_CURRENT, EXT_FINAL));
@@ -285,6 +368,7 @@ public final class FileWriteAheadLog<K extends Comparable<K>, S> extends Abstrac
 	}
 
 	private Promise<List<Path>> getLostFiles() {
+		WalWriter<K, S> consumer = this.consumer;
 		return Promise.ofBlocking(executor,
 				() -> {
 					try (Stream<Path> list = Files.list(path)) {
@@ -292,7 +376,7 @@ public final class FileWriteAheadLog<K extends Comparable<K>, S> extends Abstrac
 							.filter(file ->
 								Files.isRegularFile(file) &&
 								file.toString().endsWith(EXT_CURRENT) &&
-								(consumer == null || !file.equals(consumer.getWalFile())))
+								(consumer == null || !consumer.getWalFiles().contains(file)))
 							.collect(toList());
 					}
 				})
@@ -303,7 +387,26 @@ public final class FileWriteAheadLog<K extends Comparable<K>, S> extends Abstrac
 			});
 	}
 
-	public final class WalConsumer {
+	private interface WalWriter<K extends Comparable<K>, S> {
+		List<Path> getWalFiles();
+
+		Promise<Void> accept(CrdtData<K, S> data);
+
+		/**
+		 * Makes all accepted data available for flushing
+		 *
+		 * @param close whether all files should be closed, a writer cannot be used after it is closed
+		 */
+		Promise<Checkpoint> checkpoint(boolean close);
+	}
+
+	/**
+	 * Data available for flushing: closed files and a range of a segment which is still open
+	 */
+	private record Checkpoint(List<Path> closedFiles, @Nullable WalSegment.Range openRange) {
+	}
+
+	public final class WalConsumer implements WalWriter<K, S> {
 		private final AbstractStreamSupplier<CrdtData<K, S>> internalSupplier = new AbstractStreamSupplier<>() {
 			@Override
 			protected void onStarted() {
@@ -336,6 +439,12 @@ public final class FileWriteAheadLog<K extends Comparable<K>, S> extends Abstrac
 			return walFile;
 		}
 
+		@Override
+		public List<Path> getWalFiles() {
+			return List.of(walFile);
+		}
+
+		@Override
 		public Promise<Void> accept(CrdtData<K, S> data) {
 			if (this.writeCallback == null) {
 				this.writeCallback = new SettablePromise<>();
@@ -345,9 +454,191 @@ public final class FileWriteAheadLog<K extends Comparable<K>, S> extends Abstrac
 			return writeCallback;
 		}
 
-		public Promise<Void> finish() {
+		@Override
+		public Promise<Checkpoint> checkpoint(boolean close) {
 			internalSupplier.sendEndOfStream();
-			return internalSupplier.getAcknowledgement();
+			return internalSupplier.getAcknowledgement()
+				.map($ -> new Checkpoint(List.of(walFile), null));
+		}
+	}
+
+	private final class SegmentWalConsumer implements WalWriter<K, S> {
+		private final Duration window;
+		private final long segmentSize;
+		private final List<Path> walFiles = new CopyOnWriteArrayList<>();
+		private final List<Path> closedFiles = new ArrayList<>();
+
+		// accessed only by blocking tasks, which are run one after another
+		private @Nullable WalSegment segment;
+		private Promise<Void> lastWrite = Promise.complete();
+
+		private @Nullable Path uploadedSegment;
+		private long uploadedPosition;
+
+		private byte[] buffer = new byte[4096];
+		private int bufferPosition;
+		private List<SettablePromise<Void>> callbacks = new ArrayList<>();
+
+		private boolean commitScheduled;
+		private boolean committing;
+		private boolean closing;
+
+		SegmentWalConsumer(Duration window, long segmentSize) {
+			this.window = window;
+			this.segmentSize = segmentSize;
+		}
+
+		@Override
+		public List<Path> getWalFiles() {
+			return walFiles;
+		}
+
+		@Override
+		public Promise<Void> accept(CrdtData<K, S> data) {
+			while (true) {
+				try {
+					bufferPosition = WalSegment.encode(serializer, buffer, bufferPosition, data);
+					break;
+				} catch (ArrayIndexOutOfBoundsException e) {
+					buffer = Arrays.copyOf(buffer, buffer.length * 2);
+				}
+			}
+			SettablePromise<Void> callback = new SettablePromise<>();
+			callbacks.add(callback);
+			scheduleCommit();
+			return callback;
+		}
+
+		@Override
+		public Promise<Checkpoint> checkpoint(boolean close) {
+			closing = close;
+			return commitRemaining()
+				.then(() -> runBlocking(() -> {
+					if (close && segment != null) {
+						closeSegment();
+					}
+					List<Path> closed = new ArrayList<>(closedFiles);
+					closedFiles.clear();
+					walFiles.removeAll(closed);
+					return segment == null ?
+						new Checkpoint(closed, null) :
+						new Checkpoint(closed, new WalSegment.Range(segment.getPath(), WalSegment.HEADER_SIZE, segment.getPosition()));
+				}))
+				.map(checkpoint -> {
+					WalSegment.Range range = checkpoint.openRange();
+					if (range == null) return checkpoint;
+					long from = range.path().equals(uploadedSegment) ? uploadedPosition : range.from();
+					return new Checkpoint(checkpoint.closedFiles(), from < range.to() ?
+						new WalSegment.Range(range.path(), from, range.to()) :
+						null);
+				});
+		}
+
+		/**
+		 * Marks a range of an open segment as uploaded, so that it is not uploaded on a next flush
+		 * or after a crash. A segment may have been closed since the range was uploaded
+		 */
+		Promise<Void> uploaded(WalSegment.Range range) {
+			uploadedSegment = range.path();
+			uploadedPosition = range.to();
+			return runBlocking(() -> {
+				if (segment != null && segment.getPath().equals(range.path())) {
+					segment.markUploaded(range.to());
+				} else {
+					WalSegment.markUploaded(range.path(), range.to());
+				}
+				return (Void) null;
+			});
+		}
+
+		private Promise<Void> commitRemaining() {
+			if (committing) return lastWrite.then(this::commitRemaining);
+			if (!callbacks.isEmpty()) commit();
+			return lastWrite;
+		}
+
+		private void scheduleCommit() {
+			if (commitScheduled || committing) return;
+			commitScheduled = true;
+			if (closing || window.isZero()) {
+				reactor.postLast(this::commit);
+			} else {
+				reactor.delay(window, this::commit);
+			}
+		}
+
+		private void commit() {
+			commitScheduled = false;
+			if (committing || callbacks.isEmpty()) return;
+			committing = true;
+
+			byte[] records = buffer;
+			int length = bufferPosition;
+			List<SettablePromise<Void>> callbacks = this.callbacks;
+			buffer = new byte[buffer.length];
+			bufferPosition = 0;
+			this.callbacks = new ArrayList<>();
+
+			runBlocking(() -> {
+				write(records, length);
+				return (Void) null;
+			})
+				.whenComplete((v, e) -> {
+					committing = false;
+					totalSyncs.recordEvent();
+					groupCommitSize.recordValue(callbacks.size());
+					for (SettablePromise<Void> callback : callbacks) {
+						callback.set(v, e);
+					}
+					if (!this.callbacks.isEmpty()) {
+						scheduleCommit();
+					}
+				});
+		}
+
+		/**
+		 * Runs a blocking task after all previous tasks, regardless of their results
+		 */
+		private <T> Promise<T> runBlocking(Callable<T> task) {
+			Promise<T> result = lastWrite.then(($, e) -> Promise.ofBlocking(executor, task::call));
+			lastWrite = result.map(($, e) -> null);
+			return result;
+		}
+
+		private void write(byte[] records, int length) throws IOException {
+			if (segment != null && !segment.fits(length)) {
+				closeSegment();
+			}
+			if (segment == null) {
+				Path walFile = newWalFile();
+				walFiles.add(walFile);
+				try {
+					// a group larger than a segment size gets a segment of its own
+					segment = WalSegment.create(walFile, Math.max(segmentSize, WalSegment.HEADER_SIZE + length));
+				} catch (IOException e) {
+					walFiles.remove(walFile);
+					throw e;
+				}
+			}
+			try {
+				segment.append(records, length, true);
+			} catch (IOException e) {
+				// a segment may contain a part of failed records, following groups are written to a new segment
+				closeSegment();
+				throw e;
+			}
+		}
+
+		private void closeSegment() {
+			assert segment != null;
+			WalSegment segment = this.segment;
+			this.segment = null;
+			closedFiles.add(segment.getPath());
+			try {
+				segment.close();
+			} catch (IOException e) {
+				logger.warn("Failed to close write ahead log segment {}", segment.getPath(), e);
+			}
 		}
 	}
 
@@ -383,6 +674,21 @@ public final class FileWriteAheadLog<K extends Comparable<K>, S> extends Abstrac
 		return totalFlushedSize;
 	}
 
+	@JmxAttribute
+	public EventStats getTotalSyncs() {
+		return totalSyncs;
+	}
+
+	@JmxAttribute
+	public ValueStats getPutLatency() {
+		return putLatency;
+	}
+
+	@JmxAttribute
+	public ValueStats getGroupCommitSize() {
+		return groupCommitSize;
+	}
+
 	@JmxAttribute
 	public boolean isDetailedMonitoring() {
 		return detailedMonitoring;
@@ -0,0 +1,313 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.crdt.wal;
+
+import io.activej.serializer.BinaryInput;
+import io.activej.serializer.BinarySerializer;
+import io.activej.serializer.CorruptedDataException;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * A preallocated write ahead log segment.
+ * <p>
+ * A segment starts with a header {@code [magic][uploaded position: long]}, followed by records
+ * {@code [length: int][crc32: int][item]}. An uploaded position marks records which have already been
+ * uploaded to a storage while a segment was open, so that they are not uploaded again after a crash.
+ * The rest of a segment is filled with zeroes, so that appends do not change file size
+ * and a zero length marks the end of written data. A record with a mismatched checksum
+ * marks a write which was torn by a crash, reading stops there.
+ * <p>
+ * A segment is read in batches of records, so that it is never loaded into memory as a whole.
+ */
+final class WalSegment {
+	private static final Logger logger = LoggerFactory.getLogger(WalSegment.class);
+
+	static final byte[] MAGIC = {'C', 'W', 'A', 'L'};
+	static final int HEADER_SIZE = MAGIC.length + Long.BYTES;
+	static final int RECORD_HEADER_SIZE = 8;
+
+	private static final int ZEROES_CHUNK_SIZE = 64 * 1024;
+	private static final int READ_CHUNK_SIZE = 64 * 1024;
+	private static final int READ_BATCH_SIZE = 1024;
+
+	private final Path path;
+	private final FileChannel channel;
+	private final long size;
+
+	private long position = HEADER_SIZE;
+
+	private WalSegment(Path path, FileChannel channel, long size) {
+		this.path = path;
+		this.channel = channel;
+		this.size = size;
+	}
+
+	/**
+	 * Creates a new segment filled with zeroes up to a given size, blocking.
+	 * A file is deleted if it could not be created completely
+	 */
+	static WalSegment create(Path path, long size) throws IOException {
+		FileChannel channel = FileChannel.open(path, CREATE_NEW, WRITE);
+		try {
+			ByteBuffer zeroes = ByteBuffer.allocate(ZEROES_CHUNK_SIZE);
+			for (long written = MAGIC.length; written < size; ) {
+				zeroes.clear().limit((int) Math.min(ZEROES_CHUNK_SIZE, size - written));
+				written += channel.write(zeroes, written);
+			}
+			writeFully(channel, ByteBuffer.wrap(MAGIC), 0);
+			channel.force(true);
+		} catch (IOException e) {
+			channel.close();
+			Files.deleteIfExists(path);
+			throw e;
+		}
+		return new WalSegment(path, channel, size);
+	}
+
+	Path getPath() {
+		return path;
+	}
+
+	/**
+	 * Returns a position right after the last written record
+	 */
+	long getPosition() {
+		return position;
+	}
+
+	/**
+	 * Checks whether records of a given length fit into the preallocated space
+	 */
+	boolean fits(int length) {
+		return position + length <= size;
+	}
+
+	/**
+	 * Encodes an item as a record into a buffer, returns a new position in the buffer
+	 */
+	static <T> int encode(BinarySerializer<T> serializer, byte[] buffer, int position, T item) {
+		int end = serializer.encode(buffer, position + RECORD_HEADER_SIZE, item);
+		int length = end - position - RECORD_HEADER_SIZE;
+		ByteBuffer.wrap(buffer, position, RECORD_HEADER_SIZE)
+			.putInt(length)
+			.putInt(crc(buffer, position + RECORD_HEADER_SIZE, length));
+		return end;
+	}
+
+	/**
+	 * Writes encoded records, optionally forcing them to a storage device, blocking.
+	 * A position is advanced only if records have been written successfully
+	 */
+	void append(byte[] records, int length, boolean sync) throws IOException {
+		writeFully(channel, ByteBuffer.wrap(records, 0, length), position);
+		position += length;
+		if (sync) {
+			channel.force(false);
+		}
+	}
+
+	/**
+	 * Persists a position up to which records have been uploaded, blocking
+	 */
+	void markUploaded(long uploadedPosition) throws IOException {
+		writeUploadedPosition(channel, uploadedPosition);
+	}
+
+	/**
+	 * Persists a position up to which records of a closed segment have been uploaded, blocking
+	 */
+	static void markUploaded(Path path, long uploadedPosition) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, WRITE)) {
+			writeUploadedPosition(channel, uploadedPosition);
+		}
+	}
+
+	private static void writeUploadedPosition(FileChannel channel, long uploadedPosition) throws IOException {
+		writeFully(channel, ByteBuffer.allocate(Long.BYTES).putLong(0, uploadedPosition), MAGIC.length);
+		channel.force(false);
+	}
+
+	/**
+	 * Cuts off unused preallocated space and closes the segment, blocking
+	 */
+	void close() throws IOException {
+		try (channel) {
+			channel.truncate(position);
+			channel.force(true);
+		}
+	}
+
+	/**
+	 * A range of a segment which is still being written
+	 */
+	record Range(Path path, long from, long to) {
+	}
+
+	/**
+	 * Reads intact records of a segment in batches, blocking
+	 */
+	static final class Reader<T> implements Closeable {
+		private final Path path;
+		private final FileChannel channel;
+		private final BinarySerializer<T> serializer;
+		private final long limit;
+
+		private ByteBuffer buf = ByteBuffer.allocate(READ_CHUNK_SIZE).flip();
+		private long filePosition;
+		private boolean finished;
+
+		private Reader(Path path, FileChannel channel, BinarySerializer<T> serializer, long from, long limit) {
+			this.path = path;
+			this.channel = channel;
+			this.serializer = serializer;
+			this.filePosition = from;
+			this.limit = limit;
+		}
+
+		/**
+		 * Opens a reader of all records of a file which have not been uploaded yet,
+		 * reading only a header to check that a file is a segment
+		 *
+		 * @return a reader or {@code null} if a file is not a segment
+		 */
+		static <T> @Nullable Reader<T> open(Path path, BinarySerializer<T> serializer) throws IOException {
+			FileChannel channel = FileChannel.open(path, READ);
+			try {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				while (header.hasRemaining() && channel.read(header) != -1) {
+				}
+				if (header.hasRemaining() || !Arrays.equals(header.array(), 0, MAGIC.length, MAGIC, 0, MAGIC.length)) {
+					channel.close();
+					return null;
+				}
+				long size = channel.size();
+				long from = Math.min(Math.max(HEADER_SIZE, header.getLong(MAGIC.length)), size);
+				return new Reader<>(path, channel, serializer, from, size);
+			} catch (IOException e) {
+				channel.close();
+				throw e;
+			}
+		}
+
+		/**
+		 * Opens a reader of records within a given range of a segment
+		 */
+		static <T> Reader<T> open(Range range, BinarySerializer<T> serializer) throws IOException {
+			return new Reader<>(range.path(), FileChannel.open(range.path(), READ), serializer, range.from(), range.to());
+		}
+
+		/**
+		 * Reads a next batch of records, closes a file once all records are read
+		 *
+		 * @return read items or {@code null} if there are no more records
+		 */
+		@Nullable List<T> readBatch() throws IOException {
+			if (finished) return null;
+			List<T> result = new ArrayList<>();
+			try {
+				while (result.size() < READ_BATCH_SIZE) {
+					if (!ensureRemaining(RECORD_HEADER_SIZE)) {
+						close();
+						break;
+					}
+					int position = buf.position();
+					int length = buf.getInt(position);
+					int crc = buf.getInt(position + Integer.BYTES);
+					if (length == 0) {
+						close();
+						break;
+					}
+					long recordPosition = filePosition - buf.remaining();
+					if (length < 0 || length > limit - recordPosition - RECORD_HEADER_SIZE ||
+						!ensureRemaining(RECORD_HEADER_SIZE + length)) {
+						logger.warn("Write ahead log {} is truncated at position {}, skipping the rest of it", path, recordPosition);
+						close();
+						break;
+					}
+					position = buf.position();
+					byte[] bytes = buf.array();
+					if (crc(bytes, position + RECORD_HEADER_SIZE, length) != crc) {
+						logger.warn("Write ahead log {} is truncated at position {}, skipping the rest of it", path, recordPosition);
+						close();
+						break;
+					}
+					try {
+						result.add(serializer.decode(new BinaryInput(bytes, position + RECORD_HEADER_SIZE)));
+					} catch (CorruptedDataException e) {
+						throw new IOException("Write ahead log " + path + " is corrupted", e);
+					}
+					buf.position(position + RECORD_HEADER_SIZE + length);
+				}
+			} catch (IOException e) {
+				close();
+				throw e;
+			}
+			return result.isEmpty() && finished ? null : result;
+		}
+
+		private boolean ensureRemaining(int size) throws IOException {
+			if (buf.remaining() >= size) return true;
+			if (buf.capacity() < size) {
+				buf = ByteBuffer.allocate(Math.max(size, buf.capacity() * 2)).put(buf);
+			} else {
+				buf.compact();
+			}
+			while (buf.position() < size && filePosition < limit) {
+				int maxRead = (int) Math.min(buf.remaining(), limit - filePosition);
+				int read = channel.read(buf.slice(buf.position(), maxRead), filePosition);
+				if (read == -1) break;
+				buf.position(buf.position() + read);
+				filePosition += read;
+			}
+			buf.flip();
+			return buf.remaining() >= size;
+		}
+
+		@Override
+		public void close() throws IOException {
+			finished = true;
+			channel.close();
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+		while (buf.hasRemaining()) {
+			position += channel.write(buf, position);
+		}
+	}
+
+	private static int crc(byte[] bytes, int offset, int length) {
+		CRC32 crc32 = new CRC32();
+		crc32.update(bytes, offset, length);
+		return (int) crc32.getValue();
+	}
+}
@@ -34,6 +34,8 @@ import io.activej.datastream.processor.reducer.StreamReducer;
 import io.activej.datastream.processor.transformer.sort.StreamSorter;
 import io.activej.datastream.processor.transformer.sort.StreamSorterStorage;
 import io.activej.datastream.supplier.StreamDataAcceptor;
+import io.activej.datastream.supplier.StreamSupplier;
+import io.activej.datastream.supplier.StreamSuppliers;
 import io.activej.jmx.api.attribute.JmxAttribute;
 import io.activej.jmx.api.attribute.JmxOperation;
 import io.activej.jmx.stats.ValueStats;
@@ -141,13 +143,24 @@ public final class WalUploader<K extends Comparable<K>, S> extends AbstractReact
 			.whenComplete(uploadPromise.recordStats());
 	}
 
+	/**
+	 * Uploads write ahead logs together with a given range of a segment which is still being written.
+	 * The segment itself is left in place
+	 */
+	Promise<Void> uploadToStorage(WalSegment.Range openRange) {
+		checkInReactorThread(this);
+		return getWalFiles(executor, path)
+			.then(walFiles -> uploadWaLFiles(walFiles, openRange))
+			.whenComplete(uploadPromise.recordStats());
+	}
+
 	private Promise<Void> doUploadToStorage() {
 		return getWalFiles(executor, path)
-			.then(this::uploadWaLFiles);
+			.then(walFiles -> uploadWaLFiles(walFiles, null));
 	}
 
-	private Promise<Void> uploadWaLFiles(List<Path> walFiles) throws IOException {
-		if (walFiles.isEmpty()) {
+	private Promise<Void> uploadWaLFiles(List<Path> walFiles, WalSegment.@Nullable Range openRange) throws IOException {
+		if (walFiles.isEmpty() && openRange == null) {
 			logger.info("Nothing to upload");
 			return Promise.complete();
 		}
@@ -164,7 +177,7 @@ public final class WalUploader<K extends Comparable<K>, S> extends AbstractReact
 			throw e;
 		}
 
-		return createReducer(walFiles)
+		return createReducer(walFiles, openRange)
 			.getOutput()
 			.transformWith(createSorter(sortDir))
 			.streamTo(storage.upload())
@@ -207,28 +220,52 @@ public final class WalUploader<K extends Comparable<K>, S> extends AbstractReact
 		}
 	}
 
-	private StreamReducer<K, CrdtData<K, S>, CrdtData<K, S>> createReducer(List<Path> files) {
+	private StreamReducer<K, CrdtData<K, S>, CrdtData<K, S>> createReducer(List<Path> files, WalSegment.@Nullable Range openRange) {
 		StreamReducer<K, CrdtData<K, S>, CrdtData<K, S>> reducer = StreamReducer.create();
 
 		for (Path file : files) {
-			ChannelSuppliers.ofPromise(ChannelFileReader.open(executor, file))
-				.transformWith(ChannelFrameDecoder.create(FRAME_FORMAT))
-				.withEndOfStream(eos -> eos
-					.map(identity(),
-						e -> {
-							if (e instanceof TruncatedDataException) {
-								logger.warn("Write ahead log {} was truncated", file);
-								return null;
-							}
-							throw e;
-						}))
-				.transformWith(ChannelDeserializer.create(serializer))
+			StreamSuppliers.ofPromise(Promise.ofBlocking(executor, () -> WalSegment.Reader.open(file, serializer))
+					.map(reader -> reader != null ?
+						readSegment(reader) :
+						readFramedFile(file)))
+				.streamTo(reducer.newInput(CrdtData::getKey, new WalReducer()));
+		}
+		if (openRange != null) {
+			StreamSuppliers.ofPromise(Promise.ofBlocking(executor, () -> WalSegment.Reader.open(openRange, serializer))
+					.map(this::readSegment))
 				.streamTo(reducer.newInput(CrdtData::getKey, new WalReducer()));
 		}
 
 		return reducer;
 	}
 
+	private StreamSupplier<CrdtData<K, S>> readSegment(WalSegment.Reader<CrdtData<K, S>> reader) {
+		return StreamSuppliers.concat(ChannelSuppliers.ofAsyncSupplier(
+			() -> Promise.ofBlocking(executor, reader::readBatch)
+				.map(batch -> batch != null ? StreamSuppliers.ofIterable(batch) : null),
+			e -> executor.execute(() -> {
+				try {
+					reader.close();
+				} catch (IOException ignored) {
+				}
+			})));
+	}
+
+	private StreamSupplier<CrdtData<K, S>> readFramedFile(Path file) {
+		return ChannelSuppliers.ofPromise(ChannelFileReader.open(executor, file))
+			.transformWith(ChannelFrameDecoder.create(FRAME_FORMAT))
+			.withEndOfStream(eos -> eos
+				.map(identity(),
+					e -> {
+						if (e instanceof TruncatedDataException) {
+							logger.warn("Write ahead log {} was truncated", file);
+							return null;
+						}
+						throw e;
+					}))
+			.transformWith(ChannelDeserializer.create(serializer));
+	}
+
 	// region JMX
 	@JmxAttribute
 	public PromiseStats getUploadPromise() {
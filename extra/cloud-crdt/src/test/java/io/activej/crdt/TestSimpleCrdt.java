@@ -1,11 +1,13 @@
 package io.activej.crdt;
 
-import io.activej.crdt.storage.ICrdtStorage;
 import io.activej.crdt.storage.local.MapCrdtStorage;
 import io.activej.crdt.util.CrdtDataBinarySerializer;
 import io.activej.datastream.consumer.StreamConsumers;
 import io.activej.datastream.supplier.StreamSupplier;
 import io.activej.datastream.supplier.StreamSuppliers;
+import io.activej.promise.Promise;
+import io.activej.promise.Promises;
+import io.activej.reactor.net.SocketSettings;
 import io.activej.test.rules.ByteBufRule;
 import io.activej.test.rules.EventloopRule;
 import org.junit.Before;
@@ -14,6 +16,10 @@ import org.junit.Test;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import static io.activej.common.Checks.checkNotNull;
 import static io.activej.crdt.function.CrdtFunction.ignoringTimestamp;
@@ -28,7 +34,7 @@ import static org.junit.Assert.assertTrue;
 public final class TestSimpleCrdt {
 	private MapCrdtStorage<String, Integer> remoteStorage;
 	private CrdtServer<String, Integer> server;
-	private ICrdtStorage<String, Integer> client;
+	private RemoteCrdtStorage<String, Integer> client;
 
 	@ClassRule
 	public static final EventloopRule eventloopRule = new EventloopRule();
@@ -117,4 +123,51 @@ public final class TestSimpleCrdt {
 		assertEquals(35, checkNotNull(localStorage.get("only_remote")).intValue());
 
 	}
+
+	@Test
+	public void testPutAndGetOverPersistentConnection() {
+		List<Promise<Void>> puts = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			puts.add(client.put(new CrdtData<>("key_" + i, 1, i)));
+		}
+		puts.add(client.put(new CrdtData<>("mx", 1, 10)));
+
+		List<Integer> states = await(Promises.all(puts)
+			.then(() -> Promises.toList(client.get("mx"), client.get("key_42"), client.get("missing")))
+			.whenComplete(client::stop)
+			.whenComplete(server::close));
+
+		assertEquals(Arrays.asList(10, 42, null), states);
+		assertEquals(42, checkNotNull(remoteStorage.get("key_42")).intValue());
+		assertEquals(1, client.getPooledConnectionsCreated().getTotalCount());
+		assertEquals(1, client.getPutBatchSize().getCount());
+		assertEquals(1, client.getGetBatchSize().getCount());
+	}
+
+	@Test
+	public void testRetryOverIdleConnectionClosedByServer() throws IOException {
+		await(server.close());
+
+		CrdtDataBinarySerializer<String, Integer> serializer = new CrdtDataBinarySerializer<>(UTF8_SERIALIZER, INT_SERIALIZER);
+		int port = getFreePort();
+		server = CrdtServer.builder(getCurrentReactor(), remoteStorage, serializer)
+			.withListenAddress(new InetSocketAddress(port))
+			.withSocketSettings(SocketSettings.builder()
+				.withImplReadTimeout(Duration.ofMillis(50))
+				.build())
+			.build();
+		server.listen();
+		client = RemoteCrdtStorage.create(getCurrentReactor(), new InetSocketAddress(port), serializer);
+
+		Integer state = await(client.put(new CrdtData<>("mx", 1, 10))
+			.then(() -> Promises.delay(Duration.ofMillis(200)))
+			.then(() -> client.put(new CrdtData<>("mx", 2, 20)))
+			.then(() -> client.get("mx"))
+			.whenComplete(client::stop)
+			.whenComplete(server::close));
+
+		assertEquals(20, checkNotNull(state).intValue());
+		assertEquals(2, client.getPooledConnectionsCreated().getTotalCount());
+		assertEquals(1, client.getPooledRequestsRetried().getTotalCount());
+	}
 }
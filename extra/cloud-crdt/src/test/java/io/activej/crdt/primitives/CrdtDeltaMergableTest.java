@@ -0,0 +1,67 @@
+package io.activej.crdt.primitives;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class CrdtDeltaMergableTest {
+
+	@Test
+	public void testGCounterLong() {
+		GCounterLong known = new GCounterLong(3);
+		known.increment(0);
+		GCounterLong state = known.merge(new GCounterLong(3));
+		assertNull(state.delta(known));
+
+		GCounterLong mutatorDelta = state.incrementDelta(1);
+		state.increment(2);
+		GCounterLong delta = state.delta(known);
+		assertNotNull(delta);
+		assertEquals(2, delta.value());
+		assertEquals(state, known.merge(delta));
+		assertEquals(2, known.merge(mutatorDelta).value());
+	}
+
+	@Test
+	public void testLWWSet() {
+		LWWSet<String> known = new LWWSet<>();
+		known.now = () -> 1;
+		known.addAll(List.of("a", "b", "c"));
+		LWWSet<String> state = new LWWSet<>();
+		state.now = () -> 1;
+		state.addAll(List.of("a", "b", "c"));
+		assertNull(state.delta(known));
+
+		state.now = () -> 2;
+		LWWSet<String> addDelta = state.addDelta("d");
+		LWWSet<String> removeDelta = state.removeDelta("a");
+		LWWSet<String> delta = state.delta(known);
+		assertNotNull(delta);
+		assertEquals(Set.of("d"), Set.copyOf(delta));
+		assertEquals(Set.of("b", "c", "d"), Set.copyOf(known.merge(delta)));
+		assertEquals(Set.of("b", "c", "d"), Set.copyOf(known.merge(addDelta).merge(removeDelta)));
+	}
+
+	@Test
+	public void testGMap() {
+		GMap<String, GCounterLong> known = new GMap<>();
+		known.put("a", new GCounterLong(2));
+		known.put("b", new GCounterLong(2));
+		GMap<String, GCounterLong> state = known.merge(new GMap<>());
+		assertNull(state.delta(known));
+
+		GCounterLong counter = new GCounterLong(2);
+		counter.increment(1);
+		GMap<String, GCounterLong> putDelta = state.putDelta("a", counter);
+		state.put("c", new GCounterLong(2));
+		GMap<String, GCounterLong> delta = state.delta(known);
+		assertNotNull(delta);
+		assertEquals(2, delta.size());
+		assertFalse(delta.containsKey("b"));
+		assertEquals(state, known.merge(delta));
+		assertEquals(1, known.merge(putDelta).get("a").value());
+	}
+}
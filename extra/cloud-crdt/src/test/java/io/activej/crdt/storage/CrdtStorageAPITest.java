@@ -1,5 +1,6 @@
 package io.activej.crdt.storage;
 
+import io.activej.common.MemSize;
 import io.activej.crdt.CrdtData;
 import io.activej.crdt.CrdtTombstone;
 import io.activej.crdt.function.CrdtFunction;
@@ -9,6 +10,8 @@ import io.activej.crdt.storage.cluster.RendezvousPartitionGroup;
 import io.activej.crdt.storage.cluster.RendezvousPartitionScheme;
 import io.activej.crdt.storage.local.FileSystemCrdtStorage;
 import io.activej.crdt.storage.local.MapCrdtStorage;
+import io.activej.crdt.storage.local.OffHeapCrdtStorage;
+import io.activej.crdt.storage.lsm.LsmCrdtStorage;
 import io.activej.crdt.util.CrdtDataBinarySerializer;
 import io.activej.datastream.consumer.StreamConsumers;
 import io.activej.datastream.supplier.StreamSupplier;
@@ -94,6 +97,25 @@ public class CrdtStorageAPITest {
 				(CrdtClientFactory) (executor, testFolder) ->
 					MapCrdtStorage.create(getCurrentReactor(), CRDT_FUNCTION)
 			},
+			new Object[]{
+				"CrdtStorage_OffHeap",
+				(CrdtClientFactory) (executor, testFolder) ->
+					OffHeapCrdtStorage.builder(getCurrentReactor(), SERIALIZER, CRDT_FUNCTION)
+						.withSegmentSize(MemSize.kilobytes(1))
+						.build()
+			},
+			new Object[]{
+				"CrdtStorage_Lsm",
+				(CrdtClientFactory) (executor, testFolder) -> {
+					LsmCrdtStorage<String, Integer> storage = LsmCrdtStorage.builder(getCurrentReactor(), executor, testFolder, SERIALIZER, CRDT_FUNCTION)
+						.withMemtableSize(MemSize.bytes(64))
+						.withBlockSize(MemSize.bytes(32))
+						.withLevel0CompactionTrigger(2)
+						.build();
+					await(storage.start());
+					return storage;
+				}
+			},
 			new Object[]{
 				"CrdtStorage_Cluster",
 				(CrdtClientFactory) (executor, testFolder) -> {
@@ -157,6 +179,18 @@ public class CrdtStorageAPITest {
 			list);
 	}
 
+	@Test
+	public void testGetAll() {
+		await(StreamSuppliers.ofValues(
+				new CrdtData<>("test_1", 123, 344),
+				new CrdtData<>("test_2", 123, 24),
+				new CrdtData<>("test_3", 123, -8))
+			.streamTo(StreamConsumers.ofPromise(client.upload())));
+
+		List<Integer> states = await(client.getAll(List.of("test_2", "test_0", "test_1")));
+		assertEquals(Arrays.asList(24, null, 344), states);
+	}
+
 	@Test
 	public void testRemove() {
 		await(StreamSuppliers.ofValues(
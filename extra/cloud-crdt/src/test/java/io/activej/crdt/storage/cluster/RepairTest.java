@@ -0,0 +1,277 @@
+package io.activej.crdt.storage.cluster;
+
+import io.activej.crdt.CrdtData;
+import io.activej.crdt.CrdtServer;
+import io.activej.crdt.CrdtTombstone;
+import io.activej.crdt.RemoteCrdtStorage;
+import io.activej.crdt.function.CrdtFunction;
+import io.activej.crdt.primitives.GCounterLong;
+import io.activej.crdt.storage.ICrdtStorage;
+import io.activej.crdt.storage.cluster.ClusterCrdtStorage.RepairResult;
+import io.activej.crdt.storage.local.MapCrdtStorage;
+import io.activej.crdt.util.CrdtDataBinarySerializer;
+import io.activej.crdt.util.CrdtDataHasher;
+import io.activej.net.AbstractReactiveServer;
+import io.activej.reactor.nio.NioReactor;
+import io.activej.test.rules.ByteBufRule;
+import io.activej.test.rules.EventloopRule;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.*;
+
+import static io.activej.promise.TestUtils.await;
+import static io.activej.reactor.Reactor.getCurrentReactor;
+import static io.activej.serializer.BinarySerializers.INT_SERIALIZER;
+import static io.activej.test.TestUtils.getFreePort;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class RepairTest {
+	private static final CrdtDataBinarySerializer<Integer, GCounterLong> SERIALIZER = new CrdtDataBinarySerializer<>(INT_SERIALIZER, GCounterLong.SERIALIZER);
+	private static final CrdtFunction<GCounterLong> CRDT_FUNCTION = CrdtFunction.ofDeltaMergable();
+	private static final int KEYS = 1_000;
+	private static final int NODES = 3;
+
+	@ClassRule
+	public static final EventloopRule eventloopRule = new EventloopRule();
+
+	@ClassRule
+	public static final ByteBufRule byteBufRule = new ByteBufRule();
+
+	@Test
+	public void testRepairTransfersOnlyDifferences() throws IOException {
+		NioReactor reactor = getCurrentReactor();
+
+		List<MapCrdtStorage<Integer, GCounterLong>> storages = new ArrayList<>();
+		List<CrdtServer<Integer, GCounterLong>> servers = new ArrayList<>();
+		Map<String, ICrdtStorage<Integer, GCounterLong>> partitions = new LinkedHashMap<>();
+		for (int i = 0; i < NODES; i++) {
+			MapCrdtStorage<Integer, GCounterLong> storage = MapCrdtStorage.create(reactor, CRDT_FUNCTION);
+			for (int key = 0; key < KEYS; key++) {
+				GCounterLong counter = new GCounterLong(NODES);
+				counter.increment(key % NODES);
+				storage.put(new CrdtData<>(key, 1, counter));
+			}
+			storages.add(storage);
+			if (i == 0) {
+				partitions.put("partition_0", storage);
+				continue;
+			}
+			InetSocketAddress address = new InetSocketAddress(getFreePort());
+			CrdtServer<Integer, GCounterLong> server = CrdtServer.builder(reactor, storage, SERIALIZER)
+				.withListenAddresses(address)
+				.build();
+			server.listen();
+			servers.add(server);
+			partitions.put("partition_" + i, RemoteCrdtStorage.create(reactor, address, SERIALIZER));
+		}
+
+		// local partition and one of peers have missed different updates
+		for (int key = 0; key < 5; key++) {
+			increment(storages.get(0), key, 0);
+		}
+		for (int key = 500; key < 503; key++) {
+			increment(storages.get(1), key, 1);
+		}
+
+		ClusterCrdtStorage<Integer, GCounterLong, String> cluster = ClusterCrdtStorage.create(reactor,
+			IDiscoveryService.of(
+				RendezvousPartitionScheme.<String>builder()
+					.withPartitionGroup(RendezvousPartitionGroup.builder(partitions.keySet())
+						.withReplicas(NODES)
+						.build())
+					.withCrdtProvider(partitions::get)
+					.build()),
+			CRDT_FUNCTION);
+		CrdtRepairController<Integer, GCounterLong, String> controller = CrdtRepairController.builder(reactor, cluster, CrdtDataHasher.create(SERIALIZER), "partition_0")
+			.withMerkleTreeDepth(8)
+			.build();
+
+		List<RepairResult> results = await(cluster.start()
+			.then(controller::repair)
+			.then(first -> controller.repair()
+				.map(second -> List.of(first, second)))
+			.whenComplete(() -> servers.forEach(AbstractReactiveServer::close)));
+
+		RepairResult result = results.get(0);
+		assertEquals(2, result.peers());
+		// each peer differs from local partition in at most 8 keys
+		assertTrue(result.differingBuckets() > 0 && result.differingBuckets() <= 2 * 8);
+		assertTrue(result.transferredItems() < KEYS / 10);
+
+		Map<Integer, Long> expected = toValues(storages.get(0));
+		for (int key = 0; key < 5; key++) {
+			assertEquals(2L, expected.get(key).longValue());
+		}
+		for (int key = 500; key < 503; key++) {
+			assertEquals(2L, expected.get(key).longValue());
+		}
+		assertEquals(expected, toValues(storages.get(1)));
+		assertEquals(expected, toValues(storages.get(2)));
+
+		RepairResult secondResult = results.get(1);
+		assertEquals(0, secondResult.differingBuckets());
+		assertEquals(0, secondResult.transferredItems());
+	}
+
+	@Test
+	public void testRepairRemovesDeletedKeys() throws IOException {
+		NioReactor reactor = getCurrentReactor();
+
+		List<MapCrdtStorage<Integer, GCounterLong>> storages = new ArrayList<>();
+		List<CrdtServer<Integer, GCounterLong>> servers = new ArrayList<>();
+		Map<String, ICrdtStorage<Integer, GCounterLong>> partitions = new LinkedHashMap<>();
+		for (int i = 0; i < NODES; i++) {
+			MapCrdtStorage<Integer, GCounterLong> storage = MapCrdtStorage.create(reactor, CRDT_FUNCTION);
+			for (int key = 0; key < KEYS; key++) {
+				GCounterLong counter = new GCounterLong(NODES);
+				counter.increment(key % NODES);
+				storage.put(new CrdtData<>(key, 1, counter));
+			}
+			addPartition(reactor, i, storage, storages, servers, partitions);
+		}
+
+		// local partition and one of peers have missed different removals
+		for (int key = 10; key < 15; key++) {
+			storages.get(0).remove(new CrdtTombstone<>(key, 3));
+		}
+		storages.get(2).remove(new CrdtTombstone<>(700, 3));
+
+		ClusterCrdtStorage<Integer, GCounterLong, String> cluster = createCluster(reactor, partitions, NODES);
+		CrdtRepairController<Integer, GCounterLong, String> controller = CrdtRepairController.builder(reactor, cluster, CrdtDataHasher.create(SERIALIZER), "partition_0")
+			.build();
+
+		// a removal missed by local partition reaches the other peer in the next round
+		List<RepairResult> results = await(cluster.start()
+			.then(controller::repair)
+			.then(first -> controller.repair()
+				.then(second -> controller.repair()
+					.map(third -> List.of(first, second, third))))
+			.whenComplete(() -> servers.forEach(AbstractReactiveServer::close)));
+
+		assertTrue(results.get(0).differingBuckets() > 0);
+		for (MapCrdtStorage<Integer, GCounterLong> storage : storages) {
+			Map<Integer, Long> values = toValues(storage);
+			assertEquals(KEYS - 6, values.size());
+			for (int key = 10; key < 15; key++) {
+				assertFalse(values.containsKey(key));
+			}
+			assertFalse(values.containsKey(700));
+		}
+
+		RepairResult lastResult = results.get(2);
+		assertEquals(0, lastResult.differingBuckets());
+		assertEquals(0, lastResult.transferredItems());
+	}
+
+	@Test
+	public void testRepairComparesOnlySharedKeyRanges() throws IOException {
+		NioReactor reactor = getCurrentReactor();
+		int replicas = 2;
+
+		List<String> ids = new ArrayList<>();
+		for (int i = 0; i < NODES; i++) {
+			ids.add("partition_" + i);
+		}
+		Sharder<Integer> sharder = RendezvousPartitionScheme.<String>builder()
+			.withPartitionGroup(RendezvousPartitionGroup.builder(Set.copyOf(ids))
+				.withReplicas(replicas)
+				.build())
+			.build()
+			.createSharder(ids);
+		assert sharder != null;
+
+		List<MapCrdtStorage<Integer, GCounterLong>> storages = new ArrayList<>();
+		List<CrdtServer<Integer, GCounterLong>> servers = new ArrayList<>();
+		Map<String, ICrdtStorage<Integer, GCounterLong>> partitions = new LinkedHashMap<>();
+		for (int i = 0; i < NODES; i++) {
+			MapCrdtStorage<Integer, GCounterLong> storage = MapCrdtStorage.create(reactor, CRDT_FUNCTION);
+			addPartition(reactor, i, storage, storages, servers, partitions);
+		}
+		for (int key = 0; key < KEYS; key++) {
+			for (int idx : sharder.shard(key)) {
+				GCounterLong counter = new GCounterLong(NODES);
+				counter.increment(key % NODES);
+				storages.get(idx).put(new CrdtData<>(key, 1, counter));
+			}
+		}
+
+		// every replica has missed updates of a few keys
+		for (int key = 0; key < 30; key++) {
+			int[] shards = sharder.shard(key);
+			increment(storages.get(shards[key % shards.length]), key, shards[key % shards.length]);
+		}
+
+		ClusterCrdtStorage<Integer, GCounterLong, String> cluster = createCluster(reactor, partitions, replicas);
+		CrdtRepairController<Integer, GCounterLong, String> controller = CrdtRepairController.builder(reactor, cluster, CrdtDataHasher.create(SERIALIZER), "partition_0")
+			.build();
+
+		RepairResult result = await(cluster.start()
+			.then(controller::repair)
+			.whenComplete(() -> servers.forEach(AbstractReactiveServer::close)));
+		assertTrue(result.transferredItems() < KEYS / 10);
+
+		List<Map<Integer, Long>> values = storages.stream().map(RepairTest::toValues).toList();
+		for (int key = 0; key < KEYS; key++) {
+			int[] shards = sharder.shard(key);
+			// keys are never copied to partitions they are not sharded to
+			for (int idx = 0; idx < NODES; idx++) {
+				int finalIdx = idx;
+				assertEquals(Arrays.stream(shards).anyMatch(shard -> shard == finalIdx), values.get(idx).containsKey(key));
+			}
+			if (Arrays.stream(shards).anyMatch(shard -> shard == 0)) {
+				assertEquals(values.get(shards[0]).get(key), values.get(shards[1]).get(key));
+			}
+		}
+	}
+
+	private static void addPartition(
+		NioReactor reactor, int index, MapCrdtStorage<Integer, GCounterLong> storage,
+		List<MapCrdtStorage<Integer, GCounterLong>> storages, List<CrdtServer<Integer, GCounterLong>> servers,
+		Map<String, ICrdtStorage<Integer, GCounterLong>> partitions
+	) throws IOException {
+		storages.add(storage);
+		if (index == 0) {
+			partitions.put("partition_0", storage);
+			return;
+		}
+		InetSocketAddress address = new InetSocketAddress(getFreePort());
+		CrdtServer<Integer, GCounterLong> server = CrdtServer.builder(reactor, storage, SERIALIZER)
+			.withListenAddresses(address)
+			.build();
+		server.listen();
+		servers.add(server);
+		partitions.put("partition_" + index, RemoteCrdtStorage.create(reactor, address, SERIALIZER));
+	}
+
+	private static ClusterCrdtStorage<Integer, GCounterLong, String> createCluster(
+		NioReactor reactor, Map<String, ICrdtStorage<Integer, GCounterLong>> partitions, int replicas
+	) {
+		return ClusterCrdtStorage.create(reactor,
+			IDiscoveryService.of(
+				RendezvousPartitionScheme.<String>builder()
+					.withPartitionGroup(RendezvousPartitionGroup.builder(partitions.keySet())
+						.withReplicas(replicas)
+						.build())
+					.withCrdtProvider(partitions::get)
+					.build()),
+			CRDT_FUNCTION);
+	}
+
+	private static void increment(MapCrdtStorage<Integer, GCounterLong> storage, int key, int id) {
+		GCounterLong counter = new GCounterLong(NODES);
+		counter.increment(key % NODES);
+		counter.increment(id);
+		storage.put(new CrdtData<>(key, 2, counter));
+	}
+
+	private static Map<Integer, Long> toValues(MapCrdtStorage<Integer, GCounterLong> storage) {
+		Map<Integer, Long> values = new TreeMap<>();
+		storage.iterator().forEachRemaining(data -> values.put(data.getKey(), data.getState().value()));
+		return values;
+	}
+}
@@ -0,0 +1,210 @@
+package io.activej.crdt.storage.local;
+
+import io.activej.common.MemSize;
+import io.activej.crdt.CrdtData;
+import io.activej.crdt.CrdtTombstone;
+import io.activej.crdt.function.CrdtFunction;
+import io.activej.crdt.util.CrdtDataBinarySerializer;
+import io.activej.datastream.consumer.StreamConsumers;
+import io.activej.datastream.consumer.ToListStreamConsumer;
+import io.activej.datastream.supplier.StreamSupplier;
+import io.activej.promise.Promises;
+import io.activej.reactor.Reactor;
+import io.activej.test.rules.EventloopRule;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static io.activej.crdt.function.CrdtFunction.ignoringTimestamp;
+import static io.activej.promise.TestUtils.await;
+import static io.activej.promise.TestUtils.awaitException;
+import static io.activej.reactor.Reactor.getCurrentReactor;
+import static io.activej.serializer.BinarySerializers.*;
+import static org.junit.Assert.*;
+
+public final class OffHeapCrdtStorageTest {
+	private static final CrdtFunction<Set<Integer>> CRDT_FUNCTION = ignoringTimestamp(OffHeapCrdtStorageTest::union);
+	private static final CrdtDataBinarySerializer<Integer, Set<Integer>> SERIALIZER = new CrdtDataBinarySerializer<>(INT_SERIALIZER, ofSet(INT_SERIALIZER));
+
+	@ClassRule
+	public static final EventloopRule eventloopRule = new EventloopRule();
+
+	private OffHeapCrdtStorage<Integer, Set<Integer>> storage;
+	private MapCrdtStorage<Integer, Set<Integer>> reference;
+
+	@Before
+	public void setUp() {
+		Reactor reactor = getCurrentReactor();
+		storage = OffHeapCrdtStorage.builder(reactor, SERIALIZER, CRDT_FUNCTION)
+			.withSegmentSize(MemSize.kilobytes(4))
+			.build();
+		reference = MapCrdtStorage.create(reactor, CRDT_FUNCTION);
+	}
+
+	@Test
+	public void testMatchesMapStorage() {
+		doTestMatchesMapStorage();
+	}
+
+	@Test
+	public void testMatchesMapStorageWithKeyComparator() {
+		storage = OffHeapCrdtStorage.builder(getCurrentReactor(), SERIALIZER, CRDT_FUNCTION)
+			.withSegmentSize(MemSize.kilobytes(4))
+			.withKeyComparator(SerializedKeyComparator.lexicographic())
+			.build();
+		doTestMatchesMapStorage();
+	}
+
+	private void doTestMatchesMapStorage() {
+		Random random = new Random(0);
+		for (int i = 0; i < 10_000; i++) {
+			int key = random.nextInt(1_000);
+			long timestamp = random.nextInt(100);
+			if (random.nextInt(10) == 0) {
+				CrdtTombstone<Integer> tombstone = new CrdtTombstone<>(key, timestamp);
+				assertEquals(reference.remove(tombstone), storage.remove(tombstone));
+			} else {
+				CrdtData<Integer, Set<Integer>> data = new CrdtData<>(key, timestamp, Set.of(random.nextInt(100)));
+				reference.put(data);
+				storage.put(data);
+			}
+		}
+
+		for (int key = 0; key < 1_000; key++) {
+			assertEquals(reference.get(key), storage.get(key));
+		}
+		assertEquals(toList(reference.iterator()), toList(storage.iterator()));
+		assertEquals(toList(reference.iterator(50)), toList(storage.iterator(50)));
+	}
+
+	@Test
+	public void testDownloadIsSnapshot() {
+		for (int i = 0; i < 100; i++) {
+			storage.put(new CrdtData<>(i, 1, Set.of(i)));
+		}
+		StreamSupplier<CrdtData<Integer, Set<Integer>>> supplier = await(storage.download());
+
+		for (int i = 0; i < 200; i++) {
+			storage.put(new CrdtData<>(i, 2, Set.of(-i)));
+		}
+
+		List<CrdtData<Integer, Set<Integer>>> downloaded = await(supplier.toList());
+		assertEquals(IntStream.range(0, 100).mapToObj(i -> new CrdtData<>(i, 1, Set.of(i))).toList(), downloaded);
+
+		assertEquals(Set.of(5, -5), storage.get(5));
+		assertEquals(Set.of(-150), storage.get(150));
+	}
+
+	@Test
+	public void testTake() {
+		for (int i = 0; i < 100; i++) {
+			storage.put(new CrdtData<>(i, 1, Set.of(i)));
+		}
+		StreamSupplier<CrdtData<Integer, Set<Integer>>> taken = await(storage.take());
+		assertNull(storage.get(0));
+
+		storage.put(new CrdtData<>(0, 2, Set.of(1000)));
+		storage.remove(new CrdtTombstone<>(1, 2));
+
+		List<CrdtData<Integer, Set<Integer>>> downloaded = await(await(storage.download()).toList());
+		assertEquals(99, downloaded.size());
+		assertEquals(new CrdtData<>(0, 2, Set.of(1000)), downloaded.get(0));
+		assertEquals(2, (int) downloaded.get(1).getKey());
+
+		assertEquals(100, await(taken.toList()).size());
+		assertEquals(List.of(new CrdtData<>(0, 2, Set.of(1000))), await(await(storage.download()).toList()));
+	}
+
+	@Test
+	public void testFailedTakeRestoresData() {
+		for (int i = 0; i < 100; i++) {
+			storage.put(new CrdtData<>(i, 1, Set.of(i)));
+		}
+		StreamSupplier<CrdtData<Integer, Set<Integer>>> taken = await(storage.take());
+		storage.put(new CrdtData<>(0, 2, Set.of(1000)));
+
+		Exception exception = new Exception("Test");
+		awaitException(taken.streamTo(StreamConsumers.closingWithError(exception)));
+
+		assertEquals(Set.of(0, 1000), storage.get(0));
+		assertEquals(Set.of(99), storage.get(99));
+		assertEquals(100, await(await(storage.download()).toList()).size());
+	}
+
+	@Test
+	public void testGrowingStates() {
+		for (int i = 0; i < 1_000; i++) {
+			storage.put(new CrdtData<>(i % 10, i, Set.of(i)));
+		}
+		for (int key = 0; key < 10; key++) {
+			int k = key;
+			assertEquals(IntStream.range(0, 1_000).filter(i -> i % 10 == k).boxed().collect(Collectors.toSet()), storage.get(key));
+		}
+		ToListStreamConsumer<CrdtData<Integer, Set<Integer>>> consumer = ToListStreamConsumer.create();
+		await(await(storage.download(995)).streamTo(consumer));
+		assertEquals(List.of(5, 6, 7, 8, 9), consumer.getList().stream().map(CrdtData::getKey).toList());
+	}
+
+	@Test
+	public void testUnstartedDownloadReleasesSnapshot() {
+		storage = OffHeapCrdtStorage.builder(getCurrentReactor(), SERIALIZER, CRDT_FUNCTION)
+			.withSegmentSize(MemSize.kilobytes(4))
+			.withDownloadStartTimeout(Duration.ofMillis(10))
+			.build();
+		for (int i = 0; i < 100; i++) {
+			storage.put(new CrdtData<>(i, 1, Set.of(i)));
+		}
+		StreamSupplier<CrdtData<Integer, Set<Integer>>> supplier = await(storage.download());
+		assertEquals(1, storage.getActiveSnapshots());
+
+		await(Promises.delay(Duration.ofMillis(50)));
+		assertEquals(0, storage.getActiveSnapshots());
+		awaitException(supplier.toList());
+	}
+
+	@Test
+	public void testMemoryIsReused() {
+		storage = OffHeapCrdtStorage.builder(getCurrentReactor(), SERIALIZER, ignoringTimestamp((first, second) -> second))
+			.withSegmentSize(MemSize.kilobytes(4))
+			.build();
+		for (int i = 0; i < 100; i++) {
+			storage.put(new CrdtData<>(i, 1, Set.of(i)));
+		}
+		StreamSupplier<CrdtData<Integer, Set<Integer>>> supplier = await(storage.download());
+		for (int i = 0; i < 100; i++) {
+			storage.put(new CrdtData<>(i, 2, Set.of(-i)));
+		}
+		assertEquals(0, storage.getFreeBytes());
+		await(supplier.toList());
+		assertEquals(0, storage.getActiveSnapshots());
+		assertTrue(storage.getFreeBytes() > 0);
+
+		long allocatedBytes = storage.getAllocatedBytes();
+		for (int round = 0; round < 100; round++) {
+			StreamSupplier<CrdtData<Integer, Set<Integer>>> concurrent = await(storage.download());
+			for (int i = 0; i < 100; i++) {
+				storage.put(new CrdtData<>(i, round + 3, Set.of(round)));
+			}
+			await(concurrent.toList());
+		}
+		assertEquals(allocatedBytes, storage.getAllocatedBytes());
+		assertEquals(Set.of(99), storage.get(0));
+	}
+
+	private static <T> List<T> toList(Iterator<T> iterator) {
+		List<T> list = new ArrayList<>();
+		iterator.forEachRemaining(list::add);
+		return list;
+	}
+
+	private static Set<Integer> union(Set<Integer> first, Set<Integer> second) {
+		Set<Integer> result = new HashSet<>(first);
+		result.addAll(second);
+		return result;
+	}
+}
@@ -0,0 +1,301 @@
+package io.activej.crdt.storage.lsm;
+
+import io.activej.common.MemSize;
+import io.activej.crdt.CrdtData;
+import io.activej.crdt.CrdtTombstone;
+import io.activej.crdt.function.CrdtFunction;
+import io.activej.crdt.storage.local.MapCrdtStorage;
+import io.activej.crdt.util.CrdtDataBinarySerializer;
+import io.activej.datastream.consumer.StreamConsumers;
+import io.activej.datastream.supplier.StreamSupplier;
+import io.activej.datastream.supplier.StreamSuppliers;
+import io.activej.promise.Promise;
+import io.activej.promise.Promises;
+import io.activej.reactor.Reactor;
+import io.activej.test.rules.EventloopRule;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static io.activej.crdt.function.CrdtFunction.ignoringTimestamp;
+import static io.activej.promise.TestUtils.await;
+import static io.activej.reactor.Reactor.getCurrentReactor;
+import static io.activej.serializer.BinarySerializers.INT_SERIALIZER;
+import static io.activej.serializer.BinarySerializers.ofSet;
+import static org.junit.Assert.*;
+
+public final class LsmCrdtStorageTest {
+	private static final CrdtFunction<Set<Integer>> CRDT_FUNCTION = ignoringTimestamp(LsmCrdtStorageTest::union);
+	private static final CrdtDataBinarySerializer<Integer, Set<Integer>> SERIALIZER = new CrdtDataBinarySerializer<>(INT_SERIALIZER, ofSet(INT_SERIALIZER));
+
+	@ClassRule
+	public static final EventloopRule eventloopRule = new EventloopRule();
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+	private Path path;
+	private LsmCrdtStorage<Integer, Set<Integer>> storage;
+
+	@Before
+	public void setUp() throws IOException {
+		path = temporaryFolder.newFolder().toPath();
+		storage = createStorage();
+		await(storage.start());
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testMatchesMapStorage() {
+		MapCrdtStorage<Integer, Set<Integer>> reference = MapCrdtStorage.create(getCurrentReactor(), CRDT_FUNCTION);
+		Random random = new Random(0);
+		List<Promise<Void>> writes = new ArrayList<>();
+		for (int i = 0; i < 5_000; i++) {
+			int key = random.nextInt(500);
+			long timestamp = i + 1;
+			if (random.nextInt(10) == 0) {
+				CrdtTombstone<Integer> tombstone = new CrdtTombstone<>(key, timestamp);
+				reference.remove(tombstone);
+				writes.add(storage.remove(tombstone));
+			} else {
+				CrdtData<Integer, Set<Integer>> data = new CrdtData<>(key, timestamp, Set.of(random.nextInt(100)));
+				reference.put(data);
+				writes.add(storage.put(data));
+			}
+		}
+		await(Promises.all(writes));
+		await(storage.compact());
+
+		assertTrue(storage.getLevelTables().stream().skip(1).anyMatch(level -> !level.isEmpty()));
+		List<Set<Integer>> expected = IntStream.range(0, 500).mapToObj(reference::get).toList();
+		assertEquals(expected, getAll(IntStream.range(0, 500)));
+		assertEquals(toList(reference.download()), toList(storage.download()));
+		assertEquals(toList(reference.download(2_500)), toList(storage.download(2_500)));
+	}
+
+	@Test
+	public void testLevelsDoNotOverlap() {
+		await(Promises.all(IntStream.range(0, 10_000)
+			.mapToObj(i -> storage.put(new CrdtData<>(i * 7919 % 10_000, 1, Set.of(i))))));
+		await(storage.flush());
+		await(storage.compact());
+
+		List<List<SSTable<Integer, Set<Integer>>>> levels = storage.getLevelTables();
+		assertTrue(levels.get(0).size() < 4);
+		for (int i = 1; i < levels.size(); i++) {
+			List<SSTable<Integer, Set<Integer>>> level = levels.get(i);
+			for (int j = 1; j < level.size(); j++) {
+				assertTrue(level.get(j - 1).getMaxKey() < level.get(j).getMinKey());
+			}
+		}
+		assertEquals(10_000, toList(storage.download()).size());
+	}
+
+	@Test
+	public void testRemoveHidesDataInDeeperLevels() {
+		await(StreamSuppliers.ofStream(IntStream.range(0, 1_000).mapToObj(i -> new CrdtData<>(i, 1, Set.of(i))))
+			.streamTo(storage.upload()));
+		await(storage.flush());
+		await(storage.compact());
+
+		await(StreamSuppliers.ofStream(IntStream.range(0, 1_000).filter(i -> i % 2 == 0).mapToObj(i -> new CrdtTombstone<>(i, 2)))
+			.streamTo(storage.remove()));
+		await(storage.flush());
+
+		assertNull(await(storage.get(0)));
+		assertEquals(Set.of(1), await(storage.get(1)));
+
+		List<Integer> keys = toList(storage.download()).stream().map(CrdtData::getKey).toList();
+		assertEquals(IntStream.range(0, 1_000).filter(i -> i % 2 == 1).boxed().toList(), keys);
+
+		// newer data is not hidden by an older tombstone
+		await(storage.put(new CrdtData<>(0, 3, Set.of(100))));
+		await(storage.flush());
+		assertEquals(Set.of(100), await(storage.get(0)));
+	}
+
+	@Test
+	public void testTombstonesAreKeptAtBottomLevel() {
+		removeAndCompactToBottom();
+
+		// late data with an older timestamp is not resurrected
+		await(storage.put(new CrdtData<>(0, 3, Set.of(100))));
+		await(storage.flush());
+		assertNull(await(storage.get(0)));
+	}
+
+	@Test
+	public void testTombstonesAreDroppedAfterGracePeriod() {
+		storage = LsmCrdtStorage.builder(getCurrentReactor(), executor, path, SERIALIZER, CRDT_FUNCTION)
+			.withMemtableSize(MemSize.kilobytes(1))
+			.withBlockSize(MemSize.bytes(256))
+			.withTargetTableSize(MemSize.kilobytes(4))
+			.withBaseLevelSize(MemSize.kilobytes(16))
+			.withLevel0CompactionTrigger(4)
+			.withTombstoneGracePeriod(Duration.ofMinutes(1))
+			.build();
+		await(storage.start());
+		removeAndCompactToBottom();
+
+		await(storage.put(new CrdtData<>(0, 3, Set.of(100))));
+		await(storage.flush());
+		assertEquals(Set.of(100), await(storage.get(0)));
+	}
+
+	private void removeAndCompactToBottom() {
+		await(StreamSuppliers.ofStream(IntStream.range(0, 100).mapToObj(i -> new CrdtData<>(i, 1, Set.of(i))))
+			.streamTo(storage.upload()));
+		await(StreamSuppliers.ofStream(IntStream.range(0, 100).mapToObj(i -> new CrdtTombstone<>(i, 5)))
+			.streamTo(storage.remove()));
+		await(storage.flush());
+		// push the tables with tombstones out of level 0
+		for (int i = 0; i < 4; i++) {
+			int offset = 1_000 + i * 1_000;
+			await(StreamSuppliers.ofStream(IntStream.range(offset, offset + 300).mapToObj(k -> new CrdtData<>(k, 1, Set.of(k))))
+				.streamTo(storage.upload()));
+			await(storage.flush());
+		}
+		await(storage.compact());
+		assertNull(await(storage.get(0)));
+	}
+
+	@Test
+	public void testStopWaitsForCompaction() {
+		await(Promises.all(IntStream.range(0, 10_000)
+			.mapToObj(i -> storage.put(new CrdtData<>(i * 7919 % 10_000, 1, Set.of(i))))));
+		await(storage.flush());
+
+		Promise<Void> compaction = storage.compact();
+		await(storage.stop());
+		assertTrue(compaction.isComplete());
+
+		storage = createStorage();
+		await(storage.start());
+		assertEquals(10_000, toList(storage.download()).size());
+	}
+
+	@Test
+	public void testGetSkipsTablesByBloomFilter() {
+		await(Promises.all(IntStream.range(0, 1_000)
+			.mapToObj(i -> storage.put(new CrdtData<>(i * 2, 1, Set.of(i))))));
+		await(storage.flush());
+
+		assertTrue(getAll(IntStream.range(0, 1_000).map(i -> i * 2 + 1)).stream().allMatch(Objects::isNull));
+		assertTrue(storage.getTablesSkippedByBloomFilter().getTotalCount() > storage.getTablesRead().getTotalCount());
+	}
+
+	@Test
+	public void testTake() {
+		await(Promises.all(IntStream.range(0, 1_000)
+			.mapToObj(i -> storage.put(new CrdtData<>(i, 1, Set.of(i))))));
+
+		StreamSupplier<CrdtData<Integer, Set<Integer>>> supplier = await(storage.take());
+		await(storage.put(new CrdtData<>(1_000, 1, Set.of(1_000))));
+		assertEquals(1_000, await(supplier.toList()).size());
+
+		await();
+
+		assertEquals(List.of(new CrdtData<>(1_000, 1, Set.of(1_000))), toList(storage.download()));
+		assertEquals(0, countFiles(SSTable.EXTENSION));
+	}
+
+	@Test
+	public void testTakeFailureRestoresData() {
+		await(Promises.all(IntStream.range(0, 1_000)
+			.mapToObj(i -> storage.put(new CrdtData<>(i, 1, Set.of(i))))));
+
+		StreamSupplier<CrdtData<Integer, Set<Integer>>> supplier = await(storage.take());
+		Exception exception = new Exception("Test");
+		supplier.streamTo(StreamConsumers.closingWithError(exception));
+		await();
+
+		assertEquals(1_000, toList(storage.download()).size());
+		assertEquals(Set.of(0), await(storage.get(0)));
+	}
+
+	@Test
+	public void testRecovery() {
+		await(Promises.all(IntStream.range(0, 1_000)
+			.mapToObj(i -> storage.put(new CrdtData<>(i, 1, Set.of(i))))));
+		await(storage.remove(new CrdtTombstone<>(5, 2)));
+		List<CrdtData<Integer, Set<Integer>>> expected = toList(storage.download());
+		await(storage.stop());
+
+		storage = createStorage();
+		await(storage.start());
+
+		assertEquals(expected, toList(storage.download()));
+		assertNull(await(storage.get(5)));
+		assertEquals(Set.of(6), await(storage.get(6)));
+	}
+
+	@Test
+	public void testRecoveryIgnoresTornLogRecord() throws IOException {
+		await(storage.put(new CrdtData<>(1, 1, Set.of(1))));
+		await(storage.put(new CrdtData<>(2, 1, Set.of(2))));
+		await(storage.stop());
+
+		Path log;
+		try (Stream<Path> files = Files.list(path)) {
+			log = files.filter(file -> file.toString().endsWith(MemtableLog.EXTENSION)).findFirst().orElseThrow();
+		}
+		byte[] bytes = Files.readAllBytes(log);
+		Files.write(log, Arrays.copyOf(bytes, bytes.length - 1));
+
+		storage = createStorage();
+		await(storage.start());
+
+		assertEquals(List.of(new CrdtData<>(1, 1, Set.of(1))), toList(storage.download()));
+	}
+
+	private LsmCrdtStorage<Integer, Set<Integer>> createStorage() {
+		Reactor reactor = getCurrentReactor();
+		return LsmCrdtStorage.builder(reactor, executor, path, SERIALIZER, CRDT_FUNCTION)
+			.withMemtableSize(MemSize.kilobytes(1))
+			.withBlockSize(MemSize.bytes(256))
+			.withTargetTableSize(MemSize.kilobytes(4))
+			.withBaseLevelSize(MemSize.kilobytes(16))
+			.withLevel0CompactionTrigger(4)
+			.build();
+	}
+
+	private List<Set<Integer>> getAll(IntStream keys) {
+		return await(Promises.toList(keys.mapToObj(storage::get)));
+	}
+
+	private long countFiles(String extension) {
+		try (Stream<Path> files = Files.list(path)) {
+			return files.filter(file -> file.toString().endsWith(extension)).count();
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private static <K extends Comparable<K>, S> List<CrdtData<K, S>> toList(Promise<StreamSupplier<CrdtData<K, S>>> supplier) {
+		return await(await(supplier).toList());
+	}
+
+	private static Set<Integer> union(Set<Integer> first, Set<Integer> second) {
+		return Stream.concat(first.stream(), second.stream()).collect(Collectors.toSet());
+	}
+}
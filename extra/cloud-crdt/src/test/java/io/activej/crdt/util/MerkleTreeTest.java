@@ -0,0 +1,76 @@
+package io.activej.crdt.util;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MerkleTreeTest {
+
+	@Test
+	public void testDiff() {
+		Random random = new Random(0);
+		MerkleTree first = MerkleTree.create(10);
+		MerkleTree second = MerkleTree.create(10);
+
+		// the same entries added in a different order
+		long[] keyHashes = random.longs(10_000).toArray();
+		for (long keyHash : keyHashes) {
+			first.add(keyHash, keyHash * 31);
+		}
+		for (int i = keyHashes.length - 1; i >= 0; i--) {
+			second.add(keyHashes[i], keyHashes[i] * 31);
+		}
+		assertEquals(first.getRootHash(), second.getRootHash());
+		assertTrue(first.diff(second).isEmpty());
+
+		BitSet expected = new BitSet();
+		for (int i = 0; i < 10; i++) {
+			long keyHash = random.nextLong();
+			second.add(keyHash, random.nextLong());
+			expected.set(MerkleTree.bucketOf(keyHash, 10));
+		}
+		assertNotEquals(first.getRootHash(), second.getRootHash());
+		assertEquals(expected, first.diff(second));
+		assertEquals(expected, second.diff(first));
+
+		MerkleTree copy = MerkleTree.of(10, second.getLeaves().clone());
+		assertEquals(second, copy);
+		assertTrue(second.diff(copy).isEmpty());
+	}
+
+	@Test
+	public void testZeroDepth() {
+		MerkleTree first = MerkleTree.create(0);
+		MerkleTree second = MerkleTree.create(0);
+		assertTrue(first.diff(second).isEmpty());
+
+		first.add(1, 2);
+		BitSet expected = new BitSet();
+		expected.set(0);
+		assertEquals(expected, first.diff(second));
+	}
+
+	@Test
+	public void testSubtrees() {
+		Random random = new Random(0);
+		MerkleTree tree = MerkleTree.create(6);
+		for (int i = 0; i < 1_000; i++) {
+			tree.add(random.nextLong(), random.nextLong());
+		}
+
+		BitSet subtrees = new BitSet();
+		subtrees.set(1);
+		subtrees.set(2);
+		long[] leaves = tree.getLeaves(4, subtrees);
+		assertEquals(2 * 16, leaves.length);
+
+		MerkleTree partial = MerkleTree.ofSubtrees(6, 4, subtrees, leaves);
+		BitSet expected = new BitSet();
+		expected.set(0, 16);
+		expected.set(48, 64);
+		assertEquals(expected, tree.diff(partial));
+	}
+}
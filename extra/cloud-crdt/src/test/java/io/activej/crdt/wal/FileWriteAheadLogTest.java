@@ -1,5 +1,6 @@
 package io.activej.crdt.wal;
 
+import io.activej.common.MemSize;
 import io.activej.crdt.CrdtData;
 import io.activej.crdt.function.CrdtFunction;
 import io.activej.crdt.primitives.GSet;
@@ -24,6 +25,7 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -33,16 +35,20 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static io.activej.common.collection.CollectionUtils.first;
+import static io.activej.crdt.wal.FileWriteAheadLog.EXT_CURRENT;
 import static io.activej.crdt.wal.FileWriteAheadLog.EXT_FINAL;
 import static io.activej.crdt.wal.FileWriteAheadLog.FRAME_FORMAT;
 import static io.activej.promise.TestUtils.await;
 import static io.activej.reactor.Reactor.getCurrentReactor;
 import static io.activej.serializer.BinarySerializers.INT_SERIALIZER;
 import static io.activej.serializer.BinarySerializers.LONG_SERIALIZER;
+import static java.nio.file.StandardOpenOption.READ;
 import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
 import static org.junit.Assert.*;
 
@@ -297,6 +303,206 @@ public class FileWriteAheadLogTest {
 		assertEquals(expected, actual);
 	}
 
+	@Test
+	public void groupCommit() {
+		wal = FileWriteAheadLog.builder(getCurrentReactor(), executor, path, serializer, uploader)
+			.withCurrentTimeProvider(getCurrentReactor())
+			.withGroupCommit(Duration.ZERO)
+			.build();
+		await(wal.start());
+		long now = getCurrentReactor().currentTimeMillis();
+		List<CrdtData<Long, GSet<Integer>>> expected = List.of(
+			new CrdtData<>(1L, now, GSet.of(1, 2, 3, 6, 9, 10, 11)),
+			new CrdtData<>(2L, now, GSet.of(-12, 0, 2, 3, 100, 200))
+		);
+		await(
+			wal.put(1L, GSet.of(1, 2, 3)),
+			wal.put(2L, GSet.of(-12, 0, 200)),
+			wal.put(1L, GSet.of(1, 6)),
+			wal.put(2L, GSet.of(2, 3, 100)),
+			wal.put(1L, GSet.of(9, 10, 11))
+		);
+		assertEquals(1, wal.getTotalSyncs().getTotalCount());
+		assertEquals(5, wal.getGroupCommitSize().getLastValue());
+
+		await(wal.flush());
+
+		List<CrdtData<Long, GSet<Integer>>> actual = await(await(storage.download()).toList());
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void groupCommitRotatesSegments() throws IOException {
+		wal = FileWriteAheadLog.builder(getCurrentReactor(), executor, path, serializer, FileWriteAheadLog.FlushMode.ROTATE_FILE)
+			.withCurrentTimeProvider(TestCurrentTimeProvider.ofTimeSequence(100, 10))
+			.withGroupCommit(Duration.ofMillis(1))
+			.withSegmentSize(MemSize.bytes(64))
+			.build();
+		await(wal.start());
+		await(Promises.sequence(IntStream.range(0, 10)
+				.mapToObj(i -> () -> wal.put((long) i, GSet.of(i, i + 1, i + 2))))
+			.then(wal::flush));
+
+		List<Path> walFiles;
+		try (Stream<Path> list = Files.list(path)) {
+			walFiles = list.filter(file -> file.toString().endsWith(EXT_FINAL)).collect(toList());
+		}
+		assertTrue(walFiles.size() > 1);
+		for (Path walFile : walFiles) {
+			assertTrue(Files.size(walFile) <= 64);
+		}
+
+		await(uploader.uploadToStorage());
+		List<CrdtData<Long, GSet<Integer>>> actual = await(await(storage.download()).toList());
+		assertEquals(10, actual.size());
+	}
+
+	@Test
+	public void groupCommitReusesSegmentAcrossFlushes() throws IOException {
+		wal = FileWriteAheadLog.builder(getCurrentReactor(), executor, path, serializer, uploader)
+			.withCurrentTimeProvider(TestCurrentTimeProvider.ofTimeSequence(100, 10))
+			.withGroupCommit(Duration.ZERO)
+			.build();
+		await(wal.start());
+
+		await(wal.put(1L, GSet.of(1, 2)));
+		await(wal.flush());
+		Set<Path> files;
+		try (Stream<Path> list = Files.list(path)) {
+			files = list.collect(toSet());
+		}
+		assertEquals(1, files.size());
+		assertTrue(first(files).toString().endsWith(EXT_CURRENT));
+
+		await(wal.put(1L, GSet.of(3)));
+		await(wal.put(2L, GSet.of(4)));
+		await(wal.flush());
+		try (Stream<Path> list = Files.list(path)) {
+			assertEquals(files, list.collect(toSet()));
+		}
+		assertEquals(2, wal.getTotalFlushes().getTotalCount());
+
+		List<CrdtData<Long, GSet<Integer>>> actual = await(await(storage.download()).toList());
+		assertEquals(List.of(
+			new CrdtData<>(1L, 110, GSet.of(1, 2, 3)),
+			new CrdtData<>(2L, 120, GSet.of(4))
+		), actual);
+
+		await(wal.stop());
+		try (Stream<Path> list = Files.list(path)) {
+			assertEquals(0, list.count());
+		}
+	}
+
+	@Test
+	public void groupCommitLargerThanSegment() {
+		wal = FileWriteAheadLog.builder(getCurrentReactor(), executor, path, serializer, FileWriteAheadLog.FlushMode.ROTATE_FILE)
+			.withCurrentTimeProvider(TestCurrentTimeProvider.ofTimeSequence(100, 10))
+			.withGroupCommit(Duration.ZERO)
+			.withSegmentSize(MemSize.bytes(64))
+			.build();
+		await(wal.start());
+		await(Promises.all(IntStream.range(0, 10)
+				.mapToObj(i -> wal.put((long) i, GSet.of(i, i + 1, i + 2))))
+			.then(wal::flush));
+		assertEquals(1, wal.getTotalSyncs().getTotalCount());
+
+		await(uploader.uploadToStorage());
+		List<CrdtData<Long, GSet<Integer>>> actual = await(await(storage.download()).toList());
+		assertEquals(10, actual.size());
+	}
+
+	@Test
+	public void groupCommitUploadsSegmentLargerThanReadChunk() {
+		wal = FileWriteAheadLog.builder(getCurrentReactor(), executor, path, serializer, uploader)
+			.withCurrentTimeProvider(getCurrentReactor())
+			.withGroupCommit(Duration.ZERO)
+			.build();
+		await(wal.start());
+		int keys = 5_000;
+		await(Promises.all(IntStream.range(0, keys)
+				.mapToObj(i -> wal.put((long) i, GSet.of(IntStream.range(i, i + 10).boxed().toArray(Integer[]::new)))))
+			.then(wal::flush));
+
+		List<CrdtData<Long, GSet<Integer>>> actual = await(await(storage.download()).toList());
+		assertEquals(keys, actual.size());
+		assertEquals(GSet.of(IntStream.range(keys - 1, keys + 9).boxed().toArray(Integer[]::new)), actual.get(keys - 1).getState());
+	}
+
+	@Test
+	public void groupCommitRecoversTornSegment() throws IOException {
+		FileWriteAheadLog<Long, GSet<Integer>> crashedWal = FileWriteAheadLog.builder(getCurrentReactor(), executor, path, serializer, uploader)
+			.withCurrentTimeProvider(TestCurrentTimeProvider.ofTimeSequence(100, 10))
+			.withGroupCommit(Duration.ZERO)
+			.build();
+		await(crashedWal.start());
+		await(crashedWal.put(1L, GSet.of(1, 2, 3)));
+		await(crashedWal.put(2L, GSet.of(4, 5, 6)));
+
+		Path segmentFile;
+		try (Stream<Path> list = Files.list(path)) {
+			segmentFile = first(list.collect(toSet()));
+		}
+		assertTrue(Files.size(segmentFile) >= FileWriteAheadLog.DEFAULT_SEGMENT_SIZE.toLong());
+
+		// corrupt a payload of the second record, as if it was torn by a crash
+		try (FileChannel channel = FileChannel.open(segmentFile, READ, WRITE)) {
+			ByteBuffer header = ByteBuffer.allocate(4);
+			channel.read(header, WalSegment.HEADER_SIZE);
+			int secondRecord = WalSegment.HEADER_SIZE + WalSegment.RECORD_HEADER_SIZE + header.flip().getInt();
+			channel.write(ByteBuffer.wrap(new byte[]{42, 42}), secondRecord + WalSegment.RECORD_HEADER_SIZE);
+		}
+
+		await(wal.start());
+
+		List<CrdtData<Long, GSet<Integer>>> actual = await(await(storage.download()).toList());
+		assertEquals(List.of(new CrdtData<>(1L, 100, GSet.of(1, 2, 3))), actual);
+	}
+
+	@Test
+	public void groupCommitDoesNotReuploadAfterCrash() {
+		CrdtDataBinarySerializer<Long, Long> sumSerializer = new CrdtDataBinarySerializer<>(LONG_SERIALIZER, LONG_SERIALIZER);
+		CrdtFunction<Long> sum = new CrdtFunction<>() {
+			@Override
+			public Long merge(Long first, long firstTimestamp, Long second, long secondTimestamp) {
+				return first + second;
+			}
+
+			@Override
+			public Long extract(Long state, long timestamp) {
+				return state;
+			}
+		};
+		Reactor reactor = getCurrentReactor();
+		FileSystem storageFS = FileSystem.create(reactor, executor, temporaryFolder.getRoot().toPath().resolve("sum"));
+		await(storageFS.start());
+		ICrdtStorage<Long, Long> sumStorage = FileSystemCrdtStorage.create(reactor, storageFS, sumSerializer, sum);
+		WalUploader<Long, Long> sumUploader = WalUploader.create(reactor, executor, path, sum, sumSerializer, sumStorage);
+
+		FileWriteAheadLog<Long, Long> crashedWal = FileWriteAheadLog.builder(reactor, executor, path, sumSerializer, sumUploader)
+			.withCurrentTimeProvider(TestCurrentTimeProvider.ofTimeSequence(100, 10))
+			.withGroupCommit(Duration.ZERO)
+			.build();
+		await(crashedWal.start());
+		await(crashedWal.put(1L, 5L));
+		await(crashedWal.flush());
+		await(crashedWal.put(1L, 7L));
+		await(crashedWal.put(2L, 1L));
+
+		// crashed wal is never stopped, its open segment is replayed on a startup
+		FileWriteAheadLog<Long, Long> restartedWal = FileWriteAheadLog.builder(reactor, executor, path, sumSerializer, sumUploader)
+			.withCurrentTimeProvider(reactor)
+			.withGroupCommit(Duration.ZERO)
+			.build();
+		await(restartedWal.start());
+
+		List<CrdtData<Long, Long>> actual = await(await(sumStorage.download()).toList());
+		assertEquals(List.of(
+			new CrdtData<>(1L, 110, 12L),
+			new CrdtData<>(2L, 120, 1L)
+		), actual);
+	}
+
 	@SafeVarargs
 	private Path craftWALFile(CrdtData<Long, GSet<Integer>>... mockData) {
 		Path file = path.resolve(UUID.randomUUID() + EXT_FINAL);
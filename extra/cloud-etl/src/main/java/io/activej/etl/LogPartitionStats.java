@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2024 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.etl;
+
+import io.activej.jmx.api.JmxRefreshable;
+import io.activej.jmx.api.attribute.JmxAttribute;
+import io.activej.jmx.stats.ValueStats;
+import io.activej.multilog.LogPosition;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+
+/**
+ * Stats of reading a single log partition by {@link LogProcessor}.
+ * <p>
+ * A lag of a partition is the time passed since the start of the last processing
+ * run which has read the partition up to its end. Every log item written
+ * before that moment has already been processed.
+ */
+public final class LogPartitionStats implements JmxRefreshable {
+	private final ValueStats readTime;
+
+	private @Nullable LogPosition position;
+	private long caughtUpTimestamp;
+	private long lastTimestamp;
+
+	private LogPartitionStats(Duration smoothingWindow) {
+		this.readTime = ValueStats.builder(smoothingWindow)
+			.withUnit("milliseconds")
+			.build();
+	}
+
+	public static LogPartitionStats create(Duration smoothingWindow) {
+		return new LogPartitionStats(smoothingWindow);
+	}
+
+	void onRead(long startTimestamp, long endTimestamp, LogPosition position) {
+		readTime.recordValue(endTimestamp - startTimestamp);
+		this.position = position;
+		this.caughtUpTimestamp = startTimestamp;
+	}
+
+	@Override
+	public void refresh(long timestamp) {
+		readTime.refresh(timestamp);
+		lastTimestamp = timestamp;
+	}
+
+	@JmxAttribute
+	public ValueStats getReadTime() {
+		return readTime;
+	}
+
+	@JmxAttribute
+	public @Nullable Duration getLag() {
+		if (caughtUpTimestamp == 0 || lastTimestamp == 0) return null;
+		return Duration.ofMillis(Math.max(lastTimestamp - caughtUpTimestamp, 0));
+	}
+
+	@JmxAttribute
+	public @Nullable String getPosition() {
+		return position != null ? position.toString() : null;
+	}
+}
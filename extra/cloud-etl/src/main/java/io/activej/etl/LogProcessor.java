@@ -19,12 +19,14 @@ package io.activej.etl;
 import io.activej.async.AsyncAccumulator;
 import io.activej.async.function.AsyncSupplier;
 import io.activej.async.service.ReactiveService;
+import io.activej.common.builder.AbstractBuilder;
 import io.activej.datastream.consumer.StreamConsumerWithResult;
 import io.activej.datastream.processor.StreamUnion;
 import io.activej.datastream.stats.BasicStreamStats;
 import io.activej.datastream.stats.DetailedStreamStats;
 import io.activej.datastream.stats.StreamStats;
 import io.activej.datastream.supplier.StreamSupplierWithResult;
+import io.activej.datastream.supplier.StreamSuppliers;
 import io.activej.jmx.api.attribute.JmxAttribute;
 import io.activej.jmx.api.attribute.JmxOperation;
 import io.activej.multilog.IMultilog;
@@ -63,12 +65,15 @@ public final class LogProcessor<T, P, D> extends AbstractReactive
 
 	private final StateManager<?, LogState<D, ?>> stateManager;
 
+	private List<ReadWorker<T>> readWorkers = List.of();
+
 	// JMX
 	private boolean enabled = true;
 	private boolean detailed;
 	private final BasicStreamStats<T> streamStatsBasic = StreamStats.basic();
 	private final DetailedStreamStats<T> streamStatsDetailed = StreamStats.detailed();
 	private final PromiseStats promiseProcessLog = PromiseStats.create(Duration.ofMinutes(5));
+	private final Map<String, LogPartitionStats> partitionStats = new HashMap<>();
 
 	private LogProcessor(
 		Reactor reactor, IMultilog<T> multilog, ILogDataConsumer<T, P> logStreamConsumer, String log,
@@ -85,9 +90,42 @@ public final class LogProcessor<T, P, D> extends AbstractReactive
 	public static <T, P, D, S extends OTState<D>> LogProcessor<T, P, D> create(
 		Reactor reactor, IMultilog<T> multilog, ILogDataConsumer<T, P> logStreamConsumer, String log,
 		List<String> partitions, StateManager<LogDiff<D>, LogState<D, S>> stateManager
+	) {
+		return builder(reactor, multilog, logStreamConsumer, log, partitions, stateManager).build();
+	}
+
+	public static <T, P, D, S extends OTState<D>> LogProcessor<T, P, D>.Builder builder(
+		Reactor reactor, IMultilog<T> multilog, ILogDataConsumer<T, P> logStreamConsumer, String log,
+		List<String> partitions, StateManager<LogDiff<D>, LogState<D, S>> stateManager
 	) {
 		//noinspection unchecked
-		return new LogProcessor<>(reactor, multilog, logStreamConsumer, log, partitions, (StateManager) stateManager);
+		return new LogProcessor<>(reactor, multilog, logStreamConsumer, log, partitions, (StateManager) stateManager).new Builder();
+	}
+
+	public final class Builder extends AbstractBuilder<Builder, LogProcessor<T, P, D>> {
+		private Builder() {}
+
+		/**
+		 * Sets multilogs which are used to read partitions in parallel.
+		 * Each multilog is used in its own reactor and should be able to read all the partitions of this log.
+		 * Partitions are read, decompressed and deserialized by the worker reactors,
+		 * while log items are consumed by this reactor.
+		 */
+		public Builder withWorkerMultilogs(Map<Reactor, ? extends IMultilog<T>> workerMultilogs) {
+			checkNotBuilt(this);
+			LogProcessor.this.readWorkers = workerMultilogs.entrySet().stream()
+				.map(entry -> new ReadWorker<T>(entry.getKey(), entry.getValue()))
+				.toList();
+			return this;
+		}
+
+		@Override
+		protected LogProcessor<T, P, D> doBuild() {
+			return LogProcessor.this;
+		}
+	}
+
+	private record ReadWorker<T>(Reactor reactor, IMultilog<T> multilog) {
 	}
 
 	@Override
@@ -126,7 +164,9 @@ public final class LogProcessor<T, P, D> extends AbstractReactive
 	private StreamSupplierWithResult<T, Map<String, LogPositionDiff>> getSupplier(Map<String, LogPosition> positions) {
 		AsyncAccumulator<Map<String, LogPositionDiff>> logPositionsAccumulator = AsyncAccumulator.create(new HashMap<>());
 		StreamUnion<T> streamUnion = StreamUnion.create();
-		for (String partition : partitions) {
+		long startTimestamp = reactor.currentTimeMillis();
+		for (int i = 0; i < partitions.size(); i++) {
+			String partition = partitions.get(i);
 			String logName = logName(partition);
 			LogPosition logPosition = positions.get(logName);
 			if (logPosition == null) {
@@ -136,10 +176,11 @@ public final class LogProcessor<T, P, D> extends AbstractReactive
 
 			LogPosition logPositionFrom = logPosition;
 			logPositionsAccumulator.addPromise(
-				StreamSupplierWithResult.ofPromise(
-						multilog.read(partition, logPosition.getLogFile(), logPosition.getPosition(), null))
+				StreamSupplierWithResult.ofPromise(read(partition, logPosition, i))
 					.streamTo(streamUnion.newInput()),
 				(logPositions, logPositionTo) -> {
+					partitionStats.computeIfAbsent(logName, $ -> LogPartitionStats.create(Duration.ofMinutes(5)))
+						.onRead(startTimestamp, reactor.currentTimeMillis(), logPositionTo);
 					if (!logPositionTo.equals(logPositionFrom)) {
 						logPositions.put(logName, new LogPositionDiff(logPositionFrom, logPositionTo));
 					}
@@ -151,6 +192,18 @@ public final class LogProcessor<T, P, D> extends AbstractReactive
 			logPositionsAccumulator.run());
 	}
 
+	private Promise<StreamSupplierWithResult<T, LogPosition>> read(String partition, LogPosition logPosition, int index) {
+		if (readWorkers.isEmpty()) {
+			return multilog.read(partition, logPosition.getLogFile(), logPosition.getPosition(), null);
+		}
+		ReadWorker<T> worker = readWorkers.get(index % readWorkers.size());
+		return Promise.ofFuture(worker.reactor.submit(() ->
+				worker.multilog.read(partition, logPosition.getLogFile(), logPosition.getPosition(), null)))
+			.map(supplierWithResult -> StreamSupplierWithResult.of(
+				StreamSuppliers.ofAnotherReactor(worker.reactor, supplierWithResult.getSupplier()),
+				Promise.ofFuture(worker.reactor.submit(supplierWithResult::getResult))));
+	}
+
 	private String logName(String partition) {
 		return log != null && !log.isEmpty() ? log + "." + partition : partition;
 	}
@@ -170,6 +223,11 @@ public final class LogProcessor<T, P, D> extends AbstractReactive
 		return promiseProcessLog;
 	}
 
+	@JmxAttribute
+	public Map<String, LogPartitionStats> getPartitionStats() {
+		return partitionStats;
+	}
+
 	@JmxAttribute
 	public BasicStreamStats getStreamStatsBasic() {
 		return streamStatsBasic;
@@ -0,0 +1,165 @@
+package io.activej.etl;
+
+import io.activej.csp.process.frame.FrameFormats;
+import io.activej.datastream.consumer.StreamConsumerWithResult;
+import io.activej.datastream.consumer.ToListStreamConsumer;
+import io.activej.datastream.supplier.StreamSuppliers;
+import io.activej.eventloop.Eventloop;
+import io.activej.fs.FileSystem;
+import io.activej.multilog.IMultilog;
+import io.activej.multilog.Multilog;
+import io.activej.ot.OTState;
+import io.activej.ot.StateManager;
+import io.activej.promise.Promise;
+import io.activej.reactor.Reactor;
+import io.activej.serializer.BinarySerializers;
+import io.activej.test.rules.ByteBufRule;
+import io.activej.test.rules.EventloopRule;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static io.activej.multilog.LogNamingScheme.NAME_PARTITION_REMAINDER_SEQ;
+import static io.activej.promise.TestUtils.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LogProcessorTest {
+	private static final List<String> PARTITIONS = List.of("p0", "p1", "p2", "p3");
+
+	@ClassRule
+	public static final EventloopRule eventloopRule = new EventloopRule();
+
+	@ClassRule
+	public static final ByteBufRule byteBufRule = new ByteBufRule();
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private final Map<Eventloop, Thread> workers = new LinkedHashMap<>();
+
+	private Reactor reactor;
+	private Path storage;
+	private IMultilog<String> multilog;
+
+	@Before
+	public void setUp() {
+		reactor = Reactor.getCurrentReactor();
+		storage = temporaryFolder.getRoot().toPath();
+		FileSystem fs = FileSystem.create(reactor, executor, storage);
+		await(fs.start());
+		multilog = Multilog.create(reactor, fs, FrameFormats.sizePrefixed(), BinarySerializers.UTF8_SERIALIZER, NAME_PARTITION_REMAINDER_SEQ);
+	}
+
+	@After
+	public void tearDown() throws InterruptedException {
+		for (Map.Entry<Eventloop, Thread> entry : workers.entrySet()) {
+			Eventloop worker = entry.getKey();
+			worker.execute(() -> worker.keepAlive(false));
+			entry.getValue().join();
+		}
+		executor.shutdown();
+	}
+
+	@Test
+	public void testProcessLogWithWorkers() throws Exception {
+		Set<String> expected = new HashSet<>();
+		for (String partition : PARTITIONS) {
+			List<String> values = IntStream.range(0, 100).mapToObj(i -> partition + "_" + i).toList();
+			expected.addAll(values);
+			await(StreamSuppliers.ofIterable(values).streamTo(multilog.write(partition)));
+		}
+
+		Map<Reactor, IMultilog<String>> workerMultilogs = new LinkedHashMap<>();
+		for (int i = 0; i < 2; i++) {
+			Eventloop worker = Eventloop.create();
+			worker.keepAlive(true);
+			Thread workerThread = new Thread(worker);
+			workers.put(worker, workerThread);
+			FileSystem workerFs = FileSystem.create(worker, executor, storage);
+			IMultilog<String> workerMultilog = Multilog.create(worker, workerFs, FrameFormats.sizePrefixed(), BinarySerializers.UTF8_SERIALIZER, NAME_PARTITION_REMAINDER_SEQ);
+			workerThread.start();
+			worker.submit(workerFs::start).get();
+			workerMultilogs.put(worker, workerMultilog);
+		}
+
+		TestStateManager stateManager = new TestStateManager();
+		List<String> consumed = new ArrayList<>();
+		LogProcessor<String, Integer, Integer> logProcessor = LogProcessor.<String, Integer, Integer, TestDataState>builder(reactor, multilog,
+				() -> {
+					ToListStreamConsumer<String> consumer = ToListStreamConsumer.create();
+					return StreamConsumerWithResult.of(consumer, consumer.getResult()
+						.whenResult(consumed::addAll)
+						.map(list -> List.of(list.size())));
+				},
+				"test", PARTITIONS, stateManager)
+			.withWorkerMultilogs(workerMultilogs)
+			.build();
+
+		LogDiff<Integer> logDiff = await(logProcessor.processLog());
+		assertEquals(expected, Set.copyOf(consumed));
+		assertEquals(expected.size(), consumed.size());
+		assertEquals(PARTITIONS.stream().map(partition -> "test." + partition).collect(Collectors.toSet()), logDiff.getPositions().keySet());
+		assertEquals(PARTITIONS.size(), logProcessor.getPartitionStats().size());
+
+		stateManager.state.apply(logDiff);
+		consumed.clear();
+
+		LogDiff<Integer> secondDiff = await(logProcessor.processLog());
+		assertTrue(consumed.isEmpty());
+		assertTrue(secondDiff.getPositions().isEmpty());
+	}
+
+	private static final class TestDataState implements OTState<Integer> {
+		@Override
+		public void init() {
+		}
+
+		@Override
+		public void apply(Integer op) {
+		}
+	}
+
+	private static final class TestStateManager implements StateManager<LogDiff<Integer>, LogState<Integer, TestDataState>> {
+		private final LogState<Integer, TestDataState> state = LogState.create(new TestDataState());
+
+		@Override
+		public Promise<Void> catchUp() {
+			return Promise.complete();
+		}
+
+		@Override
+		public Promise<Void> push(List<LogDiff<Integer>> diffs) {
+			diffs.forEach(state::apply);
+			return Promise.complete();
+		}
+
+		@Override
+		public StateChangesSupplier<LogDiff<Integer>> subscribeToStateChanges(Predicate<LogDiff<Integer>> predicate) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public <R> R query(Function<LogState<Integer, TestDataState>, R> queryFn) {
+			return queryFn.apply(state);
+		}
+	}
+}
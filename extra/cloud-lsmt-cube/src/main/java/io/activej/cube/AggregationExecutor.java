@@ -16,6 +16,7 @@
 
 package io.activej.cube;
 
+import io.activej.async.callback.AsyncComputation;
 import io.activej.codegen.DefiningClassLoader;
 import io.activej.common.collection.CollectionUtils;
 import io.activej.common.collection.CollectorUtils;
@@ -79,6 +80,8 @@ public final class AggregationExecutor extends AbstractReactive
 	public static final int DEFAULT_REDUCER_BUFFER_SIZE = StreamReducer.DEFAULT_BUFFER_SIZE;
 	public static final int DEFAULT_SORTER_ITEMS_IN_MEMORY = 1_000_000;
 	public static final int DEFAULT_MAX_CHUNKS_TO_CONSOLIDATE = 1000;
+	public static final int DEFAULT_PARALLEL_QUERY_MIN_CHUNKS = 16;
+	public static final boolean DEFAULT_FUSED_QUERIES = true;
 
 	private final Executor executor;
 	private final DefiningClassLoader classLoader;
@@ -93,6 +96,9 @@ public final class AggregationExecutor extends AbstractReactive
 	private int reducerBufferSize = DEFAULT_REDUCER_BUFFER_SIZE;
 	private int sorterItemsInMemory = DEFAULT_SORTER_ITEMS_IN_MEMORY;
 	private int maxChunksToConsolidate = DEFAULT_MAX_CHUNKS_TO_CONSOLIDATE;
+	private int parallelQueryMinChunks = DEFAULT_PARALLEL_QUERY_MIN_CHUNKS;
+	private boolean fusedQueries = DEFAULT_FUSED_QUERIES;
+	private List<QueryWorker> queryWorkers = List.of();
 
 	// jmx
 
@@ -101,6 +107,8 @@ public final class AggregationExecutor extends AbstractReactive
 	private long consolidationLastTimeMillis;
 	private int consolidations;
 	private Exception consolidationLastError;
+	private long queries;
+	private long queriedChunks;
 
 	AggregationExecutor(
 		Reactor reactor, Executor executor, DefiningClassLoader classLoader,
@@ -126,6 +134,19 @@ public final class AggregationExecutor extends AbstractReactive
 		this.stats = stats;
 	}
 
+	/**
+	 * Sets chunk storages which are used to execute parts of queries in parallel.
+	 * Each storage is used in its own reactor and should be able to read all the chunks of this aggregation.
+	 */
+	void setQueryStorages(Map<Reactor, IAggregationChunkStorage> queryStorages) {
+		this.queryWorkers = queryStorages.entrySet().stream()
+			.map(entry -> new QueryWorker(entry.getKey(), entry.getValue()))
+			.toList();
+	}
+
+	private record QueryWorker(Reactor reactor, IAggregationChunkStorage chunkStorage) {
+	}
+
 	public AggregationStructure getStructure() {
 		return structure;
 	}
@@ -202,16 +223,22 @@ public final class AggregationExecutor extends AbstractReactive
 		checkInReactorThread(this);
 		checkArgument(iterate(queryClassLoader, Objects::nonNull, ClassLoader::getParent).anyMatch(isEqual(classLoader)),
 			"Unrelated queryClassLoader");
+		queries++;
+		queriedChunks += chunks.size();
 		List<String> fields = structure.findFields(query.getMeasures());
-		return consolidatedSupplier(query.getKeys(),
-			fields, outputClass, query.getPredicate(), query.getPrecondition(), chunks, queryClassLoader)
+		StreamSupplier<T> supplier = queryWorkers.isEmpty() || chunks.size() < parallelQueryMinChunks ?
+			consolidatedSupplier(query.getKeys(),
+				fields, outputClass, query.getPredicate(), query.getPrecondition(), chunks, queryClassLoader) :
+			parallelSupplier(query.getKeys(),
+				fields, outputClass, query.getPredicate(), query.getPrecondition(), chunks, queryClassLoader);
+		return supplier
 			.withEndOfStream(eos -> eos
 				.mapException(e -> new AggregationException("Query " + query + " failed", e)));
 	}
 
 	private <T> StreamSupplier<T> sortStream(
-		StreamSupplier<T> unsortedStream, Class<T> resultClass, List<String> allKeys, List<String> measures,
-		DefiningClassLoader classLoader
+		Reactor reactor, StreamSupplier<T> unsortedStream, Class<T> resultClass, List<String> allKeys,
+		List<String> measures, DefiningClassLoader classLoader
 	) {
 		Comparator<T> keyComparator = createKeyComparator(resultClass, allKeys, classLoader);
 		BinarySerializer<T> binarySerializer = createBinarySerializer(structure, resultClass,
@@ -253,11 +280,15 @@ public final class AggregationExecutor extends AbstractReactive
 
 		StreamSupplier<Object> consolidatedSupplier = consolidatedSupplier(structure.getKeys(), measures, resultClass,
 			alwaysTrue(), alwaysTrue(), chunksToConsolidate, classLoader);
-		AggregationChunker chunker = AggregationChunker.create(
+		return writeChunks(consolidatedSupplier, measures, resultClass);
+	}
+
+	private <T> Promise<List<ProtoAggregationChunk>> writeChunks(StreamSupplier<T> sortedSupplier, List<String> measures, Class<T> resultClass) {
+		AggregationChunker<T> chunker = AggregationChunker.create(
 			structure, measures, resultClass,
 			createPartitionPredicate(resultClass, structure.getPartitioningKey(), classLoader),
 			aggregationChunkStorage, classLoader, chunkSize);
-		return consolidatedSupplier.streamTo(chunker)
+		return sortedSupplier.streamTo(chunker)
 			.then(chunker::getResult);
 	}
 
@@ -311,25 +342,139 @@ public final class AggregationExecutor extends AbstractReactive
 
 		logger.info("Query plan for {} in aggregation {}: {}", queryKeys, this, plan);
 
+		List<SequenceStream<S>> sequenceStreams = sequenceStreams(reactor, aggregationChunkStorage,
+			plan.getSequences(), queryKeys, where, precondition, queryClassLoader);
+
+		return mergeSequences(queryKeys, measures, resultClass, sequenceStreams, queryClassLoader, true);
+	}
+
+	/**
+	 * Splits a query plan into partitions, one per query worker. Each partition is read, filtered
+	 * and pre-aggregated by its worker, and the pre-aggregated partitions are merged in this reactor.
+	 */
+	private <R> StreamSupplier<R> parallelSupplier(
+		List<String> queryKeys, List<String> measures, Class<R> resultClass,
+		AggregationPredicate where, AggregationPredicate precondition,
+		List<AggregationChunk> individualChunks, DefiningClassLoader queryClassLoader
+	) {
+		QueryPlan plan = createPlan(individualChunks, measures);
+		List<List<Sequence>> partitions = partitionPlan(plan, queryWorkers.size());
+
+		logger.info("Parallel query plan for {} in aggregation {} split into {} partitions: {}",
+			queryKeys, this, partitions.size(), plan);
+
+		long queryStarted = reactor.currentTimeMillis();
+		List<StreamSupplier<R>> partitionSuppliers = new ArrayList<>();
+		for (int i = 0; i < partitions.size(); i++) {
+			QueryWorker worker = queryWorkers.get(i);
+			List<Sequence> sequences = partitions.get(i);
+			Promise<StreamSupplier<R>> partitionSupplier = Promise.ofFuture(worker.reactor.submit(AsyncComputation.of(() ->
+				partitionSupplier(worker, queryKeys, measures, resultClass, where, precondition, sequences, queryClassLoader))));
+			partitionSuppliers.add(StreamSuppliers.ofPromise(partitionSupplier
+					.map(supplier -> StreamSuppliers.ofAnotherReactor(worker.reactor, supplier)))
+				.transformWith((StreamStats<R>) stats.getParallelPartitionOutput()));
+		}
+
+		StreamSupplier<R> supplier = partitionSuppliers.size() == 1 ?
+			partitionSuppliers.get(0) :
+			mergePartitions(queryKeys, measures, resultClass, partitionSuppliers, queryClassLoader);
+		supplier.getEndOfStream()
+			.whenResult(() -> stats.getParallelQueryTimes().recordValue(reactor.currentTimeMillis() - queryStarted));
+		return supplier;
+	}
+
+	private <S, R> StreamSupplier<R> partitionSupplier(
+		QueryWorker worker, List<String> queryKeys, List<String> measures, Class<R> resultClass,
+		AggregationPredicate where, AggregationPredicate precondition, List<Sequence> sequences,
+		DefiningClassLoader queryClassLoader
+	) {
+		long partitionStarted = worker.reactor.currentTimeMillis();
+		List<SequenceStream<S>> sequenceStreams = sequenceStreams(worker.reactor, worker.chunkStorage,
+			sequences, queryKeys, where, precondition, queryClassLoader);
+		StreamSupplier<R> supplier = mergeSequences(queryKeys, measures, resultClass, sequenceStreams, queryClassLoader, false);
+		supplier.getEndOfStream()
+			.whenResult(() -> {
+				long partitionTime = worker.reactor.currentTimeMillis() - partitionStarted;
+				reactor.execute(() -> stats.getParallelPartitionTimes().recordValue(partitionTime));
+			});
+		return supplier;
+	}
+
+	/**
+	 * Splits sequences of a plan into contiguous key ranges of chunks
+	 * and distributes them between partitions, so that partitions have a similar number of chunks
+	 */
+	static List<List<Sequence>> partitionPlan(QueryPlan plan, int partitions) {
+		int totalChunks = plan.getSequences().stream().mapToInt(sequence -> sequence.getChunks().size()).sum();
+		int maxRangeChunks = Math.max(1, (totalChunks + partitions - 1) / partitions);
+
+		List<Sequence> ranges = new ArrayList<>();
+		for (Sequence sequence : plan.getSequences()) {
+			List<AggregationChunk> chunks = sequence.getChunks();
+			for (int from = 0; from < chunks.size(); from += maxRangeChunks) {
+				Sequence range = new Sequence(sequence.getQueryFields());
+				for (AggregationChunk chunk : chunks.subList(from, min(chunks.size(), from + maxRangeChunks))) {
+					range.add(chunk);
+				}
+				ranges.add(range);
+			}
+		}
+		ranges.sort(Comparator.<Sequence>comparingInt(range -> range.getChunks().size()).reversed());
+
+		List<List<Sequence>> result = new ArrayList<>();
+		int[] partitionChunks = new int[partitions];
+		for (int i = 0; i < partitions; i++) {
+			result.add(new ArrayList<>());
+		}
+		for (Sequence range : ranges) {
+			int partition = 0;
+			for (int i = 1; i < partitions; i++) {
+				if (partitionChunks[i] < partitionChunks[partition]) partition = i;
+			}
+			result.get(partition).add(range);
+			partitionChunks[partition] += range.getChunks().size();
+		}
+		result.removeIf(List::isEmpty);
+		return result;
+	}
+
+	private <S> List<SequenceStream<S>> sequenceStreams(
+		Reactor reactor, IAggregationChunkStorage chunkStorage, List<Sequence> sequences, List<String> queryKeys,
+		AggregationPredicate where, AggregationPredicate precondition, DefiningClassLoader queryClassLoader
+	) {
 		boolean alreadySorted = structure.getKeys().subList(0, min(structure.getKeys().size(), queryKeys.size())).equals(queryKeys);
+		boolean fused = fusedQueries && alreadySorted && queryKeys.size() < structure.getKeys().size();
 
 		List<SequenceStream<S>> sequenceStreams = new ArrayList<>();
 
-		for (Sequence sequence : plan.getSequences()) {
+		for (Sequence sequence : sequences) {
 			Class<S> sequenceClass = createRecordClass(structure,
 				structure.getKeys(),
 				sequence.getChunksFields(),
 				classLoader);
 
-			StreamSupplier<S> stream = sequenceStream(where, precondition, sequence.getChunks(), sequenceClass, queryClassLoader);
+			StreamSupplier<S> stream;
+			if (fused) {
+				/*
+				Records of a sequence are already sorted by query keys, so they are filtered and merged by query keys
+				with a single generated operator, which relieves both a filter stage and a reducer of records.
+				 */
+				FusedAggregate<S> fusedAggregate = createFusedAggregate(structure, sequenceClass,
+					queryKeys, sequence.getQueryFields(), where, precondition, queryClassLoader);
+				stream = sequenceStream(chunkStorage, alwaysTrue(), alwaysTrue(), sequence.getChunks(), sequence.getQueryFields(), sequenceClass,
+					queryClassLoader)
+					.transformWith(FusedAggregateTransformer.create(fusedAggregate));
+			} else {
+				stream = sequenceStream(chunkStorage, where, precondition, sequence.getChunks(), sequence.getQueryFields(), sequenceClass,
+					queryClassLoader);
+			}
 			if (!alreadySorted) {
-				stream = sortStream(stream, sequenceClass, queryKeys, sequence.getQueryFields(), classLoader);
+				stream = sortStream(reactor, stream, sequenceClass, queryKeys, sequence.getQueryFields(), classLoader);
 			}
 
 			sequenceStreams.add(new SequenceStream(stream, sequence.getQueryFields(), sequenceClass));
 		}
-
-		return mergeSequences(queryKeys, measures, resultClass, sequenceStreams, queryClassLoader);
+		return sequenceStreams;
 	}
 
 	public static final class SequenceStream<S> {
@@ -346,7 +491,7 @@ public final class AggregationExecutor extends AbstractReactive
 
 	private <S, R, K extends Comparable> StreamSupplier<R> mergeSequences(
 		List<String> queryKeys, List<String> measures, Class<R> resultClass, List<SequenceStream<S>> sequences,
-		DefiningClassLoader classLoader
+		DefiningClassLoader classLoader, boolean collectStats
 	) {
 		if (sequences.size() == 1 && new HashSet<>(queryKeys).equals(new HashSet<>(structure.getKeys()))) {
 			/*
@@ -358,9 +503,11 @@ public final class AggregationExecutor extends AbstractReactive
 			Function<S, R> mapper = createMapper(sequence.type, resultClass,
 				queryKeys, measures.stream().filter(sequence.fields::contains).collect(toList()),
 				classLoader);
-			return sequence.stream
-				.transformWith(StreamTransformers.mapper(mapper))
-				.transformWith((StreamStats<R>) stats.getMergeMapOutput());
+			StreamSupplier<R> supplier = sequence.stream
+				.transformWith(StreamTransformers.mapper(mapper));
+			return collectStats ?
+				supplier.transformWith((StreamStats<R>) stats.getMergeMapOutput()) :
+				supplier;
 		}
 
 		StreamReducer<K, R, Object>.Builder streamReducerBuilder = StreamReducer.builder();
@@ -392,9 +539,40 @@ public final class AggregationExecutor extends AbstractReactive
 				extraFields,
 				classLoader);
 
-			sequence.stream.streamTo(
-				streamReducer.newInput(extractKeyFunction, reducer)
-					.transformWith((StreamStats<S>) stats.getMergeReducerInput()));
+			StreamConsumer<S> input = streamReducer.newInput(extractKeyFunction, reducer);
+			sequence.stream.streamTo(collectStats ?
+				input.transformWith((StreamStats<S>) stats.getMergeReducerInput()) :
+				input);
+		}
+
+		return collectStats ?
+			streamReducer.getOutput().transformWith((StreamStats<R>) stats.getMergeReducerOutput()) :
+			streamReducer.getOutput();
+	}
+
+	private <R, K extends Comparable> StreamSupplier<R> mergePartitions(
+		List<String> queryKeys, List<String> measures, Class<R> resultClass, List<StreamSupplier<R>> partitions,
+		DefiningClassLoader classLoader
+	) {
+		StreamReducer<K, R, Object>.Builder streamReducerBuilder = StreamReducer.builder();
+		if (reducerBufferSize != 0 && reducerBufferSize != DEFAULT_REDUCER_BUFFER_SIZE) {
+			streamReducerBuilder.withBufferSize(reducerBufferSize);
+		}
+		StreamReducer<K, R, Object> streamReducer = streamReducerBuilder.build();
+
+		Class<K> keyClass = createKeyClass(
+			queryKeys.stream()
+				.collect(CollectorUtils.toLinkedHashMap(structure.getKeyTypes()::get)),
+			this.classLoader);
+		Function<R, K> extractKeyFunction = createKeyFunction(resultClass, keyClass, queryKeys, classLoader);
+		Reducer<K, R, R, Object> reducer = Utils.aggregationReducer(structure,
+			resultClass, resultClass,
+			queryKeys, measures,
+			Map.of(),
+			classLoader);
+
+		for (StreamSupplier<R> partition : partitions) {
+			partition.streamTo(streamReducer.newInput(extractKeyFunction, reducer));
 		}
 
 		return streamReducer.getOutput()
@@ -402,8 +580,9 @@ public final class AggregationExecutor extends AbstractReactive
 	}
 
 	private <T> StreamSupplier<T> sequenceStream(
-		AggregationPredicate where, AggregationPredicate precondition,
-		List<AggregationChunk> individualChunks, Class<T> sequenceClass, DefiningClassLoader queryClassLoader
+		IAggregationChunkStorage chunkStorage, AggregationPredicate where, AggregationPredicate precondition,
+		List<AggregationChunk> individualChunks, List<String> queryFields, Class<T> sequenceClass,
+		DefiningClassLoader queryClassLoader
 	) {
 		Iterator<AggregationChunk> chunkIterator = individualChunks.iterator();
 		return StreamSuppliers.concat(new Iterator<>() {
@@ -415,17 +594,18 @@ public final class AggregationExecutor extends AbstractReactive
 			@Override
 			public StreamSupplier<T> next() {
 				AggregationChunk chunk = chunkIterator.next();
-				return chunkReaderWithFilter(where, precondition, chunk, sequenceClass, queryClassLoader);
+				return chunkReaderWithFilter(chunkStorage, where, precondition, chunk, queryFields, sequenceClass, queryClassLoader);
 			}
 		});
 	}
 
 	private <T> StreamSupplier<T> chunkReaderWithFilter(
-		AggregationPredicate where, AggregationPredicate precondition, AggregationChunk chunk, Class<T> chunkRecordClass,
-		DefiningClassLoader queryClassLoader
+		IAggregationChunkStorage chunkStorage, AggregationPredicate where, AggregationPredicate precondition, AggregationChunk chunk, List<String> queryFields,
+		Class<T> chunkRecordClass, DefiningClassLoader queryClassLoader
 	) {
+		List<String> requestedFields = chunk.getMeasures().stream().filter(queryFields::contains).collect(toList());
 		StreamSupplier<T> supplier = StreamSuppliers.ofPromise(
-			aggregationChunkStorage.read(structure, chunk.getMeasures(), chunkRecordClass, chunk.getChunkId(), classLoader));
+			chunkStorage.read(structure, chunk.getMeasures(), requestedFields, chunkRecordClass, chunk.getChunkId(), classLoader));
 
 		if (where.equals(alwaysTrue()) && precondition.equals(alwaysTrue())) {
 			return supplier;
@@ -455,6 +635,30 @@ public final class AggregationExecutor extends AbstractReactive
 			});
 	}
 
+	/**
+	 * Fills this aggregation with data read from chunks of another aggregation,
+	 * which has all the keys and measures of this aggregation.
+	 * Records are re-aggregated by keys of this aggregation, the same way chunks are merged on consolidation.
+	 */
+	Promise<ProtoAggregationDiff> backfill(AggregationExecutor source, List<AggregationChunk> sourceChunks) {
+		checkInReactorThread(this);
+		if (sourceChunks.isEmpty()) return Promise.of(new ProtoAggregationDiff(Set.of(), Set.of()));
+
+		logger.info("Starting backfill of aggregation '{}' from {} chunks of aggregation '{}'", this, sourceChunks.size(), source);
+
+		List<String> measures = structure.getMeasures();
+		Class<Object> resultClass = createRecordClass(structure, structure.getKeys(), measures, classLoader);
+
+		AggregationQuery query = new AggregationQuery();
+		query.addKeys(structure.getKeys());
+		query.addMeasures(measures);
+		query.setPredicate(structure.getPredicate());
+		query.setPrecondition(structure.getPrecondition());
+
+		return writeChunks(source.query(sourceChunks, query, resultClass, classLoader), measures, resultClass)
+			.map(chunks -> new ProtoAggregationDiff(new LinkedHashSet<>(chunks), Set.of()));
+	}
+
 	private Path createSortDir() throws AggregationException {
 		try {
 			return Files.createTempDirectory("aggregation_sort_dir");
@@ -503,6 +707,26 @@ public final class AggregationExecutor extends AbstractReactive
 		this.maxChunksToConsolidate = maxChunksToConsolidate;
 	}
 
+	@JmxAttribute
+	public int getParallelQueryMinChunks() {
+		return parallelQueryMinChunks;
+	}
+
+	@JmxAttribute
+	public void setParallelQueryMinChunks(int parallelQueryMinChunks) {
+		this.parallelQueryMinChunks = parallelQueryMinChunks;
+	}
+
+	@JmxAttribute
+	public boolean isFusedQueries() {
+		return fusedQueries;
+	}
+
+	@JmxAttribute
+	public void setFusedQueries(boolean fusedQueries) {
+		this.fusedQueries = fusedQueries;
+	}
+
 	@JmxAttribute
 	public @Nullable Integer getConsolidationSeconds() {
 		return consolidationStarted == 0 ? null : (int) ((reactor.currentTimeMillis() - consolidationStarted) / 1000);
@@ -523,6 +747,16 @@ public final class AggregationExecutor extends AbstractReactive
 		return consolidationLastError;
 	}
 
+	@JmxAttribute
+	public long getQueries() {
+		return queries;
+	}
+
+	@JmxAttribute
+	public long getQueriedChunks() {
+		return queriedChunks;
+	}
+
 	@JmxAttribute
 	public AggregationStats getStats() {
 		return stats;
@@ -475,12 +475,21 @@ public final class AggregationState implements OTState<AggregationDiff> {
 	}
 
 	public List<AggregationChunk> findChunks(List<String> measures, AggregationPredicate predicate) {
+		return selectChunks(measures, predicate).chunks();
+	}
+
+	/**
+	 * Finds chunks for a query, also counting chunks that were skipped by their dimension stats
+	 */
+	public ChunksSelection selectChunks(List<String> measures, AggregationPredicate predicate) {
 		RangeScan rangeScan = toRangeScan(predicate, structure.getKeys(), structure.getKeyTypes());
 		if (rangeScan.isNoScan())
-			return List.of();
+			return new ChunksSelection(List.of(), 0);
 
 		Set<String> requestedFields = new HashSet<>(structure.findFields(measures));
+		AggregationPredicate simplifiedPredicate = null;
 		List<AggregationChunk> chunks = new ArrayList<>();
+		int skippedChunks = 0;
 		for (AggregationChunk chunk : rangeQuery(rangeScan.getFrom(), rangeScan.getTo())) {
 			if (intersection(new HashSet<>(chunk.getMeasures()), requestedFields).isEmpty())
 				continue;
@@ -490,12 +499,22 @@ public final class AggregationState implements OTState<AggregationDiff> {
 				continue;
 			}
 
+			if (!chunk.getDimensionStats().isEmpty()) {
+				if (simplifiedPredicate == null) simplifiedPredicate = predicate.simplify();
+				if (!chunk.mightMatch(simplifiedPredicate, structure.getKeyTypes())) {
+					skippedChunks++;
+					continue;
+				}
+			}
+
 			chunks.add(chunk);
 		}
 
-		return chunks;
+		return new ChunksSelection(chunks, skippedChunks);
 	}
 
+	public record ChunksSelection(List<AggregationChunk> chunks, int skippedChunks) {}
+
 	private List<AggregationChunk> rangeQuery(PrimaryKey minPrimaryKey, PrimaryKey maxPrimaryKey) {
 		checkArgument(minPrimaryKey.size() == maxPrimaryKey.size(), "Sizes of min primary key and max primary key should match");
 		int size = minPrimaryKey.size();
@@ -503,6 +522,20 @@ public final class AggregationState implements OTState<AggregationDiff> {
 		return new ArrayList<>(index.getRange(minPrimaryKey, maxPrimaryKey));
 	}
 
+	/**
+	 * Returns the largest number of chunks that overlap at some key range, that is
+	 * the number of chunks which have to be read and merged to look up a single key in the worst case
+	 */
+	@JmxAttribute
+	public int getReadAmplification() {
+		int result = 0;
+		RangeTree<PrimaryKey, AggregationChunk> tree = prefixRanges[structure.getKeys().size()];
+		for (Segment<AggregationChunk> segment : tree.getSegments().values()) {
+			result = Math.max(result, getNumberOfOverlaps(segment));
+		}
+		return result;
+	}
+
 	@JmxAttribute
 	public int getNumberOfOverlappingChunks() {
 		return findOverlappingChunks().size();
@@ -33,6 +33,7 @@ public final class AggregationStructure {
 	private final Map<String, FieldType> keyTypes = new LinkedHashMap<>();
 	private final Map<String, FieldType> measureTypes = new LinkedHashMap<>();
 	private final List<String> partitioningKey = new ArrayList<>();
+	private final List<String> chunkStatsDimensions = new ArrayList<>();
 	private final Map<String, Measure> measures = new LinkedHashMap<>();
 
 	private AggregationPredicate predicate = AggregationPredicates.alwaysTrue();
@@ -61,6 +62,14 @@ public final class AggregationStructure {
 		this.partitioningKey.addAll(partitioningKey);
 	}
 
+	void addChunkStatsDimensions(List<String> dimensions) {
+		for (String dimension : dimensions) {
+			checkArgument(keyTypes.containsKey(dimension), "Chunk stats dimension '%s' is not a key of aggregation", dimension);
+			checkArgument(keyTypes.get(dimension).getInternalJsonCodec() != null, "Chunk stats dimension '%s' cannot be persisted", dimension);
+		}
+		this.chunkStatsDimensions.addAll(dimensions);
+	}
+
 	void setPredicate(AggregationPredicate predicate) {
 		this.predicate = predicate;
 	}
@@ -101,6 +110,13 @@ public final class AggregationStructure {
 		return partitioningKey;
 	}
 
+	/**
+	 * Returns dimensions for which per-chunk min/max values and bloom filters are collected
+	 */
+	public List<String> getChunkStatsDimensions() {
+		return chunkStatsDimensions;
+	}
+
 	public AggregationPredicate getPredicate() {
 		return predicate;
 	}
@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.cube;
+
+import io.activej.common.ApplicationSettings;
+import io.activej.common.builder.AbstractBuilder;
+import io.activej.cube.CubeState.CompatibleAggregations;
+import io.activej.cube.CubeStructure.AggregationConfig;
+import io.activej.cube.aggregation.predicate.AggregationPredicate;
+import io.activej.jmx.api.attribute.JmxAttribute;
+import io.activej.jmx.api.attribute.JmxOperation;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+import static io.activej.common.Checks.checkArgument;
+import static io.activej.cube.aggregation.predicate.AggregationPredicates.alwaysTrue;
+import static java.util.Comparator.comparing;
+import static java.util.Comparator.comparingDouble;
+
+/**
+ * Records a workload of cube queries and proposes new aggregations for it.
+ * <p>
+ * Queries are grouped by the set of dimensions they group or filter by.
+ * For a group which has been queried often enough and which is not served by an existing aggregation
+ * with exactly these dimensions, an aggregation is recommended, provided that there is
+ * a finer aggregation which it may be back-filled from.
+ * A recommended aggregation keeps all measures of its source aggregation, as queries are served
+ * by aggregations with more measures first.
+ * Recommendations are ranked by the number of chunks their queries have read.
+ * <p>
+ * A recommended aggregation is added to a cube by declaring it in a {@link CubeStructure}
+ * (see {@link Recommendation#toAggregationConfig(String)}) and then filling it
+ * with {@link CubeConsolidator#backfill(String, String)}.
+ * <p>
+ * This class is not thread-safe and should be used from a reactor thread of a {@link CubeReporting}
+ */
+public final class CubeAggregationAdvisor {
+	public static final int DEFAULT_MIN_QUERIES = ApplicationSettings.getInt(CubeAggregationAdvisor.class, "minQueries", 100);
+	public static final int DEFAULT_MAX_PATTERNS = ApplicationSettings.getInt(CubeAggregationAdvisor.class, "maxPatterns", 10_000);
+
+	private final CubeStructure structure;
+
+	private int minQueries = DEFAULT_MIN_QUERIES;
+	private int maxPatterns = DEFAULT_MAX_PATTERNS;
+
+	private final Map<Pattern, PatternStats> patterns = new HashMap<>();
+
+	// JMX
+	private long recordedQueries;
+	private long droppedQueries;
+
+	private CubeAggregationAdvisor(CubeStructure structure) {
+		this.structure = structure;
+	}
+
+	public static CubeAggregationAdvisor create(CubeStructure structure) {
+		return builder(structure).build();
+	}
+
+	public static Builder builder(CubeStructure structure) {
+		return new CubeAggregationAdvisor(structure).new Builder();
+	}
+
+	public final class Builder extends AbstractBuilder<Builder, CubeAggregationAdvisor> {
+		private Builder() {}
+
+		/**
+		 * Sets a number of queries a group of dimensions should receive to be considered for a new aggregation
+		 */
+		public Builder withMinQueries(int minQueries) {
+			checkNotBuilt(this);
+			checkArgument(minQueries > 0, "Min number of queries should be positive");
+			CubeAggregationAdvisor.this.minQueries = minQueries;
+			return this;
+		}
+
+		/**
+		 * Sets a maximum number of distinct query patterns to be tracked,
+		 * queries of new patterns above this limit are not recorded
+		 */
+		public Builder withMaxPatterns(int maxPatterns) {
+			checkNotBuilt(this);
+			checkArgument(maxPatterns > 0, "Max number of patterns should be positive");
+			CubeAggregationAdvisor.this.maxPatterns = maxPatterns;
+			return this;
+		}
+
+		@Override
+		protected CubeAggregationAdvisor doBuild() {
+			return CubeAggregationAdvisor.this;
+		}
+	}
+
+	void recordQuery(
+		Collection<String> dimensions, Collection<String> storedMeasures, AggregationPredicate where,
+		List<CompatibleAggregations> compatibleAggregations, long latencyMillis
+	) {
+		Set<String> allDimensions = new HashSet<>(dimensions);
+		allDimensions.addAll(where.simplify().getDimensions());
+		Pattern pattern = new Pattern(Set.copyOf(allDimensions), Set.copyOf(storedMeasures));
+
+		PatternStats stats = patterns.get(pattern);
+		if (stats == null) {
+			if (patterns.size() >= maxPatterns) {
+				droppedQueries++;
+				return;
+			}
+			stats = new PatternStats();
+			patterns.put(pattern, stats);
+		}
+		recordedQueries++;
+		stats.queries++;
+		stats.latencyMillis += latencyMillis;
+		for (CompatibleAggregations compatibleAggregation : compatibleAggregations) {
+			stats.chunks += compatibleAggregation.chunks().size();
+		}
+	}
+
+	/**
+	 * Returns aggregations recommended for a recorded workload, the most beneficial first
+	 */
+	public List<Recommendation> getRecommendations() {
+		Map<Set<String>, Group> groups = new HashMap<>();
+		for (Map.Entry<Pattern, PatternStats> entry : patterns.entrySet()) {
+			Group group = groups.computeIfAbsent(entry.getKey().dimensions, $ -> new Group());
+			group.measures.addAll(entry.getKey().measures);
+			group.stats.queries += entry.getValue().queries;
+			group.stats.chunks += entry.getValue().chunks;
+			group.stats.latencyMillis += entry.getValue().latencyMillis;
+		}
+
+		List<Recommendation> recommendations = new ArrayList<>();
+		for (Map.Entry<Set<String>, Group> entry : groups.entrySet()) {
+			Set<String> dimensions = entry.getKey();
+			Group group = entry.getValue();
+			if (group.stats.queries < minQueries || dimensions.isEmpty() || group.measures.isEmpty()) continue;
+			if (isServed(dimensions, group.measures)) continue;
+
+			String sourceId = findSource(dimensions, group.measures);
+			if (sourceId == null) continue;
+			AggregationStructure source = structure.getAggregationStructure(sourceId);
+
+			long queries = group.stats.queries;
+			recommendations.add(new Recommendation(
+				source.getKeys().stream().filter(dimensions::contains).toList(),
+				source.getMeasures(),
+				sourceId,
+				queries,
+				(double) group.stats.chunks / queries,
+				(double) group.stats.latencyMillis / queries));
+		}
+		recommendations.sort(comparingDouble(Recommendation::score).reversed()
+			.thenComparing(recommendation -> recommendation.dimensions().toString()));
+		return recommendations;
+	}
+
+	private boolean isServed(Set<String> dimensions, Set<String> measures) {
+		for (AggregationStructure aggregation : structure.getAggregationStructures().values()) {
+			if (aggregation.getKeys().size() == dimensions.size() &&
+				aggregation.getKeys().containsAll(dimensions) &&
+				aggregation.getMeasures().containsAll(measures) &&
+				aggregation.getPredicate().simplify().equals(alwaysTrue())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private @Nullable String findSource(Set<String> dimensions, Set<String> measures) {
+		return structure.getAggregationStructures().entrySet().stream()
+			.filter(entry -> structure.canBackfill(entry.getKey(), dimensions, measures, alwaysTrue()))
+			.min(comparing((Map.Entry<String, AggregationStructure> entry) -> entry.getValue().getKeys().size())
+				.thenComparing(entry -> entry.getValue().getMeasures().size())
+				.thenComparing(Map.Entry::getKey))
+			.map(Map.Entry::getKey)
+			.orElse(null);
+	}
+
+	/**
+	 * A recommended aggregation
+	 *
+	 * @param dimensions           dimensions of the aggregation
+	 * @param measures             measures of the aggregation, which are the measures of a source aggregation
+	 * @param sourceAggregationId  an existing aggregation that the recommended one may be back-filled from
+	 * @param queries              a number of recorded queries that the aggregation would serve
+	 * @param averageChunks        an average number of chunks read by these queries
+	 * @param averageLatencyMillis an average latency of these queries
+	 */
+	public record Recommendation(
+		List<String> dimensions, List<String> measures, String sourceAggregationId,
+		long queries, double averageChunks, double averageLatencyMillis
+	) {
+		public AggregationConfig toAggregationConfig(String id) {
+			return AggregationConfig.id(id)
+				.withDimensions(dimensions)
+				.withMeasures(measures);
+		}
+
+		double score() {
+			return queries * averageChunks;
+		}
+	}
+
+	private record Pattern(Set<String> dimensions, Set<String> measures) {
+	}
+
+	private static final class PatternStats {
+		long queries;
+		long chunks;
+		long latencyMillis;
+	}
+
+	private static final class Group {
+		final Set<String> measures = new HashSet<>();
+		final PatternStats stats = new PatternStats();
+	}
+
+	// region JMX
+	@JmxAttribute
+	public long getRecordedQueries() {
+		return recordedQueries;
+	}
+
+	@JmxAttribute
+	public long getDroppedQueries() {
+		return droppedQueries;
+	}
+
+	@JmxAttribute
+	public int getPatterns() {
+		return patterns.size();
+	}
+
+	@JmxAttribute
+	public int getMinQueries() {
+		return minQueries;
+	}
+
+	@JmxAttribute
+	public void setMinQueries(int minQueries) {
+		checkArgument(minQueries > 0, "Min number of queries should be positive");
+		this.minQueries = minQueries;
+	}
+
+	@JmxOperation
+	public List<String> getRecommendedAggregations() {
+		return getRecommendations().stream()
+			.map(recommendation -> recommendation.dimensions() + " " + recommendation.measures() +
+				" from '" + recommendation.sourceAggregationId() + "'" +
+				", queries: " + recommendation.queries() +
+				", avg chunks: " + String.format("%.1f", recommendation.averageChunks()) +
+				", avg latency: " + String.format("%.1f", recommendation.averageLatencyMillis()) + "ms")
+			.toList();
+	}
+
+	@JmxOperation
+	public void resetWorkload() {
+		patterns.clear();
+		recordedQueries = 0;
+		droppedQueries = 0;
+	}
+	// endregion
+}
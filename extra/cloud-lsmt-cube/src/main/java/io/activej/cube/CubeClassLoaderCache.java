@@ -17,27 +17,57 @@
 package io.activej.cube;
 
 import io.activej.codegen.DefiningClassLoader;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
+/**
+ * A cache of class loaders of cube queries, one per combination of attributes, measures and filtered dimensions.
+ * <p>
+ * The cache may be shared between cube executors of different threads. Lookups do not block each other,
+ * and classes of a new key may be generated asynchronously, while concurrent requests for the same key
+ * wait for a single generation.
+ * <p>
+ * The least recently used keys are evicted once either a number of keys or a total number of classes
+ * defined in cached class loaders exceeds its target.
+ */
 public class CubeClassLoaderCache implements CubeClassLoaderCacheMBean {
 	public record Key(Set<String> attributes, Set<String> measures, Set<String> filterDimensions) {}
 
 	private final DefiningClassLoader rootClassLoader;
-	private final LinkedHashMap<Key, DefiningClassLoader> cache = new LinkedHashMap<>(16, 0.75f, false) {
-		@Override
-		protected boolean removeEldestEntry(Map.Entry<Key, DefiningClassLoader> eldest) {
-			return size() > targetCacheKeys;
-		}
-	};
+	private final Map<Key, Entry> cache = new ConcurrentHashMap<>();
+	private final AtomicLong accessCounter = new AtomicLong();
+	private final ReentrantLock evictionLock = new ReentrantLock();
 
-	private int targetCacheKeys;
+	private volatile int targetCacheKeys;
+	private volatile int targetCachedClasses = Integer.MAX_VALUE;
 
 	// JMX
-	private int cacheRequests;
-	private int cacheMisses;
+	private final LongAdder cacheRequests = new LongAdder();
+	private final LongAdder cacheMisses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder generations = new LongAdder();
+	private final LongAdder generationErrors = new LongAdder();
+	private final LongAdder generationNanos = new LongAdder();
+	private final AtomicLong maxGenerationNanos = new AtomicLong();
+	private volatile long lastGenerationNanos;
+
+	private static final class Entry {
+		final DefiningClassLoader classLoader;
+		final CompletableFuture<DefiningClassLoader> future = new CompletableFuture<>();
+		volatile long lastAccess;
+
+		Entry(DefiningClassLoader classLoader) {
+			this.classLoader = classLoader;
+		}
+	}
 
 	private CubeClassLoaderCache(DefiningClassLoader rootClassLoader, int targetCacheKeys) {
 		this.rootClassLoader = rootClassLoader;
@@ -48,12 +78,95 @@ public class CubeClassLoaderCache implements CubeClassLoaderCacheMBean {
 		return new CubeClassLoaderCache(root, cacheSize);
 	}
 
-	public synchronized DefiningClassLoader getOrCreate(Key key) {
-		cacheRequests++;
-		return cache.computeIfAbsent(key, $ -> {
-			cacheMisses++;
-			return DefiningClassLoader.create(rootClassLoader);
+	public static CubeClassLoaderCache create(DefiningClassLoader root, int cacheSize, int targetCachedClasses) {
+		CubeClassLoaderCache cache = new CubeClassLoaderCache(root, cacheSize);
+		cache.targetCachedClasses = targetCachedClasses;
+		return cache;
+	}
+
+	public DefiningClassLoader getOrCreate(Key key) {
+		Entry entry = getOrCreateEntry(key, null);
+		entry.future.complete(entry.classLoader);
+		return entry.classLoader;
+	}
+
+	/**
+	 * Returns a class loader of a key, once classes of the key are generated.
+	 * <p>
+	 * If there is no class loader for a key yet, a new class loader is created and passed to a generator,
+	 * which is run by a given executor. Concurrent requests for the same key share a single generation.
+	 * If generation fails, the key is removed from the cache, so that a next request starts a new generation.
+	 *
+	 * @param key       a key of a class loader
+	 * @param executor  an executor to generate classes with
+	 * @param generator a function which defines classes for a key in a given class loader
+	 */
+	public CompletableFuture<DefiningClassLoader> getOrCreateAsync(Key key, Executor executor, Consumer<DefiningClassLoader> generator) {
+		Entry[] created = new Entry[1];
+		Entry entry = getOrCreateEntry(key, created);
+		if (created[0] == entry) {
+			executor.execute(() -> generate(key, entry, generator));
+		}
+		return entry.future;
+	}
+
+	private void generate(Key key, Entry entry, Consumer<DefiningClassLoader> generator) {
+		long started = System.nanoTime();
+		try {
+			generator.accept(entry.classLoader);
+		} catch (Exception e) {
+			generationErrors.increment();
+			cache.remove(key, entry);
+			entry.future.completeExceptionally(e);
+			return;
+		}
+		long nanos = System.nanoTime() - started;
+		generations.increment();
+		generationNanos.add(nanos);
+		maxGenerationNanos.accumulateAndGet(nanos, Math::max);
+		lastGenerationNanos = nanos;
+		entry.future.complete(entry.classLoader);
+		evictIfNeeded(entry);
+	}
+
+	private Entry getOrCreateEntry(Key key, Entry @Nullable [] created) {
+		cacheRequests.increment();
+		Entry entry = cache.computeIfAbsent(key, $ -> {
+			cacheMisses.increment();
+			Entry newEntry = new Entry(DefiningClassLoader.create(rootClassLoader));
+			if (created != null) created[0] = newEntry;
+			return newEntry;
 		});
+		entry.lastAccess = accessCounter.incrementAndGet();
+		if (created == null || created[0] == entry) {
+			evictIfNeeded(entry);
+		}
+		return entry;
+	}
+
+	private void evictIfNeeded(Entry requested) {
+		if (cache.size() <= targetCacheKeys && targetCachedClasses == Integer.MAX_VALUE) return;
+		if (!evictionLock.tryLock()) return;
+		try {
+			int cachedClasses = targetCachedClasses == Integer.MAX_VALUE ? 0 : getDefinedClassesCount();
+			if (cache.size() <= targetCacheKeys && cachedClasses <= targetCachedClasses) return;
+
+			List<Map.Entry<Key, Entry>> entries = new ArrayList<>(cache.entrySet());
+			entries.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+			int keys = cache.size();
+			for (Map.Entry<Key, Entry> e : entries) {
+				if (keys <= targetCacheKeys && cachedClasses <= targetCachedClasses) break;
+				Entry entry = e.getValue();
+				if (entry == requested || !entry.future.isDone()) continue;
+				if (cache.remove(e.getKey(), entry)) {
+					keys--;
+					cachedClasses -= entry.classLoader.getCachedClassesCount();
+					evictions.increment();
+				}
+			}
+		} finally {
+			evictionLock.unlock();
+		}
 	}
 
 	public DefiningClassLoader getRootClassLoader() {
@@ -62,7 +175,7 @@ public class CubeClassLoaderCache implements CubeClassLoaderCacheMBean {
 
 	// JMX
 	@Override
-	public synchronized void clear() {
+	public void clear() {
 		cache.clear();
 	}
 
@@ -77,19 +190,29 @@ public class CubeClassLoaderCache implements CubeClassLoaderCacheMBean {
 	}
 
 	@Override
-	public synchronized int getDefinedClassesCount() {
+	public int getTargetCachedClasses() {
+		return targetCachedClasses;
+	}
+
+	@Override
+	public void setTargetCachedClasses(int targetCachedClasses) {
+		this.targetCachedClasses = targetCachedClasses;
+	}
+
+	@Override
+	public int getDefinedClassesCount() {
 		int result = 0;
-		for (DefiningClassLoader classLoader : cache.values()) {
-			result += classLoader.getCachedClassesCount();
+		for (Entry entry : cache.values()) {
+			result += entry.classLoader.getCachedClassesCount();
 		}
 		return result;
 	}
 
 	@Override
-	public synchronized int getDefinedClassesCountMaxPerKey() {
+	public int getDefinedClassesCountMaxPerKey() {
 		int result = 0;
-		for (DefiningClassLoader classLoader : cache.values()) {
-			result = Math.max(result, classLoader.getCachedClassesCount());
+		for (Entry entry : cache.values()) {
+			result = Math.max(result, entry.classLoader.getCachedClassesCount());
 		}
 		return result;
 	}
@@ -101,25 +224,54 @@ public class CubeClassLoaderCache implements CubeClassLoaderCacheMBean {
 
 	@Override
 	public int getCacheRequests() {
-		return cacheRequests;
+		return cacheRequests.intValue();
 	}
 
 	@Override
 	public int getCacheMisses() {
-		return cacheMisses;
+		return cacheMisses.intValue();
+	}
+
+	@Override
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	@Override
+	public long getGenerations() {
+		return generations.sum();
+	}
+
+	@Override
+	public long getGenerationErrors() {
+		return generationErrors.sum();
+	}
+
+	@Override
+	public double getAverageGenerationMillis() {
+		long count = generations.sum();
+		return count == 0 ? 0 : generationNanos.sum() / 1e6 / count;
+	}
+
+	@Override
+	public double getMaxGenerationMillis() {
+		return maxGenerationNanos.get() / 1e6;
+	}
+
+	@Override
+	public double getLastGenerationMillis() {
+		return lastGenerationNanos / 1e6;
 	}
 
 	@Override
 	public Map<String, String> getCacheContents() {
-		Map<String, String> map;
-		synchronized (this) {
-			map = new LinkedHashMap<>(cache.size());
-		}
+		List<Map.Entry<Key, Entry>> entries = new ArrayList<>(cache.entrySet());
+		entries.sort(Comparator.comparingLong(e -> -e.getValue().lastAccess));
 
-		for (Map.Entry<Key, DefiningClassLoader> entry : cache.entrySet()) {
-			map.put(entry.getKey().toString(), entry.getValue().toString());
+		Map<String, String> map = new LinkedHashMap<>(entries.size());
+		for (Map.Entry<Key, Entry> entry : entries) {
+			map.put(entry.getKey().toString(), entry.getValue().classLoader.toString());
 		}
-
 		return map;
 	}
 }
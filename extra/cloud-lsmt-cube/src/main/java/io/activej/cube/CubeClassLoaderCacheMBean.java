@@ -26,6 +26,10 @@ public interface CubeClassLoaderCacheMBean {
 
 	void setTargetCacheKeys(int targetCacheKeys);
 
+	int getTargetCachedClasses();
+
+	void setTargetCachedClasses(int targetCachedClasses);
+
 	int getDefinedClassesCount();
 
 	int getDefinedClassesCountMaxPerKey();
@@ -36,5 +40,17 @@ public interface CubeClassLoaderCacheMBean {
 
 	int getCacheMisses();
 
+	long getEvictions();
+
+	long getGenerations();
+
+	long getGenerationErrors();
+
+	double getAverageGenerationMillis();
+
+	double getMaxGenerationMillis();
+
+	double getLastGenerationMillis();
+
 	Map<String, String> getCacheContents();
 }
@@ -16,8 +16,10 @@
 
 package io.activej.cube;
 
-import io.activej.async.function.AsyncRunnable;
+import io.activej.async.process.AsyncExecutor;
+import io.activej.async.process.AsyncExecutors;
 import io.activej.common.builder.AbstractBuilder;
+import io.activej.common.ref.Ref;
 import io.activej.cube.aggregation.AggregationChunk;
 import io.activej.cube.aggregation.ChunksAlreadyLockedException;
 import io.activej.cube.aggregation.IChunkLocker;
@@ -37,6 +39,7 @@ import io.activej.reactor.jmx.ReactiveJmxBeanWithStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -46,6 +49,7 @@ import java.util.stream.Collectors;
 
 import static io.activej.async.util.LogUtils.thisMethod;
 import static io.activej.async.util.LogUtils.toLogger;
+import static io.activej.common.Checks.checkArgument;
 import static io.activej.common.Checks.checkNotNull;
 import static io.activej.common.collection.CollectorUtils.entriesToLinkedHashMap;
 import static io.activej.cube.aggregation.util.Utils.collectChunkIds;
@@ -97,29 +101,115 @@ public final class CubeConsolidator extends AbstractReactive
 		return stateManager;
 	}
 
+	public CubeExecutor getExecutor() {
+		return executor;
+	}
+
 	public Promise<CubeDiff> consolidate(List<String> aggregationIds, ConsolidationStrategy strategy) {
+		return consolidate(aggregationIds, strategy, 1, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Consolidates chunks of several aggregations and pushes a single resulting diff.
+	 * <p>
+	 * Aggregations are consolidated in a given order, so the most important ones should go first.
+	 * At most {@code maxConcurrency} aggregations are consolidated at the same time.
+	 * Once chunks picked for consolidation contain {@code maxRecords} records in total,
+	 * the rest of the aggregations are skipped until the next consolidation.
+	 * Chunks of the first aggregation that has something to consolidate are always consolidated.
+	 * <p>
+	 * Once consolidation of some aggregation fails, the aggregations that have not been started yet are skipped,
+	 * and the first failure is returned after consolidations in progress complete. Nothing is pushed in that case.
+	 * So, with {@code maxConcurrency} of 1, aggregations are consolidated one by one, stopping at the first failure.
+	 */
+	public Promise<CubeDiff> consolidate(List<String> aggregationIds, ConsolidationStrategy strategy, int maxConcurrency, long maxRecords) {
 		checkInReactorThread(this);
+		checkArgument(maxConcurrency > 0, "Max concurrency should be positive");
+		checkArgument(maxRecords > 0, "Max records should be positive");
 		logger.info("Launching consolidation for aggregations {}", aggregationIds);
 
 		if (aggregationIds.isEmpty()) return Promise.of(CubeDiff.empty());
 
 		Map<String, List<AggregationChunk>> lockedChunks = new HashMap<>();
 		Map<String, ProtoAggregationDiff> diffMap = new HashMap<>();
+		AsyncExecutor asyncExecutor = AsyncExecutors.buffered(maxConcurrency);
+		Ref<Exception> failure = new Ref<>();
 
 		return Promises.toList(aggregationIds.stream()
-				.map(aggregationId -> findAndLockChunksForConsolidation(aggregationId, strategy)
-					.<AsyncRunnable>map(chunks -> () -> {
-						if (chunks.isEmpty()) return Promise.complete();
-						lockedChunks.put(aggregationId, chunks);
+				.map(aggregationId -> findAndLockChunksForConsolidation(aggregationId, strategy)))
+			.then(chunksList -> {
+				List<Promise<Void>> promises = new ArrayList<>();
+				long records = 0;
+				for (int i = 0; i < aggregationIds.size(); i++) {
+					String aggregationId = aggregationIds.get(i);
+					List<AggregationChunk> chunks = chunksList.get(i);
+					if (chunks.isEmpty()) continue;
+					lockedChunks.put(aggregationId, chunks);
+					if (records >= maxRecords) {
+						logger.info("Consolidation budget of {} records is exhausted, skipping aggregation '{}'", maxRecords, aggregationId);
+						continue;
+					}
+					records += countRecords(chunks);
+					promises.add(asyncExecutor.execute(() -> {
+						if (failure.value != null) return Promise.complete();
 						return consolidateAggregationChunks(aggregationId, chunks)
-							.whenResult(diff -> {if (!diff.isEmpty()) diffMap.put(aggregationId, diff);})
-							.toVoid();
-					})))
-			.then(asyncRunnables -> Promises.sequence(asyncRunnables))
-			.then(() -> finishConsolidation(diffMap))
+							.map((diff, e) -> {
+								if (e != null) {
+									if (failure.value == null) failure.value = e;
+								} else if (!diff.isEmpty()) {
+									diffMap.put(aggregationId, diff);
+								}
+								return null;
+							});
+					}));
+				}
+				return Promises.all(promises);
+			})
+			.then(() -> failure.value == null ?
+				finishConsolidation(diffMap) :
+				Promise.ofException(failure.value))
 			.then((cubeDiff, e) -> releaseChunks(lockedChunks)
 				.then(() -> Promise.of(cubeDiff, e)))
-			.whenComplete(toLogger(logger, thisMethod(), aggregationIds));
+			.whenComplete(toLogger(logger, thisMethod(), aggregationIds, maxConcurrency, maxRecords));
+	}
+
+	/**
+	 * Back-fills an empty aggregation with data of all the chunks of another aggregation
+	 * and pushes a resulting diff.
+	 * <p>
+	 * It should be done before any data is consumed into the aggregation, otherwise that data would be counted twice.
+	 * So, the operation fails if the aggregation is not empty, either before or after the back-fill.
+	 *
+	 * @see CubeExecutor#backfill
+	 */
+	public Promise<CubeDiff> backfill(String aggregationId, String sourceAggregationId) {
+		checkInReactorThread(this);
+		logger.info("Launching backfill of aggregation '{}' from aggregation '{}'", aggregationId, sourceAggregationId);
+
+		if (!isEmpty(aggregationId)) {
+			return Promise.ofException(new CubeException("Aggregation '" + aggregationId + "' is not empty"));
+		}
+		List<AggregationChunk> sourceChunks = stateManager.query(state -> {
+			AggregationState sourceState = state.getDataState().getAggregationState(sourceAggregationId);
+			return sourceState == null ? List.of() : List.copyOf(sourceState.getChunks().values());
+		});
+
+		return executor.backfill(aggregationId, sourceAggregationId, sourceChunks)
+			.mapException(e -> new CubeException("Failed to back-fill aggregation '" + aggregationId + '\'', e))
+			.then(diff -> {
+				if (!isEmpty(aggregationId)) {
+					return Promise.ofException(new CubeException("Aggregation '" + aggregationId + "' received data during backfill"));
+				}
+				return diff.isEmpty() ? Promise.of(CubeDiff.empty()) : finishConsolidation(Map.of(aggregationId, diff));
+			})
+			.whenComplete(toLogger(logger, thisMethod(), aggregationId, sourceAggregationId));
+	}
+
+	private boolean isEmpty(String aggregationId) {
+		return stateManager.query(state -> {
+			AggregationState aggregationState = state.getDataState().getAggregationState(aggregationId);
+			return aggregationState == null || aggregationState.getChunks().isEmpty();
+		});
 	}
 
 	private List<AggregationChunk> findChunksForConsolidation(String aggregationId, Set<Long> lockedChunkIds, ConsolidationStrategy strategy) {
@@ -160,6 +250,14 @@ public final class CubeConsolidator extends AbstractReactive
 			.whenComplete(toLogger(logger, thisMethod(), aggregationId));
 	}
 
+	private static long countRecords(List<AggregationChunk> chunks) {
+		long records = 0;
+		for (AggregationChunk chunk : chunks) {
+			records += chunk.getCount();
+		}
+		return records;
+	}
+
 	private IChunkLocker ensureLocker(String aggregationId) {
 		return lockers.computeIfAbsent(aggregationId, $ -> chunkLockerFactory.apply(aggregationId));
 	}
@@ -20,8 +20,10 @@ import io.activej.async.AsyncAccumulator;
 import io.activej.codegen.ClassGenerator;
 import io.activej.codegen.ClassKey;
 import io.activej.codegen.DefiningClassLoader;
+import io.activej.codegen.expression.Expression;
 import io.activej.codegen.expression.Variable;
 import io.activej.codegen.expression.impl.Compare;
+import io.activej.common.HashUtils;
 import io.activej.common.builder.AbstractBuilder;
 import io.activej.common.collection.CollectionUtils;
 import io.activej.common.collection.CollectorUtils;
@@ -33,6 +35,8 @@ import io.activej.cube.CubeQuery.Ordering;
 import io.activej.cube.CubeState.CompatibleAggregations;
 import io.activej.cube.CubeStructure.AttributeResolverContainer;
 import io.activej.cube.CubeStructure.PreprocessedQuery;
+import io.activej.cube.QueryResult.Sampling;
+import io.activej.cube.aggregation.AggregationChunk;
 import io.activej.cube.aggregation.AggregationStats;
 import io.activej.cube.aggregation.IAggregationChunkStorage;
 import io.activej.cube.aggregation.fieldtype.FieldType;
@@ -42,6 +46,7 @@ import io.activej.cube.aggregation.predicate.AggregationPredicate;
 import io.activej.cube.aggregation.predicate.AggregationPredicate.ValueResolver;
 import io.activej.cube.exception.QueryException;
 import io.activej.cube.function.MeasuresFunction;
+import io.activej.cube.function.MeasuresScaler;
 import io.activej.cube.function.RecordFunction;
 import io.activej.cube.function.TotalsFunction;
 import io.activej.cube.ot.ProtoCubeDiff;
@@ -60,10 +65,12 @@ import io.activej.jmx.stats.ValueStats;
 import io.activej.promise.Promise;
 import io.activej.promise.Promises;
 import io.activej.reactor.AbstractReactive;
+import io.activej.reactor.Reactive;
 import io.activej.reactor.Reactor;
 import io.activej.reactor.jmx.ReactiveJmxBeanWithStats;
 import io.activej.record.Record;
 import io.activej.record.RecordScheme;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -72,6 +79,7 @@ import java.nio.file.Path;
 import java.time.Duration;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -113,15 +121,20 @@ public final class CubeExecutor extends AbstractReactive
 	private final Map<String, AggregationExecutor> aggregationExecutors = new LinkedHashMap<>();
 
 	private CubeClassLoaderCache classLoaderCache;
+	private @Nullable Executor classGenerationExecutor;
 
 	private int aggregationsChunkSize = AggregationExecutor.DEFAULT_CHUNK_SIZE;
 	private int aggregationsReducerBufferSize = AggregationExecutor.DEFAULT_REDUCER_BUFFER_SIZE;
 	private int aggregationsSorterItemsInMemory = AggregationExecutor.DEFAULT_SORTER_ITEMS_IN_MEMORY;
 	private int aggregationsMaxChunksToConsolidate = AggregationExecutor.DEFAULT_MAX_CHUNKS_TO_CONSOLIDATE;
+	private int aggregationsParallelQueryMinChunks = AggregationExecutor.DEFAULT_PARALLEL_QUERY_MIN_CHUNKS;
+	private boolean aggregationsFusedQueries = AggregationExecutor.DEFAULT_FUSED_QUERIES;
+	private final Map<Reactor, IAggregationChunkStorage> queryStorages = new LinkedHashMap<>();
 
 	// JMX
 	private final AggregationStats aggregationStats = new AggregationStats();
 	private final ValueStats queryTimes = ValueStats.create(Duration.ofMinutes(10));
+	private final ValueStats queryChunksSkipped = ValueStats.create(Duration.ofMinutes(10));
 	private long queryErrors;
 	private Exception queryLastError;
 
@@ -206,6 +219,17 @@ public final class CubeExecutor extends AbstractReactive
 			return this;
 		}
 
+		/**
+		 * Sets an executor which generates query classes of new class loader cache keys,
+		 * so that a reactor thread is not blocked by class generation.
+		 * Has effect only if a class loader cache is set.
+		 */
+		public Builder withClassGenerationExecutor(Executor classGenerationExecutor) {
+			checkNotBuilt(this);
+			CubeExecutor.this.classGenerationExecutor = classGenerationExecutor;
+			return this;
+		}
+
 		public Builder withAggregationsChunkSize(int aggregationsChunkSize) {
 			checkNotBuilt(this);
 			CubeExecutor.this.aggregationsChunkSize = aggregationsChunkSize;
@@ -231,6 +255,40 @@ public final class CubeExecutor extends AbstractReactive
 			return this;
 		}
 
+		/**
+		 * Enables parallel execution of queries over many chunks.
+		 * <p>
+		 * Chunks of a query are split into key ranges, which are read, filtered and pre-aggregated
+		 * by given chunk storages in their own reactors. Pre-aggregated records are then merged in the reactor of this cube.
+		 * Each storage should belong to a separate reactor and should be able to read all the chunks of this cube.
+		 *
+		 * @param queryStorages chunk storages of query workers
+		 */
+		public <S extends IAggregationChunkStorage & Reactive> Builder withParallelQueries(List<S> queryStorages) {
+			checkNotBuilt(this);
+			for (S queryStorage : queryStorages) {
+				IAggregationChunkStorage prev = CubeExecutor.this.queryStorages.put(queryStorage.getReactor(), queryStorage);
+				checkArgument(prev == null, "Query storages should belong to different reactors");
+			}
+			return this;
+		}
+
+		public Builder withParallelQueryMinChunks(int parallelQueryMinChunks) {
+			checkNotBuilt(this);
+			CubeExecutor.this.aggregationsParallelQueryMinChunks = parallelQueryMinChunks;
+			return this;
+		}
+
+		/**
+		 * Sets whether records of queries, which are grouped by a prefix of keys of an aggregation,
+		 * are filtered and pre-aggregated by a single generated operator, instead of a chain of stream stages
+		 */
+		public Builder withFusedQueries(boolean fusedQueries) {
+			checkNotBuilt(this);
+			CubeExecutor.this.aggregationsFusedQueries = fusedQueries;
+			return this;
+		}
+
 		public Builder withTemporarySortDir(Path temporarySortDir) {
 			checkNotBuilt(this);
 			CubeExecutor.this.temporarySortDir = temporarySortDir;
@@ -272,6 +330,9 @@ public final class CubeExecutor extends AbstractReactive
 			aggregationExecutor.setMaxChunksToConsolidate(config != null && config.maxChunksToConsolidate != 0 ?
 				config.maxChunksToConsolidate :
 				aggregationsMaxChunksToConsolidate);
+			aggregationExecutor.setParallelQueryMinChunks(aggregationsParallelQueryMinChunks);
+			aggregationExecutor.setFusedQueries(aggregationsFusedQueries);
+			aggregationExecutor.setQueryStorages(queryStorages);
 			aggregationExecutor.setStats(aggregationStats);
 
 			aggregationExecutors.put(id, aggregationExecutor);
@@ -382,6 +443,17 @@ public final class CubeExecutor extends AbstractReactive
 				.collect(CollectorUtils.toLinkedHashMap(structure.getDimensionTypes()::get)),
 			queryClassLoader);
 
+		int skippedChunks = 0;
+		List<CompatibleAggregations> queriedAggregations = new ArrayList<>();
+		for (CompatibleAggregations compatibleAggregation : compatibleAggregations) {
+			skippedChunks += compatibleAggregation.skippedChunks();
+			if (!compatibleAggregation.chunks().isEmpty()) {
+				queriedAggregations.add(compatibleAggregation);
+			}
+		}
+		queryChunksSkipped.recordValue(skippedChunks);
+		compatibleAggregations = queriedAggregations;
+
 		StreamReducer<K, T, A> streamReducer = StreamReducer.create();
 		StreamSupplier<T> queryResultSupplier = streamReducer.getOutput();
 
@@ -437,6 +509,29 @@ public final class CubeExecutor extends AbstractReactive
 		return queryResultSupplier;
 	}
 
+	/**
+	 * Fills an aggregation with data of another, more detailed aggregation.
+	 * <p>
+	 * This allows adding new aggregations to an existing cube: once a new aggregation is declared,
+	 * it may be back-filled from given chunks of an existing aggregation instead of re-processing source logs.
+	 *
+	 * @param aggregationId       id of an aggregation to be filled
+	 * @param sourceAggregationId id of an aggregation to read data from
+	 * @param sourceChunks        chunks of a source aggregation
+	 * @see CubeStructure#canBackfill
+	 */
+	public Promise<ProtoAggregationDiff> backfill(String aggregationId, String sourceAggregationId, List<AggregationChunk> sourceChunks) {
+		checkInReactorThread(this);
+		AggregationStructure aggregationStructure = structure.getAggregationStructure(aggregationId);
+		checkArgument(aggregationStructure != null, "Unknown aggregation: %s", aggregationId);
+		checkArgument(!aggregationId.equals(sourceAggregationId), "Aggregation cannot be back-filled from itself");
+		checkArgument(structure.canBackfill(sourceAggregationId,
+				aggregationStructure.getKeys(), aggregationStructure.getMeasures(), aggregationStructure.getPredicate()),
+			"Aggregation '%s' cannot be back-filled from aggregation '%s'", aggregationId, sourceAggregationId);
+
+		return aggregationExecutors.get(aggregationId).backfill(aggregationExecutors.get(sourceAggregationId), sourceChunks);
+	}
+
 	public DefiningClassLoader getClassLoader() {
 		return classLoader;
 	}
@@ -445,12 +540,13 @@ public final class CubeExecutor extends AbstractReactive
 	public Promise<QueryResult> query(List<CompatibleAggregations> compatibleAggregations, PreprocessedQuery query) throws QueryException {
 		checkInReactorThread(this);
 		CubeQuery cubeQuery = query.query();
-		DefiningClassLoader queryClassLoader = getQueryClassLoader(new CubeClassLoaderCache.Key(
+		CubeClassLoaderCache.Key key = new CubeClassLoaderCache.Key(
 			new LinkedHashSet<>(cubeQuery.getAttributes()),
 			new LinkedHashSet<>(cubeQuery.getMeasures()),
-			cubeQuery.getWhere().getDimensions()));
+			cubeQuery.getWhere().getDimensions());
 		long queryStarted = reactor.currentTimeMillis();
-		return new RequestContext<>().execute(compatibleAggregations, queryClassLoader, query)
+		return getQueryClassLoader(key, query)
+			.then(queryClassLoader -> new RequestContext<>().prepare(queryClassLoader, query).execute(compatibleAggregations))
 			.whenResult(() -> queryTimes.recordValue(reactor.currentTimeMillis() - queryStarted))
 			.whenException(e -> {
 				queryErrors++;
@@ -463,10 +559,15 @@ public final class CubeExecutor extends AbstractReactive
 	}
 	// endregion
 
-	private DefiningClassLoader getQueryClassLoader(CubeClassLoaderCache.Key key) {
+	private Promise<DefiningClassLoader> getQueryClassLoader(CubeClassLoaderCache.Key key, PreprocessedQuery query) {
 		if (classLoaderCache == null)
-			return classLoader;
-		return classLoaderCache.getOrCreate(key);
+			return Promise.of(classLoader);
+		if (classGenerationExecutor == null)
+			return Promise.of(classLoaderCache.getOrCreate(key));
+		CompletableFuture<DefiningClassLoader> future = classLoaderCache.getOrCreateAsync(key, classGenerationExecutor,
+			queryClassLoader -> new RequestContext<>().prepare(queryClassLoader, query));
+		DefiningClassLoader queryClassLoader = future.getNow(null);
+		return queryClassLoader != null ? Promise.of(queryClassLoader) : Promise.ofFuture(future);
 	}
 
 	public IAggregationChunkStorage getAggregationChunkStorage() {
@@ -492,7 +593,9 @@ public final class CubeExecutor extends AbstractReactive
 		RecordScheme recordScheme;
 		RecordFunction recordFunction;
 
-		Promise<QueryResult> execute(List<CompatibleAggregations> compatibleAggregations, DefiningClassLoader queryClassLoader, PreprocessedQuery query) {
+		@Nullable Sampling sampling;
+
+		RequestContext<R> prepare(DefiningClassLoader queryClassLoader, PreprocessedQuery query) {
 			this.queryClassLoader = queryClassLoader;
 			this.query = query;
 
@@ -505,20 +608,96 @@ public final class CubeExecutor extends AbstractReactive
 			resultClass = createResultClass(query.resultAttributes(), query.resultMeasures(), structure, queryClassLoader);
 			recordScheme = createRecordScheme();
 			if (cubeQuery.getReportType() == ReportType.METADATA) {
-				return Promise.of(QueryResult.createForMetadata(recordScheme, query.recordAttributes(), query.recordMeasures()));
+				return this;
 			}
 			measuresFunction = createMeasuresFunction();
 			totalsFunction = createTotalsFunction();
 			comparator = createComparator();
 			havingPredicate = createHavingPredicate();
 			recordFunction = createRecordFunction();
+			return this;
+		}
 
-			return queryRawStream(compatibleAggregations,
+		Promise<QueryResult> execute(List<CompatibleAggregations> compatibleAggregations) {
+			CubeQuery cubeQuery = query.query();
+			if (cubeQuery.getReportType() == ReportType.METADATA) {
+				return Promise.of(QueryResult.createForMetadata(recordScheme, query.recordAttributes(), query.recordMeasures()));
+			}
+
+			if (!cubeQuery.isSampled()) {
+				return queryRawStream(compatibleAggregations,
+					new ArrayList<>(query.resultDimensions()),
+					new ArrayList<>(query.resultStoredMeasures()),
+					queryPredicate, resultClass, queryClassLoader)
+					.toList()
+					.then(this::processResults);
+			}
+
+			List<CompatibleAggregations> sampledAggregations = sampleChunks(compatibleAggregations, cubeQuery.getSamplingRate());
+			double[] factors = createScaleFactors(compatibleAggregations, sampledAggregations);
+			MeasuresScaler<R> measuresScaler = createMeasuresScaler();
+			return queryRawStream(sampledAggregations,
 				new ArrayList<>(query.resultDimensions()),
 				new ArrayList<>(query.resultStoredMeasures()),
 				queryPredicate, resultClass, queryClassLoader)
 				.toList()
-				.then(this::processResults);
+				.then(results -> {
+					for (R result : results) {
+						measuresScaler.scale(result, factors);
+					}
+					return processResults(results);
+				});
+		}
+
+		double[] createScaleFactors(List<CompatibleAggregations> compatibleAggregations, List<CompatibleAggregations> sampledAggregations) {
+			Map<String, Double> measureFactors = new HashMap<>();
+			long totalRecords = 0;
+			long sampledRecords = 0;
+			int totalChunks = 0;
+			int sampledChunks = 0;
+			for (int i = 0; i < compatibleAggregations.size(); i++) {
+				CompatibleAggregations all = compatibleAggregations.get(i);
+				CompatibleAggregations sampled = sampledAggregations.get(i);
+				long allCount = countRecords(all.chunks());
+				long sampledCount = countRecords(sampled.chunks());
+				double factor = sampledCount == 0 ? 1.0 : (double) allCount / sampledCount;
+				for (String measure : all.measures()) {
+					measureFactors.put(measure, factor);
+				}
+				totalRecords += allCount;
+				sampledRecords += sampledCount;
+				totalChunks += all.chunks().size();
+				sampledChunks += sampled.chunks().size();
+			}
+			double rate = totalRecords == 0 ? 1.0 : (double) sampledRecords / totalRecords;
+			double relativeError = sampledChunks == 0 || sampledChunks == totalChunks ? 0.0 : Math.sqrt((1.0 - rate) / sampledChunks);
+			sampling = new Sampling(rate, sampledChunks, totalChunks, relativeError);
+
+			double[] factors = new double[query.resultStoredMeasures().size()];
+			int i = 0;
+			for (String measure : query.resultStoredMeasures()) {
+				factors[i++] = measureFactors.getOrDefault(measure, 1.0);
+			}
+			return factors;
+		}
+
+		MeasuresScaler<R> createMeasuresScaler() {
+			return queryClassLoader.ensureClassAndCreateInstance(
+				ClassKey.of(MeasuresScaler.class, resultClass, query.resultStoredMeasures()),
+				() -> ClassGenerator.builder(MeasuresScaler.class)
+					.withMethod("scale", let(cast(arg(0), resultClass), record ->
+						sequence(seq -> {
+							int i = 0;
+							for (String measure : query.resultStoredMeasures()) {
+								Expression scale = structure.getMeasures().get(measure)
+									.scaleAccumulator(property(record, measure), arrayGet(arg(1), value(i++)));
+								if (scale != null) {
+									seq.add(scale);
+								}
+							}
+						})))
+					.build()
+			);
 		}
 
 		RecordScheme createRecordScheme() {
@@ -716,7 +895,7 @@ public final class CubeExecutor extends AbstractReactive
 				return QueryResult.createForData(recordScheme,
 					query.recordAttributes(), query.recordMeasures(),
 					resultOrderings, filterAttributes,
-					resultRecords
+					resultRecords, sampling
 				);
 			}
 
@@ -726,7 +905,7 @@ public final class CubeExecutor extends AbstractReactive
 				return QueryResult.createForDataWithTotals(recordScheme,
 					query.recordAttributes(), query.recordMeasures(),
 					resultOrderings, filterAttributes,
-					resultRecords, totalRecord, totalCount
+					resultRecords, totalRecord, totalCount, sampling
 				);
 			}
 
@@ -928,6 +1107,11 @@ public final class CubeExecutor extends AbstractReactive
 		return queryTimes;
 	}
 
+	@JmxAttribute
+	public ValueStats getQueryChunksSkipped() {
+		return queryChunksSkipped;
+	}
+
 	@JmxAttribute
 	public long getQueryErrors() {
 		return queryErrors;
@@ -948,4 +1132,45 @@ public final class CubeExecutor extends AbstractReactive
 		return aggregationExecutors;
 	}
 
+
+	/**
+	 * Selects a deterministic sample of chunks of each aggregation.
+	 * A chunk is selected by a hash of its id, so that repeated queries read the same chunks.
+	 * At least one chunk of each non-empty aggregation is always selected.
+	 */
+	static List<CompatibleAggregations> sampleChunks(List<CompatibleAggregations> compatibleAggregations, double samplingRate) {
+		List<CompatibleAggregations> result = new ArrayList<>(compatibleAggregations.size());
+		for (CompatibleAggregations compatibleAggregation : compatibleAggregations) {
+			List<AggregationChunk> chunks = compatibleAggregation.chunks();
+			List<AggregationChunk> sampled = new ArrayList<>();
+			AggregationChunk minChunk = null;
+			for (AggregationChunk chunk : chunks) {
+				double sample = sampleOf(chunk.getChunkId());
+				if (sample < samplingRate) {
+					sampled.add(chunk);
+				}
+				if (minChunk == null || sample < sampleOf(minChunk.getChunkId())) {
+					minChunk = chunk;
+				}
+			}
+			if (sampled.isEmpty() && minChunk != null) {
+				sampled.add(minChunk);
+			}
+			result.add(new CompatibleAggregations(compatibleAggregation.id(), compatibleAggregation.measures(),
+				sampled, compatibleAggregation.skippedChunks()));
+		}
+		return result;
+	}
+
+	private static double sampleOf(long chunkId) {
+		return (HashUtils.murmur3hash(chunkId) >>> 11) * 0x1.0p-53;
+	}
+
+	private static long countRecords(List<AggregationChunk> chunks) {
+		long count = 0;
+		for (AggregationChunk chunk : chunks) {
+			count += chunk.getCount();
+		}
+		return count;
+	}
 }
@@ -25,6 +25,8 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
+import static io.activej.common.Checks.checkArgument;
+
 public final class CubeQuery {
 	private Set<String> attributes = new LinkedHashSet<>();
 	private Set<String> measures = new LinkedHashSet<>();
@@ -35,6 +37,8 @@ public final class CubeQuery {
 	private List<Ordering> orderings = new ArrayList<>();
 
 	private ReportType reportType = ReportType.DATA_WITH_TOTALS;
+	private boolean cacheable = true;
+	private double samplingRate = 1.0;
 
 	private CubeQuery() {}
 
@@ -122,6 +126,29 @@ public final class CubeQuery {
 			return this;
 		}
 
+		/**
+		 * Sets whether a result of this query may be taken from or put into a query cache, if any
+		 */
+		public Builder withCacheable(boolean cacheable) {
+			checkNotBuilt(this);
+			CubeQuery.this.cacheable = cacheable;
+			return this;
+		}
+
+		/**
+		 * Makes this query approximate: only a deterministic sample of chunks is read,
+		 * and additive measures are extrapolated to all the chunks.
+		 * An estimate of an error is returned in {@link QueryResult#getSampling()}.
+		 *
+		 * @param samplingRate a fraction of chunks to be read, {@code 1.0} means an exact query
+		 */
+		public Builder withSamplingRate(double samplingRate) {
+			checkNotBuilt(this);
+			checkArgument(samplingRate > 0 && samplingRate <= 1, "Sampling rate should be in range (0, 1]");
+			CubeQuery.this.samplingRate = samplingRate;
+			return this;
+		}
+
 		@Override
 		protected CubeQuery doBuild() {
 			return CubeQuery.this;
@@ -161,6 +188,18 @@ public final class CubeQuery {
 		return reportType;
 	}
 
+	public boolean isCacheable() {
+		return cacheable;
+	}
+
+	public double getSamplingRate() {
+		return samplingRate;
+	}
+
+	public boolean isSampled() {
+		return samplingRate < 1.0;
+	}
+
 	// endregion
 
 	// region helper classes
@@ -231,6 +270,7 @@ public final class CubeQuery {
 			", limit=" + limit +
 			", offset=" + offset +
 			", orderings=" + orderings +
-			", reportType=" + reportType + '}';
+			", reportType=" + reportType +
+			(isSampled() ? ", samplingRate=" + samplingRate : "") + '}';
 	}
 }
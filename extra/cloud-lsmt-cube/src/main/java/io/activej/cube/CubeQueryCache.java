@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.cube;
+
+import io.activej.common.ApplicationSettings;
+import io.activej.cube.CubeQuery.Ordering;
+import io.activej.cube.aggregation.AggregationChunk;
+import io.activej.cube.aggregation.fieldtype.FieldType;
+import io.activej.cube.aggregation.ot.AggregationDiff;
+import io.activej.cube.aggregation.predicate.AggregationPredicate;
+import io.activej.cube.ot.CubeDiff;
+import io.activej.jmx.api.attribute.JmxAttribute;
+import io.activej.jmx.api.attribute.JmxOperation;
+import io.activej.promise.Promise;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+import static io.activej.common.Checks.checkArgument;
+import static io.activej.cube.aggregation.predicate.AggregationPredicates.alwaysFalse;
+import static io.activej.cube.aggregation.predicate.AggregationPredicates.and;
+
+/**
+ * A bounded cache of results of cube queries.
+ * <p>
+ * A cached result is bound to a normalized query and to the set of chunks that were used to compute it.
+ * A result is only returned for a query that would read exactly the same chunks,
+ * so results never outlive changes of a cube state.
+ * Results which become stale are evicted either on lookup, or eagerly via {@link #invalidate(CubeDiff)}.
+ * <p>
+ * Concurrent identical queries share a single computation.
+ * The cache is bounded by the total number of records in cached results, least recently used results are evicted first.
+ * Cached results are shared between callers and should not be modified.
+ * <p>
+ * This class is not thread-safe and should be used from a reactor thread of a {@link CubeReporting}
+ */
+public final class CubeQueryCache {
+	public static final int DEFAULT_MAX_RECORDS = ApplicationSettings.getInt(CubeQueryCache.class, "maxRecords", 1_000_000);
+
+	private final int maxRecords;
+
+	private final LinkedHashMap<QueryKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private final Map<String, Set<QueryKey>> aggregationIndex = new HashMap<>();
+	private int cachedRecords;
+
+	// JMX
+	private long hits;
+	private long misses;
+	private long invalidations;
+	private long evictions;
+
+	private CubeQueryCache(int maxRecords) {
+		this.maxRecords = maxRecords;
+	}
+
+	public static CubeQueryCache create() {
+		return new CubeQueryCache(DEFAULT_MAX_RECORDS);
+	}
+
+	public static CubeQueryCache create(int maxRecords) {
+		checkArgument(maxRecords > 0, "Max number of cached records should be positive");
+		return new CubeQueryCache(maxRecords);
+	}
+
+	@Nullable Promise<QueryResult> get(CubeQuery query, Map<String, Set<Long>> chunkIds) {
+		QueryKey key = QueryKey.of(query);
+		Entry entry = entries.get(key);
+		if (entry != null) {
+			if (entry.chunkIds.equals(chunkIds)) {
+				hits++;
+				return entry.result;
+			}
+			invalidations++;
+			remove(key);
+		}
+		misses++;
+		return null;
+	}
+
+	Promise<QueryResult> put(
+		CubeStructure structure, CubeQuery query, Map<String, Set<Long>> chunkIds, Promise<QueryResult> result
+	) {
+		if (result.isException()) return result;
+
+		QueryKey key = QueryKey.of(query);
+		remove(key);
+		Entry newEntry = new Entry(structure, chunkIds, result);
+		entries.put(key, newEntry);
+		for (String aggregationId : chunkIds.keySet()) {
+			aggregationIndex.computeIfAbsent(aggregationId, $ -> new HashSet<>()).add(key);
+		}
+		result
+			.whenResult(queryResult -> {
+				if (entries.get(key) != newEntry) return;
+				newEntry.records = queryResult.getRecords().size() + 1;
+				cachedRecords += newEntry.records;
+				evict();
+			})
+			.whenException(() -> {
+				if (entries.get(key) == newEntry) {
+					remove(key);
+				}
+			});
+		return result;
+	}
+
+	/**
+	 * Removes results which may be affected by a given diff of a cube state,
+	 * that is results computed from removed chunks, or results of queries
+	 * whose predicates may match records of added chunks.
+	 * An added chunk is matched by its primary key range and dimension statistics,
+	 * the same way chunks are selected for a query
+	 */
+	public void invalidate(CubeDiff diff) {
+		for (Map.Entry<String, AggregationDiff> entry : diff.entrySet()) {
+			AggregationDiff aggregationDiff = entry.getValue();
+			Set<QueryKey> keys = aggregationIndex.get(entry.getKey());
+			if (keys == null) continue;
+			Set<Long> removedChunkIds = new HashSet<>();
+			for (AggregationChunk chunk : aggregationDiff.getRemovedChunks()) {
+				removedChunkIds.add(chunk.getChunkId());
+			}
+			for (QueryKey key : new ArrayList<>(keys)) {
+				Entry cached = entries.get(key);
+				Set<Long> chunkIds = cached.chunkIds.get(entry.getKey());
+				if (!Collections.disjoint(chunkIds, removedChunkIds) ||
+					mightMatch(cached.structure.getAggregationStructure(entry.getKey()), aggregationDiff.getAddedChunks(), key.where())) {
+					invalidations++;
+					remove(key);
+				}
+			}
+		}
+	}
+
+	@SuppressWarnings("rawtypes")
+	private static boolean mightMatch(AggregationStructure structure, Set<AggregationChunk> chunks, AggregationPredicate where) {
+		List<String> keys = structure.getKeys();
+		Map<String, FieldType> keyTypes = structure.getKeyTypes();
+		for (AggregationChunk chunk : chunks) {
+			AggregationPredicate chunkPredicate = chunk.toPredicate(keys, keyTypes);
+			if (and(chunkPredicate, where).simplify().equals(alwaysFalse())) continue;
+			if (chunk.mightMatch(where, keyTypes)) return true;
+		}
+		return false;
+	}
+
+	private void evict() {
+		Iterator<Map.Entry<QueryKey, Entry>> iterator = entries.entrySet().iterator();
+		while (cachedRecords > maxRecords && iterator.hasNext()) {
+			Map.Entry<QueryKey, Entry> eldest = iterator.next();
+			if (eldest.getValue().records == 0) continue;
+			iterator.remove();
+			unindex(eldest.getKey(), eldest.getValue());
+			evictions++;
+		}
+	}
+
+	private void remove(QueryKey key) {
+		Entry entry = entries.remove(key);
+		if (entry != null) {
+			unindex(key, entry);
+		}
+	}
+
+	private void unindex(QueryKey key, Entry entry) {
+		cachedRecords -= entry.records;
+		for (String aggregationId : entry.chunkIds.keySet()) {
+			Set<QueryKey> keys = aggregationIndex.get(aggregationId);
+			keys.remove(key);
+			if (keys.isEmpty()) {
+				aggregationIndex.remove(aggregationId);
+			}
+		}
+	}
+
+	private record QueryKey(
+		List<String> attributes, List<String> measures, AggregationPredicate where, AggregationPredicate having,
+		List<Ordering> orderings, @Nullable Integer limit, @Nullable Integer offset, ReportType reportType,
+		double samplingRate
+	) {
+		static QueryKey of(CubeQuery query) {
+			return new QueryKey(
+				List.copyOf(query.getAttributes()),
+				List.copyOf(query.getMeasures()),
+				query.getWhere().simplify(),
+				query.getHaving().simplify(),
+				List.copyOf(query.getOrderings()),
+				query.getLimit(),
+				query.getOffset(),
+				query.getReportType(),
+				query.getSamplingRate());
+		}
+	}
+
+	private static final class Entry {
+		final CubeStructure structure;
+		final Map<String, Set<Long>> chunkIds;
+		final Promise<QueryResult> result;
+		int records;
+
+		Entry(CubeStructure structure, Map<String, Set<Long>> chunkIds, Promise<QueryResult> result) {
+			this.structure = structure;
+			this.chunkIds = chunkIds;
+			this.result = result;
+		}
+	}
+
+	// region JMX
+	@JmxAttribute
+	public int getMaxRecords() {
+		return maxRecords;
+	}
+
+	@JmxAttribute
+	public int getCachedResults() {
+		return entries.size();
+	}
+
+	@JmxAttribute
+	public int getCachedRecords() {
+		return cachedRecords;
+	}
+
+	@JmxAttribute
+	public long getHits() {
+		return hits;
+	}
+
+	@JmxAttribute
+	public long getMisses() {
+		return misses;
+	}
+
+	@JmxAttribute
+	public long getInvalidations() {
+		return invalidations;
+	}
+
+	@JmxAttribute
+	public long getEvictions() {
+		return evictions;
+	}
+
+	@JmxOperation
+	public void clear() {
+		entries.clear();
+		aggregationIndex.clear();
+		cachedRecords = 0;
+	}
+	// endregion
+}
@@ -17,22 +17,25 @@
 package io.activej.cube;
 
 import io.activej.codegen.DefiningClassLoader;
+import io.activej.common.builder.AbstractBuilder;
 import io.activej.cube.CubeState.CompatibleAggregations;
 import io.activej.cube.CubeStructure.PreprocessedQuery;
+import io.activej.cube.aggregation.AggregationChunk;
 import io.activej.cube.aggregation.predicate.AggregationPredicate;
 import io.activej.cube.exception.QueryException;
 import io.activej.cube.ot.CubeDiff;
 import io.activej.datastream.supplier.StreamSupplier;
 import io.activej.etl.LogDiff;
 import io.activej.etl.LogState;
+import io.activej.jmx.api.attribute.JmxAttribute;
 import io.activej.jmx.api.attribute.JmxOperation;
 import io.activej.ot.StateManager;
 import io.activej.promise.Promise;
 import io.activej.reactor.AbstractReactive;
+import io.activej.reactor.jmx.ReactiveJmxBean;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.stream.Collectors;
 
 import static io.activej.common.collection.CollectorUtils.entriesToLinkedHashMap;
@@ -43,12 +46,15 @@ import static io.activej.reactor.Reactive.checkInReactorThread;
  * Also provides functionality for managing aggregations.
  */
 public final class CubeReporting extends AbstractReactive
-	implements ICubeReporting {
+	implements ICubeReporting, ReactiveJmxBean {
 
 	private final StateManager<LogDiff<CubeDiff>, LogState<CubeDiff, CubeState>> stateManager;
 	private final CubeStructure structure;
 	private final CubeExecutor executor;
 
+	private @Nullable CubeQueryCache queryCache;
+	private @Nullable CubeAggregationAdvisor aggregationAdvisor;
+
 	private CubeReporting(StateManager<LogDiff<CubeDiff>, LogState<CubeDiff, CubeState>> stateManager, CubeStructure structure, CubeExecutor executor) {
 		super(executor.getReactor());
 		this.stateManager = stateManager;
@@ -57,7 +63,44 @@ public final class CubeReporting extends AbstractReactive
 	}
 
 	public static CubeReporting create(StateManager<LogDiff<CubeDiff>, LogState<CubeDiff, CubeState>> stateFunction, CubeStructure structure, CubeExecutor executor) {
-		return new CubeReporting(stateFunction, structure, executor);
+		return builder(stateFunction, structure, executor).build();
+	}
+
+	public static Builder builder(StateManager<LogDiff<CubeDiff>, LogState<CubeDiff, CubeState>> stateFunction, CubeStructure structure, CubeExecutor executor) {
+		return new CubeReporting(stateFunction, structure, executor).new Builder();
+	}
+
+	public final class Builder extends AbstractBuilder<Builder, CubeReporting> {
+		private Builder() {}
+
+		/**
+		 * Enables caching of query results.
+		 * <p>
+		 * Results are cached per set of chunks they were computed from, so they are never stale.
+		 * To free memory held by outdated results early, diffs of a cube state may be passed
+		 * to {@link CubeQueryCache#invalidate}.
+		 *
+		 * @see CubeQuery.Builder#withCacheable(boolean)
+		 */
+		public Builder withQueryCache(CubeQueryCache queryCache) {
+			checkNotBuilt(this);
+			CubeReporting.this.queryCache = queryCache;
+			return this;
+		}
+
+		/**
+		 * Records executed queries to the given advisor, so that it may recommend new aggregations
+		 */
+		public Builder withAggregationAdvisor(CubeAggregationAdvisor aggregationAdvisor) {
+			checkNotBuilt(this);
+			CubeReporting.this.aggregationAdvisor = aggregationAdvisor;
+			return this;
+		}
+
+		@Override
+		protected CubeReporting doBuild() {
+			return CubeReporting.this;
+		}
 	}
 
 	/**
@@ -97,7 +140,36 @@ public final class CubeReporting extends AbstractReactive
 				cubeQuery.getWhere()
 			));
 
-		return executor.query(compatibleAggregations, preprocessedQuery);
+		if (queryCache == null || !cubeQuery.isCacheable()) {
+			return execute(cubeQuery, preprocessedQuery, compatibleAggregations);
+		}
+
+		Map<String, Set<Long>> chunkIds = new HashMap<>();
+		for (CompatibleAggregations compatibleAggregation : compatibleAggregations) {
+			Set<Long> ids = chunkIds.computeIfAbsent(compatibleAggregation.id(), $ -> new HashSet<>());
+			for (AggregationChunk chunk : compatibleAggregation.chunks()) {
+				ids.add(chunk.getChunkId());
+			}
+		}
+		Promise<QueryResult> cachedResult = queryCache.get(cubeQuery, chunkIds);
+		if (cachedResult != null) return cachedResult;
+		return queryCache.put(structure, cubeQuery, chunkIds, execute(cubeQuery, preprocessedQuery, compatibleAggregations));
+	}
+
+	private Promise<QueryResult> execute(
+		CubeQuery cubeQuery, PreprocessedQuery preprocessedQuery, List<CompatibleAggregations> compatibleAggregations
+	) throws QueryException {
+		Promise<QueryResult> result = executor.query(compatibleAggregations, preprocessedQuery);
+		if (aggregationAdvisor == null || cubeQuery.getReportType() == ReportType.METADATA) return result;
+
+		long start = reactor.currentTimeMillis();
+		return result
+			.whenResult(() -> aggregationAdvisor.recordQuery(
+				preprocessedQuery.resultDimensions(),
+				preprocessedQuery.resultStoredMeasures(),
+				cubeQuery.getWhere(),
+				compatibleAggregations,
+				reactor.currentTimeMillis() - start));
 	}
 
 	public CubeStructure getStructure() {
@@ -112,6 +184,16 @@ public final class CubeReporting extends AbstractReactive
 		return executor;
 	}
 
+	@JmxAttribute
+	public @Nullable CubeQueryCache getQueryCache() {
+		return queryCache;
+	}
+
+	@JmxAttribute
+	public @Nullable CubeAggregationAdvisor getAggregationAdvisor() {
+		return aggregationAdvisor;
+	}
+
 	@JmxOperation
 	public Map<String, String> getIrrelevantChunksIds() {
 		return stateManager.query(state ->
@@ -1,5 +1,6 @@
 package io.activej.cube;
 
+import io.activej.cube.AggregationState.ChunksSelection;
 import io.activej.cube.AggregationState.ConsolidationDebugInfo;
 import io.activej.cube.aggregation.AggregationChunk;
 import io.activej.cube.aggregation.fieldtype.FieldType;
@@ -152,17 +153,17 @@ public final class CubeState implements OTState<CubeDiff> {
 				continue;
 			storedMeasures.removeAll(compatibleMeasures);
 
-			List<AggregationChunk> chunks = record.state.findChunks(
+			ChunksSelection selection = record.state.selectChunks(
 				compatibleMeasures,
 				where
 			);
-			if (chunks.isEmpty()) continue;
-			result.add(new CompatibleAggregations(record.key(), compatibleMeasures, chunks));
+			if (selection.chunks().isEmpty() && selection.skippedChunks() == 0) continue;
+			result.add(new CompatibleAggregations(record.key(), compatibleMeasures, selection.chunks(), selection.skippedChunks()));
 		}
 
 		return result;
 	}
 
-	public record CompatibleAggregations(String id, List<String> measures, List<AggregationChunk> chunks) {
+	public record CompatibleAggregations(String id, List<String> measures, List<AggregationChunk> chunks, int skippedChunks) {
 	}
 }
@@ -55,6 +55,7 @@ public final class CubeStructure {
 		private final List<String> measures = new ArrayList<>();
 		private AggregationPredicate predicate = alwaysTrue();
 		private final List<String> partitioningKey = new ArrayList<>();
+		private final List<String> chunkStatsDimensions = new ArrayList<>();
 
 		public AggregationConfig(String id) {
 			this.id = id;
@@ -80,6 +81,10 @@ public final class CubeStructure {
 			return partitioningKey;
 		}
 
+		public List<String> getChunkStatsDimensions() {
+			return chunkStatsDimensions;
+		}
+
 		public static AggregationConfig id(String id) {
 			return new AggregationConfig(id);
 		}
@@ -116,6 +121,20 @@ public final class CubeStructure {
 			this.partitioningKey.addAll(List.of(partitioningKey));
 			return this;
 		}
+
+		/**
+		 * Collects min/max values and bloom filters of given dimensions for each chunk,
+		 * so that queries filtering by these dimensions skip chunks that cannot match.
+		 * Useful for dimensions that are not a prefix of the aggregation key
+		 */
+		public AggregationConfig withChunkStats(List<String> dimensions) {
+			this.chunkStatsDimensions.addAll(dimensions);
+			return this;
+		}
+
+		public AggregationConfig withChunkStats(String... dimensions) {
+			return withChunkStats(List.of(dimensions));
+		}
 	}
 
 	// state
@@ -234,6 +253,7 @@ public final class CubeStructure {
 			}
 
 			aggregationStructure.addPartitioningKey(aggregationConfig.partitioningKey);
+			aggregationStructure.addChunkStatsDimensions(aggregationConfig.chunkStatsDimensions);
 			aggregationStructure.setPredicate(aggregationConfig.getPredicate());
 			aggregationStructure.setPrecondition(and(aggregationConfig.getDimensions().stream()
 				.map(validityPredicates::get)
@@ -357,6 +377,29 @@ public final class CubeStructure {
 		return aggregationStructures.keySet();
 	}
 
+	/**
+	 * Checks whether an aggregation with given dimensions, measures and predicate
+	 * may be filled with data of an existing aggregation.
+	 * The existing aggregation should have all the dimensions and measures,
+	 * and should not filter out any records that would be stored in the filled aggregation
+	 */
+	public boolean canBackfill(
+		String sourceAggregationId, Collection<String> dimensions, Collection<String> measures, AggregationPredicate predicate
+	) {
+		AggregationStructure source = aggregationStructures.get(sourceAggregationId);
+		if (source == null) return false;
+		if (!source.getKeys().containsAll(dimensions) || !source.getMeasures().containsAll(measures)) return false;
+		predicate = predicate.simplify();
+		if (!source.getKeys().containsAll(predicate.getDimensions())) return false;
+		if (!and(source.getPredicate(), predicate).simplify().equals(predicate)) return false;
+		AggregationPredicate precondition = and(dimensions.stream()
+			.map(validityPredicates::get)
+			.filter(Objects::nonNull)
+			.toList())
+			.simplify();
+		return and(source.getPrecondition(), precondition).simplify().equals(precondition);
+	}
+
 	public Set<String> getCompatibleAggregationsForQuery(
 		Collection<String> dimensions, Collection<String> storedMeasures, AggregationPredicate where
 	) {
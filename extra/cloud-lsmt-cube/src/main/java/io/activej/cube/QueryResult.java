@@ -19,6 +19,7 @@ package io.activej.cube;
 import io.activej.common.Utils;
 import io.activej.record.Record;
 import io.activej.record.RecordScheme;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
 import java.util.Map;
@@ -38,9 +39,12 @@ public final class QueryResult {
 	private final Map<String, Object> filterAttributes;
 	private final ReportType reportType;
 
+	private final @Nullable Sampling sampling;
+
 	private QueryResult(
 		RecordScheme recordScheme, List<Record> records, Record totals, int totalCount, List<String> attributes,
-		List<String> measures, List<String> sortedBy, Map<String, Object> filterAttributes, ReportType reportType
+		List<String> measures, List<String> sortedBy, Map<String, Object> filterAttributes, ReportType reportType,
+		@Nullable Sampling sampling
 	) {
 		this.recordScheme = recordScheme;
 		this.records = records;
@@ -51,12 +55,13 @@ public final class QueryResult {
 		this.sortedBy = sortedBy;
 		this.filterAttributes = filterAttributes;
 		this.reportType = reportType;
+		this.sampling = sampling;
 	}
 
 	public static QueryResult createForMetadata(
 		RecordScheme recordScheme, List<String> attributes, List<String> measures
 	) {
-		return new QueryResult(recordScheme, null, null, 0, attributes, measures, null, null, METADATA);
+		return new QueryResult(recordScheme, null, null, 0, attributes, measures, null, null, METADATA, null);
 	}
 
 	public static QueryResult createForData(
@@ -64,7 +69,15 @@ public final class QueryResult {
 		List<String> sortedBy, Map<String, Object> filterAttributes,
 		List<Record> records
 	) {
-		return new QueryResult(recordScheme, records, null, 0, attributes, measures, sortedBy, filterAttributes, DATA);
+		return createForData(recordScheme, attributes, measures, sortedBy, filterAttributes, records, null);
+	}
+
+	public static QueryResult createForData(
+		RecordScheme recordScheme, List<String> attributes, List<String> measures,
+		List<String> sortedBy, Map<String, Object> filterAttributes,
+		List<Record> records, @Nullable Sampling sampling
+	) {
+		return new QueryResult(recordScheme, records, null, 0, attributes, measures, sortedBy, filterAttributes, DATA, sampling);
 	}
 
 	public static QueryResult createForDataWithTotals(
@@ -72,7 +85,15 @@ public final class QueryResult {
 		List<String> sortedBy, Map<String, Object> filterAttributes,
 		List<Record> records, Record totals, int totalCount
 	) {
-		return new QueryResult(recordScheme, records, totals, totalCount, attributes, measures, sortedBy, filterAttributes, DATA_WITH_TOTALS);
+		return createForDataWithTotals(recordScheme, attributes, measures, sortedBy, filterAttributes, records, totals, totalCount, null);
+	}
+
+	public static QueryResult createForDataWithTotals(
+		RecordScheme recordScheme, List<String> attributes, List<String> measures,
+		List<String> sortedBy, Map<String, Object> filterAttributes,
+		List<Record> records, Record totals, int totalCount, @Nullable Sampling sampling
+	) {
+		return new QueryResult(recordScheme, records, totals, totalCount, attributes, measures, sortedBy, filterAttributes, DATA_WITH_TOTALS, sampling);
 	}
 
 	public RecordScheme getRecordScheme() {
@@ -111,6 +132,30 @@ public final class QueryResult {
 		return reportType;
 	}
 
+	/**
+	 * Returns a description of a sample that this result was computed from,
+	 * or {@code null} if this result is exact
+	 */
+	public @Nullable Sampling getSampling() {
+		return sampling;
+	}
+
+	/**
+	 * A description of a sample of chunks that an approximate result was computed from.
+	 * <p>
+	 * Additive measures (sums and counts) are extrapolated by a ratio of a number of all records
+	 * to a number of sampled records, other measures are computed over the sample as is.
+	 * A relative error is an estimate of a relative standard error of extrapolated measures,
+	 * which treats chunks as clusters of a simple random sample with a unit coefficient of variation.
+	 *
+	 * @param rate          a fraction of records that were read
+	 * @param sampledChunks a number of chunks that were read
+	 * @param totalChunks   a number of chunks that an exact query would read
+	 * @param relativeError an estimated relative standard error of extrapolated measures
+	 */
+	public record Sampling(double rate, int sampledChunks, int totalChunks, double relativeError) {
+	}
+
 	@Override
 	public String toString() {
 		return
@@ -121,6 +166,7 @@ public final class QueryResult {
 			", totals=" + totals +
 			", count=" + totalCount +
 			", sortedBy=" + sortedBy +
+			(sampling != null ? ", sampling=" + sampling : "") +
 			'}';
 	}
 }
@@ -18,6 +18,9 @@ package io.activej.cube.aggregation;
 
 import io.activej.cube.aggregation.fieldtype.FieldType;
 import io.activej.cube.aggregation.predicate.AggregationPredicate;
+import io.activej.cube.aggregation.predicate.impl.And;
+import io.activej.cube.aggregation.predicate.impl.Eq;
+import io.activej.cube.aggregation.predicate.impl.In;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -25,6 +28,7 @@ import java.util.Map;
 
 import static io.activej.cube.aggregation.predicate.AggregationPredicates.*;
 import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
 
 public class AggregationChunk {
 	private final long chunkId;
@@ -32,23 +36,33 @@ public class AggregationChunk {
 	private final PrimaryKey minPrimaryKey;
 	private final PrimaryKey maxPrimaryKey;
 	private final int count;
+	private final Map<String, DimensionStats> dimensionStats;
 
 	private AggregationChunk(
-		long chunkId, List<String> measures, PrimaryKey minPrimaryKey, PrimaryKey maxPrimaryKey, int count
+		long chunkId, List<String> measures, PrimaryKey minPrimaryKey, PrimaryKey maxPrimaryKey, int count,
+		Map<String, DimensionStats> dimensionStats
 	) {
 		this.chunkId = chunkId;
 		this.measures = measures;
 		this.minPrimaryKey = minPrimaryKey;
 		this.maxPrimaryKey = maxPrimaryKey;
 		this.count = count;
+		this.dimensionStats = dimensionStats;
 	}
 
 	public static AggregationChunk create(long chunkId, List<String> fields, PrimaryKey minPrimaryKey, PrimaryKey maxPrimaryKey, int count) {
-		return new AggregationChunk(chunkId, fields, minPrimaryKey, maxPrimaryKey, count);
+		return new AggregationChunk(chunkId, fields, minPrimaryKey, maxPrimaryKey, count, Map.of());
+	}
+
+	public static AggregationChunk create(
+		long chunkId, List<String> fields, PrimaryKey minPrimaryKey, PrimaryKey maxPrimaryKey, int count,
+		Map<String, DimensionStats> dimensionStats
+	) {
+		return new AggregationChunk(chunkId, fields, minPrimaryKey, maxPrimaryKey, count, dimensionStats);
 	}
 
 	public static AggregationChunk ofId(long chunkId) {
-		return new AggregationChunk(chunkId, null, null, null, 0);
+		return new AggregationChunk(chunkId, null, null, null, 0, Map.of());
 	}
 
 	public long getChunkId() {
@@ -71,6 +85,10 @@ public class AggregationChunk {
 		return count;
 	}
 
+	public Map<String, DimensionStats> getDimensionStats() {
+		return unmodifiableMap(dimensionStats);
+	}
+
 	@SuppressWarnings("rawtypes")
 	public AggregationPredicate toPredicate(List<String> primaryKey, Map<String, FieldType> fields) {
 		List<AggregationPredicate> predicates = new ArrayList<>();
@@ -88,6 +106,48 @@ public class AggregationChunk {
 		return and(predicates);
 	}
 
+	/**
+	 * Checks whether this chunk may contain records matching a predicate, judging by dimension statistics.
+	 * Min/max values are checked against any predicate, bloom filters are checked against
+	 * {@code Eq} and {@code In} predicates, possibly combined with {@code And}.
+	 *
+	 * @param predicate a simplified predicate
+	 */
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	public boolean mightMatch(AggregationPredicate predicate, Map<String, FieldType> fields) {
+		if (dimensionStats.isEmpty()) return true;
+
+		List<AggregationPredicate> predicates = new ArrayList<>();
+		predicates.add(predicate);
+		for (Map.Entry<String, DimensionStats> entry : dimensionStats.entrySet()) {
+			String key = entry.getKey();
+			Object from = toInitialValue(fields, key, entry.getValue().min());
+			Object to = toInitialValue(fields, key, entry.getValue().max());
+			predicates.add(from.equals(to) ? eq(key, from) : between(key, (Comparable<?>) from, (Comparable<?>) to));
+		}
+		if (and(predicates).simplify().equals(alwaysFalse())) return false;
+
+		for (AggregationPredicate conjunct : predicate instanceof And and ? and.predicates : List.of(predicate)) {
+			if (conjunct instanceof Eq eq) {
+				DimensionStats stats = dimensionStats.get(eq.key);
+				if (stats != null && eq.value != null && !stats.mightContain(toInternalValue(fields, eq.key, eq.value))) {
+					return false;
+				}
+			} else if (conjunct instanceof In in) {
+				DimensionStats stats = dimensionStats.get(in.key);
+				if (stats != null && in.values.stream().noneMatch(value -> stats.mightContain(toInternalValue(fields, in.key, value)))) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	private static Object toInternalValue(Map<String, FieldType> fields, String key, Object value) {
+		return fields.containsKey(key) ? fields.get(key).toInternalValue(value) : value;
+	}
+
 	@SuppressWarnings("rawtypes")
 	private static Object toInitialValue(Map<String, FieldType> fields, String key, Object value) {
 		return fields.containsKey(key) ? fields.get(key).toInitialValue(value) : value;
@@ -115,6 +175,7 @@ public class AggregationChunk {
 			", minKey=" + minPrimaryKey +
 			", maxKey=" + maxPrimaryKey +
 			", count=" + count +
+			(dimensionStats.isEmpty() ? "" : ", stats=" + dimensionStats.keySet()) +
 			'}';
 	}
 }
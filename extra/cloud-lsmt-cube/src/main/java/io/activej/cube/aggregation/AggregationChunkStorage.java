@@ -29,8 +29,10 @@ import io.activej.csp.process.frame.ChannelFrameDecoder;
 import io.activej.csp.process.frame.ChannelFrameEncoder;
 import io.activej.csp.process.frame.FrameFormat;
 import io.activej.csp.process.transformer.ChannelTransformers;
+import io.activej.csp.supplier.ChannelSupplier;
 import io.activej.csp.supplier.ChannelSuppliers;
 import io.activej.cube.AggregationStructure;
+import io.activej.cube.aggregation.columnar.ColumnarChunks;
 import io.activej.datastream.consumer.StreamConsumer;
 import io.activej.datastream.consumer.StreamConsumers;
 import io.activej.datastream.csp.ChannelDeserializer;
@@ -50,6 +52,7 @@ import io.activej.promise.jmx.PromiseStats;
 import io.activej.reactor.AbstractReactive;
 import io.activej.reactor.Reactor;
 import io.activej.reactor.jmx.ReactiveJmxBeanWithStats;
+import io.activej.serializer.BinarySerializer;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 
@@ -60,12 +63,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.function.LongPredicate;
 import java.util.stream.Collectors;
 
 import static io.activej.async.util.LogUtils.thisMethod;
 import static io.activej.async.util.LogUtils.toLogger;
 import static io.activej.common.Checks.checkArgument;
+import static io.activej.common.collection.CollectionUtils.concat;
 import static io.activej.common.collection.CollectionUtils.difference;
 import static io.activej.cube.aggregation.util.Utils.createBinarySerializer;
 import static io.activej.cube.aggregation.util.Utils.escapeFilename;
@@ -99,6 +104,8 @@ public final class AggregationChunkStorage extends AbstractReactive
 	private String backupPath = DEFAULT_BACKUP_PATH;
 
 	private MemSize bufferSize = DEFAULT_BUFFER_SIZE;
+	private ChunkFormat chunkFormat = ChunkFormat.ROW;
+	private int columnarBlockRows = ColumnarChunks.DEFAULT_BLOCK_ROWS;
 
 	private final ValueStats chunksCount = ValueStats.create(DEFAULT_SMOOTHING_WINDOW);
 	private final PromiseStats promiseAsyncSupplier = PromiseStats.create(DEFAULT_SMOOTHING_WINDOW);
@@ -193,28 +200,57 @@ public final class AggregationChunkStorage extends AbstractReactive
 			return this;
 		}
 
+		/**
+		 * Sets a format of new chunks, existing chunks are read regardless of their format
+		 */
+		public Builder withChunkFormat(ChunkFormat chunkFormat) {
+			checkNotBuilt(this);
+			AggregationChunkStorage.this.chunkFormat = chunkFormat;
+			return this;
+		}
+
+		public Builder withColumnarBlockRows(int columnarBlockRows) {
+			checkNotBuilt(this);
+			checkArgument(columnarBlockRows > 0, "Number of rows in a block should be positive");
+			AggregationChunkStorage.this.columnarBlockRows = columnarBlockRows;
+			return this;
+		}
+
 		@Override
 		protected AggregationChunkStorage doBuild() {
 			return AggregationChunkStorage.this;
 		}
 	}
 
-	@SuppressWarnings("unchecked")
 	@Override
 	public <T> Promise<StreamSupplier<T>> read(
 		AggregationStructure aggregation, List<String> fields, Class<T> recordClass, long chunkId,
 		DefiningClassLoader classLoader
+	) {
+		return read(aggregation, fields, fields, recordClass, chunkId, classLoader);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T> Promise<StreamSupplier<T>> read(
+		AggregationStructure aggregation, List<String> fields, List<String> requestedFields, Class<T> recordClass,
+		long chunkId, DefiningClassLoader classLoader
 	) {
 		if (CHECKS) checkInReactorThread(this);
 		return fileSystem.download(toPath(chunkId))
 			.mapException(e -> new AggregationException("Failed to download chunk '" + chunkId + '\'', e))
 			.whenComplete(promiseOpenR.recordStats())
+			.then(supplier -> ColumnarChunks.detect(supplier.transformWith(readFile),
+					(columnar, chunkSupplier) -> columnar ?
+						ColumnarChunks.reader(chunkSupplier, recordClass, concat(aggregation.getKeys(), requestedFields),
+							fieldSerializerFn(aggregation, recordClass, classLoader), frameFormat, classLoader) :
+						chunkSupplier
+							.transformWith(ChannelFrameDecoder.create(frameFormat))
+							.transformWith(readDecompress)
+							.transformWith(ChannelDeserializer.create(
+								createBinarySerializer(aggregation, recordClass, aggregation.getKeys(), fields, classLoader))))
+				.mapException(e -> new AggregationException("Failed to read chunk '" + chunkId + '\'', e)))
 			.map(supplier -> supplier
-				.transformWith(readFile)
-				.transformWith(ChannelFrameDecoder.create(frameFormat))
-				.transformWith(readDecompress)
-				.transformWith(ChannelDeserializer.create(
-					createBinarySerializer(aggregation, recordClass, aggregation.getKeys(), fields, classLoader)))
 				.transformWith((StreamStats<T>) (detailed ? readDeserializeDetailed : readDeserialize))
 				.withEndOfStream(eos -> eos
 					.mapException(e -> new AggregationException("Failed to read chunk '" + chunkId + '\'', e))));
@@ -231,20 +267,28 @@ public final class AggregationChunkStorage extends AbstractReactive
 			.mapException(e -> new AggregationException("Failed to upload chunk '" + protoChunkId + '\'', e))
 			.whenComplete(promiseOpenW.recordStats())
 			.map(consumer -> StreamConsumers.<T>ofSupplier(
-					supplier -> supplier
-						.transformWith((StreamStats<T>) (detailed ? writeSerializeDetailed : writeSerialize))
-						.transformWith(ChannelSerializer.builder(
-								createBinarySerializer(aggregation, recordClass, aggregation.getKeys(), fields, classLoader))
-							.withInitialBufferSize(bufferSize)
-							.build())
-						.transformWith(writeCompress)
-						.transformWith(ChannelFrameEncoder.create(frameFormat))
-						.transformWith(writeChunker)
-						.transformWith(ChannelTransformers.chunkBytes(
-							bufferSize.map(bytes -> bytes / 2),
-							bufferSize.map(bytes -> bytes * 2)))
-						.transformWith(writeFile)
-						.streamTo(consumer))
+					supplier -> {
+						StreamSupplier<T> serializeSupplier = supplier
+							.transformWith((StreamStats<T>) (detailed ? writeSerializeDetailed : writeSerialize));
+						if (chunkFormat == ChunkFormat.COLUMNAR) {
+							return serializeSupplier.streamTo(StreamConsumers.ofChannelConsumer(ColumnarChunks.writer(
+								consumer.transformWith(writeFile), recordClass, concat(aggregation.getKeys(), fields),
+								fieldSerializerFn(aggregation, recordClass, classLoader), frameFormat, columnarBlockRows, classLoader)));
+						}
+						return serializeSupplier
+							.transformWith(ChannelSerializer.builder(
+									createBinarySerializer(aggregation, recordClass, aggregation.getKeys(), fields, classLoader))
+								.withInitialBufferSize(bufferSize)
+								.build())
+							.transformWith(writeCompress)
+							.transformWith(ChannelFrameEncoder.create(frameFormat))
+							.transformWith(writeChunker)
+							.transformWith(ChannelTransformers.chunkBytes(
+								bufferSize.map(bytes -> bytes / 2),
+								bufferSize.map(bytes -> bytes * 2)))
+							.transformWith(writeFile)
+							.streamTo(consumer);
+					})
 				.withAcknowledgement(ack -> ack
 					.mapException(e -> new AggregationException("Failed to write chunk '" + protoChunkId + '\'', e))));
 	}
@@ -385,6 +429,14 @@ public final class AggregationChunkStorage extends AbstractReactive
 			.whenComplete(toLogger(logger, thisMethod(), Utils.toString(requiredChunks)));
 	}
 
+	private static <T> Function<String, BinarySerializer<T>> fieldSerializerFn(
+		AggregationStructure aggregation, Class<T> recordClass, DefiningClassLoader classLoader
+	) {
+		return field -> aggregation.getKeys().contains(field) ?
+			createBinarySerializer(aggregation, recordClass, List.of(field), List.of(), classLoader) :
+			createBinarySerializer(aggregation, recordClass, List.of(), List.of(field), classLoader);
+	}
+
 	private String toPath(long chunkId) {
 		return toDir(chunksPath) + ChunkIdJsonCodec.toFileName(chunkId) + LOG;
 	}
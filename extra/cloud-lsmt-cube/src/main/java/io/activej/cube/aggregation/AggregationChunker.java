@@ -27,9 +27,11 @@ import io.activej.datastream.consumer.SwitcherStreamConsumer;
 import io.activej.datastream.supplier.StreamDataAcceptor;
 import io.activej.promise.Promise;
 import io.activej.promise.SettablePromise;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 public final class AggregationChunker<T> extends ForwardingStreamConsumer<T> {
 	private final SwitcherStreamConsumer<T> switcher;
@@ -84,6 +86,7 @@ public final class AggregationChunker<T> extends ForwardingStreamConsumer<T> {
 		private final int chunkSize;
 		private final PartitionPredicate<T> partitionPredicate;
 		private StreamDataAcceptor<T> dataAcceptor;
+		private final @Nullable DimensionStatsCollector<T> statsCollector;
 
 		private T first;
 		private T last;
@@ -95,6 +98,9 @@ public final class AggregationChunker<T> extends ForwardingStreamConsumer<T> {
 			super(actualConsumer);
 			this.chunkSize = chunkSize;
 			this.partitionPredicate = partitionPredicate;
+			this.statsCollector = aggregation.getChunkStatsDimensions().isEmpty() ?
+				null :
+				new DimensionStatsCollector<>(recordClass, aggregation.getChunkStatsDimensions(), classLoader);
 			actualConsumer.getAcknowledgement()
 				.map($ -> count == 0 ?
 					null :
@@ -102,7 +108,8 @@ public final class AggregationChunker<T> extends ForwardingStreamConsumer<T> {
 						fields,
 						PrimaryKey.ofObject(first, aggregation.getKeys()),
 						PrimaryKey.ofObject(last, aggregation.getKeys()),
-						count))
+						count,
+						statsCollector == null ? Map.of() : statsCollector.getResult()))
 				.whenComplete(result::trySet);
 		}
 
@@ -118,6 +125,9 @@ public final class AggregationChunker<T> extends ForwardingStreamConsumer<T> {
 				first = item;
 			}
 			last = item;
+			if (statsCollector != null) {
+				statsCollector.accept(item);
+			}
 			dataAcceptor.accept(item);
 			if (++count == chunkSize ||
 				(partitionPredicate != null && !partitionPredicate.isSamePartition(last, item))
@@ -19,6 +19,9 @@ package io.activej.cube.aggregation;
 import io.activej.datastream.stats.BasicStreamStats;
 import io.activej.datastream.stats.StreamStats;
 import io.activej.jmx.api.attribute.JmxAttribute;
+import io.activej.jmx.stats.ValueStats;
+
+import java.time.Duration;
 
 @SuppressWarnings("rawtypes") // JMX doesn't work with generic types
 public class AggregationStats {
@@ -26,6 +29,9 @@ public class AggregationStats {
 	final BasicStreamStats<?> mergeMapOutput = StreamStats.basic();
 	final BasicStreamStats<?> mergeReducerInput = StreamStats.basic();
 	final BasicStreamStats<?> mergeReducerOutput = StreamStats.basic();
+	final BasicStreamStats<?> parallelPartitionOutput = StreamStats.basic();
+	final ValueStats parallelPartitionTimes = ValueStats.builder(Duration.ofMinutes(10)).withUnit("milliseconds").build();
+	final ValueStats parallelQueryTimes = ValueStats.builder(Duration.ofMinutes(10)).withUnit("milliseconds").build();
 
 	@JmxAttribute
 	public BasicStreamStats getMergeReducerInput() {
@@ -46,4 +52,19 @@ public class AggregationStats {
 	public BasicStreamStats getMergeMapOutput() {
 		return mergeMapOutput;
 	}
+
+	@JmxAttribute
+	public BasicStreamStats getParallelPartitionOutput() {
+		return parallelPartitionOutput;
+	}
+
+	@JmxAttribute
+	public ValueStats getParallelPartitionTimes() {
+		return parallelPartitionTimes;
+	}
+
+	@JmxAttribute
+	public ValueStats getParallelQueryTimes() {
+		return parallelQueryTimes;
+	}
 }
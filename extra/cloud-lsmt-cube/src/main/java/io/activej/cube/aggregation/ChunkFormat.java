@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.cube.aggregation;
+
+import io.activej.cube.aggregation.columnar.ColumnarChunks;
+
+/**
+ * A format in which new chunks are written.
+ * Chunks of both formats can be read regardless of this setting.
+ */
+public enum ChunkFormat {
+	/**
+	 * Records are serialized one by one and compressed as a single stream
+	 */
+	ROW,
+
+	/**
+	 * Records are split into blocks, each field of a block is encoded and compressed separately
+	 *
+	 * @see ColumnarChunks
+	 */
+	COLUMNAR
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2024 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.cube.aggregation;
+
+import io.activej.codegen.ClassGenerator;
+import io.activej.codegen.ClassKey;
+import io.activej.codegen.DefiningClassLoader;
+import io.activej.codegen.expression.Expression;
+
+import java.lang.reflect.Field;
+
+import static io.activej.codegen.expression.Expressions.*;
+
+/**
+ * Reads a value of a single dimension field of a record.
+ * <p>
+ * Values of primitive fields are read as longs, so that they are not boxed per record:
+ * booleans as {@code 0} or {@code 1}, floating point values as bits of
+ * {@link Double#doubleToLongBits} or {@link Float#floatToIntBits}.
+ * Implementations are generated for each field, so that no reflection is involved per record.
+ */
+public interface DimensionAccessor {
+	/**
+	 * Returns a value of a field of a primitive type
+	 */
+	long getLong(Object record);
+
+	/**
+	 * Returns a value of a field of a reference type
+	 */
+	Object getObject(Object record);
+
+	static DimensionAccessor create(Class<?> recordClass, Field field, DefiningClassLoader classLoader) {
+		Class<?> type = field.getType();
+		return classLoader.ensureClassAndCreateInstance(
+			ClassKey.of(DimensionAccessor.class, recordClass, field.getName()),
+			() -> {
+				Expression value = property(cast(arg(0), recordClass), field.getName());
+				return ClassGenerator.builder(DimensionAccessor.class)
+					.withMethod("getLong", type.isPrimitive() ?
+						toLong(type, value) :
+						throwException(UnsupportedOperationException.class))
+					.withMethod("getObject", type.isPrimitive() ?
+						throwException(UnsupportedOperationException.class) :
+						value)
+					.build();
+			});
+	}
+
+	private static Expression toLong(Class<?> type, Expression value) {
+		if (type == boolean.class) return ifElse(value, value(1L), value(0L));
+		if (type == double.class) return staticCall(Double.class, "doubleToLongBits", value);
+		if (type == float.class) return cast(staticCall(Float.class, "floatToIntBits", value), long.class);
+		return cast(value, long.class);
+	}
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.cube.aggregation;
+
+import io.activej.cube.aggregation.util.BloomFilter;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Statistics of dimension values of a single chunk, used to skip chunks that cannot match a query.
+ * Values are stored in an internal representation of a dimension field type.
+ *
+ * @param min         minimum value of a dimension in a chunk
+ * @param max         maximum value of a dimension in a chunk
+ * @param bloomFilter a filter of all values of a dimension in a chunk,
+ *                    or {@code null} if a chunk has too many distinct values
+ */
+public record DimensionStats(Object min, Object max, @Nullable BloomFilter bloomFilter) {
+	@SuppressWarnings("unchecked")
+	public boolean mightContain(Object internalValue) {
+		Comparable<Object> value = (Comparable<Object>) internalValue;
+		if (value.compareTo(min) < 0 || value.compareTo(max) > 0) return false;
+		return bloomFilter == null || bloomFilter.mightContain(internalValue);
+	}
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.cube.aggregation;
+
+import io.activej.codegen.DefiningClassLoader;
+import io.activej.common.ApplicationSettings;
+import io.activej.cube.aggregation.util.BloomFilter;
+
+import java.lang.reflect.Field;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+/**
+ * Collects {@link DimensionStats} of records written to a chunk.
+ * <p>
+ * Dimension values are read by generated accessors, values of primitive dimensions are never boxed per record.
+ * Distinct value hashes are accumulated up to a limit, a bloom filter is built for the exact number of them,
+ * so that filters of low-cardinality dimensions stay small. Dimensions with more distinct values
+ * get only min/max statistics, as do dimensions with a single value in a chunk
+ * and dimensions of types not supported by {@link BloomFilter}.
+ */
+final class DimensionStatsCollector<T> {
+	static final int BLOOM_FILTER_MAX_ITEMS = ApplicationSettings.getInt(DimensionStatsCollector.class, "bloomFilterMaxItems", 10_000);
+	static final double BLOOM_FILTER_FALSE_POSITIVE_PROBABILITY = ApplicationSettings.getDouble(DimensionStatsCollector.class, "bloomFilterFalsePositiveProbability", 0.01);
+
+	private final List<String> dimensions;
+	private final Class<?>[] types;
+	private final DimensionAccessor[] accessors;
+
+	private final long[] longMins;
+	private final long[] longMaxs;
+	private final double[] doubleMins;
+	private final double[] doubleMaxs;
+	private final Comparable<Object>[] mins;
+	private final Comparable<Object>[] maxs;
+	private final LongHashSet[] distinctHashes;
+	private final boolean[] hasNulls;
+	private int count;
+
+	@SuppressWarnings("unchecked")
+	DimensionStatsCollector(Class<T> recordClass, List<String> dimensions, DefiningClassLoader classLoader) {
+		int size = dimensions.size();
+		this.dimensions = dimensions;
+		this.types = new Class[size];
+		this.accessors = new DimensionAccessor[size];
+		this.distinctHashes = new LongHashSet[size];
+		for (int i = 0; i < size; i++) {
+			Field field;
+			try {
+				field = recordClass.getField(dimensions.get(i));
+			} catch (NoSuchFieldException e) {
+				throw new IllegalArgumentException(e);
+			}
+			types[i] = field.getType();
+			accessors[i] = DimensionAccessor.create(recordClass, field, classLoader);
+			if (BloomFilter.isSupported(types[i])) {
+				distinctHashes[i] = new LongHashSet();
+			}
+		}
+		this.longMins = new long[size];
+		this.longMaxs = new long[size];
+		this.doubleMins = new double[size];
+		this.doubleMaxs = new double[size];
+		this.mins = new Comparable[size];
+		this.maxs = new Comparable[size];
+		this.hasNulls = new boolean[size];
+	}
+
+	@SuppressWarnings("unchecked")
+	void accept(T item) {
+		boolean first = count++ == 0;
+		for (int i = 0; i < accessors.length; i++) {
+			Class<?> type = types[i];
+			long hash;
+			if (type == double.class || type == float.class) {
+				long bits = accessors[i].getLong(item);
+				double value = type == double.class ? Double.longBitsToDouble(bits) : Float.intBitsToFloat((int) bits);
+				if (first || Double.compare(value, doubleMins[i]) < 0) doubleMins[i] = value;
+				if (first || Double.compare(value, doubleMaxs[i]) > 0) doubleMaxs[i] = value;
+				hash = BloomFilter.hashKey(bits);
+			} else if (type.isPrimitive()) {
+				long value = accessors[i].getLong(item);
+				if (first || value < longMins[i]) longMins[i] = value;
+				if (first || value > longMaxs[i]) longMaxs[i] = value;
+				hash = BloomFilter.hashKey(value);
+			} else {
+				Comparable<Object> value = (Comparable<Object>) accessors[i].getObject(item);
+				if (value == null) {
+					hasNulls[i] = true;
+					continue;
+				}
+				if (mins[i] == null || value.compareTo(mins[i]) < 0) mins[i] = value;
+				if (maxs[i] == null || value.compareTo(maxs[i]) > 0) maxs[i] = value;
+				if (distinctHashes[i] == null) continue;
+				hash = BloomFilter.hash(value);
+			}
+			LongHashSet hashes = distinctHashes[i];
+			if (hashes != null && hashes.add(hash) && hashes.size() > BLOOM_FILTER_MAX_ITEMS) {
+				distinctHashes[i] = null;
+			}
+		}
+	}
+
+	Map<String, DimensionStats> getResult() {
+		Map<String, DimensionStats> result = new LinkedHashMap<>();
+		if (count == 0) return result;
+		for (int i = 0; i < accessors.length; i++) {
+			if (hasNulls[i]) continue;
+			Object min, max;
+			Class<?> type = types[i];
+			if (type == double.class || type == float.class) {
+				min = box(type, doubleMins[i]);
+				max = box(type, doubleMaxs[i]);
+			} else if (type.isPrimitive()) {
+				min = box(type, longMins[i]);
+				max = box(type, longMaxs[i]);
+			} else {
+				min = mins[i];
+				max = maxs[i];
+			}
+			BloomFilter bloomFilter = null;
+			LongHashSet hashes = distinctHashes[i];
+			if (hashes != null && hashes.size() > 1) {
+				bloomFilter = BloomFilter.create(hashes.size(), BLOOM_FILTER_FALSE_POSITIVE_PROBABILITY);
+				hashes.forEach(bloomFilter::addHash);
+			}
+			result.put(dimensions.get(i), new DimensionStats(min, max, bloomFilter));
+		}
+		return result;
+	}
+
+	private static Object box(Class<?> type, long value) {
+		if (type == int.class) return (int) value;
+		if (type == long.class) return value;
+		if (type == short.class) return (short) value;
+		if (type == byte.class) return (byte) value;
+		if (type == char.class) return (char) value;
+		if (type == boolean.class) return value != 0;
+		throw new IllegalArgumentException("Unsupported type: " + type);
+	}
+
+	private static Object box(Class<?> type, double value) {
+		return type == float.class ? (Object) (float) value : (Object) value;
+	}
+
+	/**
+	 * An open addressing set of hashes, which are already well distributed
+	 */
+	private static final class LongHashSet {
+		private long[] table = new long[16];
+		private boolean containsZero;
+		private int size;
+
+		boolean add(long hash) {
+			if (hash == 0) {
+				if (containsZero) return false;
+				containsZero = true;
+				size++;
+				return true;
+			}
+			int mask = table.length - 1;
+			int index = (int) hash & mask;
+			while (table[index] != 0) {
+				if (table[index] == hash) return false;
+				index = (index + 1) & mask;
+			}
+			table[index] = hash;
+			if (++size * 2 > table.length) {
+				grow();
+			}
+			return true;
+		}
+
+		int size() {
+			return size;
+		}
+
+		void forEach(LongConsumer consumer) {
+			if (containsZero) consumer.accept(0);
+			for (long hash : table) {
+				if (hash != 0) consumer.accept(hash);
+			}
+		}
+
+		private void grow() {
+			long[] oldTable = table;
+			table = new long[oldTable.length * 2];
+			int mask = table.length - 1;
+			for (long hash : oldTable) {
+				if (hash == 0) continue;
+				int index = (int) hash & mask;
+				while (table[index] != 0) {
+					index = (index + 1) & mask;
+				}
+				table[index] = hash;
+			}
+		}
+	}
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.cube.aggregation;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Filters records sorted by keys and merges consecutive records with equal keys.
+ * <p>
+ * Implementations are generated, so that filtering, key comparison and accumulation
+ * of all the measures are done by a single call per record.
+ */
+public interface FusedAggregate<T> {
+	/**
+	 * Filters a record and either merges it into the current group, or starts a new group.
+	 *
+	 * @param record next record, not less than previous records by keys
+	 * @return the previous group, if it has been completed by this record, or {@code null} otherwise
+	 */
+	@Nullable T accept(T record);
+
+	/**
+	 * Completes the current group.
+	 *
+	 * @return the current group, or {@code null} if no record has been accepted since the last completion
+	 */
+	@Nullable T complete();
+}
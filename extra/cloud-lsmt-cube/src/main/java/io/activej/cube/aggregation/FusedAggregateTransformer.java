@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.cube.aggregation;
+
+import io.activej.datastream.processor.transformer.AbstractStreamTransformer;
+import io.activej.datastream.supplier.StreamDataAcceptor;
+
+/**
+ * A stream transformer which filters and pre-aggregates sorted records with a {@link FusedAggregate}.
+ * <p>
+ * It replaces a chain of a filter followed by a reducer input, so that each record passes
+ * through a single generated method instead of several stream stages.
+ */
+public final class FusedAggregateTransformer<T> extends AbstractStreamTransformer<T, T> {
+	private final FusedAggregate<T> aggregate;
+
+	private FusedAggregateTransformer(FusedAggregate<T> aggregate) {
+		this.aggregate = aggregate;
+	}
+
+	public static <T> FusedAggregateTransformer<T> create(FusedAggregate<T> aggregate) {
+		return new FusedAggregateTransformer<>(aggregate);
+	}
+
+	@Override
+	protected StreamDataAcceptor<T> onResumed(StreamDataAcceptor<T> output) {
+		return item -> {
+			T completed = aggregate.accept(item);
+			if (completed != null) {
+				output.accept(completed);
+			}
+		};
+	}
+
+	@Override
+	protected void onEndOfStream(StreamDataAcceptor<T> output) {
+		T completed = aggregate.complete();
+		if (completed != null) {
+			output.accept(completed);
+		}
+	}
+}
@@ -47,6 +47,21 @@ public interface IAggregationChunkStorage {
 		DefiningClassLoader classLoader
 	);
 
+	/**
+	 * Creates a {@code StreamSupplier} that streams records contained in the chunk,
+	 * reading only keys and requested fields if a chunk format allows it.
+	 * Other fields of records may be left with default values.
+	 *
+	 * @param fields          fields of chunk record
+	 * @param requestedFields fields that are going to be used by a caller
+	 */
+	default <T> Promise<StreamSupplier<T>> read(
+		AggregationStructure aggregation, List<String> fields, List<String> requestedFields, Class<T> recordClass,
+		long chunkId, DefiningClassLoader classLoader
+	) {
+		return read(aggregation, fields, recordClass, chunkId, classLoader);
+	}
+
 	/**
 	 * Creates a {@code StreamConsumer} that persists streamed records.
 	 * The chunk to write is determined by {@code aggregationId} and {@code id}.
@@ -1,15 +1,24 @@
 package io.activej.cube.aggregation;
 
 import java.util.List;
+import java.util.Map;
+
+public record ProtoAggregationChunk(
+	String protoChunkId, List<String> fields, PrimaryKey minPrimaryKey, PrimaryKey maxPrimaryKey, int count,
+	Map<String, DimensionStats> dimensionStats
+) {
+	public ProtoAggregationChunk(String protoChunkId, List<String> fields, PrimaryKey minPrimaryKey, PrimaryKey maxPrimaryKey, int count) {
+		this(protoChunkId, fields, minPrimaryKey, maxPrimaryKey, count, Map.of());
+	}
 
-public record ProtoAggregationChunk(String protoChunkId, List<String> fields, PrimaryKey minPrimaryKey, PrimaryKey maxPrimaryKey, int count) {
 	public AggregationChunk toAggregationChunk(long chunkId) {
 		return AggregationChunk.create(
 			chunkId,
 			fields,
 			minPrimaryKey,
 			maxPrimaryKey,
-			count
+			count,
+			dimensionStats
 		);
 	}
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2024 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.cube.aggregation.columnar;
+
+import io.activej.codegen.ClassGenerator;
+import io.activej.codegen.ClassKey;
+import io.activej.codegen.DefiningClassLoader;
+import io.activej.codegen.expression.Expression;
+import io.activej.codegen.expression.Expressions;
+
+import java.lang.reflect.Field;
+
+import static io.activej.codegen.expression.Expressions.*;
+
+/**
+ * Copies values of a single field between records and an array of column values.
+ * <p>
+ * Integral and boolean values are copied to a {@code long[]} array, floating point values
+ * are copied to a {@code long[]} array as raw bits, values of other types are copied to an {@code Object[]} array.
+ * Implementations are generated for each field, so that no reflection is involved per record.
+ */
+public interface ColumnAccessor {
+	/**
+	 * Copies field values of {@code count} records to values array starting at a given offset
+	 */
+	void get(Object[] records, Object values, int offset, int count);
+
+	/**
+	 * Sets fields of {@code count} records to values of values array starting at a given offset
+	 */
+	void set(Object[] records, Object values, int offset, int count);
+
+	static ColumnAccessor create(Class<?> recordClass, Field field, DefiningClassLoader classLoader) {
+		Class<?> type = field.getType();
+		Class<?> valuesClass = type.isPrimitive() ? long[].class : Object[].class;
+		return classLoader.ensureClassAndCreateInstance(
+			ClassKey.of(ColumnAccessor.class, recordClass, field.getName()),
+			() -> ClassGenerator.builder(ColumnAccessor.class)
+				.withMethod("get",
+					iterate(value(0), arg(3), i -> arraySet(cast(arg(1), valuesClass), add(arg(2), i),
+						toColumnValue(type, property(cast(arrayGet(arg(0), i), recordClass), field.getName())))))
+				.withMethod("set",
+					iterate(value(0), arg(3), i -> Expressions.set(property(cast(arrayGet(arg(0), i), recordClass), field.getName()),
+						fromColumnValue(type, arrayGet(cast(arg(1), valuesClass), add(arg(2), i))))))
+				.build());
+	}
+
+	private static Expression toColumnValue(Class<?> type, Expression value) {
+		if (type == boolean.class) return ifElse(value, value(1L), value(0L));
+		if (type == double.class) return staticCall(Double.class, "doubleToRawLongBits", value);
+		if (type == float.class) return cast(staticCall(Float.class, "floatToRawIntBits", value), long.class);
+		if (type.isPrimitive()) return cast(value, long.class);
+		return value;
+	}
+
+	private static Expression fromColumnValue(Class<?> type, Expression value) {
+		if (type == boolean.class) return isNe(value, value(0L));
+		if (type == double.class) return staticCall(Double.class, "longBitsToDouble", value);
+		if (type == float.class) return staticCall(Float.class, "intBitsToFloat", cast(value, int.class));
+		return cast(value, type);
+	}
+}
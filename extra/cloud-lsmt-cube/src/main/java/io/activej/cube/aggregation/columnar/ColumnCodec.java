@@ -0,0 +1,367 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.cube.aggregation.columnar;
+
+import io.activej.codegen.DefiningClassLoader;
+import io.activej.serializer.BinaryInput;
+import io.activej.serializer.BinarySerializer;
+import io.activej.serializer.CorruptedDataException;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static io.activej.cube.aggregation.columnar.PageOutput.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Encodes values of a single field of records into a column page and decodes them back.
+ * <p>
+ * A page starts with an encoding byte, so that each page is encoded in a way that suits its values best:
+ * <ul>
+ *     <li>integral values are encoded as plain, delta or run-length zig-zag varints, whichever is the smallest</li>
+ *     <li>floating point values are encoded as plain or run-length fixed-size values</li>
+ *     <li>strings are encoded either as a dictionary with integral codes, or as plain UTF-8 strings</li>
+ *     <li>values of any other type are encoded by a binary serializer of a field</li>
+ * </ul>
+ * Values are copied between records and columns by a generated {@link ColumnAccessor}.
+ */
+abstract class ColumnCodec<T> {
+	static final int PLAIN = 0;
+	static final int DELTA = 1;
+	static final int RLE = 2;
+	static final int DICTIONARY = 3;
+	static final int SERIALIZED = 4;
+
+	static final int MAX_DICTIONARY_SIZE = 1 << 16;
+
+	final Field field;
+	final ColumnAccessor accessor;
+
+	ColumnCodec(Field field, ColumnAccessor accessor) {
+		this.field = field;
+		this.accessor = accessor;
+	}
+
+	static <T> ColumnCodec<T> create(
+		Class<T> recordClass, Field field, DefiningClassLoader classLoader, Supplier<BinarySerializer<T>> serializerSupplier
+	) {
+		Class<?> type = field.getType();
+		ColumnAccessor accessor = ColumnAccessor.create(recordClass, field, classLoader);
+		if (type == long.class || type == int.class || type == short.class || type == byte.class ||
+			type == char.class || type == boolean.class) {
+			return new IntegralColumnCodec<>(field, accessor);
+		}
+		if (type == double.class || type == float.class) {
+			return new FloatingColumnCodec<>(field, accessor);
+		}
+		if (type == String.class) {
+			return new StringColumnCodec<>(field, accessor);
+		}
+		return new SerializedColumnCodec<>(field, accessor, serializerSupplier.get());
+	}
+
+	abstract void encode(T[] records, int count, PageOutput out);
+
+	/**
+	 * Decodes a page into an array of column values, which can be copied to records by {@link #accessor}
+	 *
+	 * @param buffer an array returned by a previous call, which is reused if it is large enough
+	 */
+	abstract Object decode(BinaryInput in, int count, @Nullable Object buffer);
+
+	static void encodeLongs(long[] values, int count, PageOutput out) {
+		int plainSize = 0;
+		int deltaSize = 0;
+		int rleSize = 0;
+		int run = 0;
+		for (int i = 0; i < count; i++) {
+			long zigZag = zigZag(values[i]);
+			int valueSize = varLongSize(zigZag);
+			plainSize += valueSize;
+			deltaSize += i == 0 ? valueSize : varLongSize(zigZag(values[i] - values[i - 1]));
+			run++;
+			if (i == count - 1 || values[i + 1] != values[i]) {
+				rleSize += varLongSize(run) + valueSize;
+				run = 0;
+			}
+		}
+
+		if (rleSize <= deltaSize && rleSize <= plainSize) {
+			out.writeByte(RLE);
+			for (int i = 0; i < count; ) {
+				int start = i;
+				while (++i < count && values[i] == values[start]) ;
+				out.writeVarInt(i - start);
+				out.writeVarLong(zigZag(values[start]));
+			}
+		} else if (deltaSize < plainSize) {
+			out.writeByte(DELTA);
+			long prev = 0;
+			for (int i = 0; i < count; i++) {
+				out.writeVarLong(zigZag(values[i] - prev));
+				prev = values[i];
+			}
+		} else {
+			out.writeByte(PLAIN);
+			for (int i = 0; i < count; i++) {
+				out.writeVarLong(zigZag(values[i]));
+			}
+		}
+	}
+
+	static long[] decodeLongs(BinaryInput in, int count, @Nullable long[] buffer) {
+		long[] values = buffer != null && buffer.length >= count ? buffer : new long[count];
+		int encoding = in.readByte();
+		switch (encoding) {
+			case PLAIN -> {
+				for (int i = 0; i < count; i++) {
+					values[i] = unZigZag(in.readVarLong());
+				}
+			}
+			case DELTA -> {
+				long prev = 0;
+				for (int i = 0; i < count; i++) {
+					prev += unZigZag(in.readVarLong());
+					values[i] = prev;
+				}
+			}
+			case RLE -> {
+				for (int i = 0; i < count; ) {
+					int run = in.readVarInt();
+					if (run <= 0 || run > count - i) throw new CorruptedDataException("Invalid run length: " + run);
+					long value = unZigZag(in.readVarLong());
+					for (int end = i + run; i < end; i++) {
+						values[i] = value;
+					}
+				}
+			}
+			default -> throw new CorruptedDataException("Unknown integral encoding: " + encoding);
+		}
+		return values;
+	}
+
+	static final class IntegralColumnCodec<T> extends ColumnCodec<T> {
+		IntegralColumnCodec(Field field, ColumnAccessor accessor) {
+			super(field, accessor);
+		}
+
+		@Override
+		void encode(T[] records, int count, PageOutput out) {
+			long[] values = new long[count];
+			accessor.get(records, values, 0, count);
+			encodeLongs(values, count, out);
+		}
+
+		@Override
+		Object decode(BinaryInput in, int count, @Nullable Object buffer) {
+			return decodeLongs(in, count, (long[]) buffer);
+		}
+	}
+
+	static final class FloatingColumnCodec<T> extends ColumnCodec<T> {
+		private final boolean isDouble;
+
+		FloatingColumnCodec(Field field, ColumnAccessor accessor) {
+			super(field, accessor);
+			this.isDouble = field.getType() == double.class;
+		}
+
+		@Override
+		void encode(T[] records, int count, PageOutput out) {
+			long[] bits = new long[count];
+			accessor.get(records, bits, 0, count);
+			int runs = 0;
+			for (int i = 0; i < count; i++) {
+				if (i == 0 || bits[i] != bits[i - 1]) runs++;
+			}
+
+			int valueSize = isDouble ? Long.BYTES : Integer.BYTES;
+			if (runs * (valueSize + 1) < count * valueSize) {
+				out.writeByte(RLE);
+				for (int i = 0; i < count; ) {
+					int start = i;
+					while (++i < count && bits[i] == bits[start]) ;
+					out.writeVarInt(i - start);
+					writeBits(out, bits[start]);
+				}
+			} else {
+				out.writeByte(PLAIN);
+				for (int i = 0; i < count; i++) {
+					writeBits(out, bits[i]);
+				}
+			}
+		}
+
+		@Override
+		Object decode(BinaryInput in, int count, @Nullable Object buffer) {
+			long[] bits = buffer != null && ((long[]) buffer).length >= count ? (long[]) buffer : new long[count];
+			int encoding = in.readByte();
+			switch (encoding) {
+				case PLAIN -> {
+					for (int i = 0; i < count; i++) {
+						bits[i] = readBits(in);
+					}
+				}
+				case RLE -> {
+					for (int i = 0; i < count; ) {
+						int run = in.readVarInt();
+						if (run <= 0 || run > count - i) throw new CorruptedDataException("Invalid run length: " + run);
+						long value = readBits(in);
+						for (int end = i + run; i < end; i++) {
+							bits[i] = value;
+						}
+					}
+				}
+				default -> throw new CorruptedDataException("Unknown floating point encoding: " + encoding);
+			}
+			return bits;
+		}
+
+		private void writeBits(PageOutput out, long bits) {
+			if (isDouble) out.writeLong(bits);
+			else out.writeInt((int) bits);
+		}
+
+		private long readBits(BinaryInput in) {
+			return isDouble ? in.readLong() : in.readInt();
+		}
+	}
+
+	static final class StringColumnCodec<T> extends ColumnCodec<T> {
+		StringColumnCodec(Field field, ColumnAccessor accessor) {
+			super(field, accessor);
+		}
+
+		@Override
+		void encode(T[] records, int count, PageOutput out) {
+			Object[] values = new Object[count];
+			accessor.get(records, values, 0, count);
+			Map<String, Integer> dictionary = new HashMap<>();
+			long[] codes = new long[count];
+			boolean useDictionary = true;
+			for (int i = 0; i < count; i++) {
+				String value = (String) values[i];
+				if (useDictionary && value != null) {
+					Integer code = dictionary.get(value);
+					if (code == null) {
+						code = dictionary.size() + 1;
+						dictionary.put(value, code);
+						useDictionary = dictionary.size() <= MAX_DICTIONARY_SIZE;
+					}
+					codes[i] = code;
+				}
+			}
+
+			if (useDictionary && dictionary.size() <= count / 2) {
+				out.writeByte(DICTIONARY);
+				String[] entries = new String[dictionary.size()];
+				dictionary.forEach((value, code) -> entries[code - 1] = value);
+				out.writeVarInt(entries.length);
+				for (String entry : entries) {
+					writeString(out, entry);
+				}
+				encodeLongs(codes, count, out);
+			} else {
+				out.writeByte(PLAIN);
+				for (int i = 0; i < count; i++) {
+					writeString(out, (String) values[i]);
+				}
+			}
+		}
+
+		@Override
+		Object decode(BinaryInput in, int count, @Nullable Object buffer) {
+			Object[] values = buffer != null && ((Object[]) buffer).length >= count ? (Object[]) buffer : new Object[count];
+			int encoding = in.readByte();
+			switch (encoding) {
+				case PLAIN -> {
+					for (int i = 0; i < count; i++) {
+						values[i] = readString(in);
+					}
+				}
+				case DICTIONARY -> {
+					int size = in.readVarInt();
+					if (size < 0 || size > MAX_DICTIONARY_SIZE) throw new CorruptedDataException("Invalid dictionary size: " + size);
+					String[] entries = new String[size + 1];
+					for (int i = 1; i <= size; i++) {
+						entries[i] = readString(in);
+					}
+					long[] codes = decodeLongs(in, count, null);
+					for (int i = 0; i < count; i++) {
+						long code = codes[i];
+						if (code < 0 || code > size) throw new CorruptedDataException("Invalid dictionary code: " + code);
+						values[i] = entries[(int) code];
+					}
+				}
+				default -> throw new CorruptedDataException("Unknown string encoding: " + encoding);
+			}
+			return values;
+		}
+
+		private static void writeString(PageOutput out, String value) {
+			if (value == null) {
+				out.writeVarInt(0);
+				return;
+			}
+			byte[] bytes = value.getBytes(UTF_8);
+			out.writeVarInt(bytes.length + 1);
+			out.write(bytes, 0, bytes.length);
+		}
+
+		private static String readString(BinaryInput in) {
+			int length = in.readVarInt() - 1;
+			if (length == -1) return null;
+			if (length < 0 || length > in.array().length - in.pos()) throw new CorruptedDataException("Invalid string length: " + length);
+			String value = new String(in.array(), in.pos(), length, UTF_8);
+			in.move(length);
+			return value;
+		}
+	}
+
+	static final class SerializedColumnCodec<T> extends ColumnCodec<T> {
+		private final BinarySerializer<T> serializer;
+
+		SerializedColumnCodec(Field field, ColumnAccessor accessor, BinarySerializer<T> serializer) {
+			super(field, accessor);
+			this.serializer = serializer;
+		}
+
+		@Override
+		void encode(T[] records, int count, PageOutput out) {
+			out.writeByte(SERIALIZED);
+			for (int i = 0; i < count; i++) {
+				out.write(serializer, records[i]);
+			}
+		}
+
+		@Override
+		Object decode(BinaryInput in, int count, @Nullable Object buffer) {
+			int encoding = in.readByte();
+			if (encoding != SERIALIZED) throw new CorruptedDataException("Unknown encoding: " + encoding);
+			Object[] decoded = new Object[count];
+			for (int i = 0; i < count; i++) {
+				decoded[i] = serializer.decode(in);
+			}
+			Object[] values = buffer != null && ((Object[]) buffer).length >= count ? (Object[]) buffer : new Object[count];
+			accessor.get(decoded, values, 0, count);
+			return values;
+		}
+	}
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.cube.aggregation.columnar;
+
+import io.activej.bytebuf.ByteBuf;
+import io.activej.bytebuf.ByteBufPool;
+import io.activej.bytebuf.ByteBufs;
+import io.activej.codegen.ClassGenerator;
+import io.activej.codegen.ClassKey;
+import io.activej.codegen.DefiningClassLoader;
+import io.activej.common.exception.MalformedDataException;
+import io.activej.common.exception.TruncatedDataException;
+import io.activej.csp.binary.BinaryChannelSupplier;
+import io.activej.csp.process.frame.BlockDecoder;
+import io.activej.csp.supplier.ChannelSupplier;
+import io.activej.csp.supplier.ChannelSuppliers;
+import io.activej.datastream.supplier.StreamSupplier;
+import io.activej.datastream.supplier.StreamSuppliers;
+import io.activej.promise.Promise;
+import io.activej.serializer.BinaryInput;
+
+import java.lang.reflect.Array;
+import java.util.*;
+import java.util.function.Supplier;
+
+import static io.activej.codegen.expression.Expressions.constructor;
+import static io.activej.csp.binary.decoder.ByteBufsDecoders.assertBytes;
+import static io.activej.csp.binary.decoder.ByteBufsDecoders.ofIntSizePrefixedBytes;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Reads records of a columnar chunk, decoding only pages of requested columns.
+ * Fields of records which are not requested are left with default values.
+ * <p>
+ * Pages of a block are decoded into arrays of column values, records are then assembled
+ * in small batches as they are streamed, so that records being filled stay in CPU cache.
+ * Blocks are streamed one after another, so the arrays of column values are reused between blocks.
+ */
+final class ColumnarChunkReader<T> {
+	static final int ASSEMBLY_BATCH_SIZE = 256;
+
+	private final Class<T> recordClass;
+	private final Supplier<T> recordFactory;
+	private final Map<String, ColumnCodec<T>> codecs;
+	private final BlockDecoder decoder;
+
+	private ColumnCodec<T>[] columnCodecs;
+	private Object[] columnValues;
+
+	@SuppressWarnings("unchecked")
+	ColumnarChunkReader(Class<T> recordClass, Map<String, ColumnCodec<T>> codecs, BlockDecoder decoder, DefiningClassLoader classLoader) {
+		this.recordClass = recordClass;
+		try {
+			recordClass.getConstructor();
+		} catch (NoSuchMethodException e) {
+			throw new IllegalArgumentException("Record class should have a public no-arg constructor", e);
+		}
+		this.recordFactory = classLoader.ensureClassAndCreateInstance(
+			ClassKey.of(Supplier.class, recordClass),
+			() -> ClassGenerator.builder(Supplier.class)
+				.withMethod("get", constructor(recordClass))
+				.build());
+		this.codecs = codecs;
+		this.decoder = decoder;
+	}
+
+	StreamSupplier<T> read(ChannelSupplier<ByteBuf> input) {
+		BinaryChannelSupplier binarySupplier = BinaryChannelSupplier.of(input);
+		return StreamSuppliers.ofPromise(binarySupplier.decode(assertBytes(ColumnarChunks.MAGIC))
+			.then(() -> binarySupplier.decode(ofIntSizePrefixedBytes()))
+			.map(header -> {
+				try {
+					columnCodecs = decodeHeader(header);
+					columnValues = new Object[columnCodecs.length];
+				} finally {
+					header.recycle();
+				}
+				ChannelSupplier<ByteBuf> blocks = binarySupplier.decodeStream(ofIntSizePrefixedBytes());
+				return StreamSuppliers.concat(ChannelSuppliers.ofAsyncSupplier(
+					() -> blocks.get()
+						.then(block -> {
+							if (block == null) {
+								return Promise.ofException(new TruncatedDataException("Columnar chunk has no end marker"));
+							}
+							if (!block.canRead()) {
+								block.recycle();
+								return binarySupplier.endOfStream().map($ -> null);
+							}
+							try {
+								return Promise.of(StreamSuppliers.ofIterator(decodeBlock(block)));
+							} finally {
+								block.recycle();
+							}
+						}),
+					blocks));
+			}));
+	}
+
+	@SuppressWarnings("unchecked")
+	private ColumnCodec<T>[] decodeHeader(ByteBuf header) throws MalformedDataException {
+		try {
+			BinaryInput in = new BinaryInput(header.array(), header.head());
+			int size = in.readVarInt();
+			if (size < 0 || size > header.readRemaining()) throw new MalformedDataException("Invalid number of columns: " + size);
+			ColumnCodec<T>[] result = new ColumnCodec[size];
+			int found = 0;
+			for (int i = 0; i < size; i++) {
+				int length = in.readVarInt();
+				if (length < 0 || in.pos() + length > header.tail()) throw new MalformedDataException("Invalid column name");
+				String column = new String(in.array(), in.pos(), length, UTF_8);
+				in.move(length);
+				result[i] = codecs.get(column);
+				if (result[i] != null) found++;
+			}
+			if (found != codecs.size()) {
+				List<String> columns = Arrays.stream(result).filter(c -> c != null).map(c -> c.field.getName()).toList();
+				throw new MalformedDataException("Chunk has no columns for fields: " +
+					codecs.keySet().stream().filter(column -> !columns.contains(column)).toList());
+			}
+			return result;
+		} catch (IndexOutOfBoundsException e) {
+			throw new MalformedDataException("Malformed columnar chunk header", e);
+		}
+	}
+
+	private Iterator<T> decodeBlock(ByteBuf block) throws MalformedDataException {
+		try {
+			byte[] array = block.array();
+			BinaryInput in = new BinaryInput(array, block.head());
+			int count = in.readVarInt();
+			int columns = in.readVarInt();
+			if (count <= 0 || columns != columnCodecs.length) {
+				throw new MalformedDataException("Malformed columnar chunk block");
+			}
+			int[] pageLengths = new int[columns];
+			for (int i = 0; i < columns; i++) {
+				pageLengths[i] = in.readVarInt();
+			}
+
+			ColumnAccessor[] accessors = new ColumnAccessor[columns];
+			int pos = in.pos();
+			for (int i = 0; i < columns; i++) {
+				int end = pos + pageLengths[i];
+				if (pageLengths[i] < 0 || end > block.tail()) throw new MalformedDataException("Malformed columnar chunk page");
+				ColumnCodec<T> codec = columnCodecs[i];
+				if (codec != null) {
+					ByteBuf page = decompress(array, pos, end);
+					try {
+						accessors[i] = codec.accessor;
+						columnValues[i] = codec.decode(new BinaryInput(page.array(), page.head()), count, columnValues[i]);
+					} finally {
+						page.recycle();
+					}
+				}
+				pos = end;
+			}
+			if (pos != block.tail()) throw new MalformedDataException("Unexpected data after columnar chunk pages");
+			return new BlockIterator(count, accessors, columnValues);
+		} catch (MalformedDataException e) {
+			throw e;
+		} catch (RuntimeException e) {
+			throw new MalformedDataException("Malformed columnar chunk block", e);
+		}
+	}
+
+	private final class BlockIterator implements Iterator<T> {
+		private final int count;
+		private final ColumnAccessor[] accessors;
+		private final Object[] values;
+		private final T[] batch;
+		private int offset;
+		private int batchSize;
+		private int batchPos;
+
+		@SuppressWarnings("unchecked")
+		BlockIterator(int count, ColumnAccessor[] accessors, Object[] values) {
+			this.count = count;
+			this.accessors = accessors;
+			this.values = values;
+			this.batch = (T[]) Array.newInstance(recordClass, Math.min(count, ASSEMBLY_BATCH_SIZE));
+		}
+
+		@Override
+		public boolean hasNext() {
+			return batchPos != batchSize || offset != count;
+		}
+
+		@Override
+		public T next() {
+			if (batchPos == batchSize) {
+				if (offset == count) throw new NoSuchElementException();
+				assembleBatch();
+			}
+			T record = batch[batchPos];
+			batch[batchPos++] = null;
+			return record;
+		}
+
+		private void assembleBatch() {
+			batchSize = Math.min(batch.length, count - offset);
+			for (int i = 0; i < batchSize; i++) {
+				batch[i] = recordFactory.get();
+			}
+			for (int i = 0; i < accessors.length; i++) {
+				if (accessors[i] != null) {
+					accessors[i].set(batch, values[i], offset, batchSize);
+				}
+			}
+			offset += batchSize;
+			batchPos = 0;
+		}
+	}
+
+	private ByteBuf decompress(byte[] array, int from, int to) throws MalformedDataException {
+		decoder.reset();
+		ByteBufs bufs = new ByteBufs();
+		bufs.add(ByteBuf.wrap(array, from, to));
+		ByteBuf result = null;
+		try {
+			while (true) {
+				ByteBuf buf = decoder.decode(bufs);
+				if (buf == BlockDecoder.END_OF_STREAM) break;
+				if (buf == null) {
+					if (!bufs.hasRemaining() && decoder.ignoreMissingEndOfStreamBlock()) break;
+					throw new MalformedDataException("Truncated columnar chunk page");
+				}
+				result = result == null ? buf : ByteBufPool.append(result, buf);
+			}
+			if (bufs.hasRemaining()) throw new MalformedDataException("Unexpected data after columnar chunk page");
+		} catch (MalformedDataException e) {
+			if (result != null) result.recycle();
+			throw e;
+		}
+		return result == null ? ByteBuf.empty() : result;
+	}
+}
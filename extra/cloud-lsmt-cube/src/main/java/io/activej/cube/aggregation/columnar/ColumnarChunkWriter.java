@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.cube.aggregation.columnar;
+
+import io.activej.bytebuf.ByteBuf;
+import io.activej.bytebuf.ByteBufPool;
+import io.activej.csp.consumer.AbstractChannelConsumer;
+import io.activej.csp.consumer.ChannelConsumer;
+import io.activej.csp.process.frame.BlockEncoder;
+import io.activej.promise.Promise;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Array;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Buffers records into blocks and writes each block column by column
+ */
+final class ColumnarChunkWriter<T> extends AbstractChannelConsumer<T> {
+	private final ChannelConsumer<ByteBuf> output;
+	private final List<String> columns;
+	private final List<ColumnCodec<T>> codecs;
+	private final BlockEncoder encoder;
+
+	private final T[] records;
+	private int count;
+	private boolean headerWritten;
+
+	private final PageOutput page = new PageOutput(4096);
+	private final PageOutput pages = new PageOutput(4096);
+	private final PageOutput blockHeader = new PageOutput(256);
+
+	@SuppressWarnings("unchecked")
+	ColumnarChunkWriter(
+		ChannelConsumer<ByteBuf> output, Class<T> recordClass, List<String> columns, List<ColumnCodec<T>> codecs,
+		BlockEncoder encoder, int blockRows
+	) {
+		super(output);
+		this.output = output;
+		this.columns = columns;
+		this.codecs = codecs;
+		this.encoder = encoder;
+		this.records = (T[]) Array.newInstance(recordClass, blockRows);
+	}
+
+	@Override
+	protected Promise<Void> doAccept(@Nullable T value) {
+		if (value != null) {
+			records[count++] = value;
+			if (count != records.length) return Promise.complete();
+			return writeBlock();
+		}
+		return writeBlock()
+			.then(() -> output.accept(endOfChunk()))
+			.then(() -> output.acceptEndOfStream());
+	}
+
+	private Promise<Void> writeBlock() {
+		if (count == 0 && headerWritten) return Promise.complete();
+		return output.accept(encodeBlock());
+	}
+
+	private ByteBuf encodeBlock() {
+		ByteBuf header = headerWritten ? ByteBuf.empty() : encodeHeader();
+		headerWritten = true;
+		if (count == 0) return header;
+
+		pages.reset();
+		blockHeader.reset();
+		blockHeader.writeVarInt(count);
+		blockHeader.writeVarInt(codecs.size());
+		for (ColumnCodec<T> codec : codecs) {
+			page.reset();
+			codec.encode(records, count, page);
+			int start = pages.pos();
+			encoder.reset();
+			ByteBuf encoded = encoder.encode(ByteBuf.wrap(page.array(), 0, page.pos()));
+			pages.write(encoded.array(), encoded.head(), encoded.readRemaining());
+			encoded.recycle();
+			ByteBuf endOfStream = encoder.encodeEndOfStreamBlock();
+			pages.write(endOfStream.array(), endOfStream.head(), endOfStream.readRemaining());
+			endOfStream.recycle();
+			blockHeader.writeVarInt(pages.pos() - start);
+		}
+		for (int i = 0; i < count; i++) {
+			records[i] = null;
+		}
+		count = 0;
+
+		int blockSize = blockHeader.pos() + pages.pos();
+		ByteBuf buf = ByteBufPool.allocate(header.readRemaining() + 4 + blockSize);
+		buf.put(header);
+		header.recycle();
+		buf.writeInt(blockSize);
+		buf.put(blockHeader.array(), 0, blockHeader.pos());
+		buf.put(pages.array(), 0, pages.pos());
+		return buf;
+	}
+
+	private ByteBuf encodeHeader() {
+		PageOutput header = new PageOutput(256);
+		header.writeVarInt(columns.size());
+		for (String column : columns) {
+			byte[] bytes = column.getBytes(UTF_8);
+			header.writeVarInt(bytes.length);
+			header.write(bytes, 0, bytes.length);
+		}
+		ByteBuf buf = ByteBufPool.allocate(ColumnarChunks.MAGIC.length + 4 + header.pos());
+		buf.put(ColumnarChunks.MAGIC);
+		buf.writeInt(header.pos());
+		buf.put(header.array(), 0, header.pos());
+		return buf;
+	}
+
+	private static ByteBuf endOfChunk() {
+		ByteBuf buf = ByteBufPool.allocate(4);
+		buf.writeInt(0);
+		return buf;
+	}
+
+	@Override
+	protected void onCleanup() {
+		for (int i = 0; i < count; i++) {
+			records[i] = null;
+		}
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.cube.aggregation.columnar;
+
+import io.activej.bytebuf.ByteBuf;
+import io.activej.bytebuf.ByteBufs;
+import io.activej.codegen.DefiningClassLoader;
+import io.activej.common.ApplicationSettings;
+import io.activej.csp.consumer.ChannelConsumer;
+import io.activej.csp.process.frame.FrameFormat;
+import io.activej.csp.supplier.ChannelSupplier;
+import io.activej.csp.supplier.ChannelSuppliers;
+import io.activej.datastream.supplier.StreamSupplier;
+import io.activej.promise.Promise;
+import io.activej.serializer.BinarySerializer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import static io.activej.common.Checks.checkArgument;
+
+/**
+ * A columnar chunk file format.
+ * <p>
+ * A chunk starts with a magic header and a list of column names, followed by blocks of records.
+ * Each block holds a page per column, compressed independently by a {@link FrameFormat},
+ * so that reading a subset of columns does not require decompressing and decoding other columns.
+ * An empty block marks the end of a chunk.
+ * <p>
+ * Records are written in the order they are received, so sorted chunks stay sorted
+ * and may be merged in the same way as row-oriented chunks.
+ *
+ * @see ColumnCodec for encodings of column pages
+ */
+public final class ColumnarChunks {
+	public static final byte[] MAGIC = {'C', 'U', 'B', 'E', 'C', 'O', 'L', 1};
+
+	public static final int DEFAULT_BLOCK_ROWS = ApplicationSettings.getInt(ColumnarChunks.class, "blockRows", 16 * 1024);
+
+	/**
+	 * Creates a channel consumer which encodes records into a columnar chunk
+	 *
+	 * @param output             consumer of chunk bytes
+	 * @param recordClass        class of records, its public fields are written as columns
+	 * @param columns            names of fields to be written
+	 * @param fieldSerializerFn  provides serializers of a single record field,
+	 *                           used for fields that have no columnar encoding
+	 * @param frameFormat        a format used to compress column pages
+	 * @param blockRows          maximum number of records in a block
+	 * @param classLoader        a class loader used to define accessors of record fields
+	 */
+	public static <T> ChannelConsumer<T> writer(
+		ChannelConsumer<ByteBuf> output, Class<T> recordClass, List<String> columns,
+		Function<String, BinarySerializer<T>> fieldSerializerFn, FrameFormat frameFormat, int blockRows,
+		DefiningClassLoader classLoader
+	) {
+		checkArgument(blockRows > 0, "Number of rows in a block should be positive");
+		List<ColumnCodec<T>> codecs = new ArrayList<>();
+		for (String column : columns) {
+			codecs.add(createCodec(recordClass, column, fieldSerializerFn, classLoader));
+		}
+		return new ColumnarChunkWriter<>(output, recordClass, columns, codecs, frameFormat.createEncoder(), blockRows);
+	}
+
+	/**
+	 * Creates a supplier of records of a columnar chunk, which reads only the given columns
+	 */
+	public static <T> StreamSupplier<T> reader(
+		ChannelSupplier<ByteBuf> input, Class<T> recordClass, List<String> columns,
+		Function<String, BinarySerializer<T>> fieldSerializerFn, FrameFormat frameFormat,
+		DefiningClassLoader classLoader
+	) {
+		Map<String, ColumnCodec<T>> codecs = new LinkedHashMap<>();
+		for (String column : columns) {
+			codecs.put(column, createCodec(recordClass, column, fieldSerializerFn, classLoader));
+		}
+		return new ColumnarChunkReader<>(recordClass, codecs, frameFormat.createDecoder(), classLoader).read(input);
+	}
+
+	/**
+	 * Peeks at the beginning of chunk data to find out whether it is a columnar chunk
+	 *
+	 * @param input a supplier of chunk data
+	 * @param fn    a function that accepts whether a chunk is columnar
+	 *              and a supplier of the whole chunk data, including peeked bytes
+	 */
+	public static <R> Promise<R> detect(ChannelSupplier<ByteBuf> input, BiFunction<Boolean, ChannelSupplier<ByteBuf>, R> fn) {
+		return peek(input, new ByteBufs(), MAGIC.length)
+			.map(bufs -> {
+				boolean columnar = bufs.hasRemainingBytes(MAGIC.length);
+				for (int i = 0; columnar && i < MAGIC.length; i++) {
+					columnar = bufs.peekByte(i) == MAGIC[i];
+				}
+				List<ByteBuf> peeked = new ArrayList<>();
+				while (!bufs.isEmpty()) {
+					peeked.add(bufs.take());
+				}
+				return fn.apply(columnar, ChannelSuppliers.concat(ChannelSuppliers.ofList(peeked), input));
+			});
+	}
+
+	private static Promise<ByteBufs> peek(ChannelSupplier<ByteBuf> input, ByteBufs bufs, int size) {
+		if (bufs.hasRemainingBytes(size)) return Promise.of(bufs);
+		return input.get()
+			.then(buf -> {
+				if (buf == null) return Promise.of(bufs);
+				bufs.add(buf);
+				return peek(input, bufs, size);
+			}, e -> {
+				bufs.recycle();
+				return Promise.ofException(e);
+			});
+	}
+
+	private static <T> ColumnCodec<T> createCodec(
+		Class<T> recordClass, String column, Function<String, BinarySerializer<T>> fieldSerializerFn,
+		DefiningClassLoader classLoader
+	) {
+		try {
+			return ColumnCodec.create(recordClass, recordClass.getField(column), classLoader, () -> fieldSerializerFn.apply(column));
+		} catch (NoSuchFieldException e) {
+			throw new IllegalArgumentException("Record class has no field '" + column + '\'', e);
+		}
+	}
+}
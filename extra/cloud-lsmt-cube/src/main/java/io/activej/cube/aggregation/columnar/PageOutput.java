@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.cube.aggregation.columnar;
+
+import io.activej.serializer.BinarySerializer;
+
+import java.util.Arrays;
+
+/**
+ * A growable byte array which column pages are encoded into
+ */
+final class PageOutput {
+	private byte[] array;
+	private int pos;
+
+	PageOutput(int initialSize) {
+		this.array = new byte[initialSize];
+	}
+
+	byte[] array() {
+		return array;
+	}
+
+	int pos() {
+		return pos;
+	}
+
+	void reset() {
+		pos = 0;
+	}
+
+	void writeByte(int v) {
+		ensure(1);
+		array[pos++] = (byte) v;
+	}
+
+	void writeVarInt(int v) {
+		writeVarLong(v & 0xFFFFFFFFL);
+	}
+
+	void writeVarLong(long v) {
+		ensure(10);
+		while ((v & ~0x7FL) != 0) {
+			array[pos++] = (byte) (v | 0x80);
+			v >>>= 7;
+		}
+		array[pos++] = (byte) v;
+	}
+
+	void writeInt(int v) {
+		ensure(4);
+		array[pos++] = (byte) (v >>> 24);
+		array[pos++] = (byte) (v >>> 16);
+		array[pos++] = (byte) (v >>> 8);
+		array[pos++] = (byte) v;
+	}
+
+	void writeLong(long v) {
+		writeInt((int) (v >>> 32));
+		writeInt((int) v);
+	}
+
+	void write(byte[] bytes, int offset, int length) {
+		ensure(length);
+		System.arraycopy(bytes, offset, array, pos, length);
+		pos += length;
+	}
+
+	<T> void write(BinarySerializer<T> serializer, T item) {
+		while (true) {
+			try {
+				pos = serializer.encode(array, pos, item);
+				return;
+			} catch (ArrayIndexOutOfBoundsException e) {
+				array = Arrays.copyOf(array, array.length * 2);
+			}
+		}
+	}
+
+	static int varLongSize(long v) {
+		return v == 0 ? 1 : (Long.SIZE - Long.numberOfLeadingZeros(v) + 6) / 7;
+	}
+
+	static long zigZag(long v) {
+		return (v << 1) ^ (v >> 63);
+	}
+
+	static long unZigZag(long v) {
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	private void ensure(int size) {
+		if (pos + size > array.length) {
+			array = Arrays.copyOf(array, Math.max(array.length * 2, pos + size));
+		}
+	}
+}
@@ -20,6 +20,8 @@ import io.activej.codegen.expression.Expression;
 import io.activej.codegen.expression.Expressions;
 import io.activej.common.annotation.StaticFactories;
 import io.activej.cube.aggregation.util.HyperLogLog;
+import io.activej.cube.aggregation.util.QuantileSketch;
+import io.activej.cube.aggregation.util.TopKSketch;
 import io.activej.json.JsonCodec;
 import io.activej.json.JsonCodecs;
 import io.activej.serializer.StringFormat;
@@ -101,6 +103,56 @@ public class FieldTypes {
 		}
 	}
 
+	public static FieldType<Double> ofQuantileSketch() {
+		return new FieldType<>(QuantileSketch.class, double.class, serializerDefQuantileSketch(), JsonCodecs.ofDouble(), null);
+	}
+
+	private static SerializerDef serializerDefQuantileSketch() {
+		try {
+			return ClassSerializerDef.builder(QuantileSketch.class)
+				.withGetter(QuantileSketch.class.getMethod("getK"),
+					SerializerDefs.ofInt(false, true), -1, -1)
+				.withGetter(QuantileSketch.class.getMethod("getLevelSizes"),
+					SerializerDefs.ofArray(SerializerDefs.ofInt(false, true)), -1, -1)
+				.withGetter(QuantileSketch.class.getMethod("getItems"),
+					SerializerDefs.ofArray(SerializerDefs.ofDouble(false)), -1, -1)
+				.withConstructor(QuantileSketch.class.getConstructor(int.class, int[].class, double[].class),
+					List.of("k", "levelSizes", "items"))
+				.build();
+		} catch (NoSuchMethodException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	public static <T> FieldType<List<T>> ofTopKSketch(FieldType<T> itemType) {
+		Type wrappedItemType = itemType.getDataType() instanceof Class ?
+			Primitives.wrap((Class<?>) itemType.getDataType()) :
+			itemType.getDataType();
+		Type dataType = Types.parameterizedType(List.class, wrappedItemType);
+		return new FieldType<>(TopKSketch.class, dataType, serializerDefTopKSketch(itemType), JsonCodecs.ofList(itemType.getJsonCodec()), null);
+	}
+
+	private static SerializerDef serializerDefTopKSketch(FieldType<?> itemType) {
+		SerializerDef itemSerializer = itemType.getSerializer();
+		if (itemSerializer instanceof PrimitiveSerializerDef) {
+			itemSerializer = ((PrimitiveSerializerDef) itemSerializer).ensureWrapped();
+		}
+		try {
+			return ClassSerializerDef.builder(TopKSketch.class)
+				.withGetter(TopKSketch.class.getMethod("getK"),
+					SerializerDefs.ofInt(false, true), -1, -1)
+				.withGetter(TopKSketch.class.getMethod("getCounts"),
+					SerializerDefs.ofArray(SerializerDefs.ofLong(false, true)), -1, -1)
+				.withGetter(TopKSketch.class.getMethod("getItems"),
+					SerializerDefs.ofList(itemSerializer), -1, -1)
+				.withConstructor(TopKSketch.class.getConstructor(int.class, long[].class, List.class),
+					List.of("k", "counts", "items"))
+				.build();
+		} catch (NoSuchMethodException e) {
+			throw new AssertionError(e);
+		}
+	}
+
 	public static <T> FieldType<Set<T>> ofSet(FieldType<T> fieldType) {
 		SerializerDef itemSerializer = fieldType.getSerializer();
 		if (itemSerializer instanceof PrimitiveSerializerDef) {
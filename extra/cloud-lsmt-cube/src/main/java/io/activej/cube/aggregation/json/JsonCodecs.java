@@ -18,50 +18,109 @@ package io.activej.cube.aggregation.json;
 
 import io.activej.cube.AggregationStructure;
 import io.activej.cube.aggregation.AggregationChunk;
+import io.activej.cube.aggregation.DimensionStats;
 import io.activej.cube.aggregation.PrimaryKey;
 import io.activej.cube.aggregation.fieldtype.FieldType;
 import io.activej.cube.aggregation.ot.AggregationDiff;
+import io.activej.cube.aggregation.util.BloomFilter;
 import io.activej.json.JsonCodec;
 import io.activej.json.JsonValidationException;
 import io.activej.json.ObjectJsonCodec;
 
-import java.util.Set;
+import java.nio.ByteBuffer;
+import java.util.*;
 
 import static io.activej.json.JsonCodecs.*;
 
 public class JsonCodecs {
 
+	public static JsonCodec<AggregationChunk> ofAggregationChunk(AggregationStructure structure) {
+		return ofAggregationChunk(ofPrimaryKey(structure), structure.getMeasureTypes().keySet(), ofDimensionStats(structure));
+	}
+
+	@SuppressWarnings("unchecked")
 	public static JsonCodec<AggregationChunk> ofAggregationChunk(
 		JsonCodec<PrimaryKey> primaryKeyCodec,
-		Set<String> allowedMeasures
+		Set<String> allowedMeasures,
+		JsonCodec<Map<String, DimensionStats>> dimensionStatsCodec
 	) {
-		return ofObject((chunkId, minPrimaryKey, maxPrimaryKey, count, fields) -> {
+		return ObjectJsonCodec.builder(params -> {
+				List<String> fields = (List<String>) params[4];
 				if (!allowedMeasures.containsAll(fields)) {
 					throw new JsonValidationException(
 						"Unknown fields: " +
 						fields.stream().filter(measure -> !allowedMeasures.contains(measure)).toList()
 					);
 				}
-				return AggregationChunk.create(chunkId, fields, minPrimaryKey, maxPrimaryKey, count);
-			},
-			"id", AggregationChunk::getChunkId, ofLong(),
-			"min", AggregationChunk::getMinPrimaryKey, primaryKeyCodec,
-			"max", AggregationChunk::getMaxPrimaryKey, primaryKeyCodec,
-			"count", AggregationChunk::getCount, ofInteger(),
-			"measures", AggregationChunk::getMeasures, ofList(ofString())
+				return AggregationChunk.create((Long) params[0], fields, (PrimaryKey) params[1], (PrimaryKey) params[2], (Integer) params[3],
+					(Map<String, DimensionStats>) params[5]);
+			})
+			.with("id", AggregationChunk::getChunkId, ofLong())
+			.with("min", AggregationChunk::getMinPrimaryKey, primaryKeyCodec)
+			.with("max", AggregationChunk::getMaxPrimaryKey, primaryKeyCodec)
+			.with("count", AggregationChunk::getCount, ofInteger())
+			.with("measures", AggregationChunk::getMeasures, ofList(ofString()))
+			.with("stats", AggregationChunk::getDimensionStats, dimensionStatsCodec, Map.of())
+			.build();
+	}
+
+	public static JsonCodec<Map<String, DimensionStats>> ofDimensionStats(AggregationStructure structure) {
+		// all keys are decodable, so that stored stats stay readable after a dimension is excluded from stats
+		Map<String, JsonCodec<DimensionStats>> codecs = new HashMap<>();
+		for (Map.Entry<String, FieldType> entry : structure.getKeyTypes().entrySet()) {
+			JsonCodec<?> internalCodec = entry.getValue().getInternalJsonCodec();
+			if (internalCodec != null) {
+				codecs.put(entry.getKey(), ofDimensionStats(internalCodec));
+			}
+		}
+		return ofMap(codecs::get);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static JsonCodec<DimensionStats> ofDimensionStats(JsonCodec<?> internalCodec) {
+		JsonCodec<Object> valueCodec = (JsonCodec<Object>) internalCodec;
+		return ObjectJsonCodec.builder(params -> new DimensionStats(params[0], params[1], (BloomFilter) params[2]))
+			.with("min", DimensionStats::min, valueCodec)
+			.with("max", DimensionStats::max, valueCodec)
+			.with("bloom", DimensionStats::bloomFilter, ofNullable(ofBloomFilter()), null)
+			.build();
+	}
+
+	public static JsonCodec<BloomFilter> ofBloomFilter() {
+		return ofObject(BloomFilter::of,
+			"hashes", BloomFilter::getNumHashFunctions, ofInteger(),
+			"bits", BloomFilter::getBits, ofString().transform(JsonCodecs::encodeBits, JsonCodecs::decodeBits)
 		);
 	}
 
+	private static String encodeBits(long[] bits) {
+		ByteBuffer buf = ByteBuffer.allocate(bits.length * Long.BYTES);
+		buf.asLongBuffer().put(bits);
+		return Base64.getEncoder().encodeToString(buf.array());
+	}
+
+	private static long[] decodeBits(String string) throws JsonValidationException {
+		byte[] bytes;
+		try {
+			bytes = Base64.getDecoder().decode(string);
+		} catch (IllegalArgumentException e) {
+			throw new JsonValidationException("Malformed bloom filter bits");
+		}
+		if (bytes.length == 0 || bytes.length % Long.BYTES != 0) {
+			throw new JsonValidationException("Malformed bloom filter bits");
+		}
+		long[] bits = new long[bytes.length / Long.BYTES];
+		ByteBuffer.wrap(bytes).asLongBuffer().get(bits);
+		return bits;
+	}
+
 	public static JsonCodec<PrimaryKey> ofPrimaryKey(AggregationStructure structure) {
 		return ofArrayObject(structure.getKeyTypes().values().stream().map(FieldType::getInternalJsonCodec).toArray(JsonCodec[]::new))
 			.transform(PrimaryKey::getArray, PrimaryKey::ofArray);
 	}
 
 	public static JsonCodec<AggregationDiff> ofAggregationDiff(AggregationStructure structure) {
-		JsonCodec<Set<AggregationChunk>> chunksCodec = ofSet(
-			ofAggregationChunk(
-				ofPrimaryKey(structure),
-				structure.getMeasureTypes().keySet()));
+		JsonCodec<Set<AggregationChunk>> chunksCodec = ofSet(ofAggregationChunk(structure));
 		//noinspection unchecked
 		return ObjectJsonCodec.builder(params -> AggregationDiff.of((Set<AggregationChunk>) params[0], (Set<AggregationChunk>) params[1]))
 			.with("added", AggregationDiff::getAddedChunks, chunksCodec)
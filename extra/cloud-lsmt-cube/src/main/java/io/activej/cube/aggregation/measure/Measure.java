@@ -19,6 +19,9 @@ package io.activej.cube.aggregation.measure;
 import io.activej.codegen.expression.Expression;
 import io.activej.codegen.expression.Variable;
 import io.activej.cube.aggregation.fieldtype.FieldType;
+import org.jetbrains.annotations.Nullable;
+
+import static io.activej.codegen.expression.Expressions.*;
 
 @SuppressWarnings("rawtypes")
 public abstract class Measure {
@@ -43,4 +46,27 @@ public abstract class Measure {
 	public abstract Expression reduce(Variable accumulator, Variable nextAccumulator);
 
 	public abstract Expression accumulate(Variable accumulator, Variable nextValue);
+
+	/**
+	 * Returns an expression which multiplies an accumulator by a factor,
+	 * so that an accumulator computed over a sample of records approximates one computed over all the records.
+	 * Returns {@code null} if a measure should not be extrapolated, which is the default.
+	 *
+	 * @param accumulator an accumulator to be scaled
+	 * @param factor      a {@code double} expression of a factor
+	 */
+	public @Nullable Expression scaleAccumulator(Variable accumulator, Expression factor) {
+		return null;
+	}
+
+	protected final Expression scaleNumber(Variable accumulator, Expression factor) {
+		Class<?> type = fieldType.getInternalDataType();
+		if (type == double.class) {
+			return set(accumulator, mul(accumulator, factor));
+		}
+		if (type == float.class) {
+			return set(accumulator, mul(accumulator, cast(factor, float.class)));
+		}
+		return set(accumulator, cast(staticCall(Math.class, "round", mul(cast(accumulator, double.class), factor)), type));
+	}
 }
@@ -16,16 +16,23 @@
 
 package io.activej.cube.aggregation.measure;
 
+import io.activej.common.ApplicationSettings;
 import io.activej.common.annotation.StaticFactories;
 import io.activej.common.time.CurrentTimeProvider;
 import io.activej.cube.aggregation.fieldtype.FieldType;
 import io.activej.cube.aggregation.fieldtype.FieldTypes;
 import io.activej.cube.aggregation.measure.impl.*;
+import io.activej.cube.aggregation.util.QuantileSketch;
+import io.activej.cube.aggregation.util.TopKSketch;
 
+import static io.activej.common.Checks.checkArgument;
 import static io.activej.cube.aggregation.util.Utils.valueWithTimestampFieldType;
 
 @StaticFactories(Measure.class)
 public class Measures {
+	public static final int DEFAULT_QUANTILE_K = ApplicationSettings.getInt(Measures.class, "quantileK", 200);
+	public static final int DEFAULT_TOP_K_WIDTH = ApplicationSettings.getInt(Measures.class, "topKWidth", 1024);
+
 	public static Measure sum(FieldType<?> ofType) {
 		return new Sum(ofType);
 	}
@@ -46,6 +53,37 @@ public class Measures {
 		return new HyperLogLog(registers);
 	}
 
+	/**
+	 * A measure which approximates a quantile of values with a mergeable {@link QuantileSketch}
+	 *
+	 * @param fraction a rank of a value, from 0 to 1, e.g. 0.5 for a median
+	 * @param k        a size parameter of a sketch, a rank error is about {@code 1.7 / k}
+	 */
+	public static Measure quantile(double fraction, int k) {
+		checkArgument(fraction >= 0 && fraction <= 1, "Fraction should be in range [0, 1]");
+		return new Quantile(fraction, k);
+	}
+
+	public static Measure quantile(double fraction) {
+		return quantile(fraction, DEFAULT_QUANTILE_K);
+	}
+
+	/**
+	 * A measure which approximates {@code k} most frequent values with a mergeable {@link TopKSketch}
+	 *
+	 * @param fieldType a type of values
+	 * @param k         a number of most frequent values
+	 * @param width     a width of a count-min sketch, an overestimation of frequencies
+	 *                  is about {@code 2 / width} of a number of values
+	 */
+	public static Measure topK(FieldType<?> fieldType, int k, int width) {
+		return new TopK(FieldTypes.ofTopKSketch(fieldType), k, width);
+	}
+
+	public static Measure topK(FieldType<?> fieldType, int k) {
+		return topK(fieldType, k, DEFAULT_TOP_K_WIDTH);
+	}
+
 	public static Measure union(FieldType<?> fieldType) {
 		return new Union(FieldTypes.ofSet(fieldType));
 	}
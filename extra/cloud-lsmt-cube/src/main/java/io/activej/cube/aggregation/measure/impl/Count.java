@@ -60,4 +60,9 @@ public final class Count extends Measure {
 	public Expression accumulate(Variable accumulator, Variable nextValue) {
 		return set(accumulator, inc(accumulator));
 	}
+
+	@Override
+	public Expression scaleAccumulator(Variable accumulator, Expression factor) {
+		return scaleNumber(accumulator, factor);
+	}
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.cube.aggregation.measure.impl;
+
+import io.activej.codegen.expression.Expression;
+import io.activej.codegen.expression.Expressions;
+import io.activej.codegen.expression.Variable;
+import io.activej.common.annotation.ExposedInternals;
+import io.activej.cube.aggregation.fieldtype.FieldTypes;
+import io.activej.cube.aggregation.measure.Measure;
+import io.activej.cube.aggregation.util.QuantileSketch;
+
+import static io.activej.codegen.expression.Expressions.*;
+
+@ExposedInternals
+public final class Quantile extends Measure {
+	public final double fraction;
+	public final int k;
+
+	public Quantile(double fraction, int k) {
+		super(FieldTypes.ofQuantileSketch());
+		this.fraction = fraction;
+		this.k = k;
+	}
+
+	@Override
+	public Expression valueOfAccumulator(Expression accumulator) {
+		return call(accumulator, "quantile", value(fraction));
+	}
+
+	@Override
+	public Expression zeroAccumulator(Variable accumulator) {
+		return Expressions.set(accumulator, constructor(QuantileSketch.class, value(k)));
+	}
+
+	@Override
+	public Expression initAccumulatorWithAccumulator(Variable accumulator, Expression firstAccumulator) {
+		return sequence(
+			Expressions.set(accumulator, constructor(QuantileSketch.class, value(k))),
+			call(accumulator, "union", firstAccumulator));
+	}
+
+	@Override
+	public Expression reduce(Variable accumulator, Variable nextAccumulator) {
+		return call(accumulator, "union", nextAccumulator);
+	}
+
+	@Override
+	public Expression initAccumulatorWithValue(Variable accumulator, Variable firstValue) {
+		return sequence(
+			Expressions.set(accumulator, constructor(QuantileSketch.class, value(k))),
+			call(accumulator, "add", cast(firstValue, double.class)));
+	}
+
+	@Override
+	public Expression accumulate(Variable accumulator, Variable nextValue) {
+		return call(accumulator, "add", cast(nextValue, double.class));
+	}
+}
@@ -60,4 +60,9 @@ public final class Sum extends Measure {
 	public Expression accumulate(Variable accumulator, Variable nextValue) {
 		return set(accumulator, add(accumulator, nextValue));
 	}
+
+	@Override
+	public Expression scaleAccumulator(Variable accumulator, Expression factor) {
+		return scaleNumber(accumulator, factor);
+	}
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.cube.aggregation.measure.impl;
+
+import io.activej.codegen.expression.Expression;
+import io.activej.codegen.expression.Expressions;
+import io.activej.codegen.expression.Variable;
+import io.activej.common.annotation.ExposedInternals;
+import io.activej.cube.aggregation.fieldtype.FieldType;
+import io.activej.cube.aggregation.measure.Measure;
+import io.activej.cube.aggregation.util.TopKSketch;
+
+import static io.activej.codegen.expression.Expressions.*;
+
+@ExposedInternals
+public final class TopK extends Measure {
+	public final int k;
+	public final int width;
+
+	@SuppressWarnings("rawtypes")
+	public TopK(FieldType fieldType, int k, int width) {
+		super(fieldType);
+		this.k = k;
+		this.width = width;
+	}
+
+	@Override
+	public Expression valueOfAccumulator(Expression accumulator) {
+		return call(accumulator, "top");
+	}
+
+	@Override
+	public Expression zeroAccumulator(Variable accumulator) {
+		return Expressions.set(accumulator, constructor(TopKSketch.class, value(k), value(width)));
+	}
+
+	@Override
+	public Expression initAccumulatorWithAccumulator(Variable accumulator, Expression firstAccumulator) {
+		return sequence(
+			Expressions.set(accumulator, constructor(TopKSketch.class, value(k), value(width))),
+			call(accumulator, "union", firstAccumulator));
+	}
+
+	@Override
+	public Expression reduce(Variable accumulator, Variable nextAccumulator) {
+		return call(accumulator, "union", nextAccumulator);
+	}
+
+	@Override
+	public Expression initAccumulatorWithValue(Variable accumulator, Variable firstValue) {
+		return sequence(
+			Expressions.set(accumulator, constructor(TopKSketch.class, value(k), value(width))),
+			call(accumulator, "add", cast(firstValue, Object.class)));
+	}
+
+	@Override
+	public Expression accumulate(Variable accumulator, Variable nextValue) {
+		return call(accumulator, "add", cast(nextValue, Object.class));
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.cube.aggregation.util;
+
+import io.activej.common.HashUtils;
+
+import java.util.Arrays;
+
+import static io.activej.common.Checks.checkArgument;
+import static java.lang.Math.*;
+
+/**
+ * A bloom filter over dimension values.
+ * <p>
+ * Filters are persisted along with chunk metadata, so values are hashed by their content
+ * rather than by {@link Object#hashCode()}. Only boxed primitives, strings and enums are supported,
+ * see {@link #isSupported(Class)}.
+ */
+public final class BloomFilter {
+	private final int numHashFunctions;
+	private final long[] bits;
+
+	private BloomFilter(int numHashFunctions, long[] bits) {
+		this.numHashFunctions = numHashFunctions;
+		this.bits = bits;
+	}
+
+	public static BloomFilter create(int expectedItems, double falsePositiveProbability) {
+		checkArgument(expectedItems >= 0, "Number of expected items cannot be negative");
+		checkArgument(falsePositiveProbability > 0 && falsePositiveProbability < 1, "False positive probability should be in range (0, 1)");
+		int n = max(1, expectedItems);
+		long numBits = max(Long.SIZE, (long) ceil(-n * log(falsePositiveProbability) / (log(2) * log(2))));
+		int numWords = (int) min(Integer.MAX_VALUE, (numBits + Long.SIZE - 1) / Long.SIZE);
+		int numHashFunctions = max(1, (int) round((double) numWords * Long.SIZE / n * log(2)));
+		return new BloomFilter(numHashFunctions, new long[numWords]);
+	}
+
+	public static BloomFilter of(int numHashFunctions, long[] bits) {
+		checkArgument(numHashFunctions > 0, "Number of hash functions should be positive");
+		checkArgument(bits.length > 0, "Bits cannot be empty");
+		return new BloomFilter(numHashFunctions, bits);
+	}
+
+	public int getNumHashFunctions() {
+		return numHashFunctions;
+	}
+
+	public long[] getBits() {
+		return bits;
+	}
+
+	public static boolean isSupported(Class<?> type) {
+		return type.isPrimitive() && type != void.class || type.isEnum() ||
+			type == Integer.class || type == Long.class || type == Short.class || type == Byte.class ||
+			type == Float.class || type == Double.class || type == Character.class || type == Boolean.class ||
+			type == String.class;
+	}
+
+	public void add(Object value) {
+		addHash(hash(value));
+	}
+
+	/**
+	 * Adds a value by its hash, as computed by {@link #hash(Object)} or {@link #hashKey(long)}
+	 */
+	public void addHash(long hash) {
+		int hash1 = (int) hash;
+		int hash2 = (int) (hash >>> 32);
+		long numBits = (long) bits.length * Long.SIZE;
+		for (int i = 0; i < numHashFunctions; i++) {
+			long bit = toBit(hash1 + i * hash2, numBits);
+			bits[(int) (bit >>> 6)] |= 1L << bit;
+		}
+	}
+
+	public boolean mightContain(Object value) {
+		long hash = hash(value);
+		int hash1 = (int) hash;
+		int hash2 = (int) (hash >>> 32);
+		long numBits = (long) bits.length * Long.SIZE;
+		for (int i = 0; i < numHashFunctions; i++) {
+			long bit = toBit(hash1 + i * hash2, numBits);
+			if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Hashes a value by its content
+	 */
+	public static long hash(Object value) {
+		long k;
+		if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+			k = ((Number) value).longValue();
+		} else if (value instanceof Double d) {
+			k = Double.doubleToLongBits(d);
+		} else if (value instanceof Float f) {
+			k = Float.floatToIntBits(f);
+		} else if (value instanceof Character c) {
+			k = c;
+		} else if (value instanceof Boolean b) {
+			k = b ? 1 : 0;
+		} else if (value instanceof String string) {
+			k = hash(string);
+		} else if (value instanceof Enum<?> e) {
+			k = hash(e.name());
+		} else {
+			throw new IllegalArgumentException("Unsupported value type: " + value.getClass().getName());
+		}
+		return hashKey(k);
+	}
+
+	/**
+	 * Hashes a primitive value, given as a long, floating point values given as bits of
+	 * {@link Double#doubleToLongBits} or {@link Float#floatToIntBits}.
+	 * A hash is equal to a hash of a boxed value
+	 */
+	public static long hashKey(long key) {
+		return HashUtils.murmur3hash(key);
+	}
+
+	private static long hash(String string) {
+		long h = string.length();
+		for (int i = 0; i < string.length(); i++) {
+			h = HashUtils.murmur3hash(h ^ string.charAt(i));
+		}
+		return h;
+	}
+
+	private static long toBit(int combinedHash, long numBits) {
+		return (combinedHash & 0xFFFFFFFFL) % numBits;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		BloomFilter that = (BloomFilter) o;
+		return numHashFunctions == that.numHashFunctions && Arrays.equals(bits, that.bits);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * numHashFunctions + Arrays.hashCode(bits);
+	}
+
+	@Override
+	public String toString() {
+		return "BloomFilter{bits=" + bits.length * Long.SIZE + ", hashFunctions=" + numHashFunctions + '}';
+	}
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.cube.aggregation.util;
+
+import java.util.Arrays;
+
+import static io.activej.common.Checks.checkArgument;
+
+/**
+ * A mergeable sketch of a distribution of values, which answers quantile queries approximately.
+ * <p>
+ * The sketch is a KLL-style hierarchy of compactors: level {@code h} holds values of weight {@code 2^h}.
+ * When a level overflows, its values are sorted and every other one is promoted to the next level.
+ * Compaction is deterministic, it alternates between promoting values at odd and at even positions.
+ * <p>
+ * The rank error is about {@code 1.7 / k} of a number of added values, the size of a sketch is about {@code 3 * k} values.
+ */
+public final class QuantileSketch {
+	private static final double CAPACITY_DECAY = 2.0 / 3.0;
+	private static final int MIN_CAPACITY = 2;
+
+	private final int k;
+	private double[][] levels;
+	private int[] sizes;
+	private int size;
+	private int capacity;
+	private boolean compactOdd;
+
+	public QuantileSketch(int k) {
+		checkArgument(k >= MIN_CAPACITY, "K should be at least " + MIN_CAPACITY);
+		this.k = k;
+		this.levels = new double[][]{new double[k]};
+		this.sizes = new int[1];
+		this.capacity = k;
+	}
+
+	public QuantileSketch(int k, int[] levelSizes, double[] items) {
+		this(k);
+		int total = 0;
+		for (int levelSize : levelSizes) {
+			total += levelSize;
+		}
+		checkArgument(total == items.length, "Sizes of levels do not match a number of items");
+		ensureLevels(Math.max(1, levelSizes.length));
+		int offset = 0;
+		for (int h = 0; h < levelSizes.length; h++) {
+			for (int i = 0; i < levelSizes[h]; i++) {
+				append(h, items[offset++]);
+			}
+		}
+		compress();
+	}
+
+	public int getK() {
+		return k;
+	}
+
+	public int[] getLevelSizes() {
+		return Arrays.copyOf(sizes, levels.length);
+	}
+
+	public double[] getItems() {
+		double[] result = new double[size];
+		int offset = 0;
+		for (int h = 0; h < levels.length; h++) {
+			System.arraycopy(levels[h], 0, result, offset, sizes[h]);
+			offset += sizes[h];
+		}
+		return result;
+	}
+
+	public void add(double value) {
+		if (Double.isNaN(value)) return;
+		append(0, value);
+		if (size > capacity) {
+			compress();
+		}
+	}
+
+	public void union(QuantileSketch another) {
+		checkArgument(k == another.k, "K mismatch");
+		ensureLevels(another.levels.length);
+		for (int h = 0; h < another.levels.length; h++) {
+			for (int i = 0; i < another.sizes[h]; i++) {
+				append(h, another.levels[h][i]);
+			}
+		}
+		compress();
+	}
+
+	/**
+	 * Returns a total weight of added values, that is a number of values added to this sketch and to merged ones
+	 */
+	public long getCount() {
+		long count = 0;
+		for (int h = 0; h < levels.length; h++) {
+			count += (long) sizes[h] << h;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns an approximate value at a given rank, or {@code NaN} if the sketch is empty
+	 *
+	 * @param fraction a rank of a value, from 0 to 1
+	 */
+	public double quantile(double fraction) {
+		checkArgument(fraction >= 0 && fraction <= 1, "Fraction should be in range [0, 1]");
+		if (size == 0) return Double.NaN;
+
+		double[] values = new double[size];
+		long[] weights = new long[size];
+		int n = 0;
+		for (int h = 0; h < levels.length; h++) {
+			for (int i = 0; i < sizes[h]; i++) {
+				values[n] = levels[h][i];
+				weights[n] = 1L << h;
+				n++;
+			}
+		}
+		Integer[] order = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+
+		double rank = fraction * getCount();
+		long cumulative = 0;
+		for (Integer i : order) {
+			cumulative += weights[i];
+			if (cumulative >= rank) return values[i];
+		}
+		return values[order[n - 1]];
+	}
+
+	private void append(int level, double value) {
+		double[] items = levels[level];
+		if (sizes[level] == items.length) {
+			items = levels[level] = Arrays.copyOf(items, items.length * 2);
+		}
+		items[sizes[level]++] = value;
+		size++;
+	}
+
+	private void ensureLevels(int count) {
+		if (levels.length >= count) return;
+		int oldCount = levels.length;
+		levels = Arrays.copyOf(levels, count);
+		sizes = Arrays.copyOf(sizes, count);
+		for (int h = oldCount; h < count; h++) {
+			levels[h] = new double[MIN_CAPACITY];
+		}
+		updateCapacity();
+	}
+
+	private void updateCapacity() {
+		int total = 0;
+		for (int h = 0; h < levels.length; h++) {
+			total += levelCapacity(h);
+		}
+		capacity = total;
+	}
+
+	private int levelCapacity(int level) {
+		int depth = levels.length - 1 - level;
+		return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+	}
+
+	private void compress() {
+		while (size > capacity) {
+			int level = 0;
+			while (sizes[level] < levelCapacity(level)) {
+				level++;
+			}
+			if (level == levels.length - 1) {
+				ensureLevels(levels.length + 1);
+			}
+			compact(level);
+		}
+	}
+
+	private void compact(int level) {
+		double[] items = levels[level];
+		int count = sizes[level];
+		Arrays.sort(items, 0, count);
+		int kept = count % 2;
+		int offset = compactOdd ? 1 : 0;
+		compactOdd = !compactOdd;
+		for (int i = kept + offset; i < count; i += 2) {
+			append(level + 1, items[i]);
+		}
+		sizes[level] = kept;
+		size -= count - kept;
+	}
+
+	@Override
+	public String toString() {
+		return "QuantileSketch{k=" + k + ", count=" + getCount() + '}';
+	}
+}
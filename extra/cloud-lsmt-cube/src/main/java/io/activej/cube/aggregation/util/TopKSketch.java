@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.cube.aggregation.util;
+
+import io.activej.common.HashUtils;
+
+import java.util.*;
+
+import static io.activej.common.Checks.checkArgument;
+
+/**
+ * A mergeable sketch of the most frequent items.
+ * <p>
+ * Frequencies of items are estimated with a count-min sketch, which never underestimates them.
+ * Alongside, up to {@code k} candidate items with the highest estimated frequencies are tracked.
+ * Items are hashed by their {@link Object#hashCode()}, so they should have stable hash codes.
+ */
+public final class TopKSketch {
+	public static final int DEFAULT_DEPTH = 4;
+
+	private final int k;
+	private final int depth;
+	private final int width;
+	private final long[] counts;
+	private final List<Object> items;
+
+	public TopKSketch(int k, int width) {
+		checkArgument(k > 0, "K should be positive");
+		checkArgument(width > 0, "Width should be positive");
+		this.k = k;
+		this.depth = DEFAULT_DEPTH;
+		this.width = width;
+		this.counts = new long[depth * width];
+		this.items = new ArrayList<>(k);
+	}
+
+	public TopKSketch(int k, long[] counts, List<Object> items) {
+		checkArgument(k > 0, "K should be positive");
+		checkArgument(counts.length > 0 && counts.length % DEFAULT_DEPTH == 0, "Invalid size of counts");
+		checkArgument(items.size() <= k, "Too many items");
+		this.k = k;
+		this.depth = DEFAULT_DEPTH;
+		this.width = counts.length / depth;
+		this.counts = counts;
+		this.items = new ArrayList<>(items);
+	}
+
+	public int getK() {
+		return k;
+	}
+
+	public long[] getCounts() {
+		return counts;
+	}
+
+	public List<Object> getItems() {
+		return items;
+	}
+
+	public void add(Object item) {
+		long hash = hash(item);
+		long estimate = Long.MAX_VALUE;
+		for (int row = 0; row < depth; row++) {
+			int index = index(hash, row);
+			estimate = Math.min(estimate, ++counts[index]);
+		}
+		offer(item, estimate);
+	}
+
+	public void union(TopKSketch another) {
+		checkArgument(k == another.k && width == another.width, "Sketch dimensions mismatch");
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] += another.counts[i];
+		}
+		Set<Object> candidates = new LinkedHashSet<>(items);
+		candidates.addAll(another.items);
+		items.clear();
+		for (Object candidate : candidates) {
+			offer(candidate, estimate(candidate));
+		}
+	}
+
+	/**
+	 * Returns an estimated number of occurrences of an item, which is never less than an actual one
+	 */
+	public long estimate(Object item) {
+		long hash = hash(item);
+		long estimate = Long.MAX_VALUE;
+		for (int row = 0; row < depth; row++) {
+			estimate = Math.min(estimate, counts[index(hash, row)]);
+		}
+		return estimate;
+	}
+
+	/**
+	 * Returns up to {@code k} most frequent items, the most frequent first
+	 */
+	public List<Object> top() {
+		List<Object> result = new ArrayList<>(items);
+		Map<Object, Long> estimates = new HashMap<>();
+		for (Object item : result) {
+			estimates.put(item, estimate(item));
+		}
+		result.sort(Comparator.comparing((Object item) -> estimates.get(item)).reversed());
+		return result;
+	}
+
+	private void offer(Object item, long estimate) {
+		int min = -1;
+		long minEstimate = Long.MAX_VALUE;
+		for (int i = 0; i < items.size(); i++) {
+			Object candidate = items.get(i);
+			if (candidate.equals(item)) return;
+			long candidateEstimate = estimate(candidate);
+			if (candidateEstimate < minEstimate) {
+				min = i;
+				minEstimate = candidateEstimate;
+			}
+		}
+		if (items.size() < k) {
+			items.add(item);
+		} else if (estimate > minEstimate) {
+			items.set(min, item);
+		}
+	}
+
+	private int index(long hash, int row) {
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		return row * width + ((h1 + row * h2) & Integer.MAX_VALUE) % width;
+	}
+
+	private static long hash(Object item) {
+		return HashUtils.murmur3hash((long) item.hashCode());
+	}
+
+	@Override
+	public String toString() {
+		return "TopKSketch{k=" + k + ", width=" + width + ", items=" + items + '}';
+	}
+}
@@ -24,6 +24,7 @@ import io.activej.codegen.expression.Variable;
 import io.activej.cube.AggregationStructure;
 import io.activej.cube.aggregation.Aggregate;
 import io.activej.cube.aggregation.AggregationChunk;
+import io.activej.cube.aggregation.FusedAggregate;
 import io.activej.cube.aggregation.ProtoAggregationChunk;
 import io.activej.cube.aggregation.annotation.Key;
 import io.activej.cube.aggregation.annotation.Measures;
@@ -62,6 +63,7 @@ import static io.activej.common.Checks.checkArgument;
 import static io.activej.common.collection.CollectionUtils.concat;
 import static io.activej.common.collection.CollectorUtils.toLinkedHashMap;
 import static io.activej.common.reflection.ReflectionUtils.extractFieldNameFromGetter;
+import static io.activej.cube.aggregation.predicate.AggregationPredicates.alwaysTrue;
 import static io.activej.cube.aggregation.predicate.AggregationPredicates.transformHasPredicates;
 import static io.activej.serializer.def.SerializerExpressions.readVarLong;
 import static io.activej.serializer.def.SerializerExpressions.writeVarLong;
@@ -448,17 +450,83 @@ public class Utils {
 				return ClassGenerator.builder(Predicate.class)
 					.withMethod("test", boolean.class, List.of(Object.class),
 						let(cast(arg(0), chunkRecordClass), record ->
-							ifElse(simplifiedFilter.createPredicate(record, valueResolver),
-								ifElse(simplifiedPrecondition.createPredicate(record, valueResolver),
-									value(true),
-									throwException(IllegalStateException.class)
-								),
-								value(false))))
+							filterExpression(record, simplifiedFilter, simplifiedPrecondition, valueResolver)))
 					.build();
 			}
 		);
 	}
 
+	private static Expression filterExpression(
+		Expression record, AggregationPredicate filter, AggregationPredicate precondition, ValueResolver valueResolver
+	) {
+		return ifElse(filter.createPredicate(record, valueResolver),
+			ifElse(precondition.createPredicate(record, valueResolver),
+				value(true),
+				throwException(IllegalStateException.class)
+			),
+			value(false));
+	}
+
+	/**
+	 * Creates a {@link FusedAggregate} which filters records of a chunk record class
+	 * and merges consecutive records with equal values of given keys.
+	 * Records of a group keep key values of the first record of the group, so only the given keys are meaningful.
+	 */
+	public static <T> FusedAggregate<T> createFusedAggregate(
+		AggregationStructure aggregation, Class<T> recordClass, List<String> keys, List<String> fields,
+		AggregationPredicate filter, AggregationPredicate precondition, DefiningClassLoader classLoader
+	) {
+		AggregationPredicate simplifiedFilter = transformHasPredicates(filter, $ -> alwaysTrue()).simplify();
+		AggregationPredicate simplifiedPrecondition = transformHasPredicates(precondition, $ -> alwaysTrue()).simplify();
+
+		//noinspection unchecked
+		return classLoader.ensureClassAndCreateInstance(
+			ClassKey.of(FusedAggregate.class, recordClass, keys, fields, simplifiedFilter, simplifiedPrecondition),
+			() -> {
+				ValueResolver valueResolver = createValueResolverOfFields(aggregation.getKeyTypes());
+				Variable group = property(self(), "group");
+				return ClassGenerator.builder(FusedAggregate.class)
+					.withField("group", recordClass)
+					.withMethod("accept",
+						let(cast(arg(0), recordClass), record ->
+							ifElse(filterExpression(record, simplifiedFilter, simplifiedPrecondition, valueResolver),
+								ifElse(and(isNotNull(group), and(keys.stream()
+										.map(key -> keyEquals(aggregation, key, property(group, key), property(record, key))))),
+									sequence(seq -> {
+										for (String field : fields) {
+											seq.add(aggregation.getMeasure(field)
+												.reduce(property(group, field), property(record, field)));
+										}
+										return nullRef(Object.class);
+									}),
+									let(group, completed -> sequence(
+										set(group, let(constructor(recordClass), newGroup ->
+											sequence(seq -> {
+												for (String key : aggregation.getKeys()) {
+													seq.add(set(property(newGroup, key), property(record, key)));
+												}
+												for (String field : fields) {
+													seq.add(aggregation.getMeasure(field)
+														.initAccumulatorWithAccumulator(property(newGroup, field), property(record, field)));
+												}
+												return newGroup;
+											}))),
+										completed))),
+								nullRef(Object.class))))
+					.withMethod("complete",
+						let(group, completed -> sequence(
+							set(group, nullRef(recordClass)),
+							completed)))
+					.build();
+			});
+	}
+
+	private static Expression keyEquals(AggregationStructure aggregation, String key, Expression left, Expression right) {
+		return aggregation.getKeyTypes().get(key).getInternalDataType().isPrimitive() ?
+			isEq(left, right) :
+			staticCall(Objects.class, "equals", left, right);
+	}
+
 	@SuppressWarnings("unchecked")
 	public static Object toInternalValue(Map<String, FieldType> fields, String key, Object value) {
 		return fields.containsKey(key) ? fields.get(key).toInternalValue(value) : value;
@@ -1,40 +1,64 @@
 package io.activej.cube.etcd;
 
 import io.activej.common.exception.MalformedDataException;
+import io.activej.cube.AggregationStructure;
 import io.activej.cube.aggregation.AggregationChunk;
+import io.activej.cube.aggregation.DimensionStats;
 import io.activej.cube.aggregation.PrimaryKey;
 import io.activej.etcd.codec.kv.EtcdKVCodec;
 import io.activej.etcd.codec.kv.KeyValue;
 import io.activej.etcd.exception.MalformedEtcdDataException;
 import io.activej.json.JsonCodec;
 import io.activej.json.JsonCodecs;
+import io.activej.json.JsonValidationException;
+import io.activej.json.ObjectJsonCodec;
+import io.activej.json.ObjectJsonCodec.JsonDecoderProvider;
 import io.etcd.jetcd.ByteSequence;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
+import java.util.Map;
 
+import static io.activej.cube.aggregation.json.JsonCodecs.ofDimensionStats;
+import static io.activej.cube.aggregation.json.JsonCodecs.ofPrimaryKey;
 import static io.activej.etcd.EtcdUtils.byteSequenceFrom;
+import static io.activej.json.JsonValidationUtils.validateNotNull;
 import static io.activej.json.JsonUtils.fromJson;
 import static io.activej.json.JsonUtils.toJson;
 
 public final class AggregationChunkJsonEtcdKVCodec implements EtcdKVCodec<Long, AggregationChunk> {
-	private record Value(List<String> measures, int count, PrimaryKey min, PrimaryKey max) {}
+	private record Value(List<String> measures, int count, PrimaryKey min, PrimaryKey max, Map<String, DimensionStats> stats) {}
 
 	private final JsonCodec<Value> valueJsonCodec;
 
+	public AggregationChunkJsonEtcdKVCodec(AggregationStructure structure) {
+		this(ofPrimaryKey(structure), ofDimensionStats(structure));
+	}
+
+	/**
+	 * Creates a codec of chunks without dimension stats
+	 */
 	public AggregationChunkJsonEtcdKVCodec(JsonCodec<PrimaryKey> primaryKeyCodec) {
-		this.valueJsonCodec = JsonCodecs.ofObject(Value::new,
-			"measures", Value::measures, JsonCodecs.ofList(JsonCodecs.ofString()),
-			"count", Value::count, JsonCodecs.ofInteger(),
-			"min", Value::min, primaryKeyCodec,
-			"max", Value::max, primaryKeyCodec
-		);
+		this(primaryKeyCodec, JsonCodecs.ofMap($ -> null));
+	}
+
+	public AggregationChunkJsonEtcdKVCodec(JsonCodec<PrimaryKey> primaryKeyCodec, JsonCodec<Map<String, DimensionStats>> dimensionStatsCodec) {
+		this.valueJsonCodec = ObjectJsonCodec.builder(ValueBuilder::new, ValueBuilder::build)
+			.with("measures", Value::measures, ValueBuilder::setMeasures, JsonCodecs.ofList(JsonCodecs.ofString()))
+			.with("count", Value::count, ValueBuilder::setCount, JsonCodecs.ofInteger())
+			.with("min", Value::min, ValueBuilder::setMin, primaryKeyCodec)
+			.with("max", Value::max, ValueBuilder::setMax, primaryKeyCodec)
+			.with("stats", Value::stats, ValueBuilder::setStats,
+				(key, index, value, stats) -> stats.isEmpty() ? null : dimensionStatsCodec,
+				JsonDecoderProvider.of(dimensionStatsCodec))
+			.build();
 	}
 
 	@Override
 	public KeyValue encodeKV(AggregationChunk chunk) {
 		return new KeyValue(
 			encodeKey(chunk.getChunkId()),
-			byteSequenceFrom(toJson(valueJsonCodec, new Value(chunk.getMeasures(), chunk.getCount(), chunk.getMinPrimaryKey(), chunk.getMaxPrimaryKey()))));
+			byteSequenceFrom(toJson(valueJsonCodec, new Value(chunk.getMeasures(), chunk.getCount(), chunk.getMinPrimaryKey(), chunk.getMaxPrimaryKey(), chunk.getDimensionStats()))));
 	}
 
 	@Override
@@ -51,7 +75,7 @@ public final class AggregationChunkJsonEtcdKVCodec implements EtcdKVCodec<Long,
 		} catch (MalformedDataException e) {
 			throw new MalformedEtcdDataException("Failed to decode value of key '" + kv.key() + '\'', e);
 		}
-		return AggregationChunk.create(chunkId, value.measures(), value.min(), value.max(), value.count());
+		return AggregationChunk.create(chunkId, value.measures(), value.min(), value.max(), value.count(), value.stats());
 	}
 
 	@Override
@@ -65,4 +89,35 @@ public final class AggregationChunkJsonEtcdKVCodec implements EtcdKVCodec<Long,
 		return chunkId;
 	}
 
+	private static final class ValueBuilder {
+		private @Nullable List<String> measures;
+		private @Nullable Integer count;
+		private @Nullable PrimaryKey min;
+		private @Nullable PrimaryKey max;
+		private Map<String, DimensionStats> stats = Map.of();
+
+		void setMeasures(List<String> measures) {
+			this.measures = measures;
+		}
+
+		void setCount(Integer count) {
+			this.count = count;
+		}
+
+		void setMin(PrimaryKey min) {
+			this.min = min;
+		}
+
+		void setMax(PrimaryKey max) {
+			this.max = max;
+		}
+
+		void setStats(Map<String, DimensionStats> stats) {
+			this.stats = stats;
+		}
+
+		Value build() throws JsonValidationException {
+			return new Value(validateNotNull(measures), validateNotNull(count), validateNotNull(min), validateNotNull(max), stats);
+		}
+	}
 }
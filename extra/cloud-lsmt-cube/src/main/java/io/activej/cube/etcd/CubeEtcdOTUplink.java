@@ -45,7 +45,6 @@ import java.util.function.Function;
 import static io.activej.common.Checks.checkArgument;
 import static io.activej.common.collection.CollectionUtils.union;
 import static io.activej.common.collection.CollectorUtils.entriesToLinkedHashMap;
-import static io.activej.cube.aggregation.json.JsonCodecs.ofPrimaryKey;
 import static io.activej.cube.etcd.EtcdUtils.*;
 import static io.activej.etcd.EtcdUtils.*;
 import static io.activej.json.JsonUtils.fromJson;
@@ -117,7 +116,7 @@ public final class CubeEtcdOTUplink extends AbstractReactive
 			if (chunkCodecsFactory == null) {
 				Map<String, AggregationChunkJsonEtcdKVCodec> collect = cubeStructure.getAggregationStructures().entrySet().stream()
 					.collect(entriesToLinkedHashMap(structure ->
-						new AggregationChunkJsonEtcdKVCodec(ofPrimaryKey(structure))));
+						new AggregationChunkJsonEtcdKVCodec(structure)));
 
 				chunkCodecsFactory = collect::get;
 			}
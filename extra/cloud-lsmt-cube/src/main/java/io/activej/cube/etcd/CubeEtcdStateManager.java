@@ -55,7 +55,6 @@ import java.util.function.Predicate;
 import static io.activej.async.util.LogUtils.toLogger;
 import static io.activej.common.collection.CollectionUtils.union;
 import static io.activej.common.collection.CollectorUtils.entriesToLinkedHashMap;
-import static io.activej.cube.aggregation.json.JsonCodecs.ofPrimaryKey;
 import static io.activej.cube.etcd.CubeEtcdOTUplink.logPositionEtcdCodec;
 import static io.activej.cube.etcd.EtcdUtils.*;
 import static io.activej.etcd.EtcdUtils.*;
@@ -170,7 +169,7 @@ public final class CubeEtcdStateManager extends AbstractEtcdStateManager<LogStat
 			if (chunkCodecsFactory == null) {
 				Map<String, AggregationChunkJsonEtcdKVCodec> collect = cubeStructure.getAggregationStructures().entrySet().stream()
 					.collect(entriesToLinkedHashMap(structure ->
-						new AggregationChunkJsonEtcdKVCodec(ofPrimaryKey(structure))));
+						new AggregationChunkJsonEtcdKVCodec(structure)));
 
 				chunkCodecsFactory = collect::get;
 			}
@@ -16,6 +16,8 @@
 
 package io.activej.cube.http;
 
+import io.activej.codegen.DefiningClassLoader;
+import io.activej.common.builder.AbstractBuilder;
 import io.activej.common.exception.MalformedDataException;
 import io.activej.cube.CubeQuery;
 import io.activej.cube.ICubeReporting;
@@ -27,6 +29,8 @@ import io.activej.http.HttpUtils;
 import io.activej.http.IHttpClient;
 import io.activej.json.JsonCodec;
 import io.activej.promise.Promise;
+import io.activej.serializer.SerializerFactory;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,6 +52,8 @@ public final class HttpClientCubeReporting implements ICubeReporting {
 	private final JsonCodec<QueryResult> queryResultJsonCodec;
 	private final JsonCodec<AggregationPredicate> aggregationPredicateCodec;
 
+	private @Nullable QueryResultBinaryCodec binaryCodec;
+
 	private HttpClientCubeReporting(IHttpClient httpClient, String url,
 		JsonCodec<QueryResult> queryResultJsonCodec, JsonCodec<AggregationPredicate> aggregationPredicateCodec
 	) {
@@ -63,7 +69,7 @@ public final class HttpClientCubeReporting implements ICubeReporting {
 		JsonCodec<QueryResult> queryResultJsonCodec,
 		JsonCodec<AggregationPredicate> aggregationPredicateCodec
 	) {
-		return new HttpClientCubeReporting(httpClient, cubeServletUrl, queryResultJsonCodec, aggregationPredicateCodec);
+		return builder(httpClient, cubeServletUrl, queryResultJsonCodec, aggregationPredicateCodec).build();
 	}
 
 	public static HttpClientCubeReporting create(
@@ -75,6 +81,44 @@ public final class HttpClientCubeReporting implements ICubeReporting {
 		return create(httpClient, cubeServletUrl.toString(), queryResultJsonCodec, aggregationPredicateCodec);
 	}
 
+	public static Builder builder(
+		IHttpClient httpClient,
+		String cubeServletUrl,
+		JsonCodec<QueryResult> queryResultJsonCodec,
+		JsonCodec<AggregationPredicate> aggregationPredicateCodec
+	) {
+		return new HttpClientCubeReporting(httpClient, cubeServletUrl, queryResultJsonCodec, aggregationPredicateCodec).new Builder();
+	}
+
+	public final class Builder extends AbstractBuilder<Builder, HttpClientCubeReporting> {
+		private Builder() {}
+
+		/**
+		 * Requests query results in a binary format, which is more compact and faster to decode than JSON.
+		 * A binary format should be enabled on a server side as well
+		 *
+		 * @see ReportingServiceServlet.Builder#withBinaryFormat(DefiningClassLoader)
+		 */
+		public Builder withBinaryFormat(DefiningClassLoader classLoader) {
+			return withBinaryFormat(classLoader, QueryResultBinaryCodec.DEFAULT_SERIALIZER_FACTORY);
+		}
+
+		/**
+		 * Requests query results in a binary format, decoded with serializers of a given factory.
+		 * The factory should match the one used by a server
+		 */
+		public Builder withBinaryFormat(DefiningClassLoader classLoader, SerializerFactory serializerFactory) {
+			checkNotBuilt(this);
+			HttpClientCubeReporting.this.binaryCodec = new QueryResultBinaryCodec(classLoader, serializerFactory, queryResultJsonCodec);
+			return this;
+		}
+
+		@Override
+		protected HttpClientCubeReporting doBuild() {
+			return HttpClientCubeReporting.this;
+		}
+	}
+
 	@Override
 	public Promise<QueryResult> query(CubeQuery query) {
 		return httpClient.request(buildRequest(query))
@@ -88,7 +132,9 @@ public final class HttpClientCubeReporting implements ICubeReporting {
 								"CubeHTTP query failed. Response code: " + response.getCode() +
 								" Body: " + body.getString(UTF_8));
 						}
-						return fromJsonBytes(queryResultJsonCodec, body.getArray());
+						return binaryCodec != null ?
+							binaryCodec.decode(body) :
+							fromJsonBytes(queryResultJsonCodec, body.getArray());
 					} catch (MalformedDataException e) {
 						throw new CubeException("Cube HTTP query failed. Invalid data received", e);
 					}
@@ -109,6 +155,12 @@ public final class HttpClientCubeReporting implements ICubeReporting {
 		if (query.getOffset() != null)
 			urlParams.put(OFFSET_PARAM, query.getOffset().toString());
 		urlParams.put(REPORT_TYPE_PARAM, query.getReportType().toString().toLowerCase());
+		if (!query.isCacheable())
+			urlParams.put(CACHE_PARAM, "false");
+		if (query.isSampled())
+			urlParams.put(SAMPLING_PARAM, Double.toString(query.getSamplingRate()));
+		if (binaryCodec != null)
+			urlParams.put(FORMAT_PARAM, BINARY_FORMAT);
 		String url = this.url + "/" + "?" + HttpUtils.renderQueryString(urlParams);
 
 		return HttpRequest.get(url).build();
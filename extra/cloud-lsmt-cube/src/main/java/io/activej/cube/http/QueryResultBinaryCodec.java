@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.cube.http;
+
+import io.activej.bytebuf.ByteBuf;
+import io.activej.bytebuf.ByteBufPool;
+import io.activej.codegen.DefiningClassLoader;
+import io.activej.codegen.expression.Expression;
+import io.activej.codegen.expression.Variable;
+import io.activej.common.exception.MalformedDataException;
+import io.activej.csp.supplier.ChannelSupplier;
+import io.activej.csp.supplier.ChannelSuppliers;
+import io.activej.cube.QueryResult;
+import io.activej.json.JsonCodec;
+import io.activej.record.Record;
+import io.activej.record.RecordScheme;
+import io.activej.serializer.*;
+import io.activej.serializer.def.AbstractSerializerDef;
+import io.activej.serializer.util.RecordBinarySerializer;
+
+import java.lang.reflect.Type;
+import java.time.LocalDate;
+import java.util.*;
+
+import static io.activej.codegen.expression.Expressions.call;
+import static io.activej.codegen.expression.Expressions.staticCall;
+import static io.activej.json.JsonUtils.fromJsonBytes;
+import static io.activej.json.JsonUtils.toJsonBytes;
+import static io.activej.serializer.def.SerializerExpressions.readVarLong;
+import static io.activej.serializer.def.SerializerExpressions.writeVarLong;
+
+/**
+ * A binary format of query results, intended for internal consumers.
+ * <p>
+ * A result is encoded as a JSON header which holds everything but records,
+ * followed by a number of records and records themselves, encoded by generated serializers.
+ * Records are encoded in batches, only when a consumer requests the next chunk of data.
+ */
+final class QueryResultBinaryCodec {
+	static final SerializerFactory DEFAULT_SERIALIZER_FACTORY = SerializerFactory.builder()
+		.with(LocalDate.class, ctx -> new AbstractSerializerDef() {
+			@Override
+			public Class<?> getEncodeType() {
+				return LocalDate.class;
+			}
+
+			@Override
+			public Expression encode(StaticEncoders staticEncoders, Expression buf, Variable pos, Expression value, int version, CompatibilityLevel compatibilityLevel) {
+				return writeVarLong(buf, pos, call(value, "toEpochDay"));
+			}
+
+			@Override
+			public Expression decode(StaticDecoders staticDecoders, Expression in, int version, CompatibilityLevel compatibilityLevel) {
+				return staticCall(LocalDate.class, "ofEpochDay", readVarLong(in));
+			}
+		})
+		.build();
+
+	private final DefiningClassLoader classLoader;
+	private final SerializerFactory serializerFactory;
+	private final JsonCodec<QueryResult> headerCodec;
+
+	private final Map<SchemeKey, BinarySerializer<Record>> serializers = new HashMap<>();
+
+	QueryResultBinaryCodec(DefiningClassLoader classLoader, SerializerFactory serializerFactory, JsonCodec<QueryResult> headerCodec) {
+		this.classLoader = classLoader;
+		this.serializerFactory = serializerFactory;
+		this.headerCodec = headerCodec;
+	}
+
+	ChannelSupplier<ByteBuf> encode(QueryResult queryResult, int batchSize) {
+		List<Record> records = queryResult.getRecords();
+		byte[] header = toJsonBytes(headerCodec, withRecords(queryResult, records == null ? null : List.of()));
+		BinarySerializer<Record> serializer = getSerializer(queryResult.getRecordScheme());
+		int count = records == null ? 0 : records.size();
+
+		ByteBuf headerBuf = ByteBufPool.allocate(4 + header.length + 4);
+		headerBuf.writeInt(header.length);
+		headerBuf.put(header);
+		headerBuf.writeInt(count);
+
+		return ChannelSuppliers.concat(
+			ChannelSuppliers.ofValue(headerBuf),
+			ChannelSuppliers.ofIterator(new Iterator<>() {
+				int index;
+
+				@Override
+				public boolean hasNext() {
+					return index < count;
+				}
+
+				@Override
+				public ByteBuf next() {
+					if (index == count) throw new NoSuchElementException();
+					int end = Math.min(index + batchSize, count);
+					byte[] array = new byte[1024];
+					int pos = 0;
+					for (; index < end; index++) {
+						while (true) {
+							try {
+								pos = serializer.encode(array, pos, records.get(index));
+								break;
+							} catch (ArrayIndexOutOfBoundsException e) {
+								array = Arrays.copyOf(array, array.length * 2);
+							}
+						}
+					}
+					return ByteBuf.wrap(array, 0, pos);
+				}
+			}));
+	}
+
+	QueryResult decode(ByteBuf buf) throws MalformedDataException {
+		try {
+			BinaryInput in = new BinaryInput(buf.array(), buf.head());
+			int headerLength = in.readInt();
+			if (headerLength < 0 || in.pos() + headerLength > buf.tail()) {
+				throw new MalformedDataException("Invalid header length: " + headerLength);
+			}
+			QueryResult header = fromJsonBytes(headerCodec, Arrays.copyOfRange(in.array(), in.pos(), in.pos() + headerLength));
+			in.move(headerLength);
+			int count = in.readInt();
+			if (count < 0 || (header.getRecords() == null && count != 0)) {
+				throw new MalformedDataException("Invalid number of records: " + count);
+			}
+			if (header.getRecords() == null) return header;
+
+			BinarySerializer<Record> serializer = getSerializer(header.getRecordScheme());
+			List<Record> records = new ArrayList<>(Math.min(count, buf.readRemaining()));
+			for (int i = 0; i < count; i++) {
+				records.add(serializer.decode(in));
+			}
+			if (in.pos() != buf.tail()) throw new MalformedDataException("Unexpected data after records");
+			return withRecords(header, records);
+		} catch (CorruptedDataException | IndexOutOfBoundsException e) {
+			throw new MalformedDataException("Malformed binary query result", e);
+		}
+	}
+
+	private BinarySerializer<Record> getSerializer(RecordScheme recordScheme) {
+		return serializers.computeIfAbsent(new SchemeKey(recordScheme.getFields(), recordScheme.getTypes()), $ -> {
+			RecordBinarySerializer.Builder builder = RecordBinarySerializer.builder(recordScheme);
+			for (String field : recordScheme.getFields()) {
+				Type type = recordScheme.getFieldType(field);
+				BinarySerializer<Object> serializer = serializerFactory.create(classLoader, type);
+				builder.withField(field, type instanceof Class<?> cls && cls.isPrimitive() ?
+					serializer :
+					new NullableSerializer<>(serializer));
+			}
+			return builder.build();
+		});
+	}
+
+	private static QueryResult withRecords(QueryResult queryResult, List<Record> records) {
+		return switch (queryResult.getReportType()) {
+			case METADATA -> queryResult;
+			case DATA -> QueryResult.createForData(queryResult.getRecordScheme(),
+				queryResult.getAttributes(), queryResult.getMeasures(), queryResult.getSortedBy(),
+				queryResult.getFilterAttributes(), records, queryResult.getSampling());
+			case DATA_WITH_TOTALS -> QueryResult.createForDataWithTotals(queryResult.getRecordScheme(),
+				queryResult.getAttributes(), queryResult.getMeasures(), queryResult.getSortedBy(),
+				queryResult.getFilterAttributes(), records, queryResult.getTotals(), queryResult.getTotalCount(),
+				queryResult.getSampling());
+		};
+	}
+
+	private record SchemeKey(List<String> fields, List<Type> types) {
+	}
+
+	private record NullableSerializer<T>(BinarySerializer<T> serializer) implements BinarySerializer<T> {
+		@Override
+		public void encode(BinaryOutput out, T item) {
+			if (item == null) {
+				out.writeBoolean(false);
+				return;
+			}
+			out.writeBoolean(true);
+			serializer.encode(out, item);
+		}
+
+		@Override
+		public T decode(BinaryInput in) throws CorruptedDataException {
+			return in.readBoolean() ? serializer.decode(in) : null;
+		}
+	}
+}
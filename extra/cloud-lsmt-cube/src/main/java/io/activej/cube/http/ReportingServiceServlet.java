@@ -17,17 +17,23 @@
 package io.activej.cube.http;
 
 import io.activej.bytebuf.ByteBuf;
+import io.activej.codegen.DefiningClassLoader;
+import io.activej.common.builder.AbstractBuilder;
 import io.activej.common.exception.MalformedDataException;
 import io.activej.common.time.Stopwatch;
+import io.activej.csp.supplier.ChannelSupplier;
 import io.activej.cube.CubeQuery;
 import io.activej.cube.ICubeReporting;
 import io.activej.cube.QueryResult;
 import io.activej.cube.aggregation.predicate.AggregationPredicate;
 import io.activej.cube.exception.QueryException;
+import io.activej.cube.json.QueryResultJsonStreamEncoder;
 import io.activej.http.*;
 import io.activej.json.JsonCodec;
 import io.activej.promise.Promise;
 import io.activej.reactor.Reactor;
+import io.activej.serializer.SerializerFactory;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -36,7 +42,9 @@ import java.util.List;
 import java.util.regex.Pattern;
 
 import static io.activej.bytebuf.ByteBufStrings.wrapUtf8;
+import static io.activej.common.Checks.checkArgument;
 import static io.activej.cube.http.Utils.*;
+import static io.activej.cube.json.QueryResultJsonStreamEncoder.DEFAULT_BATCH_SIZE;
 import static io.activej.http.HttpHeaderValue.ofContentType;
 import static io.activej.http.HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN;
 import static io.activej.http.HttpHeaders.CONTENT_TYPE;
@@ -53,6 +61,10 @@ public final class ReportingServiceServlet extends ServletWithStats {
 	private final JsonCodec<QueryResult> queryResultCodec;
 	private final JsonCodec<AggregationPredicate> aggregationPredicateCodec;
 
+	private @Nullable QueryResultJsonStreamEncoder streamEncoder;
+	private @Nullable QueryResultBinaryCodec binaryCodec;
+	private int batchSize = DEFAULT_BATCH_SIZE;
+
 	private ReportingServiceServlet(Reactor reactor, ICubeReporting cubeReporting,
 		JsonCodec<QueryResult> queryResultCodec, JsonCodec<AggregationPredicate> aggregationPredicateCodec
 	) {
@@ -68,7 +80,67 @@ public final class ReportingServiceServlet extends ServletWithStats {
 		JsonCodec<QueryResult> queryResultCodec,
 		JsonCodec<AggregationPredicate> aggregationPredicateCodec
 	) {
-		return new ReportingServiceServlet(reactor, cubeReporting, queryResultCodec, aggregationPredicateCodec);
+		return builder(reactor, cubeReporting, queryResultCodec, aggregationPredicateCodec).build();
+	}
+
+	public static Builder builder(
+		Reactor reactor,
+		ICubeReporting cubeReporting,
+		JsonCodec<QueryResult> queryResultCodec,
+		JsonCodec<AggregationPredicate> aggregationPredicateCodec
+	) {
+		return new ReportingServiceServlet(reactor, cubeReporting, queryResultCodec, aggregationPredicateCodec).new Builder();
+	}
+
+	public final class Builder extends AbstractBuilder<Builder, ReportingServiceServlet> {
+		private Builder() {}
+
+		/**
+		 * Enables streaming of JSON responses.
+		 * <p>
+		 * Records of a query result are encoded in batches as an HTTP connection
+		 * accepts data, rather than into a single body.
+		 * A query result itself is still computed in full before a response is sent.
+		 */
+		public Builder withStreaming(QueryResultJsonStreamEncoder streamEncoder) {
+			checkNotBuilt(this);
+			ReportingServiceServlet.this.streamEncoder = streamEncoder;
+			return this;
+		}
+
+		/**
+		 * Enables a binary format of responses, which may be requested by {@link HttpClientCubeReporting}.
+		 * Besides the types supported by {@link SerializerFactory} out of the box, {@link java.time.LocalDate} is supported
+		 */
+		public Builder withBinaryFormat(DefiningClassLoader classLoader) {
+			return withBinaryFormat(classLoader, QueryResultBinaryCodec.DEFAULT_SERIALIZER_FACTORY);
+		}
+
+		/**
+		 * Enables a binary format using a given serializer factory, which should resolve serializers
+		 * for types of all the attributes and measures.
+		 * The same factory should be used on both client and server sides
+		 */
+		public Builder withBinaryFormat(DefiningClassLoader classLoader, SerializerFactory serializerFactory) {
+			checkNotBuilt(this);
+			ReportingServiceServlet.this.binaryCodec = new QueryResultBinaryCodec(classLoader, serializerFactory, queryResultCodec);
+			return this;
+		}
+
+		/**
+		 * Sets a maximum number of records encoded into a single chunk of a streamed response
+		 */
+		public Builder withBatchSize(int batchSize) {
+			checkNotBuilt(this);
+			checkArgument(batchSize > 0, "Batch size should be positive");
+			ReportingServiceServlet.this.batchSize = batchSize;
+			return this;
+		}
+
+		@Override
+		protected ReportingServiceServlet doBuild() {
+			return ReportingServiceServlet.this;
+		}
 	}
 
 	public static RoutingServlet createRootServlet(
@@ -93,11 +165,23 @@ public final class ReportingServiceServlet extends ServletWithStats {
 		try {
 			Stopwatch totalTimeStopwatch = Stopwatch.createStarted();
 			CubeQuery cubeQuery = parseQuery(httpRequest);
+			String format = httpRequest.getQueryParameter(FORMAT_PARAM);
+			boolean binary = format != null && parseBinaryFormat(format);
+			if (binary && binaryCodec == null) {
+				return createErrorResponse("Binary format is not supported");
+			}
 			return cubeReporting.query(cubeQuery)
 				.then(queryResult -> {
 					Stopwatch resultProcessingStopwatch = Stopwatch.createStarted();
-					ByteBuf jsonBuf = ByteBuf.wrapForReading(toJsonBytes(queryResultCodec, queryResult));
-					Promise<HttpResponse> httpResponse = createResponse(jsonBuf);
+					Promise<HttpResponse> httpResponse;
+					if (binary) {
+						httpResponse = createResponse(ContentType.of(MediaTypes.OCTET_STREAM), binaryCodec.encode(queryResult, batchSize));
+					} else if (streamEncoder != null) {
+						httpResponse = createResponse(ContentType.of(MediaTypes.JSON, StandardCharsets.UTF_8), streamEncoder.encode(queryResult, batchSize));
+					} else {
+						ByteBuf jsonBuf = ByteBuf.wrapForReading(toJsonBytes(queryResultCodec, queryResult));
+						httpResponse = createResponse(jsonBuf);
+					}
 					logger.info("Processed request {} ({}) [totalTime={}, jsonConstruction={}]", httpRequest,
 						cubeQuery, totalTimeStopwatch, resultProcessingStopwatch);
 					return httpResponse;
@@ -119,6 +203,14 @@ public final class ReportingServiceServlet extends ServletWithStats {
 			.toPromise();
 	}
 
+	private static Promise<HttpResponse> createResponse(ContentType contentType, ChannelSupplier<ByteBuf> bodyStream) {
+		return HttpResponse.ok200()
+			.withHeader(CONTENT_TYPE, ofContentType(contentType))
+			.withBodyStream(bodyStream)
+			.withHeader(ACCESS_CONTROL_ALLOW_ORIGIN, "*")
+			.toPromise();
+	}
+
 	private static Promise<HttpResponse> createErrorResponse(String body) {
 		return HttpResponse.ofCode(400)
 			.withHeader(CONTENT_TYPE, ofContentType(ContentType.of(MediaTypes.PLAIN_TEXT, StandardCharsets.UTF_8)))
@@ -172,6 +264,14 @@ public final class ReportingServiceServlet extends ServletWithStats {
 		if (parameter != null)
 			queryBuilder.withReportType(parseReportType(parameter));
 
+		parameter = request.getQueryParameter(CACHE_PARAM);
+		if (parameter != null)
+			queryBuilder.withCacheable(parseBoolean(parameter));
+
+		parameter = request.getQueryParameter(SAMPLING_PARAM);
+		if (parameter != null)
+			queryBuilder.withSamplingRate(parseSamplingRate(parameter));
+
 		return queryBuilder.build();
 	}
 
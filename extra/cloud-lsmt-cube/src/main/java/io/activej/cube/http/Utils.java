@@ -36,6 +36,12 @@ public class Utils {
 	static final String LIMIT_PARAM = "limit";
 	static final String OFFSET_PARAM = "offset";
 	static final String REPORT_TYPE_PARAM = "reportType";
+	static final String CACHE_PARAM = "cache";
+	static final String FORMAT_PARAM = "format";
+	static final String SAMPLING_PARAM = "sampling";
+
+	static final String JSON_FORMAT = "json";
+	static final String BINARY_FORMAT = "binary";
 
 	private static final Pattern splitter = Pattern.compile(",");
 
@@ -84,6 +90,32 @@ public class Utils {
 		}
 	}
 
+	static double parseSamplingRate(String parameter) throws MalformedDataException {
+		try {
+			double value = Double.parseDouble(parameter);
+			if (!(value > 0 && value <= 1)) throw new MalformedDataException("Sampling rate must be in range (0, 1]: " + parameter);
+			return value;
+		} catch (NumberFormatException e) {
+			throw new MalformedDataException("Could not parse: " + parameter, e);
+		}
+	}
+
+	static boolean parseBoolean(String parameter) throws MalformedDataException {
+		return switch (parameter.toLowerCase()) {
+			case "true" -> true;
+			case "false" -> false;
+			default -> throw new MalformedDataException("Could not parse boolean: " + parameter);
+		};
+	}
+
+	static boolean parseBinaryFormat(String parameter) throws MalformedDataException {
+		return switch (parameter.toLowerCase()) {
+			case JSON_FORMAT -> false;
+			case BINARY_FORMAT -> true;
+			default -> throw new MalformedDataException("Unknown format: " + parameter);
+		};
+	}
+
 	static ReportType parseReportType(String parameter) throws MalformedDataException {
 		try {
 			return ReportType.valueOf(parameter.toUpperCase());
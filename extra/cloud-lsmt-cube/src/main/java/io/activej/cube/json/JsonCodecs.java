@@ -91,4 +91,24 @@ public class JsonCodecs {
 		return QueryResultJsonCodec.create(classLoader, attributeTypes, measureTypes, attributeCodecs, measureCodecs);
 	}
 
+	public static QueryResultJsonStreamEncoder createQueryResultStreamEncoder(
+		JsonCodecFactory factory,
+		CubeStructure structure
+	) {
+		return createQueryResultStreamEncoder(factory, structure.getAllAttributeTypes(), structure.getAllMeasureTypes());
+	}
+
+	public static QueryResultJsonStreamEncoder createQueryResultStreamEncoder(
+		JsonCodecFactory factory,
+		Map<String, Type> attributeTypes,
+		Map<String, Type> measureTypes
+	) {
+		Map<String, JsonCodec<Object>> attributeCodecs = attributeTypes.entrySet().stream()
+			.collect(entriesToHashMap(value -> factory.resolve(value).nullable()));
+		Map<String, JsonCodec<Object>> measureCodecs = measureTypes.entrySet().stream()
+			.collect(entriesToHashMap(factory::resolve));
+
+		return new QueryResultJsonStreamEncoder(attributeCodecs, measureCodecs);
+	}
+
 }
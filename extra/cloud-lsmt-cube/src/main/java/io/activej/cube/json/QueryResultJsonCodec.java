@@ -18,6 +18,7 @@ package io.activej.cube.json;
 
 import io.activej.codegen.DefiningClassLoader;
 import io.activej.cube.QueryResult;
+import io.activej.cube.QueryResult.Sampling;
 import io.activej.cube.ReportType;
 import io.activej.json.*;
 import io.activej.json.ObjectJsonCodec.JsonCodecProvider;
@@ -50,6 +51,7 @@ final class QueryResultJsonCodec {
 	static final String COUNT_FIELD = "count";
 	static final String SORTED_BY_FIELD = "sortedBy";
 	static final String METADATA_FIELD = "metadata";
+	static final String SAMPLING_FIELD = "sampling";
 
 	record Metadata(List<String> attributes, List<String> measures) {
 		static Metadata create(List<String> attributes, List<String> measures) throws JsonValidationException {
@@ -73,6 +75,7 @@ final class QueryResultJsonCodec {
 		@Nullable Integer totalCount;
 
 		@Nullable Map<String, Object> filterAttributes;
+		@Nullable Sampling sampling;
 
 		QueryResultBuilder(DefiningClassLoader classLoader,
 			Map<String, Type> attributeTypes, Map<String, Type> measureTypes
@@ -122,46 +125,82 @@ final class QueryResultJsonCodec {
 			this.totals = totals;
 		}
 
+		public void setSampling(Sampling sampling) {
+			this.sampling = sampling;
+		}
+
 		public QueryResult toQueryResult() throws JsonValidationException {
 			ReportType reportType = totals != null ? DATA_WITH_TOTALS : records != null ? DATA : METADATA;
 			return switch (reportType) {
 				case METADATA -> QueryResult.createForMetadata(ensureRecordScheme(),
 					validateNotNull(attributes), validateNotNull(measures));
 				case DATA -> QueryResult.createForData(ensureRecordScheme(),
-					validateNotNull(attributes), validateNotNull(measures), validateNotNull(sortedBy), validateNotNull(filterAttributes), validateNotNull(records));
+					validateNotNull(attributes), validateNotNull(measures), validateNotNull(sortedBy), validateNotNull(filterAttributes), validateNotNull(records), sampling);
 				case DATA_WITH_TOTALS -> QueryResult.createForDataWithTotals(ensureRecordScheme(),
-					validateNotNull(attributes), validateNotNull(measures), validateNotNull(sortedBy), validateNotNull(filterAttributes), validateNotNull(records), validateNotNull(totals), validateNotNull(totalCount));
+					validateNotNull(attributes), validateNotNull(measures), validateNotNull(sortedBy), validateNotNull(filterAttributes), validateNotNull(records), validateNotNull(totals), validateNotNull(totalCount), sampling);
 			};
 		}
 	}
 
+	static final JsonCodec<Metadata> METADATA_CODEC = ofObject(Metadata::create,
+		ATTRIBUTES_FIELD, Metadata::attributes, ofList(ofString()),
+		MEASURES_FIELD, Metadata::measures, ofList(ofString())
+	);
+
+	static final JsonCodec<List<String>> SORTED_BY_CODEC = ofList(ofString());
+
+	static final JsonCodec<Integer> COUNT_CODEC = ofInteger();
+
+	static final JsonCodec<Sampling> SAMPLING_CODEC = ofObject(
+		(rate, sampledChunks, totalChunks, relativeError) -> new Sampling(
+			validateNotNull(rate), validateNotNull(sampledChunks), validateNotNull(totalChunks), validateNotNull(relativeError)),
+		"rate", Sampling::rate, ofDouble(),
+		"sampledChunks", Sampling::sampledChunks, ofInteger(),
+		"totalChunks", Sampling::totalChunks, ofInteger(),
+		"relativeError", Sampling::relativeError, ofDouble()
+	);
+
 	static ObjectJsonCodec<QueryResult, QueryResultBuilder> create(DefiningClassLoader classLoader, Map<String, Type> attributeTypes, Map<String, Type> measureTypes, Map<String, JsonCodec<Object>> attributeCodecs, Map<String, JsonCodec<Object>> measureCodecs) {
 		return ObjectJsonCodec.builder(
 				() -> new QueryResultBuilder(classLoader, attributeTypes, measureTypes),
 				QueryResultBuilder::toQueryResult)
 			.with(METADATA_FIELD, QueryResultJsonCodec::getMetadata, QueryResultBuilder::setMetadata,
-				ofObject(Metadata::create,
-					ATTRIBUTES_FIELD, Metadata::attributes, ofList(ofString()),
-					MEASURES_FIELD, Metadata::measures, ofList(ofString())
-				))
+				METADATA_CODEC)
 			.with(FILTER_ATTRIBUTES_FIELD, QueryResultJsonCodec::getFilterAttributes, QueryResultBuilder::setFilterAttributes,
 				skipNulls(
-					ofMap(attributeCodecs::get)))
+					createFilterAttributesJsonCodec(attributeCodecs)))
 			.with(SORTED_BY_FIELD, QueryResultJsonCodec::getSortedBy, QueryResultBuilder::setSortedBy,
 				skipNulls(
-					ofList(ofString())))
+					SORTED_BY_CODEC))
 			.with(COUNT_FIELD, QueryResultJsonCodec::getTotalCount, QueryResultBuilder::setTotalCount,
 				skipNulls(
-					ofInteger()))
+					COUNT_CODEC))
+			.with(SAMPLING_FIELD, QueryResult::getSampling, QueryResultBuilder::setSampling,
+				skipNulls(
+					SAMPLING_CODEC))
 			.with(RECORDS_FIELD, QueryResultJsonCodec::getRecords, QueryResultBuilder::setRecords,
 				skipNulls(recordScheme ->
-					ofList(createRecordJsonCodec(recordScheme, field -> nonNullElse(attributeCodecs.get(field), measureCodecs.get(field))))))
+					ofList(createRecordJsonCodec(recordScheme, attributeCodecs, measureCodecs))))
 			.with(TOTALS_FIELD, QueryResultJsonCodec::getTotals, QueryResultBuilder::setTotals,
 				skipNulls(recordScheme ->
-					createRecordJsonCodec(recordScheme, measureCodecs::get)))
+					createTotalsJsonCodec(recordScheme, measureCodecs)))
 			.build();
 	}
 
+	static JsonCodec<Map<String, Object>> createFilterAttributesJsonCodec(Map<String, JsonCodec<Object>> attributeCodecs) {
+		return ofMap(attributeCodecs::get);
+	}
+
+	static JsonCodec<Record> createRecordJsonCodec(RecordScheme recordScheme,
+		Map<String, JsonCodec<Object>> attributeCodecs, Map<String, JsonCodec<Object>> measureCodecs
+	) {
+		return createRecordJsonCodec(recordScheme, field -> nonNullElse(attributeCodecs.get(field), measureCodecs.get(field)));
+	}
+
+	static JsonCodec<Record> createTotalsJsonCodec(RecordScheme recordScheme, Map<String, JsonCodec<Object>> measureCodecs) {
+		return createRecordJsonCodec(recordScheme, measureCodecs::get);
+	}
+
 	static <V> JsonCodecProvider<QueryResult, QueryResultBuilder, V> skipNulls(JsonCodec<V> codec) {
 		return new JsonCodecProvider<>() {
 			@Override
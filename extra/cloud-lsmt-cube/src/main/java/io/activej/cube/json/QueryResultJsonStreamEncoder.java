@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.cube.json;
+
+import com.dslplatform.json.JsonWriter;
+import io.activej.bytebuf.ByteBuf;
+import io.activej.common.ApplicationSettings;
+import io.activej.csp.supplier.ChannelSupplier;
+import io.activej.csp.supplier.ChannelSuppliers;
+import io.activej.cube.QueryResult;
+import io.activej.cube.QueryResult.Sampling;
+import io.activej.json.JsonCodec;
+import io.activej.record.Record;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static com.dslplatform.json.JsonWriter.*;
+import static io.activej.common.Checks.checkArgument;
+import static io.activej.cube.json.QueryResultJsonCodec.*;
+import static io.activej.json.JsonUtils.newJsonWriter;
+
+/**
+ * Encodes a {@link QueryResult} into JSON incrementally.
+ * <p>
+ * The produced JSON is identical to the one produced by a codec
+ * created via {@link JsonCodecs#createQueryResultCodec}, but records are encoded in batches
+ * only when a consumer requests the next chunk of data.
+ * So, a large result never has to be encoded into a single buffer,
+ * and encoding proceeds no faster than the consumer (e.g. an HTTP connection) accepts data.
+ * <p>
+ * Only the output is chunked: a query result is already materialized, so its records
+ * are held in memory until encoding completes, and peak memory of a query is not reduced
+ * beyond the size of the encoded JSON.
+ */
+public final class QueryResultJsonStreamEncoder {
+	public static final int DEFAULT_BATCH_SIZE = ApplicationSettings.getInt(QueryResultJsonStreamEncoder.class, "batchSize", 1024);
+
+	private final Map<String, JsonCodec<Object>> attributeCodecs;
+	private final Map<String, JsonCodec<Object>> measureCodecs;
+	private final JsonCodec<Map<String, Object>> filterAttributesCodec;
+
+	QueryResultJsonStreamEncoder(Map<String, JsonCodec<Object>> attributeCodecs, Map<String, JsonCodec<Object>> measureCodecs) {
+		this.attributeCodecs = attributeCodecs;
+		this.measureCodecs = measureCodecs;
+		this.filterAttributesCodec = createFilterAttributesJsonCodec(attributeCodecs);
+	}
+
+	public ChannelSupplier<ByteBuf> encode(QueryResult queryResult) {
+		return encode(queryResult, DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * Returns a supplier of JSON chunks of a given query result
+	 *
+	 * @param queryResult a query result to be encoded
+	 * @param batchSize   maximum number of records encoded into a single chunk
+	 */
+	public ChannelSupplier<ByteBuf> encode(QueryResult queryResult, int batchSize) {
+		checkArgument(batchSize > 0, "Batch size should be positive");
+		return ChannelSuppliers.ofIterator(new ChunkIterator(queryResult, batchSize));
+	}
+
+	private final class ChunkIterator implements Iterator<ByteBuf> {
+		private final QueryResult queryResult;
+		private final int batchSize;
+		private final JsonWriter writer = newJsonWriter();
+
+		private final List<Record> records;
+		private final JsonCodec<Record> recordCodec;
+
+		private int index = -1;
+		private boolean done;
+
+		ChunkIterator(QueryResult queryResult, int batchSize) {
+			this.queryResult = queryResult;
+			this.batchSize = batchSize;
+			this.records = queryResult.getRecords();
+			this.recordCodec = records == null ? null :
+				createRecordJsonCodec(queryResult.getRecordScheme(), attributeCodecs, measureCodecs);
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !done;
+		}
+
+		@Override
+		public ByteBuf next() {
+			if (done) throw new NoSuchElementException();
+			writer.reset();
+			if (index == -1) {
+				writeHead();
+				index = 0;
+			}
+			if (records != null) {
+				int end = Math.min(index + batchSize, records.size());
+				for (; index < end; index++) {
+					if (index != 0) writer.writeByte(COMMA);
+					recordCodec.write(writer, records.get(index));
+				}
+				if (index == records.size()) {
+					writer.writeByte(ARRAY_END);
+					writeTail();
+				}
+			} else {
+				writeTail();
+			}
+			return ByteBuf.wrapForReading(writer.toByteArray());
+		}
+
+		private void writeHead() {
+			writer.writeByte(OBJECT_START);
+			writeField(METADATA_FIELD);
+			METADATA_CODEC.write(writer, getMetadata(queryResult));
+			Map<String, Object> filterAttributes = queryResult.getFilterAttributes();
+			if (filterAttributes != null) {
+				writer.writeByte(COMMA);
+				writeField(FILTER_ATTRIBUTES_FIELD);
+				filterAttributesCodec.write(writer, filterAttributes);
+			}
+			List<String> sortedBy = queryResult.getSortedBy();
+			if (sortedBy != null) {
+				writer.writeByte(COMMA);
+				writeField(SORTED_BY_FIELD);
+				SORTED_BY_CODEC.write(writer, sortedBy);
+			}
+			Integer totalCount = getTotalCount(queryResult);
+			if (totalCount != null) {
+				writer.writeByte(COMMA);
+				writeField(COUNT_FIELD);
+				COUNT_CODEC.write(writer, totalCount);
+			}
+			Sampling sampling = queryResult.getSampling();
+			if (sampling != null) {
+				writer.writeByte(COMMA);
+				writeField(SAMPLING_FIELD);
+				SAMPLING_CODEC.write(writer, sampling);
+			}
+			if (records != null) {
+				writer.writeByte(COMMA);
+				writeField(RECORDS_FIELD);
+				writer.writeByte(ARRAY_START);
+			}
+		}
+
+		private void writeTail() {
+			Record totals = queryResult.getTotals();
+			if (totals != null) {
+				writer.writeByte(COMMA);
+				writeField(TOTALS_FIELD);
+				createTotalsJsonCodec(queryResult.getRecordScheme(), measureCodecs).write(writer, totals);
+			}
+			writer.writeByte(OBJECT_END);
+			done = true;
+		}
+
+		private void writeField(String field) {
+			writer.writeString(field);
+			writer.writeByte(SEMI);
+		}
+	}
+}
@@ -18,6 +18,8 @@ package io.activej.cube.service;
 
 import io.activej.async.function.AsyncRunnable;
 import io.activej.common.builder.AbstractBuilder;
+import io.activej.cube.AggregationExecutor;
+import io.activej.cube.AggregationState;
 import io.activej.cube.CubeConsolidator;
 import io.activej.cube.CubeConsolidator.ConsolidationStrategy;
 import io.activej.cube.CubeStructure;
@@ -49,6 +51,7 @@ import java.util.stream.Stream;
 import static io.activej.async.function.AsyncRunnables.reuse;
 import static io.activej.async.util.LogUtils.thisMethod;
 import static io.activej.async.util.LogUtils.toLogger;
+import static io.activej.common.Checks.checkArgument;
 import static io.activej.common.Checks.checkNotNull;
 import static io.activej.common.Checks.checkState;
 import static io.activej.common.collection.CollectorUtils.entriesToLinkedHashMap;
@@ -90,8 +93,16 @@ public final class CubeConsolidationController<D> extends AbstractReactive
 	private final ValueStats addedChunksRecords = ValueStats.builder(DEFAULT_SMOOTHING_WINDOW)
 		.withRate()
 		.build();
+	private final ValueStats readAmplification = ValueStats.create(DEFAULT_SMOOTHING_WINDOW);
+	private long consolidatedRecordsRead;
+	private long consolidatedRecordsWritten;
 	private long lastNotEmptyConsolidationTimestamp;
 
+	private boolean costBasedScheduling;
+	private int maxConcurrentConsolidations = 1;
+	private long maxConsolidatedRecords = Long.MAX_VALUE;
+	private final Map<String, Long> lastQueries = new HashMap<>();
+
 	private Supplier<ConsolidationStrategy> strategySupplier = DEFAULT_CONSOLIDATION_STRATEGY;
 
 	private boolean consolidating;
@@ -129,6 +140,28 @@ public final class CubeConsolidationController<D> extends AbstractReactive
 			return this;
 		}
 
+		/**
+		 * Enables cost-based scheduling of consolidations.
+		 * <p>
+		 * Instead of consolidating aggregations one by one in random order, aggregations are ordered by
+		 * expected savings of query cost, which is estimated as read amplification of an aggregation
+		 * multiplied by a number of queries to the aggregation since the previous consolidation.
+		 * Several aggregations are consolidated concurrently, while a total number of records
+		 * to be consolidated at once is limited by an I/O budget.
+		 *
+		 * @param maxConcurrentConsolidations a maximum number of aggregations consolidated at the same time
+		 * @param maxConsolidatedRecords      a maximum number of records read by a single consolidation
+		 */
+		public Builder withCostBasedScheduling(int maxConcurrentConsolidations, long maxConsolidatedRecords) {
+			checkNotBuilt(this);
+			checkArgument(maxConcurrentConsolidations > 0, "Max concurrent consolidations should be positive");
+			checkArgument(maxConsolidatedRecords > 0, "Max consolidated records should be positive");
+			CubeConsolidationController.this.costBasedScheduling = true;
+			CubeConsolidationController.this.maxConcurrentConsolidations = maxConcurrentConsolidations;
+			CubeConsolidationController.this.maxConsolidatedRecords = maxConsolidatedRecords;
+			return this;
+		}
+
 		@Override
 		protected CubeConsolidationController<D> doBuild() {
 			return CubeConsolidationController.this;
@@ -167,6 +200,13 @@ public final class CubeConsolidationController<D> extends AbstractReactive
 	}
 
 	private Promise<List<String>> doConsolidate(ConsolidationStrategy strategy) {
+		if (costBasedScheduling) {
+			List<String> aggregationIds = prioritizeAggregations();
+			return cubeConsolidator.consolidate(aggregationIds, strategy, maxConcurrentConsolidations, maxConsolidatedRecords)
+				.whenComplete(promiseConsolidateImpl.recordStats())
+				.whenResult(this::cubeDiffJmx)
+				.map(diff -> new ArrayList<>(diff.keySet()));
+		}
 		Set<String> aggregationIds = cubeStructure.getAggregationIds();
 		List<String> consolidatedAggregations = new ArrayList<>(aggregationIds.size());
 		List<String> aggregationsList = new ArrayList<>(aggregationIds);
@@ -181,6 +221,38 @@ public final class CubeConsolidationController<D> extends AbstractReactive
 		return Promises.sequence(runnables).map($ -> consolidatedAggregations);
 	}
 
+	/**
+	 * Orders aggregations by expected savings of query cost, the most profitable first
+	 */
+	private List<String> prioritizeAggregations() {
+		Map<String, AggregationExecutor> aggregationExecutors = cubeConsolidator.getExecutor().getAggregationExecutors();
+		Map<String, Integer> amplifications = cubeConsolidator.getStateManager().query(state -> {
+			Map<String, Integer> result = new HashMap<>();
+			for (String aggregationId : cubeStructure.getAggregationIds()) {
+				AggregationState aggregationState = state.getDataState().getAggregationState(aggregationId);
+				result.put(aggregationId, aggregationState == null ? 0 : aggregationState.getReadAmplification());
+			}
+			return result;
+		});
+
+		Map<String, Double> savings = new HashMap<>();
+		for (Map.Entry<String, Integer> entry : amplifications.entrySet()) {
+			String aggregationId = entry.getKey();
+			int amplification = entry.getValue();
+			long queries = aggregationExecutors.get(aggregationId).getQueries();
+			Long previousQueries = lastQueries.put(aggregationId, queries);
+			long recentQueries = queries - (previousQueries == null ? 0 : previousQueries);
+			readAmplification.recordValue(amplification);
+			savings.put(aggregationId, (double) Math.max(0, amplification - 1) * (1 + recentQueries));
+		}
+
+		List<String> aggregationIds = new ArrayList<>(savings.keySet());
+		aggregationIds.sort(Comparator.comparing((String aggregationId) -> savings.get(aggregationId)).reversed()
+			.thenComparing(Comparator.naturalOrder()));
+		logger.info("Consolidation priorities: {}", savings);
+		return aggregationIds;
+	}
+
 	private Promise<Void> doCleanupIrrelevantChunks() {
 		checkState(!consolidating, "Cannot consolidate and clean up irrelevant chunks at the same time");
 		cleaning = true;
@@ -228,6 +300,8 @@ public final class CubeConsolidationController<D> extends AbstractReactive
 		addedChunksRecords.recordValue(curAddedChunksRecords);
 		removedChunks.recordValue(curRemovedChunks);
 		removedChunksRecords.recordValue(curRemovedChunksRecords);
+		consolidatedRecordsRead += curRemovedChunksRecords;
+		consolidatedRecordsWritten += curAddedChunksRecords;
 	}
 
 	private void logConsolidation(Collection<String> consolidated, Exception e) {
@@ -259,6 +333,80 @@ public final class CubeConsolidationController<D> extends AbstractReactive
 		return addedChunksRecords;
 	}
 
+	@JmxAttribute
+	public ValueStats getReadAmplification() {
+		return readAmplification;
+	}
+
+	@JmxAttribute
+	public int getMaxReadAmplification() {
+		return cubeConsolidator.getStateManager().query(state -> {
+			int result = 0;
+			for (String aggregationId : cubeStructure.getAggregationIds()) {
+				AggregationState aggregationState = state.getDataState().getAggregationState(aggregationId);
+				if (aggregationState != null) result = Math.max(result, aggregationState.getReadAmplification());
+			}
+			return result;
+		});
+	}
+
+	@JmxAttribute
+	public long getConsolidatedRecordsRead() {
+		return consolidatedRecordsRead;
+	}
+
+	@JmxAttribute
+	public long getConsolidatedRecordsWritten() {
+		return consolidatedRecordsWritten;
+	}
+
+	/**
+	 * Returns an approximate ratio of records written to storage to records currently stored,
+	 * that is how many times stored records have been written, including rewrites by consolidations
+	 */
+	@JmxAttribute
+	public double getWriteAmplification() {
+		long storedRecords = cubeConsolidator.getStateManager().query(state -> {
+			long result = 0;
+			for (String aggregationId : cubeStructure.getAggregationIds()) {
+				AggregationState aggregationState = state.getDataState().getAggregationState(aggregationId);
+				if (aggregationState == null) continue;
+				for (AggregationChunk chunk : aggregationState.getChunks().values()) {
+					result += chunk.getCount();
+				}
+			}
+			return result;
+		});
+		return storedRecords == 0 ? 0 : (double) (storedRecords + consolidatedRecordsWritten) / storedRecords;
+	}
+
+	@JmxAttribute
+	public boolean isCostBasedScheduling() {
+		return costBasedScheduling;
+	}
+
+	@JmxAttribute
+	public int getMaxConcurrentConsolidations() {
+		return maxConcurrentConsolidations;
+	}
+
+	@JmxAttribute
+	public void setMaxConcurrentConsolidations(int maxConcurrentConsolidations) {
+		checkArgument(maxConcurrentConsolidations > 0, "Max concurrent consolidations should be positive");
+		this.maxConcurrentConsolidations = maxConcurrentConsolidations;
+	}
+
+	@JmxAttribute
+	public long getMaxConsolidatedRecords() {
+		return maxConsolidatedRecords;
+	}
+
+	@JmxAttribute
+	public void setMaxConsolidatedRecords(long maxConsolidatedRecords) {
+		checkArgument(maxConsolidatedRecords > 0, "Max consolidated records should be positive");
+		this.maxConsolidatedRecords = maxConsolidatedRecords;
+	}
+
 	@JmxAttribute
 	public PromiseStats getPromiseConsolidate() {
 		return promiseConsolidate;
@@ -1,10 +1,32 @@
 package io.activej.cube;
 
+import io.activej.common.exception.MalformedDataException;
+import io.activej.cube.aggregation.AggregationChunk;
+import io.activej.cube.aggregation.DimensionStats;
 import io.activej.cube.aggregation.PrimaryKey;
+import io.activej.cube.aggregation.ot.AggregationDiff;
+import io.activej.cube.aggregation.predicate.AggregationPredicate;
+import io.activej.cube.aggregation.util.BloomFilter;
+import io.activej.cube.etcd.AggregationChunkJsonEtcdKVCodec;
+import io.activej.etcd.codec.kv.KeyValue;
+import io.activej.etcd.exception.MalformedEtcdDataException;
+import io.activej.json.JsonCodec;
 import org.junit.Test;
 
-import static org.junit.Assert.assertFalse;
-import static org.junit.Assert.assertTrue;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static io.activej.cube.TestUtils.aggregationStructureBuilder;
+import static io.activej.cube.aggregation.fieldtype.FieldTypes.ofInt;
+import static io.activej.cube.aggregation.json.JsonCodecs.ofAggregationDiff;
+import static io.activej.cube.aggregation.json.JsonCodecs.ofPrimaryKey;
+import static io.activej.cube.aggregation.measure.Measures.sum;
+import static io.activej.cube.aggregation.predicate.AggregationPredicates.*;
+import static io.activej.json.JsonUtils.fromJson;
+import static io.activej.json.JsonUtils.toJson;
+import static java.util.stream.Collectors.toSet;
+import static org.junit.Assert.*;
 
 public class ChunkFilteringTest {
 	@Test
@@ -50,4 +72,120 @@ public class ChunkFilteringTest {
 
 		assertTrue(AggregationState.chunkMightContainQueryValues(minQueryKey, maxQueryKey, minChunkKey, maxChunkKey));
 	}
+
+	@Test
+	public void testBloomFilterHasNoFalseNegatives() {
+		BloomFilter bloomFilter = BloomFilter.create(1000, 0.01);
+		for (int i = 0; i < 1000; i++) {
+			bloomFilter.add(i * 7);
+		}
+		int falsePositives = 0;
+		for (int i = 0; i < 7000; i++) {
+			if (i % 7 == 0) {
+				assertTrue(bloomFilter.mightContain(i));
+			} else if (bloomFilter.mightContain(i)) {
+				falsePositives++;
+			}
+		}
+		assertTrue(falsePositives < 6000 * 0.03);
+	}
+
+	@Test
+	public void testBloomFilterHashesValuesByContent() {
+		// filters are persisted, so hashes must not depend on Object#hashCode of a particular JVM
+		BloomFilter bloomFilter = BloomFilter.create(4, 0.01);
+		bloomFilter.add(42);
+		bloomFilter.add(42L);
+		bloomFilter.add("site");
+		bloomFilter.add(Thread.State.RUNNABLE);
+		assertArrayEquals(new long[]{2973082293641214L}, bloomFilter.getBits());
+	}
+
+	@Test
+	public void testBloomFilterRejectsValuesWithoutStableHash() {
+		assertFalse(BloomFilter.isSupported(Object.class));
+		assertTrue(BloomFilter.isSupported(int.class));
+		assertTrue(BloomFilter.isSupported(String.class));
+		assertThrows(IllegalArgumentException.class, () -> BloomFilter.create(1, 0.01).add(new Object()));
+	}
+
+	@Test
+	public void testChunkStatsSkipChunks() {
+		AggregationStructure structure = aggregationStructureBuilder()
+			.withKey("date", ofInt())
+			.withKey("site", ofInt())
+			.withMeasure("clicks", sum(ofInt()))
+			.withChunkStats("site")
+			.build();
+
+		AggregationState state = new AggregationState(structure);
+		state.apply(AggregationDiff.of(Set.of(
+			createChunk(1, 10, 20, 10, 15, 20),
+			createChunk(2, 30, 40, 30, 40),
+			AggregationChunk.create(3, List.of("clicks"), PrimaryKey.ofArray(1, 10), PrimaryKey.ofArray(2, 40), 10))));
+
+		assertEquals(Set.of(1L, 3L), selectChunkIds(state, eq("site", 15), 1));
+		assertEquals(Set.of(2L, 3L), selectChunkIds(state, eq("site", 40), 1));
+		assertEquals(Set.of(3L), selectChunkIds(state, eq("site", 25), 2));
+		assertEquals(Set.of(3L), selectChunkIds(state, in("site", 11, 35), 2));
+		assertEquals(Set.of(1L, 2L, 3L), selectChunkIds(state, in("site", 11, 20, 30), 0));
+		assertEquals(Set.of(1L, 3L), selectChunkIds(state, and(eq("date", 1), between("site", 0, 25)), 1));
+		assertEquals(Set.of(1L, 2L, 3L), selectChunkIds(state, eq("date", 1), 0));
+	}
+
+	@Test
+	public void testChunkStatsJsonRoundTrip() throws MalformedDataException {
+		AggregationStructure structure = aggregationStructureBuilder()
+			.withKey("date", ofInt())
+			.withKey("site", ofInt())
+			.withMeasure("clicks", sum(ofInt()))
+			.withChunkStats("site")
+			.build();
+		JsonCodec<AggregationDiff> codec = ofAggregationDiff(structure);
+
+		AggregationChunk chunk = createChunk(1, 10, 20, 10, 15, 20);
+		AggregationDiff diff = AggregationDiff.of(Set.of(chunk, AggregationChunk.create(2, List.of("clicks"), PrimaryKey.ofArray(1, 10), PrimaryKey.ofArray(2, 40), 10)));
+
+		AggregationDiff decoded = fromJson(codec, toJson(codec, diff));
+		assertEquals(diff, decoded);
+		AggregationChunk decodedChunk = decoded.getAddedChunks().stream().filter(c -> c.getChunkId() == 1).findFirst().orElseThrow();
+		assertEquals(chunk.getDimensionStats(), decodedChunk.getDimensionStats());
+	}
+
+	@Test
+	public void testChunkStatsEtcdRoundTrip() throws MalformedEtcdDataException {
+		AggregationStructure structure = aggregationStructureBuilder()
+			.withKey("date", ofInt())
+			.withKey("site", ofInt())
+			.withMeasure("clicks", sum(ofInt()))
+			.withChunkStats("site")
+			.build();
+		AggregationChunkJsonEtcdKVCodec codec = new AggregationChunkJsonEtcdKVCodec(structure);
+		AggregationChunk chunk = createChunk(1, 10, 20, 10, 15, 20);
+		AggregationChunk decodedChunk = codec.decodeKV(codec.encodeKV(chunk));
+		assertEquals(chunk, decodedChunk);
+		assertEquals(chunk.getDimensionStats(), decodedChunk.getDimensionStats());
+
+		AggregationChunkJsonEtcdKVCodec noStatsCodec = new AggregationChunkJsonEtcdKVCodec(ofPrimaryKey(structure));
+		AggregationChunk noStatsChunk = AggregationChunk.create(2, List.of("clicks"), PrimaryKey.ofArray(1, 10), PrimaryKey.ofArray(2, 40), 10);
+		KeyValue kv = noStatsCodec.encodeKV(noStatsChunk);
+		assertFalse(kv.value().toString().contains("stats"));
+		assertEquals(noStatsChunk, noStatsCodec.decodeKV(kv));
+		assertEquals(noStatsChunk, codec.decodeKV(kv));
+	}
+
+	private static Set<Long> selectChunkIds(AggregationState state, AggregationPredicate predicate, int expectedSkipped) {
+		AggregationState.ChunksSelection selection = state.selectChunks(List.of("clicks"), predicate);
+		assertEquals(expectedSkipped, selection.skippedChunks());
+		return selection.chunks().stream().map(AggregationChunk::getChunkId).collect(toSet());
+	}
+
+	private static AggregationChunk createChunk(long id, int minSite, int maxSite, int... sites) {
+		BloomFilter bloomFilter = BloomFilter.create(sites.length, 0.001);
+		for (int site : sites) {
+			bloomFilter.add(site);
+		}
+		return AggregationChunk.create(id, List.of("clicks"), PrimaryKey.ofArray(1, 1), PrimaryKey.ofArray(2, 100), 10,
+			Map.of("site", new DimensionStats(minSite, maxSite, bloomFilter)));
+	}
 }
@@ -0,0 +1,196 @@
+package io.activej.cube;
+
+import io.activej.codegen.DefiningClassLoader;
+import io.activej.csp.process.frame.FrameFormats;
+import io.activej.cube.CubeAggregationAdvisor.Recommendation;
+import io.activej.cube.CubeState.CompatibleAggregations;
+import io.activej.cube.aggregation.AggregationChunkStorage;
+import io.activej.cube.aggregation.IAggregationChunkStorage;
+import io.activej.cube.aggregation.predicate.AggregationPredicate;
+import io.activej.cube.bean.DataItem1;
+import io.activej.cube.exception.QueryException;
+import io.activej.cube.ot.CubeDiff;
+import io.activej.datastream.supplier.StreamSuppliers;
+import io.activej.etl.LogDiff;
+import io.activej.etl.LogState;
+import io.activej.fs.FileSystem;
+import io.activej.ot.StateManager;
+import io.activej.promise.Promise;
+import io.activej.test.rules.ByteBufRule;
+import io.activej.test.rules.ClassBuilderConstantsRule;
+import io.activej.test.rules.EventloopRule;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static io.activej.cube.CubeStructure.AggregationConfig.id;
+import static io.activej.cube.TestUtils.stubChunkIdGenerator;
+import static io.activej.cube.aggregation.fieldtype.FieldTypes.ofInt;
+import static io.activej.cube.aggregation.fieldtype.FieldTypes.ofLong;
+import static io.activej.cube.aggregation.measure.Measures.sum;
+import static io.activej.cube.aggregation.predicate.AggregationPredicates.alwaysTrue;
+import static io.activej.cube.aggregation.predicate.AggregationPredicates.eq;
+import static io.activej.cube.aggregation.util.Utils.materializeProtoDiff;
+import static io.activej.promise.TestUtils.await;
+import static io.activej.promise.TestUtils.awaitException;
+import static io.activej.reactor.Reactor.getCurrentReactor;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.stream.Collectors.toSet;
+import static org.junit.Assert.*;
+
+public final class CubeAggregationAdvisorTest {
+	@ClassRule
+	public static final EventloopRule eventloopRule = new EventloopRule();
+
+	@ClassRule
+	public static final ByteBufRule byteBufRule = new ByteBufRule();
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Rule
+	public final ClassBuilderConstantsRule classBuilderConstantsRule = new ClassBuilderConstantsRule();
+
+	private final DefiningClassLoader classLoader = DefiningClassLoader.create();
+	private final Executor executor = newSingleThreadExecutor();
+
+	private IAggregationChunkStorage chunkStorage;
+	private CubeStructure cubeStructure;
+	private CubeExecutor cubeExecutor;
+	private StateManager<LogDiff<CubeDiff>, LogState<CubeDiff, CubeState>> stateManager;
+	private final List<LogDiff<CubeDiff>> diffs = new ArrayList<>();
+
+	@Before
+	public void setUp() throws Exception {
+		FileSystem fs = FileSystem.create(getCurrentReactor(), executor, temporaryFolder.newFolder().toPath());
+		await(fs.start());
+		chunkStorage = AggregationChunkStorage.create(getCurrentReactor(), stubChunkIdGenerator(), FrameFormats.lz4(), fs);
+		cubeStructure = structureBuilder().build();
+		cubeExecutor = CubeExecutor.create(getCurrentReactor(), cubeStructure, executor, classLoader, chunkStorage);
+		stateManager = TestUtils.stubStateManager(cubeStructure);
+	}
+
+	@Test
+	public void testRecommendAndBackfill() throws QueryException {
+		CubeAggregationAdvisor advisor = CubeAggregationAdvisor.builder(cubeStructure)
+			.withMinQueries(3)
+			.build();
+		CubeReporting cubeReporting = CubeReporting.builder(stateManager, cubeStructure, cubeExecutor)
+			.withAggregationAdvisor(advisor)
+			.build();
+
+		await(consume(new DataItem1(1, 2, 10, 20), new DataItem1(2, 3, 10, 20)));
+		await(consume(new DataItem1(1, 4, 5, 5), new DataItem1(2, 5, 1, 1)));
+
+		QueryResult expected = await(cubeReporting.query(query(alwaysTrue())));
+		await(cubeReporting.query(query(eq("key1", 1))));
+		assertTrue(advisor.getRecommendations().isEmpty());
+
+		await(cubeReporting.query(query(alwaysTrue())));
+		await(cubeReporting.query(CubeQuery.builder()
+			.withAttributes("key1", "key2")
+			.withMeasures("metric3")
+			.withReportType(ReportType.DATA)
+			.build()));
+		assertEquals(4, advisor.getRecordedQueries());
+
+		List<Recommendation> recommendations = advisor.getRecommendations();
+		assertEquals(1, recommendations.size());
+		Recommendation recommendation = recommendations.get(0);
+		assertEquals(List.of("key1"), recommendation.dimensions());
+		assertEquals(List.of("metric1", "metric2", "metric3"), recommendation.measures());
+		assertEquals("detailed", recommendation.sourceAggregationId());
+		assertEquals(3, recommendation.queries());
+		assertEquals(2.0, recommendation.averageChunks(), 1e-9);
+
+		CubeStructure newStructure = structureBuilder()
+			.withAggregation(recommendation.toAggregationConfig("byKey1"))
+			.build();
+		CubeExecutor newExecutor = CubeExecutor.create(getCurrentReactor(), newStructure, executor, classLoader, chunkStorage);
+		StateManager<LogDiff<CubeDiff>, LogState<CubeDiff, CubeState>> newStateManager = TestUtils.stubStateManager(newStructure);
+		await(newStateManager.push(diffs));
+
+		CubeConsolidator consolidator = CubeConsolidator.create(newStateManager, newExecutor);
+		CubeDiff cubeDiff = await(consolidator.backfill("byKey1", "detailed"));
+		assertEquals(1, cubeDiff.get("byKey1").getAddedChunks().size());
+		assertNull(cubeDiff.get("detailed"));
+		awaitException(consolidator.backfill("byKey1", "detailed"));
+
+		List<CompatibleAggregations> compatibleAggregations = newStateManager.query(state ->
+			state.getDataState().findCompatibleAggregations(List.of("key1"), List.of("metric1", "metric2"), alwaysTrue()));
+		assertEquals("byKey1", compatibleAggregations.get(0).id());
+
+		CubeReporting newReporting = CubeReporting.create(newStateManager, newStructure, newExecutor);
+		QueryResult actual = await(newReporting.query(query(alwaysTrue())));
+		assertEquals(expected.getRecords().size(), actual.getRecords().size());
+		for (int i = 0; i < expected.getRecords().size(); i++) {
+			for (String field : List.of("key1", "metric1", "metric2")) {
+				assertEquals((Object) expected.getRecords().get(i).get(field), actual.getRecords().get(i).get(field));
+			}
+		}
+	}
+
+	@Test
+	public void testMaxPatterns() throws QueryException {
+		CubeAggregationAdvisor advisor = CubeAggregationAdvisor.builder(cubeStructure)
+			.withMaxPatterns(1)
+			.build();
+		CubeReporting cubeReporting = CubeReporting.builder(stateManager, cubeStructure, cubeExecutor)
+			.withAggregationAdvisor(advisor)
+			.build();
+
+		await(consume(new DataItem1(1, 2, 10, 20)));
+
+		await(cubeReporting.query(query(alwaysTrue())));
+		await(cubeReporting.query(query(eq("key2", 2))));
+		await(cubeReporting.query(query(alwaysTrue())));
+		assertEquals(1, advisor.getPatterns());
+		assertEquals(2, advisor.getRecordedQueries());
+		assertEquals(1, advisor.getDroppedQueries());
+
+		advisor.resetWorkload();
+		assertEquals(0, advisor.getPatterns());
+		assertEquals(0, advisor.getRecordedQueries());
+	}
+
+	private static CubeStructure.Builder structureBuilder() {
+		return CubeStructure.builder()
+			.withDimension("key1", ofInt())
+			.withDimension("key2", ofInt())
+			.withMeasure("metric1", sum(ofLong()))
+			.withMeasure("metric2", sum(ofLong()))
+			.withMeasure("metric3", sum(ofLong()))
+			.withAggregation(id("detailed")
+				.withDimensions("key1", "key2")
+				.withMeasures("metric1", "metric2", "metric3"));
+	}
+
+	private static CubeQuery query(AggregationPredicate where) {
+		return CubeQuery.builder()
+			.withAttributes("key1")
+			.withMeasures("metric1", "metric2")
+			.withWhere(where)
+			.withOrderingAsc("key1")
+			.withReportType(ReportType.DATA)
+			.build();
+	}
+
+	private Promise<CubeDiff> consume(DataItem1... items) {
+		return StreamSuppliers.ofValues(items)
+			.streamTo(cubeExecutor.consume(DataItem1.class))
+			.then(cubeDiff -> chunkStorage.finish(cubeDiff.addedProtoChunks().collect(toSet()))
+				.map(chunkIds -> materializeProtoDiff(cubeDiff, chunkIds)))
+			.then(cubeDiff -> {
+				LogDiff<CubeDiff> diff = LogDiff.forCurrentPosition(cubeDiff);
+				diffs.add(diff);
+				return stateManager.push(List.of(diff))
+					.map($ -> cubeDiff);
+			});
+	}
+}
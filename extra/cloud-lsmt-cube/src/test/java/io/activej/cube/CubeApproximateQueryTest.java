@@ -0,0 +1,183 @@
+package io.activej.cube;
+
+import io.activej.codegen.DefiningClassLoader;
+import io.activej.common.exception.MalformedDataException;
+import io.activej.csp.process.frame.FrameFormats;
+import io.activej.cube.QueryResult.Sampling;
+import io.activej.cube.aggregation.AggregationChunkStorage;
+import io.activej.cube.aggregation.IAggregationChunkStorage;
+import io.activej.cube.aggregation.annotation.Key;
+import io.activej.cube.aggregation.annotation.Measures;
+import io.activej.cube.exception.QueryException;
+import io.activej.cube.json.JsonCodecs;
+import io.activej.cube.ot.CubeDiff;
+import io.activej.datastream.supplier.StreamSuppliers;
+import io.activej.etl.LogDiff;
+import io.activej.etl.LogState;
+import io.activej.fs.FileSystem;
+import io.activej.json.JsonCodec;
+import io.activej.json.JsonCodecFactory;
+import io.activej.ot.StateManager;
+import io.activej.promise.Promise;
+import io.activej.record.Record;
+import io.activej.test.rules.ByteBufRule;
+import io.activej.test.rules.ClassBuilderConstantsRule;
+import io.activej.test.rules.EventloopRule;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static io.activej.cube.CubeStructure.AggregationConfig.id;
+import static io.activej.cube.TestUtils.stubChunkIdGenerator;
+import static io.activej.cube.aggregation.fieldtype.FieldTypes.ofInt;
+import static io.activej.cube.aggregation.fieldtype.FieldTypes.ofLong;
+import static io.activej.cube.aggregation.measure.Measures.*;
+import static io.activej.cube.aggregation.util.Utils.materializeProtoDiff;
+import static io.activej.json.JsonUtils.fromJson;
+import static io.activej.json.JsonUtils.toJson;
+import static io.activej.promise.TestUtils.await;
+import static io.activej.reactor.Reactor.getCurrentReactor;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.stream.Collectors.toSet;
+import static org.junit.Assert.*;
+
+public final class CubeApproximateQueryTest {
+	@ClassRule
+	public static final EventloopRule eventloopRule = new EventloopRule();
+
+	@ClassRule
+	public static final ByteBufRule byteBufRule = new ByteBufRule();
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Rule
+	public final ClassBuilderConstantsRule classBuilderConstantsRule = new ClassBuilderConstantsRule();
+
+	private static final int CHUNKS = 20;
+	private static final int CHUNK_RECORDS = 500;
+
+	@Measures("events")
+	public record Event(
+		@Key int siteId,
+		@Measures({"revenue", "revenueMedian", "revenueP90"}) long revenue,
+		@Measures("topUsers") int userId
+	) {
+	}
+
+	private final DefiningClassLoader classLoader = DefiningClassLoader.create();
+	private final Executor executor = newSingleThreadExecutor();
+
+	private IAggregationChunkStorage chunkStorage;
+	private CubeStructure cubeStructure;
+	private CubeExecutor cubeExecutor;
+	private StateManager<LogDiff<CubeDiff>, LogState<CubeDiff, CubeState>> stateManager;
+	private CubeReporting cubeReporting;
+
+	@Before
+	public void setUp() throws Exception {
+		FileSystem fs = FileSystem.create(getCurrentReactor(), executor, temporaryFolder.newFolder().toPath());
+		await(fs.start());
+		chunkStorage = AggregationChunkStorage.create(getCurrentReactor(), stubChunkIdGenerator(), FrameFormats.lz4(), fs);
+		cubeStructure = CubeStructure.builder()
+			.withDimension("siteId", ofInt())
+			.withMeasure("events", count(ofLong()))
+			.withMeasure("revenue", sum(ofLong()))
+			.withMeasure("revenueMedian", quantile(0.5))
+			.withMeasure("revenueP90", quantile(0.9))
+			.withMeasure("topUsers", topK(ofInt(), 2))
+			.withAggregation(id("bySite")
+				.withDimensions("siteId")
+				.withMeasures("events", "revenue", "revenueMedian", "revenueP90", "topUsers"))
+			.build();
+		cubeExecutor = CubeExecutor.create(getCurrentReactor(), cubeStructure, executor, classLoader, chunkStorage);
+		stateManager = TestUtils.stubStateManager(cubeStructure);
+		cubeReporting = CubeReporting.create(stateManager, cubeStructure, cubeExecutor);
+
+		int n = 0;
+		for (int chunk = 0; chunk < CHUNKS; chunk++) {
+			List<Event> events = new ArrayList<>();
+			for (int i = 0; i < CHUNK_RECORDS; i++, n++) {
+				int userId = n % 4 == 0 ? 7 : n % 4 == 1 ? 8 : n;
+				events.add(new Event(n % 2, n * 7919L % 1000, userId));
+			}
+			await(consume(events));
+		}
+	}
+
+	@Test
+	public void testSketchMeasures() throws QueryException {
+		QueryResult result = await(cubeReporting.query(CubeQuery.builder()
+			.withAttributes("siteId")
+			.withMeasures("events", "revenueMedian", "revenueP90", "topUsers")
+			.withOrderingAsc("siteId")
+			.build()));
+
+		assertNull(result.getSampling());
+		assertEquals(2, result.getRecords().size());
+		Record site0 = result.getRecords().get(0);
+		assertEquals(CHUNKS * CHUNK_RECORDS / 2, (long) site0.get("events"));
+		assertEquals(500.0, site0.get("revenueMedian"), 30);
+		assertEquals(900.0, site0.get("revenueP90"), 30);
+		assertEquals(List.of(7), ((List<?>) site0.get("topUsers")).subList(0, 1));
+		Record site1 = result.getRecords().get(1);
+		assertEquals(List.of(8), ((List<?>) site1.get("topUsers")).subList(0, 1));
+
+		Record totals = result.getTotals();
+		assertEquals(500.0, totals.get("revenueMedian"), 30);
+		assertEquals(List.of(7, 8), (Object) totals.get("topUsers"));
+	}
+
+	@Test
+	public void testSampling() throws QueryException, MalformedDataException {
+		QueryResult exact = await(cubeReporting.query(samplingQuery(1.0)));
+		QueryResult sampled = await(cubeReporting.query(samplingQuery(0.3)));
+
+		assertNull(exact.getSampling());
+		Sampling sampling = sampled.getSampling();
+		assertNotNull(sampling);
+		assertEquals(CHUNKS, sampling.totalChunks());
+		assertTrue(sampling.sampledChunks() > 0 && sampling.sampledChunks() < CHUNKS);
+		assertEquals((double) sampling.sampledChunks() / CHUNKS, sampling.rate(), 1e-9);
+		assertTrue(sampling.relativeError() > 0 && sampling.relativeError() < 1);
+
+		long exactEvents = exact.getTotals().get("events");
+		long exactRevenue = exact.getTotals().get("revenue");
+		assertEquals(exactEvents, (long) sampled.getTotals().get("events"));
+		assertEquals(exactRevenue, (long) sampled.getTotals().get("revenue"), exactRevenue * 0.1);
+		assertEquals(500.0, sampled.getTotals().get("revenueMedian"), 50);
+
+		QueryResult sampledAgain = await(cubeReporting.query(samplingQuery(0.3)));
+		assertEquals(sampling, sampledAgain.getSampling());
+		assertEquals((long) sampled.getTotals().get("revenue"), (long) sampledAgain.getTotals().get("revenue"));
+
+		JsonCodec<QueryResult> codec = JsonCodecs.createQueryResultCodec(classLoader, JsonCodecFactory.defaultInstance(), cubeStructure);
+		QueryResult decoded = fromJson(codec, toJson(codec, sampled));
+		assertEquals(sampling.sampledChunks(), decoded.getSampling().sampledChunks());
+		assertEquals(sampling.relativeError(), decoded.getSampling().relativeError(), 1e-9);
+		assertEquals((Object) sampled.getTotals().get("topUsers"), decoded.getTotals().get("topUsers"));
+	}
+
+	private static CubeQuery samplingQuery(double samplingRate) {
+		return CubeQuery.builder()
+			.withAttributes("siteId")
+			.withMeasures("events", "revenue", "revenueMedian", "topUsers")
+			.withSamplingRate(samplingRate)
+			.build();
+	}
+
+	private Promise<CubeDiff> consume(List<Event> events) {
+		return StreamSuppliers.ofIterable(events)
+			.streamTo(cubeExecutor.consume(Event.class))
+			.then(cubeDiff -> chunkStorage.finish(cubeDiff.addedProtoChunks().collect(toSet()))
+				.map(chunkIds -> materializeProtoDiff(cubeDiff, chunkIds)))
+			.then(cubeDiff -> stateManager.push(List.of(LogDiff.forCurrentPosition(cubeDiff)))
+				.map($ -> cubeDiff));
+	}
+}
@@ -0,0 +1,104 @@
+package io.activej.cube;
+
+import io.activej.codegen.ClassGenerator;
+import io.activej.codegen.ClassKey;
+import io.activej.codegen.DefiningClassLoader;
+import io.activej.cube.CubeClassLoaderCache.Key;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public final class CubeClassLoaderCacheTest {
+	private final DefiningClassLoader rootClassLoader = DefiningClassLoader.create();
+
+	@Test
+	public void testEvictsLeastRecentlyUsedKeys() {
+		CubeClassLoaderCache cache = CubeClassLoaderCache.create(rootClassLoader, 2);
+
+		DefiningClassLoader a = cache.getOrCreate(key("a"));
+		DefiningClassLoader b = cache.getOrCreate(key("b"));
+		assertSame(a, cache.getOrCreate(key("a")));
+
+		cache.getOrCreate(key("c"));
+		assertEquals(2, cache.getCacheKeys());
+		assertEquals(1, cache.getEvictions());
+		assertSame(a, cache.getOrCreate(key("a")));
+		assertNotSame(b, cache.getOrCreate(key("b")));
+		assertEquals(4, cache.getCacheMisses());
+	}
+
+	@Test
+	public void testEvictsByDefinedClasses() {
+		CubeClassLoaderCache cache = CubeClassLoaderCache.create(rootClassLoader, 10, 3);
+
+		defineClasses(cache.getOrCreate(key("a")), 2);
+		defineClasses(cache.getOrCreate(key("b")), 2);
+		assertEquals(4, cache.getDefinedClassesCount());
+
+		cache.getOrCreate(key("c"));
+		assertEquals(2, cache.getCacheKeys());
+		assertEquals(2, cache.getDefinedClassesCount());
+		assertEquals(1, cache.getEvictions());
+		assertEquals(Set.of(key("b").toString(), key("c").toString()), cache.getCacheContents().keySet());
+	}
+
+	@Test
+	public void testConcurrentRequestsShareGeneration() throws Exception {
+		CubeClassLoaderCache cache = CubeClassLoaderCache.create(rootClassLoader, 10);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger generations = new AtomicInteger();
+		try {
+			CompletableFuture<DefiningClassLoader> first = cache.getOrCreateAsync(key("a"), executor, classLoader -> {
+				generations.incrementAndGet();
+				started.countDown();
+				await(release);
+				defineClasses(classLoader, 1);
+			});
+			started.await();
+			CompletableFuture<DefiningClassLoader> second = cache.getOrCreateAsync(key("a"), executor, $ -> generations.incrementAndGet());
+			assertFalse(second.isDone());
+
+			release.countDown();
+			assertSame(first.get(1, TimeUnit.SECONDS), second.get(1, TimeUnit.SECONDS));
+			assertEquals(1, generations.get());
+			assertEquals(1, cache.getGenerations());
+			assertEquals(1, cache.getDefinedClassesCount());
+			assertTrue(cache.getMaxGenerationMillis() > 0);
+
+			CompletableFuture<DefiningClassLoader> failed = cache.getOrCreateAsync(key("b"), executor, $ -> {
+				throw new IllegalStateException();
+			});
+			ExecutionException e = assertThrows(ExecutionException.class, () -> failed.get(1, TimeUnit.SECONDS));
+			assertTrue(e.getCause() instanceof IllegalStateException);
+			assertEquals(1, cache.getGenerationErrors());
+			assertEquals(1, cache.getCacheKeys());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static Key key(String attribute) {
+		return new Key(Set.of(attribute), Set.of(), Set.of());
+	}
+
+	private static void defineClasses(DefiningClassLoader classLoader, int count) {
+		for (int i = 0; i < count; i++) {
+			classLoader.ensureClass(ClassKey.of(Object.class, List.of(i)), () -> ClassGenerator.builder(Object.class).build());
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			throw new AssertionError(e);
+		}
+	}
+}
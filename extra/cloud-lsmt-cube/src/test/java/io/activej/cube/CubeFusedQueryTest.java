@@ -0,0 +1,157 @@
+package io.activej.cube;
+
+import io.activej.codegen.DefiningClassLoader;
+import io.activej.csp.process.frame.FrameFormats;
+import io.activej.cube.aggregation.AggregationChunkStorage;
+import io.activej.cube.aggregation.IAggregationChunkStorage;
+import io.activej.cube.aggregation.annotation.Key;
+import io.activej.cube.aggregation.annotation.Measures;
+import io.activej.cube.aggregation.predicate.AggregationPredicate;
+import io.activej.cube.exception.QueryException;
+import io.activej.cube.ot.CubeDiff;
+import io.activej.datastream.supplier.StreamSuppliers;
+import io.activej.etl.LogDiff;
+import io.activej.etl.LogState;
+import io.activej.fs.FileSystem;
+import io.activej.ot.StateManager;
+import io.activej.promise.Promise;
+import io.activej.record.Record;
+import io.activej.test.rules.ByteBufRule;
+import io.activej.test.rules.ClassBuilderConstantsRule;
+import io.activej.test.rules.EventloopRule;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static io.activej.cube.CubeStructure.AggregationConfig.id;
+import static io.activej.cube.TestUtils.stubChunkIdGenerator;
+import static io.activej.cube.aggregation.fieldtype.FieldTypes.*;
+import static io.activej.cube.aggregation.measure.Measures.*;
+import static io.activej.cube.aggregation.predicate.AggregationPredicates.*;
+import static io.activej.cube.aggregation.util.Utils.materializeProtoDiff;
+import static io.activej.promise.TestUtils.await;
+import static io.activej.reactor.Reactor.getCurrentReactor;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.stream.Collectors.toSet;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public final class CubeFusedQueryTest {
+	@ClassRule
+	public static final EventloopRule eventloopRule = new EventloopRule();
+
+	@ClassRule
+	public static final ByteBufRule byteBufRule = new ByteBufRule();
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Rule
+	public final ClassBuilderConstantsRule classBuilderConstantsRule = new ClassBuilderConstantsRule();
+
+	@Measures("events")
+	public record Event(
+		@Key int date,
+		@Key String advertiser,
+		@Key int campaign,
+		@Measures({"impressions", "maxImpressions"}) long impressions
+	) {
+	}
+
+	private final DefiningClassLoader classLoader = DefiningClassLoader.create();
+	private final Executor executor = newSingleThreadExecutor();
+
+	private IAggregationChunkStorage chunkStorage;
+	private CubeStructure cubeStructure;
+	private CubeExecutor cubeExecutor;
+	private StateManager<LogDiff<CubeDiff>, LogState<CubeDiff, CubeState>> stateManager;
+
+	@Before
+	public void setUp() throws Exception {
+		FileSystem fs = FileSystem.create(getCurrentReactor(), executor, temporaryFolder.newFolder().toPath());
+		await(fs.start());
+		chunkStorage = AggregationChunkStorage.create(getCurrentReactor(), stubChunkIdGenerator(), FrameFormats.lz4(), fs);
+		cubeStructure = CubeStructure.builder()
+			.withDimension("date", ofInt())
+			.withDimension("advertiser", ofString())
+			.withDimension("campaign", ofInt())
+			.withMeasure("events", count(ofLong()))
+			.withMeasure("impressions", sum(ofLong()))
+			.withMeasure("maxImpressions", max(ofLong()))
+			.withAggregation(id("detailed")
+				.withDimensions("date", "advertiser", "campaign")
+				.withMeasures("events", "impressions", "maxImpressions"))
+			.build();
+		cubeExecutor = CubeExecutor.create(getCurrentReactor(), cubeStructure, executor, classLoader, chunkStorage);
+		stateManager = TestUtils.stubStateManager(cubeStructure);
+
+		int n = 0;
+		for (int chunk = 0; chunk < 4; chunk++) {
+			List<Event> events = new ArrayList<>();
+			for (int i = 0; i < 200; i++, n++) {
+				events.add(new Event(n % 5, "advertiser" + n % 3, n % 7, n * 31L % 100));
+			}
+			await(consume(events));
+		}
+	}
+
+	@Test
+	public void testFusedQueriesMatchChainedQueries() throws QueryException {
+		CubeExecutor chainedExecutor = CubeExecutor.builder(getCurrentReactor(), cubeStructure, executor, classLoader, chunkStorage)
+			.withFusedQueries(false)
+			.build();
+		CubeReporting fused = CubeReporting.create(stateManager, cubeStructure, cubeExecutor);
+		CubeReporting chained = CubeReporting.create(stateManager, cubeStructure, chainedExecutor);
+
+		List<List<String>> attributes = List.of(
+			List.of(),
+			List.of("date"),
+			List.of("date", "advertiser"),
+			List.of("advertiser"),
+			List.of("date", "advertiser", "campaign"));
+		List<AggregationPredicate> predicates = List.of(
+			alwaysTrue(),
+			eq("campaign", 3),
+			and(ge("date", 1), notEq("advertiser", "advertiser1")));
+
+		for (List<String> queryAttributes : attributes) {
+			for (AggregationPredicate predicate : predicates) {
+				CubeQuery query = CubeQuery.builder()
+					.withAttributes(queryAttributes)
+					.withMeasures("events", "impressions", "maxImpressions")
+					.withWhere(predicate)
+					.withOrderings(queryAttributes.stream().map(CubeQuery.Ordering::asc).toList())
+					.withReportType(ReportType.DATA_WITH_TOTALS)
+					.build();
+
+				QueryResult expected = await(chained.query(query));
+				QueryResult actual = await(fused.query(query));
+				assertTrue(expected.getRecords().size() > 0);
+				assertRecordsEqual(expected.getRecords(), actual.getRecords());
+				assertRecordsEqual(List.of(expected.getTotals()), List.of(actual.getTotals()));
+			}
+		}
+	}
+
+	private static void assertRecordsEqual(List<Record> expected, List<Record> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).toMap(), actual.get(i).toMap());
+		}
+	}
+
+	private Promise<CubeDiff> consume(List<Event> events) {
+		return StreamSuppliers.ofIterable(events)
+			.streamTo(cubeExecutor.consume(Event.class))
+			.then(cubeDiff -> chunkStorage.finish(cubeDiff.addedProtoChunks().collect(toSet()))
+				.map(chunkIds -> materializeProtoDiff(cubeDiff, chunkIds)))
+			.then(cubeDiff -> stateManager.push(List.of(LogDiff.forCurrentPosition(cubeDiff)))
+				.map($ -> cubeDiff));
+	}
+}
@@ -0,0 +1,210 @@
+package io.activej.cube;
+
+import io.activej.codegen.DefiningClassLoader;
+import io.activej.csp.process.frame.FrameFormats;
+import io.activej.cube.aggregation.AggregationChunkStorage;
+import io.activej.cube.aggregation.IAggregationChunkStorage;
+import io.activej.cube.aggregation.predicate.AggregationPredicate;
+import io.activej.cube.bean.DataItem1;
+import io.activej.cube.exception.QueryException;
+import io.activej.cube.ot.CubeDiff;
+import io.activej.datastream.supplier.StreamSuppliers;
+import io.activej.etl.LogDiff;
+import io.activej.etl.LogState;
+import io.activej.fs.FileSystem;
+import io.activej.ot.StateManager;
+import io.activej.promise.Promise;
+import io.activej.test.rules.ByteBufRule;
+import io.activej.test.rules.ClassBuilderConstantsRule;
+import io.activej.test.rules.EventloopRule;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static io.activej.cube.CubeStructure.AggregationConfig.id;
+import static io.activej.cube.TestUtils.stubChunkIdGenerator;
+import static io.activej.cube.aggregation.fieldtype.FieldTypes.ofInt;
+import static io.activej.cube.aggregation.fieldtype.FieldTypes.ofLong;
+import static io.activej.cube.aggregation.measure.Measures.sum;
+import static io.activej.cube.aggregation.predicate.AggregationPredicates.*;
+import static io.activej.cube.aggregation.util.Utils.materializeProtoDiff;
+import static io.activej.promise.TestUtils.await;
+import static io.activej.reactor.Reactor.getCurrentReactor;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.stream.Collectors.toSet;
+import static org.junit.Assert.*;
+
+public final class CubeQueryCacheTest {
+	@ClassRule
+	public static final EventloopRule eventloopRule = new EventloopRule();
+
+	@ClassRule
+	public static final ByteBufRule byteBufRule = new ByteBufRule();
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Rule
+	public final ClassBuilderConstantsRule classBuilderConstantsRule = new ClassBuilderConstantsRule();
+
+	private final DefiningClassLoader classLoader = DefiningClassLoader.create();
+	private final Executor executor = newSingleThreadExecutor();
+
+	private IAggregationChunkStorage chunkStorage;
+	private CubeExecutor cubeExecutor;
+	private StateManager<LogDiff<CubeDiff>, LogState<CubeDiff, CubeState>> stateManager;
+	private CubeStructure cubeStructure;
+
+	@Before
+	public void setUp() throws Exception {
+		FileSystem fs = FileSystem.create(getCurrentReactor(), executor, temporaryFolder.newFolder().toPath());
+		await(fs.start());
+		chunkStorage = AggregationChunkStorage.create(getCurrentReactor(), stubChunkIdGenerator(), FrameFormats.lz4(), fs);
+		cubeStructure = CubeStructure.builder()
+			.withDimension("key1", ofInt())
+			.withDimension("key2", ofInt())
+			.withMeasure("metric1", sum(ofLong()))
+			.withMeasure("metric2", sum(ofLong()))
+			.withMeasure("metric3", sum(ofLong()))
+			.withAggregation(id("byKey1")
+				.withDimensions("key1")
+				.withMeasures("metric1", "metric2", "metric3"))
+			.withAggregation(id("detailed")
+				.withDimensions("key1", "key2")
+				.withMeasures("metric1", "metric2", "metric3"))
+			.build();
+		cubeExecutor = CubeExecutor.create(getCurrentReactor(), cubeStructure, executor, classLoader, chunkStorage);
+		stateManager = TestUtils.stubStateManager(cubeStructure);
+	}
+
+	@Test
+	public void testCachedResults() throws QueryException {
+		CubeQueryCache cache = CubeQueryCache.create();
+		CubeReporting cubeReporting = CubeReporting.builder(stateManager, cubeStructure, cubeExecutor)
+			.withQueryCache(cache)
+			.build();
+
+		await(consume(new DataItem1(1, 2, 10, 20), new DataItem1(2, 3, 10, 20)));
+
+		CubeQuery query = query(alwaysTrue());
+		QueryResult result1 = await(cubeReporting.query(query));
+		QueryResult result2 = await(cubeReporting.query(query(alwaysTrue())));
+		assertSame(result1, result2);
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		QueryResult filtered = await(cubeReporting.query(query(eq("key1", 1))));
+		assertNotSame(result1, filtered);
+		assertEquals(1, filtered.getRecords().size());
+		assertEquals(2, cache.getMisses());
+
+		await(consume(new DataItem1(1, 4, 5, 5)));
+
+		QueryResult result3 = await(cubeReporting.query(query));
+		assertNotSame(result1, result3);
+		assertEquals(15L, (long) result3.getRecords().get(0).get("metric1"));
+		assertEquals(1, cache.getInvalidations());
+		assertEquals(3, cache.getMisses());
+	}
+
+	@Test
+	public void testInvalidate() throws QueryException {
+		CubeQueryCache cache = CubeQueryCache.create();
+		CubeReporting cubeReporting = CubeReporting.builder(stateManager, cubeStructure, cubeExecutor)
+			.withQueryCache(cache)
+			.build();
+
+		await(consume(new DataItem1(1, 2, 10, 20)));
+		await(cubeReporting.query(query(alwaysTrue())));
+		assertEquals(1, cache.getCachedResults());
+
+		CubeDiff diff = await(consume(new DataItem1(1, 3, 10, 20)));
+		cache.invalidate(diff);
+		assertEquals(0, cache.getCachedResults());
+		assertEquals(0, cache.getCachedRecords());
+		assertEquals(1, cache.getInvalidations());
+	}
+
+	@Test
+	public void testInvalidateByPredicate() throws QueryException {
+		CubeQueryCache cache = CubeQueryCache.create();
+		CubeReporting cubeReporting = CubeReporting.builder(stateManager, cubeStructure, cubeExecutor)
+			.withQueryCache(cache)
+			.build();
+
+		await(consume(new DataItem1(1, 2, 10, 20), new DataItem1(2, 3, 10, 20)));
+		await(cubeReporting.query(query(eq("key1", 1))));
+		assertEquals(1, cache.getCachedResults());
+
+		cache.invalidate(await(consume(new DataItem1(2, 4, 10, 20), new DataItem1(3, 5, 10, 20))));
+		assertEquals(1, cache.getCachedResults());
+		assertEquals(0, cache.getInvalidations());
+
+		cache.invalidate(await(consume(new DataItem1(1, 4, 10, 20))));
+		assertEquals(0, cache.getCachedResults());
+		assertEquals(1, cache.getInvalidations());
+	}
+
+	@Test
+	public void testEviction() throws QueryException {
+		CubeQueryCache cache = CubeQueryCache.create(4);
+		CubeReporting cubeReporting = CubeReporting.builder(stateManager, cubeStructure, cubeExecutor)
+			.withQueryCache(cache)
+			.build();
+
+		await(consume(new DataItem1(1, 2, 10, 20), new DataItem1(2, 3, 10, 20)));
+
+		QueryResult result1 = await(cubeReporting.query(query(alwaysTrue())));
+		QueryResult result2 = await(cubeReporting.query(query(eq("key1", 1))));
+		assertEquals(1, cache.getEvictions());
+		assertEquals(1, cache.getCachedResults());
+
+		assertSame(result2, await(cubeReporting.query(query(eq("key1", 1)))));
+		assertNotSame(result1, await(cubeReporting.query(query(alwaysTrue()))));
+	}
+
+	@Test
+	public void testNotCacheableQuery() throws QueryException {
+		CubeQueryCache cache = CubeQueryCache.create();
+		CubeReporting cubeReporting = CubeReporting.builder(stateManager, cubeStructure, cubeExecutor)
+			.withQueryCache(cache)
+			.build();
+
+		await(consume(new DataItem1(1, 2, 10, 20)));
+
+		CubeQuery query = CubeQuery.builder()
+			.withAttributes("key1")
+			.withMeasures("metric1")
+			.withCacheable(false)
+			.build();
+		QueryResult result1 = await(cubeReporting.query(query));
+		QueryResult result2 = await(cubeReporting.query(query));
+		assertNotSame(result1, result2);
+		assertEquals(0, cache.getHits());
+		assertEquals(0, cache.getMisses());
+		assertEquals(0, cache.getCachedResults());
+	}
+
+	private static CubeQuery query(AggregationPredicate where) {
+		return CubeQuery.builder()
+			.withAttributes("key1")
+			.withMeasures("metric1", "metric2")
+			.withWhere(where)
+			.withReportType(ReportType.DATA)
+			.build();
+	}
+
+	private Promise<CubeDiff> consume(DataItem1... items) {
+		return StreamSuppliers.ofValues(items)
+			.streamTo(cubeExecutor.consume(DataItem1.class))
+			.then(cubeDiff -> chunkStorage.finish(cubeDiff.addedProtoChunks().collect(toSet()))
+				.map(chunkIds -> materializeProtoDiff(cubeDiff, chunkIds)))
+			.then(cubeDiff -> stateManager.push(List.of(LogDiff.forCurrentPosition(cubeDiff)))
+				.map($ -> cubeDiff));
+	}
+}
@@ -12,6 +12,7 @@ import io.activej.cube.ot.CubeDiff;
 import io.activej.datastream.supplier.StreamSuppliers;
 import io.activej.etl.LogDiff;
 import io.activej.etl.LogState;
+import io.activej.eventloop.Eventloop;
 import io.activej.fs.FileSystem;
 import io.activej.fs.tcp.FileSystemServer;
 import io.activej.fs.tcp.RemoteFileSystem;
@@ -31,11 +32,15 @@ import org.junit.rules.TemporaryFolder;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 import java.util.concurrent.Executor;
 import java.util.stream.Stream;
 
 import static io.activej.common.collection.CollectorUtils.toLinkedHashMap;
+import static io.activej.common.exception.FatalErrorHandlers.rethrow;
 import static io.activej.cube.CubeConsolidator.ConsolidationStrategy.hotSegment;
 import static io.activej.cube.CubeStructure.AggregationConfig.id;
 import static io.activej.cube.TestUtils.stubChunkIdGenerator;
@@ -206,6 +211,73 @@ public final class CubeTest {
 		assertEquals(expected, list);
 	}
 
+	@Test
+	public void testParallelQuery() throws Exception {
+		Path storageDir = temporaryFolder.newFolder().toPath();
+		FileSystem fs = FileSystem.create(getCurrentReactor(), executor, storageDir);
+		await(fs.start());
+		IAggregationChunkStorage chunkStorage = AggregationChunkStorage.create(getCurrentReactor(), stubChunkIdGenerator(), FRAME_FORMAT, fs);
+
+		List<Eventloop> workers = new ArrayList<>();
+		List<AggregationChunkStorage> workerStorages = new ArrayList<>();
+		try {
+			for (int i = 0; i < 3; i++) {
+				Eventloop worker = Eventloop.builder()
+					.withFatalErrorHandler(rethrow())
+					.build();
+				worker.keepAlive(true);
+				new Thread(worker, "query-worker-" + i).start();
+				workers.add(worker);
+				workerStorages.add(worker.submit(() -> {
+					FileSystem workerFs = FileSystem.create(worker, executor, storageDir);
+					return workerFs.start()
+						.map($ -> AggregationChunkStorage.create(worker, stubChunkIdGenerator(), FRAME_FORMAT, workerFs));
+				}).get());
+			}
+
+			CubeStructure cubeStructure = cubeReporting.getStructure();
+			StateManager<LogDiff<CubeDiff>, LogState<CubeDiff, CubeState>> stateManager = TestUtils.stubStateManager(cubeStructure);
+			CubeReporting sequentialReporting = CubeReporting.create(stateManager, cubeStructure,
+				CubeExecutor.create(getCurrentReactor(), cubeStructure, executor, classLoader, chunkStorage));
+			CubeReporting parallelReporting = CubeReporting.create(stateManager, cubeStructure,
+				CubeExecutor.builder(getCurrentReactor(), cubeStructure, executor, classLoader, chunkStorage)
+					.withParallelQueries(workerStorages)
+					.withParallelQueryMinChunks(1)
+					.build());
+
+			Random random = new Random(0);
+			List<Promise<Void>> consumes = new ArrayList<>();
+			for (int i = 0; i < 40; i++) {
+				if (i % 2 == 0) {
+					DataItem1[] items = Stream.generate(() -> new DataItem1(random.nextInt(3), random.nextInt(10), random.nextInt(100), random.nextInt(100)))
+						.limit(5).toArray(DataItem1[]::new);
+					consumes.add(consume(sequentialReporting, chunkStorage, items[0], Arrays.copyOfRange(items, 1, items.length)));
+				} else {
+					DataItem2[] items = Stream.generate(() -> new DataItem2(random.nextInt(3), random.nextInt(10), random.nextInt(100), random.nextInt(100)))
+						.limit(5).toArray(DataItem2[]::new);
+					consumes.add(consume(sequentialReporting, chunkStorage, items[0], Arrays.copyOfRange(items, 1, items.length)));
+				}
+			}
+			await(Promises.all(consumes));
+
+			for (List<String> keys : List.of(List.of("key1", "key2"), List.of("key2", "key1"))) {
+				for (AggregationPredicate predicate : List.of(alwaysTrue(), eq("key1", 1), le("key2", 4))) {
+					List<DataItemResult> expected = await(sequentialReporting.queryRawStream(
+						keys, List.of("metric1", "metric2", "metric3"), predicate, DataItemResult.class, classLoader).toList());
+					List<DataItemResult> actual = await(parallelReporting.queryRawStream(
+						keys, List.of("metric1", "metric2", "metric3"), predicate, DataItemResult.class, classLoader).toList());
+
+					assertFalse(expected.isEmpty());
+					assertEquals(expected, actual);
+				}
+			}
+		} finally {
+			for (Eventloop worker : workers) {
+				worker.execute(() -> worker.keepAlive(false));
+			}
+		}
+	}
+
 	@Test
 	public void testMultipleOrdering() {
 		List<DataItemResult> expected = List.of(
@@ -118,6 +118,12 @@ public final class TestUtils {
 			return this;
 		}
 
+		public AggregationStructureBuilder withChunkStats(String... dimensions) {
+			checkNotBuilt(this);
+			structure.addChunkStatsDimensions(List.of(dimensions));
+			return this;
+		}
+
 		@Override
 		protected AggregationStructure doBuild() {
 			return structure;
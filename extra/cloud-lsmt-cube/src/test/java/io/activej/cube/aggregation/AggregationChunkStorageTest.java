@@ -3,6 +3,7 @@ package io.activej.cube.aggregation;
 import io.activej.codegen.DefiningClassLoader;
 import io.activej.csp.process.frame.FrameFormats;
 import io.activej.cube.AggregationStructure;
+import io.activej.cube.aggregation.util.HyperLogLog;
 import io.activej.datastream.supplier.StreamSupplier;
 import io.activej.datastream.supplier.StreamSuppliers;
 import io.activej.fs.FileSystem;
@@ -16,9 +17,12 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
+import java.lang.reflect.Field;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
@@ -28,15 +32,17 @@ import java.util.stream.Stream;
 
 import static io.activej.cube.TestUtils.aggregationStructureBuilder;
 import static io.activej.cube.TestUtils.stubChunkIdGenerator;
-import static io.activej.cube.aggregation.fieldtype.FieldTypes.ofInt;
-import static io.activej.cube.aggregation.fieldtype.FieldTypes.ofLong;
+import static io.activej.cube.aggregation.fieldtype.FieldTypes.*;
+import static io.activej.cube.aggregation.measure.Measures.hyperLogLog;
 import static io.activej.cube.aggregation.measure.Measures.sum;
+import static io.activej.cube.aggregation.util.Utils.createRecordClass;
 import static io.activej.cube.aggregation.util.Utils.singlePartition;
 import static io.activej.promise.TestUtils.await;
+import static io.activej.promise.TestUtils.awaitException;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 public class AggregationChunkStorageTest {
 	@ClassRule
@@ -99,4 +105,135 @@ public class AggregationChunkStorageTest {
 
 		assertEquals(expected, actual);
 	}
+
+	@Test
+	public void testColumnarChunks() throws Exception {
+		AggregationStructure structure = aggregationStructureBuilder()
+			.withKey("date", ofInt())
+			.withKey("site", ofString())
+			.withKey("flag", ofBoolean())
+			.withKey("grade", ofChar())
+			.withMeasure("clicks", sum(ofLong()))
+			.withMeasure("views", sum(ofShort()))
+			.withMeasure("revenue", sum(ofDouble()))
+			.withMeasure("ctr", sum(ofFloat()))
+			.withMeasure("uniques", hyperLogLog(64))
+			.build();
+		List<String> measures = List.of("clicks", "views", "revenue", "ctr", "uniques");
+		Class<Object> recordClass = createRecordClass(structure, structure.getKeys(), measures, classLoader);
+
+		Reactor reactor = Reactor.getCurrentReactor();
+		Path storageDir = temporaryFolder.newFolder().toPath();
+		FileSystem fs = FileSystem.create(reactor, newCachedThreadPool(), storageDir);
+		await(fs.start());
+		ChunkIdGenerator chunkIdGenerator = stubChunkIdGenerator();
+		AggregationChunkStorage rowStorage = AggregationChunkStorage.create(reactor, chunkIdGenerator, FrameFormats.lz4(), fs);
+		AggregationChunkStorage columnarStorage = AggregationChunkStorage.builder(reactor, chunkIdGenerator, FrameFormats.lz4(), fs)
+			.withChunkFormat(ChunkFormat.COLUMNAR)
+			.withColumnarBlockRows(1000)
+			.build();
+
+		Random random = new Random(0);
+		List<Object> records = new ArrayList<>();
+		for (int i = 0; i < 10_500; i++) {
+			Object record = recordClass.getConstructor().newInstance();
+			recordClass.getField("date").setInt(record, 20_000 + i / 1000);
+			recordClass.getField("site").set(record, "site" + random.nextInt(10));
+			recordClass.getField("flag").setBoolean(record, random.nextBoolean());
+			recordClass.getField("grade").setChar(record, (char) ('A' + random.nextInt(5)));
+			recordClass.getField("clicks").setLong(record, random.nextInt(5) == 0 ? random.nextLong() : 1);
+			recordClass.getField("views").setShort(record, (short) (random.nextInt(1000) - 500));
+			recordClass.getField("revenue").setDouble(record, i % 100 < 50 ? 0.0 : random.nextDouble());
+			recordClass.getField("ctr").setFloat(record, random.nextFloat());
+			HyperLogLog uniques = new HyperLogLog(64);
+			uniques.addLong(random.nextLong());
+			recordClass.getField("uniques").set(record, uniques);
+			records.add(record);
+		}
+
+		String rowProtoChunkId = await(rowStorage.createProtoChunkId());
+		await(StreamSuppliers.ofIterable(records).streamTo(
+			rowStorage.write(structure, measures, recordClass, rowProtoChunkId, classLoader)));
+		long rowChunkId = await(rowStorage.finish(Set.of(rowProtoChunkId))).get(rowProtoChunkId);
+
+		String columnarProtoChunkId = await(columnarStorage.createProtoChunkId());
+		await(StreamSuppliers.ofIterable(records).streamTo(
+			columnarStorage.write(structure, measures, recordClass, columnarProtoChunkId, classLoader)));
+		long columnarChunkId = await(columnarStorage.finish(Set.of(columnarProtoChunkId))).get(columnarProtoChunkId);
+
+		assertRecordsEqual(records, await(columnarStorage.read(structure, measures, recordClass, columnarChunkId, classLoader)
+			.then(supplier -> supplier.toList())), structure.getKeys(), measures);
+		assertRecordsEqual(records, await(columnarStorage.read(structure, measures, recordClass, rowChunkId, classLoader)
+			.then(supplier -> supplier.toList())), structure.getKeys(), measures);
+		assertRecordsEqual(records, await(rowStorage.read(structure, measures, recordClass, columnarChunkId, classLoader)
+			.then(supplier -> supplier.toList())), structure.getKeys(), measures);
+
+		List<Object> partial = await(columnarStorage.read(structure, measures, List.of("revenue"), recordClass, columnarChunkId, classLoader)
+			.then(supplier -> supplier.toList()));
+		assertRecordsEqual(records, partial, structure.getKeys(), List.of("revenue"));
+		for (Object record : partial) {
+			assertEquals(0, recordClass.getField("clicks").getLong(record));
+			assertNull(recordClass.getField("uniques").get(record));
+		}
+
+		long rowSize = Files.size(storageDir.resolve(rowChunkId + AggregationChunkStorage.LOG));
+		long columnarSize = Files.size(storageDir.resolve(columnarChunkId + AggregationChunkStorage.LOG));
+		assertTrue("Columnar chunk of " + columnarSize + " bytes is larger than row chunk of " + rowSize + " bytes",
+			columnarSize < rowSize);
+	}
+
+	@Test
+	public void testTruncatedColumnarChunk() throws Exception {
+		Class<Object> recordClass = createRecordClass(structure, structure.getKeys(), structure.getMeasures(), classLoader);
+		Reactor reactor = Reactor.getCurrentReactor();
+		Path storageDir = temporaryFolder.newFolder().toPath();
+		FileSystem fs = FileSystem.create(reactor, newCachedThreadPool(), storageDir);
+		await(fs.start());
+		AggregationChunkStorage storage = AggregationChunkStorage.builder(reactor, stubChunkIdGenerator(), FrameFormats.lz4(), fs)
+			.withChunkFormat(ChunkFormat.COLUMNAR)
+			.build();
+
+		List<Object> records = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			Object record = recordClass.getConstructor().newInstance();
+			recordClass.getField("key").setInt(record, i);
+			records.add(record);
+		}
+		String protoChunkId = await(storage.createProtoChunkId());
+		await(StreamSuppliers.ofIterable(records).streamTo(
+			storage.write(structure, structure.getMeasures(), recordClass, protoChunkId, classLoader)));
+		long chunkId = await(storage.finish(Set.of(protoChunkId))).get(protoChunkId);
+
+		Path path = storageDir.resolve(chunkId + AggregationChunkStorage.LOG);
+		byte[] bytes = Files.readAllBytes(path);
+		Files.write(path, Arrays.copyOf(bytes, bytes.length - 4));
+
+		Exception e = awaitException(storage.read(structure, structure.getMeasures(), recordClass, chunkId, classLoader)
+			.then(supplier -> supplier.toList()));
+		assertTrue(e instanceof AggregationException);
+	}
+
+	private static void assertRecordsEqual(List<Object> expected, List<Object> actual, List<String> keys, List<String> fields)
+		throws IllegalAccessException {
+		assertEquals(expected.size(), actual.size());
+		List<String> columns = new ArrayList<>(keys);
+		columns.addAll(fields);
+		for (int i = 0; i < expected.size(); i++) {
+			for (String column : columns) {
+				Field field;
+				try {
+					field = expected.get(i).getClass().getField(column);
+				} catch (NoSuchFieldException e) {
+					throw new AssertionError(e);
+				}
+				Object expectedValue = field.get(expected.get(i));
+				Object actualValue = field.get(actual.get(i));
+				if (expectedValue instanceof HyperLogLog hll) {
+					assertArrayEquals(hll.getRegisters(), ((HyperLogLog) actualValue).getRegisters());
+				} else {
+					assertEquals(column + " of record #" + i, expectedValue, actualValue);
+				}
+			}
+		}
+	}
 }
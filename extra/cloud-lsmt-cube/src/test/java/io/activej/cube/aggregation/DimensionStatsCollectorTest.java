@@ -0,0 +1,73 @@
+package io.activej.cube.aggregation;
+
+import io.activej.codegen.DefiningClassLoader;
+import io.activej.cube.aggregation.util.BloomFilter;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class DimensionStatsCollectorTest {
+	private final DefiningClassLoader classLoader = DefiningClassLoader.create();
+
+	@Test
+	public void testCollectStats() {
+		DimensionStatsCollector<Item> collector = new DimensionStatsCollector<>(Item.class,
+			List.of("id", "price", "ratio", "grade", "active", "site", "tag"), classLoader);
+		collector.accept(new Item(3, 2.5, -1.5f, 'b', true, "b.com", "x"));
+		collector.accept(new Item(-7, 0.5, 4.0f, 'a', true, "a.com", null));
+		collector.accept(new Item(10, 2.5, 0.0f, 'c', true, "b.com", "y"));
+
+		Map<String, DimensionStats> stats = collector.getResult();
+		assertEquals(List.of("id", "price", "ratio", "grade", "active", "site"), List.copyOf(stats.keySet()));
+
+		assertStats(stats.get("id"), -7, 10, List.of(3, -7, 10));
+		assertStats(stats.get("price"), 0.5, 2.5, List.of(0.5, 2.5));
+		assertStats(stats.get("ratio"), -1.5f, 4.0f, List.of(-1.5f, 4.0f, 0.0f));
+		assertStats(stats.get("grade"), 'a', 'c', List.of('a', 'b', 'c'));
+		assertStats(stats.get("site"), "a.com", "b.com", List.of("a.com", "b.com"));
+
+		DimensionStats active = stats.get("active");
+		assertEquals(true, active.min());
+		assertEquals(true, active.max());
+		assertNull(active.bloomFilter());
+	}
+
+	@Test
+	public void testNoRecords() {
+		DimensionStatsCollector<Item> collector = new DimensionStatsCollector<>(Item.class, List.of("id", "site"), classLoader);
+		assertTrue(collector.getResult().isEmpty());
+	}
+
+	private static void assertStats(DimensionStats stats, Object min, Object max, List<?> values) {
+		assertEquals(min, stats.min());
+		assertEquals(max, stats.max());
+		BloomFilter bloomFilter = stats.bloomFilter();
+		assertNotNull(bloomFilter);
+		BloomFilter expected = BloomFilter.create(values.size(), DimensionStatsCollector.BLOOM_FILTER_FALSE_POSITIVE_PROBABILITY);
+		values.forEach(expected::add);
+		assertEquals(expected, bloomFilter);
+	}
+
+	public static final class Item {
+		public int id;
+		public double price;
+		public float ratio;
+		public char grade;
+		public boolean active;
+		public String site;
+		public String tag;
+
+		public Item(int id, double price, float ratio, char grade, boolean active, String site, String tag) {
+			this.id = id;
+			this.price = price;
+			this.ratio = ratio;
+			this.grade = grade;
+			this.active = active;
+			this.site = site;
+			this.tag = tag;
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package io.activej.cube.aggregation.fieldtype;
+
+import io.activej.cube.aggregation.util.QuantileSketch;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class QuantileSketchTest {
+	@Test
+	public void testEmpty() {
+		QuantileSketch sketch = new QuantileSketch(100);
+		assertEquals(0, sketch.getCount());
+		assertTrue(Double.isNaN(sketch.quantile(0.5)));
+	}
+
+	@Test
+	public void testSmall() {
+		QuantileSketch sketch = new QuantileSketch(100);
+		for (int i = 1; i <= 5; i++) {
+			sketch.add(i);
+		}
+		assertEquals(5, sketch.getCount());
+		assertEquals(1.0, sketch.quantile(0), 0);
+		assertEquals(3.0, sketch.quantile(0.5), 0);
+		assertEquals(5.0, sketch.quantile(1), 0);
+	}
+
+	@Test
+	public void testAccuracy() {
+		int n = 1_000_000;
+		int k = 200;
+		QuantileSketch sketch = new QuantileSketch(k);
+		Random random = new Random(0);
+		for (int i = 0; i < n; i++) {
+			sketch.add(random.nextInt(n));
+		}
+		assertEquals(n, sketch.getCount());
+		assertTrue(sketch.getItems().length < 4 * k);
+		for (double fraction : new double[]{0.01, 0.1, 0.5, 0.9, 0.99}) {
+			assertEquals(fraction * n, sketch.quantile(fraction), 0.02 * n);
+		}
+	}
+
+	@Test
+	public void testUnion() {
+		int n = 100_000;
+		QuantileSketch total = new QuantileSketch(200);
+		for (int part = 0; part < 10; part++) {
+			QuantileSketch sketch = new QuantileSketch(200);
+			for (int i = part; i < n; i += 10) {
+				sketch.add(i);
+			}
+			total.union(sketch);
+		}
+		assertEquals(n, total.getCount());
+		assertEquals(n / 2.0, total.quantile(0.5), 0.02 * n);
+		assertEquals(n * 0.9, total.quantile(0.9), 0.02 * n);
+	}
+
+	@Test
+	public void testRestore() {
+		QuantileSketch sketch = new QuantileSketch(50);
+		for (int i = 0; i < 10_000; i++) {
+			sketch.add(i);
+		}
+		QuantileSketch restored = new QuantileSketch(sketch.getK(), sketch.getLevelSizes(), sketch.getItems());
+		assertEquals(sketch.getCount(), restored.getCount());
+		assertArrayEquals(sketch.getItems(), restored.getItems(), 0);
+		assertEquals(sketch.quantile(0.5), restored.quantile(0.5), 0);
+	}
+}
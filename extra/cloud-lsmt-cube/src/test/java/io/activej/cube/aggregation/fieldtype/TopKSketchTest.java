@@ -0,0 +1,41 @@
+package io.activej.cube.aggregation.fieldtype;
+
+import io.activej.cube.aggregation.util.TopKSketch;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TopKSketchTest {
+	@Test
+	public void testTop() {
+		TopKSketch sketch = new TopKSketch(3, 256);
+		for (int i = 0; i < 10_000; i++) {
+			sketch.add(i % 10 < 5 ? "a" : i % 10 < 8 ? "b" : i % 10 < 9 ? "c" : "item" + i);
+		}
+		assertEquals(List.of("a", "b", "c"), sketch.top());
+		assertTrue(sketch.estimate("a") >= 5_000);
+		assertTrue(sketch.estimate("a") <= 5_000 + 2 * 10_000 / 256);
+	}
+
+	@Test
+	public void testUnion() {
+		TopKSketch first = new TopKSketch(2, 256);
+		TopKSketch second = new TopKSketch(2, 256);
+		for (int i = 0; i < 100; i++) {
+			first.add(1);
+			first.add(i % 2 == 0 ? 2 : 3);
+			second.add(3);
+		}
+		assertEquals(1, first.top().get(0));
+
+		first.union(second);
+		assertEquals(List.of(3, 1), first.top());
+		assertEquals(150, first.estimate(3));
+
+		TopKSketch restored = new TopKSketch(first.getK(), first.getCounts(), first.getItems());
+		assertEquals(first.top(), restored.top());
+	}
+}
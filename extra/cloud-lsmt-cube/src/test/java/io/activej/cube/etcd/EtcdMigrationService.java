@@ -32,7 +32,6 @@ import java.util.function.Function;
 
 import static io.activej.common.Checks.checkNotNull;
 import static io.activej.common.collection.CollectorUtils.entriesToLinkedHashMap;
-import static io.activej.cube.aggregation.json.JsonCodecs.ofPrimaryKey;
 import static io.activej.cube.etcd.EtcdUtils.*;
 import static io.activej.etcd.EtcdUtils.executeTxnOps;
 import static io.activej.etcd.EtcdUtils.touchTimestamp;
@@ -86,7 +85,7 @@ public final class EtcdMigrationService {
 			checkNotBuilt(this);
 			Map<String, AggregationChunkJsonEtcdKVCodec> collect = cubeStructure.getAggregationStructures().entrySet().stream()
 				.collect(entriesToLinkedHashMap(structure ->
-					new AggregationChunkJsonEtcdKVCodec(ofPrimaryKey(structure))));
+					new AggregationChunkJsonEtcdKVCodec(structure)));
 			return withChunkCodecsFactory(collect::get);
 		}
 
@@ -0,0 +1,111 @@
+package io.activej.cube.http;
+
+import io.activej.bytebuf.ByteBuf;
+import io.activej.bytebuf.ByteBufs;
+import io.activej.codegen.DefiningClassLoader;
+import io.activej.common.exception.MalformedDataException;
+import io.activej.cube.QueryResult;
+import io.activej.cube.json.JsonCodecs;
+import io.activej.json.JsonCodec;
+import io.activej.json.JsonCodecFactory;
+import io.activej.record.Record;
+import io.activej.record.RecordScheme;
+import io.activej.test.rules.ByteBufRule;
+import io.activej.test.rules.EventloopRule;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.lang.reflect.Type;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static io.activej.json.JsonUtils.toJson;
+import static io.activej.promise.TestUtils.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+public class QueryResultBinaryCodecTest {
+	@ClassRule
+	public static final EventloopRule eventloopRule = new EventloopRule();
+
+	@ClassRule
+	public static final ByteBufRule byteBufRule = new ByteBufRule();
+
+	private static final Map<String, Type> ATTRIBUTE_TYPES = Map.of("date", LocalDate.class, "campaign", int.class, "site", String.class);
+	private static final Map<String, Type> MEASURE_TYPES = Map.of("impressions", long.class, "ctr", double.class);
+
+	private final DefiningClassLoader classLoader = DefiningClassLoader.create();
+	private final JsonCodec<QueryResult> jsonCodec = JsonCodecs.createQueryResultCodec(classLoader,
+		JsonCodecFactory.defaultInstance(), ATTRIBUTE_TYPES, MEASURE_TYPES);
+
+	@Test
+	public void testEncodeDecode() throws MalformedDataException {
+		RecordScheme recordScheme = RecordScheme.builder(classLoader)
+			.withField("date", LocalDate.class)
+			.withField("campaign", int.class)
+			.withField("site", String.class)
+			.withField("impressions", long.class)
+			.withField("ctr", double.class)
+			.build();
+
+		List<Record> records = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			Record record = recordScheme.record();
+			record.set("date", i % 3 == 0 ? null : LocalDate.parse("2000-01-01").plusDays(i));
+			record.set("campaign", i);
+			record.set("site", i % 2 == 0 ? null : "site" + i + "x".repeat(i));
+			record.set("impressions", i * 100L);
+			record.set("ctr", i / 10.0);
+			records.add(record);
+		}
+		Record totals = recordScheme.record();
+		totals.set("impressions", 12345L);
+		totals.set("ctr", 0.5);
+
+		List<String> attributes = List.of("date", "campaign", "site");
+		List<String> measures = List.of("impressions", "ctr");
+		List<QueryResult> queryResults = List.of(
+			QueryResult.createForMetadata(recordScheme, attributes, measures),
+			QueryResult.createForData(recordScheme, attributes, measures, List.of("campaign"), Map.of("campaign", 1), List.of()),
+			QueryResult.createForData(recordScheme, attributes, measures, List.of("campaign"), Map.of(), records),
+			QueryResult.createForDataWithTotals(recordScheme, attributes, measures, List.of("campaign"), Map.of(), records, totals, 1000)
+		);
+
+		QueryResultBinaryCodec codec = new QueryResultBinaryCodec(classLoader, QueryResultBinaryCodec.DEFAULT_SERIALIZER_FACTORY, jsonCodec);
+		for (QueryResult queryResult : queryResults) {
+			for (int batchSize : new int[]{1, 7, 10_000}) {
+				ByteBuf buf = await(codec.encode(queryResult, batchSize).toCollector(ByteBufs.collector()));
+				QueryResult decoded = codec.decode(buf);
+				buf.recycle();
+				assertEquals(queryResult.getReportType(), decoded.getReportType());
+				assertEquals(toJson(jsonCodec, queryResult), toJson(jsonCodec, decoded));
+			}
+		}
+	}
+
+	@Test
+	public void testMalformedData() {
+		RecordScheme recordScheme = RecordScheme.builder(classLoader)
+			.withField("campaign", int.class)
+			.withField("impressions", long.class)
+			.build();
+		Record record = recordScheme.record();
+		record.set("campaign", 1);
+		record.set("impressions", 2L);
+		QueryResult queryResult = QueryResult.createForData(recordScheme, List.of("campaign"), List.of("impressions"),
+			List.of(), Map.of(), List.of(record, record));
+
+		QueryResultBinaryCodec codec = new QueryResultBinaryCodec(classLoader, QueryResultBinaryCodec.DEFAULT_SERIALIZER_FACTORY, jsonCodec);
+		ByteBuf buf = await(codec.encode(queryResult, 1).toCollector(ByteBufs.collector()));
+		byte[] bytes = buf.getArray();
+		buf.recycle();
+
+		assertThrows(MalformedDataException.class, () -> codec.decode(ByteBuf.wrap(bytes, 0, bytes.length - 1)));
+		assertThrows(MalformedDataException.class, () -> codec.decode(ByteBuf.wrap(bytes, 3, bytes.length)));
+		byte[] extended = new byte[bytes.length + 1];
+		System.arraycopy(bytes, 0, extended, 0, bytes.length);
+		assertThrows(MalformedDataException.class, () -> codec.decode(ByteBuf.wrapForReading(extended)));
+	}
+}
@@ -29,6 +29,7 @@ import io.activej.json.JsonCodecFactory;
 import io.activej.multilog.IMultilog;
 import io.activej.multilog.Multilog;
 import io.activej.ot.StateManager;
+import io.activej.promise.Promises;
 import io.activej.reactor.Reactor;
 import io.activej.record.Record;
 import io.activej.serializer.SerializerFactory;
@@ -57,8 +58,10 @@ import static io.activej.cube.aggregation.predicate.AggregationPredicates.*;
 import static io.activej.cube.aggregation.util.Utils.materializeProtoDiff;
 import static io.activej.cube.json.JsonCodecs.createAggregationPredicateCodec;
 import static io.activej.cube.json.JsonCodecs.createQueryResultCodec;
+import static io.activej.cube.json.JsonCodecs.createQueryResultStreamEncoder;
 import static io.activej.cube.measure.ComputedMeasures.*;
 import static io.activej.http.HttpUtils.inetAddress;
+import static io.activej.json.JsonUtils.toJson;
 import static io.activej.multilog.LogNamingScheme.NAME_PARTITION_REMAINDER_SEQ;
 import static io.activej.promise.TestUtils.await;
 import static io.activej.test.TestUtils.getFreePort;
@@ -72,6 +75,7 @@ public final class ReportingTest extends CubeTestBase {
 	private HttpServer cubeHttpServer;
 	private HttpClientCubeReporting httpCubeReporting;
 	private CubeReporting cubeReporting;
+	private CubeStructure cubeStructure;
 	private int serverPort;
 
 	private JsonCodec<QueryResult> queryResultJsonCodec;
@@ -271,7 +275,7 @@ public final class ReportingTest extends CubeTestBase {
 		IAggregationChunkStorage aggregationChunkStorage = AggregationChunkStorage.create(reactor,
 			stubChunkIdGenerator(), FrameFormats.lz4(), fs);
 
-		CubeStructure cubeStructure = CubeStructure.builder()
+		cubeStructure = CubeStructure.builder()
 			.withDimension("date", ofLocalDate(LocalDate.parse("2000-01-01")))
 			.withDimension("advertiser", ofInt(), notEq("advertiser", EXCLUDE_ADVERTISER))
 			.withDimension("campaign", ofInt(), notEq("campaign", EXCLUDE_CAMPAIGN))
@@ -305,6 +309,7 @@ public final class ReportingTest extends CubeTestBase {
 
 		CubeExecutor cubeExecutor = CubeExecutor.builder(reactor, cubeStructure, EXECUTOR, CLASS_LOADER, aggregationChunkStorage)
 			.withClassLoaderCache(CubeClassLoaderCache.create(CLASS_LOADER, 5))
+			.withClassGenerationExecutor(EXECUTOR)
 			.build();
 
 		StateManager<LogDiff<CubeDiff>, LogState<CubeDiff, CubeState>> logCubeStateManager = stateManagerFactory.create(cubeStructure, description);
@@ -471,6 +476,67 @@ public final class ReportingTest extends CubeTestBase {
 		assertEquals(queryResult1.getSortedBy(), queryResult2.getSortedBy());
 	}
 
+	@Test
+	public void testStreamingAndBinaryFormats() throws Exception {
+		List<CubeQuery> queries = List.of(
+			CubeQuery.builder()
+				.withAttributes("date", "advertiser.name", "advertiser")
+				.withMeasures("impressions", "clicks", "ctr")
+				.withWhere(and(has("advertiser"), has("campaign"), has("banner")))
+				.withOrderings(asc("date"), asc("advertiser"))
+				.withReportType(DATA_WITH_TOTALS)
+				.build(),
+			CubeQuery.builder()
+				.withAttributes("date")
+				.withMeasures("impressions")
+				.withWhere(eq("date", LocalDate.parse("1999-01-01")))
+				.withReportType(DATA)
+				.build(),
+			CubeQuery.builder()
+				.withAttributes("date")
+				.withMeasures("impressions")
+				.withReportType(ReportType.METADATA)
+				.build());
+
+		List<String> expected = new ArrayList<>();
+		for (CubeQuery query : queries) {
+			expected.add(toJson(queryResultJsonCodec, await(cubeReporting.query(query))));
+		}
+
+		int port = getFreePort();
+		HttpServer server = HttpServer.builder(reactor, ReportingServiceServlet.createRootServlet(
+				ReportingServiceServlet.builder(reactor, cubeReporting, queryResultJsonCodec, aggregationPredicateJsonCodec)
+					.withStreaming(createQueryResultStreamEncoder(JsonCodecFactory.defaultInstance(), cubeStructure))
+					.withBinaryFormat(CLASS_LOADER)
+					.withBatchSize(1)
+					.build()))
+			.withListenPort(port)
+			.build();
+		server.listen();
+
+		IHttpClient httpClient = HttpClient.builder(reactor, DnsClient.create(reactor, inetAddress("8.8.8.8")))
+			.withNoKeepAlive()
+			.build();
+		String url = "http://127.0.0.1:" + port;
+		HttpClientCubeReporting jsonReporting = HttpClientCubeReporting.create(httpClient, url, queryResultJsonCodec, aggregationPredicateJsonCodec);
+		HttpClientCubeReporting binaryReporting = HttpClientCubeReporting.builder(httpClient, url, queryResultJsonCodec, aggregationPredicateJsonCodec)
+			.withBinaryFormat(CLASS_LOADER)
+			.build();
+
+		List<String> streamed = new ArrayList<>();
+		List<String> binary = new ArrayList<>();
+		await(Promises.sequence(queries.stream().map(query -> () -> jsonReporting.query(query)
+				.whenResult(result -> streamed.add(toJson(queryResultJsonCodec, result)))
+				.then(() -> binaryReporting.query(query))
+				.whenResult(result -> binary.add(toJson(queryResultJsonCodec, result)))
+				.toVoid()))
+			.whenComplete(server::close));
+
+		assertTrue(expected.get(0).contains("null"));
+		assertEquals(expected, streamed);
+		assertEquals(expected, binary);
+	}
+
 	@Test
 	public void testQueryWithPredicateLe() {
 		CubeQuery query = CubeQuery.builder()
@@ -1,5 +1,7 @@
 package io.activej.cube.json;
 
+import io.activej.bytebuf.ByteBuf;
+import io.activej.bytebuf.ByteBufs;
 import io.activej.codegen.DefiningClassLoader;
 import io.activej.common.exception.MalformedDataException;
 import io.activej.cube.QueryResult;
@@ -7,16 +9,28 @@ import io.activej.json.JsonCodec;
 import io.activej.json.JsonCodecFactory;
 import io.activej.record.Record;
 import io.activej.record.RecordScheme;
+import io.activej.test.rules.ByteBufRule;
+import io.activej.test.rules.EventloopRule;
+import org.junit.ClassRule;
 import org.junit.Test;
 
+import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 import static io.activej.json.JsonUtils.fromJson;
 import static io.activej.json.JsonUtils.toJson;
+import static io.activej.promise.TestUtils.await;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.assertEquals;
 
 public class QueryResultJsonCodecTest {
+	@ClassRule
+	public static final EventloopRule eventloopRule = new EventloopRule();
+
+	@ClassRule
+	public static final ByteBufRule byteBufRule = new ByteBufRule();
 
 	@Test
 	public void testForDataWithTotals() throws MalformedDataException {
@@ -198,6 +212,54 @@ public class QueryResultJsonCodecTest {
 		assertResult(queryResult, decoded);
 	}
 
+	@Test
+	public void testStreamEncoder() {
+		Map<String, Type> attributeTypes = Map.of("campaign", int.class, "site", String.class);
+		Map<String, Type> measureTypes = Map.of("impressions", long.class, "clicks", long.class);
+		JsonCodec<QueryResult> codec = JsonCodecs.createQueryResultCodec(DefiningClassLoader.create(),
+			JsonCodecFactory.defaultInstance(), attributeTypes, measureTypes);
+		QueryResultJsonStreamEncoder encoder = JsonCodecs.createQueryResultStreamEncoder(
+			JsonCodecFactory.defaultInstance(), attributeTypes, measureTypes);
+
+		RecordScheme recordScheme = RecordScheme.builder()
+			.withField("campaign", int.class)
+			.withField("site", String.class)
+			.withField("clicks", long.class)
+			.withField("impressions", long.class)
+			.build();
+
+		List<Record> records = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			Record record = recordScheme.record();
+			record.set("campaign", i);
+			record.set("site", i % 2 == 0 ? null : "site" + i);
+			record.set("clicks", (long) i);
+			record.set("impressions", i * 10L);
+			records.add(record);
+		}
+		Record totals = recordScheme.record();
+		totals.set("clicks", 10L);
+		totals.set("impressions", 100L);
+
+		List<String> attributes = List.of("campaign", "site");
+		List<String> measures = List.of("clicks", "impressions");
+		List<QueryResult> queryResults = List.of(
+			QueryResult.createForMetadata(recordScheme, attributes, measures),
+			QueryResult.createForData(recordScheme, attributes, measures, List.of("campaign"), Map.of(), List.of()),
+			QueryResult.createForData(recordScheme, attributes, measures, List.of("campaign"), Map.of("site", "site1"), records),
+			QueryResult.createForDataWithTotals(recordScheme, attributes, measures, List.of(), Map.of(), List.of(), totals, 0),
+			QueryResult.createForDataWithTotals(recordScheme, attributes, measures, List.of("campaign"), Map.of(), records, totals, 5)
+		);
+
+		for (QueryResult queryResult : queryResults) {
+			String expected = toJson(codec, queryResult);
+			for (int batchSize : new int[]{1, 2, 5, 100}) {
+				ByteBuf buf = await(encoder.encode(queryResult, batchSize).toCollector(ByteBufs.collector()));
+				assertEquals(expected, buf.asString(UTF_8));
+			}
+		}
+	}
+
 	private static void assertResult(QueryResult expected, QueryResult actual) {
 		assertEquals(expected.getRecordScheme(), actual.getRecordScheme());
 		assertEquals(expected.getAttributes(), actual.getAttributes());
@@ -0,0 +1,171 @@
+package io.activej.cube.service;
+
+import io.activej.codegen.DefiningClassLoader;
+import io.activej.csp.process.frame.FrameFormats;
+import io.activej.cube.*;
+import io.activej.cube.CubeConsolidator.ConsolidationStrategy;
+import io.activej.cube.aggregation.AggregationChunkStorage;
+import io.activej.cube.aggregation.IAggregationChunkStorage;
+import io.activej.cube.bean.DataItem1;
+import io.activej.cube.exception.CubeException;
+import io.activej.cube.exception.QueryException;
+import io.activej.cube.ot.CubeDiff;
+import io.activej.cube.ot.CubeDiffScheme;
+import io.activej.datastream.supplier.StreamSuppliers;
+import io.activej.etl.LogDiff;
+import io.activej.etl.LogState;
+import io.activej.fs.FileSystem;
+import io.activej.ot.StateManager;
+import io.activej.promise.Promise;
+import io.activej.test.rules.ByteBufRule;
+import io.activej.test.rules.ClassBuilderConstantsRule;
+import io.activej.test.rules.EventloopRule;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import static io.activej.cube.CubeStructure.AggregationConfig.id;
+import static io.activej.cube.TestUtils.stubChunkIdGenerator;
+import static io.activej.cube.aggregation.fieldtype.FieldTypes.ofInt;
+import static io.activej.cube.aggregation.fieldtype.FieldTypes.ofLong;
+import static io.activej.cube.aggregation.measure.Measures.sum;
+import static io.activej.cube.aggregation.util.Utils.materializeProtoDiff;
+import static io.activej.promise.TestUtils.await;
+import static io.activej.promise.TestUtils.awaitException;
+import static io.activej.reactor.Reactor.getCurrentReactor;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.stream.Collectors.toSet;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.*;
+
+public final class CubeConsolidationSchedulingTest {
+	@ClassRule
+	public static final EventloopRule eventloopRule = new EventloopRule();
+
+	@ClassRule
+	public static final ByteBufRule byteBufRule = new ByteBufRule();
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Rule
+	public final ClassBuilderConstantsRule classBuilderConstantsRule = new ClassBuilderConstantsRule();
+
+	private final DefiningClassLoader classLoader = DefiningClassLoader.create();
+	private final Executor executor = newSingleThreadExecutor();
+
+	private FileSystem fs;
+	private IAggregationChunkStorage chunkStorage;
+	private CubeStructure cubeStructure;
+	private CubeExecutor cubeExecutor;
+	private StateManager<LogDiff<CubeDiff>, LogState<CubeDiff, CubeState>> stateManager;
+
+	@Before
+	public void setUp() throws Exception {
+		fs = FileSystem.create(getCurrentReactor(), executor, temporaryFolder.newFolder().toPath());
+		await(fs.start());
+		chunkStorage = AggregationChunkStorage.create(getCurrentReactor(), stubChunkIdGenerator(), FrameFormats.lz4(), fs);
+		cubeStructure = CubeStructure.builder()
+			.withDimension("key1", ofInt())
+			.withDimension("key2", ofInt())
+			.withMeasure("metric1", sum(ofLong()))
+			.withMeasure("metric2", sum(ofLong()))
+			.withAggregation(id("byKey1")
+				.withDimensions("key1")
+				.withMeasures("metric1"))
+			.withAggregation(id("byKey2")
+				.withDimensions("key2")
+				.withMeasures("metric2"))
+			.build();
+		cubeExecutor = CubeExecutor.create(getCurrentReactor(), cubeStructure, executor, classLoader, chunkStorage);
+		stateManager = TestUtils.stubStateManager(cubeStructure);
+
+		for (int i = 0; i < 3; i++) {
+			await(consume(new DataItem1(1, 1, 10, 20), new DataItem1(2, 2, 30, 40)));
+		}
+	}
+
+	@Test
+	public void testPrioritizesQueriedAggregationsWithinBudget() throws QueryException {
+		assertEquals(3, readAmplification("byKey1"));
+		assertEquals(3, readAmplification("byKey2"));
+
+		CubeReporting cubeReporting = CubeReporting.create(stateManager, cubeStructure, cubeExecutor);
+		for (int i = 0; i < 3; i++) {
+			await(cubeReporting.query(CubeQuery.builder()
+				.withAttributes("key2")
+				.withMeasures("metric2")
+				.build()));
+		}
+		assertEquals(3, cubeExecutor.getAggregationExecutors().get("byKey2").getQueries());
+		assertEquals(0, cubeExecutor.getAggregationExecutors().get("byKey1").getQueries());
+
+		CubeConsolidator consolidator = CubeConsolidator.create(stateManager, cubeExecutor);
+		CubeConsolidationController<LogDiff<CubeDiff>> controller = CubeConsolidationController.builder(
+				getCurrentReactor(), CubeDiffScheme.ofLogDiffs(), consolidator, cubeStructure)
+			.withConsolidationStrategy(ConsolidationStrategy::hotSegment)
+			.withCostBasedScheduling(2, 1)
+			.build();
+		assertEquals(3, controller.getMaxReadAmplification());
+
+		await(controller.consolidate());
+		assertEquals(3, readAmplification("byKey1"));
+		assertEquals(1, readAmplification("byKey2"));
+		assertEquals(6, controller.getConsolidatedRecordsRead());
+		assertEquals(2, controller.getConsolidatedRecordsWritten());
+		assertEquals(2, controller.getReadAmplification().getCount());
+		assertTrue(controller.getWriteAmplification() > 1);
+
+		await(controller.consolidate());
+		assertEquals(1, readAmplification("byKey1"));
+		assertEquals(1, controller.getMaxReadAmplification());
+		assertEquals(12, controller.getConsolidatedRecordsRead());
+		assertEquals(4, controller.getConsolidatedRecordsWritten());
+		assertEquals(2.0, controller.getWriteAmplification(), 1e-9);
+	}
+
+	@Test
+	public void testConcurrentConsolidation() {
+		CubeConsolidator consolidator = CubeConsolidator.create(stateManager, cubeExecutor);
+		CubeDiff cubeDiff = await(consolidator.consolidate(List.of("byKey1", "byKey2"), ConsolidationStrategy.hotSegment(), 2, Long.MAX_VALUE));
+
+		assertEquals(3, cubeDiff.get("byKey1").getRemovedChunks().size());
+		assertEquals(3, cubeDiff.get("byKey2").getRemovedChunks().size());
+		assertEquals(1, readAmplification("byKey1"));
+		assertEquals(1, readAmplification("byKey2"));
+	}
+
+	@Test
+	public void testConsolidationStopsAtFirstFailure() {
+		Set<Long> chunkIds = stateManager.query(state -> Set.copyOf(state.getDataState().getAggregationState("byKey1").getChunks().keySet()));
+		await(fs.deleteAll(chunkIds.stream().map(chunkId -> chunkId + AggregationChunkStorage.LOG).collect(toSet())));
+		assertEquals(3, await(fs.list("**")).size());
+
+		CubeConsolidator consolidator = CubeConsolidator.create(stateManager, cubeExecutor);
+		Exception e = awaitException(consolidator.consolidate(List.of("byKey1", "byKey2"), ConsolidationStrategy.hotSegment()));
+
+		assertThat(e, instanceOf(CubeException.class));
+		assertEquals(3, await(fs.list("**")).size());
+		assertEquals(3, readAmplification("byKey2"));
+	}
+
+	private int readAmplification(String aggregationId) {
+		return stateManager.query(state -> state.getDataState().getAggregationState(aggregationId).getReadAmplification());
+	}
+
+	private Promise<CubeDiff> consume(DataItem1... items) {
+		return StreamSuppliers.ofValues(items)
+			.streamTo(cubeExecutor.consume(DataItem1.class))
+			.then(cubeDiff -> chunkStorage.finish(cubeDiff.addedProtoChunks().collect(toSet()))
+				.map(chunkIds -> materializeProtoDiff(cubeDiff, chunkIds)))
+			.then(cubeDiff -> stateManager.push(List.of(LogDiff.forCurrentPosition(cubeDiff)))
+				.map($ -> cubeDiff));
+	}
+}
@@ -47,4 +47,32 @@ public interface IMultilog<T> {
 		LogFile startLogFile, long startPosition,
 		@Nullable LogFile endLogFile);
 
+	/**
+	 * Finds a position in a given partition, starting from which all the items written
+	 * at or after a given timestamp can be read.
+	 * <p>
+	 * A position is found using sparse indexes of log files, so some of the items
+	 * written shortly before the timestamp may be read as well.
+	 *
+	 * @param logPartition name of log partition
+	 * @param timestamp    timestamp in milliseconds
+	 * @return a position to be passed to {@link #read}
+	 */
+	Promise<LogPosition> seek(String logPartition, long timestamp);
+
+	/**
+	 * Creates a {@code StreamSupplier} that streams items of a given partition,
+	 * skipping a given number of items from the beginning of a start log file.
+	 * <p>
+	 * Reading is started at the closest indexed position, so that skipped items are not decompressed.
+	 *
+	 * @param logPartition name of log partition
+	 * @param startLogFile log file
+	 * @param startRecord  number of items to be skipped
+	 * @return StreamSupplier, which will stream read items to its wired consumer.
+	 */
+	Promise<StreamSupplierWithResult<T, LogPosition>> readFromRecord(String logPartition,
+		LogFile startLogFile, long startRecord,
+		@Nullable LogFile endLogFile);
+
 }
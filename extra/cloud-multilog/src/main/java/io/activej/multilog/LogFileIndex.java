@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.multilog;
+
+import io.activej.bytebuf.ByteBuf;
+import io.activej.bytebuf.ByteBufPool;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A sparse index of a single log file, which is stored alongside the log file.
+ * <p>
+ * Each entry of an index points to a beginning of a frame of a log file,
+ * so that reading of a log file may be started at the entry's offset.
+ * An entry holds an offset of a frame, a time when the frame has been written
+ * and a number of log items which precede the frame in a log file.
+ */
+public final class LogFileIndex {
+	public static final String SUFFIX = ".index";
+
+	static final int ENTRY_SIZE = 3 * 8;
+
+	public record Entry(long offset, long timestamp, long records) {
+	}
+
+	private final List<Entry> entries;
+
+	private LogFileIndex(List<Entry> entries) {
+		this.entries = entries;
+	}
+
+	public static LogFileIndex of(List<Entry> entries) {
+		return new LogFileIndex(List.copyOf(entries));
+	}
+
+	/**
+	 * Decodes an index, ignoring a trailing incomplete entry, if any
+	 */
+	public static LogFileIndex decode(ByteBuf buf) {
+		List<Entry> entries = new ArrayList<>(buf.readRemaining() / ENTRY_SIZE);
+		while (buf.readRemaining() >= ENTRY_SIZE) {
+			entries.add(new Entry(buf.readLong(), buf.readLong(), buf.readLong()));
+		}
+		buf.recycle();
+		return new LogFileIndex(entries);
+	}
+
+	static ByteBuf encode(Entry entry) {
+		ByteBuf buf = ByteBufPool.allocate(ENTRY_SIZE);
+		buf.writeLong(entry.offset());
+		buf.writeLong(entry.timestamp());
+		buf.writeLong(entry.records());
+		return buf;
+	}
+
+	public List<Entry> getEntries() {
+		return entries;
+	}
+
+	public boolean isEmpty() {
+		return entries.isEmpty();
+	}
+
+	/**
+	 * Returns the last entry whose frame has been written strictly before a given timestamp.
+	 * Frames that precede such entry contain only items written before the timestamp.
+	 */
+	public @Nullable Entry floorByTimestamp(long timestamp) {
+		int lo = 0, hi = entries.size();
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (entries.get(mid).timestamp() < timestamp) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo == 0 ? null : entries.get(lo - 1);
+	}
+
+	/**
+	 * Returns the last entry which is preceded by at most a given number of log items
+	 */
+	public @Nullable Entry floorByRecords(long records) {
+		int lo = 0, hi = entries.size();
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (entries.get(mid).records() <= records) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo == 0 ? null : entries.get(lo - 1);
+	}
+
+	@Override
+	public String toString() {
+		return "LogFileIndex{entries=" + entries.size() + '}';
+	}
+}
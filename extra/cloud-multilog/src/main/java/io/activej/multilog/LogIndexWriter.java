@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.multilog;
+
+import io.activej.common.time.CurrentTimeProvider;
+import io.activej.csp.supplier.ChannelSuppliers;
+import io.activej.datastream.csp.ChannelSerializer.FlushListener;
+import io.activej.datastream.csp.ChannelSerializer.FlushReason;
+import io.activej.fs.IFileSystem;
+import io.activej.multilog.LogFileIndex.Entry;
+import io.activej.promise.Promise;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+
+/**
+ * Writes a {@link LogFileIndex} of a log file that is being written by {@link LogStreamChunker}.
+ * <p>
+ * Serialized buffers are reported by a serializer along with the number of items in them.
+ * Each serialized buffer is then encoded into a separate frame of a log file,
+ * and the time of a buffer flush is used as a timestamp of a frame.
+ * An index entry is appended to an index file when either a given number of items
+ * or a given amount of time has passed since the previous entry.
+ */
+final class LogIndexWriter implements FlushListener {
+	private static final Logger logger = LoggerFactory.getLogger(LogIndexWriter.class);
+
+	private final CurrentTimeProvider currentTimeProvider;
+	private final IFileSystem fileSystem;
+	private final long recordsInterval;
+	private final long timeIntervalMillis;
+
+	private final ArrayDeque<Frame> pendingFrames = new ArrayDeque<>();
+
+	private String indexPath;
+	private long offset;
+	private long records;
+	private @Nullable Entry lastEntry;
+	private long indexSize;
+	private boolean failed;
+	private Promise<Void> writes = Promise.complete();
+
+	private record Frame(long timestamp, int records) {
+	}
+
+	LogIndexWriter(CurrentTimeProvider currentTimeProvider, IFileSystem fileSystem, long recordsInterval, long timeIntervalMillis) {
+		this.currentTimeProvider = currentTimeProvider;
+		this.fileSystem = fileSystem;
+		this.recordsInterval = recordsInterval;
+		this.timeIntervalMillis = timeIntervalMillis;
+	}
+
+	@Override
+	public void onFlush(FlushReason reason, int bytes, int items) {
+		pendingFrames.add(new Frame(currentTimeProvider.currentTimeMillis(), items));
+	}
+
+	void startFile(String indexPath) {
+		this.indexPath = indexPath;
+		this.offset = 0;
+		this.records = 0;
+		this.lastEntry = null;
+		this.indexSize = 0;
+		this.failed = false;
+	}
+
+	void onFrameWritten(int size) {
+		Frame frame = pendingFrames.poll();
+		if (frame != null) {
+			if (lastEntry == null ||
+				records - lastEntry.records() >= recordsInterval ||
+				frame.timestamp() - lastEntry.timestamp() >= timeIntervalMillis) {
+				addEntry(new Entry(offset, frame.timestamp(), records));
+			}
+			records += frame.records();
+		}
+		offset += size;
+	}
+
+	Promise<Void> finishFile() {
+		return writes;
+	}
+
+	private void addEntry(Entry entry) {
+		lastEntry = entry;
+		String path = indexPath;
+		long position = indexSize;
+		indexSize += LogFileIndex.ENTRY_SIZE;
+		writes = writes
+			.then(() -> {
+				if (failed) return Promise.complete();
+				return fileSystem.append(path, position)
+					.then(consumer -> ChannelSuppliers.ofValue(LogFileIndex.encode(entry)).streamTo(consumer))
+					.then(Promise::of, e -> {
+						logger.warn("Failed to write an index entry to {}, the rest of the index is skipped", path, e);
+						failed = true;
+						return Promise.complete();
+					});
+			});
+	}
+}
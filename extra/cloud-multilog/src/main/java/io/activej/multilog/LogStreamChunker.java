@@ -36,6 +36,7 @@ public final class LogStreamChunker extends AbstractCommunicatingProcess impleme
 	private final LogNamingScheme namingScheme;
 	private final String logPartition;
 	private final UnaryOperator<ChannelConsumer<ByteBuf>> consumerTransformer;
+	private final @Nullable LogIndexWriter indexWriter;
 
 	private ChannelSupplier<ByteBuf> input;
 	private @Nullable ChannelConsumer<ByteBuf> currentConsumer;
@@ -43,11 +44,16 @@ public final class LogStreamChunker extends AbstractCommunicatingProcess impleme
 	private LogFile currentChunk;
 
 	public LogStreamChunker(CurrentTimeProvider currentTimeProvider, IFileSystem fileSystem, LogNamingScheme namingScheme, String logPartition, UnaryOperator<ChannelConsumer<ByteBuf>> consumerTransformer) {
+		this(currentTimeProvider, fileSystem, namingScheme, logPartition, consumerTransformer, null);
+	}
+
+	LogStreamChunker(CurrentTimeProvider currentTimeProvider, IFileSystem fileSystem, LogNamingScheme namingScheme, String logPartition, UnaryOperator<ChannelConsumer<ByteBuf>> consumerTransformer, @Nullable LogIndexWriter indexWriter) {
 		this.currentTimeProvider = currentTimeProvider;
 		this.fileSystem = fileSystem;
 		this.namingScheme = namingScheme;
 		this.logPartition = logPartition;
 		this.consumerTransformer = consumerTransformer;
+		this.indexWriter = indexWriter;
 	}
 
 	@Override
@@ -86,7 +92,14 @@ public final class LogStreamChunker extends AbstractCommunicatingProcess impleme
 				this.currentChunk = (currentChunk == null) ? newChunkName : new LogFile(newChunkName.getName(), 0);
 				return fileSystem.append(namingScheme.path(logPartition, currentChunk), 0)
 					.then(this::doSanitize)
-					.whenResult(newConsumer -> this.currentConsumer = consumerTransformer.apply(sanitize(newConsumer)))
+					.whenResult(newConsumer -> {
+						ChannelConsumer<ByteBuf> fileConsumer = sanitize(newConsumer);
+						if (indexWriter != null) {
+							indexWriter.startFile(namingScheme.path(logPartition, currentChunk) + LogFileIndex.SUFFIX);
+							fileConsumer = fileConsumer.peek(frame -> indexWriter.onFrameWritten(frame.readRemaining()));
+						}
+						this.currentConsumer = consumerTransformer.apply(fileConsumer);
+					})
 					.toVoid();
 			});
 	}
@@ -96,6 +109,7 @@ public final class LogStreamChunker extends AbstractCommunicatingProcess impleme
 			return Promise.complete();
 		}
 		return currentConsumer.acceptEndOfStream()
+			.then(() -> indexWriter != null ? indexWriter.finishFile() : Promise.complete())
 			.whenResult(() -> currentConsumer = null);
 	}
 
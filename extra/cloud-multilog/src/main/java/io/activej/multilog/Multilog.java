@@ -17,6 +17,7 @@
 package io.activej.multilog;
 
 import io.activej.bytebuf.ByteBuf;
+import io.activej.bytebuf.ByteBufs;
 import io.activej.common.MemSize;
 import io.activej.common.builder.AbstractBuilder;
 import io.activej.common.exception.MalformedDataException;
@@ -31,6 +32,7 @@ import io.activej.datastream.consumer.StreamConsumer;
 import io.activej.datastream.consumer.StreamConsumers;
 import io.activej.datastream.csp.ChannelDeserializer;
 import io.activej.datastream.csp.ChannelSerializer;
+import io.activej.datastream.processor.transformer.StreamTransformers;
 import io.activej.datastream.stats.DetailedStreamStats;
 import io.activej.datastream.stats.StreamRegistry;
 import io.activej.datastream.stats.StreamStats;
@@ -38,6 +40,7 @@ import io.activej.datastream.supplier.StreamSupplier;
 import io.activej.datastream.supplier.StreamSupplierWithResult;
 import io.activej.datastream.supplier.StreamSuppliers;
 import io.activej.fs.IFileSystem;
+import io.activej.fs.exception.FileNotFoundException;
 import io.activej.fs.exception.IllegalOffsetException;
 import io.activej.jmx.api.attribute.JmxAttribute;
 import io.activej.promise.Promise;
@@ -53,6 +56,7 @@ import org.slf4j.LoggerFactory;
 import java.time.Duration;
 import java.util.Iterator;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Objects;
 
 import static io.activej.common.Checks.checkArgument;
@@ -75,6 +79,8 @@ public final class Multilog<T> extends AbstractReactive
 	private MemSize bufferSize = DEFAULT_BUFFER_SIZE;
 	private Duration autoFlushInterval = null;
 	private boolean ignoreMalformedLogs;
+	private int indexRecordsInterval;
+	private @Nullable Duration indexTimeInterval;
 	private final FrameFormat frameFormat;
 
 	private final StreamRegistry<String> streamReads = StreamRegistry.create();
@@ -139,6 +145,25 @@ public final class Multilog<T> extends AbstractReactive
 			return this;
 		}
 
+		/**
+		 * Enables writing of a sparse index alongside each log file.
+		 * An index entry is written when either a given number of log items
+		 * or a given amount of time has passed since the previous entry.
+		 * Indexes allow to start reading logs from a given timestamp or item
+		 * without decompressing preceding parts of log files.
+		 *
+		 * @see IMultilog#seek
+		 * @see IMultilog#readFromRecord
+		 */
+		public Builder withSparseIndex(int recordsInterval, Duration timeInterval) {
+			checkNotBuilt(this);
+			checkArgument(recordsInterval > 0, "Records interval must be positive");
+			checkArgument(!timeInterval.isNegative(), "Time interval must not be negative");
+			Multilog.this.indexRecordsInterval = recordsInterval;
+			Multilog.this.indexTimeInterval = timeInterval;
+			return this;
+		}
+
 		@Override
 		protected Multilog<T> doBuild() {
 			return Multilog.this;
@@ -150,12 +175,16 @@ public final class Multilog<T> extends AbstractReactive
 		checkInReactorThread(this);
 		validateLogPartition(logPartition);
 
+		LogIndexWriter indexWriter = indexTimeInterval != null ?
+			new LogIndexWriter(reactor, fileSystem, indexRecordsInterval, indexTimeInterval.toMillis()) :
+			null;
 		return Promise.of(StreamConsumers.<T>ofSupplier(
 				supplier -> supplier
 					.transformWith(ChannelSerializer.builder(serializer)
 						.withAutoFlushInterval(autoFlushInterval)
 						.withInitialBufferSize(bufferSize)
 						.withSkipSerializationErrors()
+						.withFlushListener(indexWriter)
 						.build())
 					.transformWith(streamWrites.register(logPartition))
 					.transformWith(streamWriteStats)
@@ -163,7 +192,8 @@ public final class Multilog<T> extends AbstractReactive
 						consumer -> consumer.transformWith(
 							ChannelFrameEncoder.builder(frameFormat)
 								.withEncoderResets()
-								.build()))))
+								.build()),
+						indexWriter)))
 			.withAcknowledgement(ack -> ack
 				.mapException(e -> new MultilogException("Failed to write logs to partition '" + logPartition + '\'', e))));
 	}
@@ -175,14 +205,7 @@ public final class Multilog<T> extends AbstractReactive
 		checkInReactorThread(this);
 		validateLogPartition(logPartition);
 		LogPosition startPosition = LogPosition.create(startLogFile, startOffset);
-		return fileSystem.list(namingScheme.getListGlob(logPartition))
-			.map(files ->
-				files.keySet().stream()
-					.map(namingScheme::parse)
-					.filter(Objects::nonNull)
-					.filter(partitionAndFile -> partitionAndFile.logPartition().equals(logPartition))
-					.map(PartitionAndFile::logFile)
-					.collect(toList()))
+		return listLogFiles(logPartition)
 			.map(logFiles -> {
 				RefBoolean lastFileRef = new RefBoolean(true);
 				return readLogFiles(logPartition, startPosition, logFiles.stream()
@@ -206,6 +229,70 @@ public final class Multilog<T> extends AbstractReactive
 			.mapException(e -> new MultilogException("Failed to read logs from partition '" + logPartition + '\'', e));
 	}
 
+	@Override
+	public Promise<LogPosition> seek(String logPartition, long timestamp) {
+		checkInReactorThread(this);
+		validateLogPartition(logPartition);
+		return listLogFiles(logPartition)
+			.then(logFiles -> {
+				List<LogFile> sorted = logFiles.stream().sorted().toList();
+				return seek(logPartition, timestamp, sorted.listIterator(sorted.size()));
+			})
+			.mapException(e -> new MultilogException("Failed to seek in partition '" + logPartition + '\'', e));
+	}
+
+	private Promise<LogPosition> seek(String logPartition, long timestamp, ListIterator<LogFile> it) {
+		if (!it.hasPrevious()) return Promise.of(LogPosition.initial());
+		LogFile logFile = it.previous();
+		return loadIndex(logPartition, logFile)
+			.then(index -> {
+				// a log file without an index may contain any items, so reading should start at its beginning
+				if (index == null) return Promise.of(LogPosition.create(logFile, 0));
+				LogFileIndex.Entry entry = index.floorByTimestamp(timestamp);
+				if (entry != null) return Promise.of(LogPosition.create(logFile, entry.offset()));
+				return seek(logPartition, timestamp, it);
+			});
+	}
+
+	@Override
+	public Promise<StreamSupplierWithResult<T, LogPosition>> readFromRecord(
+		String logPartition, LogFile startLogFile, long startRecord, @Nullable LogFile endLogFile
+	) {
+		checkInReactorThread(this);
+		validateLogPartition(logPartition);
+		checkArgument(startRecord >= 0, "Start record must not be negative");
+		return loadIndex(logPartition, startLogFile)
+			.mapException(e -> new MultilogException("Failed to read logs from partition '" + logPartition + '\'', e))
+			.then(index -> {
+				LogFileIndex.Entry entry = index != null ? index.floorByRecords(startRecord) : null;
+				long startOffset = entry != null ? entry.offset() : 0;
+				long skip = startRecord - (entry != null ? entry.records() : 0);
+				return read(logPartition, startLogFile, startOffset, endLogFile)
+					.map(supplierWithResult -> StreamSupplierWithResult.of(
+						supplierWithResult.getSupplier().transformWith(StreamTransformers.skip(skip)),
+						supplierWithResult.getResult()));
+			});
+	}
+
+	private Promise<List<LogFile>> listLogFiles(String logPartition) {
+		return fileSystem.list(namingScheme.getListGlob(logPartition))
+			.map(files ->
+				files.keySet().stream()
+					.map(namingScheme::parse)
+					.filter(Objects::nonNull)
+					.filter(partitionAndFile -> partitionAndFile.logPartition().equals(logPartition))
+					.map(PartitionAndFile::logFile)
+					.collect(toList()));
+	}
+
+	private Promise<@Nullable LogFileIndex> loadIndex(String logPartition, LogFile logFile) {
+		return fileSystem.download(namingScheme.path(logPartition, logFile) + LogFileIndex.SUFFIX)
+			.then(supplier -> supplier.toCollector(ByteBufs.collector()))
+			.map(LogFileIndex::decode)
+			.map(index -> index.isEmpty() ? null : index)
+			.then(Promise::of, e -> e instanceof FileNotFoundException ? Promise.of(null) : Promise.ofException(e));
+	}
+
 	private StreamSupplierWithResult<T, LogPosition> readLogFiles(String logPartition, LogPosition startPosition, List<LogPosition> logFiles, boolean lastFile) {
 		SettablePromise<LogPosition> positionPromise = new SettablePromise<>();
 
@@ -1,7 +1,9 @@
 package io.activej.multilog;
 
 import io.activej.bytebuf.ByteBuf;
+import io.activej.bytebuf.ByteBufs;
 import io.activej.common.MemSize;
+import io.activej.common.ref.RefLong;
 import io.activej.csp.process.frame.FrameFormat;
 import io.activej.csp.process.frame.FrameFormats;
 import io.activej.csp.process.transformer.ChannelTransformers;
@@ -12,6 +14,7 @@ import io.activej.datastream.supplier.StreamSupplierWithResult;
 import io.activej.datastream.supplier.StreamSuppliers;
 import io.activej.fs.FileMetadata;
 import io.activej.fs.FileSystem;
+import io.activej.promise.Promises;
 import io.activej.reactor.Reactor;
 import io.activej.serializer.BinarySerializers;
 import io.activej.test.rules.ByteBufRule;
@@ -26,9 +29,12 @@ import org.junit.runners.Parameterized.Parameter;
 import org.junit.runners.Parameterized.Parameters;
 
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.stream.IntStream;
 
 import static io.activej.bytebuf.ByteBufStrings.wrapUtf8;
 import static io.activej.common.collection.CollectionUtils.first;
@@ -240,6 +246,82 @@ public class MultilogTest {
 		assertEquals(position, await(supplierWithResult.getResult()).getPosition());
 	}
 
+	@Test
+	public void testSeekByTimestamp() {
+		Reactor reactor = Reactor.getCurrentReactor();
+		FileSystem fs = FileSystem.create(reactor, newSingleThreadExecutor(), temporaryFolder.getRoot().toPath());
+		await(fs.start());
+		IMultilog<String> multilog = Multilog.builder(reactor, fs, frameFormat, BinarySerializers.UTF8_SERIALIZER, NAME_PARTITION_REMAINDER_SEQ)
+			.withBufferSize(MemSize.bytes(1))
+			.withSparseIndex(1, Duration.ofMinutes(1))
+			.build();
+		String partition = "partition";
+
+		List<String> values1 = List.of("test1", "test2", "test3");
+		List<String> values2 = List.of("test4", "test5", "test6");
+		RefLong timestampRef = new RefLong(0);
+
+		await(StreamSuppliers.concat(
+				StreamSuppliers.ofIterable(values1),
+				StreamSuppliers.ofPromise(Promises.delay(Duration.ofMillis(20))
+					.then(() -> {
+						timestampRef.set(reactor.currentTimeMillis());
+						return Promises.delay(Duration.ofMillis(20));
+					})
+					.map($ -> StreamSuppliers.ofIterable(values2))))
+			.streamTo(multilog.write(partition)));
+
+		assertEquals(LogPosition.initial(), await(multilog.seek(partition, 0)));
+
+		LogPosition position = await(multilog.seek(partition, timestampRef.get()));
+		assertFalse(position.isBeginning());
+
+		ToListStreamConsumer<String> consumer = ToListStreamConsumer.create();
+		await(StreamSupplierWithResult.ofPromise(
+				multilog.read(partition, position.getLogFile(), position.getPosition(), null))
+			.getSupplier()
+			.streamTo(consumer));
+
+		// only the last indexed frame written before the timestamp is read again
+		List<String> list = consumer.getList();
+		assertTrue(list.size() < values1.size() + values2.size());
+		assertEquals(values2, list.subList(list.size() - values2.size(), list.size()));
+	}
+
+	@Test
+	public void testReadFromRecord() {
+		Reactor reactor = Reactor.getCurrentReactor();
+		FileSystem fs = FileSystem.create(reactor, newSingleThreadExecutor(), temporaryFolder.getRoot().toPath());
+		await(fs.start());
+		IMultilog<String> multilog = Multilog.builder(reactor, fs, frameFormat, BinarySerializers.UTF8_SERIALIZER, NAME_PARTITION_REMAINDER_SEQ)
+			.withBufferSize(MemSize.bytes(1))
+			.withSparseIndex(3, Duration.ofMinutes(1))
+			.build();
+		String partition = "partition";
+
+		List<String> values = IntStream.range(0, 10).mapToObj(i -> "test" + i).toList();
+		await(StreamSuppliers.ofIterable(values).streamTo(multilog.write(partition)));
+
+		LogFile logFile = first(await(fs.list("*" + partition + "*")).keySet().stream()
+			.map(NAME_PARTITION_REMAINDER_SEQ::parse)
+			.filter(Objects::nonNull)
+			.map(PartitionAndFile::logFile)
+			.toList());
+		ByteBuf indexBuf = await(await(fs.download(NAME_PARTITION_REMAINDER_SEQ.path(partition, logFile) + LogFileIndex.SUFFIX))
+			.toCollector(ByteBufs.collector()));
+		LogFileIndex index = LogFileIndex.decode(indexBuf);
+		assertEquals(List.of(0L, 3L, 6L, 9L), index.getEntries().stream().map(LogFileIndex.Entry::records).toList());
+
+		for (int startRecord = 0; startRecord <= values.size(); startRecord++) {
+			ToListStreamConsumer<String> consumer = ToListStreamConsumer.create();
+			StreamSupplierWithResult<String, LogPosition> supplierWithResult = StreamSupplierWithResult.ofPromise(
+				multilog.readFromRecord(partition, logFile, startRecord, null));
+			await(supplierWithResult.getSupplier().streamTo(consumer));
+
+			assertEquals(values.subList(startRecord, values.size()), consumer.getList());
+		}
+	}
+
 	private static <T> List<T> readLog(IMultilog<T> multilog, String partition) {
 		ToListStreamConsumer<T> listConsumer = ToListStreamConsumer.create();
 		await(StreamSupplierWithResult.ofPromise(
@@ -17,11 +17,13 @@
 package io.activej.ot;
 
 import io.activej.async.function.AsyncPredicate;
+import io.activej.common.ApplicationSettings;
 import io.activej.common.collection.CollectionUtils;
 import io.activej.common.collection.CollectorUtils;
 import io.activej.common.ref.Ref;
 import io.activej.ot.AsyncOTCommitFactory.DiffsWithLevel;
 import io.activej.ot.exception.GraphExhaustedException;
+import io.activej.ot.exception.NoCommitException;
 import io.activej.ot.exception.OTException;
 import io.activej.ot.reducers.AbstractGraphReducer;
 import io.activej.ot.reducers.DiffsReducer;
@@ -52,6 +54,8 @@ import static java.util.stream.Collectors.toSet;
 public final class OTAlgorithms {
 	private static final Logger logger = LoggerFactory.getLogger(OTAlgorithms.class);
 
+	public static final int COMMITS_PREFETCH_SIZE = ApplicationSettings.getInt(OTAlgorithms.class, "commitsPrefetchSize", 64);
+
 	public static <K, D, R> Promise<R> reduce(
 		AsyncOTRepository<K, D> repository, OTSystem<D> system, Set<K> heads, GraphReducer<K, D, R> reducer
 	) {
@@ -60,13 +64,16 @@ public final class OTAlgorithms {
 				PriorityQueue<OTCommit<K, D>> queue = new PriorityQueue<>(reverseOrder(comparingLong(OTCommit::getLevel)));
 				queue.addAll(headCommits);
 				reducer.onStart(unmodifiableCollection(queue));
-				return Promise.ofCallback(cb -> walkGraphImpl(repository, reducer, queue, new HashSet<>(heads), cb));
+				CommitsLoader<K, D> loader = new CommitsLoader<>(repository, new HashSet<>(heads));
+				loader.prefetch(queue);
+				return Promise.<R>ofCallback(cb -> walkGraphImpl(loader, reducer, queue, cb))
+					.whenComplete(loader::stop);
 			});
 	}
 
 	private static <K, D, R> void walkGraphImpl(
-		AsyncOTRepository<K, D> repository, GraphReducer<K, D, R> reducer, PriorityQueue<OTCommit<K, D>> queue,
-		Set<K> visited, SettableCallback<R> cb
+		CommitsLoader<K, D> loader, GraphReducer<K, D, R> reducer, PriorityQueue<OTCommit<K, D>> queue,
+		SettableCallback<R> cb
 	) {
 		OTCommit<K, D> commit = queue.peek();
 		if (commit == null) {
@@ -82,24 +89,96 @@ public final class OTAlgorithms {
 				OTCommit<K, D> polledCommit = queue.poll();
 				assert polledCommit == commit;
 				if (maybeResult.isResume()) {
-					toList(commit.getParents().keySet().stream().filter(visited::add).map(repository::loadCommit))
+					loader.load(commit.getParentIds())
 						.async()
 						.subscribe((parentCommits, e2) -> {
 							if (e2 == null) {
 								queue.addAll(parentCommits);
-								walkGraphImpl(repository, reducer, queue, visited, cb);
+								loader.prefetch(queue);
+								walkGraphImpl(loader, reducer, queue, cb);
 							} else {
 								cb.setException(e2);
 							}
 						});
 				} else if (maybeResult.isSkip()) {
-					walkGraphImpl(repository, reducer, queue, visited, cb);
+					walkGraphImpl(loader, reducer, queue, cb);
 				} else {
 					cb.set(maybeResult.get());
 				}
 			});
 	}
 
+	/**
+	 * Loads commits of a graph walk, speculatively prefetching in batches
+	 * the parents of the commits which are queued to be visited.
+	 * A walk over a long linear history thus does not wait for a separate
+	 * round trip to the repository for each visited commit.
+	 */
+	private static final class CommitsLoader<K, D> {
+		private final AsyncOTRepository<K, D> repository;
+		private final Set<K> visited;
+		private final Map<K, Promise<OTCommit<K, D>>> prefetched = new HashMap<>();
+		private boolean stopped;
+
+		CommitsLoader(AsyncOTRepository<K, D> repository, Set<K> visited) {
+			this.repository = repository;
+			this.visited = visited;
+		}
+
+		Promise<List<OTCommit<K, D>>> load(Set<K> parentIds) {
+			List<Promise<OTCommit<K, D>>> promises = new ArrayList<>();
+			Set<K> notPrefetched = new HashSet<>();
+			for (K parentId : parentIds) {
+				if (!visited.add(parentId)) continue;
+				Promise<OTCommit<K, D>> prefetchedCommit = prefetched.remove(parentId);
+				if (prefetchedCommit == null) {
+					notPrefetched.add(parentId);
+					continue;
+				}
+				promises.add(prefetchedCommit
+					.then((commit, e) -> e == null ? Promise.of(commit) : repository.loadCommit(parentId)));
+			}
+			if (!notPrefetched.isEmpty()) {
+				Promise<Map<K, OTCommit<K, D>>> batch = repository.loadCommits(notPrefetched);
+				for (K parentId : notPrefetched) {
+					promises.add(batch.map(commits -> getLoaded(commits, parentId)));
+				}
+			}
+			return Promises.toList(promises);
+		}
+
+		void prefetch(Collection<OTCommit<K, D>> commits) {
+			if (stopped) return;
+			int limit = COMMITS_PREFETCH_SIZE - prefetched.size();
+			Set<K> ids = new HashSet<>();
+			for (OTCommit<K, D> commit : commits) {
+				for (K parentId : commit.getParentIds()) {
+					if (ids.size() >= limit) break;
+					if (!visited.contains(parentId) && !prefetched.containsKey(parentId)) {
+						ids.add(parentId);
+					}
+				}
+			}
+			if (ids.isEmpty()) return;
+			Promise<Map<K, OTCommit<K, D>>> batch = repository.loadCommits(ids);
+			for (K id : ids) {
+				prefetched.put(id, batch.map(loaded -> getLoaded(loaded, id)));
+			}
+			batch.whenResult(loaded -> prefetch(loaded.values()));
+		}
+
+		void stop() {
+			stopped = true;
+			prefetched.clear();
+		}
+
+		private static <K, D> OTCommit<K, D> getLoaded(Map<K, OTCommit<K, D>> commits, K id) throws NoCommitException {
+			OTCommit<K, D> commit = commits.get(id);
+			if (commit == null) throw new NoCommitException(id);
+			return commit;
+		}
+	}
+
 	public static final class FindResult<K, A> {
 		private final int epoch;
 		private final K commit;
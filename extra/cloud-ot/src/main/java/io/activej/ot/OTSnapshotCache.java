@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2024 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.ot;
+
+import io.activej.common.exception.MalformedDataException;
+import io.activej.json.JsonCodec;
+import io.activej.ot.json.JsonCodecs;
+import io.activej.ot.uplink.AsyncOTUplink.FetchData;
+import io.activej.promise.Promise;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+
+import static io.activej.async.util.LogUtils.thisMethod;
+import static io.activej.async.util.LogUtils.toLogger;
+import static io.activej.json.JsonUtils.fromJsonBytes;
+import static io.activej.json.JsonUtils.toJsonBytes;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * A local on-disk cache of a single snapshot of an OT state, keyed by its revision.
+ * <p>
+ * Allows {@link OTStateManager} to check out a state by fetching only the diffs
+ * committed after the cached revision, rather than by looking up a snapshot in the repository.
+ */
+public final class OTSnapshotCache<K, D> {
+	private static final Logger logger = LoggerFactory.getLogger(OTSnapshotCache.class);
+
+	private final Executor executor;
+	private final Path file;
+	private final JsonCodec<FetchData<K, D>> codec;
+
+	private OTSnapshotCache(Executor executor, Path file, JsonCodec<FetchData<K, D>> codec) {
+		this.executor = executor;
+		this.file = file;
+		this.codec = codec;
+	}
+
+	public static <K, D> OTSnapshotCache<K, D> create(Executor executor, Path file, JsonCodec<K> idCodec, JsonCodec<D> diffCodec) {
+		return new OTSnapshotCache<>(executor, file, JsonCodecs.ofFetchData(idCodec, diffCodec));
+	}
+
+	/**
+	 * Loads a cached snapshot. A missing or corrupted cache file is treated as an absent snapshot.
+	 */
+	public Promise<Optional<FetchData<K, D>>> load() {
+		return Promise.ofBlocking(executor,
+				() -> {
+					byte[] bytes;
+					try {
+						bytes = Files.readAllBytes(file);
+					} catch (NoSuchFileException e) {
+						return Optional.<FetchData<K, D>>empty();
+					}
+					try {
+						return Optional.of(fromJsonBytes(codec, bytes));
+					} catch (MalformedDataException e) {
+						logger.warn("Snapshot cache file {} is corrupted, ignoring it", file, e);
+						return Optional.<FetchData<K, D>>empty();
+					}
+				})
+			.whenComplete(toLogger(logger, thisMethod(), file));
+	}
+
+	/**
+	 * Atomically replaces a cached snapshot with a given one.
+	 */
+	public Promise<Void> save(FetchData<K, D> snapshot) {
+		return Promise.ofBlocking(executor,
+				() -> {
+					Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+					Files.write(tempFile, toJsonBytes(codec, snapshot));
+					Files.move(tempFile, file, ATOMIC_MOVE, REPLACE_EXISTING);
+				})
+			.whenComplete(toLogger(logger, thisMethod(), file, snapshot.commitId()));
+	}
+
+	public Path getFile() {
+		return file;
+	}
+}
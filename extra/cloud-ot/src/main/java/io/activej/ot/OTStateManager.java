@@ -25,7 +25,11 @@ import io.activej.async.process.AbstractAsyncCloseable;
 import io.activej.async.process.AsyncExecutors;
 import io.activej.async.service.ReactiveService;
 import io.activej.common.ApplicationSettings;
+import io.activej.common.MemSize;
 import io.activej.common.builder.AbstractBuilder;
+import io.activej.jmx.api.attribute.JmxAttribute;
+import io.activej.jmx.stats.EventStats;
+import io.activej.jmx.stats.ValueStats;
 import io.activej.ot.exception.TransformException;
 import io.activej.ot.system.OTSystem;
 import io.activej.ot.uplink.AsyncOTUplink;
@@ -34,18 +38,23 @@ import io.activej.promise.RetryPolicy;
 import io.activej.promise.SettablePromise;
 import io.activej.reactor.AbstractReactive;
 import io.activej.reactor.Reactor;
+import io.activej.reactor.jmx.ReactiveJmxBeanWithStats;
+import io.activej.reactor.schedule.ScheduledRunnable;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
 import java.util.*;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
 import java.util.function.UnaryOperator;
 
 import static io.activej.async.function.AsyncRunnables.ofExecutor;
 import static io.activej.async.util.LogUtils.thisMethod;
 import static io.activej.async.util.LogUtils.toLogger;
+import static io.activej.common.Checks.checkArgument;
 import static io.activej.common.Checks.checkNotNull;
 import static io.activej.common.Checks.checkState;
 import static io.activej.common.Utils.nonNullElseEmpty;
@@ -54,10 +63,11 @@ import static io.activej.promise.Promises.sequence;
 import static io.activej.reactor.Reactive.checkInReactorThread;
 
 public final class OTStateManager<K, D, S extends OTState<D>> extends AbstractReactive
-	implements ReactiveService, StateManager<D, S> {
+	implements ReactiveService, StateManager<D, S>, ReactiveJmxBeanWithStats {
 	private static final Logger logger = LoggerFactory.getLogger(OTStateManager.class);
 
 	public static final int STATE_SUBSCRIBER_BUFFER_SIZE = ApplicationSettings.getInt(OTState.class, "stateSubscriberBufferSize", 128);
+	public static final Duration DEFAULT_SMOOTHING_WINDOW = Duration.ofMinutes(1);
 
 	private final OTSystem<D> otSystem;
 	private final AsyncOTUplink<K, D, Object> uplink;
@@ -86,6 +96,27 @@ public final class OTStateManager<K, D, S extends OTState<D>> extends AbstractRe
 	private @Nullable AsyncRunnable poll;
 	private boolean isPolling;
 
+	private @Nullable OTSnapshotCache<K, D> snapshotCache;
+
+	private int batchMaxDiffs;
+	private long batchMaxDelayMillis;
+	private long batchMaxSize;
+	private @Nullable ToIntFunction<D> diffSizeEstimator;
+
+	private int batchDiffs;
+	private long batchSize;
+	private @Nullable SettablePromise<Void> batchPromise;
+	private @Nullable ScheduledRunnable batchFlush;
+
+	// region JMX
+	private final EventStats commits = EventStats.create(DEFAULT_SMOOTHING_WINDOW);
+	private final ValueStats diffsPerCommit = ValueStats.create(DEFAULT_SMOOTHING_WINDOW);
+	private final ValueStats squashedDiffsPerCommit = ValueStats.create(DEFAULT_SMOOTHING_WINDOW);
+	private @Nullable Duration checkoutDuration;
+	private int checkoutDiffs;
+	private boolean checkoutFromSnapshotCache;
+	// endregion
+
 	@SuppressWarnings("unchecked")
 	private OTStateManager(Reactor reactor, OTSystem<D> otSystem, AsyncOTUplink<K, D, ?> uplink, S state) {
 		super(reactor);
@@ -106,16 +137,66 @@ public final class OTStateManager<K, D, S extends OTState<D>> extends AbstractRe
 		return new OTStateManager<>(reactor, otSystem, repository, state).new Builder();
 	}
 
+	/**
+	 * Synchronizes with the uplink. A batch of pushed diffs, if any, is committed right away
+	 *
+	 * @see #push(List)
+	 */
 	@Override
 	public Promise<Void> catchUp() {
-		return sync.run();
+		return batchPromise != null ? flushBatch() : sync.run();
 	}
 
+	/**
+	 * Applies diffs to the state and commits them.
+	 * <p>
+	 * If commit batching is enabled, diffs of consecutive pushes are accumulated
+	 * and committed as a single squashed commit once the batch is full,
+	 * the maximum batch delay has passed, or {@link #sync()} is called.
+	 *
+	 * @see Builder#withCommitBatching(int, Duration)
+	 */
 	@Override
 	public Promise<Void> push(List<D> diffs) {
 		addAll(diffs);
-		return catchUp()
-			.whenException(e -> reset());
+		if (batchMaxDiffs == 0) {
+			return catchUp()
+				.whenException(e -> reset());
+		}
+
+		batchDiffs += diffs.size();
+		if (diffSizeEstimator != null) {
+			for (D diff : diffs) {
+				batchSize += diffSizeEstimator.applyAsInt(diff);
+			}
+		}
+		if (batchPromise == null) {
+			batchPromise = new SettablePromise<>();
+		}
+		SettablePromise<Void> promise = batchPromise;
+		if (batchDiffs >= batchMaxDiffs || (diffSizeEstimator != null && batchSize >= batchMaxSize)) {
+			flushBatch();
+		} else if (batchFlush == null) {
+			batchFlush = reactor.delay(batchMaxDelayMillis, this::flushBatch);
+		}
+		return promise;
+	}
+
+	private Promise<Void> flushBatch() {
+		if (batchFlush != null) {
+			batchFlush.cancel();
+			batchFlush = null;
+		}
+		SettablePromise<Void> promise = batchPromise;
+		batchPromise = null;
+		batchDiffs = 0;
+		batchSize = 0;
+		if (promise == null) return sync.run();
+		// a sync in progress may have already committed working diffs, so batched diffs need another sync
+		(isSyncing() ? sync.run().then(sync::run) : sync.run())
+			.whenException(e -> reset())
+			.subscribe(promise);
+		return promise;
 	}
 
 	@Override
@@ -147,6 +228,43 @@ public final class OTStateManager<K, D, S extends OTState<D>> extends AbstractRe
 			return this;
 		}
 
+		/**
+		 * Uses a local snapshot cache on checkout. If the cache holds a snapshot,
+		 * only the diffs committed after its revision are fetched from the uplink.
+		 * The cache is updated with a checked out state after each checkout.
+		 */
+		public Builder withSnapshotCache(OTSnapshotCache<K, D> snapshotCache) {
+			checkNotBuilt(this);
+			OTStateManager.this.snapshotCache = snapshotCache;
+			return this;
+		}
+
+		/**
+		 * Enables batching of pushed diffs. Diffs of consecutive {@link #push(List)} calls
+		 * are committed together, once a given number of diffs has been pushed,
+		 * or once a given delay has passed since the first push of a batch.
+		 */
+		public Builder withCommitBatching(int maxDiffs, Duration maxDelay) {
+			checkNotBuilt(this);
+			checkArgument(maxDiffs > 0, "Max diffs in a batch must be positive");
+			OTStateManager.this.batchMaxDiffs = maxDiffs;
+			OTStateManager.this.batchMaxDelayMillis = maxDelay.toMillis();
+			return this;
+		}
+
+		/**
+		 * Limits an estimated size of a batch of pushed diffs.
+		 * Has effect only if batching is enabled.
+		 *
+		 * @see #withCommitBatching(int, Duration)
+		 */
+		public Builder withCommitBatchMaxSize(MemSize maxSize, ToIntFunction<D> diffSizeEstimator) {
+			checkNotBuilt(this);
+			OTStateManager.this.batchMaxSize = maxSize.toLong();
+			OTStateManager.this.diffSizeEstimator = diffSizeEstimator;
+			return this;
+		}
+
 		@Override
 		protected OTStateManager<K, D, S> doBuild() {
 			return OTStateManager.this;
@@ -165,25 +283,56 @@ public final class OTStateManager<K, D, S extends OTState<D>> extends AbstractRe
 		checkInReactorThread(this);
 		poll = null;
 		return isValid() ?
-			catchUp().whenComplete(this::invalidateInternalState) :
+			flushBatch().whenComplete(this::invalidateInternalState) :
 			Promise.complete();
 	}
 
 	public Promise<Void> checkout() {
 		checkInReactorThread(this);
 		checkState(commitId == null);
-		return uplink.checkout()
+		long checkoutTimestamp = reactor.currentTimeMillis();
+		checkoutFromSnapshotCache = false;
+		return (snapshotCache == null ? uplink.checkout() : checkoutWithSnapshotCache(snapshotCache))
 			.whenResult(checkoutData -> {
 				state.init();
 				apply(checkoutData.diffs());
 
 				commitId = originCommitId = checkoutData.commitId();
 				level = originLevel = checkoutData.level();
+
+				checkoutDuration = Duration.ofMillis(reactor.currentTimeMillis() - checkoutTimestamp);
+				checkoutDiffs = checkoutData.diffs().size();
+				logger.info("Checked out revision {} in {} ({} diffs{})", commitId, checkoutDuration, checkoutDiffs,
+					checkoutFromSnapshotCache ? ", from snapshot cache" : "");
 			})
 			.toVoid()
 			.whenComplete(toLogger(logger, thisMethod(), this));
 	}
 
+	private Promise<AsyncOTUplink.FetchData<K, D>> checkoutWithSnapshotCache(OTSnapshotCache<K, D> snapshotCache) {
+		return snapshotCache.load()
+			.then((maybeSnapshot, e) -> {
+				if (e != null || maybeSnapshot.isEmpty()) return uplink.checkout();
+				AsyncOTUplink.FetchData<K, D> snapshot = maybeSnapshot.get();
+				return uplink.fetch(snapshot.commitId())
+					.then(
+						fetchData -> {
+							checkoutFromSnapshotCache = true;
+							return Promise.of(new AsyncOTUplink.FetchData<>(
+								fetchData.commitId(),
+								fetchData.level(),
+								otSystem.squash(concat(snapshot.diffs(), fetchData.diffs()))));
+						},
+						e2 -> {
+							logger.warn("Could not fetch diffs from cached snapshot revision {}, falling back to checkout",
+								snapshot.commitId(), e2);
+							return uplink.checkout();
+						});
+			})
+			.whenResult(checkoutData -> snapshotCache.save(checkoutData)
+				.whenException(e -> logger.warn("Could not save snapshot cache", e)));
+	}
+
 	@SuppressWarnings("BooleanMethodIsAlwaysInverted")
 	private boolean isSyncing() {
 		return isSyncing;
@@ -193,8 +342,11 @@ public final class OTStateManager<K, D, S extends OTState<D>> extends AbstractRe
 		return isPolling;
 	}
 
+	/**
+	 * Same as {@link #catchUp()}
+	 */
 	public Promise<Void> sync() {
-		return sync.run();
+		return catchUp();
 	}
 
 	/**
@@ -315,6 +467,9 @@ public final class OTStateManager<K, D, S extends OTState<D>> extends AbstractRe
 		List<D> diffs = new ArrayList<>(otSystem.squash(workingDiffs));
 		return uplink.createProtoCommit(commitId, diffs, level)
 			.whenResult(protoCommit -> {
+				commits.recordEvent();
+				diffsPerCommit.recordValue(originalSize);
+				squashedDiffsPerCommit.recordValue(diffs.size());
 				assert pendingProtoCommit == null;
 				pendingProtoCommit = protoCommit;
 				pendingProtoCommitDiffs = diffs;
@@ -414,6 +569,15 @@ public final class OTStateManager<K, D, S extends OTState<D>> extends AbstractRe
 		pendingProtoCommitDiffs = null;
 
 		poll = null;
+
+		if (batchFlush != null) {
+			batchFlush.cancel();
+			batchFlush = null;
+		}
+		if (batchPromise != null) {
+			batchPromise.setException(new AsyncCloseException("State manager has been invalidated"));
+			batchPromise = null;
+		}
 	}
 
 	public K getCommitId() {
@@ -444,6 +608,36 @@ public final class OTStateManager<K, D, S extends OTState<D>> extends AbstractRe
 		return uplink;
 	}
 
+	@JmxAttribute
+	public @Nullable Duration getCheckoutDuration() {
+		return checkoutDuration;
+	}
+
+	@JmxAttribute
+	public int getCheckoutDiffs() {
+		return checkoutDiffs;
+	}
+
+	@JmxAttribute
+	public boolean isCheckoutFromSnapshotCache() {
+		return checkoutFromSnapshotCache;
+	}
+
+	@JmxAttribute
+	public EventStats getCommits() {
+		return commits;
+	}
+
+	@JmxAttribute
+	public ValueStats getDiffsPerCommit() {
+		return diffsPerCommit;
+	}
+
+	@JmxAttribute
+	public ValueStats getSquashedDiffsPerCommit() {
+		return squashedDiffsPerCommit;
+	}
+
 	private final class StateChangesListener extends AbstractAsyncCloseable implements StateChangesSupplier<D> {
 		private final Queue<D> diffs = new ArrayDeque<>(STATE_SUBSCRIBER_BUFFER_SIZE);
 		private final Predicate<D> predicate;
@@ -19,6 +19,7 @@ package io.activej.ot.repository;
 import io.activej.async.function.AsyncSupplier;
 import io.activej.ot.AsyncOTCommitFactory;
 import io.activej.ot.OTCommit;
+import io.activej.ot.exception.NoCommitException;
 import io.activej.promise.Promise;
 import io.activej.promise.Promises;
 
@@ -95,6 +96,25 @@ public interface AsyncOTRepository<K, D> extends AsyncOTCommitFactory<K, D> {
 
 	Promise<OTCommit<K, D>> loadCommit(K revisionId);
 
+	/**
+	 * Loads several commits at once. Commits that are not present in the repository
+	 * are omitted from the resulting map.
+	 * <p>
+	 * The default implementation loads commits one by one in parallel, implementations
+	 * backed by a remote storage are encouraged to load a whole batch in a single request.
+	 */
+	default Promise<Map<K, OTCommit<K, D>>> loadCommits(Set<K> revisionIds) {
+		return Promises.toList(revisionIds.stream()
+				.map(id -> loadCommit(id)
+					.map(Optional::of, e -> {
+						if (e instanceof NoCommitException) return Optional.<OTCommit<K, D>>empty();
+						throw e;
+					})))
+			.map(list -> list.stream()
+				.flatMap(Optional::stream)
+				.collect(toMap(OTCommit::getId, commit -> commit)));
+	}
+
 	default Promise<Boolean> hasSnapshot(K revisionId) {
 		return loadSnapshot(revisionId).map(Optional::isPresent);
 	}
@@ -17,7 +17,9 @@
 package io.activej.ot.repository;
 
 import io.activej.async.function.AsyncSupplier;
+import io.activej.common.ApplicationSettings;
 import io.activej.common.builder.AbstractBuilder;
+import io.activej.common.exception.MalformedDataException;
 import io.activej.jmx.api.attribute.JmxAttribute;
 import io.activej.json.JsonCodec;
 import io.activej.json.JsonCodecs;
@@ -45,7 +47,9 @@ import java.util.stream.Stream;
 
 import static io.activej.async.util.LogUtils.thisMethod;
 import static io.activej.async.util.LogUtils.toLogger;
+import static io.activej.common.Checks.checkArgument;
 import static io.activej.common.Checks.checkNotNull;
+import static io.activej.common.collection.CollectionUtils.concat;
 import static io.activej.json.JsonUtils.fromJson;
 import static io.activej.json.JsonUtils.toJson;
 import static io.activej.promise.Promises.retry;
@@ -61,6 +65,7 @@ public final class MySqlOTRepository<D> extends AbstractReactive
 	public static final String DEFAULT_REVISION_TABLE = "ot_revisions";
 	public static final String DEFAULT_DIFFS_TABLE = "ot_diffs";
 	public static final String DEFAULT_BACKUP_TABLE = "ot_revisions_backup";
+	public static final int MAX_SNAPSHOT_CHAIN_LENGTH = ApplicationSettings.getInt(MySqlOTRepository.class, "maxSnapshotChainLength", 1000);
 
 	private final Executor executor;
 
@@ -77,11 +82,15 @@ public final class MySqlOTRepository<D> extends AbstractReactive
 
 	private String createdBy = null;
 
+	private int maxSnapshotChainLength;
+	private @Nullable SavedSnapshot<D> lastSnapshot;
+
 	private final PromiseStats promiseCreateCommitId = PromiseStats.create(DEFAULT_SMOOTHING_WINDOW);
 	private final PromiseStats promisePush = PromiseStats.create(DEFAULT_SMOOTHING_WINDOW);
 	private final PromiseStats promiseGetHeads = PromiseStats.create(DEFAULT_SMOOTHING_WINDOW);
 	private final PromiseStats promiseHasCommit = PromiseStats.create(DEFAULT_SMOOTHING_WINDOW);
 	private final PromiseStats promiseLoadCommit = PromiseStats.create(DEFAULT_SMOOTHING_WINDOW);
+	private final PromiseStats promiseLoadCommits = PromiseStats.create(DEFAULT_SMOOTHING_WINDOW);
 	private final PromiseStats promiseIsSnapshot = PromiseStats.create(DEFAULT_SMOOTHING_WINDOW);
 	private final PromiseStats promiseUpdateHeads = PromiseStats.create(DEFAULT_SMOOTHING_WINDOW);
 	private final PromiseStats promiseHasSnapshot = PromiseStats.create(DEFAULT_SMOOTHING_WINDOW);
@@ -131,6 +140,30 @@ public final class MySqlOTRepository<D> extends AbstractReactive
 			return this;
 		}
 
+		/**
+		 * Enables incremental snapshots. A snapshot is stored as a delta on top of the last
+		 * snapshot saved or loaded by this repository, as long as the delta is smaller than
+		 * the full snapshot and the chain of deltas does not exceed a given length.
+		 * <p>
+		 * Requires a {@code snapshot_base} column in the revisions table
+		 * (see {@code sql/ot_revisions.sql}), it is added by {@link #initialize()}
+		 * to tables created by an older version.
+		 * <p>
+		 * Snapshots stored as chains longer than a given length (as well as cyclic ones)
+		 * are treated as missing when loaded.
+		 *
+		 * @param maxSnapshotChainLength maximum number of deltas applied on top of a full snapshot,
+		 *                               at most {@link #MAX_SNAPSHOT_CHAIN_LENGTH}
+		 */
+		public Builder withIncrementalSnapshots(int maxSnapshotChainLength) {
+			checkNotBuilt(this);
+			checkArgument(maxSnapshotChainLength > 0, "Chain length must be positive");
+			checkArgument(maxSnapshotChainLength <= MAX_SNAPSHOT_CHAIN_LENGTH,
+				"Chain length cannot exceed " + MAX_SNAPSHOT_CHAIN_LENGTH);
+			MySqlOTRepository.this.maxSnapshotChainLength = maxSnapshotChainLength;
+			return this;
+		}
+
 		@Override
 		protected MySqlOTRepository<D> doBuild() {
 			return MySqlOTRepository.this;
@@ -159,6 +192,10 @@ public final class MySqlOTRepository<D> extends AbstractReactive
 		logger.trace("Initializing tables");
 		execute(dataSource, sql(new String(loadResource("sql/ot_diffs.sql"), UTF_8)));
 		execute(dataSource, sql(new String(loadResource("sql/ot_revisions.sql"), UTF_8)));
+		if (maxSnapshotChainLength != 0 && !hasColumn(tableRevision, "snapshot_base")) {
+			logger.info("Adding snapshot base column to table {}", tableRevision);
+			execute(dataSource, sql(new String(loadResource("sql/ot_revisions_snapshot_base.sql"), UTF_8)));
+		}
 		if (tableBackup != null) {
 			execute(dataSource, sql(new String(loadResource("sql/ot_revisions_backup.sql"), UTF_8)));
 		}
@@ -171,6 +208,15 @@ public final class MySqlOTRepository<D> extends AbstractReactive
 		}
 	}
 
+	private boolean hasColumn(String table, String column) throws SQLException {
+		try (
+			Connection connection = dataSource.getConnection();
+			ResultSet resultSet = connection.getMetaData().getColumns(connection.getCatalog(), null, table, column)
+		) {
+			return resultSet.next();
+		}
+	}
+
 	private static void execute(DataSource dataSource, String sql) throws SQLException {
 		try (
 			Connection connection = dataSource.getConnection();
@@ -333,54 +379,86 @@ public final class MySqlOTRepository<D> extends AbstractReactive
 		return Promise.ofBlocking(executor,
 				() -> {
 					try (Connection connection = dataSource.getConnection()) {
-						Map<Long, DiffsWithLevel<D>> parentDiffs = new HashMap<>();
-
-						int epoch = 0;
-						long timestamp = 0;
-
-						try (PreparedStatement ps = connection.prepareStatement(sql("""
-							SELECT
-							  {revisions}.`epoch`,
-							  {revisions}.`level`,
-							  UNIX_TIMESTAMP({revisions}.`timestamp`) AS `timestamp`,
-							  {diffs}.`parent_id`,
-							  {diffs}.`diff`
-							FROM {revisions}
-							LEFT JOIN {diffs}
-								   ON {diffs}.`revision_id`={revisions}.`id`
-							WHERE {revisions}.`id` = ?
-							  AND {revisions}.`type` IN ('HEAD', 'INNER')
-							"""))
-						) {
-							ps.setLong(1, revisionId);
-							ResultSet resultSet = ps.executeQuery();
-
-							while (resultSet.next()) {
-								epoch = resultSet.getInt(1);
-								long level = resultSet.getLong(2);
-								timestamp = resultSet.getLong(3) * 1000L;
-								long parentId = resultSet.getLong(4);
-								String diffString = resultSet.getString(5);
-								if (diffString != null) {
-									List<D> diff = fromJson(codec, diffString);
-									parentDiffs.put(parentId, new DiffsWithLevel<>(level - 1, diff));
-								}
-							}
-						}
-
-						if (timestamp == 0) {
+						OTCommit<Long, D> commit = doLoadCommits(connection, Set.of(revisionId)).get(revisionId);
+						if (commit == null) {
 							throw new NoCommitException(revisionId);
 						}
-
-						return OTCommit.builder(epoch, revisionId, parentDiffs)
-							.withTimestamp(timestamp)
-							.build();
+						return commit;
 					}
 				})
 			.whenComplete(promiseLoadCommit.recordStats())
 			.whenComplete(toLogger(logger, thisMethod(), revisionId));
 	}
 
+	@Override
+	public Promise<Map<Long, OTCommit<Long, D>>> loadCommits(Set<Long> revisionIds) {
+		checkInReactorThread(this);
+		if (revisionIds.isEmpty()) return Promise.of(Map.of());
+		return Promise.ofBlocking(executor,
+				() -> {
+					try (Connection connection = dataSource.getConnection()) {
+						return doLoadCommits(connection, revisionIds);
+					}
+				})
+			.whenComplete(promiseLoadCommits.recordStats())
+			.whenComplete(toLogger(logger, thisMethod(), revisionIds));
+	}
+
+	private Map<Long, OTCommit<Long, D>> doLoadCommits(Connection connection, Set<Long> revisionIds)
+		throws SQLException, MalformedDataException {
+		Map<Long, Map<Long, DiffsWithLevel<D>>> parentDiffs = new HashMap<>();
+		Map<Long, Integer> epochs = new HashMap<>();
+		Map<Long, Long> timestamps = new HashMap<>();
+
+		try (PreparedStatement ps = connection.prepareStatement(sql("""
+			SELECT
+			  {revisions}.`id`,
+			  {revisions}.`epoch`,
+			  {revisions}.`level`,
+			  UNIX_TIMESTAMP({revisions}.`timestamp`) AS `timestamp`,
+			  {diffs}.`parent_id`,
+			  {diffs}.`diff`
+			FROM {revisions}
+			LEFT JOIN {diffs}
+				   ON {diffs}.`revision_id`={revisions}.`id`
+			WHERE {revisions}.`id` IN $ids
+			  AND {revisions}.`type` IN ('HEAD', 'INNER')
+			"""
+			.replace("$ids", placeholders(revisionIds.size()))))
+		) {
+			int pos = 1;
+			for (Long revisionId : revisionIds) {
+				ps.setLong(pos++, revisionId);
+			}
+			ResultSet resultSet = ps.executeQuery();
+
+			while (resultSet.next()) {
+				long id = resultSet.getLong(1);
+				epochs.put(id, resultSet.getInt(2));
+				long level = resultSet.getLong(3);
+				timestamps.put(id, resultSet.getLong(4) * 1000L);
+				Map<Long, DiffsWithLevel<D>> diffs = parentDiffs.computeIfAbsent(id, $ -> new HashMap<>());
+				long parentId = resultSet.getLong(5);
+				String diffString = resultSet.getString(6);
+				if (diffString != null) {
+					List<D> diff = fromJson(codec, diffString);
+					diffs.put(parentId, new DiffsWithLevel<>(level - 1, diff));
+				}
+			}
+		}
+
+		Map<Long, OTCommit<Long, D>> commits = new HashMap<>();
+		for (Map.Entry<Long, Map<Long, DiffsWithLevel<D>>> entry : parentDiffs.entrySet()) {
+			long id = entry.getKey();
+			long timestamp = timestamps.get(id);
+			if (timestamp == 0) continue;
+			commits.put(id, OTCommit.builder(epochs.get(id), id, entry.getValue())
+				.withTimestamp(timestamp)
+				.build());
+		}
+		return commits;
+	}
+
 	@Override
 	public Promise<Boolean> hasSnapshot(Long revisionId) {
 		checkInReactorThread(this);
@@ -409,50 +487,130 @@ public final class MySqlOTRepository<D> extends AbstractReactive
 		checkInReactorThread(this);
 		return Promise.ofBlocking(executor,
 				() -> {
-					try (
-						Connection connection = dataSource.getConnection();
-						PreparedStatement ps = connection.prepareStatement(sql("""
-							SELECT `snapshot`
-							FROM {revisions} WHERE `id`=?
-							"""))
-					) {
-						ps.setLong(1, revisionId);
-						ResultSet resultSet = ps.executeQuery();
-
-						if (!resultSet.next()) return Optional.<List<D>>empty();
-
-						String str = resultSet.getString(1);
-						if (str == null) return Optional.<List<D>>empty();
-						List<? extends D> snapshot = fromJson(codec, str);
-						return Optional.of(otSystem.squash(snapshot));
+					try (Connection connection = dataSource.getConnection()) {
+						return doLoadSnapshot(connection, revisionId);
 					}
 				})
+			.whenResult(maybeSnapshot -> maybeSnapshot.ifPresent(snapshot -> lastSnapshot = snapshot))
+			.map(maybeSnapshot -> maybeSnapshot.map(SavedSnapshot::diffs))
 			.whenComplete(promiseLoadSnapshot.recordStats())
 			.whenComplete(toLogger(logger, thisMethod(), revisionId));
 	}
 
+	private Optional<SavedSnapshot<D>> doLoadSnapshot(Connection connection, long revisionId)
+		throws SQLException, MalformedDataException {
+		if (maxSnapshotChainLength == 0) {
+			try (PreparedStatement ps = connection.prepareStatement(sql("""
+				SELECT `snapshot`
+				FROM {revisions} WHERE `id`=?
+				"""))
+			) {
+				ps.setLong(1, revisionId);
+				ResultSet resultSet = ps.executeQuery();
+
+				if (!resultSet.next()) return Optional.empty();
+
+				String str = resultSet.getString(1);
+				if (str == null) return Optional.empty();
+				List<? extends D> snapshot = fromJson(codec, str);
+				return Optional.of(new SavedSnapshot<>(revisionId, otSystem.squash(snapshot), 0));
+			}
+		}
+
+		List<List<D>> deltas = new ArrayList<>();
+		Set<Long> visited = new HashSet<>();
+		long id = revisionId;
+		while (true) {
+			if (!visited.add(id)) {
+				logger.warn("Snapshot {} is stored as a cyclic chain of deltas, base {} is repeated", revisionId, id);
+				return Optional.empty();
+			}
+			try (PreparedStatement ps = connection.prepareStatement(sql("""
+				SELECT `snapshot`, `snapshot_base`
+				FROM {revisions} WHERE `id`=?
+				"""))
+			) {
+				ps.setLong(1, id);
+				ResultSet resultSet = ps.executeQuery();
+
+				if (!resultSet.next() || resultSet.getString(1) == null) {
+					if (id != revisionId) {
+						logger.warn("Base snapshot {} of snapshot {} is missing", id, revisionId);
+					}
+					return Optional.empty();
+				}
+
+				deltas.add(fromJson(codec, resultSet.getString(1)));
+				long baseId = resultSet.getLong(2);
+				if (resultSet.wasNull()) break;
+				if (deltas.size() > maxSnapshotChainLength) {
+					logger.warn("Snapshot {} is stored as a chain of more than {} deltas, ignoring it", revisionId, maxSnapshotChainLength);
+					return Optional.empty();
+				}
+				id = baseId;
+			}
+		}
+
+		Collections.reverse(deltas);
+		List<D> snapshot = otSystem.squash(deltas.stream().flatMap(List::stream).toList());
+		return Optional.of(new SavedSnapshot<>(revisionId, snapshot, deltas.size() - 1));
+	}
+
 	@Override
 	public Promise<Void> saveSnapshot(Long revisionId, List<D> diffs) {
 		checkInReactorThread(this);
+		SavedSnapshot<D> base = maxSnapshotChainLength != 0 &&
+			lastSnapshot != null &&
+			lastSnapshot.revisionId() != revisionId &&
+			lastSnapshot.chainLength() < maxSnapshotChainLength ?
+			lastSnapshot :
+			null;
 		return Promise.ofBlocking(executor,
 				() -> {
 					try (Connection connection = dataSource.getConnection()) {
 						connection.setAutoCommit(true);
 						connection.setTransactionIsolation(TRANSACTION_READ_COMMITTED);
 
-						String snapshot = toJson(codec, otSystem.squash(diffs));
-						try (PreparedStatement ps = connection.prepareStatement(sql("""
-							UPDATE {revisions}
-							SET `snapshot` = ?
-							WHERE `id` = ?
-							"""))
-						) {
-							ps.setString(1, snapshot);
-							ps.setLong(2, revisionId);
-							ps.executeUpdate();
+						List<D> squashed = otSystem.squash(diffs);
+						String snapshot = toJson(codec, squashed);
+						Long baseId = null;
+						if (base != null) {
+							String delta = toJson(codec, otSystem.squash(concat(otSystem.invert(base.diffs()), squashed)));
+							if (delta.length() < snapshot.length()) {
+								snapshot = delta;
+								baseId = base.revisionId();
+							}
+						}
+
+						if (maxSnapshotChainLength == 0) {
+							try (PreparedStatement ps = connection.prepareStatement(sql("""
+								UPDATE {revisions}
+								SET `snapshot` = ?
+								WHERE `id` = ?
+								"""))
+							) {
+								ps.setString(1, snapshot);
+								ps.setLong(2, revisionId);
+								ps.executeUpdate();
+							}
+						} else {
+							try (PreparedStatement ps = connection.prepareStatement(sql("""
+								UPDATE {revisions}
+								SET `snapshot` = ?, `snapshot_base` = ?
+								WHERE `id` = ?
+								"""))
+							) {
+								ps.setString(1, snapshot);
+								ps.setObject(2, baseId);
+								ps.setLong(3, revisionId);
+								ps.executeUpdate();
+							}
 						}
+						return new SavedSnapshot<>(revisionId, squashed, baseId == null ? 0 : base.chainLength() + 1);
 					}
 				})
+			.whenResult(snapshot -> lastSnapshot = snapshot)
+			.toVoid()
 			.whenComplete(promiseSaveSnapshot.recordStats())
 			.whenComplete(toLogger(logger, thisMethod(), revisionId, diffs));
 	}
@@ -485,7 +643,20 @@ public final class MySqlOTRepository<D> extends AbstractReactive
 										WHERE t.`id` = ?
 										) AS t2
 									) - 1
-							"""))
+								$keepSnapshotBases
+							"""
+							.replace("$keepSnapshotBases", maxSnapshotChainLength == 0 ? "" : """
+								AND `id` NOT IN
+									(
+									SELECT t3.`snapshot_base`
+									FROM
+										(
+										SELECT `snapshot_base`
+										FROM {revisions}
+										WHERE `snapshot_base` IS NOT NULL
+										) AS t3
+									)
+								""")))
 						) {
 							ps.setLong(1, minId);
 							ps.executeUpdate();
@@ -542,10 +713,7 @@ public final class MySqlOTRepository<D> extends AbstractReactive
 			WHERE `id` IN $ids
 			"""
 			.replace("$type", type)
-			.replace("$ids",
-				Stream.generate(() -> "?")
-					.limit(heads.size())
-					.collect(joining(", ", "(", ")")))))
+			.replace("$ids", placeholders(heads.size()))))
 		) {
 			int pos = 1;
 			for (Long id : heads) {
@@ -555,6 +723,15 @@ public final class MySqlOTRepository<D> extends AbstractReactive
 		}
 	}
 
+	private static String placeholders(int count) {
+		return Stream.generate(() -> "?")
+			.limit(count)
+			.collect(joining(", ", "(", ")"));
+	}
+
+	private record SavedSnapshot<D>(long revisionId, List<D> diffs, int chainLength) {
+	}
+
 	@JmxAttribute
 	public PromiseStats getPromiseCreateCommitId() {
 		return promiseCreateCommitId;
@@ -580,6 +757,11 @@ public final class MySqlOTRepository<D> extends AbstractReactive
 		return promiseLoadCommit;
 	}
 
+	@JmxAttribute
+	public PromiseStats getPromiseLoadCommits() {
+		return promiseLoadCommits;
+	}
+
 	@JmxAttribute
 	public PromiseStats getPromiseIsSnapshot() {
 		return promiseIsSnapshot;
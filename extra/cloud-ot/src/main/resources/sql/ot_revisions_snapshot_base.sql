@@ -0,0 +1,2 @@
+ALTER TABLE `{revisions}`
+    ADD COLUMN `snapshot_base` bigint DEFAULT NULL AFTER `snapshot`;
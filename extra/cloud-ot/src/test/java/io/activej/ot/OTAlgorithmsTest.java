@@ -7,6 +7,7 @@ import io.activej.ot.utils.StubOTRepository;
 import io.activej.ot.utils.TestOp;
 import io.activej.ot.utils.TestOpOTState;
 import io.activej.ot.utils.Utils;
+import io.activej.promise.Promise;
 import io.activej.test.rules.EventloopRule;
 import org.junit.Before;
 import org.junit.ClassRule;
@@ -22,6 +23,7 @@ import static io.activej.promise.TestUtils.awaitException;
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class OTAlgorithmsTest {
 
@@ -83,6 +85,27 @@ public class OTAlgorithmsTest {
 		assertEquals(15, opState.getValue());
 	}
 
+	@Test
+	public void testFindParentLoadsEachCommitOnce() {
+		REPOSITORY.setGraph(g -> {
+			for (int i = 0; i < 100; i++) {
+				g.add(i, i + 1, add(1));
+				g.add(i, i + 1000, add(1));
+				g.add(i + 1000, i + 1, add(0));
+			}
+		});
+
+		FindResult<Integer, List<TestOp>> result = await(findParent(REPOSITORY, TEST_OP, Set.of(100), DiffsReducer.toList(),
+			commit -> Promise.of(commit.getId() == 0)));
+		assertEquals(100, applyToState(result.getAccumulatedDiffs()));
+
+		List<Integer> loaded = REPOSITORY.loadedBatches.stream()
+			.flatMap(Set::stream)
+			.toList();
+		assertEquals(Set.copyOf(loaded).size(), loaded.size());
+		assertTrue(REPOSITORY.loadedBatches.stream().anyMatch(batch -> batch.size() > 1));
+	}
+
 	@Test
 	public void testReduceEdges() {
 		REPOSITORY.setGraph(g -> {
@@ -3,7 +3,9 @@ package io.activej.ot;
 import io.activej.async.function.AsyncSupplier;
 import io.activej.ot.repository.AsyncOTRepository;
 import io.activej.ot.system.OTSystem;
+import io.activej.json.JsonCodecs;
 import io.activej.ot.uplink.AsyncOTUplink;
+import io.activej.ot.uplink.AsyncOTUplink.FetchData;
 import io.activej.ot.uplink.OTUplink;
 import io.activej.ot.utils.StubOTRepository;
 import io.activej.ot.utils.TestOp;
@@ -15,11 +17,17 @@ import io.activej.test.ExpectedException;
 import io.activej.test.rules.EventloopRule;
 import org.junit.Before;
 import org.junit.ClassRule;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static io.activej.ot.OTCommit.ofCommit;
 import static io.activej.ot.OTCommit.ofRoot;
@@ -37,6 +45,9 @@ public class OTStateManagerTest {
 	@ClassRule
 	public static final EventloopRule eventloopRule = new EventloopRule();
 
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
 	private StubOTRepository<Integer, TestOp> repository;
 	private OTUplink<Integer, TestOp, OTCommit<Integer, TestOp>> uplink;
 	private OTStateManager<Integer, TestOp, TestOpOTState> stateManager;
@@ -436,6 +447,83 @@ public class OTStateManagerTest {
 		assertEquals(41, testOpState.getValue());
 	}
 
+	@Test
+	public void testCommitBatching() {
+		OTStateManager<Integer, TestOp, TestOpOTState> stateManager = OTStateManager.builder(getCurrentReactor(), SYSTEM, uplink, testOpState)
+			.withCommitBatching(3, Duration.ofMillis(10))
+			.build();
+		initializeRepository(repository, stateManager);
+		int initialCommits = repository.commits.size();
+
+		Promise<Void> push1 = stateManager.push(List.of(add(1)));
+		Promise<Void> push2 = stateManager.push(List.of(add(1), add(1)));
+		await(push1, push2);
+		assertEquals(1, stateManager.getCommits().getTotalCount());
+		assertEquals(initialCommits + 1, repository.commits.size());
+
+		Promise<Void> push3 = stateManager.push(List.of(add(1)));
+		assertFalse(push3.isComplete());
+		await(push3);
+		assertEquals(2, stateManager.getCommits().getTotalCount());
+		assertEquals(initialCommits + 2, repository.commits.size());
+		assertEquals(4, testOpState.getValue());
+		assertFalse(stateManager.hasWorkingDiffs());
+	}
+
+	@Test
+	public void testSyncFlushesCommitBatch() {
+		OTStateManager<Integer, TestOp, TestOpOTState> stateManager = OTStateManager.builder(getCurrentReactor(), SYSTEM, uplink, testOpState)
+			.withCommitBatching(3, Duration.ofHours(1))
+			.build();
+		initializeRepository(repository, stateManager);
+		int initialCommits = repository.commits.size();
+
+		Promise<Void> push = stateManager.push(List.of(add(1)));
+		await(stateManager.sync());
+		assertTrue(push.isResult());
+		assertEquals(1, stateManager.getCommits().getTotalCount());
+		assertEquals(initialCommits + 1, repository.commits.size());
+		assertFalse(stateManager.hasWorkingDiffs());
+	}
+
+	@Test
+	public void testCheckoutWithSnapshotCache() throws IOException {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		OTSnapshotCache<Integer, TestOp> snapshotCache = OTSnapshotCache.create(executor,
+			temporaryFolder.newFolder().toPath().resolve("snapshot.json"), JsonCodecs.ofInteger(), TEST_OP_CODEC);
+		for (int i = 1; i <= 5; i++) {
+			repository.doPushAndUpdateHead(ofCommit(0, i, i - 1, List.of(add(1)), i + 1L));
+		}
+
+		TestOpOTState state1 = new TestOpOTState();
+		OTStateManager<Integer, TestOp, TestOpOTState> stateManager1 = OTStateManager.builder(getCurrentReactor(), SYSTEM, uplink, state1)
+			.withSnapshotCache(snapshotCache)
+			.build();
+		await(stateManager1.checkout());
+		assertEquals(5, state1.getValue());
+		assertFalse(stateManager1.isCheckoutFromSnapshotCache());
+		assertNotNull(stateManager1.getCheckoutDuration());
+
+		// snapshots are no longer available in the repository, only the local cache can be used
+		repository.snapshots.clear();
+		for (int i = 6; i <= 7; i++) {
+			repository.doPushAndUpdateHead(ofCommit(0, i, i - 1, List.of(add(1)), i + 1L));
+		}
+
+		TestOpOTState state2 = new TestOpOTState();
+		OTStateManager<Integer, TestOp, TestOpOTState> stateManager2 = OTStateManager.builder(getCurrentReactor(), SYSTEM, uplink, state2)
+			.withSnapshotCache(snapshotCache)
+			.build();
+		await(stateManager2.checkout());
+		assertEquals(7, state2.getValue());
+		assertEquals((Integer) 7, stateManager2.getCommitId());
+		assertTrue(stateManager2.isCheckoutFromSnapshotCache());
+
+		FetchData<Integer, TestOp> cached = await(snapshotCache.load()).orElseThrow();
+		assertEquals((Integer) 7, cached.commitId());
+		executor.shutdown();
+	}
+
 	abstract static class OTUplinkDecorator extends ImplicitlyReactive
 		implements AsyncOTUplink<Integer, TestOp, OTCommit<Integer, TestOp>> {
 
@@ -13,7 +13,9 @@ import java.util.stream.Stream;
 
 import static io.activej.common.Checks.checkNotNull;
 import static io.activej.reactor.Reactive.checkInReactorThread;
+import static java.util.function.Function.identity;
 import static java.util.function.Predicate.not;
+import static java.util.stream.Collectors.toMap;
 import static java.util.stream.Collectors.toSet;
 
 public final class StubOTRepository<K, D> extends ImplicitlyReactive
@@ -24,6 +26,7 @@ public final class StubOTRepository<K, D> extends ImplicitlyReactive
 	public final Map<K, OTCommit<K, D>> commits = new LinkedHashMap<>();
 	public final Set<K> heads = new HashSet<>();
 	public final Map<K, List<D>> snapshots = new LinkedHashMap<>();
+	public final List<Set<K>> loadedBatches = new ArrayList<>();
 
 	private StubOTRepository(Supplier<K> revisionIdSupplier) {
 		this.revisionIdSupplier = revisionIdSupplier;
@@ -119,6 +122,15 @@ public final class StubOTRepository<K, D> extends ImplicitlyReactive
 		return Promise.of(doLoadCommit(revisionId));
 	}
 
+	@Override
+	public Promise<Map<K, OTCommit<K, D>>> loadCommits(Set<K> revisionIds) {
+		checkInReactorThread(this);
+		loadedBatches.add(revisionIds);
+		return Promise.of(revisionIds.stream()
+			.filter(commits::containsKey)
+			.collect(toMap(identity(), this::doLoadCommit)));
+	}
+
 	@Override
 	public Promise<Void> saveSnapshot(K revisionId, List<D> diffs) {
 		checkInReactorThread(this);
@@ -178,6 +190,7 @@ public final class StubOTRepository<K, D> extends ImplicitlyReactive
 		commits.clear();
 		heads.clear();
 		snapshots.clear();
+		loadedBatches.clear();
 	}
 
 }
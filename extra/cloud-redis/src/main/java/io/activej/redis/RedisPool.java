@@ -0,0 +1,433 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.redis;
+
+import io.activej.async.function.AsyncRunnable;
+import io.activej.async.function.AsyncSupplier;
+import io.activej.async.service.ReactiveService;
+import io.activej.common.ApplicationSettings;
+import io.activej.common.builder.AbstractBuilder;
+import io.activej.jmx.api.attribute.JmxAttribute;
+import io.activej.jmx.stats.EventStats;
+import io.activej.promise.Promise;
+import io.activej.promise.Promises;
+import io.activej.promise.jmx.PromiseStats;
+import io.activej.reactor.AbstractNioReactive;
+import io.activej.reactor.net.SocketSettings;
+import io.activej.reactor.nio.NioReactor;
+import io.activej.reactor.jmx.ReactiveJmxBeanWithStats;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.*;
+
+import static io.activej.async.function.AsyncRunnables.reuse;
+import static io.activej.common.Checks.checkArgument;
+import static io.activej.reactor.Reactive.checkInReactorThread;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A pool of connections to a Redis server or to the nodes of a Redis Cluster.
+ * <p>
+ * Commands issued by different callers are spread among a few connections to each node.
+ * All the commands sent to a connection during a single reactor tick are written
+ * to a socket at once, so callers do not need to pipeline commands by themselves.
+ * <p>
+ * In cluster mode, a hash slot map is loaded on start and commands are routed
+ * to nodes by hash slots of their keys. {@code MOVED} and {@code ASK} redirects are followed.
+ * <p>
+ * Transactions are not supported by a pool, a dedicated {@link RedisConnection} should be used instead.
+ *
+ * @see <a href="https://redis.io/docs/reference/cluster-spec/">Redis Cluster specification</a>
+ */
+public final class RedisPool extends AbstractNioReactive
+	implements ReactiveService, ReactiveJmxBeanWithStats {
+	private static final Logger logger = LoggerFactory.getLogger(RedisPool.class);
+
+	public static final int SLOTS = 16384;
+
+	public static final int DEFAULT_CONNECTIONS_PER_NODE = ApplicationSettings.getInt(RedisPool.class, "connectionsPerNode", 2);
+	public static final int DEFAULT_MAX_REDIRECTS = ApplicationSettings.getInt(RedisPool.class, "maxRedirects", 5);
+	public static final Duration DEFAULT_SMOOTHING_WINDOW = Duration.ofMinutes(1);
+
+	private static final RedisRequest ASKING = RedisRequest.of("ASKING");
+	private static final RedisRequest CLUSTER_SLOTS = RedisRequest.of("CLUSTER", "SLOTS");
+
+	private final List<InetSocketAddress> seedAddresses;
+	private final Map<InetSocketAddress, Node> nodes = new LinkedHashMap<>();
+	private final @Nullable InetSocketAddress[] slots = new InetSocketAddress[SLOTS];
+
+	private boolean cluster;
+	private int connectionsPerNode = DEFAULT_CONNECTIONS_PER_NODE;
+	private int maxRedirects = DEFAULT_MAX_REDIRECTS;
+	private SocketSettings socketSettings = SocketSettings.defaultInstance();
+	private Duration connectTimeout = RedisClient.DEFAULT_CONNECT_TIMEOUT;
+	private Duration autoFlushInterval = Duration.ZERO;
+	private @Nullable String password;
+
+	private final AsyncRunnable refreshSlots = reuse(this::doRefreshSlots);
+
+	// region JMX
+	private Duration smoothingWindow = DEFAULT_SMOOTHING_WINDOW;
+	private final EventStats movedRedirects = EventStats.create(DEFAULT_SMOOTHING_WINDOW);
+	private final EventStats askRedirects = EventStats.create(DEFAULT_SMOOTHING_WINDOW);
+	// endregion
+
+	private RedisPool(NioReactor reactor, List<InetSocketAddress> seedAddresses) {
+		super(reactor);
+		this.seedAddresses = seedAddresses;
+	}
+
+	public static RedisPool create(NioReactor reactor, InetSocketAddress address) {
+		return builder(reactor, address).build();
+	}
+
+	public static Builder builder(NioReactor reactor, InetSocketAddress address) {
+		return builder(reactor, List.of(address));
+	}
+
+	/**
+	 * Creates a builder of a pool.
+	 * Seed addresses are used to load a hash slot map of a cluster,
+	 * the first one is also used for commands that have no key.
+	 */
+	public static Builder builder(NioReactor reactor, List<InetSocketAddress> seedAddresses) {
+		checkArgument(!seedAddresses.isEmpty(), "No seed addresses");
+		return new RedisPool(reactor, List.copyOf(seedAddresses)).new Builder();
+	}
+
+	public final class Builder extends AbstractBuilder<Builder, RedisPool> {
+		private Builder() {}
+
+		/**
+		 * Enables Redis Cluster mode, in which commands are routed to nodes by hash slots of their keys
+		 */
+		public Builder withCluster() {
+			checkNotBuilt(this);
+			RedisPool.this.cluster = true;
+			return this;
+		}
+
+		public Builder withConnectionsPerNode(int connectionsPerNode) {
+			checkNotBuilt(this);
+			checkArgument(connectionsPerNode > 0, "Number of connections per node must be positive");
+			RedisPool.this.connectionsPerNode = connectionsPerNode;
+			return this;
+		}
+
+		public Builder withMaxRedirects(int maxRedirects) {
+			checkNotBuilt(this);
+			checkArgument(maxRedirects >= 0, "Maximum number of redirects must not be negative");
+			RedisPool.this.maxRedirects = maxRedirects;
+			return this;
+		}
+
+		public Builder withSocketSettings(SocketSettings socketSettings) {
+			checkNotBuilt(this);
+			RedisPool.this.socketSettings = socketSettings;
+			return this;
+		}
+
+		public Builder withConnectTimeout(Duration connectTimeout) {
+			checkNotBuilt(this);
+			RedisPool.this.connectTimeout = connectTimeout;
+			return this;
+		}
+
+		public Builder withAutoFlushInterval(Duration autoFlushInterval) {
+			checkNotBuilt(this);
+			RedisPool.this.autoFlushInterval = autoFlushInterval;
+			return this;
+		}
+
+		public Builder withPassword(String password) {
+			checkNotBuilt(this);
+			RedisPool.this.password = password;
+			return this;
+		}
+
+		public Builder withSmoothingWindow(Duration smoothingWindow) {
+			checkNotBuilt(this);
+			RedisPool.this.smoothingWindow = smoothingWindow;
+			RedisPool.this.movedRedirects.setSmoothingWindow(smoothingWindow);
+			RedisPool.this.askRedirects.setSmoothingWindow(smoothingWindow);
+			return this;
+		}
+
+		@Override
+		protected RedisPool doBuild() {
+			return RedisPool.this;
+		}
+	}
+
+	@Override
+	public Promise<?> start() {
+		checkInReactorThread(this);
+		return cluster ? refreshSlots.run() : Promise.complete();
+	}
+
+	@Override
+	public Promise<?> stop() {
+		checkInReactorThread(this);
+		return Promises.all(nodes.values().stream().map(Node::quit));
+	}
+
+	// region Redis API
+
+	/**
+	 * Sends a command that has no key to the first seed node
+	 *
+	 * @see RedisConnection#cmd(RedisRequest, RedisResponse)
+	 */
+	public <T> Promise<T> cmd(RedisRequest request, RedisResponse<T> response) {
+		checkInReactorThread(this);
+		return doCmd(seedAddresses.get(0), false, request, response, 0);
+	}
+
+	/**
+	 * Sends a command to a node which serves a given key
+	 *
+	 * @param key a key of a command, which is used to route the command in cluster mode
+	 * @see RedisConnection#cmd(RedisRequest, RedisResponse)
+	 */
+	public <T> Promise<T> cmd(byte[] key, RedisRequest request, RedisResponse<T> response) {
+		checkInReactorThread(this);
+		InetSocketAddress address = cluster ? slots[getSlot(key)] : null;
+		return doCmd(address != null ? address : seedAddresses.get(0), false, request, response, 0);
+	}
+
+	/**
+	 * @see #cmd(byte[], RedisRequest, RedisResponse)
+	 */
+	public <T> Promise<T> cmd(String key, RedisRequest request, RedisResponse<T> response) {
+		return cmd(key.getBytes(ISO_8859_1), request, response);
+	}
+	// endregion
+
+	/**
+	 * Reloads a hash slot map of a cluster
+	 *
+	 * @see <a href="https://redis.io/commands/cluster-slots">CLUSTER SLOTS</a>
+	 */
+	public Promise<Void> refreshSlots() {
+		checkInReactorThread(this);
+		return refreshSlots.run();
+	}
+
+	private Promise<Void> doRefreshSlots() {
+		return Promises.first(seedAddresses.stream()
+				.<AsyncSupplier<Object[]>>map(address -> () -> getNode(address).cmd(false, CLUSTER_SLOTS, RedisResponse.ARRAY)
+					.whenResult(response -> updateSlots(address, response))))
+			.toVoid()
+			.mapException(e -> new RedisException("Failed to load cluster slots", e));
+	}
+
+	private void updateSlots(InetSocketAddress seedAddress, Object[] response) throws RedisException {
+		for (Object object : response) {
+			if (!(object instanceof Object[] range) || range.length < 3 ||
+				!(range[0] instanceof Long from) || !(range[1] instanceof Long to) ||
+				!(range[2] instanceof Object[] master) || master.length < 2 ||
+				!(master[0] instanceof byte[] host) || !(master[1] instanceof Long port) ||
+				from < 0 || to >= SLOTS
+			) {
+				throw new RedisException("Malformed CLUSTER SLOTS response");
+			}
+			InetSocketAddress address = toAddress(seedAddress, new String(host, UTF_8), port);
+			for (int slot = from.intValue(); slot <= to; slot++) {
+				slots[slot] = address;
+			}
+		}
+		logger.info("Loaded {} slot ranges of a cluster", response.length);
+	}
+
+	private <T> Promise<T> doCmd(
+		InetSocketAddress address, boolean asking, RedisRequest request, RedisResponse<T> response, int redirects
+	) {
+		return getNode(address).cmd(asking, request, response)
+			.then(Promise::of, e -> {
+				if (!(e instanceof ServerError) || redirects >= maxRedirects) return Promise.ofException(e);
+				Redirect redirect = Redirect.parse(address, e.getMessage());
+				if (redirect == null) return Promise.ofException(e);
+				logger.trace("Redirecting a command from {}: {}", address, e.getMessage());
+				if (redirect.ask) {
+					askRedirects.recordEvent();
+				} else {
+					movedRedirects.recordEvent();
+					slots[redirect.slot] = redirect.address;
+					if (cluster) {
+						refreshSlots.run()
+							.whenException(e1 -> logger.warn("Failed to refresh cluster slots", e1));
+					}
+				}
+				return doCmd(redirect.address, redirect.ask, request, response, redirects + 1);
+			});
+	}
+
+	private Node getNode(InetSocketAddress address) {
+		return nodes.computeIfAbsent(address, Node::new);
+	}
+
+	/**
+	 * Calculates a hash slot of a key, taking hash tags into account
+	 */
+	public static int getSlot(byte[] key) {
+		int from = 0, to = key.length;
+		for (int i = 0; i < key.length; i++) {
+			if (key[i] != '{') continue;
+			for (int j = i + 1; j < key.length; j++) {
+				if (key[j] != '}') continue;
+				if (j != i + 1) {
+					from = i + 1;
+					to = j;
+				}
+				break;
+			}
+			break;
+		}
+		return crc16(key, from, to) & (SLOTS - 1);
+	}
+
+	private static int crc16(byte[] bytes, int from, int to) {
+		int crc = 0;
+		for (int i = from; i < to; i++) {
+			crc ^= (bytes[i] & 0xFF) << 8;
+			for (int bit = 0; bit < 8; bit++) {
+				crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+			}
+		}
+		return crc & 0xFFFF;
+	}
+
+	private static InetSocketAddress toAddress(InetSocketAddress defaultAddress, String host, long port) {
+		return new InetSocketAddress(host.isEmpty() ? defaultAddress.getHostString() : host, (int) port);
+	}
+
+	private record Redirect(boolean ask, int slot, InetSocketAddress address) {
+		static @Nullable Redirect parse(InetSocketAddress from, String message) {
+			boolean ask;
+			if (message.startsWith("MOVED ")) {
+				ask = false;
+			} else if (message.startsWith("ASK ")) {
+				ask = true;
+			} else {
+				return null;
+			}
+			String[] parts = message.split(" ");
+			if (parts.length != 3) return null;
+			int index = parts[2].lastIndexOf(':');
+			if (index == -1) return null;
+			try {
+				return new Redirect(ask, Integer.parseInt(parts[1]),
+					toAddress(from, parts[2].substring(0, index), Integer.parseInt(parts[2].substring(index + 1))));
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+	}
+
+	private final class Node {
+		private final RedisClient client;
+		private final @Nullable Promise<RedisConnection>[] connections;
+		private int next;
+
+		private final PromiseStats stats = PromiseStats.create(smoothingWindow);
+
+		@SuppressWarnings("unchecked")
+		Node(InetSocketAddress address) {
+			this.client = RedisClient.builder(reactor, address)
+				.withSocketSettings(socketSettings)
+				.withConnectTimeout(connectTimeout)
+				.withAutoFlushInterval(autoFlushInterval)
+				.build();
+			this.connections = new Promise[connectionsPerNode];
+		}
+
+		<T> Promise<T> cmd(boolean asking, RedisRequest request, RedisResponse<T> response) {
+			return getConnection()
+				.then(connection -> {
+					if (asking) {
+						// a reply to ASKING is ignored, as a command fails anyway if ASKING is not accepted
+						connection.cmd(ASKING, RedisResponse.SKIP);
+					}
+					return connection.cmd(request, response);
+				})
+				.whenComplete(stats.recordStats());
+		}
+
+		private Promise<RedisConnection> getConnection() {
+			int index = next;
+			next = (next + 1) % connections.length;
+			Promise<RedisConnection> connection = connections[index];
+			if (connection == null || connection.isException() || connection.isResult() && connection.getResult().isClosed()) {
+				connection = password != null ? client.connect(password) : client.connect();
+				connections[index] = connection;
+			}
+			return connection;
+		}
+
+		Promise<Void> quit() {
+			return Promises.all(Arrays.stream(connections)
+				.filter(Objects::nonNull)
+				.map(connection -> connection
+					.then((result, e) -> e == null && !result.isClosed() ? result.quit() : Promise.complete())
+					.then(($, e) -> Promise.complete())));
+		}
+	}
+
+	// region JMX
+	@JmxAttribute
+	public Map<String, PromiseStats> getNodeStats() {
+		Map<String, PromiseStats> result = new LinkedHashMap<>();
+		nodes.forEach((address, node) -> result.put(address.toString(), node.stats));
+		return result;
+	}
+
+	@JmxAttribute
+	public EventStats getMovedRedirects() {
+		return movedRedirects;
+	}
+
+	@JmxAttribute
+	public EventStats getAskRedirects() {
+		return askRedirects;
+	}
+
+	@JmxAttribute
+	public boolean isCluster() {
+		return cluster;
+	}
+
+	@JmxAttribute
+	public int getConnectionsPerNode() {
+		return connectionsPerNode;
+	}
+	// endregion
+
+	@Override
+	public String toString() {
+		return
+			"RedisPool{" +
+			"seedAddresses=" + seedAddresses +
+			", cluster=" + cluster +
+			", nodes=" + nodes.size() +
+			'}';
+	}
+}
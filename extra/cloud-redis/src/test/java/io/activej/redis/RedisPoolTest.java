@@ -0,0 +1,163 @@
+package io.activej.redis;
+
+import io.activej.async.function.AsyncSupplier;
+import io.activej.promise.Promise;
+import io.activej.promise.Promises;
+import io.activej.reactor.nio.NioReactor;
+import io.activej.test.rules.ByteBufRule;
+import io.activej.test.rules.EventloopRule;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static io.activej.reactor.Reactor.getCurrentReactor;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static org.junit.Assert.*;
+
+public class RedisPoolTest {
+	@ClassRule
+	public static final EventloopRule eventloopRule = new EventloopRule();
+
+	@ClassRule
+	public static final ByteBufRule byteBufRule = new ByteBufRule();
+
+	private NioReactor reactor;
+	private RedisStubCluster cluster;
+
+	@Before
+	public void setUp() throws Exception {
+		reactor = getCurrentReactor();
+		cluster = new RedisStubCluster(2);
+	}
+
+	@After
+	public void tearDown() throws InterruptedException {
+		cluster.close();
+	}
+
+	@Test
+	public void testGetSlot() {
+		assertEquals(12182, RedisPool.getSlot(bytes("foo")));
+		assertEquals(RedisPool.getSlot(bytes("user1000")), RedisPool.getSlot(bytes("{user1000}.following")));
+		assertEquals(RedisPool.getSlot(bytes("user1000")), RedisPool.getSlot(bytes("foo{user1000}{bar}")));
+		assertNotEquals(RedisPool.getSlot(bytes("")), RedisPool.getSlot(bytes("{}.following")));
+	}
+
+	@Test
+	public void testPipelining() {
+		cluster.moveAllSlots(0);
+		RedisStubCluster.Node node = cluster.getNode(0);
+		RedisPool pool = RedisPool.builder(reactor, node.getAddress())
+			.withConnectionsPerNode(2)
+			.build();
+
+		int count = 1000;
+		List<String> values = await(pool, () -> Promises.all(IntStream.range(0, count)
+				.mapToObj(i -> pool.cmd("key" + i, RedisRequest.of("SET", "key" + i, "value" + i), RedisResponse.OK)))
+			.then(() -> Promises.toList(IntStream.range(0, count)
+				.mapToObj(i -> pool.cmd("key" + i, RedisRequest.of("GET", "key" + i), RedisResponse.BYTES_UTF8)))));
+
+		assertEquals(IntStream.range(0, count).mapToObj(i -> "value" + i).toList(), values);
+		assertEquals(2, node.getConnections());
+		assertEquals(2 * count + 2, node.getCommands()); // including QUIT of each connection
+		// commands issued by many callers are coalesced into a few writes
+		assertTrue(node.getReads() < count / 10);
+	}
+
+	@Test
+	public void testClusterRouting() {
+		RedisPool pool = RedisPool.builder(reactor, List.of(cluster.getNode(0).getAddress()))
+			.withCluster()
+			.build();
+
+		int count = 100;
+		List<String> values = await(pool, () -> Promises.all(IntStream.range(0, count)
+				.mapToObj(i -> pool.cmd("key" + i, RedisRequest.of("SET", "key" + i, "value" + i), RedisResponse.OK)))
+			.then(() -> Promises.toList(IntStream.range(0, count)
+				.mapToObj(i -> pool.cmd("key" + i, RedisRequest.of("GET", "key" + i), RedisResponse.BYTES_UTF8)))));
+
+		assertEquals(IntStream.range(0, count).mapToObj(i -> "value" + i).toList(), values);
+		assertTrue(cluster.getNode(0).getCommands() > count / 2);
+		assertTrue(cluster.getNode(1).getCommands() > count / 2);
+		assertEquals(0, pool.getMovedRedirects().getTotalCount());
+		assertEquals(2, pool.getNodeStats().size());
+	}
+
+	@Test
+	public void testMovedRedirect() {
+		RedisPool pool = RedisPool.builder(reactor, List.of(cluster.getNode(0).getAddress()))
+			.withCluster()
+			.build();
+		RedisStubCluster.Node secondNode = cluster.getNode(1);
+
+		String key = "foo"; // slot 12182 is owned by the second node
+		List<Object> results = await(pool, () -> pool.cmd(key, RedisRequest.of("SET", key, "bar"), RedisResponse.OK)
+			.whenResult(() -> cluster.moveAllSlots(0))
+			.then(() -> pool.cmd(key, RedisRequest.of("GET", key), RedisResponse.BYTES_UTF8))
+			.then(value1 -> {
+				int commands = secondNode.getCommands();
+				long redirects = pool.getMovedRedirects().getTotalCount();
+				return pool.cmd(key, RedisRequest.of("GET", key), RedisResponse.BYTES_UTF8)
+					.map(value2 -> List.of(value1, redirects, value2, secondNode.getCommands() - commands));
+			}));
+
+		assertEquals("bar", results.get(0));
+		assertEquals(1L, results.get(1));
+		assertEquals("bar", results.get(2));
+		// slot map has been updated, so the command is sent directly to the first node
+		assertEquals(0, results.get(3));
+		assertEquals(1, pool.getMovedRedirects().getTotalCount());
+	}
+
+	@Test
+	public void testAskRedirect() {
+		RedisPool pool = RedisPool.builder(reactor, List.of(cluster.getNode(0).getAddress()))
+			.withCluster()
+			.build();
+
+		String key = "foo";
+		List<String> values = await(pool, () -> pool.cmd(key, RedisRequest.of("SET", key, "bar"), RedisResponse.OK)
+			.whenResult(() -> cluster.migrateKey(key, 0))
+			.then(() -> Promises.toList(
+				pool.cmd(key, RedisRequest.of("GET", key), RedisResponse.BYTES_UTF8),
+				pool.cmd(key, RedisRequest.of("GET", key), RedisResponse.BYTES_UTF8))));
+
+		assertEquals(List.of("bar", "bar"), values);
+		// ASK redirect does not change slot map
+		assertEquals(2, pool.getAskRedirects().getTotalCount());
+		assertEquals(0, pool.getMovedRedirects().getTotalCount());
+	}
+
+	@Test
+	public void testTooManyRedirects() {
+		RedisPool pool = RedisPool.builder(reactor, List.of(cluster.getNode(0).getAddress()))
+			.withCluster()
+			.withMaxRedirects(0)
+			.build();
+
+		Exception e = await(pool, () -> Promise.complete()
+			.whenResult(() -> cluster.moveAllSlots(0))
+			.then(() -> pool.cmd("foo", RedisRequest.of("GET", "foo"), RedisResponse.BYTES_UTF8))
+			.then((value, e1) -> Promise.of(e1)));
+
+		assertTrue(e instanceof ServerError);
+		assertTrue(e.getMessage().startsWith("MOVED "));
+	}
+
+	private static <T> T await(RedisPool pool, AsyncSupplier<T> commands) {
+		return io.activej.promise.TestUtils.await(pool.start()
+			.then(commands::get)
+			.then((result, e) -> pool.stop()
+				.then(() -> e == null ?
+					Promise.of(result) :
+					Promise.ofException(e))));
+	}
+
+	private static byte[] bytes(String key) {
+		return key.getBytes(ISO_8859_1);
+	}
+}
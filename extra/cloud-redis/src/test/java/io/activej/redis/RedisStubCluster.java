@@ -0,0 +1,212 @@
+package io.activej.redis;
+
+import io.activej.bytebuf.ByteBuf;
+import io.activej.bytebuf.ByteBufPool;
+import io.activej.common.exception.MalformedDataException;
+import io.activej.eventloop.Eventloop;
+import io.activej.net.SimpleServer;
+import io.activej.net.socket.tcp.ITcpSocket;
+import io.activej.promise.Promise;
+import io.activej.promise.Promises;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static io.activej.bytebuf.ByteBufStrings.wrapUtf8;
+import static io.activej.redis.RedisPool.SLOTS;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * An in-process stand-in for a Redis Cluster that speaks RESP and supports
+ * a handful of commands, hash slot ownership and MOVED/ASK redirects.
+ * <p>
+ * Nodes are served by a separate eventloop, so that a test eventloop is not kept alive by listening sockets.
+ */
+final class RedisStubCluster {
+	private final Eventloop eventloop = Eventloop.create();
+	private final Thread thread = new Thread(eventloop);
+
+	private final List<Node> nodes = new ArrayList<>();
+	private final Map<String, Integer> migratingKeys = new ConcurrentHashMap<>();
+	private final Map<String, String> data = new HashMap<>();
+	private volatile int[] owners = new int[SLOTS];
+
+	RedisStubCluster(int size) throws Exception {
+		eventloop.keepAlive(true);
+		thread.start();
+		eventloop.submit(() -> {
+			for (int i = 0; i < size; i++) {
+				Node node = new Node(i);
+				node.server = SimpleServer.builder(eventloop, node::serve)
+					.withListenAddress(new InetSocketAddress("127.0.0.1", 0))
+					.build();
+				try {
+					node.server.listen();
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+				node.address = new InetSocketAddress("127.0.0.1", node.server.getBoundAddresses().get(0).getPort());
+				nodes.add(node);
+			}
+		}).get();
+		int[] owners = new int[SLOTS];
+		for (int slot = 0; slot < SLOTS; slot++) {
+			owners[slot] = slot * size / SLOTS;
+		}
+		this.owners = owners;
+	}
+
+	Node getNode(int index) {
+		return nodes.get(index);
+	}
+
+	void moveAllSlots(int index) {
+		int[] owners = new int[SLOTS];
+		Arrays.fill(owners, index);
+		this.owners = owners;
+	}
+
+	void migrateKey(String key, int index) {
+		migratingKeys.put(key, index);
+	}
+
+	void close() throws InterruptedException {
+		eventloop.execute(() -> {
+			for (Node node : nodes) {
+				node.server.close();
+			}
+			eventloop.keepAlive(false);
+		});
+		thread.join();
+	}
+
+	final class Node {
+		private final int index;
+		private SimpleServer server;
+		private InetSocketAddress address;
+
+		private volatile int connections;
+		private volatile int reads;
+		private volatile int commands;
+
+		private Node(int index) {
+			this.index = index;
+		}
+
+		InetSocketAddress getAddress() {
+			return address;
+		}
+
+		int getConnections() {
+			return connections;
+		}
+
+		int getReads() {
+			return reads;
+		}
+
+		int getCommands() {
+			return commands;
+		}
+
+		private void serve(ITcpSocket socket) {
+			connections++;
+			ByteBuf[] readBuf = {ByteBuf.empty()};
+			boolean[] asking = {false};
+			Promises.repeat(() -> socket.read()
+					.then(buf -> {
+						if (buf == null) {
+							socket.close();
+							return Promise.of(false);
+						}
+						reads++;
+						readBuf[0] = ByteBufPool.append(readBuf[0], buf);
+						RESPv2 request = new RESPv2(readBuf[0].array(), readBuf[0].head(), readBuf[0].tail());
+						StringBuilder response = new StringBuilder();
+						boolean quit = false;
+						while (request.canRead()) {
+							Object[] args;
+							try {
+								args = request.readObjectArray();
+							} catch (NeedMoreDataException e) {
+								break;
+							}
+							commands++;
+							readBuf[0].head(request.head());
+							String command = new String((byte[]) args[0], UTF_8).toUpperCase();
+							quit = command.equals("QUIT");
+							response.append(execute(command, args, asking));
+						}
+						if (!readBuf[0].canRead()) {
+							readBuf[0].recycle();
+							readBuf[0] = ByteBuf.empty();
+						}
+						boolean close = quit;
+						return socket.write(wrapUtf8(response.toString()))
+							.map($ -> {
+								if (close) socket.close();
+								return !close;
+							});
+					}))
+				.whenComplete(() -> readBuf[0].recycle());
+		}
+
+		private String execute(String command, Object[] args, boolean[] asking) throws MalformedDataException {
+			int[] owners = RedisStubCluster.this.owners;
+			boolean wasAsking = asking[0];
+			asking[0] = false;
+			switch (command) {
+				case "PING", "QUIT" -> {
+					return command.equals("PING") ? "+PONG\r\n" : "+OK\r\n";
+				}
+				case "ASKING" -> {
+					asking[0] = true;
+					return "+OK\r\n";
+				}
+				case "CLUSTER" -> {
+					return clusterSlots();
+				}
+				case "GET", "SET" -> {
+					String key = new String((byte[]) args[1], UTF_8);
+					int slot = RedisPool.getSlot((byte[]) args[1]);
+					Integer migratingTo = migratingKeys.get(key);
+					if (owners[slot] == index && migratingTo != null && migratingTo != index) {
+						return "-ASK " + slot + " " + format(nodes.get(migratingTo).address) + "\r\n";
+					}
+					if (owners[slot] != index && !(wasAsking && migratingTo != null && migratingTo == index)) {
+						return "-MOVED " + slot + " " + format(nodes.get(owners[slot]).address) + "\r\n";
+					}
+					if (command.equals("SET")) {
+						data.put(key, new String((byte[]) args[2], UTF_8));
+						return "+OK\r\n";
+					}
+					String value = data.get(key);
+					return value == null ? "$-1\r\n" : "$" + value.length() + "\r\n" + value + "\r\n";
+				}
+				default -> throw new MalformedDataException("Unknown command " + command);
+			}
+		}
+
+		private String clusterSlots() {
+			int[] owners = RedisStubCluster.this.owners;
+			List<String> ranges = new ArrayList<>();
+			int from = 0;
+			for (int slot = 1; slot <= SLOTS; slot++) {
+				if (slot == SLOTS || owners[slot] != owners[from]) {
+					InetSocketAddress address = nodes.get(owners[from]).address;
+					String host = address.getHostString();
+					ranges.add("*3\r\n:" + from + "\r\n:" + (slot - 1) + "\r\n" +
+						"*2\r\n$" + host.length() + "\r\n" + host + "\r\n:" + address.getPort() + "\r\n");
+					from = slot;
+				}
+			}
+			return "*" + ranges.size() + "\r\n" + String.join("", ranges);
+		}
+
+		private static String format(InetSocketAddress address) {
+			return address.getHostString() + ":" + address.getPort();
+		}
+	}
+}
@@ -31,6 +31,13 @@ public class JsonUtils {
 		return jsonWriter;
 	}
 
+	/**
+	 * Creates a new writer, for JSON that is written in several steps rather than by a single codec
+	 */
+	public static JsonWriter newJsonWriter() {
+		return DSL_JSON.newWriter();
+	}
+
 	public static <T> T fromJson(JsonCodec<T> codec, String json) throws MalformedDataException {
 		return fromJsonBytes(codec, json.getBytes(UTF_8));
 	}
@@ -16,6 +16,7 @@
 
 package io.activej.launchers.rpc;
 
+import io.activej.common.MemSize;
 import io.activej.common.annotation.StaticFactories;
 import io.activej.common.initializer.Initializer;
 import io.activej.config.Config;
@@ -43,7 +44,14 @@ public class Initializers {
 			.withStreamProtocol(
 				config.get(ofMemSize(), "rpc.streamProtocol.defaultPacketSize", DEFAULT_INITIAL_BUFFER_SIZE),
 				config.get(ofFrameFormat(), "rpc.streamProtocol.frameFormat", null))
-			.withAutoFlushInterval(config.get(ofDuration(), "rpc.flushDelay", Duration.ZERO));
+			.withAutoFlushInterval(config.get(ofDuration(), "rpc.flushDelay", Duration.ZERO))
+			.initialize(rpcServerBuilder -> {
+				MemSize flushThreshold = config.get(ofMemSize(), "rpc.adaptiveFlush.threshold", null);
+				if (flushThreshold != null) {
+					rpcServerBuilder.withAdaptiveFlush(flushThreshold,
+						config.get(ofDuration(), "rpc.adaptiveFlush.maxDelay", Duration.ofMillis(1)));
+				}
+			});
 	}
 
 	public static Initializer<TriggersModuleSettings> ofRpcClient() {